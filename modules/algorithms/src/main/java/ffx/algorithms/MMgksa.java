@@ -187,6 +187,7 @@ public class MMgksa {
             EnergyTerm dispTerm = new EnergyTerm("Dispersion", energy::getDispersionEnergy);
             switch (nonPolar) {
                 case CAV_DISP:
+                case CAV_DISP_SR:
                     getE elecSolv = () -> {
                         double e = energy.getSolvationEnergy();
                         e -= energy.getCavitationEnergy();
@@ -198,6 +199,7 @@ public class MMgksa {
                     termList.add(dispTerm);
                     break;
                 case CAV:
+                case CAV_SR:
                     elecSolv = () -> (energy.getSolvationEnergy() - energy.getCavitationEnergy());
                     termList.add(new EnergyTerm("Elec. solv", elecSolv));
                     termList.add(cavTerm);
@@ -73,6 +73,8 @@ import ffx.potential.ForceFieldEnergyOpenMM;
 import ffx.potential.MolecularAssembly;
 import ffx.potential.bonded.Atom;
 import ffx.potential.extended.ExtendedSystem;
+import ffx.potential.nonbonded.InertialExtendedLagrangian;
+import ffx.potential.nonbonded.ParticleMeshEwaldCart;
 import ffx.potential.parsers.DYNFilter;
 import ffx.potential.parsers.PDBFilter;
 import ffx.potential.parsers.XYZFilter;
@@ -105,6 +107,11 @@ public class MolecularDynamics implements Runnable, Terminatable {
     private int nSteps = 1000;
 
     private ExtendedSystem esvSystem;
+    /**
+     * Auxiliary induced dipoles propagated with the coordinates (the IEL SCF
+     * predictor), or null.
+     */
+    private InertialExtendedLagrangian inertialExtendedLagrangian;
     private DynamicsState dynamicsState;
     private double totalSimTime = 0.0;
     private long time;
@@ -339,6 +346,13 @@ public class MolecularDynamics implements Runnable, Terminatable {
             thermostat.setRemoveCenterOfMassMotion(false);
         }
 
+        if (potentialEnergy instanceof ForceFieldEnergy) {
+            ParticleMeshEwaldCart pme = ((ForceFieldEnergy) potentialEnergy).getPmeCartNode();
+            if (pme != null) {
+                inertialExtendedLagrangian = pme.getInertialExtendedLagrangian();
+            }
+        }
+
         numSnapshotsToKeep = properties.getInteger("dynamicsSnapshotMemory", 0);
         // Cannot construct a CircularFifoQueue of zero length.
         lastSnapshots = new CircularFifoQueue<>(Math.max(numSnapshotsToKeep, 1));
@@ -841,6 +855,24 @@ public class MolecularDynamics implements Runnable, Terminatable {
      */
     @Override
     public void run() {
+        try {
+            integrate();
+        } finally {
+            /**
+             * Energies after dynamics (the final energy, a minimization or a
+             * Monte Carlo trial) must use a converged SCF rather than the
+             * auxiliary induced dipoles of the last step.
+             */
+            if (inertialExtendedLagrangian != null) {
+                inertialExtendedLagrangian.reset();
+            }
+        }
+    }
+
+    /**
+     * Integrate the equations of motion for the requested number of steps.
+     */
+    private void integrate() {
         done = false;
         terminate = false;
 
@@ -909,6 +941,14 @@ public class MolecularDynamics implements Runnable, Terminatable {
             throw ex;
         }
 
+        /**
+         * Start the auxiliary induced dipoles from the converged SCF of the
+         * first step, rather than that of the initial coordinates.
+         */
+        if (inertialExtendedLagrangian != null) {
+            inertialExtendedLagrangian.reset();
+        }
+
         /**
          * Initialize current and previous accelerations, unless they were just
          * loaded from a restart file.
@@ -1032,6 +1072,13 @@ public class MolecularDynamics implements Runnable, Terminatable {
                 esvSystem.propagateESVs(currentTemperature, dt, step * dt);
             }
 
+            /**
+             * Advance the auxiliary induced dipoles if present.
+             */
+            if (inertialExtendedLagrangian != null) {
+                inertialExtendedLagrangian.propagate(dt);
+            }
+
             /**
              * Log the current state every printFrequency steps.
              */
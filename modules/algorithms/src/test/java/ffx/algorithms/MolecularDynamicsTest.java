@@ -0,0 +1,221 @@
+/**
+ * Title: Force Field X.
+ * <p>
+ * Description: Force Field X - Software for Molecular Biophysics.
+ * <p>
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2016.
+ * <p>
+ * This file is part of Force Field X.
+ * <p>
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ * <p>
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ * <p>
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ * <p>
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.algorithms;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.apache.commons.math3.util.FastMath.abs;
+import static org.apache.commons.math3.util.FastMath.max;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+import ffx.algorithms.integrators.IntegratorEnum;
+import ffx.algorithms.thermostats.ThermostatEnum;
+import ffx.potential.ForceFieldEnergy;
+import ffx.potential.MolecularAssembly;
+import ffx.potential.utils.PotentialsUtils;
+
+/**
+ * Test molecular dynamics with the inertial extended Lagrangian SCF predictor.
+ *
+ * @author Michael J. Schnieders
+ */
+public class MolecularDynamicsTest {
+
+    private static final String filename = "ffx/potential/structures/acetanilide.xyz";
+    private static final double tolerance = 1.0e-6;
+    private static final int driftSteps = 100;
+    /**
+     * With a 1 fs time step, the total energy of a converged SCF trajectory
+     * fluctuates by up to 0.28 kcal/mol with a slope of 1e-4 kcal/mol/step;
+     * the inertial extended Lagrangian trajectory by up to 0.36 kcal/mol with
+     * a slope of 2.4e-4 kcal/mol/step, and at most 0.18 kcal/mol away from
+     * the converged SCF.
+     */
+    private static final double maxDeviationTolerance = 0.4;
+    private static final double driftSlopeTolerance = 5.0e-4;
+    private static final double stepDifferenceTolerance = 0.25;
+
+    @Before
+    public void setUp() {
+        System.setProperty("polar-eps", "1.0e-8");
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty("polar-eps");
+        System.clearProperty("scf-predictor");
+    }
+
+    /**
+     * After dynamics with the auxiliary induced dipoles, the polarization
+     * energy must come from a converged SCF.
+     */
+    @Test
+    public void testPolarizationAfterDynamics() {
+        ClassLoader cl = this.getClass().getClassLoader();
+        File structure = new File(cl.getResource(filename).getPath());
+        PotentialsUtils potentialUtils = new PotentialsUtils();
+
+        System.setProperty("scf-predictor", "iel");
+        MolecularAssembly molecularAssembly = potentialUtils.openQuietly(structure.getAbsolutePath());
+        ForceFieldEnergy forceFieldEnergy = molecularAssembly.getPotentialEnergy();
+        MolecularDynamics molecularDynamics = new MolecularDynamics(molecularAssembly, forceFieldEnergy,
+                molecularAssembly.getProperties(), null, ThermostatEnum.ADIABATIC, IntegratorEnum.VELOCITYVERLET);
+        molecularDynamics.dynamic(10, 1.0, 1.0, 10.0, 298.15, true, null);
+        forceFieldEnergy.energy(false, false);
+        double polarization = forceFieldEnergy.getPolarizationEnergy();
+
+        // A fresh converged SCF at the final coordinates.
+        System.clearProperty("scf-predictor");
+        double x[] = forceFieldEnergy.getCoordinates(null);
+        MolecularAssembly reference = potentialUtils.openQuietly(structure.getAbsolutePath());
+        ForceFieldEnergy referenceEnergy = reference.getPotentialEnergy();
+        referenceEnergy.energy(x);
+        assertEquals(referenceEnergy.getPolarizationEnergy(), polarization, tolerance);
+
+        // A repeated evaluation must not use the auxiliary dipoles either.
+        forceFieldEnergy.energy(false, false);
+        assertEquals(polarization, forceFieldEnergy.getPolarizationEnergy(), tolerance);
+    }
+
+    /**
+     * Over a short NVE trajectory, the total energy must be conserved at every
+     * step with the inertial extended Lagrangian, as it is with a converged
+     * SCF, and must stay close to the converged SCF trajectory.
+     */
+    @Test
+    public void testEnergyDrift() throws IOException {
+        double converged[] = totalEnergies(null);
+        double iel[] = totalEnergies("iel");
+        String labels[] = {"Converged SCF", "Inertial Extended Lagrangian"};
+        double trajectories[][] = {converged, iel};
+        for (int t = 0; t < trajectories.length; t++) {
+            double total[] = trajectories[t];
+            double maxDeviation = 0.0;
+            for (int i = 0; i < total.length; i++) {
+                maxDeviation = max(maxDeviation, abs(total[i] - total[0]));
+            }
+            assertEquals(labels[t] + " Maximum Deviation", 0.0, maxDeviation, maxDeviationTolerance);
+            assertEquals(labels[t] + " Drift Slope", 0.0, driftSlope(total), driftSlopeTolerance);
+        }
+        for (int i = 0; i < converged.length; i++) {
+            assertEquals(" Total Energy at Step " + i, converged[i], iel[i], stepDifferenceTolerance);
+        }
+    }
+
+    /**
+     * Run NVE dynamics from the same initial velocities, in a temporary
+     * directory, and return the total energy at every step.
+     *
+     * @param predictor the scf-predictor, or null for a converged SCF.
+     * @return the total energy in kcal/mol at steps 0 through driftSteps.
+     */
+    private double[] totalEnergies(String predictor) throws IOException {
+        ClassLoader cl = this.getClass().getClassLoader();
+        File structure = new File(cl.getResource(filename).getPath());
+        File directory = Files.createTempDirectory("MolecularDynamicsTest").toFile();
+        try {
+            String name = FilenameUtils.getBaseName(structure.getName());
+            for (String extension : new String[]{".xyz", ".properties", ".patch"}) {
+                FileUtils.copyFileToDirectory(new File(structure.getParentFile(), name + extension), directory);
+            }
+            PotentialsUtils potentialUtils = new PotentialsUtils();
+            if (predictor != null) {
+                System.setProperty("scf-predictor", predictor);
+            } else {
+                System.clearProperty("scf-predictor");
+            }
+            MolecularAssembly molecularAssembly = potentialUtils.openQuietly(
+                    new File(directory, structure.getName()).getAbsolutePath());
+            ForceFieldEnergy forceFieldEnergy = molecularAssembly.getPotentialEnergy();
+            final double total[] = new double[driftSteps + 1];
+            final MolecularDynamics molecularDynamics[] = new MolecularDynamics[1];
+            AlgorithmListener listener = new AlgorithmListener() {
+                private int step = 0;
+
+                @Override
+                public boolean algorithmUpdate(MolecularAssembly active) {
+                    total[++step] = molecularDynamics[0].getTotalEnergy();
+                    return true;
+                }
+            };
+            molecularDynamics[0] = new MolecularDynamics(molecularAssembly, forceFieldEnergy,
+                    molecularAssembly.getProperties(), listener, ThermostatEnum.ADIABATIC, IntegratorEnum.VELOCITYVERLET);
+            molecularDynamics[0].getThermostat().setRandomSeed(0);
+            // Initialize velocities without notifying the listener, then report every step.
+            molecularDynamics[0].dynamic(1, 1.0, 1.0, 10.0, 298.15, true, null);
+            total[0] = molecularDynamics[0].getTotalEnergy();
+            molecularDynamics[0].dynamic(driftSteps, 1.0, 1.0e-3, 10.0, 298.15, false, null);
+            return total;
+        } finally {
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+
+    /**
+     * Least-squares slope of the total energy per step.
+     *
+     * @param total the total energy at each step.
+     * @return the drift in kcal/mol per step.
+     */
+    private static double driftSlope(double total[]) {
+        int n = total.length;
+        double meanStep = 0.5 * (n - 1);
+        double meanEnergy = 0.0;
+        for (double e : total) {
+            meanEnergy += e;
+        }
+        meanEnergy /= n;
+        double covariance = 0.0;
+        double variance = 0.0;
+        for (int i = 0; i < n; i++) {
+            double ds = i - meanStep;
+            covariance += ds * (total[i] - meanEnergy);
+            variance += ds * ds;
+        }
+        return covariance / variance;
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.benchmarks;
+
+import java.io.File;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ffx.crystal.Crystal;
+import ffx.crystal.SymOp;
+import ffx.potential.ForceFieldEnergy;
+import ffx.potential.MolecularAssembly;
+import ffx.potential.bonded.Atom;
+import ffx.potential.utils.PotentialsUtils;
+
+/**
+ * Static helpers shared by the Force Field X JMH benchmarks.
+ *
+ * Test systems are resolved against the Force Field X examples directory,
+ * which can be specified with the "ffx.examples" system property (by default
+ * the benchmarks look for "examples" relative to the working directory or the
+ * repository root).
+ *
+ * @author Michael J. Schnieders
+ * @since 1.0
+ */
+public class BenchmarkUtils {
+
+    private static final Logger logger = Logger.getLogger(BenchmarkUtils.class.getName());
+
+    /**
+     * Candidate locations of the examples directory.
+     */
+    private static final String EXAMPLE_DIRS[] = {"examples", "../examples", "../../examples"};
+
+    private BenchmarkUtils() {
+    }
+
+    /**
+     * Locate a test system from the examples directory.
+     *
+     * @param system The file name of the system (i.e. waterbox.xyz).
+     * @return The File.
+     */
+    public static File findSystem(String system) {
+        File file = new File(system);
+        if (file.exists()) {
+            return file;
+        }
+        String examples = System.getProperty("ffx.examples");
+        if (examples != null) {
+            file = new File(examples, system);
+            if (file.exists()) {
+                return file;
+            }
+        }
+        for (String dir : EXAMPLE_DIRS) {
+            file = new File(dir, system);
+            if (file.exists()) {
+                return file;
+            }
+        }
+        String message = String.format(" Benchmark system %s was not found;"
+                + " set the ffx.examples property to the examples directory.", system);
+        logger.severe(message);
+        throw new IllegalArgumentException(message);
+    }
+
+    /**
+     * Open a test system using the requested number of threads.
+     *
+     * Force field properties (i.e. "gkterm", "recipterm" or "polarization") may
+     * be set as system properties prior to calling this method.
+     *
+     * @param system The file name of the system.
+     * @param threads The number of threads for the ForceFieldEnergy.
+     * @return The MolecularAssembly.
+     */
+    public static MolecularAssembly openSystem(String system, int threads) {
+        File file = findSystem(system);
+        System.setProperty("pj.nt", Integer.toString(threads));
+        PotentialsUtils potentialsUtils = new PotentialsUtils();
+        potentialsUtils.setSilentPotential(true);
+        try {
+            MolecularAssembly assemblies[] = potentialsUtils.openAll(file.getAbsolutePath(), threads);
+            if (assemblies == null || assemblies.length == 0
+                    || assemblies[0].getPotentialEnergy() == null) {
+                String message = String.format(" Benchmark system %s could not be opened.", system);
+                throw new IllegalArgumentException(message);
+            }
+            return assemblies[0];
+        } finally {
+            potentialsUtils.setSilentPotential(false);
+        }
+    }
+
+    /**
+     * Release the resources held by a test system.
+     *
+     * @param molecularAssembly The MolecularAssembly to destroy.
+     */
+    public static void closeSystem(MolecularAssembly molecularAssembly) {
+        if (molecularAssembly == null) {
+            return;
+        }
+        try {
+            ForceFieldEnergy forceFieldEnergy = molecularAssembly.getPotentialEnergy();
+            if (forceFieldEnergy != null) {
+                forceFieldEnergy.destroy();
+            }
+        } catch (Exception e) {
+            logger.log(Level.WARNING, " Exception destroying a benchmark system.", e);
+        }
+    }
+
+    /**
+     * Fill an array with the coordinates of all symmetry mates in the format
+     * expected by the NeighborList: [nSymm][3 * nAtoms].
+     *
+     * @param crystal The Crystal (typically a ReplicatesCrystal).
+     * @param atoms The atoms of the asymmetric unit.
+     * @return The coordinates of each symmetry mate.
+     */
+    public static double[][] symmetryCoordinates(Crystal crystal, Atom atoms[]) {
+        int nAtoms = atoms.length;
+        int nSymm = crystal.spaceGroup.symOps.size();
+        double coordinates[][] = new double[nSymm][nAtoms * 3];
+        double in[] = new double[3];
+        double out[] = new double[3];
+        for (int i = 0; i < nAtoms; i++) {
+            atoms[i].getXYZ(in);
+            int i3 = i * 3;
+            coordinates[0][i3] = in[0];
+            coordinates[0][i3 + 1] = in[1];
+            coordinates[0][i3 + 2] = in[2];
+        }
+        for (int iSymm = 1; iSymm < nSymm; iSymm++) {
+            SymOp symOp = crystal.spaceGroup.symOps.get(iSymm);
+            double xyz[] = coordinates[iSymm];
+            for (int i = 0; i < nAtoms; i++) {
+                int i3 = i * 3;
+                in[0] = coordinates[0][i3];
+                in[1] = coordinates[0][i3 + 1];
+                in[2] = coordinates[0][i3 + 2];
+                crystal.applySymOp(in, out, symOp);
+                xyz[i3] = out[0];
+                xyz[i3 + 1] = out[1];
+                xyz[i3 + 2] = out[2];
+            }
+        }
+        return coordinates;
+    }
+}
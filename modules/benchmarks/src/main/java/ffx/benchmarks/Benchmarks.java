@@ -0,0 +1,97 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point for the Force Field X benchmarks.
+ *
+ * All standard JMH command line options are supported, for example:
+ * <code>
+ * java -Dffx.examples=examples -jar benchmarks.jar VanDerWaals -p threads=1,2,4,8
+ * </code>
+ * Unless a result format is given, results are written as JSON to
+ * "ffx-benchmarks.json" so that runs can be compared across commits.
+ *
+ * @author Michael J. Schnieders
+ * @since 1.0
+ */
+public class Benchmarks {
+
+    /**
+     * The default JSON result file.
+     */
+    public static final String RESULT_FILE = "ffx-benchmarks.json";
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Run the benchmarks.
+     *
+     * @param args JMH command line options.
+     * @throws RunnerException if a benchmark fails.
+     * @throws CommandLineOptionException if the options cannot be parsed.
+     */
+    public static void main(String args[]) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        OptionsBuilder optionsBuilder = new OptionsBuilder();
+        if (!commandLineOptions.getResultFormat().hasValue()) {
+            optionsBuilder.resultFormat(ResultFormatType.JSON);
+            if (!commandLineOptions.getResult().hasValue()) {
+                optionsBuilder.result(RESULT_FILE);
+            }
+        }
+        if (commandLineOptions.getIncludes().isEmpty()) {
+            optionsBuilder.include(Benchmarks.class.getPackage().getName() + ".*");
+        }
+        String examples = System.getProperty("ffx.examples");
+        if (examples != null) {
+            optionsBuilder.jvmArgsAppend("-Dffx.examples=" + examples);
+        }
+        Options options = optionsBuilder.parent(commandLineOptions).build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.rit.pj.ParallelTeam;
+
+import ffx.numerics.fft.Complex3DBlocked;
+import ffx.numerics.fft.Complex3DParallel;
+
+/**
+ * JMH benchmark of the strided (Complex3DParallel) and cache blocked
+ * (Complex3DBlocked) complex 3D FFT engines over typical PME and X-ray grid
+ * dimensions.
+ *
+ * @author Michael J. Schnieders
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockedFFTBenchmark {
+
+    /**
+     * Grid dimensions as "nX,nY,nZ".
+     */
+    @Param({"48,48,48", "64,64,64", "80,96,100", "128,128,128", "144,160,180"})
+    public String grid;
+
+    @Param({"PARALLEL", "BLOCKED"})
+    public String engine;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private ParallelTeam parallelTeam;
+    private Complex3DParallel complex3D;
+    private double data[];
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String dims[] = grid.split(",");
+        int nX = Integer.parseInt(dims[0]);
+        int nY = Integer.parseInt(dims[1]);
+        int nZ = Integer.parseInt(dims[2]);
+        parallelTeam = new ParallelTeam(threads);
+        if (engine.equals("BLOCKED")) {
+            complex3D = new Complex3DBlocked(nX, nY, nZ, parallelTeam);
+        } else {
+            complex3D = new Complex3DParallel(nX, nY, nZ, parallelTeam);
+        }
+        Random random = new Random(1);
+        data = new double[nX * nY * nZ * 2];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextDouble();
+        }
+        double recip[] = new double[nX * nY * nZ];
+        for (int i = 0; i < recip.length; i++) {
+            recip[i] = random.nextDouble() / recip.length;
+        }
+        complex3D.setRecip(recip);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        parallelTeam.shutdown();
+    }
+
+    @Benchmark
+    public double[] fft() {
+        complex3D.fft(data);
+        return data;
+    }
+
+    @Benchmark
+    public double[] ifft() {
+        complex3D.ifft(data);
+        return data;
+    }
+
+    @Benchmark
+    public double[] convolution() {
+        complex3D.convolution(data);
+        return data;
+    }
+}
@@ -0,0 +1,244 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.rit.pj.IntegerForLoop;
+import edu.rit.pj.ParallelRegion;
+import edu.rit.pj.ParallelTeam;
+
+import ffx.numerics.AtomicDoubleArray;
+import ffx.numerics.MultiDoubleArray;
+import ffx.potential.CoordinateStore;
+import ffx.potential.ForceFieldEnergy;
+import ffx.potential.MolecularAssembly;
+import ffx.potential.bonded.Angle;
+import ffx.potential.bonded.AngleKernel;
+import ffx.potential.bonded.Bond;
+import ffx.potential.bonded.BondKernel;
+import ffx.potential.bonded.BondedKernel;
+import ffx.potential.bonded.BondedTerm;
+import ffx.potential.bonded.Torsion;
+import ffx.potential.bonded.TorsionKernel;
+
+/**
+ * JMH benchmark of the Bond, Angle and Torsion energy and gradient kernels.
+ *
+ * The terms are evaluated by a ParallelRegion that mirrors the bonded region
+ * of the ForceFieldEnergy: per-thread gradient accumulation followed by a
+ * parallel reduction. Each term is evaluated either via the virtual
+ * BondedTerm.energy method or by the batched BondedKernel.
+ *
+ * @author Michael J. Schnieders
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BondedTermsBenchmark {
+
+    @Param({"ubiquitin.xyz", "dhfr.xyz"})
+    public String system;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"virtual", "kernel"})
+    public String path;
+
+    private MolecularAssembly molecularAssembly;
+    private ParallelTeam parallelTeam;
+    private BondedTermRegion bondRegion;
+    private BondedTermRegion angleRegion;
+    private BondedTermRegion torsionRegion;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        molecularAssembly = BenchmarkUtils.openSystem(system, threads);
+        ForceFieldEnergy forceFieldEnergy = molecularAssembly.getPotentialEnergy();
+        int nAtoms = molecularAssembly.getAtomArray().length;
+        CoordinateStore coordinateStore = forceFieldEnergy.getCoordinateStore();
+        Bond bonds[] = forceFieldEnergy.getBonds();
+        Angle angles[] = forceFieldEnergy.getAngles();
+        Torsion torsions[] = forceFieldEnergy.getTorsions();
+        BondedKernel bondKernel = null;
+        BondedKernel angleKernel = null;
+        BondedKernel torsionKernel = null;
+        if (path.equalsIgnoreCase("kernel")) {
+            bondKernel = (bonds == null) ? null : new BondKernel(bonds, bonds.length);
+            angleKernel = (angles == null) ? null : new AngleKernel(angles, angles.length);
+            torsionKernel = (torsions == null) ? null : new TorsionKernel(torsions, torsions.length);
+        }
+        parallelTeam = new ParallelTeam(threads);
+        bondRegion = new BondedTermRegion(bonds, bondKernel, coordinateStore, nAtoms, threads);
+        angleRegion = new BondedTermRegion(angles, angleKernel, coordinateStore, nAtoms, threads);
+        torsionRegion = new BondedTermRegion(torsions, torsionKernel, coordinateStore, nAtoms, threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        parallelTeam.shutdown();
+        BenchmarkUtils.closeSystem(molecularAssembly);
+    }
+
+    @Benchmark
+    public double bonds() throws Exception {
+        return bondRegion.evaluate(parallelTeam);
+    }
+
+    @Benchmark
+    public double angles() throws Exception {
+        return angleRegion.evaluate(parallelTeam);
+    }
+
+    @Benchmark
+    public double torsions() throws Exception {
+        return torsionRegion.evaluate(parallelTeam);
+    }
+
+    /**
+     * Evaluate one type of bonded term with gradients, using the kernel if
+     * it is not null.
+     */
+    private static class BondedTermRegion extends ParallelRegion {
+
+        private final BondedTerm terms[];
+        private final BondedKernel kernel;
+        private final CoordinateStore coordinateStore;
+        private final int nTerms;
+        private final int nAtoms;
+        private final AtomicDoubleArray gradX, gradY, gradZ;
+        private final AtomicDoubleArray lambdaGradX, lambdaGradY, lambdaGradZ;
+        private final double threadEnergy[];
+        private final TermLoop termLoop[];
+        private final ReduceLoop reduceLoop[];
+
+        BondedTermRegion(BondedTerm terms[], BondedKernel kernel, CoordinateStore coordinateStore,
+                int nAtoms, int nThreads) {
+            this.terms = terms;
+            this.kernel = kernel;
+            this.coordinateStore = coordinateStore;
+            this.nTerms = (terms == null) ? 0 : terms.length;
+            this.nAtoms = nAtoms;
+            gradX = new MultiDoubleArray(nThreads, nAtoms);
+            gradY = new MultiDoubleArray(nThreads, nAtoms);
+            gradZ = new MultiDoubleArray(nThreads, nAtoms);
+            lambdaGradX = new MultiDoubleArray(nThreads, nAtoms);
+            lambdaGradY = new MultiDoubleArray(nThreads, nAtoms);
+            lambdaGradZ = new MultiDoubleArray(nThreads, nAtoms);
+            threadEnergy = new double[nThreads];
+            termLoop = new TermLoop[nThreads];
+            reduceLoop = new ReduceLoop[nThreads];
+            for (int i = 0; i < nThreads; i++) {
+                termLoop[i] = new TermLoop();
+                reduceLoop[i] = new ReduceLoop();
+            }
+        }
+
+        double evaluate(ParallelTeam parallelTeam) throws Exception {
+            if (nTerms == 0) {
+                return 0.0;
+            }
+            parallelTeam.execute(this);
+            double energy = 0.0;
+            for (double e : threadEnergy) {
+                energy += e;
+            }
+            return energy + gradX.get(0);
+        }
+
+        @Override
+        public void run() throws Exception {
+            int threadID = getThreadIndex();
+            threadEnergy[threadID] = 0.0;
+            gradX.reset(threadID, 0, nAtoms - 1);
+            gradY.reset(threadID, 0, nAtoms - 1);
+            gradZ.reset(threadID, 0, nAtoms - 1);
+            execute(0, nTerms - 1, termLoop[threadID]);
+            execute(0, nAtoms - 1, reduceLoop[threadID]);
+        }
+
+        private class TermLoop extends IntegerForLoop {
+
+            @Override
+            public void run(int lb, int ub) {
+                int threadID = getThreadIndex();
+                double e = 0.0;
+                if (kernel != null) {
+                    e = kernel.energy(true, threadID, lb, ub,
+                            coordinateStore.getX(), coordinateStore.getY(), coordinateStore.getZ(),
+                            gradX, gradY, gradZ, lambdaGradX, lambdaGradY, lambdaGradZ);
+                } else {
+                    for (int i = lb; i <= ub; i++) {
+                        e += terms[i].energy(true, threadID, gradX, gradY, gradZ,
+                                lambdaGradX, lambdaGradY, lambdaGradZ);
+                    }
+                }
+                threadEnergy[threadID] += e;
+            }
+        }
+
+        private class ReduceLoop extends IntegerForLoop {
+
+            @Override
+            public void run(int lb, int ub) {
+                gradX.reduce(lb, ub);
+                gradY.reduce(lb, ub);
+                gradZ.reduce(lb, ub);
+            }
+        }
+    }
+}
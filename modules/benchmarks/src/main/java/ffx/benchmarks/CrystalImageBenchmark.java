@@ -0,0 +1,165 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import static org.apache.commons.math3.util.FastMath.abs;
+import static org.apache.commons.math3.util.FastMath.floor;
+import static org.apache.commons.math3.util.FastMath.signum;
+
+import ffx.crystal.Crystal;
+
+/**
+ * JMH benchmark of the minimum image convention, comparing the general
+ * triclinic transform with the lattice-specialized Crystal image methods.
+ *
+ * @author Michael J. Schnieders
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CrystalImageBenchmark {
+
+    private static final int PAIRS = 10000;
+
+    @Param({"CUBIC", "ORTHORHOMBIC", "MONOCLINIC", "TRICLINIC"})
+    public String lattice;
+
+    private Crystal crystal;
+    private final double xyz[] = new double[3 * PAIRS];
+    private final double v[] = new double[3];
+    private final double packed[] = new double[3 * PAIRS];
+    private final double r2[] = new double[PAIRS];
+
+    @Setup(Level.Trial)
+    public void setup() {
+        switch (lattice) {
+            case "CUBIC":
+                crystal = new Crystal(92.69, 92.69, 92.69, 90.0, 90.0, 90.0, "P23");
+                break;
+            case "ORTHORHOMBIC":
+                crystal = new Crystal(79.09, 94.81, 100.85, 90.0, 90.0, 90.0, "P222");
+                break;
+            case "MONOCLINIC":
+                crystal = new Crystal(50.85, 38.60, 89.83, 90.0, 103.99, 90.0, "P2");
+                break;
+            case "TRICLINIC":
+            default:
+                crystal = new Crystal(28.38, 31.73, 36.75, 90.12, 99.61, 96.52, "P-1");
+                break;
+        }
+        Random random = new Random(1);
+        double range = 2.0 * (crystal.a + crystal.b + crystal.c);
+        for (int i = 0; i < 3 * PAIRS; i++) {
+            xyz[i] = range * (random.nextDouble() - 0.5);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public double general() {
+        double sum = 0.0;
+        for (int i = 0; i < PAIRS; i++) {
+            v[0] = xyz[3 * i];
+            v[1] = xyz[3 * i + 1];
+            v[2] = xyz[3 * i + 2];
+            sum += generalImage(v);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public double specialized() {
+        double sum = 0.0;
+        for (int i = 0; i < PAIRS; i++) {
+            sum += crystal.image(xyz[3 * i], xyz[3 * i + 1], xyz[3 * i + 2]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public double[] packed() {
+        System.arraycopy(xyz, 0, packed, 0, 3 * PAIRS);
+        crystal.image(PAIRS, packed, r2);
+        return r2;
+    }
+
+    /**
+     * The general minimum image convention using the full 3x3 fractional and
+     * Cartesian transforms.
+     */
+    private double generalImage(double xyz[]) {
+        double x = xyz[0];
+        double y = xyz[1];
+        double z = xyz[2];
+        double xf = x * crystal.A00 + y * crystal.A10 + z * crystal.A20;
+        double yf = x * crystal.A01 + y * crystal.A11 + z * crystal.A21;
+        double zf = x * crystal.A02 + y * crystal.A12 + z * crystal.A22;
+        xf = floor(abs(xf) + 0.5) * signum(-xf) + xf;
+        yf = floor(abs(yf) + 0.5) * signum(-yf) + yf;
+        zf = floor(abs(zf) + 0.5) * signum(-zf) + zf;
+        x = xf * crystal.Ai00 + yf * crystal.Ai10 + zf * crystal.Ai20;
+        y = xf * crystal.Ai01 + yf * crystal.Ai11 + zf * crystal.Ai21;
+        z = xf * crystal.Ai02 + yf * crystal.Ai12 + zf * crystal.Ai22;
+        xyz[0] = x;
+        xyz[1] = y;
+        xyz[2] = z;
+        return x * x + y * y + z * z;
+    }
+}
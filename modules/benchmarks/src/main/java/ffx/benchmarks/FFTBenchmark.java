@@ -0,0 +1,151 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.rit.pj.ParallelTeam;
+
+import ffx.numerics.fft.Complex3DParallel;
+import ffx.numerics.fft.Real3DParallel;
+
+/**
+ * JMH benchmark of the parallel 3D FFTs used for particle mesh Ewald.
+ *
+ * @author Michael J. Schnieders
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FFTBenchmark {
+
+    @Param({"32", "64", "96", "128"})
+    public int n;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private ParallelTeam parallelTeam;
+    private Complex3DParallel complex3DParallel;
+    private Real3DParallel real3DParallel;
+    private double complexData[];
+    private double realData[];
+
+    @Setup(Level.Trial)
+    public void setup() {
+        parallelTeam = new ParallelTeam(threads);
+        complex3DParallel = new Complex3DParallel(n, n, n, parallelTeam);
+        real3DParallel = new Real3DParallel(n, n, n, parallelTeam);
+        Random random = new Random(1);
+        complexData = new double[n * n * n * 2];
+        for (int i = 0; i < complexData.length; i++) {
+            complexData[i] = random.nextDouble();
+        }
+        realData = new double[(n + 2) * n * n];
+        for (int i = 0; i < realData.length; i++) {
+            realData[i] = random.nextDouble();
+        }
+        double complexRecip[] = new double[n * n * n];
+        Arrays.fill(complexRecip, 1.0);
+        complex3DParallel.setRecip(complexRecip);
+        double realRecip[] = new double[(n / 2 + 1) * n * n];
+        Arrays.fill(realRecip, 1.0);
+        real3DParallel.setRecip(realRecip);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        parallelTeam.shutdown();
+    }
+
+    @Benchmark
+    public double[] complexFFT() {
+        complex3DParallel.fft(complexData);
+        return complexData;
+    }
+
+    @Benchmark
+    public double[] complexIFFT() {
+        complex3DParallel.ifft(complexData);
+        return complexData;
+    }
+
+    @Benchmark
+    public double[] complexConvolution() {
+        complex3DParallel.convolution(complexData);
+        return complexData;
+    }
+
+    @Benchmark
+    public double[] realFFT() {
+        real3DParallel.fft(realData);
+        return realData;
+    }
+
+    @Benchmark
+    public double[] realIFFT() {
+        real3DParallel.ifft(realData);
+        return realData;
+    }
+
+    @Benchmark
+    public double[] realConvolution() {
+        real3DParallel.convolution(realData);
+        return realData;
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ffx.potential.MolecularAssembly;
+import ffx.potential.bonded.Atom;
+import ffx.potential.nonbonded.ParticleMeshEwald;
+import ffx.potential.nonbonded.ReciprocalSpace;
+import ffx.potential.parameters.MultipoleType;
+
+/**
+ * JMH benchmark of the steps of the reciprocal space particle mesh Ewald
+ * calculation for permanent multipoles: b-Spline generation, spreading of
+ * multipoles onto the grid, convolution and computation of the potential.
+ *
+ * @author Michael J. Schnieders
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReciprocalSpaceBenchmark {
+
+    @Param({"watersmall.xyz", "waterbox.xyz", "ubiquitin.xyz", "dhfr.xyz"})
+    public String system;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private MolecularAssembly molecularAssembly;
+    private ReciprocalSpace reciprocalSpace;
+    private double globalMultipoles[][][];
+    private double cartesianPhi[][];
+    private boolean use[];
+
+    @Setup(Level.Trial)
+    public void setup() {
+        molecularAssembly = BenchmarkUtils.openSystem(system, threads);
+        ParticleMeshEwald particleMeshEwald = molecularAssembly.getPotentialEnergy().getPmeNode();
+        if (particleMeshEwald == null || particleMeshEwald.getReciprocalSpace() == null) {
+            throw new IllegalArgumentException(" Reciprocal space is not active for " + system);
+        }
+        reciprocalSpace = particleMeshEwald.getReciprocalSpace();
+        Atom atoms[] = molecularAssembly.getAtomArray();
+        int nAtoms = atoms.length;
+        int nSymm = particleMeshEwald.getCoordinates().length;
+        globalMultipoles = new double[nSymm][nAtoms][10];
+        cartesianPhi = new double[nAtoms][20];
+        use = new boolean[nAtoms];
+        for (int i = 0; i < nAtoms; i++) {
+            use[i] = true;
+            MultipoleType multipoleType = atoms[i].getMultipoleType();
+            if (multipoleType != null) {
+                double multipole[] = multipoleType.getMultipole();
+                for (int iSymm = 0; iSymm < nSymm; iSymm++) {
+                    System.arraycopy(multipole, 0, globalMultipoles[iSymm][i], 0, 10);
+                }
+            }
+        }
+        // Initialize the b-Splines and the grid with one full evaluation.
+        particleMeshEwald.energy(false, false);
+        permanent();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkUtils.closeSystem(molecularAssembly);
+    }
+
+    @Benchmark
+    public ReciprocalSpace bSplines() {
+        reciprocalSpace.computeBSplines();
+        return reciprocalSpace;
+    }
+
+    @Benchmark
+    public ReciprocalSpace splinePermanent() {
+        reciprocalSpace.splinePermanentMultipoles(globalMultipoles, 0, use);
+        return reciprocalSpace;
+    }
+
+    @Benchmark
+    public ReciprocalSpace convolution() {
+        reciprocalSpace.permanentMultipoleConvolution();
+        return reciprocalSpace;
+    }
+
+    @Benchmark
+    public double[][] permanentPhi() {
+        reciprocalSpace.computePermanentPhi(cartesianPhi);
+        return cartesianPhi;
+    }
+
+    @Benchmark
+    public double[][] permanent() {
+        reciprocalSpace.computeBSplines();
+        reciprocalSpace.splinePermanentMultipoles(globalMultipoles, 0, use);
+        reciprocalSpace.permanentMultipoleConvolution();
+        reciprocalSpace.computePermanentPhi(cartesianPhi);
+        return cartesianPhi;
+    }
+}
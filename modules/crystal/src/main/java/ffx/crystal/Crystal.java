@@ -52,9 +52,7 @@ import static org.apache.commons.math3.util.FastMath.PI;
 import static org.apache.commons.math3.util.FastMath.abs;
 import static org.apache.commons.math3.util.FastMath.cbrt;
 import static org.apache.commons.math3.util.FastMath.cos;
-import static org.apache.commons.math3.util.FastMath.floor;
 import static org.apache.commons.math3.util.FastMath.rint;
-import static org.apache.commons.math3.util.FastMath.signum;
 import static org.apache.commons.math3.util.FastMath.sin;
 import static org.apache.commons.math3.util.FastMath.sqrt;
 import static org.apache.commons.math3.util.FastMath.toRadians;
@@ -201,6 +199,11 @@ public class Crystal {
     private double beta_term;
     private double gamma_term;
     private boolean aperiodic;
+    /**
+     * The minimum image strategy for the current lattice, which is selected
+     * each time the unit cell parameters are updated.
+     */
+    private ImageMethod imageMethod = ImageMethod.TRICLINIC;
     public int scale_flag;
     public int scale_b[] = new int[6];
     public int scale_n;
@@ -437,6 +440,11 @@ public class Crystal {
         m = new LUDecomposition(m).getSolver().getInverse();
         A = m.getData();
 
+        // A^-1 is lower triangular, so its inverse is as well.
+        A[0][1] = 0.0;
+        A[0][2] = 0.0;
+        A[1][2] = 0.0;
+
         // The columns of A are the reciprocal basis vectors
         A00 = A[0][0];
         A10 = A[1][0];
@@ -472,6 +480,11 @@ public class Crystal {
                     interfacialRadiusA, interfacialRadiusB, interfacialRadiusC));
         }
 
+        imageMethod = selectImageMethod();
+        if (logger.isLoggable(Level.FINEST)) {
+            logger.finest(format(" Minimum image method: %s", imageMethod));
+        }
+
         G[0][0] = a * a;
         G[0][1] = a * b * cos_gamma;
         G[0][2] = a * c * cos_beta;
@@ -736,25 +749,13 @@ public class Crystal {
      * @return the output distance squared.
      */
     public double image(final double xyz[]) {
-        double x = xyz[0];
-        double y = xyz[1];
-        double z = xyz[2];
         if (aperiodic) {
+            double x = xyz[0];
+            double y = xyz[1];
+            double z = xyz[2];
             return x * x + y * y + z * z;
         }
-        double xf = x * A00 + y * A10 + z * A20;
-        double yf = x * A01 + y * A11 + z * A21;
-        double zf = x * A02 + y * A12 + z * A22;
-        xf = floor(abs(xf) + 0.5) * signum(-xf) + xf;
-        yf = floor(abs(yf) + 0.5) * signum(-yf) + yf;
-        zf = floor(abs(zf) + 0.5) * signum(-zf) + zf;
-        x = xf * Ai00 + yf * Ai10 + zf * Ai20;
-        y = xf * Ai01 + yf * Ai11 + zf * Ai21;
-        z = xf * Ai02 + yf * Ai12 + zf * Ai22;
-        xyz[0] = x;
-        xyz[1] = y;
-        xyz[2] = z;
-        return x * x + y * y + z * z;
+        return imageVector(xyz, 0);
     }
 
     /**
@@ -769,18 +770,223 @@ public class Crystal {
         if (aperiodic) {
             return dx * dx + dy * dy + dz * dz;
         }
-        double xf = dx * A00 + dy * A10 + dz * A20;
-        double yf = dx * A01 + dy * A11 + dz * A21;
-        double zf = dx * A02 + dy * A12 + dz * A22;
-        xf = floor(abs(xf) + 0.5) * signum(-xf) + xf;
-        yf = floor(abs(yf) + 0.5) * signum(-yf) + yf;
-        zf = floor(abs(zf) + 0.5) * signum(-zf) + zf;
-        dx = xf * Ai00 + yf * Ai10 + zf * Ai20;
-        dy = xf * Ai01 + yf * Ai11 + zf * Ai21;
-        dz = xf * Ai02 + yf * Ai12 + zf * Ai22;
+        // Math.rint is a JIT intrinsic, unlike FastMath.rint and FastMath.floor.
+        switch (imageMethod) {
+            case CUBIC:
+                dx -= Ai00 * Math.rint(dx * A00);
+                dy -= Ai00 * Math.rint(dy * A00);
+                dz -= Ai00 * Math.rint(dz * A00);
+                break;
+            case ORTHORHOMBIC:
+                dx -= Ai00 * Math.rint(dx * A00);
+                dy -= Ai11 * Math.rint(dy * A11);
+                dz -= Ai22 * Math.rint(dz * A22);
+                break;
+            case MONOCLINIC: {
+                double xf = Math.rint(dx * A00 + dz * A20);
+                double zf = Math.rint(dz * A22);
+                dx -= xf * Ai00 + zf * Ai20;
+                dy -= Ai11 * Math.rint(dy * A11);
+                dz -= zf * Ai22;
+                break;
+            }
+            case TRICLINIC:
+            default: {
+                double xf = Math.rint(dx * A00 + dy * A10 + dz * A20);
+                double yf = Math.rint(dy * A11 + dz * A21);
+                double zf = Math.rint(dz * A22);
+                dx -= xf * Ai00 + yf * Ai10 + zf * Ai20;
+                dy -= yf * Ai11 + zf * Ai21;
+                dz -= zf * Ai22;
+            }
+        }
         return dx * dx + dy * dy + dz * dz;
     }
 
+    /**
+     * Apply the minimum image convention to an array of displacement vectors
+     * stored as [x0, y0, z0, x1, y1, z1, ...].
+     *
+     * @param n the number of displacement vectors.
+     * @param xyz input distances that are over-written.
+     * @param r2 the output distances squared.
+     */
+    public void image(final int n, final double xyz[], final double r2[]) {
+        if (aperiodic) {
+            for (int i = 0, i3 = 0; i < n; i++, i3 += 3) {
+                double x = xyz[i3 + XX];
+                double y = xyz[i3 + YY];
+                double z = xyz[i3 + ZZ];
+                r2[i] = x * x + y * y + z * z;
+            }
+            return;
+        }
+        for (int i = 0, i3 = 0; i < n; i++, i3 += 3) {
+            r2[i] = imageVector(xyz, i3);
+        }
+    }
+
+    /**
+     * Apply the minimum image convention to arrays of displacement vector
+     * components.
+     *
+     * @param n the number of displacement vectors.
+     * @param dx input x-distances that are over-written.
+     * @param dy input y-distances that are over-written.
+     * @param dz input z-distances that are over-written.
+     * @param r2 the output distances squared.
+     */
+    public void image(final int n, final double dx[], final double dy[],
+            final double dz[], final double r2[]) {
+        if (aperiodic) {
+            for (int i = 0; i < n; i++) {
+                double x = dx[i];
+                double y = dy[i];
+                double z = dz[i];
+                r2[i] = x * x + y * y + z * z;
+            }
+            return;
+        }
+        switch (imageMethod) {
+            case CUBIC:
+                for (int i = 0; i < n; i++) {
+                    double x = dx[i] - Ai00 * Math.rint(dx[i] * A00);
+                    double y = dy[i] - Ai00 * Math.rint(dy[i] * A00);
+                    double z = dz[i] - Ai00 * Math.rint(dz[i] * A00);
+                    dx[i] = x;
+                    dy[i] = y;
+                    dz[i] = z;
+                    r2[i] = x * x + y * y + z * z;
+                }
+                break;
+            case ORTHORHOMBIC:
+                for (int i = 0; i < n; i++) {
+                    double x = dx[i] - Ai00 * Math.rint(dx[i] * A00);
+                    double y = dy[i] - Ai11 * Math.rint(dy[i] * A11);
+                    double z = dz[i] - Ai22 * Math.rint(dz[i] * A22);
+                    dx[i] = x;
+                    dy[i] = y;
+                    dz[i] = z;
+                    r2[i] = x * x + y * y + z * z;
+                }
+                break;
+            case MONOCLINIC:
+                for (int i = 0; i < n; i++) {
+                    double x = dx[i];
+                    double y = dy[i];
+                    double z = dz[i];
+                    double xf = Math.rint(x * A00 + z * A20);
+                    double zf = Math.rint(z * A22);
+                    x -= xf * Ai00 + zf * Ai20;
+                    y -= Ai11 * Math.rint(y * A11);
+                    z -= zf * Ai22;
+                    dx[i] = x;
+                    dy[i] = y;
+                    dz[i] = z;
+                    r2[i] = x * x + y * y + z * z;
+                }
+                break;
+            case TRICLINIC:
+            default:
+                for (int i = 0; i < n; i++) {
+                    double x = dx[i];
+                    double y = dy[i];
+                    double z = dz[i];
+                    double xf = Math.rint(x * A00 + y * A10 + z * A20);
+                    double yf = Math.rint(y * A11 + z * A21);
+                    double zf = Math.rint(z * A22);
+                    x -= xf * Ai00 + yf * Ai10 + zf * Ai20;
+                    y -= yf * Ai11 + zf * Ai21;
+                    z -= zf * Ai22;
+                    dx[i] = x;
+                    dy[i] = y;
+                    dz[i] = z;
+                    r2[i] = x * x + y * y + z * z;
+                }
+        }
+    }
+
+    /**
+     * The minimum image strategy selected for the current unit cell
+     * parameters.
+     *
+     * @return the ImageMethod.
+     */
+    public ImageMethod getImageMethod() {
+        return imageMethod;
+    }
+
+    /**
+     * Apply the minimum image convention to the displacement vector that
+     * starts at index i of the xyz array.
+     *
+     * @param xyz input distances that are over-written.
+     * @param i the index of the x-distance.
+     * @return the output distance squared.
+     */
+    private double imageVector(final double xyz[], final int i) {
+        double x = xyz[i + XX];
+        double y = xyz[i + YY];
+        double z = xyz[i + ZZ];
+        switch (imageMethod) {
+            case CUBIC:
+                x -= Ai00 * Math.rint(x * A00);
+                y -= Ai00 * Math.rint(y * A00);
+                z -= Ai00 * Math.rint(z * A00);
+                break;
+            case ORTHORHOMBIC:
+                x -= Ai00 * Math.rint(x * A00);
+                y -= Ai11 * Math.rint(y * A11);
+                z -= Ai22 * Math.rint(z * A22);
+                break;
+            case MONOCLINIC: {
+                double xf = Math.rint(x * A00 + z * A20);
+                double zf = Math.rint(z * A22);
+                x -= xf * Ai00 + zf * Ai20;
+                y -= Ai11 * Math.rint(y * A11);
+                z -= zf * Ai22;
+                break;
+            }
+            case TRICLINIC:
+            default: {
+                double xf = Math.rint(x * A00 + y * A10 + z * A20);
+                double yf = Math.rint(y * A11 + z * A21);
+                double zf = Math.rint(z * A22);
+                x -= xf * Ai00 + yf * Ai10 + zf * Ai20;
+                y -= yf * Ai11 + zf * Ai21;
+                z -= zf * Ai22;
+            }
+        }
+        xyz[i + XX] = x;
+        xyz[i + YY] = y;
+        xyz[i + ZZ] = z;
+        return x * x + y * y + z * z;
+    }
+
+    /**
+     * Select the cheapest minimum image strategy for the current lattice.
+     * Off-diagonal elements of A^-1 that are zero to within a relative
+     * tolerance are treated as exactly zero, so that a P1 box with 90 degree
+     * angles is imaged as an orthorhombic cell.
+     *
+     * @return the ImageMethod.
+     */
+    private ImageMethod selectImageMethod() {
+        boolean gamma90 = abs(Ai10) <= IMAGE_TOLERANCE * b;
+        boolean alpha90 = abs(Ai21) <= IMAGE_TOLERANCE * c;
+        boolean beta90 = abs(Ai20) <= IMAGE_TOLERANCE * c;
+        if (gamma90 && alpha90) {
+            if (beta90) {
+                if (a == b && b == c) {
+                    return ImageMethod.CUBIC;
+                }
+                return ImageMethod.ORTHORHOMBIC;
+            }
+            return ImageMethod.MONOCLINIC;
+        }
+        return ImageMethod.TRICLINIC;
+    }
+
     /**
      * <p>
      * averageTensor</p>
@@ -948,16 +1154,16 @@ public class Crystal {
             double zc = z[i];
             // Convert to fractional coordinates.
             double xi = xc * A00 + yc * A10 + zc * A20;
-            double yi = xc * A01 + yc * A11 + zc * A21;
-            double zi = xc * A02 + yc * A12 + zc * A22;
+            double yi = yc * A11 + zc * A21;
+            double zi = zc * A22;
             // Apply Symmetry Operator.
             double fx = rot00 * xi + rot01 * yi + rot02 * zi + t0;
             double fy = rot10 * xi + rot11 * yi + rot12 * zi + t1;
             double fz = rot20 * xi + rot21 * yi + rot22 * zi + t2;
             // Convert back to Cartesian coordinates.
             mateX[i] = fx * Ai00 + fy * Ai10 + fz * Ai20;
-            mateY[i] = fx * Ai01 + fy * Ai11 + fz * Ai21;
-            mateZ[i] = fx * Ai02 + fy * Ai12 + fz * Ai22;
+            mateY[i] = fy * Ai11 + fz * Ai21;
+            mateZ[i] = fz * Ai22;
         }
     }
 
@@ -1019,16 +1225,16 @@ public class Crystal {
         double zc = xyz[2];
         // Convert to fractional coordinates.
         double xi = xc * A00 + yc * A10 + zc * A20;
-        double yi = xc * A01 + yc * A11 + zc * A21;
-        double zi = xc * A02 + yc * A12 + zc * A22;
+        double yi = yc * A11 + zc * A21;
+        double zi = zc * A22;
         // Apply Symmetry Operator.
         double fx = rot[0][0] * xi + rot[0][1] * yi + rot[0][2] * zi + trans[0];
         double fy = rot[1][0] * xi + rot[1][1] * yi + rot[1][2] * zi + trans[1];
         double fz = rot[2][0] * xi + rot[2][1] * yi + rot[2][2] * zi + trans[2];
         // Convert back to Cartesian coordinates.
         mate[0] = fx * Ai00 + fy * Ai10 + fz * Ai20;
-        mate[1] = fx * Ai01 + fy * Ai11 + fz * Ai21;
-        mate[2] = fx * Ai02 + fy * Ai12 + fz * Ai22;
+        mate[1] = fy * Ai11 + fz * Ai21;
+        mate[2] = fz * Ai22;
     }
 
     /**
@@ -1068,8 +1274,8 @@ public class Crystal {
         double zc = xyz[2];
         // Convert to fractional coordinates.
         double xi = xc * A00 + yc * A10 + zc * A20;
-        double yi = xc * A01 + yc * A11 + zc * A21;
-        double zi = xc * A02 + yc * A12 + zc * A22;
+        double yi = yc * A11 + zc * A21;
+        double zi = zc * A22;
 
         // Apply Symmetry Operator.
         double fx = rot[0][0] * xi + rot[0][1] * yi + rot[0][2] * zi;
@@ -1078,8 +1284,8 @@ public class Crystal {
 
         // Convert back to Cartesian coordinates.
         mate[0] = fx * Ai00 + fy * Ai10 + fz * Ai20;
-        mate[1] = fx * Ai01 + fy * Ai11 + fz * Ai21;
-        mate[2] = fx * Ai02 + fy * Ai12 + fz * Ai22;
+        mate[1] = fy * Ai11 + fz * Ai21;
+        mate[2] = fz * Ai22;
     }
 
     /**
@@ -1216,16 +1422,16 @@ public class Crystal {
             double zc = z[i];
             // Convert to fractional coordinates.
             double xi = xc * A00 + yc * A10 + zc * A20;
-            double yi = xc * A01 + yc * A11 + zc * A21;
-            double zi = xc * A02 + yc * A12 + zc * A22;
+            double yi = yc * A11 + zc * A21;
+            double zi = zc * A22;
             // Apply Symmetry Operator.
             double fx = rot00 * xi + rot01 * yi + rot02 * zi;
             double fy = rot10 * xi + rot11 * yi + rot12 * zi;
             double fz = rot20 * xi + rot21 * yi + rot22 * zi;
             // Convert back to Cartesian coordinates.
             mateX[i] = fx * Ai00 + fy * Ai10 + fz * Ai20;
-            mateY[i] = fx * Ai01 + fy * Ai11 + fz * Ai21;
-            mateZ[i] = fx * Ai02 + fy * Ai12 + fz * Ai22;
+            mateY[i] = fy * Ai11 + fz * Ai21;
+            mateZ[i] = fz * Ai22;
         }
     }
 
@@ -1300,8 +1506,8 @@ public class Crystal {
             double yc = y[i];
             double zc = z[i];
             xf[i] = xc * A00 + yc * A10 + zc * A20;
-            yf[i] = xc * A01 + yc * A11 + zc * A21;
-            zf[i] = xc * A02 + yc * A12 + zc * A22;
+            yf[i] = yc * A11 + zc * A21;
+            zf[i] = zc * A22;
         }
     }
 
@@ -1325,8 +1531,8 @@ public class Crystal {
             double yc = cart[iY];
             double zc = cart[iZ];
             frac[iX] = xc * A00 + yc * A10 + zc * A20;
-            frac[iY] = xc * A01 + yc * A11 + zc * A21;
-            frac[iZ] = xc * A02 + yc * A12 + zc * A22;
+            frac[iY] = yc * A11 + zc * A21;
+            frac[iZ] = zc * A22;
         }
     }
 
@@ -1357,8 +1563,8 @@ public class Crystal {
         double yc = x[1];
         double zc = x[2];
         xf[0] = xc * A00 + yc * A10 + zc * A20;
-        xf[1] = xc * A01 + yc * A11 + zc * A21;
-        xf[2] = xc * A02 + yc * A12 + zc * A22;
+        xf[1] = yc * A11 + zc * A21;
+        xf[2] = zc * A22;
     }
 
     /**
@@ -1380,8 +1586,8 @@ public class Crystal {
             double yi = yf[i];
             double zi = zf[i];
             x[i] = xi * Ai00 + yi * Ai10 + zi * Ai20;
-            y[i] = xi * Ai01 + yi * Ai11 + zi * Ai21;
-            z[i] = xi * Ai02 + yi * Ai12 + zi * Ai22;
+            y[i] = yi * Ai11 + zi * Ai21;
+            z[i] = zi * Ai22;
         }
     }
 
@@ -1405,8 +1611,8 @@ public class Crystal {
             double yf = frac[iY];
             double zf = frac[iZ];
             cart[iX] = xf * Ai00 + yf * Ai10 + zf * Ai20;
-            cart[iY] = xf * Ai01 + yf * Ai11 + zf * Ai21;
-            cart[iZ] = xf * Ai02 + yf * Ai12 + zf * Ai22;
+            cart[iY] = yf * Ai11 + zf * Ai21;
+            cart[iZ] = zf * Ai22;
         }
     }
 
@@ -1422,8 +1628,8 @@ public class Crystal {
         double fy = xf[1];
         double fz = xf[2];
         x[0] = fx * Ai00 + fy * Ai10 + fz * Ai20;
-        x[1] = fx * Ai01 + fy * Ai11 + fz * Ai21;
-        x[2] = fx * Ai02 + fy * Ai12 + fz * Ai22;
+        x[1] = fy * Ai11 + fz * Ai21;
+        x[2] = fz * Ai22;
     }
 
     /**
@@ -1611,6 +1817,36 @@ public class Crystal {
         return sb.toString();
     }
 
+    /**
+     * Relative tolerance used to treat an off-diagonal element of A^-1 as
+     * zero when selecting the minimum image strategy.
+     */
+    private static final double IMAGE_TOLERANCE = 1.0e-12;
+
+    /**
+     * Minimum image strategies specialized for the shape of the lattice.
+     * Each strategy skips the terms of the fractional and Cartesian
+     * transforms that are zero for that lattice.
+     */
+    public enum ImageMethod {
+        /**
+         * a = b = c and alpha = beta = gamma = 90.
+         */
+        CUBIC,
+        /**
+         * alpha = beta = gamma = 90.
+         */
+        ORTHORHOMBIC,
+        /**
+         * alpha = gamma = 90.
+         */
+        MONOCLINIC,
+        /**
+         * No restrictions on the lattice.
+         */
+        TRICLINIC
+    }
+
     /**
      * A mask equal to 0 for X-coordinates.
      */
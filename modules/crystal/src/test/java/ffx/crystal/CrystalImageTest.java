@@ -0,0 +1,176 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.crystal;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import static org.apache.commons.math3.util.FastMath.abs;
+import static org.apache.commons.math3.util.FastMath.floor;
+import static org.apache.commons.math3.util.FastMath.signum;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test the lattice-specialized minimum image methods against the general
+ * triclinic transform. Timings are in ffx.benchmarks.CrystalImageBenchmark.
+ *
+ * @author Michael J. Schnieders
+ */
+@RunWith(Parameterized.class)
+public class CrystalImageTest {
+
+    @Parameters
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][]{
+            {"Cubic (3RN4)",
+                92.69, 92.69, 92.69, 90.0, 90.0, 90.0, "P23", Crystal.ImageMethod.CUBIC},
+            {"Orthorhombic (2WLD)",
+                79.09, 94.81, 100.85, 90.0, 90.0, 90.0, "P222", Crystal.ImageMethod.ORTHORHOMBIC},
+            {"Water Box (P1)",
+                18.643, 18.643, 18.643, 90.0, 90.0, 90.0, "P1", Crystal.ImageMethod.CUBIC},
+            {"Monoclinic (3V0E)",
+                50.85, 38.60, 89.83, 90.0, 103.99, 90.0, "P2", Crystal.ImageMethod.MONOCLINIC},
+            {"Hexagonal (4DAC)",
+                63.67, 63.67, 40.40, 90.0, 90.0, 120.0, "P6", Crystal.ImageMethod.TRICLINIC},
+            {"Triclinic (3TRW)",
+                28.38, 31.73, 36.75, 90.12, 99.61, 96.52, "P-1", Crystal.ImageMethod.TRICLINIC}
+        });
+    }
+    private final String info;
+    private final Crystal crystal;
+    private final Crystal.ImageMethod imageMethod;
+    private final int n = 10000;
+    private final double xyz[] = new double[3 * n];
+    private final double tolerance = 1.0e-8;
+
+    public CrystalImageTest(
+            String info, double a, double b, double c,
+            double alpha, double beta, double gamma, String sg,
+            Crystal.ImageMethod imageMethod) {
+        this.info = info;
+        this.imageMethod = imageMethod;
+        this.crystal = new Crystal(a, b, c, alpha, beta, gamma, sg);
+        Random random = new Random(1);
+        double range = 2.0 * (a + b + c);
+        for (int i = 0; i < 3 * n; i++) {
+            xyz[i] = range * (random.nextDouble() - 0.5);
+        }
+    }
+
+    @Test
+    public void testImageMethod() {
+        assertEquals(info + " image method", imageMethod, crystal.getImageMethod());
+        double a = crystal.a;
+        double b = crystal.b;
+        double c = crystal.c;
+        double alpha = crystal.alpha;
+        double beta = crystal.beta;
+        double gamma = crystal.gamma;
+        // The image method should follow changes to the unit cell.
+        crystal.changeUnitCellParameters(a * 1.01, b * 1.01, c * 1.01, alpha, beta, gamma);
+        assertEquals(info + " image method after scaling", imageMethod, crystal.getImageMethod());
+        crystal.changeUnitCellParameters(a, b, c, alpha, beta, gamma);
+    }
+
+    @Test
+    public void testImage() {
+        double ref[] = new double[3];
+        double v[] = new double[3];
+        double packed[] = Arrays.copyOf(xyz, 3 * n);
+        double dx[] = new double[n];
+        double dy[] = new double[n];
+        double dz[] = new double[n];
+        double r2Packed[] = new double[n];
+        double r2Arrays[] = new double[n];
+        for (int i = 0; i < n; i++) {
+            dx[i] = xyz[3 * i];
+            dy[i] = xyz[3 * i + 1];
+            dz[i] = xyz[3 * i + 2];
+        }
+        crystal.image(n, packed, r2Packed);
+        crystal.image(n, dx, dy, dz, r2Arrays);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < 3; j++) {
+                ref[j] = xyz[3 * i + j];
+                v[j] = ref[j];
+            }
+            double r2Ref = generalImage(ref);
+            double r2 = crystal.image(v);
+            assertEquals(info + " r2", r2Ref, r2, tolerance);
+            assertEquals(info + " r2 (scalar)", r2Ref,
+                    crystal.image(xyz[3 * i], xyz[3 * i + 1], xyz[3 * i + 2]), tolerance);
+            assertEquals(info + " r2 (packed)", r2Ref, r2Packed[i], tolerance);
+            assertEquals(info + " r2 (arrays)", r2Ref, r2Arrays[i], tolerance);
+            for (int j = 0; j < 3; j++) {
+                assertEquals(info + " image", ref[j], v[j], tolerance);
+                assertEquals(info + " image (packed)", ref[j], packed[3 * i + j], tolerance);
+            }
+            assertEquals(info + " image (arrays)", ref[0], dx[i], tolerance);
+            assertEquals(info + " image (arrays)", ref[1], dy[i], tolerance);
+            assertEquals(info + " image (arrays)", ref[2], dz[i], tolerance);
+        }
+    }
+
+    /**
+     * The general minimum image convention using the full 3x3 fractional and
+     * Cartesian transforms.
+     */
+    private double generalImage(double xyz[]) {
+        double x = xyz[0];
+        double y = xyz[1];
+        double z = xyz[2];
+        double xf = x * crystal.A00 + y * crystal.A10 + z * crystal.A20;
+        double yf = x * crystal.A01 + y * crystal.A11 + z * crystal.A21;
+        double zf = x * crystal.A02 + y * crystal.A12 + z * crystal.A22;
+        xf = floor(abs(xf) + 0.5) * signum(-xf) + xf;
+        yf = floor(abs(yf) + 0.5) * signum(-yf) + yf;
+        zf = floor(abs(zf) + 0.5) * signum(-zf) + zf;
+        x = xf * crystal.Ai00 + yf * crystal.Ai10 + zf * crystal.Ai20;
+        y = xf * crystal.Ai01 + yf * crystal.Ai11 + zf * crystal.Ai21;
+        z = xf * crystal.Ai02 + yf * crystal.Ai12 + zf * crystal.Ai22;
+        xyz[0] = x;
+        xyz[1] = y;
+        xyz[2] = z;
+        return x * x + y * y + z * z;
+    }
+}
@@ -48,7 +48,7 @@ package ffx.numerics;
 public interface AtomicDoubleArray {
 
     public enum AtomicDoubleArrayImpl {
-        ADDER, MULTI, PJ
+        ADDER, MULTI, PJ, BLOCKED
     };
 
     /**
@@ -0,0 +1,204 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.numerics;
+
+import java.util.Arrays;
+
+/**
+ * The BlockedDoubleArray stores a full size double array for each thread like
+ * the MultiDoubleArray, but partitions the index space into cache line sized
+ * blocks and tracks which blocks each thread has touched. Only touched blocks
+ * are reset and reduced, so for localized workloads (e.g. ESV or softcore
+ * subsets, rotamer evaluation or a ligand in a large system) the cost of reset
+ * and reduction scales with the number of touched entries rather than the
+ * system size times the number of threads.
+ *
+ * @author Michael J. Schnieders
+ *
+ * @since 1.0
+ */
+public class BlockedDoubleArray implements AtomicDoubleArray {
+
+    /**
+     * Each block holds 2^BLOCK_SHIFT doubles (8 doubles or 64 bytes).
+     */
+    public static final int BLOCK_SHIFT = 3;
+    public static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    private final int threadCount;
+    private double array[][];
+    /**
+     * Flags for the blocks each thread has touched.
+     */
+    private boolean dirty[][];
+    /**
+     * The indices of the blocks each thread has touched.
+     */
+    private int dirtyBlocks[][];
+    private final int dirtyCount[];
+
+    public BlockedDoubleArray(int nThreads, int size) {
+        threadCount = nThreads;
+        dirtyCount = new int[nThreads];
+        allocate(size);
+    }
+
+    private void allocate(int size) {
+        int nBlocks = (size + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+        array = new double[threadCount][nBlocks << BLOCK_SHIFT];
+        dirty = new boolean[threadCount][nBlocks];
+        dirtyBlocks = new int[threadCount][nBlocks];
+        Arrays.fill(dirtyCount, 0);
+    }
+
+    @Override
+    public void alloc(int size) {
+        if (array[0].length < size) {
+            allocate(size);
+        }
+    }
+
+    /**
+     * Zero the blocks touched by the specified thread since the last reset.
+     *
+     * @param threadID
+     * @param lb
+     * @param ub
+     */
+    @Override
+    public void reset(int threadID, int lb, int ub) {
+        double a[] = array[threadID];
+        boolean d[] = dirty[threadID];
+        int blocks[] = dirtyBlocks[threadID];
+        int n = dirtyCount[threadID];
+        for (int i = 0; i < n; i++) {
+            int b = blocks[i];
+            int start = b << BLOCK_SHIFT;
+            Arrays.fill(a, start, start + BLOCK_SIZE, 0.0);
+            d[b] = false;
+        }
+        dirtyCount[threadID] = 0;
+    }
+
+    @Override
+    public void add(int threadID, int index, double value) {
+        int b = index >> BLOCK_SHIFT;
+        if (!dirty[threadID][b]) {
+            dirty[threadID][b] = true;
+            dirtyBlocks[threadID][dirtyCount[threadID]++] = b;
+        }
+        array[threadID][index] += value;
+    }
+
+    @Override
+    public void sub(int threadID, int index, double value) {
+        int b = index >> BLOCK_SHIFT;
+        if (!dirty[threadID][b]) {
+            dirty[threadID][b] = true;
+            dirtyBlocks[threadID][dirtyCount[threadID]++] = b;
+        }
+        array[threadID][index] -= value;
+    }
+
+    /**
+     * Reduce the touched blocks of each thread into array[0]. Only blocks that
+     * overlap the range [lb, ub] are visited.
+     *
+     * @param lb The lower array bound of the reduction.
+     * @param ub The upper array bound of the reduction.
+     */
+    @Override
+    public void reduce(int lb, int ub) {
+        double gx[] = array[0];
+        boolean d0[] = dirty[0];
+        int firstBlock = lb >> BLOCK_SHIFT;
+        int lastBlock = ub >> BLOCK_SHIFT;
+        for (int t = 1; t < threadCount; t++) {
+            double gxt[] = array[t];
+            boolean dt[] = dirty[t];
+            for (int b = firstBlock; b <= lastBlock; b++) {
+                if (!dt[b]) {
+                    continue;
+                }
+                if (!d0[b]) {
+                    markReduced(b);
+                }
+                int start = Math.max(lb, b << BLOCK_SHIFT);
+                int end = Math.min(ub, (b << BLOCK_SHIFT) + BLOCK_SIZE - 1);
+                for (int i = start; i <= end; i++) {
+                    gx[i] += gxt[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Record that a block of array[0] received contributions during reduction,
+     * so that it is cleared by the next reset of thread 0. Blocks at the edge
+     * of a range may be shared by two concurrent reductions.
+     */
+    private synchronized void markReduced(int b) {
+        if (!dirty[0][b]) {
+            dirty[0][b] = true;
+            dirtyBlocks[0][dirtyCount[0]++] = b;
+        }
+    }
+
+    /**
+     * Return a reduced value at the given index.
+     *
+     * @param index
+     * @return a double value.
+     */
+    @Override
+    public double get(int index) {
+        return array[0][index];
+    }
+
+    /**
+     * Return the number of blocks touched by the specified thread since its
+     * last reset.
+     *
+     * @param threadID
+     * @return the number of touched blocks.
+     */
+    public int getDirtyBlockCount(int threadID) {
+        return dirtyCount[threadID];
+    }
+
+}
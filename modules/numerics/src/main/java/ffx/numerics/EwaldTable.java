@@ -0,0 +1,364 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.numerics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.apache.commons.math3.util.FastMath.PI;
+import static org.apache.commons.math3.util.FastMath.abs;
+import static org.apache.commons.math3.util.FastMath.ceil;
+import static org.apache.commons.math3.util.FastMath.exp;
+import static org.apache.commons.math3.util.FastMath.max;
+import static org.apache.commons.math3.util.FastMath.sqrt;
+
+import static ffx.numerics.Erf.erfc;
+
+/**
+ * The EwaldTable class tabulates the damped real space Ewald coefficients
+ * <p>
+ * B<sub>0</sub>(r) = erfc(&alpha;r) / r<br>
+ * B<sub>n</sub>(r) = [(2n-1) B<sub>n-1</sub>(r) + (2&alpha;<sup>2</sup>)<sup>n</sup>
+ * exp(-&alpha;<sup>2</sup>r<sup>2</sup>) / (&alpha; sqrt(&pi;))] / r<sup>2</sup>
+ * <p>
+ * so that the real space multipole loops can replace an erfc and an exp
+ * evaluation per pair with a table lookup. Rather than B<sub>n</sub>(r), which
+ * is singular at r = 0, the table stores the smooth screening functions
+ * g<sub>n</sub>(r) = r<sup>2n+1</sup> B<sub>n</sub>(r) together with their
+ * analytic derivatives on a uniform grid from 0 to the cutoff, and cubic
+ * Hermite interpolation is used between grid points.
+ * <p>
+ * The Hermite interpolation error is bounded by h<sup>4</sup> max|g<sub>n</sub><sup>(4)</sup>| / 384
+ * for a grid spacing h. Since g<sub>n</sub>(0) = (2n-1)!!, the error is
+ * reported relative to the bare Coulomb coefficient (2n-1)!! / r<sup>2n+1</sup>,
+ * which makes it independent of r. The bound is measured at the midpoint
+ * of every interval when the table is built (see {@link #getMaxError()}).
+ * With the default of 100 points per Angstrom and a typical Ewald
+ * coefficient of 0.545 it is below 1.0e-10 through sixth order.
+ * <p>
+ * Tables are built once per Ewald coefficient, cutoff and order and are
+ * shared by all callers through {@link #getTable(double, double, int)}.
+ * The tabulated path is enabled with the "ewald-table" property.
+ *
+ * @author Michael J. Schnieders
+ *
+ * @since 1.0
+ */
+public class EwaldTable {
+
+    /**
+     * The default number of grid points per Angstrom.
+     */
+    public static final int DEFAULT_POINTS_PER_ANGSTROM = 100;
+
+    /**
+     * Tables that have been built, keyed by Ewald coefficient, cutoff, order
+     * and grid density.
+     */
+    private static final Map<String, EwaldTable> tables = new ConcurrentHashMap<>();
+
+    /**
+     * The Ewald coefficient.
+     */
+    private final double aewald;
+    /**
+     * The largest separation covered by the table.
+     */
+    private final double cutoff;
+    /**
+     * The highest order coefficient B<sub>n</sub> that is tabulated.
+     */
+    private final int order;
+    /**
+     * The number of tabulated functions (order + 1).
+     */
+    private final int nFunctions;
+    /**
+     * The number of doubles stored per grid point (values then scaled
+     * derivatives).
+     */
+    private final int stride;
+    /**
+     * The grid spacing.
+     */
+    private final double spacing;
+    private final double inverseSpacing;
+    /**
+     * The number of grid intervals.
+     */
+    private final int nIntervals;
+    /**
+     * For each grid point: g<sub>0</sub> .. g<sub>order</sub> followed by h *
+     * g'<sub>0</sub> .. h * g'<sub>order</sub>.
+     */
+    private final double table[];
+    /**
+     * The largest interpolation error found when the table was built,
+     * relative to the bare Coulomb coefficient.
+     */
+    private final double maxError;
+
+    /**
+     * Construct a table with the default grid density.
+     *
+     * @param aewald The Ewald coefficient (must be positive).
+     * @param cutoff The largest separation that will be looked up.
+     * @param order The highest order coefficient B<sub>n</sub> to tabulate.
+     */
+    public EwaldTable(double aewald, double cutoff, int order) {
+        this(aewald, cutoff, order, DEFAULT_POINTS_PER_ANGSTROM);
+    }
+
+    /**
+     * Construct a table.
+     *
+     * @param aewald The Ewald coefficient (must be positive).
+     * @param cutoff The largest separation that will be looked up.
+     * @param order The highest order coefficient B<sub>n</sub> to tabulate.
+     * @param pointsPerAngstrom The grid density.
+     */
+    public EwaldTable(double aewald, double cutoff, int order, int pointsPerAngstrom) {
+        if (aewald <= 0.0 || cutoff <= 0.0 || Double.isInfinite(cutoff)
+                || order < 0 || pointsPerAngstrom < 1) {
+            throw new IllegalArgumentException(String.format(
+                    " Invalid Ewald table (aewald %8.6f, cutoff %8.6f, order %d, points %d).",
+                    aewald, cutoff, order, pointsPerAngstrom));
+        }
+        this.aewald = aewald;
+        this.cutoff = cutoff;
+        this.order = order;
+        nFunctions = order + 1;
+        stride = 2 * nFunctions;
+        spacing = 1.0 / pointsPerAngstrom;
+        inverseSpacing = pointsPerAngstrom;
+        nIntervals = (int) ceil(cutoff * inverseSpacing) + 1;
+        table = new double[(nIntervals + 1) * stride];
+
+        double g[] = new double[nFunctions];
+        double dg[] = new double[nFunctions];
+        for (int i = 0; i <= nIntervals; i++) {
+            screening(aewald, i * spacing, g, dg);
+            int index = i * stride;
+            for (int n = 0; n < nFunctions; n++) {
+                table[index + n] = g[n];
+                table[index + nFunctions + n] = spacing * dg[n];
+            }
+        }
+
+        /**
+         * Measure the interpolation error at the midpoint of each interval,
+         * where the Hermite error term is largest.
+         */
+        double error = 0.0;
+        double bn[] = new double[nFunctions];
+        for (int i = 0; i < nIntervals; i++) {
+            double r = (i + 0.5) * spacing;
+            screening(aewald, r, g, dg);
+            interpolate(r, bn);
+            double rn = r;
+            double coulomb = 1.0;
+            for (int n = 0; n < nFunctions; n++) {
+                error = max(error, abs(bn[n] * rn - g[n]) / coulomb);
+                rn *= r * r;
+                coulomb *= 2 * n + 1;
+            }
+        }
+        maxError = error;
+    }
+
+    /**
+     * Return a shared table for the given Ewald coefficient, cutoff and order,
+     * building it the first time it is requested.
+     *
+     * @param aewald The Ewald coefficient (must be positive).
+     * @param cutoff The largest separation that will be looked up.
+     * @param order The highest order coefficient B<sub>n</sub> to tabulate.
+     * @return the EwaldTable.
+     */
+    public static EwaldTable getTable(double aewald, double cutoff, int order) {
+        int points = Integer.getInteger("ewald-table-points", DEFAULT_POINTS_PER_ANGSTROM);
+        String key = aewald + ":" + cutoff + ":" + order + ":" + points;
+        return tables.computeIfAbsent(key, k -> new EwaldTable(aewald, cutoff, order, points));
+    }
+
+    /**
+     * Whether the tabulated real space path has been requested through the
+     * "ewald-table" property (the default is false).
+     *
+     * @return true if tables should be used.
+     */
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty("ewald-table", "false"));
+    }
+
+    /**
+     * Interpolate B<sub>0</sub>(r) .. B<sub>bn.length-1</sub>(r).
+     *
+     * @param r The separation distance (must be positive).
+     * @param bn The coefficients are returned in this array, whose length
+     * must not exceed order + 1.
+     * @return false if r is beyond the table, in which case bn is unchanged
+     * and the caller should fall back to {@link #bn(double, double, double[])}.
+     */
+    public boolean interpolate(final double r, final double bn[]) {
+        final double t = r * inverseSpacing;
+        final int i = (int) t;
+        if (i >= nIntervals) {
+            return false;
+        }
+        final double s = t - i;
+        final double s1 = s - 1.0;
+        final double h01 = s * s * (3.0 - 2.0 * s);
+        final double h00 = 1.0 - h01;
+        final double h10 = s * s1 * s1;
+        final double h11 = s * s * s1;
+        final int i0 = i * stride;
+        final int d0 = i0 + nFunctions;
+        final int i1 = i0 + stride;
+        final int d1 = i1 + nFunctions;
+        final double rr1 = 1.0 / r;
+        final double rr2 = rr1 * rr1;
+        double rrn = rr1;
+        final int n = bn.length;
+        for (int j = 0; j < n; j++) {
+            bn[j] = (h00 * table[i0 + j] + h10 * table[d0 + j]
+                    + h01 * table[i1 + j] + h11 * table[d1 + j]) * rrn;
+            rrn *= rr2;
+        }
+        return true;
+    }
+
+    /**
+     * Evaluate B<sub>0</sub>(r) .. B<sub>bn.length-1</sub>(r) directly using
+     * the same recursion as the real space Ewald loops.
+     *
+     * @param aewald The Ewald coefficient.
+     * @param r The separation distance (must be positive).
+     * @param bn The coefficients are returned in this array.
+     */
+    public static void bn(double aewald, double r, double bn[]) {
+        final double alsq2 = 2.0 * aewald * aewald;
+        final double ralpha = aewald * r;
+        final double exp2a = exp(-ralpha * ralpha);
+        final double rr1 = 1.0 / r;
+        final double rr2 = rr1 * rr1;
+        double an = alsq2 / (sqrt(PI) * aewald);
+        bn[0] = erfc(ralpha) * rr1;
+        for (int n = 1; n < bn.length; n++) {
+            bn[n] = ((2 * n - 1) * bn[n - 1] + an * exp2a) * rr2;
+            an *= alsq2;
+        }
+    }
+
+    /**
+     * Evaluate the screening functions g<sub>n</sub>(r) = r<sup>2n+1</sup>
+     * B<sub>n</sub>(r) and their derivatives with respect to r. Both are
+     * regular at r = 0.
+     *
+     * @param aewald The Ewald coefficient.
+     * @param r The separation distance.
+     * @param g The screening functions are returned in this array.
+     * @param dg The derivatives are returned in this array.
+     */
+    public static void screening(double aewald, double r, double g[], double dg[]) {
+        final double alsq2 = 2.0 * aewald * aewald;
+        final double exp2a = exp(-aewald * aewald * r * r);
+        final double r2 = r * r;
+        double an = alsq2 / (sqrt(PI) * aewald);
+        g[0] = erfc(aewald * r);
+        dg[0] = -an * exp2a;
+        // r^(2n-1) and r^(2n-2)
+        double rOdd = r;
+        double rEven = 1.0;
+        for (int n = 1; n < g.length; n++) {
+            int f = 2 * n - 1;
+            g[n] = f * g[n - 1] + an * rOdd * exp2a;
+            dg[n] = f * dg[n - 1] + an * exp2a * (f * rEven - alsq2 * rOdd * r);
+            rOdd *= r2;
+            rEven *= r2;
+            an *= alsq2;
+        }
+    }
+
+    /**
+     * @return the Ewald coefficient.
+     */
+    public double getEwaldCoefficient() {
+        return aewald;
+    }
+
+    /**
+     * @return the largest separation covered by the table.
+     */
+    public double getCutoff() {
+        return cutoff;
+    }
+
+    /**
+     * @return the highest order coefficient that is tabulated.
+     */
+    public int getOrder() {
+        return order;
+    }
+
+    /**
+     * @return the grid spacing (Angstroms).
+     */
+    public double getSpacing() {
+        return spacing;
+    }
+
+    /**
+     * The largest interpolation error measured when the table was built,
+     * relative to the bare Coulomb coefficient (2n-1)!! / r<sup>2n+1</sup>.
+     *
+     * @return the maximum relative error.
+     */
+    public double getMaxError() {
+        return maxError;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format(" Ewald table: order %d to %6.3f A with %7.5f A spacing (%d KB, max error %8.3e)",
+                order, cutoff, spacing, table.length * 8 / 1024, maxError);
+    }
+}
@@ -107,6 +107,15 @@ public abstract class MultipoleTensor {
      * Ewald parameter.
      */
     protected final double beta;
+    /**
+     * Optional table of the screened Coulomb source terms (null to evaluate
+     * erfc and exp directly).
+     */
+    protected EwaldTable ewaldTable = null;
+    /**
+     * Work array for the tabulated source terms.
+     */
+    protected final double bn[];
     /**
      * Thole damping parameter (= min(pti,ptk)).
      */
@@ -176,6 +185,7 @@ public abstract class MultipoleTensor {
         in = im * o1;
         size = (order + 1) * (order + 2) * (order + 3) / 6;
         work = new double[in * o1];
+        bn = new double[o1];
 
         this.order = order;
         this.operator = operator;
@@ -302,6 +312,22 @@ public abstract class MultipoleTensor {
         t222 = ti(2, 2, 2, order);
     }
 
+    /**
+     * Use an EwaldTable for the screened Coulomb source terms. The table must
+     * have been built for this tensor's Ewald coefficient and must cover at
+     * least its order.
+     *
+     * @param ewaldTable The table, or null to evaluate the source terms
+     * directly.
+     */
+    public void setEwaldTable(EwaldTable ewaldTable) {
+        if (ewaldTable != null && (ewaldTable.getEwaldCoefficient() != beta
+                || ewaldTable.getOrder() < order)) {
+            throw new IllegalArgumentException(" The Ewald table does not match the tensor.");
+        }
+        this.ewaldTable = ewaldTable;
+    }
+
     public final boolean isGlobal() {
         return (MultipoleTensorGlobal.class.isAssignableFrom(this.getClass()));
     }
@@ -606,6 +632,16 @@ public abstract class MultipoleTensor {
 
         switch (op) {
             case SCREENED_COULOMB:
+                // The tabulated source terms are (-1)^n Bn(R).
+                if (ewaldTable != null && ewaldTable.interpolate(R, bn)) {
+                    for (int n = 0; n < o1; n += 2) {
+                        T000[n] = bn[n];
+                    }
+                    for (int n = 1; n < o1; n += 2) {
+                        T000[n] = -bn[n];
+                    }
+                    break;
+                }
                 // Sagui et al. Eq. 2.22
                 double betaR = beta * R;
                 double betaR2 = betaR * betaR;
@@ -38,6 +38,7 @@
 package ffx.numerics.fft;
 
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -49,7 +50,15 @@ import static org.apache.commons.math3.util.FastMath.sqrt;
 /**
  * Compute the FFT of complex, double precision data of arbitrary length n. This
  * class uses a mixed radix method and has special methods to handle factors [2,
- * 3, 4, 5, 6, 7] and a general method for larger prime factors.
+ * 3, 4, 5, 6, 7, 8, 16] and a general method for larger prime factors. Lengths
+ * with a prime factor larger than 61 are transformed using Bluestein's chirp-z
+ * algorithm.
+ * <p>
+ * By default only the factors [2, 3, 4, 5] used by TINKER v. 5.0 are applied,
+ * which gives exact numerical agreement with TINKER. The TINKER compatible mode
+ * is controlled by the "fft-tinker" system property or by
+ * {@link #setTinkerCompatible(boolean)}. Factorization and twiddle factors for
+ * each length are computed once and shared by all instances.
  *
  * @author Michal J. Schnieders<br> Derived from:
  * <br>
@@ -73,6 +82,13 @@ import static org.apache.commons.math3.util.FastMath.sqrt;
  * </a>
  * </li>
  * <li>
+ * <a href="http://dx.doi.org/10.1109/TAU.1969.1162034" target="_blank">
+ * L. I. Bluestein, A linear filtering approach to the computation of discrete
+ * Fourier transform, IEEE Transactions on Audio and Electroacoustics 18 (4),
+ * 451 (1970)
+ * </a>
+ * </li>
+ * <li>
  * <a href="http://en.wikipedia.org/wiki/Fast_Fourier_transform"
  * target="_blank">FFT at Wikipedia
  * </a>
@@ -88,11 +104,25 @@ public class Complex {
     private final int factors[];
     private final double twiddle[][][];
     private final double scratch[];
+    private final Bluestein bluestein;
+    private final Complex bluesteinFFT;
     // TINKER v. 5.0 factors to achieve exact numerical agreement.
-    private static final int availableFactors[] = {5, 4, 3, 2};
-    private static final int firstUnavailablePrime = 7;
-    //private static final int availableFactors[] = { 7, 6, 5, 4, 3, 2 };
-    //private static final int firstUnavailablePrime = 11;
+    private static final int tinkerFactors[] = {5, 4, 3, 2};
+    private static final int tinkerFirstUnavailablePrime = 7;
+    private static final int availableFactors[] = {16, 8, 7, 6, 5, 4, 3, 2};
+    private static final int firstUnavailablePrime = 11;
+    /**
+     * Lengths with a prime factor larger than this use Bluestein's algorithm
+     * outside of the TINKER compatible mode.
+     */
+    private static final int maxMixedRadixPrime = 61;
+    private static volatile boolean tinkerCompatible
+            = Boolean.parseBoolean(System.getProperty("fft-tinker", "true"));
+    /**
+     * Plans are keyed by n for the extended factors and by -n for the TINKER
+     * compatible factors.
+     */
+    private static final ConcurrentHashMap<Integer, Plan> plans = new ConcurrentHashMap<>();
 
     /**
      * Construct a Complex instance for data of length n. Factorization of n is
@@ -103,12 +133,52 @@ public class Complex {
      * @param n Number of complex numbers (n .GT. 1).
      */
     public Complex(int n) {
+        this(n, tinkerCompatible);
+    }
+
+    /**
+     * Construct a Complex instance for data of length n using either the
+     * TINKER compatible factors or the extended factors.
+     *
+     * @param n Number of complex numbers (n .GT. 1).
+     * @param tinker Use the TINKER compatible factors.
+     */
+    private Complex(int n, boolean tinker) {
         assert (n > 1);
 
         this.n = n;
-        factors = factor();
-        twiddle = wavetable();
-        scratch = new double[2 * n];
+        Plan plan = getPlan(n, tinker);
+        factors = plan.factors;
+        twiddle = plan.twiddle;
+        bluestein = plan.bluestein;
+        if (bluestein != null) {
+            scratch = new double[2 * bluestein.m];
+            bluesteinFFT = new Complex(bluestein.m, tinker);
+        } else {
+            scratch = new double[2 * n];
+            bluesteinFFT = null;
+        }
+    }
+
+    /**
+     * Check if the TINKER compatible factors are in use.
+     *
+     * @return true if only the TINKER v. 5.0 factors are used.
+     */
+    public static boolean isTinkerCompatible() {
+        return tinkerCompatible;
+    }
+
+    /**
+     * Select the TINKER compatible factors [2, 3, 4, 5] or the extended
+     * factors [2, 3, 4, 5, 6, 7, 8, 16] with Bluestein's algorithm for large
+     * prime factors. This affects instances created afterward and the result
+     * of {@link #preferredDimension(int)}.
+     *
+     * @param tinker Use the TINKER compatible factors.
+     */
+    public static void setTinkerCompatible(boolean tinker) {
+        tinkerCompatible = tinker;
     }
 
     /**
@@ -125,8 +195,9 @@ public class Complex {
         /**
          * Apply perferred factors.
          */
-        for (int i = 0; i < availableFactors.length; i++) {
-            int factor = availableFactors[i];
+        int preferred[] = tinkerCompatible ? tinkerFactors : availableFactors;
+        for (int i = 0; i < preferred.length; i++) {
+            int factor = preferred[i];
             while ((dim % factor) == 0) {
                 dim /= factor;
             }
@@ -134,14 +205,36 @@ public class Complex {
         return dim <= 1;
     }
 
+    /**
+     * Return the shared plan for length n, creating it if necessary.
+     *
+     * @param n the data length.
+     * @param tinker Use the TINKER compatible factors.
+     * @return the plan.
+     */
+    private static Plan getPlan(int n, boolean tinker) {
+        Integer key = tinker ? -n : n;
+        Plan plan = plans.get(key);
+        if (plan == null) {
+            plan = new Plan(n, tinker);
+            Plan previous = plans.putIfAbsent(key, plan);
+            if (previous != null) {
+                plan = previous;
+            }
+        }
+        return plan;
+    }
+
     /**
      * Factor the data length into preferred factors (those with special
      * methods), falling back to odd primes that the general routine must
      * handle.
      *
+     * @param n the data length.
+     * @param tinker Use the TINKER compatible factors.
      * @return integer factors
      */
-    private int[] factor() {
+    private static int[] factor(int n, boolean tinker) {
         if (n < 2) {
             return null;
         }
@@ -151,17 +244,53 @@ public class Complex {
         /**
          * Use the preferred factors first
          */
-        for (int i = 0; i < availableFactors.length; i++) {
-            factor = availableFactors[i];
-            while ((ntest % factor) == 0) {
-                ntest /= factor;
-                v.add(factor);
+        if (tinker) {
+            for (int i = 0; i < tinkerFactors.length; i++) {
+                factor = tinkerFactors[i];
+                while ((ntest % factor) == 0) {
+                    ntest /= factor;
+                    v.add(factor);
+                }
+            }
+        } else {
+            /**
+             * Powers of 2 use the fewest passes: radix-8 with a single
+             * radix-16 or radix-4 pass for the remainder.
+             */
+            int twos = 0;
+            while ((ntest % 2) == 0) {
+                ntest /= 2;
+                twos++;
+            }
+            int eights = twos / 3;
+            switch (twos % 3) {
+                case 1:
+                    if (eights > 0) {
+                        eights--;
+                        v.add(16);
+                    } else {
+                        v.add(2);
+                    }
+                    break;
+                case 2:
+                    v.add(4);
+                    break;
+            }
+            for (int i = 0; i < eights; i++) {
+                v.add(8);
+            }
+            for (int i = 0; i < availableFactors.length; i++) {
+                factor = availableFactors[i];
+                while ((factor % 2) != 0 && (ntest % factor) == 0) {
+                    ntest /= factor;
+                    v.add(factor);
+                }
             }
         }
         /**
          * Unavailable odd prime factors.
          */
-        factor = firstUnavailablePrime;
+        factor = tinker ? tinkerFirstUnavailablePrime : firstUnavailablePrime;
         while (ntest > 1) {
             while ((ntest % factor) != 0) {
                 factor += 2;
@@ -288,6 +417,10 @@ public class Complex {
      */
     private void transformInternal(final double data[], final int offset,
             final int stride, final int sign) {
+        if (bluestein != null) {
+            bluesteinTransform(data, offset, stride, sign);
+            return;
+        }
         int product = 1;
         int state = 0;
         double in[];
@@ -342,6 +475,14 @@ public class Complex {
                     pass7(i, in, inStart, inStride, out, outStart, outStride, sign,
                             product);
                     break;
+                case 8:
+                    pass8(i, in, inStart, inStride, out, outStart, outStride, sign,
+                            product);
+                    break;
+                case 16:
+                    pass16(i, in, inStart, inStride, out, outStart, outStride, sign,
+                            product);
+                    break;
                 default:
                     // passOddN agrees with pass{3, 5 and 7}
                     passOdd(i, in, inStart, inStride, out, outStart, outStride,
@@ -949,6 +1090,523 @@ public class Complex {
         }
     }
 
+    /**
+     * Handle factors of 8.
+     *
+     * @param fi
+     * @param data
+     * @param dataOffset
+     * @param dataStride
+     * @param ret
+     * @param retOffset
+     * @param retStride
+     * @param sign
+     * @param product
+     */
+    private void pass8(final int fi, final double data[], final int dataOffset,
+            final int dataStride, final double ret[], final int retOffset,
+            final int retStride, final int sign, final int product) {
+        final int factor = 8;
+        final int m = n / factor;
+        final int q = n / product;
+        final int p_1 = product / factor;
+        final int di = dataStride * m;
+        final int dj = retStride * p_1;
+        final int jstep = (factor - 1) * dj;
+        final double twiddles[][] = twiddle[fi];
+        int i = dataOffset;
+        int j = retOffset;
+        for (int k = 0; k < q; k++) {
+            final double twids[] = twiddles[k];
+            final double w1_r = twids[0];
+            final double w1_i = -sign * twids[1];
+            final double w2_r = twids[2];
+            final double w2_i = -sign * twids[3];
+            final double w3_r = twids[4];
+            final double w3_i = -sign * twids[5];
+            final double w4_r = twids[6];
+            final double w4_i = -sign * twids[7];
+            final double w5_r = twids[8];
+            final double w5_i = -sign * twids[9];
+            final double w6_r = twids[10];
+            final double w6_i = -sign * twids[11];
+            final double w7_r = twids[12];
+            final double w7_i = -sign * twids[13];
+            for (int k1 = 0; k1 < p_1; k1++) {
+                final double z0_r = data[i];
+                final double z0_i = data[i + 1];
+                int idi = i + di;
+                final double z1_r = data[idi];
+                final double z1_i = data[idi + 1];
+                idi += di;
+                final double z2_r = data[idi];
+                final double z2_i = data[idi + 1];
+                idi += di;
+                final double z3_r = data[idi];
+                final double z3_i = data[idi + 1];
+                idi += di;
+                final double z4_r = data[idi];
+                final double z4_i = data[idi + 1];
+                idi += di;
+                final double z5_r = data[idi];
+                final double z5_i = data[idi + 1];
+                idi += di;
+                final double z6_r = data[idi];
+                final double z6_i = data[idi + 1];
+                idi += di;
+                final double z7_r = data[idi];
+                final double z7_i = data[idi + 1];
+                i += dataStride;
+                /**
+                 * Radix-2 step with the 8th roots of unity applied to the
+                 * differences.
+                 */
+                final double a0_r = z0_r + z4_r;
+                final double a0_i = z0_i + z4_i;
+                final double a1_r = z1_r + z5_r;
+                final double a1_i = z1_i + z5_i;
+                final double a2_r = z2_r + z6_r;
+                final double a2_i = z2_i + z6_i;
+                final double a3_r = z3_r + z7_r;
+                final double a3_i = z3_i + z7_i;
+                final double b0_r = z0_r - z4_r;
+                final double b0_i = z0_i - z4_i;
+                final double d1_r = z1_r - z5_r;
+                final double d1_i = z1_i - z5_i;
+                final double d2_r = z2_r - z6_r;
+                final double d2_i = z2_i - z6_i;
+                final double d3_r = z3_r - z7_r;
+                final double d3_i = z3_i - z7_i;
+                final double b1_r = sqrt2_2 * (d1_r - sign * d1_i);
+                final double b1_i = sqrt2_2 * (d1_i + sign * d1_r);
+                final double b2_r = -sign * d2_i;
+                final double b2_i = sign * d2_r;
+                final double b3_r = -sqrt2_2 * (d3_r + sign * d3_i);
+                final double b3_i = sqrt2_2 * (sign * d3_r - d3_i);
+                /**
+                 * 4-point transforms of the sums (even outputs) and of the
+                 * differences (odd outputs).
+                 */
+                final double s0_r = a0_r + a2_r;
+                final double s0_i = a0_i + a2_i;
+                final double s1_r = a0_r - a2_r;
+                final double s1_i = a0_i - a2_i;
+                final double s2_r = a1_r + a3_r;
+                final double s2_i = a1_i + a3_i;
+                final double s3_r = sign * (a1_r - a3_r);
+                final double s3_i = sign * (a1_i - a3_i);
+                final double t0_r = b0_r + b2_r;
+                final double t0_i = b0_i + b2_i;
+                final double t1_r = b0_r - b2_r;
+                final double t1_i = b0_i - b2_i;
+                final double t2_r = b1_r + b3_r;
+                final double t2_i = b1_i + b3_i;
+                final double t3_r = sign * (b1_r - b3_r);
+                final double t3_i = sign * (b1_i - b3_i);
+                ret[j] = s0_r + s2_r;
+                ret[j + 1] = s0_i + s2_i;
+                double x_r = t0_r + t2_r;
+                double x_i = t0_i + t2_i;
+                int jdj = j + dj;
+                ret[jdj] = w1_r * x_r - w1_i * x_i;
+                ret[jdj + 1] = w1_r * x_i + w1_i * x_r;
+                x_r = s1_r - s3_i;
+                x_i = s1_i + s3_r;
+                jdj += dj;
+                ret[jdj] = w2_r * x_r - w2_i * x_i;
+                ret[jdj + 1] = w2_r * x_i + w2_i * x_r;
+                x_r = t1_r - t3_i;
+                x_i = t1_i + t3_r;
+                jdj += dj;
+                ret[jdj] = w3_r * x_r - w3_i * x_i;
+                ret[jdj + 1] = w3_r * x_i + w3_i * x_r;
+                x_r = s0_r - s2_r;
+                x_i = s0_i - s2_i;
+                jdj += dj;
+                ret[jdj] = w4_r * x_r - w4_i * x_i;
+                ret[jdj + 1] = w4_r * x_i + w4_i * x_r;
+                x_r = t0_r - t2_r;
+                x_i = t0_i - t2_i;
+                jdj += dj;
+                ret[jdj] = w5_r * x_r - w5_i * x_i;
+                ret[jdj + 1] = w5_r * x_i + w5_i * x_r;
+                x_r = s1_r + s3_i;
+                x_i = s1_i - s3_r;
+                jdj += dj;
+                ret[jdj] = w6_r * x_r - w6_i * x_i;
+                ret[jdj + 1] = w6_r * x_i + w6_i * x_r;
+                x_r = t1_r + t3_i;
+                x_i = t1_i - t3_r;
+                jdj += dj;
+                ret[jdj] = w7_r * x_r - w7_i * x_i;
+                ret[jdj + 1] = w7_r * x_i + w7_i * x_r;
+                j += retStride;
+            }
+            j += jstep;
+        }
+    }
+
+    /**
+     * Handle factors of 16 using a radix-2 step followed by two 8-point
+     * transforms.
+     *
+     * @param fi
+     * @param data
+     * @param dataOffset
+     * @param dataStride
+     * @param ret
+     * @param retOffset
+     * @param retStride
+     * @param sign
+     * @param product
+     */
+    private void pass16(final int fi, final double data[], final int dataOffset,
+            final int dataStride, final double ret[], final int retOffset,
+            final int retStride, final int sign, final int product) {
+        final int factor = 16;
+        final int m = n / factor;
+        final int q = n / product;
+        final int p_1 = product / factor;
+        final int di = dataStride * m;
+        final int dj = retStride * p_1;
+        final int jstep = (factor - 1) * dj;
+        final double twiddles[][] = twiddle[fi];
+        final double c1_r = cos2PI_16[1];
+        final double c1_i = sign * sin2PI_16[1];
+        final double c2_r = cos2PI_16[2];
+        final double c2_i = sign * sin2PI_16[2];
+        final double c3_r = cos2PI_16[3];
+        final double c3_i = sign * sin2PI_16[3];
+        final double c4_r = cos2PI_16[4];
+        final double c4_i = sign * sin2PI_16[4];
+        final double c5_r = cos2PI_16[5];
+        final double c5_i = sign * sin2PI_16[5];
+        final double c6_r = cos2PI_16[6];
+        final double c6_i = sign * sin2PI_16[6];
+        final double c7_r = cos2PI_16[7];
+        final double c7_i = sign * sin2PI_16[7];
+        int i = dataOffset;
+        int j = retOffset;
+        for (int k = 0; k < q; k++) {
+            final double twids[] = twiddles[k];
+            for (int k1 = 0; k1 < p_1; k1++) {
+                final double z0_r = data[i];
+                final double z0_i = data[i + 1];
+                int idi = i;
+                idi += di;
+                final double z1_r = data[idi];
+                final double z1_i = data[idi + 1];
+                idi += di;
+                final double z2_r = data[idi];
+                final double z2_i = data[idi + 1];
+                idi += di;
+                final double z3_r = data[idi];
+                final double z3_i = data[idi + 1];
+                idi += di;
+                final double z4_r = data[idi];
+                final double z4_i = data[idi + 1];
+                idi += di;
+                final double z5_r = data[idi];
+                final double z5_i = data[idi + 1];
+                idi += di;
+                final double z6_r = data[idi];
+                final double z6_i = data[idi + 1];
+                idi += di;
+                final double z7_r = data[idi];
+                final double z7_i = data[idi + 1];
+                idi += di;
+                final double z8_r = data[idi];
+                final double z8_i = data[idi + 1];
+                idi += di;
+                final double z9_r = data[idi];
+                final double z9_i = data[idi + 1];
+                idi += di;
+                final double z10_r = data[idi];
+                final double z10_i = data[idi + 1];
+                idi += di;
+                final double z11_r = data[idi];
+                final double z11_i = data[idi + 1];
+                idi += di;
+                final double z12_r = data[idi];
+                final double z12_i = data[idi + 1];
+                idi += di;
+                final double z13_r = data[idi];
+                final double z13_i = data[idi + 1];
+                idi += di;
+                final double z14_r = data[idi];
+                final double z14_i = data[idi + 1];
+                idi += di;
+                final double z15_r = data[idi];
+                final double z15_i = data[idi + 1];
+                i += dataStride;
+                /**
+                 * Radix-2 step with the 16th roots of unity applied to the
+                 * differences.
+                 */
+                final double u0_r = z0_r + z8_r;
+                final double u0_i = z0_i + z8_i;
+                final double u1_r = z1_r + z9_r;
+                final double u1_i = z1_i + z9_i;
+                final double u2_r = z2_r + z10_r;
+                final double u2_i = z2_i + z10_i;
+                final double u3_r = z3_r + z11_r;
+                final double u3_i = z3_i + z11_i;
+                final double u4_r = z4_r + z12_r;
+                final double u4_i = z4_i + z12_i;
+                final double u5_r = z5_r + z13_r;
+                final double u5_i = z5_i + z13_i;
+                final double u6_r = z6_r + z14_r;
+                final double u6_i = z6_i + z14_i;
+                final double u7_r = z7_r + z15_r;
+                final double u7_i = z7_i + z15_i;
+                final double v0_r = z0_r - z8_r;
+                final double v0_i = z0_i - z8_i;
+                final double e1_r = z1_r - z9_r;
+                final double e1_i = z1_i - z9_i;
+                final double v1_r = c1_r * e1_r - c1_i * e1_i;
+                final double v1_i = c1_r * e1_i + c1_i * e1_r;
+                final double e2_r = z2_r - z10_r;
+                final double e2_i = z2_i - z10_i;
+                final double v2_r = c2_r * e2_r - c2_i * e2_i;
+                final double v2_i = c2_r * e2_i + c2_i * e2_r;
+                final double e3_r = z3_r - z11_r;
+                final double e3_i = z3_i - z11_i;
+                final double v3_r = c3_r * e3_r - c3_i * e3_i;
+                final double v3_i = c3_r * e3_i + c3_i * e3_r;
+                final double e4_r = z4_r - z12_r;
+                final double e4_i = z4_i - z12_i;
+                final double v4_r = c4_r * e4_r - c4_i * e4_i;
+                final double v4_i = c4_r * e4_i + c4_i * e4_r;
+                final double e5_r = z5_r - z13_r;
+                final double e5_i = z5_i - z13_i;
+                final double v5_r = c5_r * e5_r - c5_i * e5_i;
+                final double v5_i = c5_r * e5_i + c5_i * e5_r;
+                final double e6_r = z6_r - z14_r;
+                final double e6_i = z6_i - z14_i;
+                final double v6_r = c6_r * e6_r - c6_i * e6_i;
+                final double v6_i = c6_r * e6_i + c6_i * e6_r;
+                final double e7_r = z7_r - z15_r;
+                final double e7_i = z7_i - z15_i;
+                final double v7_r = c7_r * e7_r - c7_i * e7_i;
+                final double v7_i = c7_r * e7_i + c7_i * e7_r;
+                /**
+                 * 8-point transforms of the sums (even outputs) and of the
+                 * differences (odd outputs).
+                 */
+                final double pa0_r = u0_r + u4_r;
+                final double pa0_i = u0_i + u4_i;
+                final double pa1_r = u1_r + u5_r;
+                final double pa1_i = u1_i + u5_i;
+                final double pa2_r = u2_r + u6_r;
+                final double pa2_i = u2_i + u6_i;
+                final double pa3_r = u3_r + u7_r;
+                final double pa3_i = u3_i + u7_i;
+                final double pb0_r = u0_r - u4_r;
+                final double pb0_i = u0_i - u4_i;
+                final double pd1_r = u1_r - u5_r;
+                final double pd1_i = u1_i - u5_i;
+                final double pd2_r = u2_r - u6_r;
+                final double pd2_i = u2_i - u6_i;
+                final double pd3_r = u3_r - u7_r;
+                final double pd3_i = u3_i - u7_i;
+                final double pb1_r = sqrt2_2 * (pd1_r - sign * pd1_i);
+                final double pb1_i = sqrt2_2 * (pd1_i + sign * pd1_r);
+                final double pb2_r = -sign * pd2_i;
+                final double pb2_i = sign * pd2_r;
+                final double pb3_r = -sqrt2_2 * (pd3_r + sign * pd3_i);
+                final double pb3_i = sqrt2_2 * (sign * pd3_r - pd3_i);
+                final double ps0_r = pa0_r + pa2_r;
+                final double ps1_r = pa0_r - pa2_r;
+                final double ps2_r = pa1_r + pa3_r;
+                final double ps3_r = sign * (pa1_r - pa3_r);
+                final double ps0_i = pa0_i + pa2_i;
+                final double ps1_i = pa0_i - pa2_i;
+                final double ps2_i = pa1_i + pa3_i;
+                final double ps3_i = sign * (pa1_i - pa3_i);
+                final double y0_r = ps0_r + ps2_r;
+                final double y0_i = ps0_i + ps2_i;
+                final double y4_r = ps1_r - ps3_i;
+                final double y4_i = ps1_i + ps3_r;
+                final double y8_r = ps0_r - ps2_r;
+                final double y8_i = ps0_i - ps2_i;
+                final double y12_r = ps1_r + ps3_i;
+                final double y12_i = ps1_i - ps3_r;
+                final double pt0_r = pb0_r + pb2_r;
+                final double pt1_r = pb0_r - pb2_r;
+                final double pt2_r = pb1_r + pb3_r;
+                final double pt3_r = sign * (pb1_r - pb3_r);
+                final double pt0_i = pb0_i + pb2_i;
+                final double pt1_i = pb0_i - pb2_i;
+                final double pt2_i = pb1_i + pb3_i;
+                final double pt3_i = sign * (pb1_i - pb3_i);
+                final double y2_r = pt0_r + pt2_r;
+                final double y2_i = pt0_i + pt2_i;
+                final double y6_r = pt1_r - pt3_i;
+                final double y6_i = pt1_i + pt3_r;
+                final double y10_r = pt0_r - pt2_r;
+                final double y10_i = pt0_i - pt2_i;
+                final double y14_r = pt1_r + pt3_i;
+                final double y14_i = pt1_i - pt3_r;
+                final double qa0_r = v0_r + v4_r;
+                final double qa0_i = v0_i + v4_i;
+                final double qa1_r = v1_r + v5_r;
+                final double qa1_i = v1_i + v5_i;
+                final double qa2_r = v2_r + v6_r;
+                final double qa2_i = v2_i + v6_i;
+                final double qa3_r = v3_r + v7_r;
+                final double qa3_i = v3_i + v7_i;
+                final double qb0_r = v0_r - v4_r;
+                final double qb0_i = v0_i - v4_i;
+                final double qd1_r = v1_r - v5_r;
+                final double qd1_i = v1_i - v5_i;
+                final double qd2_r = v2_r - v6_r;
+                final double qd2_i = v2_i - v6_i;
+                final double qd3_r = v3_r - v7_r;
+                final double qd3_i = v3_i - v7_i;
+                final double qb1_r = sqrt2_2 * (qd1_r - sign * qd1_i);
+                final double qb1_i = sqrt2_2 * (qd1_i + sign * qd1_r);
+                final double qb2_r = -sign * qd2_i;
+                final double qb2_i = sign * qd2_r;
+                final double qb3_r = -sqrt2_2 * (qd3_r + sign * qd3_i);
+                final double qb3_i = sqrt2_2 * (sign * qd3_r - qd3_i);
+                final double qs0_r = qa0_r + qa2_r;
+                final double qs1_r = qa0_r - qa2_r;
+                final double qs2_r = qa1_r + qa3_r;
+                final double qs3_r = sign * (qa1_r - qa3_r);
+                final double qs0_i = qa0_i + qa2_i;
+                final double qs1_i = qa0_i - qa2_i;
+                final double qs2_i = qa1_i + qa3_i;
+                final double qs3_i = sign * (qa1_i - qa3_i);
+                final double y1_r = qs0_r + qs2_r;
+                final double y1_i = qs0_i + qs2_i;
+                final double y5_r = qs1_r - qs3_i;
+                final double y5_i = qs1_i + qs3_r;
+                final double y9_r = qs0_r - qs2_r;
+                final double y9_i = qs0_i - qs2_i;
+                final double y13_r = qs1_r + qs3_i;
+                final double y13_i = qs1_i - qs3_r;
+                final double qt0_r = qb0_r + qb2_r;
+                final double qt1_r = qb0_r - qb2_r;
+                final double qt2_r = qb1_r + qb3_r;
+                final double qt3_r = sign * (qb1_r - qb3_r);
+                final double qt0_i = qb0_i + qb2_i;
+                final double qt1_i = qb0_i - qb2_i;
+                final double qt2_i = qb1_i + qb3_i;
+                final double qt3_i = sign * (qb1_i - qb3_i);
+                final double y3_r = qt0_r + qt2_r;
+                final double y3_i = qt0_i + qt2_i;
+                final double y7_r = qt1_r - qt3_i;
+                final double y7_i = qt1_i + qt3_r;
+                final double y11_r = qt0_r - qt2_r;
+                final double y11_i = qt0_i - qt2_i;
+                final double y15_r = qt1_r + qt3_i;
+                final double y15_i = qt1_i - qt3_r;
+                ret[j] = y0_r;
+                ret[j + 1] = y0_i;
+                int jdj = j;
+                jdj += dj;
+                ret[jdj] = twids[0] * y1_r + sign * twids[1] * y1_i;
+                ret[jdj + 1] = twids[0] * y1_i - sign * twids[1] * y1_r;
+                jdj += dj;
+                ret[jdj] = twids[2] * y2_r + sign * twids[3] * y2_i;
+                ret[jdj + 1] = twids[2] * y2_i - sign * twids[3] * y2_r;
+                jdj += dj;
+                ret[jdj] = twids[4] * y3_r + sign * twids[5] * y3_i;
+                ret[jdj + 1] = twids[4] * y3_i - sign * twids[5] * y3_r;
+                jdj += dj;
+                ret[jdj] = twids[6] * y4_r + sign * twids[7] * y4_i;
+                ret[jdj + 1] = twids[6] * y4_i - sign * twids[7] * y4_r;
+                jdj += dj;
+                ret[jdj] = twids[8] * y5_r + sign * twids[9] * y5_i;
+                ret[jdj + 1] = twids[8] * y5_i - sign * twids[9] * y5_r;
+                jdj += dj;
+                ret[jdj] = twids[10] * y6_r + sign * twids[11] * y6_i;
+                ret[jdj + 1] = twids[10] * y6_i - sign * twids[11] * y6_r;
+                jdj += dj;
+                ret[jdj] = twids[12] * y7_r + sign * twids[13] * y7_i;
+                ret[jdj + 1] = twids[12] * y7_i - sign * twids[13] * y7_r;
+                jdj += dj;
+                ret[jdj] = twids[14] * y8_r + sign * twids[15] * y8_i;
+                ret[jdj + 1] = twids[14] * y8_i - sign * twids[15] * y8_r;
+                jdj += dj;
+                ret[jdj] = twids[16] * y9_r + sign * twids[17] * y9_i;
+                ret[jdj + 1] = twids[16] * y9_i - sign * twids[17] * y9_r;
+                jdj += dj;
+                ret[jdj] = twids[18] * y10_r + sign * twids[19] * y10_i;
+                ret[jdj + 1] = twids[18] * y10_i - sign * twids[19] * y10_r;
+                jdj += dj;
+                ret[jdj] = twids[20] * y11_r + sign * twids[21] * y11_i;
+                ret[jdj + 1] = twids[20] * y11_i - sign * twids[21] * y11_r;
+                jdj += dj;
+                ret[jdj] = twids[22] * y12_r + sign * twids[23] * y12_i;
+                ret[jdj + 1] = twids[22] * y12_i - sign * twids[23] * y12_r;
+                jdj += dj;
+                ret[jdj] = twids[24] * y13_r + sign * twids[25] * y13_i;
+                ret[jdj + 1] = twids[24] * y13_i - sign * twids[25] * y13_r;
+                jdj += dj;
+                ret[jdj] = twids[26] * y14_r + sign * twids[27] * y14_i;
+                ret[jdj + 1] = twids[26] * y14_i - sign * twids[27] * y14_r;
+                jdj += dj;
+                ret[jdj] = twids[28] * y15_r + sign * twids[29] * y15_i;
+                ret[jdj + 1] = twids[28] * y15_i - sign * twids[29] * y15_r;
+                j += retStride;
+            }
+            j += jstep;
+        }
+    }
+
+    /**
+     * Compute the transform using Bluestein's algorithm, which expresses the
+     * DFT of length n as a convolution with a chirp that is evaluated using
+     * power of 2 transforms.
+     *
+     * @param data
+     * @param offset
+     * @param stride
+     * @param sign
+     */
+    private void bluesteinTransform(final double data[], final int offset,
+            final int stride, final int sign) {
+        final int m = bluestein.m;
+        final double chirp[] = bluestein.chirp;
+        final double filter[] = (sign < 0) ? bluestein.forwardFilter : bluestein.inverseFilter;
+        final double work[] = scratch;
+        for (int k = 0; k < n; k++) {
+            final int k2 = 2 * k;
+            final int index = offset + stride * k;
+            final double x_r = data[index];
+            final double x_i = data[index + 1];
+            final double c_r = chirp[k2];
+            final double c_i = sign * chirp[k2 + 1];
+            work[k2] = x_r * c_r - x_i * c_i;
+            work[k2 + 1] = x_r * c_i + x_i * c_r;
+        }
+        for (int k = 2 * n; k < 2 * m; k++) {
+            work[k] = 0.0;
+        }
+        bluesteinFFT.fft(work, 0, 2);
+        for (int k = 0; k < m; k++) {
+            final int k2 = 2 * k;
+            final double x_r = work[k2];
+            final double x_i = work[k2 + 1];
+            final double f_r = filter[k2];
+            final double f_i = filter[k2 + 1];
+            work[k2] = x_r * f_r - x_i * f_i;
+            work[k2 + 1] = x_r * f_i + x_i * f_r;
+        }
+        bluesteinFFT.ifft(work, 0, 2);
+        for (int k = 0; k < n; k++) {
+            final int k2 = 2 * k;
+            final int index = offset + stride * k;
+            final double x_r = work[k2];
+            final double x_i = work[k2 + 1];
+            final double c_r = chirp[k2];
+            final double c_i = sign * chirp[k2 + 1];
+            data[index] = x_r * c_r - x_i * c_i;
+            data[index + 1] = x_r * c_i + x_i * c_r;
+        }
+    }
+
     /**
      * Note that passOdd is only intended for odd factors (and fails for even
      * factors).
@@ -1104,9 +1762,11 @@ public class Complex {
      * Compute twiddle factors. These are trigonometric constants that depend on
      * the factoring of n.
      *
+     * @param n the data length.
+     * @param factors the factors of n.
      * @return twiddle factors.
      */
-    private double[][][] wavetable() {
+    private static double[][][] wavetable(int n, int factors[]) {
         if (n < 2) {
             return null;
         }
@@ -1148,4 +1808,98 @@ public class Complex {
     private static final double cos2PI_7 = cos(2.0 * PI / 7.0);
     private static final double cos4PI_7 = cos(4.0 * PI / 7.0);
     private static final double cos6PI_7 = cos(6.0 * PI / 7.0);
+    private static final double sqrt2_2 = sqrt(2.0) / 2.0;
+    private static final double cos2PI_16[] = new double[8];
+    private static final double sin2PI_16[] = new double[8];
+
+    static {
+        for (int i = 0; i < 8; i++) {
+            cos2PI_16[i] = cos(2.0 * PI * i / 16.0);
+            sin2PI_16[i] = sin(2.0 * PI * i / 16.0);
+        }
+    }
+
+    /**
+     * Factors and twiddle factors for one data length, shared by all
+     * instances of that length.
+     */
+    private static class Plan {
+
+        private final int factors[];
+        private final double twiddle[][][];
+        private final Bluestein bluestein;
+
+        Plan(int n, boolean tinker) {
+            factors = factor(n, tinker);
+            int largest = 0;
+            for (int factor : factors) {
+                largest = Math.max(largest, factor);
+            }
+            if (!tinker && largest > maxMixedRadixPrime) {
+                twiddle = null;
+                bluestein = new Bluestein(n);
+            } else {
+                twiddle = wavetable(n, factors);
+                bluestein = null;
+            }
+        }
+    }
+
+    /**
+     * The chirp and its transformed convolution filters for Bluestein's
+     * algorithm.
+     */
+    private static class Bluestein {
+
+        /**
+         * Power of 2 convolution length (m .GE. 2n - 1).
+         */
+        private final int m;
+        /**
+         * The chirp exp(i PI k^2 / n) for k = 0 .. n-1.
+         */
+        private final double chirp[];
+        private final double forwardFilter[];
+        private final double inverseFilter[];
+
+        Bluestein(int n) {
+            int size = 1;
+            while (size < 2 * n - 1) {
+                size *= 2;
+            }
+            m = size;
+            chirp = new double[2 * n];
+            for (int k = 0; k < n; k++) {
+                // Reduce k^2 modulo 2n to preserve precision of the angle.
+                long k2 = ((long) k * (long) k) % (2L * n);
+                double theta = PI * k2 / n;
+                chirp[2 * k] = cos(theta);
+                chirp[2 * k + 1] = sin(theta);
+            }
+            Complex fft = new Complex(m, false);
+            forwardFilter = filter(n, -1, fft);
+            inverseFilter = filter(n, 1, fft);
+        }
+
+        /**
+         * Transform the conjugate chirp, including the 1/m normalization of
+         * the inverse transform.
+         */
+        private double[] filter(int n, int sign, Complex fft) {
+            double f[] = new double[2 * m];
+            double norm = 1.0 / m;
+            f[0] = norm * chirp[0];
+            f[1] = -sign * norm * chirp[1];
+            for (int k = 1; k < n; k++) {
+                double c_r = norm * chirp[2 * k];
+                double c_i = -sign * norm * chirp[2 * k + 1];
+                f[2 * k] = c_r;
+                f[2 * k + 1] = c_i;
+                f[2 * (m - k)] = c_r;
+                f[2 * (m - k) + 1] = c_i;
+            }
+            fft.fft(f, 0, 2);
+            return f;
+        }
+    }
 }
@@ -0,0 +1,352 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.numerics.fft;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.rit.pj.IntegerForLoop;
+import edu.rit.pj.IntegerSchedule;
+import edu.rit.pj.ParallelRegion;
+import edu.rit.pj.ParallelTeam;
+
+/**
+ * Compute the 3D FFT of complex, double precision input using cache blocked
+ * passes. The data layout is the same as for {@link Complex3DParallel}.
+ * <p>
+ * The X transforms are unit stride. For the Y and Z passes, a tile of adjacent
+ * X columns is copied (transposed) into a thread local buffer of contiguous
+ * pencils, each pencil is transformed with unit stride, and the tile is copied
+ * back. Each copy reads and writes runs of contiguous complex values, which
+ * avoids the cache and TLB misses of long strided transforms for large grids.
+ *
+ * @author Michael J. Schnieders
+ *
+ * @since 1.0
+ *
+ * @see Complex3DParallel
+ */
+public class Complex3DBlocked extends Complex3DParallel {
+
+    private static final Logger logger = Logger.getLogger(Complex3DBlocked.class.getName());
+
+    /**
+     * The default number of X columns per tile (8 complex values are 128
+     * bytes, or two cache lines).
+     */
+    public static final int DEFAULT_TILE = 8;
+
+    private final int nX, nY, nZ;
+    private final int nY2, nZ2;
+    private final int strideX, strideY, strideZ;
+    private final int threadCount;
+    private final ParallelTeam parallelTeam;
+    private final int tile;
+    private final BlockedRegion blockedRegion;
+
+    /**
+     * Initialize the blocked 3D FFT for a complex 3D matrix.
+     *
+     * @param nX X-dimension.
+     * @param nY Y-dimension.
+     * @param nZ Z-dimension.
+     * @param parallelTeam A ParallelTeam instance.
+     */
+    public Complex3DBlocked(int nX, int nY, int nZ, ParallelTeam parallelTeam) {
+        this(nX, nY, nZ, parallelTeam, null, DEFAULT_TILE);
+    }
+
+    /**
+     * Initialize the blocked 3D FFT for a complex 3D matrix.
+     *
+     * @param nX X-dimension.
+     * @param nY Y-dimension.
+     * @param nZ Z-dimension.
+     * @param parallelTeam A ParallelTeam instance.
+     * @param integerSchedule The IntegerSchedule to use.
+     * @param tile The number of X columns transformed together.
+     */
+    public Complex3DBlocked(int nX, int nY, int nZ, ParallelTeam parallelTeam,
+            IntegerSchedule integerSchedule, int tile) {
+        super(nX, nY, nZ, parallelTeam, integerSchedule);
+        this.nX = nX;
+        this.nY = nY;
+        this.nZ = nZ;
+        this.parallelTeam = parallelTeam;
+        nY2 = 2 * nY;
+        nZ2 = 2 * nZ;
+        strideX = 2;
+        strideY = 2 * nX;
+        strideZ = strideY * nY;
+        threadCount = parallelTeam.getThreadCount();
+        this.tile = Math.max(1, Math.min(tile, nX));
+        blockedRegion = new BlockedRegion();
+    }
+
+    /**
+     * Compute the 3D FFT in parallel.
+     *
+     * @param input The input array must be of size 2 * nX * nY * nZ.
+     */
+    @Override
+    public void fft(final double input[]) {
+        execute(input, true, false, false, " Fatal exception evaluating the FFT.\n");
+    }
+
+    /**
+     * Compute the inverse 3D FFT in parallel.
+     *
+     * @param input The input array must be of size 2 * nX * nY * nZ.
+     */
+    @Override
+    public void ifft(final double input[]) {
+        execute(input, false, false, true, " Fatal exception evaluating the inverse FFT.\n");
+    }
+
+    /**
+     * Compute the 3D FFT, perform a multiplication in reciprocal space, and the
+     * inverse 3D FFT all in parallel.
+     *
+     * @param input The input array must be of size 2 * nX * nY * nZ.
+     */
+    @Override
+    public void convolution(final double input[]) {
+        execute(input, true, true, true, " Fatal exception evaluating a convolution.\n");
+    }
+
+    private void execute(double input[], boolean forward, boolean multiply,
+            boolean inverse, String message) {
+        this.input = input;
+        blockedRegion.forward = forward;
+        blockedRegion.multiply = multiply;
+        blockedRegion.inverse = inverse;
+        try {
+            parallelTeam.execute(blockedRegion);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, message, e);
+        }
+    }
+
+    /**
+     * The X and Y passes are parallelized over Z-planes, while the Z pass is
+     * parallelized over Y.
+     */
+    private class BlockedRegion extends ParallelRegion {
+
+        boolean forward, multiply, inverse;
+        private final BlockedXYLoop xyLoop[];
+        private final BlockedZLoop zLoop[];
+
+        BlockedRegion() {
+            xyLoop = new BlockedXYLoop[threadCount];
+            zLoop = new BlockedZLoop[threadCount];
+            for (int i = 0; i < threadCount; i++) {
+                xyLoop[i] = new BlockedXYLoop();
+                zLoop[i] = new BlockedZLoop();
+            }
+        }
+
+        @Override
+        public void run() {
+            int threadIndex = getThreadIndex();
+            long convolutionTime[] = getTimings();
+            boolean conv = forward && inverse;
+            if (conv) {
+                convolutionTime[threadIndex] -= System.nanoTime();
+            }
+            try {
+                BlockedXYLoop xy = xyLoop[threadIndex];
+                BlockedZLoop z = zLoop[threadIndex];
+                if (forward) {
+                    xy.inverse = false;
+                    execute(0, nZ - 1, xy);
+                }
+                z.forward = forward;
+                z.multiply = multiply;
+                z.inverse = inverse;
+                execute(0, nY - 1, z);
+                if (inverse) {
+                    xy.inverse = true;
+                    execute(0, nZ - 1, xy);
+                }
+            } catch (Exception e) {
+                logger.severe(e.toString());
+            }
+            if (conv) {
+                convolutionTime[threadIndex] += System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Unit stride X transforms followed by tiled Y transforms for each Z-plane
+     * (or the reverse for the inverse transform).
+     */
+    private class BlockedXYLoop extends IntegerForLoop {
+
+        boolean inverse;
+        private final double work[];
+        private Complex localFFTX;
+        private Complex localFFTY;
+
+        BlockedXYLoop() {
+            work = new double[tile * nY2];
+        }
+
+        @Override
+        public IntegerSchedule schedule() {
+            return getSchedule();
+        }
+
+        @Override
+        public void start() {
+            localFFTX = getFFTX(getThreadIndex());
+            localFFTY = getFFTY(getThreadIndex());
+        }
+
+        @Override
+        public void run(final int lb, final int ub) {
+            for (int z = lb; z <= ub; z++) {
+                final int plane = z * strideZ;
+                if (!inverse) {
+                    for (int offset = plane, y = 0; y < nY; y++, offset += strideY) {
+                        localFFTX.fft(input, offset, strideX);
+                    }
+                }
+                for (int x0 = 0; x0 < nX; x0 += tile) {
+                    final int width = Math.min(tile, nX - x0);
+                    final int base = plane + x0 * strideX;
+                    final int n = 2 * width;
+                    // Transpose the tile into contiguous Y pencils.
+                    for (int y = 0, row = base; y < nY; y++, row += strideY) {
+                        for (int t = 0, w = 2 * y; t < n; t += 2, w += nY2) {
+                            work[w] = input[row + t];
+                            work[w + 1] = input[row + t + 1];
+                        }
+                    }
+                    for (int t = 0, w = 0; t < width; t++, w += nY2) {
+                        if (inverse) {
+                            localFFTY.ifft(work, w, 2);
+                        } else {
+                            localFFTY.fft(work, w, 2);
+                        }
+                    }
+                    for (int y = 0, row = base; y < nY; y++, row += strideY) {
+                        for (int t = 0, w = 2 * y; t < n; t += 2, w += nY2) {
+                            input[row + t] = work[w];
+                            input[row + t + 1] = work[w + 1];
+                        }
+                    }
+                }
+                if (inverse) {
+                    for (int offset = plane, y = 0; y < nY; y++, offset += strideY) {
+                        localFFTX.ifft(input, offset, strideX);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Tiled Z transforms for each Y-row, with an optional multiplication by the
+     * reciprocal space array and inverse transform for convolutions.
+     */
+    private class BlockedZLoop extends IntegerForLoop {
+
+        boolean forward, multiply, inverse;
+        private final double work[];
+        private Complex localFFTZ;
+        private double recip[];
+
+        BlockedZLoop() {
+            work = new double[tile * nZ2];
+        }
+
+        @Override
+        public IntegerSchedule schedule() {
+            return getSchedule();
+        }
+
+        @Override
+        public void start() {
+            localFFTZ = getFFTZ(getThreadIndex());
+            recip = getRecip();
+        }
+
+        @Override
+        public void run(final int lb, final int ub) {
+            for (int y = lb; y <= ub; y++) {
+                for (int x0 = 0; x0 < nX; x0 += tile) {
+                    final int width = Math.min(tile, nX - x0);
+                    final int base = y * strideY + x0 * strideX;
+                    final int n = 2 * width;
+                    // Transpose the tile into contiguous Z pencils.
+                    for (int z = 0, row = base; z < nZ; z++, row += strideZ) {
+                        for (int t = 0, w = 2 * z; t < n; t += 2, w += nZ2) {
+                            work[w] = input[row + t];
+                            work[w + 1] = input[row + t + 1];
+                        }
+                    }
+                    for (int t = 0, w = 0; t < width; t++, w += nZ2) {
+                        if (forward) {
+                            localFFTZ.fft(work, w, 2);
+                        }
+                        if (multiply) {
+                            int index = (y * nX + x0 + t) * nZ;
+                            for (int i = w; i < w + nZ2; i += 2) {
+                                double r = recip[index++];
+                                work[i] *= r;
+                                work[i + 1] *= r;
+                            }
+                        }
+                        if (inverse) {
+                            localFFTZ.ifft(work, w, 2);
+                        }
+                    }
+                    for (int z = 0, row = base; z < nZ; z++, row += strideZ) {
+                        for (int t = 0, w = 2 * z; t < n; t += 2, w += nZ2) {
+                            input[row + t] = work[w];
+                            input[row + t + 1] = work[w + 1];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+}
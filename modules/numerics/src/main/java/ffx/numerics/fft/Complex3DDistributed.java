@@ -0,0 +1,638 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.numerics.fft;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.rit.mp.DoubleBuf;
+import edu.rit.pj.Comm;
+import edu.rit.pj.IntegerForLoop;
+import edu.rit.pj.IntegerSchedule;
+import edu.rit.pj.ParallelRegion;
+import edu.rit.pj.ParallelTeam;
+import edu.rit.util.Range;
+
+/**
+ * Compute the 3D FFT of complex, double precision input distributed across the
+ * processes of a {@link Comm} using a slab decomposition.
+ * <p>
+ * In real space each process owns a contiguous slab of Z-planes with the same
+ * layout as {@link Complex3DParallel}:
+ * <PRE>
+ * Re(d[x, y, z]) = slab[2 * (x + nX * (y + nY * (z - zStart)))]
+ * Im(d[x, y, z]) = slab[2 * (x + nX * (y + nY * (z - zStart))) + 1]
+ * </PRE>
+ * The X and Y transforms are local to each slab. An all-to-all transpose then
+ * gives each process a slab of Y-rows with all Z values, stored with Z fastest
+ * for unit stride Z transforms:
+ * <PRE>
+ * Re(D[x, y, z]) = reciprocal[2 * (z + nZ * (x + nX * (y - yStart)))]
+ * Im(D[x, y, z]) = reciprocal[2 * (z + nZ * (x + nX * (y - yStart))) + 1]
+ * </PRE>
+ * A convolution transposes back after the reciprocal space multiply and
+ * inverse Z transforms. The local work within each process is parallelized
+ * over a ParallelTeam.
+ * <p>
+ * Slab arrays may include extra halo planes after the owned Z-planes, which
+ * are used to spread and interpolate data near slab boundaries. See
+ * {@link #reduceHalo(double[], int)} and {@link #fillHalo(double[], int)}.
+ *
+ * @author Michael J. Schnieders
+ *
+ * @since 1.0
+ *
+ * @see Complex3DParallel
+ */
+public class Complex3DDistributed {
+
+    private static final Logger logger = Logger.getLogger(Complex3DDistributed.class.getName());
+    private final int nX, nY, nZ;
+    private final int rank, size;
+    private final Comm comm;
+    private final int zStart[], zCount[];
+    private final int yStart[], yCount[];
+    private final int myZStart, myZCount, myYStart, myYCount;
+    private final int planeSize;
+    private final double recip[];
+    private final double reciprocal[];
+    /**
+     * Transpose buffers for each process; forward sends from sendData and
+     * receives into recvData, the backward transpose reverses their roles.
+     */
+    private final double sendData[][], recvData[][];
+    private final DoubleBuf sendBuf[], recvBuf[];
+    private double haloData[];
+    private final int threadCount;
+    private final ParallelTeam parallelTeam;
+    private final IntegerSchedule schedule;
+    private final Complex fftX[], fftY[], fftZ[];
+    private final DistributedRegion region;
+    private double slab[];
+
+    /**
+     * Initialize the distributed 3D FFT.
+     *
+     * @param nX X-dimension.
+     * @param nY Y-dimension.
+     * @param nZ Z-dimension.
+     * @param comm The communicator whose processes share the grid.
+     * @param parallelTeam A ParallelTeam for local parallelization.
+     */
+    public Complex3DDistributed(int nX, int nY, int nZ, Comm comm, ParallelTeam parallelTeam) {
+        this(nX, nY, nZ, comm, comm.rank(), comm.size(), parallelTeam, null);
+    }
+
+    /**
+     * Initialize the distributed 3D FFT.
+     *
+     * @param nX X-dimension.
+     * @param nY Y-dimension.
+     * @param nZ Z-dimension.
+     * @param comm The communicator whose processes share the grid.
+     * @param parallelTeam A ParallelTeam for local parallelization.
+     * @param integerSchedule The IntegerSchedule to use.
+     */
+    public Complex3DDistributed(int nX, int nY, int nZ, Comm comm, ParallelTeam parallelTeam,
+            IntegerSchedule integerSchedule) {
+        this(nX, nY, nZ, comm, comm.rank(), comm.size(), parallelTeam, integerSchedule);
+    }
+
+    /**
+     * Initialize the distributed 3D FFT for the given process rank. Subclasses
+     * that override the communication methods may pass a null communicator.
+     *
+     * @param nX X-dimension.
+     * @param nY Y-dimension.
+     * @param nZ Z-dimension.
+     * @param comm The communicator whose processes share the grid.
+     * @param rank The rank of this process.
+     * @param size The number of processes.
+     * @param parallelTeam A ParallelTeam for local parallelization.
+     * @param integerSchedule The IntegerSchedule to use.
+     */
+    protected Complex3DDistributed(int nX, int nY, int nZ, Comm comm, int rank, int size,
+            ParallelTeam parallelTeam, IntegerSchedule integerSchedule) {
+        if (size > nY || size > nZ) {
+            throw new IllegalArgumentException(String.format(
+                    " %d processes cannot share a %d x %d x %d grid.", size, nX, nY, nZ));
+        }
+        this.nX = nX;
+        this.nY = nY;
+        this.nZ = nZ;
+        this.comm = comm;
+        this.rank = rank;
+        this.size = size;
+        this.parallelTeam = parallelTeam;
+        zStart = new int[size];
+        zCount = new int[size];
+        yStart = new int[size];
+        yCount = new int[size];
+        partition(nZ, zStart, zCount);
+        partition(nY, yStart, yCount);
+        myZStart = zStart[rank];
+        myZCount = zCount[rank];
+        myYStart = yStart[rank];
+        myYCount = yCount[rank];
+        planeSize = 2 * nX * nY;
+        recip = new double[nX * myYCount * nZ];
+        reciprocal = new double[2 * nX * myYCount * nZ];
+        sendData = new double[size][];
+        recvData = new double[size][];
+        sendBuf = new DoubleBuf[size];
+        recvBuf = new DoubleBuf[size];
+        for (int r = 0; r < size; r++) {
+            sendData[r] = new double[2 * nX * yCount[r] * myZCount];
+            recvData[r] = new double[2 * nX * myYCount * zCount[r]];
+            sendBuf[r] = DoubleBuf.buffer(sendData[r]);
+            recvBuf[r] = DoubleBuf.buffer(recvData[r]);
+        }
+        threadCount = parallelTeam.getThreadCount();
+        if (integerSchedule != null) {
+            schedule = integerSchedule;
+        } else {
+            schedule = IntegerSchedule.fixed();
+        }
+        fftX = new Complex[threadCount];
+        fftY = new Complex[threadCount];
+        fftZ = new Complex[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            fftX[i] = new Complex(nX);
+            fftY[i] = new Complex(nY);
+            fftZ[i] = new Complex(nZ);
+        }
+        region = new DistributedRegion();
+    }
+
+    /**
+     * Split n planes as evenly as possible.
+     */
+    private void partition(int n, int start[], int count[]) {
+        int base = n / size;
+        int extra = n % size;
+        int s = 0;
+        for (int r = 0; r < size; r++) {
+            count[r] = base + (r < extra ? 1 : 0);
+            start[r] = s;
+            s += count[r];
+        }
+    }
+
+    /**
+     * @return the first Z-plane owned by this process.
+     */
+    public int getZStart() {
+        return myZStart;
+    }
+
+    /**
+     * @return the number of Z-planes owned by this process.
+     */
+    public int getZCount() {
+        return myZCount;
+    }
+
+    /**
+     * @return the first Y-row of reciprocal space owned by this process.
+     */
+    public int getYStart() {
+        return myYStart;
+    }
+
+    /**
+     * @return the number of Y-rows of reciprocal space owned by this process.
+     */
+    public int getYCount() {
+        return myYCount;
+    }
+
+    /**
+     * Return the size of a slab array with the given number of halo planes.
+     *
+     * @param halo the number of halo planes.
+     * @return the slab array length.
+     */
+    public int getSlabSize(int halo) {
+        return planeSize * (myZCount + halo);
+    }
+
+    /**
+     * The reciprocal space data of this process after a call to
+     * {@link #fft(double[])}, with Z fastest.
+     *
+     * @return the local reciprocal space data.
+     */
+    public double[] getReciprocal() {
+        return reciprocal;
+    }
+
+    /**
+     * Set the reciprocal space multiplier for convolutions. The array covers
+     * the entire grid, with X fastest, and each process keeps its Y-rows.
+     *
+     * @param recip The reciprocal space array of size nX * nY * nZ.
+     */
+    public void setRecip(double recip[]) {
+        int index = 0;
+        for (int y = myYStart; y < myYStart + myYCount; y++) {
+            for (int x = 0; x < nX; x++) {
+                for (int z = 0; z < nZ; z++) {
+                    this.recip[index++] = recip[x + nX * (y + nY * z)];
+                }
+            }
+        }
+    }
+
+    /**
+     * Compute the forward 3D FFT of the slab, leaving the result in the local
+     * reciprocal space array.
+     *
+     * @param slab The Z-planes owned by this process.
+     */
+    public void fft(double slab[]) {
+        this.slab = slab;
+        execute(Phase.FORWARD_XY);
+        transpose(true);
+        execute(Phase.FORWARD_Z);
+    }
+
+    /**
+     * Compute the inverse 3D FFT of the local reciprocal space array into the
+     * slab.
+     *
+     * @param slab The Z-planes owned by this process.
+     */
+    public void ifft(double slab[]) {
+        this.slab = slab;
+        execute(Phase.INVERSE_Z);
+        transpose(false);
+        execute(Phase.INVERSE_XY);
+    }
+
+    /**
+     * Compute the 3D FFT, perform a multiplication in reciprocal space, and the
+     * inverse 3D FFT.
+     *
+     * @param slab The Z-planes owned by this process.
+     */
+    public void convolution(double slab[]) {
+        this.slab = slab;
+        execute(Phase.FORWARD_XY);
+        transpose(true);
+        execute(Phase.CONVOLUTION_Z);
+        transpose(false);
+        execute(Phase.INVERSE_XY);
+    }
+
+    /**
+     * Add the halo planes that follow the owned Z-planes into the processes
+     * that own them. Each process must own at least as many planes as the
+     * halo.
+     *
+     * @param slab The slab array, including halo planes.
+     * @param halo The number of halo planes.
+     */
+    public void reduceHalo(double slab[], int halo) {
+        if (halo <= 0) {
+            return;
+        }
+        checkHalo(halo);
+        int haloSize = planeSize * halo;
+        int haloStart = planeSize * myZCount;
+        if (size == 1) {
+            for (int i = 0; i < haloSize; i++) {
+                slab[i] += slab[haloStart + i];
+            }
+            return;
+        }
+        if (haloData == null || haloData.length < haloSize) {
+            haloData = new double[haloSize];
+        }
+        exchangeHalo(slab, haloStart, haloSize, (rank + 1) % size, (rank - 1 + size) % size);
+        for (int i = 0; i < haloSize; i++) {
+            slab[i] += haloData[i];
+        }
+    }
+
+    /**
+     * Copy the first Z-planes of each process into the halo planes of the
+     * preceding process.
+     *
+     * @param slab The slab array, including halo planes.
+     * @param halo The number of halo planes.
+     */
+    public void fillHalo(double slab[], int halo) {
+        if (halo <= 0) {
+            return;
+        }
+        checkHalo(halo);
+        int haloSize = planeSize * halo;
+        int haloStart = planeSize * myZCount;
+        if (size == 1) {
+            System.arraycopy(slab, 0, slab, haloStart, haloSize);
+            return;
+        }
+        if (haloData == null || haloData.length < haloSize) {
+            haloData = new double[haloSize];
+        }
+        exchangeHalo(slab, 0, haloSize, (rank - 1 + size) % size, (rank + 1) % size);
+        System.arraycopy(haloData, 0, slab, haloStart, haloSize);
+    }
+
+    private void exchangeHalo(double slab[], int offset, int length, int toRank, int fromRank) {
+        try {
+            sendReceive(slab, offset, length, toRank, haloData, fromRank);
+        } catch (IOException e) {
+            String message = " Fatal exception during the distributed FFT halo exchange.";
+            logger.log(Level.SEVERE, message, e);
+        }
+    }
+
+    private void checkHalo(int halo) {
+        for (int r = 0; r < size; r++) {
+            if (zCount[r] < halo) {
+                throw new IllegalArgumentException(String.format(
+                        " Process %d owns %d Z-planes, which is less than the halo of %d.",
+                        r, zCount[r], halo));
+            }
+        }
+    }
+
+    /**
+     * Exchange one buffer with every process.
+     *
+     * @param src The data to send to each process.
+     * @param dst The data received from each process.
+     * @throws IOException if an I/O error occurs.
+     */
+    protected void allToAll(DoubleBuf src[], DoubleBuf dst[]) throws IOException {
+        comm.allToAll(src, dst);
+    }
+
+    /**
+     * Send a range of data to one process while receiving from another.
+     *
+     * @param src The source array.
+     * @param offset The first source element.
+     * @param length The number of elements.
+     * @param toRank The destination process.
+     * @param dst The array to receive into, starting at element 0.
+     * @param fromRank The source process.
+     * @throws IOException if an I/O error occurs.
+     */
+    protected void sendReceive(double src[], int offset, int length, int toRank,
+            double dst[], int fromRank) throws IOException {
+        DoubleBuf srcBuf = DoubleBuf.sliceBuffer(src, new Range(offset, offset + length - 1));
+        DoubleBuf dstBuf = DoubleBuf.sliceBuffer(dst, new Range(0, length - 1));
+        comm.sendReceive(toRank, srcBuf, fromRank, dstBuf);
+    }
+
+    private void transpose(boolean forward) {
+        try {
+            if (forward) {
+                allToAll(sendBuf, recvBuf);
+            } else {
+                allToAll(recvBuf, sendBuf);
+            }
+        } catch (IOException e) {
+            String message = " Fatal exception during the distributed FFT transpose.";
+            logger.log(Level.SEVERE, message, e);
+        }
+    }
+
+    private void execute(Phase phase) {
+        region.phase = phase;
+        try {
+            parallelTeam.execute(region);
+        } catch (Exception e) {
+            String message = " Fatal exception evaluating the distributed FFT.";
+            logger.log(Level.SEVERE, message, e);
+        }
+    }
+
+    private enum Phase {
+
+        FORWARD_XY, FORWARD_Z, CONVOLUTION_Z, INVERSE_Z, INVERSE_XY
+    }
+
+    /**
+     * The XY phases are parallelized over the local Z-planes, while the Z
+     * phases are parallelized over the local Y-rows.
+     */
+    private class DistributedRegion extends ParallelRegion {
+
+        Phase phase;
+        private final XYLoop xyLoop[];
+        private final ZLoop zLoop[];
+
+        DistributedRegion() {
+            xyLoop = new XYLoop[threadCount];
+            zLoop = new ZLoop[threadCount];
+            for (int i = 0; i < threadCount; i++) {
+                xyLoop[i] = new XYLoop();
+                zLoop[i] = new ZLoop();
+            }
+        }
+
+        @Override
+        public void run() {
+            int threadIndex = getThreadIndex();
+            try {
+                switch (phase) {
+                    case FORWARD_XY:
+                    case INVERSE_XY:
+                        if (myZCount > 0) {
+                            execute(0, myZCount - 1, xyLoop[threadIndex]);
+                        }
+                        break;
+                    default:
+                        if (myYCount > 0) {
+                            execute(0, myYCount - 1, zLoop[threadIndex]);
+                        }
+                }
+            } catch (Exception e) {
+                logger.severe(e.toString());
+            }
+        }
+    }
+
+    /**
+     * X and Y transforms of local Z-planes, followed by packing the plane for
+     * the forward transpose (or unpacking followed by the inverse transforms).
+     */
+    private class XYLoop extends IntegerForLoop {
+
+        private Complex localFFTX, localFFTY;
+
+        @Override
+        public IntegerSchedule schedule() {
+            return schedule;
+        }
+
+        @Override
+        public void start() {
+            localFFTX = fftX[getThreadIndex()];
+            localFFTY = fftY[getThreadIndex()];
+        }
+
+        @Override
+        public void run(final int lb, final int ub) {
+            final boolean forward = region.phase == Phase.FORWARD_XY;
+            for (int zl = lb; zl <= ub; zl++) {
+                final int plane = zl * planeSize;
+                if (forward) {
+                    for (int y = 0; y < nY; y++) {
+                        localFFTX.fft(slab, plane + 2 * nX * y, 2);
+                    }
+                    for (int x = 0; x < nX; x++) {
+                        localFFTY.fft(slab, plane + 2 * x, 2 * nX);
+                    }
+                }
+                /**
+                 * The block for process r holds its Y-rows of this plane.
+                 */
+                for (int r = 0; r < size; r++) {
+                    final double buffer[] = sendData[r];
+                    for (int yr = 0; yr < yCount[r]; yr++) {
+                        final int from = plane + 2 * nX * (yStart[r] + yr);
+                        final int to = 2 * nX * (zl + myZCount * yr);
+                        if (forward) {
+                            System.arraycopy(slab, from, buffer, to, 2 * nX);
+                        } else {
+                            System.arraycopy(buffer, to, slab, from, 2 * nX);
+                        }
+                    }
+                }
+                if (!forward) {
+                    for (int x = 0; x < nX; x++) {
+                        localFFTY.ifft(slab, plane + 2 * x, 2 * nX);
+                    }
+                    for (int y = 0; y < nY; y++) {
+                        localFFTX.ifft(slab, plane + 2 * nX * y, 2);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Unpack the local Y-rows from the transpose, then apply the Z transforms,
+     * reciprocal space multiplication and inverse Z transforms as required.
+     */
+    private class ZLoop extends IntegerForLoop {
+
+        private Complex localFFTZ;
+
+        @Override
+        public IntegerSchedule schedule() {
+            return schedule;
+        }
+
+        @Override
+        public void start() {
+            localFFTZ = fftZ[getThreadIndex()];
+        }
+
+        @Override
+        public void run(final int lb, final int ub) {
+            final Phase phase = region.phase;
+            final boolean forward = phase != Phase.INVERSE_Z;
+            final boolean inverse = phase != Phase.FORWARD_Z;
+            final int nZ2 = 2 * nZ;
+            for (int yl = lb; yl <= ub; yl++) {
+                if (forward) {
+                    unpack(yl);
+                }
+                for (int x = 0; x < nX; x++) {
+                    final int offset = nZ2 * (x + nX * yl);
+                    if (forward) {
+                        localFFTZ.fft(reciprocal, offset, 2);
+                    }
+                    if (phase == Phase.CONVOLUTION_Z) {
+                        int index = nZ * (x + nX * yl);
+                        for (int i = offset; i < offset + nZ2; i += 2) {
+                            final double r = recip[index++];
+                            reciprocal[i] *= r;
+                            reciprocal[i + 1] *= r;
+                        }
+                    }
+                    if (inverse) {
+                        localFFTZ.ifft(reciprocal, offset, 2);
+                    }
+                }
+                if (inverse) {
+                    pack(yl);
+                }
+            }
+        }
+
+        /**
+         * Gather the Z-planes of process r for local Y-row yl.
+         */
+        private void unpack(int yl) {
+            for (int r = 0; r < size; r++) {
+                final double buffer[] = recvData[r];
+                for (int zr = 0; zr < zCount[r]; zr++) {
+                    final int z = zStart[r] + zr;
+                    int from = 2 * nX * (zr + zCount[r] * yl);
+                    for (int x = 0; x < nX; x++, from += 2) {
+                        final int to = 2 * (z + nZ * (x + nX * yl));
+                        reciprocal[to] = buffer[from];
+                        reciprocal[to + 1] = buffer[from + 1];
+                    }
+                }
+            }
+        }
+
+        private void pack(int yl) {
+            for (int r = 0; r < size; r++) {
+                final double buffer[] = recvData[r];
+                for (int zr = 0; zr < zCount[r]; zr++) {
+                    final int z = zStart[r] + zr;
+                    int to = 2 * nX * (zr + zCount[r] * yl);
+                    for (int x = 0; x < nX; x++, to += 2) {
+                        final int from = 2 * (z + nZ * (x + nX * yl));
+                        buffer[to] = reciprocal[from];
+                        buffer[to + 1] = reciprocal[from + 1];
+                    }
+                }
+            }
+        }
+    }
+}
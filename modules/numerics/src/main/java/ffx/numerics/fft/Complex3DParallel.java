@@ -160,6 +160,54 @@ public class Complex3DParallel {
         return convolutionTime;
     }
 
+    /**
+     * The schedule used by the parallel loops.
+     *
+     * @return the IntegerSchedule.
+     */
+    protected IntegerSchedule getSchedule() {
+        return schedule;
+    }
+
+    /**
+     * The reciprocal space array in the order used by the convolution.
+     *
+     * @return the reordered reciprocal space array.
+     */
+    protected double[] getRecip() {
+        return recip;
+    }
+
+    /**
+     * Get the 1D FFT along X owned by a thread.
+     *
+     * @param threadIndex the thread index.
+     * @return the 1D FFT instance.
+     */
+    protected Complex getFFTX(int threadIndex) {
+        return fftX[threadIndex];
+    }
+
+    /**
+     * Get the 1D FFT along Y owned by a thread.
+     *
+     * @param threadIndex the thread index.
+     * @return the 1D FFT instance.
+     */
+    protected Complex getFFTY(int threadIndex) {
+        return fftY[threadIndex];
+    }
+
+    /**
+     * Get the 1D FFT along Z owned by a thread.
+     *
+     * @param threadIndex the thread index.
+     * @return the 1D FFT instance.
+     */
+    protected Complex getFFTZ(int threadIndex) {
+        return fftZ[threadIndex];
+    }
+
     /**
      * Compute the 3D FFT in pararallel.
      *
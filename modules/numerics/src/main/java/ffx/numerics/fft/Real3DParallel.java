@@ -173,7 +173,21 @@ public class Real3DParallel {
      * @since 1.0
      */
     public void convolution(final double input[]) {
+        convolution(input, 0);
+    }
+
+    /**
+     * Compute a convolution in parallel of data that begins at the given offset
+     * into the input array, which allows several real grids to be stored in
+     * one array.
+     *
+     * @param input The input array must be of size offset + (nX + 2) * nY * nZ.
+     * @param offset The index of the first element of the grid.
+     * @since 1.0
+     */
+    public void convolution(final double input[], final int offset) {
         parallelConvolution.input = input;
+        parallelConvolution.inputOffset = offset;
         try {
             parallelTeam.execute(parallelConvolution);
         } catch (Exception e) {
@@ -415,6 +429,7 @@ public class Real3DParallel {
     private class ParallelConvolution extends ParallelRegion {
 
         public double input[];
+        public int inputOffset = 0;
         private final int nZm1, nYm1, nX1nZ;
         private final FFTXYLoop fftXYLoop[];
         private final FFTZ_Multiply_IFFTZLoop fftZ_Multiply_ifftZLoop[];
@@ -468,10 +483,10 @@ public class Real3DParallel {
             @Override
             public void run(final int lb, final int ub) {
                 for (int stride = nextY, z = lb; z <= ub; z++) {
-                    for (int offset = z * nextZ, y = 0; y < nY; y++, offset += nextY) {
+                    for (int offset = inputOffset + z * nextZ, y = 0; y < nY; y++, offset += nextY) {
                         fftX.fft(input, offset);
                     }
-                    for (int offset = z * nextZ, x = 0; x < nX1; x++, offset += nextX) {
+                    for (int offset = inputOffset + z * nextZ, x = 0; x < nX1; x++, offset += nextX) {
                         fftY.fft(input, offset, stride);
                     }
                 }
@@ -497,7 +512,7 @@ public class Real3DParallel {
             @Override
             public void run(final int lb, final int ub) {
                 int index = lb * nX1nZ;
-                for (int offset = lb * nextY, y = lb; y <= ub; y++) {
+                for (int offset = inputOffset + lb * nextY, y = lb; y <= ub; y++) {
                     for (int x = 0; x < nX1; x++, offset += nextX) {
                         for (int z = offset, i = 0; i < nZ2; i += 2, z += nextZ) {
                             work[i] = input[z];
@@ -538,10 +553,10 @@ public class Real3DParallel {
             @Override
             public void run(final int lb, final int ub) {
                 for (int stride = nextY, z = lb; z <= ub; z++) {
-                    for (int offset = z * nextZ, x = 0; x < nX1; x++, offset += nextX) {
+                    for (int offset = inputOffset + z * nextZ, x = 0; x < nX1; x++, offset += nextX) {
                         fftY.ifft(input, offset, stride);
                     }
-                    for (int offset = z * nextZ, y = 0; y < nY; y++, offset += nextY) {
+                    for (int offset = inputOffset + z * nextZ, y = 0; y < nY; y++, offset += nextY) {
                         fftX.ifft(input, offset);
                     }
                 }
@@ -0,0 +1,117 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.numerics;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test the BlockedDoubleArray against the MultiDoubleArray.
+ *
+ * @author Michael J. Schnieders
+ */
+public class BlockedDoubleArrayTest {
+
+    private static final double tolerance = 1.0e-12;
+    private static final int nThreads = 4;
+    private static final int size = 1003;
+
+    /**
+     * Scatter random values from each thread into a sparse subset of entries,
+     * then compare reduced values over several ranges and evaluations.
+     */
+    @Test
+    public void testSparseReduction() {
+        Random random = new Random(1);
+        BlockedDoubleArray blocked = new BlockedDoubleArray(nThreads, size);
+        MultiDoubleArray multi = new MultiDoubleArray(nThreads, size);
+        for (int eval = 0; eval < 3; eval++) {
+            for (int t = 0; t < nThreads; t++) {
+                blocked.reset(t, 0, size - 1);
+                multi.reset(t, 0, size - 1);
+            }
+            // Each evaluation touches a different window of the array.
+            int offset = eval * 300;
+            for (int t = 0; t < nThreads; t++) {
+                for (int j = 0; j < 100; j++) {
+                    int index = offset + random.nextInt(200);
+                    double value = random.nextDouble();
+                    if (j % 2 == 0) {
+                        blocked.add(t, index, value);
+                        multi.add(t, index, value);
+                    } else {
+                        blocked.sub(t, index, value);
+                        multi.sub(t, index, value);
+                    }
+                }
+            }
+            // Reduce over ranges that do not align with block boundaries.
+            int bounds[] = {0, 13, 250, 517, 901, size};
+            for (int r = 0; r < bounds.length - 1; r++) {
+                blocked.reduce(bounds[r], bounds[r + 1] - 1);
+                multi.reduce(bounds[r], bounds[r + 1] - 1);
+            }
+            for (int i = 0; i < size; i++) {
+                assertEquals(" Index " + i, multi.get(i), blocked.get(i), tolerance);
+            }
+        }
+    }
+
+    /**
+     * Only touched blocks should be tracked.
+     */
+    @Test
+    public void testDirtyBlocks() {
+        BlockedDoubleArray blocked = new BlockedDoubleArray(nThreads, size);
+        blocked.add(1, 0, 1.0);
+        blocked.add(1, 7, 1.0);
+        blocked.add(1, 8, 1.0);
+        blocked.add(1, size - 1, 1.0);
+        assertEquals(3, blocked.getDirtyBlockCount(1));
+        blocked.reduce(0, size - 1);
+        assertEquals(3, blocked.getDirtyBlockCount(0));
+        assertEquals(1.0, blocked.get(size - 1), tolerance);
+        blocked.reset(0, 0, size - 1);
+        blocked.reset(1, 0, size - 1);
+        assertEquals(0, blocked.getDirtyBlockCount(0));
+        assertEquals(0.0, blocked.get(size - 1), tolerance);
+    }
+
+}
@@ -0,0 +1,164 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.numerics;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import ffx.numerics.MultipoleTensor.OPERATOR;
+
+/**
+ * Test the tabulated real space Ewald coefficients against direct evaluation.
+ *
+ * @author Michael J. Schnieders
+ */
+@RunWith(Parameterized.class)
+public class EwaldTableTest {
+
+    /**
+     * Error tolerance relative to the bare Coulomb coefficient.
+     */
+    private static final double tolerance = 1.0e-10;
+
+    @Parameters
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][]{
+            {"Ewald 0.30; 9.0 A cutoff", 0.30, 9.0},
+            {"Ewald 0.45; 7.0 A cutoff", 0.45, 7.0},
+            {"Ewald 0.545; 9.0 A cutoff", 0.545, 9.0},
+            {"Ewald 0.70; 6.0 A cutoff", 0.70, 6.0}
+        });
+    }
+
+    private final String info;
+    private final double aewald;
+    private final double cutoff;
+    private final int order = 6;
+
+    public EwaldTableTest(String info, double aewald, double cutoff) {
+        this.info = info;
+        this.aewald = aewald;
+        this.cutoff = cutoff;
+    }
+
+    /**
+     * The error measured when the table is built should meet the documented
+     * bound.
+     */
+    @Test
+    public void maxErrorTest() {
+        EwaldTable table = EwaldTable.getTable(aewald, cutoff, order);
+        assertTrue(info + " max error " + table.getMaxError(), table.getMaxError() < tolerance);
+    }
+
+    /**
+     * Compare interpolated coefficients with direct evaluation over the full
+     * range of the table.
+     */
+    @Test
+    public void interpolateTest() {
+        EwaldTable table = EwaldTable.getTable(aewald, cutoff, order);
+        double expected[] = new double[order + 1];
+        double actual[] = new double[order + 1];
+        for (double r = 0.05; r <= cutoff; r += 0.0137) {
+            EwaldTable.bn(aewald, r, expected);
+            assertTrue(info, table.interpolate(r, actual));
+            double coulomb = 1.0 / r;
+            for (int n = 0; n <= order; n++) {
+                assertEquals(info + " B" + n + " at " + r, expected[n] / coulomb,
+                        actual[n] / coulomb, tolerance);
+                coulomb *= (2 * n + 1) / (r * r);
+            }
+        }
+        // Separations beyond the table are left to the caller.
+        assertFalse(info, table.interpolate(cutoff + 1.0, actual));
+    }
+
+    /**
+     * Check the analytic derivatives of the screening functions by finite
+     * differences.
+     */
+    @Test
+    public void screeningDerivativeTest() {
+        double g[] = new double[order + 1];
+        double dg[] = new double[order + 1];
+        double gp[] = new double[order + 1];
+        double gm[] = new double[order + 1];
+        double dummy[] = new double[order + 1];
+        double step = 1.0e-5;
+        for (double r = 0.0; r <= cutoff; r += 0.5) {
+            EwaldTable.screening(aewald, r, g, dg);
+            EwaldTable.screening(aewald, r + step, gp, dummy);
+            EwaldTable.screening(aewald, r - step, gm, dummy);
+            for (int n = 0; n <= order; n++) {
+                double fd = (gp[n] - gm[n]) / (2.0 * step);
+                assertEquals(info + " g" + n + "' at " + r, fd, dg[n], 1.0e-6 * (1.0 + Math.abs(fd)));
+            }
+        }
+    }
+
+    /**
+     * Screened Coulomb tensors built from the table should match those built
+     * from erfc and exp.
+     */
+    @Test
+    public void multipoleTensorTest() {
+        int tensorOrder = 5;
+        int count = MultipoleTensor.tensorCount(tensorOrder);
+        double r[] = {1.1, 1.2, 1.3};
+        double expected[] = new double[count];
+        double actual[] = new double[count];
+        MultipoleTensor multipoleTensor = new MultipoleTensorQI(OPERATOR.SCREENED_COULOMB, tensorOrder, aewald);
+        multipoleTensor.noStorageRecursion(r, expected);
+        multipoleTensor.setEwaldTable(EwaldTable.getTable(aewald, cutoff, tensorOrder));
+        multipoleTensor.noStorageRecursion(r, actual);
+        // Tensor elements combine several source terms of either sign.
+        double tensorTolerance = 10.0 * tolerance;
+        for (int i = 0; i < count; i++) {
+            assertEquals(info + " @ " + i, expected[i], actual[i], tensorTolerance * (1.0 + Math.abs(expected[i])));
+        }
+    }
+}
@@ -46,6 +46,7 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 @RunWith(Suite.class)
 @SuiteClasses({ErfTest.class, SquareRootTest.class,
-    MultipoleTensorTest.class, UniformBSplineTest.class})
+    MultipoleTensorTest.class, UniformBSplineTest.class,
+    BlockedDoubleArrayTest.class, EwaldTableTest.class})
 public class NumericsTestSuite {
 }
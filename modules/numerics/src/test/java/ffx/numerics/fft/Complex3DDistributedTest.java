@@ -0,0 +1,276 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.numerics.fft;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import static org.junit.Assert.assertEquals;
+
+import edu.rit.mp.DoubleBuf;
+import edu.rit.pj.ParallelTeam;
+
+/**
+ * Test the distributed 3D FFT against Complex3DParallel. Several processes are
+ * simulated by threads that exchange data in memory.
+ *
+ * @author Michael J. Schnieders
+ */
+@RunWith(Parameterized.class)
+public class Complex3DDistributedTest {
+
+    private final String info;
+    private final int nX, nY, nZ;
+    private final int nProcs;
+    private final int halo = 4;
+    private final double tolerance = 1.0e-10;
+    private final double data[];
+    private final double recip[];
+
+    @Parameters
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][]{
+            {"Test 16x18x20, 1 process", 16, 18, 20, 1},
+            {"Test 16x18x20, 3 processes", 16, 18, 20, 3},
+            {"Test 20x15x24, 4 processes", 20, 15, 24, 4}
+        });
+    }
+
+    public Complex3DDistributedTest(String info, int nX, int nY, int nZ, int nProcs) {
+        this.info = info;
+        this.nX = nX;
+        this.nY = nY;
+        this.nZ = nZ;
+        this.nProcs = nProcs;
+        Random random = new Random(1);
+        data = new double[2 * nX * nY * nZ];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextDouble() - 0.5;
+        }
+        recip = new double[nX * nY * nZ];
+        for (int i = 0; i < recip.length; i++) {
+            recip[i] = random.nextDouble();
+        }
+    }
+
+    /**
+     * In memory exchange among simulated processes.
+     */
+    private class Exchange {
+
+        final CyclicBarrier barrier = new CyclicBarrier(nProcs);
+        final DoubleBuf posted[][] = new DoubleBuf[nProcs][];
+        final double postedArray[][] = new double[nProcs][];
+        final int postedOffset[] = new int[nProcs];
+    }
+
+    private class SimulatedProcess extends Complex3DDistributed {
+
+        private final int rank;
+        private final Exchange exchange;
+
+        SimulatedProcess(int rank, Exchange exchange, ParallelTeam team) {
+            super(nX, nY, nZ, null, rank, nProcs, team, null);
+            this.rank = rank;
+            this.exchange = exchange;
+        }
+
+        @Override
+        protected void allToAll(DoubleBuf src[], DoubleBuf dst[]) {
+            try {
+                exchange.posted[rank] = src;
+                exchange.barrier.await();
+                for (int r = 0; r < nProcs; r++) {
+                    dst[r].copy(exchange.posted[r][rank]);
+                }
+                exchange.barrier.await();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        protected void sendReceive(double src[], int offset, int length, int toRank,
+                double dst[], int fromRank) {
+            try {
+                exchange.postedArray[rank] = src;
+                exchange.postedOffset[rank] = offset;
+                exchange.barrier.await();
+                System.arraycopy(exchange.postedArray[fromRank],
+                        exchange.postedOffset[fromRank], dst, 0, length);
+                exchange.barrier.await();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Run one operation on each simulated process and gather the slabs.
+     */
+    private double[] distributed(final boolean convolution) throws Exception {
+        final Exchange exchange = new Exchange();
+        final double result[] = new double[data.length];
+        final int planeSize = 2 * nX * nY;
+        Thread threads[] = new Thread[nProcs];
+        final Exception failure[] = new Exception[1];
+        for (int p = 0; p < nProcs; p++) {
+            final int rank = p;
+            threads[p] = new Thread(() -> {
+                ParallelTeam team = new ParallelTeam(1);
+                try {
+                    SimulatedProcess process = new SimulatedProcess(rank, exchange, team);
+                    int z0 = process.getZStart();
+                    int nz = process.getZCount();
+                    double slab[] = new double[process.getSlabSize(halo)];
+                    System.arraycopy(data, z0 * planeSize, slab, 0, nz * planeSize);
+                    if (convolution) {
+                        process.setRecip(recip);
+                        process.convolution(slab);
+                    } else {
+                        process.fft(slab);
+                        Arrays.fill(slab, 0.0);
+                        process.ifft(slab);
+                    }
+                    System.arraycopy(slab, 0, result, z0 * planeSize, nz * planeSize);
+                } catch (Exception e) {
+                    failure[0] = e;
+                } finally {
+                    try {
+                        team.shutdown();
+                    } catch (Exception e) {
+                        // Ignore.
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return result;
+    }
+
+    @Test
+    public void testConvolution() throws Exception {
+        ParallelTeam team = new ParallelTeam(1);
+        Complex3DParallel complex3D = new Complex3DParallel(nX, nY, nZ, team);
+        complex3D.setRecip(recip);
+        double expected[] = Arrays.copyOf(data, data.length);
+        complex3D.convolution(expected);
+        team.shutdown();
+        double actual[] = distributed(true);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(info, expected[i], actual[i], tolerance);
+        }
+    }
+
+    @Test
+    public void testFFTRoundTrip() throws Exception {
+        double actual[] = distributed(false);
+        double n = nX * nY * nZ;
+        for (int i = 0; i < data.length; i++) {
+            assertEquals(info, data[i], actual[i] / n, tolerance);
+        }
+    }
+
+    @Test
+    public void testHalo() throws Exception {
+        if (nZ / nProcs < halo) {
+            return;
+        }
+        final Exchange exchange = new Exchange();
+        final int planeSize = 2 * nX * nY;
+        final double sums[] = new double[nZ];
+        final double filled[][] = new double[nProcs][];
+        final int starts[] = new int[nProcs];
+        Thread threads[] = new Thread[nProcs];
+        for (int p = 0; p < nProcs; p++) {
+            final int rank = p;
+            threads[p] = new Thread(() -> {
+                ParallelTeam team = new ParallelTeam(1);
+                try {
+                    SimulatedProcess process = new SimulatedProcess(rank, exchange, team);
+                    int nz = process.getZCount();
+                    double slab[] = new double[process.getSlabSize(halo)];
+                    // Every plane, including the halo, holds 1.0 before the reduction.
+                    Arrays.fill(slab, 1.0);
+                    process.reduceHalo(slab, halo);
+                    for (int z = 0; z < nz; z++) {
+                        sums[process.getZStart() + z] = slab[z * planeSize];
+                    }
+                    // Label each owned plane by its global index and fill the halo.
+                    for (int z = 0; z < nz; z++) {
+                        Arrays.fill(slab, z * planeSize, (z + 1) * planeSize, process.getZStart() + z);
+                    }
+                    process.fillHalo(slab, halo);
+                    filled[rank] = slab;
+                    starts[rank] = process.getZStart() + nz;
+                    team.shutdown();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int p = 0; p < nProcs; p++) {
+            int nz = filled[p].length / planeSize - halo;
+            int zStart = starts[p] - nz;
+            for (int z = 0; z < nz; z++) {
+                double expected = (z < halo) ? 2.0 : 1.0;
+                assertEquals(info, expected, sums[zStart + z], 0.0);
+            }
+            for (int h = 0; h < halo; h++) {
+                double expected = (starts[p] + h) % nZ;
+                assertEquals(info, expected, filled[p][(nz + h) * planeSize + 1], 0.0);
+            }
+        }
+    }
+}
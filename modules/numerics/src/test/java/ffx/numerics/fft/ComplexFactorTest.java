@@ -0,0 +1,176 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.numerics.fft;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test the radix-8, radix-16 and Bluestein transforms of the Complex class
+ * against a direct discrete Fourier transform.
+ *
+ * @author Michael J. Schnieders
+ */
+@RunWith(Parameterized.class)
+public class ComplexFactorTest {
+
+    private final String info;
+    private final int n;
+    private final boolean tinker;
+    private final double data[];
+    private final double tolerance = 1.0e-10;
+
+    @Parameters
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][]{
+            {"Test n = 8", 8, false},
+            {"Test n = 16", 16, false},
+            {"Test n = 21", 21, false},
+            {"Test n = 48", 48, false},
+            {"Test n = 49", 49, false},
+            {"Test n = 96", 96, false},
+            {"Test n = 128", 128, false},
+            {"Test n = 256", 256, false},
+            {"Test n = 67 (Bluestein)", 67, false},
+            {"Test n = 202 (Bluestein)", 202, false},
+            {"Test n = 128 (TINKER)", 128, true},
+            {"Test n = 67 (TINKER)", 67, true}
+        });
+    }
+
+    public ComplexFactorTest(String info, int n, boolean tinker) {
+        this.info = info;
+        this.n = n;
+        this.tinker = tinker;
+        data = new double[n * 2];
+        Random r = new Random(n);
+        for (int i = 0; i < n * 2; i++) {
+            data[i] = r.nextDouble() - 0.5;
+        }
+    }
+
+    private static boolean tinkerPrevious;
+
+    @BeforeClass
+    public static void setUpClass() {
+        tinkerPrevious = Complex.isTinkerCompatible();
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        Complex.setTinkerCompatible(tinkerPrevious);
+    }
+
+    /**
+     * Compute the unnormalized DFT directly.
+     */
+    private double[] dft(double x[], int sign) {
+        double ret[] = new double[2 * n];
+        for (int k = 0; k < n; k++) {
+            double sr = 0.0;
+            double si = 0.0;
+            for (int j = 0; j < n; j++) {
+                double theta = sign * 2.0 * Math.PI * ((long) j * k % n) / n;
+                double c = Math.cos(theta);
+                double s = Math.sin(theta);
+                sr += x[2 * j] * c - x[2 * j + 1] * s;
+                si += x[2 * j] * s + x[2 * j + 1] * c;
+            }
+            ret[2 * k] = sr;
+            ret[2 * k + 1] = si;
+        }
+        return ret;
+    }
+
+    @Test
+    public void testFFT() {
+        Complex.setTinkerCompatible(tinker);
+        double expected[] = dft(data, -1);
+        double actual[] = Arrays.copyOf(data, 2 * n);
+        new Complex(n).fft(actual, 0, 2);
+        for (int i = 0; i < 2 * n; i++) {
+            assertEquals(info, expected[i], actual[i], tolerance);
+        }
+    }
+
+    @Test
+    public void testIFFT() {
+        Complex.setTinkerCompatible(tinker);
+        double expected[] = dft(data, 1);
+        double actual[] = Arrays.copyOf(data, 2 * n);
+        new Complex(n).ifft(actual, 0, 2);
+        for (int i = 0; i < 2 * n; i++) {
+            assertEquals(info, expected[i], actual[i], tolerance);
+        }
+    }
+
+    @Test
+    public void testStride() {
+        Complex.setTinkerCompatible(tinker);
+        int stride = 6;
+        double strided[] = new double[stride * n + 1];
+        for (int i = 0; i < n; i++) {
+            strided[1 + stride * i] = data[2 * i];
+            strided[2 + stride * i] = data[2 * i + 1];
+        }
+        Complex complex = new Complex(n);
+        complex.fft(strided, 1, stride);
+        complex.inverse(strided, 1, stride);
+        for (int i = 0; i < n; i++) {
+            assertEquals(info, data[2 * i], strided[1 + stride * i], tolerance);
+            assertEquals(info, data[2 * i + 1], strided[2 + stride * i], tolerance);
+        }
+    }
+
+    @Test
+    public void testPreferredDimension() {
+        Complex.setTinkerCompatible(tinker);
+        assertEquals(info, !tinker, Complex.preferredDimension(21));
+        assertEquals(info, true, Complex.preferredDimension(120));
+        assertEquals(info, false, Complex.preferredDimension(22));
+    }
+}
@@ -45,7 +45,8 @@ import org.junit.runners.Suite.SuiteClasses;
  * FFTTestSuite collects all Unit tests from the ffx.numerics.fft package.
  */
 @RunWith(Suite.class)
-@SuiteClasses({ComplexTest.class, Complex3DTest.class, Complex3DParallelTest.class,
+@SuiteClasses({ComplexTest.class, ComplexFactorTest.class, Complex3DTest.class,
+    Complex3DParallelTest.class, Complex3DBlockedTest.class, Complex3DDistributedTest.class,
     RealTest.class, Real3DTest.class, Real3DParallelTest.class})
 public class FFTTestSuite {
 }
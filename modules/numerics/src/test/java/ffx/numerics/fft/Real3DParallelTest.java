@@ -152,6 +152,30 @@ public class Real3DParallelTest {
         }
     }
 
+    /**
+     * Test of the convolution method for a grid stored at an offset, of class
+     * Real3DParallel.
+     */
+    @Test
+    public void testConvolutionOffset() {
+        Real3DParallel real3D = new Real3DParallel(nx, ny, nz, parallelTeam);
+        real3D.setRecip(recip);
+        System.arraycopy(data, 0, data, paddedTot, paddedTot);
+        real3D.convolution(data, paddedTot);
+        int paddedIndex = paddedTot;
+        int index = 0;
+        for (int z = 0; z < nz; z++) {
+            for (int y = 0; y < ny; y++) {
+                for (int x = 0; x < nx; x++) {
+                    double actual = data[paddedIndex++] / tot;
+                    double orig = expected[index++];
+                    assertEquals(info, orig, actual, tolerance);
+                }
+                paddedIndex += 2;
+            }
+        }
+    }
+
     /**
      * Disable quasi-internal frame for all tests from this class.
      */
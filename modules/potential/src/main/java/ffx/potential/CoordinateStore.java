@@ -0,0 +1,204 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential;
+
+import java.util.Arrays;
+
+/**
+ * The CoordinateStore class holds the Cartesian coordinates of a system in
+ * contiguous x, y and z arrays (a struct-of-arrays layout).
+ *
+ * A ForceFieldEnergy owns one CoordinateStore and attaches each of its atoms to
+ * it, after which the Atom coordinate methods become a view onto the store.
+ * Energy terms may then read coordinates directly from the arrays returned by
+ * {@link #getX()}, {@link #getY()} and {@link #getZ()} using the index of the
+ * atom within the ForceFieldEnergy atom array.
+ *
+ * @author Michael J. Schnieders
+ * @since 1.0
+ */
+public class CoordinateStore {
+
+    private double x[];
+    private double y[];
+    private double z[];
+    private int size;
+    /**
+     * True if an atom has been attached to another store since this store
+     * last claimed its atoms.
+     */
+    private volatile boolean released = false;
+
+    /**
+     * Constructor for a CoordinateStore.
+     *
+     * @param size The number of atoms.
+     */
+    public CoordinateStore(int size) {
+        x = new double[size];
+        y = new double[size];
+        z = new double[size];
+        this.size = size;
+    }
+
+    /**
+     * Set the number of atoms, growing the arrays only if necessary.
+     *
+     * @param size The number of atoms.
+     */
+    public void setSize(int size) {
+        if (size > x.length) {
+            x = Arrays.copyOf(x, size);
+            y = Arrays.copyOf(y, size);
+            z = Arrays.copyOf(z, size);
+        }
+        this.size = size;
+    }
+
+    /**
+     * The number of atoms in the store.
+     *
+     * @return The number of atoms.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Mark that an atom of this store has been attached to another store.
+     */
+    public void release() {
+        released = true;
+    }
+
+    /**
+     * Mark that all atoms of this store are attached to it.
+     */
+    public void claim() {
+        released = false;
+    }
+
+    /**
+     * Check if an atom of this store has been attached to another store since
+     * the store last claimed its atoms.
+     *
+     * @return true if the store no longer backs all of its atoms.
+     */
+    public boolean isReleased() {
+        return released;
+    }
+
+    public double getX(int i) {
+        return x[i];
+    }
+
+    public double getY(int i) {
+        return y[i];
+    }
+
+    public double getZ(int i) {
+        return z[i];
+    }
+
+    /**
+     * Copy the coordinates of atom i into the supplied array.
+     *
+     * @param i The atom index.
+     * @param xyz An array of length 3.
+     */
+    public void get(int i, double xyz[]) {
+        xyz[0] = x[i];
+        xyz[1] = y[i];
+        xyz[2] = z[i];
+    }
+
+    /**
+     * Set the coordinates of atom i.
+     *
+     * @param i The atom index.
+     * @param xi The x-coordinate.
+     * @param yi The y-coordinate.
+     * @param zi The z-coordinate.
+     */
+    public void set(int i, double xi, double yi, double zi) {
+        x[i] = xi;
+        y[i] = yi;
+        z[i] = zi;
+    }
+
+    /**
+     * Translate atom i.
+     *
+     * @param i The atom index.
+     * @param dx The x-translation.
+     * @param dy The y-translation.
+     * @param dz The z-translation.
+     */
+    public void add(int i, double dx, double dy, double dz) {
+        x[i] += dx;
+        y[i] += dy;
+        z[i] += dz;
+    }
+
+    /**
+     * The x-coordinate array, which may be longer than size().
+     *
+     * @return The x-coordinates.
+     */
+    public double[] getX() {
+        return x;
+    }
+
+    /**
+     * The y-coordinate array, which may be longer than size().
+     *
+     * @return The y-coordinates.
+     */
+    public double[] getY() {
+        return y;
+    }
+
+    /**
+     * The z-coordinate array, which may be longer than size().
+     *
+     * @return The z-coordinates.
+     */
+    public double[] getZ() {
+        return z;
+    }
+}
@@ -55,6 +55,7 @@ import static org.apache.commons.math3.util.FastMath.sqrt;
 import edu.rit.pj.IntegerForLoop;
 import edu.rit.pj.IntegerSchedule;
 import edu.rit.pj.ParallelRegion;
+import edu.rit.pj.ParallelSection;
 import edu.rit.pj.ParallelTeam;
 import edu.rit.pj.reduction.SharedDouble;
 
@@ -64,12 +65,17 @@ import ffx.crystal.ReplicatesCrystal;
 import ffx.numerics.AdderDoubleArray;
 import ffx.numerics.AtomicDoubleArray;
 import ffx.numerics.AtomicDoubleArray.AtomicDoubleArrayImpl;
+import ffx.numerics.BlockedDoubleArray;
 import ffx.numerics.MultiDoubleArray;
 import ffx.numerics.PJDoubleArray;
 import ffx.potential.bonded.Angle;
+import ffx.potential.bonded.AngleKernel;
 import ffx.potential.bonded.Atom;
+import ffx.potential.bonded.Atom.Indexing;
 import ffx.potential.bonded.Atom.Resolution;
 import ffx.potential.bonded.Bond;
+import ffx.potential.bonded.BondKernel;
+import ffx.potential.bonded.BondedKernel;
 import ffx.potential.bonded.BondedTerm;
 import ffx.potential.bonded.ImproperTorsion;
 import ffx.potential.bonded.LambdaInterface;
@@ -86,6 +92,7 @@ import ffx.potential.bonded.Residue;
 import ffx.potential.bonded.RestraintBond;
 import ffx.potential.bonded.StretchBend;
 import ffx.potential.bonded.Torsion;
+import ffx.potential.bonded.TorsionKernel;
 import ffx.potential.bonded.TorsionTorsion;
 import ffx.potential.bonded.UreyBradley;
 import ffx.potential.extended.ExtendedSystem;
@@ -106,6 +113,7 @@ import ffx.potential.parameters.ForceField.ForceFieldString;
 import ffx.potential.utils.EnergyException;
 import ffx.potential.utils.PotentialsFunctions;
 import ffx.potential.utils.PotentialsUtils;
+import ffx.utilities.MetricsRegistry;
 import static ffx.potential.extended.ExtUtils.prop;
 import static ffx.potential.parameters.ForceField.ForceFieldString.ARRAY_REDUCTION;
 import static ffx.potential.parameters.ForceField.toEnumForm;
@@ -130,6 +138,15 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
      * to be present to be included in bonded terms
      */
     private Atom[] atomsExtended;
+    /**
+     * Struct-of-arrays coordinates of the atoms, which are views onto this
+     * store.
+     */
+    private CoordinateStore coordinateStore;
+    /**
+     * Struct-of-arrays gradient of the atoms, which are views onto this store.
+     */
+    private GradientStore gradientStore;
     private Crystal crystal;
     private final ParallelTeam parallelTeam;
     private BondedRegion bondedRegion;
@@ -258,6 +275,28 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
     /*      Extended System Variables       */
     private ExtendedSystem esvSystem = null;
     private final boolean pmeQI = prop("pme.qi", false);
+    private final boolean bondedKernels = prop("ffe.bondedKernels", true);
+    /**
+     * If true, the Van der Waals and particle mesh Ewald terms are evaluated
+     * concurrently.
+     */
+    private final boolean concurrentNonBonded = prop("ffe.concurrentNonBonded", false);
+    /**
+     * The Van der Waals ParallelTeam, which is only distinct from the
+     * parallelTeam for concurrent non-bonded evaluation.
+     */
+    private ParallelTeam vanDerWaalsTeam = null;
+    /**
+     * The particle mesh Ewald ParallelTeam, which is only distinct from the
+     * parallelTeam for concurrent non-bonded evaluation.
+     */
+    private ParallelTeam electrostaticsTeam = null;
+    private NonBondedRegion nonBondedRegion = null;
+    /**
+     * True if the most recent evaluation ran the non-bonded terms concurrently.
+     */
+    private boolean nonBondedConcurrent = false;
+    private long nonBondedTime, vanDerWaalsIdleTime, electrostaticIdleTime;
     /**
      * *************************************
      */
@@ -308,6 +347,9 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
             assert (i == index);
         }
 
+        // Atom coordinates and gradients become views onto contiguous stores.
+        attachStores();
+
         // Enforce that the number of threads be less than or equal to the number of atoms.
         /*int nThreads = ParallelTeam.getDefaultThreadCount();
         nThreads = nAtoms < nThreads ? nAtoms : nThreads;*/
@@ -662,7 +704,23 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
 
         int molecule[] = molecularAssembly.getMoleculeNumbers();
         if (vanderWaalsTerm) {
-            vanderWaals = new VanDerWaals(atoms, molecule, crystal, forceField, parallelTeam);
+            if (concurrentNonBonded && multipoleTerm) {
+                /**
+                 * Van der Waals and particle mesh Ewald each get their own
+                 * ParallelTeam to run concurrently, with the thread budget
+                 * split between them.
+                 */
+                int threads = parallelTeam.getThreadCount();
+                int vdwThreads = max(1, threads / 2);
+                int pmeThreads = max(1, threads - vdwThreads);
+                vanDerWaalsTeam = new ParallelTeam(vdwThreads);
+                electrostaticsTeam = new ParallelTeam(pmeThreads);
+                logger.info(format(" Van der Waals threads:             %10d", vdwThreads));
+                logger.info(format(" Particle mesh Ewald threads:       %10d", pmeThreads));
+                vanderWaals = new VanDerWaals(atoms, molecule, crystal, forceField, vanDerWaalsTeam);
+            } else {
+                vanderWaals = new VanDerWaals(atoms, molecule, crystal, forceField, parallelTeam);
+            }
         } else {
             vanderWaals = null;
         }
@@ -674,18 +732,24 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
             } else {
                 form = ELEC_FORM.PAM;
             }
+            ParallelTeam pmeTeam = (electrostaticsTeam != null) ? electrostaticsTeam : parallelTeam;
             if (pmeQI) {
                 particleMeshEwald = new ParticleMeshEwaldQI(atoms, molecule, forceField, crystal,
-                        vanderWaals.getNeighborList(), form, parallelTeam);
+                        vanderWaals.getNeighborList(), form, pmeTeam);
             } else {
                 particleMeshEwald = new ParticleMeshEwaldCart(atoms, molecule, forceField, crystal,
-                        vanderWaals.getNeighborList(), form, parallelTeam);
+                        vanderWaals.getNeighborList(), form, pmeTeam);
             }
             double charge = molecularAssembly.getCharge(checkAllNodeCharges);
             logger.info(String.format(" Overall system charge:            %10.3f", charge));
+            if (vanDerWaalsTeam != null) {
+                nonBondedRegion = new NonBondedRegion();
+                logger.info(" Van der Waals and particle mesh Ewald will be evaluated concurrently.");
+            }
         } else {
             particleMeshEwald = null;
         }
+        setNonBondedStores();
 
         if (ncsTerm) {
             String sg = forceField.getString(ForceFieldString.NCSGROUP, "P 1");
@@ -803,14 +867,15 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
     @SuppressWarnings("unchecked")
     public <T extends ParticleMeshEwald> T setPmeClass(Class<T> set) {
 //        if (set != particleMeshEwald.getClass()) {
+            ParallelTeam pmeTeam = (electrostaticsTeam != null) ? electrostaticsTeam : parallelTeam;
             if (set == ParticleMeshEwaldQI.class) {
                 particleMeshEwald = new ParticleMeshEwaldQI(atoms, molecularAssembly.getMoleculeNumbers(),
                         molecularAssembly.getForceField(), crystal,
-                        vanderWaals.getNeighborList(), particleMeshEwald.getElecForm(), parallelTeam);
+                        vanderWaals.getNeighborList(), particleMeshEwald.getElecForm(), pmeTeam);
             } else if (set == ParticleMeshEwaldCart.class) {
                 particleMeshEwald = new ParticleMeshEwaldCart(atoms, molecularAssembly.getMoleculeNumbers(),
                         molecularAssembly.getForceField(), crystal,
-                        vanderWaals.getNeighborList(), particleMeshEwald.getElecForm(), parallelTeam);
+                        vanderWaals.getNeighborList(), particleMeshEwald.getElecForm(), pmeTeam);
             } else {
                 throw new IllegalArgumentException();
             }
@@ -952,6 +1017,8 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
      */
     public void reInit() {
         int[] molecule;
+        // Atoms that are no longer part of the system must not remain views onto the stores.
+        detachStores();
         if (esvTerm) {
             atoms = esvSystem.getExtendedAndBackgroundAtoms();
             molecule = esvSystem.getExtendedAndBackgroundMolecule();
@@ -960,6 +1027,7 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
             molecule = molecularAssembly.getMoleculeNumbers();
         }
         nAtoms = atoms.length;
+        attachStores();
 
         /* TODO Decide on only growing vs. always modifying xyz.
         if (xyz.length < 3 * nAtoms) {
@@ -1277,6 +1345,7 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
                 particleMeshEwald.setAtoms(atoms, molecule);
             }
         }
+        setNonBondedStores();
 
         if (ncsTerm) {
             logger.severe(" NCS energy term cannot be used with variable systems sizes.");
@@ -1334,6 +1403,10 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
             improperTorsionTime = 0;
             vanDerWaalsTime = 0;
             electrostaticTime = 0;
+            nonBondedTime = 0;
+            vanDerWaalsIdleTime = 0;
+            electrostaticIdleTime = 0;
+            nonBondedConcurrent = false;
             restraintBondTime = 0;
             ncsTime = 0;
             coordRestraintTime = 0;
@@ -1385,12 +1458,12 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
             // Zero out the total potential energy.
             totalEnergy = 0.0;
 
+            // The batched bonded kernels read from the coordinate store.
+            checkStores();
+
             // Zero out the Cartesian coordinate gradient for each atom.
             if (gradient) {
-                for (int i = 0; i < nAtoms; i++) {
-                    atoms[i].setXYZGradient(0.0, 0.0, 0.0);
-                    atoms[i].setLambdaXYZGradient(0.0, 0.0, 0.0);
-                }
+                gradientStore.zero();
             }
 
             /**
@@ -1431,15 +1504,24 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
                 /**
                  * Compute non-bonded terms.
                  */
+                if (nonBondedRegion != null && !esvTerm) {
+                    nonBondedRegion.energy(gradient, print);
+                } else {
+                    if (vanderWaalsTerm) {
+                        vanDerWaalsTime = -System.nanoTime();
+                        vanDerWaalsEnergy = vanderWaals.energy(gradient, print);
+                        vanDerWaalsTime += System.nanoTime();
+                    }
+                    if (multipoleTerm) {
+                        electrostaticTime = -System.nanoTime();
+                        totalMultipoleEnergy = particleMeshEwald.energy(gradient, print);
+                        electrostaticTime += System.nanoTime();
+                    }
+                }
                 if (vanderWaalsTerm) {
-                    vanDerWaalsTime = -System.nanoTime();
-                    vanDerWaalsEnergy = vanderWaals.energy(gradient, print);
                     nVanDerWaalInteractions = this.vanderWaals.getInteractions();
-                    vanDerWaalsTime += System.nanoTime();
                 }
                 if (multipoleTerm) {
-                    electrostaticTime = -System.nanoTime();
-                    totalMultipoleEnergy = particleMeshEwald.energy(gradient, print);
                     permanentMultipoleEnergy = particleMeshEwald.getPermanentEnergy();
                     permanentRealSpaceEnergy = particleMeshEwald.getPermRealEnergy();
                     permanentSelfEnergy = particleMeshEwald.getPermSelfEnergy();
@@ -1452,7 +1534,6 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
                     nPermanentInteractions = particleMeshEwald.getInteractions();
                     solvationEnergy = particleMeshEwald.getGKEnergy();
                     nGKInteractions = particleMeshEwald.getGKInteractions();
-                    electrostaticTime += System.nanoTime();
                 }
             }
 
@@ -1478,6 +1559,9 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
             }
 
             totalTime = System.nanoTime() - totalTime;
+            if (MetricsRegistry.isEnabled()) {
+                recordMetrics();
+            }
 
             totalBondedEnergy = bondEnergy + restraintBondEnergy + angleEnergy
                     + stretchBendEnergy + ureyBradleyEnergy + outOfPlaneBendEnergy
@@ -1662,6 +1746,67 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
         return sb.toString();
     }
 
+    /**
+     * Record the wall clock time and interaction count of each active term in
+     * the MetricsRegistry.
+     */
+    private void recordMetrics() {
+        if (bondTerm && nBonds > 0) {
+            MetricsRegistry.recordTime("energy.bond.time", bondTime);
+        }
+        if (angleTerm && nAngles > 0) {
+            MetricsRegistry.recordTime("energy.angle.time", angleTime);
+        }
+        if (stretchBendTerm && nStretchBends > 0) {
+            MetricsRegistry.recordTime("energy.stretchBend.time", stretchBendTime);
+        }
+        if (ureyBradleyTerm && nUreyBradleys > 0) {
+            MetricsRegistry.recordTime("energy.ureyBradley.time", ureyBradleyTime);
+        }
+        if (outOfPlaneBendTerm && nOutOfPlaneBends > 0) {
+            MetricsRegistry.recordTime("energy.outOfPlaneBend.time", outOfPlaneBendTime);
+        }
+        if (torsionTerm && nTorsions > 0) {
+            MetricsRegistry.recordTime("energy.torsion.time", torsionTime);
+        }
+        if (piOrbitalTorsionTerm && nPiOrbitalTorsions > 0) {
+            MetricsRegistry.recordTime("energy.piOrbitalTorsion.time", piOrbitalTorsionTime);
+        }
+        if (torsionTorsionTerm && nTorsionTorsions > 0) {
+            MetricsRegistry.recordTime("energy.torsionTorsion.time", torsionTorsionTime);
+        }
+        if (improperTorsionTerm && nImproperTorsions > 0) {
+            MetricsRegistry.recordTime("energy.improperTorsion.time", improperTorsionTime);
+        }
+        if (restraintBondTerm && nRestraintBonds > 0) {
+            MetricsRegistry.recordTime("energy.restraintBond.time", restraintBondTime);
+        }
+        if (ncsTerm) {
+            MetricsRegistry.recordTime("energy.ncs.time", ncsTime);
+        }
+        if (restrainTerm && !coordRestraints.isEmpty()) {
+            MetricsRegistry.recordTime("energy.coordRestraint.time", coordRestraintTime);
+        }
+        if (comTerm) {
+            MetricsRegistry.recordTime("energy.comRestraint.time", comRestraintTime);
+        }
+        if (vanderWaalsTerm) {
+            MetricsRegistry.recordTime("energy.vanDerWaals.time", vanDerWaalsTime);
+            MetricsRegistry.record("energy.vanDerWaals.interactions", nVanDerWaalInteractions);
+        }
+        if (multipoleTerm) {
+            MetricsRegistry.recordTime("energy.electrostatic.time", electrostaticTime);
+            MetricsRegistry.record("energy.electrostatic.interactions", nPermanentInteractions);
+        }
+        if (generalizedKirkwoodTerm) {
+            MetricsRegistry.record("energy.solvation.interactions", nGKInteractions);
+        }
+        if (nonBondedConcurrent) {
+            MetricsRegistry.recordTime("energy.nonBonded.time", nonBondedTime);
+        }
+        MetricsRegistry.recordTime("energy.total.time", totalTime);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1776,6 +1921,14 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
             sb.append(String.format("  %s %16.8f %12d\n",
                     "Solvation         ", solvationEnergy, nGKInteractions));
         }
+        if (nonBondedConcurrent) {
+            sb.append(String.format("  %s %16s %12s %12.3f\n",
+                    "Non-Bonded Overlap", "", "", nonBondedTime * toSeconds));
+            sb.append(String.format("  %s %16s %12s %12.3f\n",
+                    "Van der Waals Idle", "", "", vanDerWaalsIdleTime * toSeconds));
+            sb.append(String.format("  %s %16s %12s %12.3f\n",
+                    "Electrostatic Idle", "", "", electrostaticIdleTime * toSeconds));
+        }
 
         if (relativeSolvationTerm) {
             sb.append(String.format("  %s %16.8f %12d\n",
@@ -2059,10 +2212,11 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
             g = new double[n];
         }
         int index = 0;
+        checkStores();
         for (int i = 0; i < nAtoms; i++) {
             Atom a = atoms[i];
             if (a.isActive()) {
-                a.getXYZGradient(grad);
+                gradientStore.get(i, grad);
                 double gx = grad[0];
                 double gy = grad[1];
                 double gz = grad[2];
@@ -2154,12 +2308,16 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
             x = new double[n];
         }
         int index = 0;
+        checkStores();
+        double storeX[] = coordinateStore.getX();
+        double storeY[] = coordinateStore.getY();
+        double storeZ[] = coordinateStore.getZ();
         for (int i = 0; i < nAtoms; i++) {
             Atom a = atoms[i];
             if (a.isActive() && !a.isBackground()) {
-                x[index++] = a.getX();
-                x[index++] = a.getY();
-                x[index++] = a.getZ();
+                x[index++] = storeX[i];
+                x[index++] = storeY[i];
+                x[index++] = storeZ[i];
             }
         }
         return x;
@@ -2528,9 +2686,29 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
             if (vanderWaals != null) {
                 vanderWaals.destroy();
             }
+            if (nonBondedRegion != null) {
+                nonBondedRegion.destroy();
+            }
+            if (vanDerWaalsTeam != null) {
+                try {
+                    vanDerWaalsTeam.shutdown();
+                } catch (Exception ex) {
+                    String message = " Error in shutting down the Van der Waals ParallelTeam.";
+                    logger.log(Level.WARNING, message, ex);
+                }
+            }
             if (particleMeshEwald != null) {
                 particleMeshEwald.destroy();
             }
+            if (electrostaticsTeam != null) {
+                try {
+                    electrostaticsTeam.shutdown();
+                } catch (Exception ex) {
+                    String message = " Error in shutting down the particle mesh Ewald ParallelTeam.";
+                    logger.log(Level.WARNING, message, ex);
+                }
+            }
+            detachStores();
             destroyed = true;
         }
     }
@@ -2539,6 +2717,95 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
         return nAtoms;
     }
 
+    /**
+     * The struct-of-arrays coordinates of the atoms of this ForceFieldEnergy,
+     * indexed in the same order as the atom array.
+     *
+     * @return The CoordinateStore.
+     */
+    public CoordinateStore getCoordinateStore() {
+        checkStores();
+        return coordinateStore;
+    }
+
+    /**
+     * The struct-of-arrays gradient of the atoms of this ForceFieldEnergy,
+     * indexed in the same order as the atom array.
+     *
+     * @return The GradientStore.
+     */
+    public GradientStore getGradientStore() {
+        checkStores();
+        return gradientStore;
+    }
+
+    /**
+     * Attach each atom to the coordinate and gradient stores of this
+     * ForceFieldEnergy, preserving current coordinates and gradients. This is
+     * done when the atom array is set (construction and reInit).
+     */
+    private void attachStores() {
+        if (coordinateStore == null) {
+            coordinateStore = new CoordinateStore(nAtoms);
+            gradientStore = new GradientStore(nAtoms);
+        } else if (coordinateStore.size() != nAtoms) {
+            coordinateStore.setSize(nAtoms);
+            gradientStore.setSize(nAtoms);
+        }
+        for (int i = 0; i < nAtoms; i++) {
+            Atom atom = atoms[i];
+            if (!atom.isAttached(coordinateStore, gradientStore, i)) {
+                atom.attachStores(coordinateStore, gradientStore, i);
+            }
+        }
+        coordinateStore.claim();
+    }
+
+    /**
+     * The van der Waals and particle mesh Ewald terms read coordinates from,
+     * and add their gradient to, the stores when their atom array is the atom
+     * array of this ForceFieldEnergy (the extended system terms use their own
+     * atom arrays). This must follow each call to their setAtoms methods,
+     * which drop the stores.
+     */
+    private void setNonBondedStores() {
+        CoordinateStore coordinates = esvTerm ? null : coordinateStore;
+        GradientStore gradients = esvTerm ? null : gradientStore;
+        if (vanderWaals != null) {
+            vanderWaals.setStores(coordinates, gradients);
+        }
+        if (particleMeshEwald != null) {
+            particleMeshEwald.setStores(coordinates, gradients);
+        }
+    }
+
+    /**
+     * Atoms shared with another ForceFieldEnergy may have been attached to its
+     * stores in the meantime, which releases the stores of this one. This is a
+     * constant time check; atoms are only re-attached if that has happened.
+     */
+    private void checkStores() {
+        if (coordinateStore.isReleased()) {
+            logger.fine(" Re-attaching atoms that were attached to another ForceFieldEnergy.");
+            attachStores();
+        }
+    }
+
+    /**
+     * Copy coordinates and gradients from the stores back into the atoms.
+     */
+    private void detachStores() {
+        if (coordinateStore == null) {
+            return;
+        }
+        for (int i = 0; i < nAtoms; i++) {
+            Atom atom = atoms[i];
+            if (atom.isAttached(coordinateStore, gradientStore, i)) {
+                atom.detachStores();
+            }
+        }
+    }
+
     public double getBondEnergy() {
         return bondEnergy;
     }
@@ -2979,6 +3246,105 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
         return torsionTorsions;
     }
 
+    /**
+     * The NonBondedRegion is executed by a ParallelTeam with exactly 2 threads.
+     * The Van der Waals and particle mesh Ewald sections run concurrently, each
+     * using the threads of its own ParallelTeam. The Van der Waals and then
+     * the particle mesh Ewald gradient are added to the atoms after both
+     * sections complete, so that the gradient is accumulated in the same order
+     * as the serial path.
+     */
+    private class NonBondedRegion extends ParallelRegion {
+
+        private final ParallelTeam sectionTeam;
+        private final VanDerWaalsSection vanDerWaalsSection;
+        private final ElectrostaticsSection electrostaticsSection;
+        private boolean gradient = false;
+        private boolean print = false;
+
+        public NonBondedRegion() {
+            sectionTeam = new ParallelTeam(2);
+            vanDerWaalsSection = new VanDerWaalsSection();
+            electrostaticsSection = new ElectrostaticsSection();
+        }
+
+        /**
+         * Evaluate the Van der Waals and particle mesh Ewald terms.
+         *
+         * @param gradient If true, compute the Cartesian coordinate gradient.
+         * @param print If true, there is verbose printing.
+         */
+        public void energy(boolean gradient, boolean print) {
+            this.gradient = gradient;
+            this.print = print;
+
+            /**
+             * Real space particle mesh Ewald loops use the Van der Waals
+             * neighbor list, which must be current before the sections start.
+             */
+            long neighborListTime = -System.nanoTime();
+            vanderWaals.updateNeighborList();
+            neighborListTime += System.nanoTime();
+
+            vanderWaals.setDeferGradient(true);
+            particleMeshEwald.setDeferGradient(true);
+            nonBondedTime = -System.nanoTime();
+            try {
+                sectionTeam.execute(this);
+            } catch (RuntimeException ex) {
+                logger.warning("Runtime exception during concurrent non-bonded calculation.");
+                throw ex;
+            } catch (Exception ex) {
+                Utilities.printStackTrace(ex);
+                logger.severe(ex.toString());
+            }
+            nonBondedTime += System.nanoTime();
+            vanderWaals.addDeferredGradient();
+            vanderWaals.setDeferGradient(false);
+            particleMeshEwald.addDeferredGradient();
+            particleMeshEwald.setDeferGradient(false);
+
+            vanDerWaalsIdleTime = nonBondedTime - vanDerWaalsTime;
+            electrostaticIdleTime = nonBondedTime - electrostaticTime;
+            vanDerWaalsTime += neighborListTime;
+            nonBondedConcurrent = true;
+        }
+
+        @Override
+        public void run() throws Exception {
+            execute(vanDerWaalsSection, electrostaticsSection);
+        }
+
+        public void destroy() {
+            try {
+                sectionTeam.shutdown();
+            } catch (Exception ex) {
+                String message = " Error in shutting down the non-bonded section ParallelTeam.";
+                logger.log(Level.WARNING, message, ex);
+            }
+        }
+
+        private class VanDerWaalsSection extends ParallelSection {
+
+            @Override
+            public void run() {
+                vanDerWaalsTime = -System.nanoTime();
+                vanDerWaalsEnergy = vanderWaals.energy(gradient, print);
+                vanDerWaalsTime += System.nanoTime();
+            }
+        }
+
+        private class ElectrostaticsSection extends ParallelSection {
+
+            @Override
+            public void run() {
+                electrostaticTime = -System.nanoTime();
+                totalMultipoleEnergy = particleMeshEwald.energy(gradient, print);
+                electrostaticTime += System.nanoTime();
+            }
+        }
+    }
+
     private class BondedRegion extends ParallelRegion {
 
         // Flag to indicate gradient computation.
@@ -3048,6 +3414,11 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
         // Retraint energy parallel loops.
         private final BondedTermLoop[] restraintBondLoops;
 
+        // Batched kernels for bonds, angles and torsions.
+        private final BondedKernel bondKernel;
+        private final BondedKernel angleKernel;
+        private final BondedKernel torsionKernel;
+
         public BondedRegion() {
 
             // Allocate shared RMSD variables.
@@ -3088,6 +3459,17 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
             // Allocate memory for restrain energy terms.
             restraintBondLoops = new BondedTermLoop[nThreads];
 
+            // Pack parameters for the batched bonded kernels, which assume XYZ atom indexing.
+            if (bondedKernels && MolecularAssembly.atomIndexing == Indexing.XYZ) {
+                bondKernel = (nBonds > 0) ? new BondKernel(bonds, nBonds) : null;
+                angleKernel = (nAngles > 0) ? new AngleKernel(angles, nAngles) : null;
+                torsionKernel = (nTorsions > 0) ? new TorsionKernel(torsions, nTorsions) : null;
+            } else {
+                bondKernel = null;
+                angleKernel = null;
+                torsionKernel = null;
+            }
+
             /**
              * Define how the gradient will be accumulated.
              */
@@ -3115,6 +3497,20 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
                         lambdaGradZ = null;
                     }
                     break;
+                case BLOCKED:
+                    gradX = new BlockedDoubleArray(nThreads, nAtoms);
+                    gradY = new BlockedDoubleArray(nThreads, nAtoms);
+                    gradZ = new BlockedDoubleArray(nThreads, nAtoms);
+                    if (lambdaTerm) {
+                        lambdaGradX = new BlockedDoubleArray(nThreads, nAtoms);
+                        lambdaGradY = new BlockedDoubleArray(nThreads, nAtoms);
+                        lambdaGradZ = new BlockedDoubleArray(nThreads, nAtoms);
+                    } else {
+                        lambdaGradX = null;
+                        lambdaGradY = null;
+                        lambdaGradZ = null;
+                    }
+                    break;
                 case PJ:
                     gradX = new PJDoubleArray(nThreads, nAtoms);
                     gradY = new PJDoubleArray(nThreads, nAtoms);
@@ -3278,7 +3674,7 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
             if (angleTerm) {
                 if (angleLoops[threadID] == null) {
                     angleLoops[threadID]
-                            = new BondedTermLoop(angles, sharedAngleEnergy, sharedAngleRMSD);
+                            = new BondedTermLoop(angles, angleKernel, sharedAngleEnergy, sharedAngleRMSD);
                 }
                 if (threadID == 0) {
                     angleTime = -System.nanoTime();
@@ -3292,7 +3688,7 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
             if (bondTerm) {
                 if (bondLoops[threadID] == null) {
                     bondLoops[threadID]
-                            = new BondedTermLoop(bonds, sharedBondEnergy, sharedBondRMSD);
+                            = new BondedTermLoop(bonds, bondKernel, sharedBondEnergy, sharedBondRMSD);
                 }
                 if (threadID == 0) {
                     bondTime = -System.nanoTime();
@@ -3362,7 +3758,7 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
             if (torsionTerm) {
                 if (torsionLoops[threadID] == null) {
                     torsionLoops[threadID]
-                            = new BondedTermLoop(torsions, sharedTorsionEnergy);
+                            = new BondedTermLoop(torsions, torsionKernel, sharedTorsionEnergy, null);
                 }
                 if (threadID == 0) {
                     torsionTime = -System.nanoTime();
@@ -3462,8 +3858,9 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
                     gradY.reduce(first, last);
                     gradZ.reduce(first, last);
                     for (int i = first; i <= last; i++) {
-                        Atom a = atoms[i];
-                        a.setXYZGradient(gradX.get(i), gradY.get(i), gradZ.get(i));
+                        if (atoms[i].isActive()) {
+                            gradientStore.set(i, gradX.get(i), gradY.get(i), gradZ.get(i));
+                        }
                     }
                 }
                 if (lambdaTerm) {
@@ -3471,9 +3868,10 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
                     lambdaGradY.reduce(first, last);
                     lambdaGradZ.reduce(first, last);
                     for (int i = first; i <= last; i++) {
-                        Atom a = atoms[i];
-                        a.setLambdaXYZGradient(lambdaGradX.get(i),
-                                lambdaGradY.get(i), lambdaGradZ.get(i));
+                        if (atoms[i].isActive()) {
+                            gradientStore.setLambda(i, lambdaGradX.get(i),
+                                    lambdaGradY.get(i), lambdaGradZ.get(i));
+                        }
                     }
                 }
             }
@@ -3482,6 +3880,7 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
         private class BondedTermLoop extends IntegerForLoop {
 
             private final BondedTerm[] terms;
+            private final BondedKernel kernel;
             private final SharedDouble sharedEnergy;
             private final SharedDouble sharedRMSD;
             private final boolean computeRMSD;
@@ -3490,12 +3889,13 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
             private int threadID;
 
             public BondedTermLoop(BondedTerm[] terms, SharedDouble sharedEnergy) {
-                this(terms, sharedEnergy, null);
+                this(terms, null, sharedEnergy, null);
             }
 
-            public BondedTermLoop(BondedTerm[] terms,
+            public BondedTermLoop(BondedTerm[] terms, BondedKernel kernel,
                     SharedDouble sharedEnergy, SharedDouble sharedRMSD) {
                 this.terms = terms;
+                this.kernel = kernel;
                 this.sharedEnergy = sharedEnergy;
                 this.sharedRMSD = sharedRMSD;
                 computeRMSD = (sharedRMSD != null);
@@ -3518,6 +3918,23 @@ public class ForceFieldEnergy implements CrystalPotential, LambdaInterface {
 
             @Override
             public void run(int first, int last) throws Exception {
+                /**
+                 * The batched kernel reads coordinates directly from the
+                 * struct-of-arrays store; lambda bonded terms are selected
+                 * term-by-term below.
+                 */
+                if (kernel != null && !lambdaBondedTerms) {
+                    localEnergy += kernel.energy(gradient, threadID, first, last,
+                            coordinateStore.getX(), coordinateStore.getY(), coordinateStore.getZ(),
+                            gradX, gradY, gradZ, lambdaGradX, lambdaGradY, lambdaGradZ);
+                    if (computeRMSD) {
+                        for (int i = first; i <= last; i++) {
+                            double value = kernel.getValue(i);
+                            localRMSD += value * value;
+                        }
+                    }
+                    return;
+                }
                 for (int i = first; i <= last; i++) {
                     BondedTerm term = terms[i];
                     if (!lambdaBondedTerms || term.applyLambda()) {
@@ -2206,6 +2206,8 @@ public class ForceFieldEnergyOpenMM extends ForceFieldEnergy {
                 break;
             case CAV:
             case CAV_DISP:
+            case CAV_SR:
+            case CAV_DISP_SR:
             case HYDROPHOBIC_PMF:
             case NONE:
                 // This NonPolar model does not use a Born Radii based surface area term.
@@ -2216,6 +2218,7 @@ public class ForceFieldEnergyOpenMM extends ForceFieldEnergy {
 
         switch (nonpolar) {
             case CAV_DISP:
+            case CAV_DISP_SR:
             case BORN_CAV_DISP:
                 addWCAForce();
                 break;
@@ -0,0 +1,190 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential;
+
+import java.util.Arrays;
+
+/**
+ * The GradientStore class holds the Cartesian coordinate gradient (and the
+ * derivative of the gradient with respect to lambda) of a system in contiguous
+ * arrays (a struct-of-arrays layout).
+ *
+ * A ForceFieldEnergy owns one GradientStore and attaches each of its atoms to
+ * it, so that zeroing the gradient at the start of an energy evaluation is a
+ * single pass over contiguous memory rather than a call on each Atom.
+ *
+ * @author Michael J. Schnieders
+ * @since 1.0
+ */
+public class GradientStore {
+
+    private double gx[];
+    private double gy[];
+    private double gz[];
+    private double lambdaGX[];
+    private double lambdaGY[];
+    private double lambdaGZ[];
+    private int size;
+
+    /**
+     * Constructor for a GradientStore.
+     *
+     * @param size The number of atoms.
+     */
+    public GradientStore(int size) {
+        gx = new double[size];
+        gy = new double[size];
+        gz = new double[size];
+        lambdaGX = new double[size];
+        lambdaGY = new double[size];
+        lambdaGZ = new double[size];
+        this.size = size;
+    }
+
+    /**
+     * Set the number of atoms, growing the arrays only if necessary.
+     *
+     * @param size The number of atoms.
+     */
+    public void setSize(int size) {
+        if (size > gx.length) {
+            gx = Arrays.copyOf(gx, size);
+            gy = Arrays.copyOf(gy, size);
+            gz = Arrays.copyOf(gz, size);
+            lambdaGX = Arrays.copyOf(lambdaGX, size);
+            lambdaGY = Arrays.copyOf(lambdaGY, size);
+            lambdaGZ = Arrays.copyOf(lambdaGZ, size);
+        }
+        this.size = size;
+    }
+
+    /**
+     * The number of atoms in the store.
+     *
+     * @return The number of atoms.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Zero the Cartesian coordinate gradient and lambda gradient.
+     */
+    public void zero() {
+        Arrays.fill(gx, 0, size, 0.0);
+        Arrays.fill(gy, 0, size, 0.0);
+        Arrays.fill(gz, 0, size, 0.0);
+        Arrays.fill(lambdaGX, 0, size, 0.0);
+        Arrays.fill(lambdaGY, 0, size, 0.0);
+        Arrays.fill(lambdaGZ, 0, size, 0.0);
+    }
+
+    public void get(int i, double g[]) {
+        g[0] = gx[i];
+        g[1] = gy[i];
+        g[2] = gz[i];
+    }
+
+    public void set(int i, double x, double y, double z) {
+        gx[i] = x;
+        gy[i] = y;
+        gz[i] = z;
+    }
+
+    public void add(int i, double x, double y, double z) {
+        gx[i] += x;
+        gy[i] += y;
+        gz[i] += z;
+    }
+
+    public void add(int i, int axis, double value) {
+        switch (axis) {
+            case 0:
+                gx[i] += value;
+                break;
+            case 1:
+                gy[i] += value;
+                break;
+            case 2:
+            default:
+                gz[i] += value;
+        }
+    }
+
+    public void getLambda(int i, double g[]) {
+        g[0] = lambdaGX[i];
+        g[1] = lambdaGY[i];
+        g[2] = lambdaGZ[i];
+    }
+
+    public void setLambda(int i, double x, double y, double z) {
+        lambdaGX[i] = x;
+        lambdaGY[i] = y;
+        lambdaGZ[i] = z;
+    }
+
+    public void addLambda(int i, double x, double y, double z) {
+        lambdaGX[i] += x;
+        lambdaGY[i] += y;
+        lambdaGZ[i] += z;
+    }
+
+    public double[] getGradX() {
+        return gx;
+    }
+
+    public double[] getGradY() {
+        return gy;
+    }
+
+    public double[] getGradZ() {
+        return gz;
+    }
+
+    public double[] getLambdaGradX() {
+        return lambdaGX;
+    }
+
+    public double[] getLambdaGradY() {
+        return lambdaGY;
+    }
+
+    public double[] getLambdaGradZ() {
+        return lambdaGZ;
+    }
+}
@@ -49,12 +49,6 @@ import static org.apache.commons.math3.util.FastMath.toDegrees;
 import ffx.numerics.AtomicDoubleArray;
 import ffx.potential.parameters.AngleType;
 import ffx.potential.parameters.ForceField;
-import static ffx.numerics.VectorMath.cross;
-import static ffx.numerics.VectorMath.diff;
-import static ffx.numerics.VectorMath.dot;
-import static ffx.numerics.VectorMath.r;
-import static ffx.numerics.VectorMath.scalar;
-import static ffx.numerics.VectorMath.sum;
 import static ffx.potential.parameters.AngleType.cubic;
 import static ffx.potential.parameters.AngleType.quartic;
 import static ffx.potential.parameters.AngleType.quintic;
@@ -191,6 +185,16 @@ public class Angle extends BondedTerm implements BondedEnergy {
         this.rigidScale = rigidScale;
     }
 
+    /**
+     * <p>
+     * Getter for the field <code>rigidScale</code>.</p>
+     *
+     * @return a double.
+     */
+    public double getRigidScale() {
+        return rigidScale;
+    }
+
     /**
      * Get the AngleType for this angle.
      *
@@ -307,346 +311,181 @@ public class Angle extends BondedTerm implements BondedEnergy {
             AtomicDoubleArray lambdaGradY,
             AtomicDoubleArray lambdaGradZ) {
 
-        double a0[] = new double[3];
-        double a1[] = new double[3];
-        double a2[] = new double[3];
-        /**
-         * Vector from Atom 1 to Atom 0.
-         */
-        double v10[] = new double[3];
-        /**
-         * Vector from Atom 1 to Atom 2.
-         */
-        double v12[] = new double[3];
-        /**
-         * Vector from Atom 3 to Atom 0.
-         */
-        double v30[] = new double[3];
-        /**
-         * Vector from Atom 2 to Atom 0.
-         */
-        double v20[] = new double[3];
-        /**
-         * Vector v10 cross v30.
-         */
-        double p[] = new double[3];
-        /**
-         * Work vectors for in-plane angles.
-         */
-        double ip[] = new double[3];
-        double jp[] = new double[3];
-        double kp[] = new double[3];
-        double lp[] = new double[3];
-        /**
-         * Gradient on atoms 0, 1, 2 & 3.
-         */
-        double g0[] = new double[3];
-        double g1[] = new double[3];
-        double g2[] = new double[3];
-        double g3[] = new double[3];
-
         energy = 0.0;
         value = 0.0;
         double prefactor = units * rigidScale * angleType.forceConstant * esvLambda;
 
-        atoms[0].getXYZ(a0);
-        atoms[1].getXYZ(a1);
-        atoms[2].getXYZ(a2);
+        Atom atom0 = atoms[0];
+        Atom atom1 = atoms[1];
+        Atom atom2 = atoms[2];
+        double x0 = atom0.getX();
+        double y0 = atom0.getY();
+        double z0 = atom0.getZ();
+        double x1 = atom1.getX();
+        double y1 = atom1.getY();
+        double z1 = atom1.getZ();
+        double x2 = atom2.getX();
+        double y2 = atom2.getY();
+        double z2 = atom2.getZ();
 
-        switch (angleType.angleFunction) {
-            case SEXTIC:
-                switch (angleMode) {
-                    case NORMAL:
-                        diff(a0, a1, v10);
-                        diff(a2, a1, v12);
-                        double rab2 = dot(v10, v10);
-                        double rcb2 = dot(v12, v12);
-                        if (rab2 != 0.0 && rcb2 != 0.0) {
-                            cross(v12, v10, p);
-                            double cosine = dot(v10, v12) / sqrt(rab2 * rcb2);
-                            cosine = min(1.0, max(-1.0, cosine));
-                            value = toDegrees(acos(cosine));
-                            double dv = value - angleType.angle[nh];
-                            double dv2 = dv * dv;
-                            double dv3 = dv2 * dv;
-                            double dv4 = dv2 * dv2;
-                            energy = prefactor * dv2 * (1.0
-                                    + cubic * dv + quartic * dv2
-                                    + quintic * dv3 + sextic * dv4);
-                            if (gradient) {
-                                double deddt = prefactor * dv * toDegrees(2.0
-                                        + 3.0 * cubic * dv + 4.0 * quartic * dv2
-                                        + 5.0 * quintic * dv3 + 6.0 * sextic * dv4);
-                                double rp = r(p);
-                                rp = max(rp, 0.000001);
-                                double terma = -deddt / (rab2 * rp);
-                                double termc = deddt / (rcb2 * rp);
-                                cross(v10, p, g0);
-                                cross(v12, p, g2);
-                                scalar(g0, terma, g0);
-                                scalar(g2, termc, g2);
-                                sum(g0, g2, g1);
-                                scalar(g1, -1.0, g1);
-                                //atoms[0].addToXYZGradient(g0[0], g0[1], g0[2]);
-                                //atoms[1].addToXYZGradient(g1[0], g1[1], g1[2]);
-                                //atoms[2].addToXYZGradient(g2[0], g2[1], g2[2]);
-                                int i0 = atoms[0].getIndex() - 1;
-                                gradX.add(threadID, i0, g0[0]);
-                                gradY.add(threadID, i0, g0[1]);
-                                gradZ.add(threadID, i0, g0[2]);
-                                int i1 = atoms[1].getIndex() - 1;
-                                gradX.add(threadID, i1, g1[0]);
-                                gradY.add(threadID, i1, g1[1]);
-                                gradZ.add(threadID, i1, g1[2]);
-                                int i2 = atoms[2].getIndex() - 1;
-                                gradX.add(threadID, i2, g2[0]);
-                                gradY.add(threadID, i2, g2[1]);
-                                gradZ.add(threadID, i2, g2[2]);
-                            }
-                            value = dv;
-                        }
-                        break;
-                    case IN_PLANE:
-                        double a4[] = new double[3];
-                        atom4.getXYZ(a4);
-                        diff(a0, a4, v10);
-                        diff(a1, a4, v20);
-                        diff(a2, a4, v30);
-                        cross(v10, v30, p);
-                        double rp2 = dot(p, p);
-                        double delta = -dot(p, v20) / rp2;
-                        scalar(p, delta, ip);
-                        sum(ip, v20, ip);
-                        diff(v10, ip, jp);
-                        diff(v30, ip, kp);
-                        double jp2 = dot(jp, jp);
-                        double kp2 = dot(kp, kp);
-                        if (jp2 != 0.0 && kp2 != 0.0) {
-                            cross(kp, jp, lp);
-                            double lpr = r(lp);
-                            lpr = max(lpr, 0.000001);
-                            double jk2 = dot(jp, kp);
-                            double cosine = jk2 / Math.sqrt(jp2 * kp2);
-                            cosine = min(1.0, max(-1.0, cosine));
-                            value = toDegrees(acos(cosine));
-                            double dv = value - angleType.angle[nh];
-                            double dv2 = dv * dv;
-                            double dv3 = dv2 * dv;
-                            double dv4 = dv2 * dv2;
-                            energy = prefactor * dv2 * (1.0
-                                    + cubic * dv + quartic * dv2
-                                    + quintic * dv3 + sextic * dv4);
-                            if (gradient) {
-                                double deddt = prefactor * dv * toDegrees(2.0
-                                        + 3.0 * cubic * dv + 4.0 * quartic * dv2
-                                        + 5.0 * quintic * dv3 + 6.0 * sextic * dv4);
-                                double term0 = -deddt / (jp2 * lpr);
-                                double term2 = deddt / (kp2 * lpr);
-                                double ded0[] = new double[3];
-                                double ded2[] = new double[3];
-                                double dedp[] = new double[3];
-                                double x21[] = new double[3];
-                                double x01[] = new double[3];
-                                double xp2[] = new double[3];
-                                double xd2[] = new double[3];
-                                double dpd0[] = new double[3];
-                                double dpd2[] = new double[3];
-                                cross(jp, lp, ded0);
-                                scalar(ded0, term0, ded0);
-                                cross(kp, lp, ded2);
-                                scalar(ded2, term2, ded2);
-                                sum(ded0, ded2, dedp);
-                                scalar(dedp, -1.0, g1);
-                                double delta2 = 2.0 * delta;
-                                double pt2 = dot(dedp, p) / rp2;
-                                cross(v20, v30, x21);
-                                cross(p, v30, xp2);
-                                cross(v30, g1, xd2);
-                                scalar(xd2, delta, xd2);
-                                scalar(xp2, delta2, xp2);
-                                sum(x21, xp2, x21);
-                                scalar(x21, pt2, x21);
-                                sum(xd2, x21, dpd0);
-                                cross(v10, v20, x01);
-                                cross(p, v10, xp2);
-                                cross(g1, v10, xd2);
-                                scalar(xd2, delta, xd2);
-                                scalar(xp2, delta2, xp2);
-                                sum(x21, xp2, x21);
-                                scalar(x21, pt2, x21);
-                                sum(xd2, x21, dpd2);
-                                sum(ded0, dpd0, g0);
-                                sum(ded2, dpd2, g2);
-                                sum(g0, g1, g3);
-                                sum(g2, g3, g3);
-                                scalar(g3, -1.0, g3);
-                                // atoms[0].addToXYZGradient(g0[0], g0[1], g0[2]);
-                                // atoms[1].addToXYZGradient(g1[0], g1[1], g1[2]);
-                                // atoms[2].addToXYZGradient(g2[0], g2[1], g2[2]);
-                                // atom4.addToXYZGradient(g3[0], g3[1], g3[2]);
-                                int i0 = atoms[0].getIndex() - 1;
-                                gradX.add(threadID, i0, g0[0]);
-                                gradY.add(threadID, i0, g0[1]);
-                                gradZ.add(threadID, i0, g0[2]);
-                                int i1 = atoms[1].getIndex() - 1;
-                                gradX.add(threadID, i1, g1[0]);
-                                gradY.add(threadID, i1, g1[1]);
-                                gradZ.add(threadID, i1, g1[2]);
-                                int i2 = atoms[2].getIndex() - 1;
-                                gradX.add(threadID, i2, g2[0]);
-                                gradY.add(threadID, i2, g2[1]);
-                                gradZ.add(threadID, i2, g2[2]);
-                                int i3 = atom4.getIndex() - 1;
-                                gradX.add(threadID, i3, g3[0]);
-                                gradY.add(threadID, i3, g3[1]);
-                                gradZ.add(threadID, i3, g3[2]);
-                            }
-                            value = dv;
-                        }
-                        break;
+        switch (angleMode) {
+            case NORMAL: {
+                // Vectors from Atom 1 to Atom 0 and from Atom 1 to Atom 2.
+                double x10 = x0 - x1;
+                double y10 = y0 - y1;
+                double z10 = z0 - z1;
+                double x12 = x2 - x1;
+                double y12 = y2 - y1;
+                double z12 = z2 - z1;
+                double rab2 = x10 * x10 + y10 * y10 + z10 * z10;
+                double rcb2 = x12 * x12 + y12 * y12 + z12 * z12;
+                if (rab2 != 0.0 && rcb2 != 0.0) {
+                    double cosine = (x10 * x12 + y10 * y12 + z10 * z12) / sqrt(rab2 * rcb2);
+                    cosine = min(1.0, max(-1.0, cosine));
+                    value = toDegrees(acos(cosine));
+                    double dv = value - angleType.angle[nh];
+                    energy = angleEnergy(prefactor, dv);
+                    if (gradient) {
+                        double deddt = angleDerivative(prefactor, dv);
+                        // p = v12 x v10
+                        double px = y12 * z10 - z12 * y10;
+                        double py = z12 * x10 - x12 * z10;
+                        double pz = x12 * y10 - y12 * x10;
+                        double rp = sqrt(px * px + py * py + pz * pz);
+                        rp = max(rp, 0.000001);
+                        double terma = -deddt / (rab2 * rp);
+                        double termc = deddt / (rcb2 * rp);
+                        // g0 = (v10 x p) * terma, g2 = (v12 x p) * termc and g1 = -(g0 + g2)
+                        double g0x = (y10 * pz - z10 * py) * terma;
+                        double g0y = (z10 * px - x10 * pz) * terma;
+                        double g0z = (x10 * py - y10 * px) * terma;
+                        double g2x = (y12 * pz - z12 * py) * termc;
+                        double g2y = (z12 * px - x12 * pz) * termc;
+                        double g2z = (x12 * py - y12 * px) * termc;
+                        int i0 = atom0.getIndex() - 1;
+                        gradX.add(threadID, i0, g0x);
+                        gradY.add(threadID, i0, g0y);
+                        gradZ.add(threadID, i0, g0z);
+                        int i1 = atom1.getIndex() - 1;
+                        gradX.add(threadID, i1, -(g0x + g2x));
+                        gradY.add(threadID, i1, -(g0y + g2y));
+                        gradZ.add(threadID, i1, -(g0z + g2z));
+                        int i2 = atom2.getIndex() - 1;
+                        gradX.add(threadID, i2, g2x);
+                        gradY.add(threadID, i2, g2y);
+                        gradZ.add(threadID, i2, g2z);
+                    }
+                    value = dv;
                 }
                 break;
-            case HARMONIC:
-            default:
-                switch (angleMode) {
-                    case NORMAL:
-                        diff(a0, a1, v10);
-                        diff(a2, a1, v12);
-                        double rab2 = dot(v10, v10);
-                        double rcb2 = dot(v12, v12);
-                        if (rab2 != 0.0 && rcb2 != 0.0) {
-                            cross(v12, v10, p);
-                            double cosine = dot(v10, v12) / sqrt(rab2 * rcb2);
-                            cosine = min(1.0, max(-1.0, cosine));
-                            value = toDegrees(acos(cosine));
-                            double dv = value - angleType.angle[nh];
-                            double dv2 = dv * dv;
-                            energy = prefactor * dv2;
-                            if (gradient) {
-                                double deddt = prefactor * dv * toDegrees(2.0);
-                                double rp = r(p);
-                                rp = max(rp, 0.000001);
-                                double terma = -deddt / (rab2 * rp);
-                                double termc = deddt / (rcb2 * rp);
-                                cross(v10, p, g0);
-                                cross(v12, p, g2);
-                                scalar(g0, terma, g0);
-                                scalar(g2, termc, g2);
-                                sum(g0, g2, g1);
-                                scalar(g1, -1.0, g1);
-                                // atoms[0].addToXYZGradient(g0[0], g0[1], g0[2]);
-                                // atoms[1].addToXYZGradient(g1[0], g1[1], g1[2]);
-                                // atoms[2].addToXYZGradient(g2[0], g2[1], g2[2]);
-                                int i0 = atoms[0].getIndex() - 1;
-                                gradX.add(threadID, i0, g0[0]);
-                                gradY.add(threadID, i0, g0[1]);
-                                gradZ.add(threadID, i0, g0[2]);
-                                int i1 = atoms[1].getIndex() - 1;
-                                gradX.add(threadID, i1, g1[0]);
-                                gradY.add(threadID, i1, g1[1]);
-                                gradZ.add(threadID, i1, g1[2]);
-                                int i2 = atoms[2].getIndex() - 1;
-                                gradX.add(threadID, i2, g2[0]);
-                                gradY.add(threadID, i2, g2[1]);
-                                gradZ.add(threadID, i2, g2[2]);
-                            }
-                            value = dv;
-                        }
-                        break;
-                    case IN_PLANE:
-                        double a4[] = new double[3];
-                        atom4.getXYZ(a4);
-                        diff(a0, a4, v10);
-                        diff(a1, a4, v20);
-                        diff(a2, a4, v30);
-                        cross(v10, v30, p);
-                        double rp2 = dot(p, p);
-                        double delta = -dot(p, v20) / rp2;
-                        scalar(p, delta, ip);
-                        sum(ip, v20, ip);
-                        diff(v10, ip, jp);
-                        diff(v30, ip, kp);
-                        double jp2 = dot(jp, jp);
-                        double kp2 = dot(kp, kp);
-                        if (jp2 != 0.0 && kp2 != 0.0) {
-                            cross(kp, jp, lp);
-                            double lpr = r(lp);
-                            lpr = max(lpr, 0.000001);
-                            double jk2 = dot(jp, kp);
-                            double cosine = jk2 / Math.sqrt(jp2 * kp2);
-                            cosine = min(1.0, max(-1.0, cosine));
-                            value = toDegrees(acos(cosine));
-                            double dv = value - angleType.angle[nh];
-                            double dv2 = dv * dv;
-                            energy = prefactor * dv2;
-                            if (gradient) {
-                                double deddt = prefactor * dv * toDegrees(2.0);
-                                double term0 = -deddt / (jp2 * lpr);
-                                double term2 = deddt / (kp2 * lpr);
-                                double ded0[] = new double[3];
-                                double ded2[] = new double[3];
-                                double dedp[] = new double[3];
-                                double x21[] = new double[3];
-                                double x01[] = new double[3];
-                                double xp2[] = new double[3];
-                                double xd2[] = new double[3];
-                                double dpd0[] = new double[3];
-                                double dpd2[] = new double[3];
-                                cross(jp, lp, ded0);
-                                scalar(ded0, term0, ded0);
-                                cross(kp, lp, ded2);
-                                scalar(ded2, term2, ded2);
-                                sum(ded0, ded2, dedp);
-                                scalar(dedp, -1.0, g1);
-                                double delta2 = 2.0 * delta;
-                                double pt2 = dot(dedp, p) / rp2;
-                                cross(v20, v30, x21);
-                                cross(p, v30, xp2);
-                                cross(v30, g1, xd2);
-                                scalar(xd2, delta, xd2);
-                                scalar(xp2, delta2, xp2);
-                                sum(x21, xp2, x21);
-                                scalar(x21, pt2, x21);
-                                sum(xd2, x21, dpd0);
-                                cross(v10, v20, x01);
-                                cross(p, v10, xp2);
-                                cross(g1, v10, xd2);
-                                scalar(xd2, delta, xd2);
-                                scalar(xp2, delta2, xp2);
-                                sum(x21, xp2, x21);
-                                scalar(x21, pt2, x21);
-                                sum(xd2, x21, dpd2);
-                                sum(ded0, dpd0, g0);
-                                sum(ded2, dpd2, g2);
-                                sum(g0, g1, g3);
-                                sum(g2, g3, g3);
-                                scalar(g3, -1.0, g3);
-                                // atoms[0].addToXYZGradient(g0[0], g0[1], g0[2]);
-                                // atoms[1].addToXYZGradient(g1[0], g1[1], g1[2]);
-                                // atoms[2].addToXYZGradient(g2[0], g2[1], g2[2]);
-                                // atom4.addToXYZGradient(g3[0], g3[1], g3[2]);
-                                int i0 = atoms[0].getIndex()  - 1;
-                                gradX.add(threadID, i0, g0[0]);
-                                gradY.add(threadID, i0, g0[1]);
-                                gradZ.add(threadID, i0, g0[2]);
-                                int i1 = atoms[1].getIndex() - 1;
-                                gradX.add(threadID, i1, g1[0]);
-                                gradY.add(threadID, i1, g1[1]);
-                                gradZ.add(threadID, i1, g1[2]);
-                                int i2 = atoms[2].getIndex() - 1;
-                                gradX.add(threadID, i2, g2[0]);
-                                gradY.add(threadID, i2, g2[1]);
-                                gradZ.add(threadID, i2, g2[2]);
-                                int i3 = atom4.getIndex() - 1;
-                                gradX.add(threadID, i3, g3[0]);
-                                gradY.add(threadID, i3, g3[1]);
-                                gradZ.add(threadID, i3, g3[2]);
-                            }
-                            value = dv;
-                        }
-                        break;
+            }
+            case IN_PLANE: {
+                // Vectors from the trigonal atom to Atoms 0, 1 and 2.
+                double x4 = atom4.getX();
+                double y4 = atom4.getY();
+                double z4 = atom4.getZ();
+                double x10 = x0 - x4;
+                double y10 = y0 - y4;
+                double z10 = z0 - z4;
+                double x20 = x1 - x4;
+                double y20 = y1 - y4;
+                double z20 = z1 - z4;
+                double x30 = x2 - x4;
+                double y30 = y2 - y4;
+                double z30 = z2 - z4;
+                // p = v10 x v30
+                double px = y10 * z30 - z10 * y30;
+                double py = z10 * x30 - x10 * z30;
+                double pz = x10 * y30 - y10 * x30;
+                double rp2 = px * px + py * py + pz * pz;
+                double delta = -(px * x20 + py * y20 + pz * z20) / rp2;
+                // Projection of Atom 1 onto the plane, and the in-plane vectors.
+                double ipx = px * delta + x20;
+                double ipy = py * delta + y20;
+                double ipz = pz * delta + z20;
+                double jpx = x10 - ipx;
+                double jpy = y10 - ipy;
+                double jpz = z10 - ipz;
+                double kpx = x30 - ipx;
+                double kpy = y30 - ipy;
+                double kpz = z30 - ipz;
+                double jp2 = jpx * jpx + jpy * jpy + jpz * jpz;
+                double kp2 = kpx * kpx + kpy * kpy + kpz * kpz;
+                if (jp2 != 0.0 && kp2 != 0.0) {
+                    // lp = kp x jp
+                    double lpx = kpy * jpz - kpz * jpy;
+                    double lpy = kpz * jpx - kpx * jpz;
+                    double lpz = kpx * jpy - kpy * jpx;
+                    double lpr = sqrt(lpx * lpx + lpy * lpy + lpz * lpz);
+                    lpr = max(lpr, 0.000001);
+                    double jk2 = jpx * kpx + jpy * kpy + jpz * kpz;
+                    double cosine = jk2 / Math.sqrt(jp2 * kp2);
+                    cosine = min(1.0, max(-1.0, cosine));
+                    value = toDegrees(acos(cosine));
+                    double dv = value - angleType.angle[nh];
+                    energy = angleEnergy(prefactor, dv);
+                    if (gradient) {
+                        double deddt = angleDerivative(prefactor, dv);
+                        double term0 = -deddt / (jp2 * lpr);
+                        double term2 = deddt / (kp2 * lpr);
+                        // ded0 = (jp x lp) * term0 and ded2 = (kp x lp) * term2
+                        double ded0x = (jpy * lpz - jpz * lpy) * term0;
+                        double ded0y = (jpz * lpx - jpx * lpz) * term0;
+                        double ded0z = (jpx * lpy - jpy * lpx) * term0;
+                        double ded2x = (kpy * lpz - kpz * lpy) * term2;
+                        double ded2y = (kpz * lpx - kpx * lpz) * term2;
+                        double ded2z = (kpx * lpy - kpy * lpx) * term2;
+                        double dedpx = ded0x + ded2x;
+                        double dedpy = ded0y + ded2y;
+                        double dedpz = ded0z + ded2z;
+                        double g1x = -dedpx;
+                        double g1y = -dedpy;
+                        double g1z = -dedpz;
+                        double delta2 = 2.0 * delta;
+                        double pt2 = (dedpx * px + dedpy * py + dedpz * pz) / rp2;
+                        // x21 = (v20 x v30 + (p x v30) * delta2) * pt2
+                        double x21 = ((y20 * z30 - z20 * y30) + (py * z30 - pz * y30) * delta2) * pt2;
+                        double y21 = ((z20 * x30 - x20 * z30) + (pz * x30 - px * z30) * delta2) * pt2;
+                        double z21 = ((x20 * y30 - y20 * x30) + (px * y30 - py * x30) * delta2) * pt2;
+                        // dpd0 = (v30 x g1) * delta + x21
+                        double dpd0x = (y30 * g1z - z30 * g1y) * delta + x21;
+                        double dpd0y = (z30 * g1x - x30 * g1z) * delta + y21;
+                        double dpd0z = (x30 * g1y - y30 * g1x) * delta + z21;
+                        // x21 = (x21 + (p x v10) * delta2) * pt2
+                        x21 = (x21 + (py * z10 - pz * y10) * delta2) * pt2;
+                        y21 = (y21 + (pz * x10 - px * z10) * delta2) * pt2;
+                        z21 = (z21 + (px * y10 - py * x10) * delta2) * pt2;
+                        // dpd2 = (g1 x v10) * delta + x21
+                        double dpd2x = (g1y * z10 - g1z * y10) * delta + x21;
+                        double dpd2y = (g1z * x10 - g1x * z10) * delta + y21;
+                        double dpd2z = (g1x * y10 - g1y * x10) * delta + z21;
+                        double g0x = ded0x + dpd0x;
+                        double g0y = ded0y + dpd0y;
+                        double g0z = ded0z + dpd0z;
+                        double g2x = ded2x + dpd2x;
+                        double g2y = ded2y + dpd2y;
+                        double g2z = ded2z + dpd2z;
+                        int i0 = atom0.getIndex() - 1;
+                        gradX.add(threadID, i0, g0x);
+                        gradY.add(threadID, i0, g0y);
+                        gradZ.add(threadID, i0, g0z);
+                        int i1 = atom1.getIndex() - 1;
+                        gradX.add(threadID, i1, g1x);
+                        gradY.add(threadID, i1, g1y);
+                        gradZ.add(threadID, i1, g1z);
+                        int i2 = atom2.getIndex() - 1;
+                        gradX.add(threadID, i2, g2x);
+                        gradY.add(threadID, i2, g2y);
+                        gradZ.add(threadID, i2, g2z);
+                        int i3 = atom4.getIndex() - 1;
+                        gradX.add(threadID, i3, -(g2x + (g0x + g1x)));
+                        gradY.add(threadID, i3, -(g2y + (g0y + g1y)));
+                        gradZ.add(threadID, i3, -(g2z + (g0z + g1z)));
+                    }
+                    value = dv;
                 }
                 break;
+            }
         }
         if (esvTerm) {
             final double esvLambdaInv = (esvLambda != 0.0) ? 1/esvLambda : 1.0;
@@ -655,6 +494,50 @@ public class Angle extends BondedTerm implements BondedEnergy {
         return energy;
     }
 
+    /**
+     * The energy of a deviation from the ideal angle.
+     *
+     * @param prefactor The force constant, including units and scaling.
+     * @param dv The deviation in degrees.
+     * @return The energy.
+     */
+    private double angleEnergy(double prefactor, double dv) {
+        double dv2 = dv * dv;
+        switch (angleType.angleFunction) {
+            case SEXTIC:
+                double dv3 = dv2 * dv;
+                double dv4 = dv2 * dv2;
+                return prefactor * dv2 * (1.0
+                        + cubic * dv + quartic * dv2
+                        + quintic * dv3 + sextic * dv4);
+            case HARMONIC:
+            default:
+                return prefactor * dv2;
+        }
+    }
+
+    /**
+     * The derivative of the energy with respect to the angle in radians.
+     *
+     * @param prefactor The force constant, including units and scaling.
+     * @param dv The deviation in degrees.
+     * @return The derivative.
+     */
+    private double angleDerivative(double prefactor, double dv) {
+        switch (angleType.angleFunction) {
+            case SEXTIC:
+                double dv2 = dv * dv;
+                double dv3 = dv2 * dv;
+                double dv4 = dv2 * dv2;
+                return prefactor * dv * toDegrees(2.0
+                        + 3.0 * cubic * dv + 4.0 * quartic * dv2
+                        + 5.0 * quintic * dv3 + 6.0 * sextic * dv4);
+            case HARMONIC:
+            default:
+                return prefactor * dv * toDegrees(2.0);
+        }
+    }
+
     /**
      * Log details for this Angle energy term.
      */
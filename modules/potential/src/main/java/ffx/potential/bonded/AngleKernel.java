@@ -0,0 +1,187 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.bonded;
+
+import static org.apache.commons.math3.util.FastMath.acos;
+import static org.apache.commons.math3.util.FastMath.max;
+import static org.apache.commons.math3.util.FastMath.min;
+import static org.apache.commons.math3.util.FastMath.sqrt;
+import static org.apache.commons.math3.util.FastMath.toDegrees;
+
+import ffx.numerics.AtomicDoubleArray;
+import ffx.potential.bonded.Angle.AngleMode;
+import ffx.potential.parameters.AngleType.AngleFunction;
+import static ffx.potential.parameters.AngleType.cubic;
+import static ffx.potential.parameters.AngleType.quartic;
+import static ffx.potential.parameters.AngleType.quintic;
+import static ffx.potential.parameters.AngleType.sextic;
+import static ffx.potential.parameters.AngleType.units;
+
+/**
+ * Batched evaluation of Angle bending terms. In-plane angles are evaluated by
+ * Angle.energy.
+ *
+ * @author Michael J. Schnieders
+ * @since 1.0
+ */
+public class AngleKernel extends BondedKernel {
+
+    private final int i0[];
+    private final int i1[];
+    private final int i2[];
+    /**
+     * Force constant, including units and rigid scaling.
+     */
+    private final double k[];
+    /**
+     * Ideal angle (degrees), given the number of hydrogens on the central atom.
+     */
+    private final double theta0[];
+    private final boolean anharmonic[];
+
+    /**
+     * Constructor for an AngleKernel.
+     *
+     * @param angles The angles.
+     * @param nAngles The number of angles.
+     */
+    public AngleKernel(Angle angles[], int nAngles) {
+        super(angles, nAngles);
+        i0 = new int[nAngles];
+        i1 = new int[nAngles];
+        i2 = new int[nAngles];
+        k = new double[nAngles];
+        theta0 = new double[nAngles];
+        anharmonic = new boolean[nAngles];
+        for (int i = 0; i < nAngles; i++) {
+            Angle angle = angles[i];
+            if (angle.getClass() != Angle.class || angle.angleType == null
+                    || angle.getAngleMode() != AngleMode.NORMAL) {
+                fallback[i] = true;
+                continue;
+            }
+            i0[i] = angle.atoms[0].getIndex() - 1;
+            i1[i] = angle.atoms[1].getIndex() - 1;
+            i2[i] = angle.atoms[2].getIndex() - 1;
+            k[i] = units * angle.getRigidScale() * angle.angleType.forceConstant;
+            theta0[i] = angle.angleType.angle[angle.nh];
+            anharmonic[i] = (angle.angleType.angleFunction == AngleFunction.SEXTIC);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double energy(boolean gradient, int threadID, int first, int last,
+            double x[], double y[], double z[],
+            AtomicDoubleArray gradX, AtomicDoubleArray gradY, AtomicDoubleArray gradZ,
+            AtomicDoubleArray lambdaGradX, AtomicDoubleArray lambdaGradY, AtomicDoubleArray lambdaGradZ) {
+        double energy = 0.0;
+        for (int i = first; i <= last; i++) {
+            if (fallback[i] || terms[i].esvTerm) {
+                energy += fallbackEnergy(i, gradient, threadID, gradX, gradY, gradZ,
+                        lambdaGradX, lambdaGradY, lambdaGradZ);
+                continue;
+            }
+            int a0 = i0[i];
+            int a1 = i1[i];
+            int a2 = i2[i];
+            // Vectors from atom 1 to atom 0 and from atom 1 to atom 2.
+            double x10 = x[a0] - x[a1];
+            double y10 = y[a0] - y[a1];
+            double z10 = z[a0] - z[a1];
+            double x12 = x[a2] - x[a1];
+            double y12 = y[a2] - y[a1];
+            double z12 = z[a2] - z[a1];
+            double rab2 = x10 * x10 + y10 * y10 + z10 * z10;
+            double rcb2 = x12 * x12 + y12 * y12 + z12 * z12;
+            if (rab2 == 0.0 || rcb2 == 0.0) {
+                storeResult(i, 0.0, 0.0);
+                continue;
+            }
+            double cosine = (x10 * x12 + y10 * y12 + z10 * z12) / sqrt(rab2 * rcb2);
+            cosine = min(1.0, max(-1.0, cosine));
+            double dv = toDegrees(acos(cosine)) - theta0[i];
+            double dv2 = dv * dv;
+            double prefactor = k[i];
+            double e;
+            double deddt;
+            if (anharmonic[i]) {
+                double dv3 = dv2 * dv;
+                double dv4 = dv2 * dv2;
+                e = prefactor * dv2 * (1.0 + cubic * dv + quartic * dv2
+                        + quintic * dv3 + sextic * dv4);
+                deddt = prefactor * dv * toDegrees(2.0 + 3.0 * cubic * dv + 4.0 * quartic * dv2
+                        + 5.0 * quintic * dv3 + 6.0 * sextic * dv4);
+            } else {
+                e = prefactor * dv2;
+                deddt = prefactor * dv * toDegrees(2.0);
+            }
+            if (gradient) {
+                // p = v12 x v10
+                double px = y12 * z10 - z12 * y10;
+                double py = z12 * x10 - x12 * z10;
+                double pz = x12 * y10 - y12 * x10;
+                double rp = sqrt(px * px + py * py + pz * pz);
+                rp = max(rp, 0.000001);
+                double terma = -deddt / (rab2 * rp);
+                double termc = deddt / (rcb2 * rp);
+                // g0 = terma * (v10 x p) and g2 = termc * (v12 x p)
+                double g0x = terma * (y10 * pz - z10 * py);
+                double g0y = terma * (z10 * px - x10 * pz);
+                double g0z = terma * (x10 * py - y10 * px);
+                double g2x = termc * (y12 * pz - z12 * py);
+                double g2y = termc * (z12 * px - x12 * pz);
+                double g2z = termc * (x12 * py - y12 * px);
+                gradX.add(threadID, a0, g0x);
+                gradY.add(threadID, a0, g0y);
+                gradZ.add(threadID, a0, g0z);
+                gradX.sub(threadID, a1, g0x + g2x);
+                gradY.sub(threadID, a1, g0y + g2y);
+                gradZ.sub(threadID, a1, g0z + g2z);
+                gradX.add(threadID, a2, g2x);
+                gradY.add(threadID, a2, g2y);
+                gradZ.add(threadID, a2, g2z);
+            }
+            storeResult(i, dv, e);
+            energy += e;
+        }
+        return energy;
+    }
+}
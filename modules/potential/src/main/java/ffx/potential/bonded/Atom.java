@@ -62,6 +62,8 @@ import static java.lang.String.format;
 
 import org.apache.commons.lang.ArrayUtils;
 
+import ffx.potential.CoordinateStore;
+import ffx.potential.GradientStore;
 import ffx.potential.MolecularAssembly;
 import ffx.potential.bonded.RendererCache.ColorModel;
 import ffx.potential.bonded.RendererCache.ViewModel;
@@ -288,6 +290,17 @@ public class Atom extends MSNode implements Comparable<Atom> {
      * @since 1.0
      */
     private final double xyzLambdaGradient[] = new double[3];
+    /**
+     * If not null, the coordinates of this atom are held in a shared
+     * struct-of-arrays store (at index storeIndex) rather than in xyz.
+     */
+    private CoordinateStore coordinateStore = null;
+    /**
+     * If not null, the gradient of this atom is held in a shared
+     * struct-of-arrays store (at index storeIndex) rather than in xyzGradient.
+     */
+    private GradientStore gradientStore = null;
+    private int storeIndex = -1;
     /**
      * Array of occupancy values for each altLoc.
      *
@@ -539,7 +552,7 @@ public class Atom extends MSNode implements Comparable<Atom> {
     public void addTrajectoryCoords(Vector3d coords, int position) {
         if (trajectory == null) {
             trajectory = new ArrayList<Vector3d>();
-            trajectory.add(0, new Vector3d(xyz));
+            trajectory.add(0, new Vector3d(getXYZ(null)));
         }
         trajectory.add(position, coords);
     }
@@ -585,7 +598,7 @@ public class Atom extends MSNode implements Comparable<Atom> {
     }
 
     public Atom copy() {
-        double coords[] = {xyz[0], xyz[1], xyz[2]};
+        double coords[] = getXYZ(null);
         Atom atom = new Atom(getIndex(), getName(), getAltLoc(), coords,
                 getResidueName(), getResidueNumber(), getChainID(),
                 getOccupancy(), getTempFactor(), getSegID());
@@ -982,12 +995,10 @@ public class Atom extends MSNode implements Comparable<Atom> {
      * @param t an array of double.
      */
     public void getForce(double[] t) {
-        if (xyzGradient == null || t == null) {
+        if (t == null) {
             return;
         }
-        t[0] = xyzGradient[0];
-        t[1] = xyzGradient[1];
-        t[2] = xyzGradient[2];
+        getXYZGradient(t);
     }
 
     /**
@@ -1189,7 +1200,7 @@ public class Atom extends MSNode implements Comparable<Atom> {
      * @param temp a {@link javax.vecmath.Vector3d} object.
      */
     public void getV3D(Vector3d temp) {
-        temp.set(xyz);
+        temp.set(getX(), getY(), getZ());
     }
 
     /**
@@ -1248,7 +1259,10 @@ public class Atom extends MSNode implements Comparable<Atom> {
      */
     public double[] getXYZ(double xyz[]) {
         if (xyz == null) {
-            xyz = Arrays.copyOf(this.xyz, 3);
+            xyz = new double[3];
+        }
+        if (coordinateStore != null) {
+            coordinateStore.get(storeIndex, xyz);
         } else {
             System.arraycopy(this.xyz, 0, xyz, 0, 3);
         }
@@ -1259,16 +1273,27 @@ public class Atom extends MSNode implements Comparable<Atom> {
      * <p>
      * getRedXYZ</p>
      *
+     * For an active atom, the returned array may be the internal reduced
+     * coordinate array (or, for an atom that is not attached to a
+     * CoordinateStore, the internal coordinate array) and must be treated as
+     * read-only. An atom attached to a CoordinateStore has no internal
+     * coordinate array to alias, so a copy is returned; callers must not rely
+     * on writes to the returned array reaching the atom. Inactive atoms always
+     * return a copy.
+     *
      * @return an array of double.
      */
     public double[] getRedXYZ() {
         if (active) {
-            return redXYZ == null ? xyz : redXYZ;
+            if (redXYZ != null) {
+                return redXYZ;
+            }
+            return coordinateStore == null ? xyz : getXYZ(null);
         }
         if (redXYZ != null) {
             return Arrays.copyOf(redXYZ, 3);
         }
-        return Arrays.copyOf(xyz, 3);
+        return getXYZ(null);
     }
 
     /**
@@ -1277,6 +1302,9 @@ public class Atom extends MSNode implements Comparable<Atom> {
      * @return x coordinate
      */
     public final double getX() {
+        if (coordinateStore != null) {
+            return coordinateStore.getX(storeIndex);
+        }
         return xyz[0];
     }
 
@@ -1286,6 +1314,9 @@ public class Atom extends MSNode implements Comparable<Atom> {
      * @return y coordinate
      */
     public final double getY() {
+        if (coordinateStore != null) {
+            return coordinateStore.getY(storeIndex);
+        }
         return xyz[1];
     }
 
@@ -1295,6 +1326,9 @@ public class Atom extends MSNode implements Comparable<Atom> {
      * @return z coordinate
      */
     public final double getZ() {
+        if (coordinateStore != null) {
+            return coordinateStore.getZ(storeIndex);
+        }
         return xyz[2];
     }
 
@@ -1305,7 +1339,7 @@ public class Atom extends MSNode implements Comparable<Atom> {
      * @return Reduced x coordinate
      */
     public final double getRedX() {
-        return redXYZ == null ? xyz[0] : redXYZ[0];
+        return redXYZ == null ? getX() : redXYZ[0];
     }
 
     /**
@@ -1315,7 +1349,7 @@ public class Atom extends MSNode implements Comparable<Atom> {
      * @return Reduced y coordinate
      */
     public final double getRedY() {
-        return redXYZ == null ? xyz[1] : redXYZ[1];
+        return redXYZ == null ? getY() : redXYZ[1];
     }
 
     /**
@@ -1325,7 +1359,7 @@ public class Atom extends MSNode implements Comparable<Atom> {
      * @return Reduced z coordinate
      */
     public final double getRedZ() {
-        return redXYZ == null ? xyz[2] : redXYZ[2];
+        return redXYZ == null ? getZ() : redXYZ[2];
     }
 
     /**
@@ -1351,10 +1385,10 @@ public class Atom extends MSNode implements Comparable<Atom> {
                     ViewModel.FILL);
         }
         if (transform3D == null) {
-            transform3D = RendererCache.transform3DFactory(new Vector3d(xyz),
+            transform3D = RendererCache.transform3DFactory(new Vector3d(getXYZ(null)),
                     scale);
         } else {
-            transform3D.setTranslation(new Vector3d(xyz));
+            transform3D.setTranslation(new Vector3d(getXYZ(null)));
             transform3D.setScale(scale);
         }
         detail = RendererCache.detail;
@@ -1466,14 +1500,19 @@ public class Atom extends MSNode implements Comparable<Atom> {
      */
     public void move(double[] d) {
         if (active) {
-            xyz[0] += d[0];
-            xyz[1] += d[1];
-            xyz[2] += d[2];
+            if (coordinateStore != null) {
+                coordinateStore.add(storeIndex, d[0], d[1], d[2]);
+            } else {
+                xyz[0] += d[0];
+                xyz[1] += d[1];
+                xyz[2] += d[2];
+            }
             stale = true;
         }
     }
 
     public void rotate(double[][] d) {
+        double xyz[] = getXYZ(null);
         int rowsInA = xyz.length;
         double columnsInA = d.length; // same as rows in d
         int columnsInB = d[0].length;
@@ -1498,9 +1537,13 @@ public class Atom extends MSNode implements Comparable<Atom> {
      */
     public void moveTo(double a, double b, double c) {
         if (active) {
-            xyz[0] = a;
-            xyz[1] = b;
-            xyz[2] = c;
+            if (coordinateStore != null) {
+                coordinateStore.set(storeIndex, a, b, c);
+            } else {
+                xyz[0] = a;
+                xyz[1] = b;
+                xyz[2] = c;
+            }
             stale = true;
         }
     }
@@ -1513,7 +1556,11 @@ public class Atom extends MSNode implements Comparable<Atom> {
      */
     public void setXYZ(double xyz[]) {
         if (active && xyz != null) {
-            System.arraycopy(xyz, 0, this.xyz, 0, 3);
+            if (coordinateStore != null) {
+                coordinateStore.set(storeIndex, xyz[0], xyz[1], xyz[2]);
+            } else {
+                System.arraycopy(xyz, 0, this.xyz, 0, 3);
+            }
         }
     }
 
@@ -2384,6 +2431,63 @@ public class Atom extends MSNode implements Comparable<Atom> {
         one_5s.clear();
     }
 
+    /**
+     * Attach this atom to struct-of-arrays coordinate and gradient stores. The
+     * current coordinates and gradient are copied into the stores at the given
+     * index, after which this atom is a view onto the stores. If the atom was
+     * attached to a different CoordinateStore, that store is released.
+     *
+     * @param coordinateStore The CoordinateStore.
+     * @param gradientStore The GradientStore.
+     * @param index The index of this atom within the stores.
+     */
+    public void attachStores(CoordinateStore coordinateStore, GradientStore gradientStore, int index) {
+        if (this.coordinateStore != null && this.coordinateStore != coordinateStore) {
+            this.coordinateStore.release();
+        }
+        double temp[] = new double[3];
+        getXYZ(temp);
+        coordinateStore.set(index, temp[0], temp[1], temp[2]);
+        getXYZGradient(temp);
+        gradientStore.set(index, temp[0], temp[1], temp[2]);
+        getLambdaXYZGradient(temp);
+        gradientStore.setLambda(index, temp[0], temp[1], temp[2]);
+        this.coordinateStore = coordinateStore;
+        this.gradientStore = gradientStore;
+        this.storeIndex = index;
+    }
+
+    /**
+     * Detach this atom from its coordinate and gradient stores, copying the
+     * current values back into the atom.
+     */
+    public void detachStores() {
+        if (coordinateStore != null) {
+            coordinateStore.get(storeIndex, xyz);
+            coordinateStore = null;
+        }
+        if (gradientStore != null) {
+            gradientStore.get(storeIndex, xyzGradient);
+            gradientStore.getLambda(storeIndex, xyzLambdaGradient);
+            gradientStore = null;
+        }
+        storeIndex = -1;
+    }
+
+    /**
+     * Check if this atom is a view onto the given stores at the given index.
+     *
+     * @param coordinateStore The CoordinateStore.
+     * @param gradientStore The GradientStore.
+     * @param index The index of this atom within the stores.
+     * @return true if the atom is attached to the stores.
+     */
+    public boolean isAttached(CoordinateStore coordinateStore, GradientStore gradientStore, int index) {
+        return this.coordinateStore == coordinateStore
+                && this.gradientStore == gradientStore
+                && storeIndex == index;
+    }
+
     /**
      * <p>
      * setXYZGradient</p>
@@ -2394,9 +2498,13 @@ public class Atom extends MSNode implements Comparable<Atom> {
      */
     public void setXYZGradient(double x, double y, double z) {
         if (active) {
-            xyzGradient[0] = x;
-            xyzGradient[1] = y;
-            xyzGradient[2] = z;
+            if (gradientStore != null) {
+                gradientStore.set(storeIndex, x, y, z);
+            } else {
+                xyzGradient[0] = x;
+                xyzGradient[1] = y;
+                xyzGradient[2] = z;
+            }
         }
     }
 
@@ -2410,9 +2518,13 @@ public class Atom extends MSNode implements Comparable<Atom> {
      */
     public void setLambdaXYZGradient(double x, double y, double z) {
         if (active) {
-            xyzLambdaGradient[0] = x;
-            xyzLambdaGradient[1] = y;
-            xyzLambdaGradient[2] = z;
+            if (gradientStore != null) {
+                gradientStore.setLambda(storeIndex, x, y, z);
+            } else {
+                xyzLambdaGradient[0] = x;
+                xyzLambdaGradient[1] = y;
+                xyzLambdaGradient[2] = z;
+            }
         }
     }
 
@@ -2426,15 +2538,23 @@ public class Atom extends MSNode implements Comparable<Atom> {
      */
     public void addToXYZGradient(double x, double y, double z) {
         if (active) {
-            xyzGradient[0] += x;
-            xyzGradient[1] += y;
-            xyzGradient[2] += z;
+            if (gradientStore != null) {
+                gradientStore.add(storeIndex, x, y, z);
+            } else {
+                xyzGradient[0] += x;
+                xyzGradient[1] += y;
+                xyzGradient[2] += z;
+            }
         }
     }
 
     public void addToXYZGradient(int axis, double value) {
         if (active) {
-            xyzGradient[axis] += value;
+            if (gradientStore != null) {
+                gradientStore.add(storeIndex, axis, value);
+            } else {
+                xyzGradient[axis] += value;
+            }
         }
     }
 
@@ -2448,9 +2568,13 @@ public class Atom extends MSNode implements Comparable<Atom> {
      */
     public void addToLambdaXYZGradient(double x, double y, double z) {
         if (active) {
-            xyzLambdaGradient[0] += x;
-            xyzLambdaGradient[1] += y;
-            xyzLambdaGradient[2] += z;
+            if (gradientStore != null) {
+                gradientStore.addLambda(storeIndex, x, y, z);
+            } else {
+                xyzLambdaGradient[0] += x;
+                xyzLambdaGradient[1] += y;
+                xyzLambdaGradient[2] += z;
+            }
         }
     }
 
@@ -2464,6 +2588,10 @@ public class Atom extends MSNode implements Comparable<Atom> {
         if (x == null) {
             x = new double[3];
         }
+        if (gradientStore != null) {
+            gradientStore.get(storeIndex, x);
+            return;
+        }
         x[0] = xyzGradient[0];
         x[1] = xyzGradient[1];
         x[2] = xyzGradient[2];
@@ -2479,6 +2607,10 @@ public class Atom extends MSNode implements Comparable<Atom> {
         if (x == null) {
             x = new double[3];
         }
+        if (gradientStore != null) {
+            gradientStore.getLambda(storeIndex, x);
+            return;
+        }
         x[0] = xyzLambdaGradient[0];
         x[1] = xyzLambdaGradient[1];
         x[2] = xyzLambdaGradient[2];
@@ -2790,13 +2922,13 @@ public class Atom extends MSNode implements Comparable<Atom> {
     public String toString() {
         if (altLoc != null && altLoc != ' ') {
             return String.format("%s %7d-%s %s %d (%7.2f,%7.2f,%7.2f) %s", altLoc, getIndex(), getName(),
-                    resName, resSeq, xyz[0], xyz[1], xyz[2], segID);
+                    resName, resSeq, getX(), getY(), getZ(), segID);
         }
         if (resName == null) {
-            return String.format("%7d-%s (%7.2f,%7.2f,%7.2f)", getIndex(), getName(), xyz[0], xyz[1], xyz[2]);
+            return String.format("%7d-%s (%7.2f,%7.2f,%7.2f)", getIndex(), getName(), getX(), getY(), getZ());
         }
         return String.format("%7d-%s %s %d (%7.2f,%7.2f,%7.2f) %s", getIndex(), getName(), resName, resSeq,
-                xyz[0], xyz[1], xyz[2], segID);
+                getX(), getY(), getZ(), segID);
     }
 
     /**
@@ -2820,7 +2952,7 @@ public class Atom extends MSNode implements Comparable<Atom> {
      */
     public void updateSphere() {
         if (branchGroup != null && viewModel != ViewModel.INVISIBLE) {
-            vector3d.set(xyz);
+            vector3d.set(getX(), getY(), getZ());
             transform3D.setTranslation(vector3d);
             transform3D.setScale(scale);
             transformGroup.setTransform(transform3D);
@@ -37,6 +37,8 @@
  */
 package ffx.potential.bonded;
 
+import static org.apache.commons.math3.util.FastMath.sqrt;
+
 import javax.media.j3d.BranchGroup;
 import javax.media.j3d.Geometry;
 import javax.media.j3d.LineArray;
@@ -131,20 +133,14 @@ public class Bond extends BondedTerm {
     private static final float f4b[] = {0.0f, 0.0f, 0.0f, 0.9f};
     private static float f16[] = {0.0f, 0.0f, 0.0f, 0.9f, 0.0f, 0.0f, 0.0f,
         0.9f, 0.0f, 0.0f, 0.0f, 0.9f, 0.0f, 0.0f, 0.0f, 0.9f};
-    // Some static variables used for computing cylinder orientations
-    private static double d;
-    private static double a13d[] = new double[3];
-    private static double a23d[] = new double[3];
-    private static double mid[] = new double[3];
-    private static double diff3d[] = new double[3];
-    private static double sum3d[] = new double[3];
-    private static double coord[] = new double[12];
-    private static double y[] = {0.0d, 1.0d, 0.0d};
-    private static AxisAngle4d axisAngle = new AxisAngle4d();
-    private static double[] bcross = new double[4];
-    private static double[] cstart = new double[3];
-    private static Vector3d pos3d = new Vector3d();
-    private static double angle;
+    /**
+     * Unit vector along the y-axis, used for computing cylinder orientations.
+     */
+    private static final double Y_AXIS[] = {0.0d, 1.0d, 0.0d};
+    /**
+     * Cylinder orientation, which is shared by the two halves of the bond.
+     */
+    private AxisAngle4d axisAngle = null;
     /**
      * List of Bonds that this Bond forms angles with
      */
@@ -377,18 +373,22 @@ public class Bond extends BondedTerm {
     public void setBondTransform3d(Transform3D t3d, double[] pos,
             double[] orient, double len, boolean newRot) {
         // Bond Orientation
+        if (axisAngle == null) {
+            axisAngle = new AxisAngle4d();
+        }
         if (newRot) {
-            angle = angle(orient, y);
-            cross(y, orient, bcross);
+            double bcross[] = new double[4];
+            double angle = angle(orient, Y_AXIS);
+            cross(Y_AXIS, orient, bcross);
             bcross[3] = angle - Math.PI;
             axisAngle.set(bcross);
         }
         // Scale the orientation vector to be a fourth the bond length
         // and add it to the position vector of the of the first atom
+        double cstart[] = new double[3];
         scalar(orient, len / 4.0d, cstart);
         sum(cstart, pos, cstart);
-        pos3d.set(cstart);
-        t3d.setTranslation(pos3d);
+        t3d.setTranslation(new Vector3d(cstart));
         t3d.setRotation(axisAngle);
         t3d.setScale(scale);
     }
@@ -592,15 +592,21 @@ public class Bond extends BondedTerm {
     @Override
     public void update() {
         // Update the Bond Length
+        double a13d[] = new double[3];
+        double a23d[] = new double[3];
+        double diff3d[] = new double[3];
+        double sum3d[] = new double[3];
+        double mid[] = new double[3];
         atoms[0].getXYZ(a13d);
         atoms[1].getXYZ(a23d);
         diff(a13d, a23d, diff3d);
-        d = r(diff3d);
+        double d = r(diff3d);
         setValue(d);
         sum(a13d, a23d, sum3d);
         scalar(sum3d, 0.5d, mid);
         // Update the Wireframe Model.
         if (la != null) {
+            double coord[] = new double[12];
             for (int i = 0; i < 3; i++) {
                 coord[i] = a13d[i];
                 coord[3 + i] = mid[i];
@@ -640,73 +646,51 @@ public class Bond extends BondedTerm {
             AtomicDoubleArray lambdaGradY,
             AtomicDoubleArray lambdaGradZ) {
 
-        /**
-         * The vector from Atom 1 to Atom 0.
-         */
-        double a0[] = new double[3];
-        double a1[] = new double[3];
-        double v10[] = new double[3];
-        /**
-         * Atom 0 gradient.
-         */
-        double g0[] = new double[3];
-
         Atom atom0 = atoms[0];
         Atom atom1 = atoms[1];
 
-        diff(atom0.getXYZ(a0), atom1.getXYZ(a1), v10);
-        value = r(v10);
+        // The vector from Atom 1 to Atom 0.
+        double dx = atom0.getX() - atom1.getX();
+        double dy = atom0.getY() - atom1.getY();
+        double dz = atom0.getZ() - atom1.getZ();
+        value = sqrt(dx * dx + dy * dy + dz * dz);
         double dv = value - bondType.distance;
         double dv2 = dv * dv;
         double prefactor = units * rigidScale * bondType.forceConstant * esvLambda;
 
+        double deddt;
         switch (bondType.bondFunction) {
             case QUARTIC: {
                 energy = prefactor * dv2 * (1.0 + cubic * dv + quartic * dv2);
-                if (gradient) {
-                    double deddt = 2.0 * prefactor * dv * (1.0 + 1.5 * cubic * dv + 2.0 * quartic * dv2);
-                    double de = 0.0;
-                    if (value > 0.0) {
-                        de = deddt / value;
-                    }
-                    scalar(v10, de, g0);
-                    // atom0.addToXYZGradient(g0[0], g0[1], g0[2]);
-                    // atom1.addToXYZGradient(-g0[0], -g0[1], -g0[2]);
-                    int i0 = atom0.getIndex() - 1;
-                    gradX.add(threadID, i0, g0[0]);
-                    gradY.add(threadID, i0, g0[1]);
-                    gradZ.add(threadID, i0, g0[2]);
-                    int i1 = atom1.getIndex() - 1;
-                    gradX.sub(threadID, i1, g0[0]);
-                    gradY.sub(threadID, i1, g0[1]);
-                    gradZ.sub(threadID, i1, g0[2]);
-                }
+                deddt = 2.0 * prefactor * dv * (1.0 + 1.5 * cubic * dv + 2.0 * quartic * dv2);
                 break;
             }
             case HARMONIC:
             default: {
                 energy = prefactor * dv2;
-                if (gradient) {
-                    double deddt = 2.0 * prefactor * dv;
-                    double de = 0.0;
-                    if (value > 0.0) {
-                        de = deddt / value;
-                    }
-                    scalar(v10, de, g0);
-                    // atom0.addToXYZGradient(g0[0], g0[1], g0[2]);
-                    // atom1.addToXYZGradient(-g0[0], -g0[1], -g0[2]);
-                    int i0 = atom0.getIndex() - 1;
-                    gradX.add(threadID, i0, g0[0]);
-                    gradY.add(threadID, i0, g0[1]);
-                    gradZ.add(threadID, i0, g0[2]);
-                    int i1 = atom1.getIndex() - 1;
-                    gradX.sub(threadID, i1, g0[0]);
-                    gradY.sub(threadID, i1, g0[1]);
-                    gradZ.sub(threadID, i1, g0[2]);
-                }
+                deddt = 2.0 * prefactor * dv;
                 break;
             }
         }
+        if (gradient) {
+            double de = 0.0;
+            if (value > 0.0) {
+                de = deddt / value;
+            }
+            double gx = de * dx;
+            double gy = de * dy;
+            double gz = de * dz;
+            // atom0.addToXYZGradient(gx, gy, gz);
+            // atom1.addToXYZGradient(-gx, -gy, -gz);
+            int i0 = atom0.getIndex() - 1;
+            gradX.add(threadID, i0, gx);
+            gradY.add(threadID, i0, gy);
+            gradZ.add(threadID, i0, gz);
+            int i1 = atom1.getIndex() - 1;
+            gradX.sub(threadID, i1, gx);
+            gradY.sub(threadID, i1, gy);
+            gradZ.sub(threadID, i1, gz);
+        }
         value = dv;
         if (esvTerm) {
             final double esvLambdaInv = (esvLambda != 0.0) ? 1/esvLambda : 1.0;
@@ -0,0 +1,145 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.bonded;
+
+import static org.apache.commons.math3.util.FastMath.sqrt;
+
+import ffx.numerics.AtomicDoubleArray;
+import ffx.potential.parameters.BondType.BondFunction;
+import static ffx.potential.parameters.BondType.cubic;
+import static ffx.potential.parameters.BondType.quartic;
+import static ffx.potential.parameters.BondType.units;
+
+/**
+ * Batched evaluation of Bond stretching terms.
+ *
+ * @author Michael J. Schnieders
+ * @since 1.0
+ */
+public class BondKernel extends BondedKernel {
+
+    private final int i0[];
+    private final int i1[];
+    /**
+     * Force constant, including units and rigid scaling.
+     */
+    private final double k[];
+    private final double r0[];
+    private final boolean anharmonic[];
+
+    /**
+     * Constructor for a BondKernel.
+     *
+     * @param bonds The bonds.
+     * @param nBonds The number of bonds.
+     */
+    public BondKernel(Bond bonds[], int nBonds) {
+        super(bonds, nBonds);
+        i0 = new int[nBonds];
+        i1 = new int[nBonds];
+        k = new double[nBonds];
+        r0 = new double[nBonds];
+        anharmonic = new boolean[nBonds];
+        for (int i = 0; i < nBonds; i++) {
+            Bond bond = bonds[i];
+            if (bond.getClass() != Bond.class || bond.bondType == null) {
+                fallback[i] = true;
+                continue;
+            }
+            i0[i] = bond.atoms[0].getIndex() - 1;
+            i1[i] = bond.atoms[1].getIndex() - 1;
+            k[i] = units * bond.rigidScale * bond.bondType.forceConstant;
+            r0[i] = bond.bondType.distance;
+            anharmonic[i] = (bond.bondType.bondFunction == BondFunction.QUARTIC);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double energy(boolean gradient, int threadID, int first, int last,
+            double x[], double y[], double z[],
+            AtomicDoubleArray gradX, AtomicDoubleArray gradY, AtomicDoubleArray gradZ,
+            AtomicDoubleArray lambdaGradX, AtomicDoubleArray lambdaGradY, AtomicDoubleArray lambdaGradZ) {
+        double energy = 0.0;
+        for (int i = first; i <= last; i++) {
+            if (fallback[i] || terms[i].esvTerm) {
+                energy += fallbackEnergy(i, gradient, threadID, gradX, gradY, gradZ,
+                        lambdaGradX, lambdaGradY, lambdaGradZ);
+                continue;
+            }
+            int a0 = i0[i];
+            int a1 = i1[i];
+            double dx = x[a0] - x[a1];
+            double dy = y[a0] - y[a1];
+            double dz = z[a0] - z[a1];
+            double r = sqrt(dx * dx + dy * dy + dz * dz);
+            double dv = r - r0[i];
+            double dv2 = dv * dv;
+            double prefactor = k[i];
+            double e;
+            double deddt;
+            if (anharmonic[i]) {
+                e = prefactor * dv2 * (1.0 + cubic * dv + quartic * dv2);
+                deddt = 2.0 * prefactor * dv * (1.0 + 1.5 * cubic * dv + 2.0 * quartic * dv2);
+            } else {
+                e = prefactor * dv2;
+                deddt = 2.0 * prefactor * dv;
+            }
+            if (gradient) {
+                double de = 0.0;
+                if (r > 0.0) {
+                    de = deddt / r;
+                }
+                double gx = de * dx;
+                double gy = de * dy;
+                double gz = de * dz;
+                gradX.add(threadID, a0, gx);
+                gradY.add(threadID, a0, gy);
+                gradZ.add(threadID, a0, gz);
+                gradX.sub(threadID, a1, gx);
+                gradY.sub(threadID, a1, gy);
+                gradZ.sub(threadID, a1, gz);
+            }
+            storeResult(i, dv, e);
+            energy += e;
+        }
+        return energy;
+    }
+}
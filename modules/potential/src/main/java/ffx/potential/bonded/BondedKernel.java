@@ -0,0 +1,160 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.bonded;
+
+import ffx.numerics.AtomicDoubleArray;
+
+/**
+ * The BondedKernel class evaluates all terms of one bonded type as a batch.
+ *
+ * Atom indices and force field parameters are packed into flat arrays when
+ * the kernel is created, and coordinates are read from struct-of-arrays x, y
+ * and z arrays, so that the inner loop performs no allocation and no virtual
+ * calls. Terms that the flat kernel does not handle (i.e. extended system
+ * terms or terms scaled by lambda) fall back to {@link BondedTerm#energy}.
+ *
+ * Packed parameters are fixed at construction; a new kernel should be created
+ * if the terms or their force field types change.
+ *
+ * @author Michael J. Schnieders
+ * @since 1.0
+ */
+public abstract class BondedKernel {
+
+    /**
+     * The terms evaluated by this kernel.
+     */
+    protected final BondedTerm terms[];
+    /**
+     * The number of terms.
+     */
+    protected final int nTerms;
+    /**
+     * If true, the term is evaluated via BondedTerm.energy.
+     */
+    protected final boolean fallback[];
+    /**
+     * The value of each term from the most recent evaluation.
+     */
+    protected final double values[];
+
+    /**
+     * Constructor for a BondedKernel.
+     *
+     * @param terms The terms.
+     * @param nTerms The number of terms to evaluate.
+     */
+    protected BondedKernel(BondedTerm terms[], int nTerms) {
+        this.terms = terms;
+        this.nTerms = nTerms;
+        fallback = new boolean[nTerms];
+        values = new double[nTerms];
+    }
+
+    /**
+     * Evaluate terms first through last (inclusive).
+     *
+     * @param gradient If true, compute the Cartesian coordinate gradient.
+     * @param threadID The thread index.
+     * @param first The first term.
+     * @param last The last term.
+     * @param x X-coordinates of each atom.
+     * @param y Y-coordinates of each atom.
+     * @param z Z-coordinates of each atom.
+     * @param gradX X-component of the gradient.
+     * @param gradY Y-component of the gradient.
+     * @param gradZ Z-component of the gradient.
+     * @param lambdaGradX X-component of the lambda gradient.
+     * @param lambdaGradY Y-component of the lambda gradient.
+     * @param lambdaGradZ Z-component of the lambda gradient.
+     * @return The energy of the terms.
+     */
+    public abstract double energy(boolean gradient, int threadID, int first, int last,
+            double x[], double y[], double z[],
+            AtomicDoubleArray gradX, AtomicDoubleArray gradY, AtomicDoubleArray gradZ,
+            AtomicDoubleArray lambdaGradX, AtomicDoubleArray lambdaGradY, AtomicDoubleArray lambdaGradZ);
+
+    /**
+     * The value of term i from the most recent evaluation.
+     *
+     * @param i The term index.
+     * @return The value.
+     */
+    public double getValue(int i) {
+        return values[i];
+    }
+
+    /**
+     * The number of terms that are evaluated by the flat kernel.
+     *
+     * @return The number of batched terms.
+     */
+    public int getBatchedCount() {
+        int count = 0;
+        for (int i = 0; i < nTerms; i++) {
+            if (!fallback[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Evaluate term i via the virtual BondedTerm.energy method.
+     */
+    protected double fallbackEnergy(int i, boolean gradient, int threadID,
+            AtomicDoubleArray gradX, AtomicDoubleArray gradY, AtomicDoubleArray gradZ,
+            AtomicDoubleArray lambdaGradX, AtomicDoubleArray lambdaGradY, AtomicDoubleArray lambdaGradZ) {
+        BondedTerm term = terms[i];
+        double e = term.energy(gradient, threadID, gradX, gradY, gradZ,
+                lambdaGradX, lambdaGradY, lambdaGradZ);
+        values[i] = term.value;
+        return e;
+    }
+
+    /**
+     * Store the value and energy of a batched term in the term itself, so
+     * that BondedTerm.getValue and logging remain consistent.
+     */
+    protected void storeResult(int i, double value, double energy) {
+        values[i] = value;
+        BondedTerm term = terms[i];
+        term.value = value;
+        term.energy = energy;
+    }
+}
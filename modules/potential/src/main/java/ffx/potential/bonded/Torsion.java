@@ -51,8 +51,6 @@ import static ffx.numerics.VectorMath.cross;
 import static ffx.numerics.VectorMath.diff;
 import static ffx.numerics.VectorMath.dot;
 import static ffx.numerics.VectorMath.r;
-import static ffx.numerics.VectorMath.scalar;
-import static ffx.numerics.VectorMath.sum;
 
 /**
  * The Torsion class represents a torsional angle formed between four bonded
@@ -343,78 +341,56 @@ public class Torsion extends BondedTerm implements LambdaInterface {
             AtomicDoubleArray lambdaGradY,
             AtomicDoubleArray lambdaGradZ) {
 
-        double a0[] = new double[3];
-        double a1[] = new double[3];
-        double a2[] = new double[3];
-        double a3[] = new double[3];
-
-        /**
-         * Vector from Atom 0 to Atom 1.
-         */
-        double v01[] = new double[3];
-        /**
-         * Vector from Atom 0 to Atom 2.
-         */
-        double v02[] = new double[3];
-        /**
-         * Vector from Atom 1 to Atom 2.
-         */
-        double v12[] = new double[3];
-        /**
-         * Vector from Atom 1 to Atom 3.
-         */
-        double v13[] = new double[3];
-        /**
-         * Vector from Atom 2 to Atom 3.
-         */
-        double v23[] = new double[3];
-        /**
-         * Vector v01 cross v12.
-         */
-        double x0112[] = new double[3];
-        /**
-         * Vector v12 cross v23.
-         */
-        double x1223[] = new double[3];
-        /**
-         * Vector x0112 cross x12_32.
-         */
-        double x[] = new double[3];
-        /**
-         * Gradient on atoms 0, 1, 2 & 3.
-         */
-        double g0[] = new double[3];
-        double g1[] = new double[3];
-        double g2[] = new double[3];
-        double g3[] = new double[3];
-        /**
-         * Work vectors.
-         */
-        double x1[] = new double[3];
-        double x2[] = new double[3];
-
         energy = 0.0;
         value = 0.0;
         dEdL = 0.0;
 
-        atoms[0].getXYZ(a0);
-        atoms[1].getXYZ(a1);
-        atoms[2].getXYZ(a2);
-        atoms[3].getXYZ(a3);
-
-        diff(a1, a0, v01);
-        diff(a2, a1, v12);
-        diff(a3, a2, v23);
-        cross(v01, v12, x0112);
-        cross(v12, v23, x1223);
-        cross(x0112, x1223, x);
-        double r01_12 = dot(x0112, x0112);
-        double r12_23 = dot(x1223, x1223);
+        Atom atom0 = atoms[0];
+        Atom atom1 = atoms[1];
+        Atom atom2 = atoms[2];
+        Atom atom3 = atoms[3];
+        double x0 = atom0.getX();
+        double y0 = atom0.getY();
+        double z0 = atom0.getZ();
+        double x1 = atom1.getX();
+        double y1 = atom1.getY();
+        double z1 = atom1.getZ();
+        double x2 = atom2.getX();
+        double y2 = atom2.getY();
+        double z2 = atom2.getZ();
+        double x3 = atom3.getX();
+        double y3 = atom3.getY();
+        double z3 = atom3.getZ();
+
+        // Vectors from Atom 0 to Atom 1, Atom 1 to Atom 2 and Atom 2 to Atom 3.
+        double x01 = x1 - x0;
+        double y01 = y1 - y0;
+        double z01 = z1 - z0;
+        double x12 = x2 - x1;
+        double y12 = y2 - y1;
+        double z12 = z2 - z1;
+        double x23 = x3 - x2;
+        double y23 = y3 - y2;
+        double z23 = z3 - z2;
+        // x0112 = v01 x v12
+        double xt = y01 * z12 - z01 * y12;
+        double yt = z01 * x12 - x01 * z12;
+        double zt = x01 * y12 - y01 * x12;
+        // x1223 = v12 x v23
+        double xu = y12 * z23 - z12 * y23;
+        double yu = z12 * x23 - x12 * z23;
+        double zu = x12 * y23 - y12 * x23;
+        // x = x0112 x x1223
+        double xtu = yt * zu - zt * yu;
+        double ytu = zt * xu - xt * zu;
+        double ztu = xt * yu - yt * xu;
+        double r01_12 = xt * xt + yt * yt + zt * zt;
+        double r12_23 = xu * xu + yu * yu + zu * zu;
         double rr = sqrt(r01_12 * r12_23);
         if (rr != 0.0) {
-            double r12 = r(v12);
-            double cosine = dot(x0112, x1223) / rr;
-            double sine = dot(v12, x) / (r12 * rr);
+            double r12 = sqrt(x12 * x12 + y12 * y12 + z12 * z12);
+            double cosine = (xt * xu + yt * yu + zt * zu) / rr;
+            double sine = (x12 * xtu + y12 * ytu + z12 * ztu) / (r12 * rr);
             value = toDegrees(acos(cosine));
             if (sine < 0.0) {
                 value = -value;
@@ -445,67 +421,69 @@ public class Torsion extends BondedTerm implements LambdaInterface {
 
             if (gradient || lambdaTerm) {
                 dedphi = units * dedphi * esvLambda;
-                diff(a2, a0, v02);
-                diff(a3, a1, v13);
-                cross(x0112, v12, x1);
-                cross(x1223, v12, x2);
-                scalar(x1, dedphi / (r01_12 * r12), x1);
-                scalar(x2, -dedphi / (r12_23 * r12), x2);
-                cross(x1, v12, g0);
-                cross(v02, x1, g1);
-                cross(x2, v23, g2);
-                sum(g1, g2, g1);
-                cross(x1, v01, g2);
-                cross(v13, x2, g3);
-                sum(g2, g3, g2);
-                cross(x2, v12, g3);
+                double x02 = x2 - x0;
+                double y02 = y2 - y0;
+                double z02 = z2 - z0;
+                double x13 = x3 - x1;
+                double y13 = y3 - y1;
+                double z13 = z3 - z1;
+                // xa = (x0112 x v12) * dedphi / (r01_12 * r12)
+                double s1 = dedphi / (r01_12 * r12);
+                double xa = (yt * z12 - zt * y12) * s1;
+                double ya = (zt * x12 - xt * z12) * s1;
+                double za = (xt * y12 - yt * x12) * s1;
+                // xb = (x1223 x v12) * -dedphi / (r12_23 * r12)
+                double s2 = -dedphi / (r12_23 * r12);
+                double xb = (yu * z12 - zu * y12) * s2;
+                double yb = (zu * x12 - xu * z12) * s2;
+                double zb = (xu * y12 - yu * x12) * s2;
+                // g0 = xa x v12
+                double g0x = ya * z12 - za * y12;
+                double g0y = za * x12 - xa * z12;
+                double g0z = xa * y12 - ya * x12;
+                // g1 = v02 x xa + xb x v23
+                double g1x = (y02 * za - z02 * ya) + (yb * z23 - zb * y23);
+                double g1y = (z02 * xa - x02 * za) + (zb * x23 - xb * z23);
+                double g1z = (x02 * ya - y02 * xa) + (xb * y23 - yb * x23);
+                // g2 = xa x v01 + v13 x xb
+                double g2x = (ya * z01 - za * y01) + (y13 * zb - z13 * yb);
+                double g2y = (za * x01 - xa * z01) + (z13 * xb - x13 * zb);
+                double g2z = (xa * y01 - ya * x01) + (x13 * yb - y13 * xb);
+                // g3 = xb x v12
+                double g3x = yb * z12 - zb * y12;
+                double g3y = zb * x12 - xb * z12;
+                double g3z = xb * y12 - yb * x12;
+                int i0 = atom0.getIndex() - 1;
+                int i1 = atom1.getIndex() - 1;
+                int i2 = atom2.getIndex() - 1;
+                int i3 = atom3.getIndex() - 1;
                 if (lambdaTerm) {
-                    // atoms[0].addToLambdaXYZGradient(g0[0], g0[1], g0[2]);
-                    // atoms[1].addToLambdaXYZGradient(g1[0], g1[1], g1[2]);
-                    // atoms[2].addToLambdaXYZGradient(g2[0], g2[1], g2[2]);
-                    // atoms[3].addToLambdaXYZGradient(g3[0], g3[1], g3[2]);
-                    int i0 = atoms[0].getIndex() - 1;
-                    lambdaGradX.add(threadID, i0, g0[0]);
-                    lambdaGradY.add(threadID, i0, g0[1]);
-                    lambdaGradZ.add(threadID, i0, g0[2]);
-                    int i1 = atoms[1].getIndex() - 1;
-                    lambdaGradX.add(threadID, i1, g1[0]);
-                    lambdaGradY.add(threadID, i1, g1[1]);
-                    lambdaGradZ.add(threadID, i1, g1[2]);
-                    int i2 = atoms[2].getIndex() - 1;
-                    lambdaGradX.add(threadID, i2, g2[0]);
-                    lambdaGradY.add(threadID, i2, g2[1]);
-                    lambdaGradZ.add(threadID, i2, g2[2]);
-                    int i3 = atoms[3].getIndex() - 1;
-                    lambdaGradX.add(threadID, i3, g3[0]);
-                    lambdaGradY.add(threadID, i3, g3[1]);
-                    lambdaGradZ.add(threadID, i3, g3[2]);
+                    lambdaGradX.add(threadID, i0, g0x);
+                    lambdaGradY.add(threadID, i0, g0y);
+                    lambdaGradZ.add(threadID, i0, g0z);
+                    lambdaGradX.add(threadID, i1, g1x);
+                    lambdaGradY.add(threadID, i1, g1y);
+                    lambdaGradZ.add(threadID, i1, g1z);
+                    lambdaGradX.add(threadID, i2, g2x);
+                    lambdaGradY.add(threadID, i2, g2y);
+                    lambdaGradZ.add(threadID, i2, g2z);
+                    lambdaGradX.add(threadID, i3, g3x);
+                    lambdaGradY.add(threadID, i3, g3y);
+                    lambdaGradZ.add(threadID, i3, g3z);
                 }
                 if (gradient) {
-                    // atoms[0].addToXYZGradient(lambda * g0[0], lambda * g0[1], lambda * g0[2]);
-                    // atoms[1].addToXYZGradient(lambda * g1[0], lambda * g1[1], lambda * g1[2]);
-                    // atoms[2].addToXYZGradient(lambda * g2[0], lambda * g2[1], lambda * g2[2]);
-                    // atoms[3].addToXYZGradient(lambda * g3[0], lambda * g3[1], lambda * g3[2]);
-                    scalar(g0, lambda, g0);
-                    scalar(g1, lambda, g1);
-                    scalar(g2, lambda, g2);
-                    scalar(g3, lambda, g3);
-                    int i0 = atoms[0].getIndex() - 1;
-                    gradX.add(threadID, i0, g0[0]);
-                    gradY.add(threadID, i0, g0[1]);
-                    gradZ.add(threadID, i0, g0[2]);
-                    int i1 = atoms[1].getIndex() - 1;
-                    gradX.add(threadID, i1, g1[0]);
-                    gradY.add(threadID, i1, g1[1]);
-                    gradZ.add(threadID, i1, g1[2]);
-                    int i2 = atoms[2].getIndex() - 1;
-                    gradX.add(threadID, i2, g2[0]);
-                    gradY.add(threadID, i2, g2[1]);
-                    gradZ.add(threadID, i2, g2[2]);
-                    int i3 = atoms[3].getIndex() - 1;
-                    gradX.add(threadID, i3, g3[0]);
-                    gradY.add(threadID, i3, g3[1]);
-                    gradZ.add(threadID, i3, g3[2]);
+                    gradX.add(threadID, i0, g0x * lambda);
+                    gradY.add(threadID, i0, g0y * lambda);
+                    gradZ.add(threadID, i0, g0z * lambda);
+                    gradX.add(threadID, i1, g1x * lambda);
+                    gradY.add(threadID, i1, g1y * lambda);
+                    gradZ.add(threadID, i1, g1z * lambda);
+                    gradX.add(threadID, i2, g2x * lambda);
+                    gradY.add(threadID, i2, g2y * lambda);
+                    gradZ.add(threadID, i2, g2z * lambda);
+                    gradX.add(threadID, i3, g3x * lambda);
+                    gradY.add(threadID, i3, g3y * lambda);
+                    gradZ.add(threadID, i3, g3z * lambda);
                 }
             }
         }
@@ -540,6 +518,15 @@ public class Torsion extends BondedTerm implements LambdaInterface {
         }
     }
 
+    /**
+     * True if the energy of this Torsion is scaled by lambda.
+     *
+     * @return a boolean.
+     */
+    boolean isLambdaScaled() {
+        return lambdaTerm;
+    }
+
     @Override
     public double getLambda() {
         return lambda;
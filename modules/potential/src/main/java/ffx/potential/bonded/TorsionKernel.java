@@ -0,0 +1,241 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.bonded;
+
+import static org.apache.commons.math3.util.FastMath.acos;
+import static org.apache.commons.math3.util.FastMath.sqrt;
+import static org.apache.commons.math3.util.FastMath.toDegrees;
+
+import ffx.numerics.AtomicDoubleArray;
+
+/**
+ * Batched evaluation of Torsion terms. Torsions scaled by lambda are
+ * evaluated by Torsion.energy.
+ *
+ * @author Michael J. Schnieders
+ * @since 1.0
+ */
+public class TorsionKernel extends BondedKernel {
+
+    private final int i0[];
+    private final int i1[];
+    private final int i2[];
+    private final int i3[];
+    /**
+     * Number of Fourier terms for each torsion.
+     */
+    private final int nFourier[];
+    /**
+     * Offset of the first Fourier term of each torsion into the amplitude,
+     * cosine and sine arrays.
+     */
+    private final int offset[];
+    /**
+     * Amplitudes, including units.
+     */
+    private final double amplitude[];
+    private final double cosine[];
+    private final double sine[];
+
+    /**
+     * Constructor for a TorsionKernel.
+     *
+     * @param torsions The torsions.
+     * @param nTorsions The number of torsions.
+     */
+    public TorsionKernel(Torsion torsions[], int nTorsions) {
+        super(torsions, nTorsions);
+        i0 = new int[nTorsions];
+        i1 = new int[nTorsions];
+        i2 = new int[nTorsions];
+        i3 = new int[nTorsions];
+        nFourier = new int[nTorsions];
+        offset = new int[nTorsions];
+        int count = 0;
+        for (int i = 0; i < nTorsions; i++) {
+            Torsion torsion = torsions[i];
+            if (torsion.getClass() != Torsion.class || torsion.torsionType == null
+                    || torsion.torsionType.terms < 1) {
+                fallback[i] = true;
+                continue;
+            }
+            offset[i] = count;
+            nFourier[i] = torsion.torsionType.terms;
+            count += nFourier[i];
+        }
+        amplitude = new double[count];
+        cosine = new double[count];
+        sine = new double[count];
+        for (int i = 0; i < nTorsions; i++) {
+            if (fallback[i]) {
+                continue;
+            }
+            Torsion torsion = torsions[i];
+            i0[i] = torsion.atoms[0].getIndex() - 1;
+            i1[i] = torsion.atoms[1].getIndex() - 1;
+            i2[i] = torsion.atoms[2].getIndex() - 1;
+            i3[i] = torsion.atoms[3].getIndex() - 1;
+            for (int j = 0; j < nFourier[i]; j++) {
+                amplitude[offset[i] + j] = torsion.units * torsion.torsionType.amplitude[j];
+                cosine[offset[i] + j] = torsion.torsionType.cosine[j];
+                sine[offset[i] + j] = torsion.torsionType.sine[j];
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double energy(boolean gradient, int threadID, int first, int last,
+            double x[], double y[], double z[],
+            AtomicDoubleArray gradX, AtomicDoubleArray gradY, AtomicDoubleArray gradZ,
+            AtomicDoubleArray lambdaGradX, AtomicDoubleArray lambdaGradY, AtomicDoubleArray lambdaGradZ) {
+        double energy = 0.0;
+        for (int i = first; i <= last; i++) {
+            BondedTerm term = terms[i];
+            if (fallback[i] || term.esvTerm || ((Torsion) term).isLambdaScaled()) {
+                energy += fallbackEnergy(i, gradient, threadID, gradX, gradY, gradZ,
+                        lambdaGradX, lambdaGradY, lambdaGradZ);
+                continue;
+            }
+            int a0 = i0[i];
+            int a1 = i1[i];
+            int a2 = i2[i];
+            int a3 = i3[i];
+            double x01 = x[a1] - x[a0];
+            double y01 = y[a1] - y[a0];
+            double z01 = z[a1] - z[a0];
+            double x12 = x[a2] - x[a1];
+            double y12 = y[a2] - y[a1];
+            double z12 = z[a2] - z[a1];
+            double x23 = x[a3] - x[a2];
+            double y23 = y[a3] - y[a2];
+            double z23 = z[a3] - z[a2];
+            // x0112 = v01 x v12
+            double xt = y01 * z12 - z01 * y12;
+            double yt = z01 * x12 - x01 * z12;
+            double zt = x01 * y12 - y01 * x12;
+            // x1223 = v12 x v23
+            double xu = y12 * z23 - z12 * y23;
+            double yu = z12 * x23 - x12 * z23;
+            double zu = x12 * y23 - y12 * x23;
+            double r01_12 = xt * xt + yt * yt + zt * zt;
+            double r12_23 = xu * xu + yu * yu + zu * zu;
+            double rr = sqrt(r01_12 * r12_23);
+            if (rr == 0.0) {
+                storeResult(i, 0.0, 0.0);
+                continue;
+            }
+            // x = x0112 x x1223
+            double xtu = yt * zu - zt * yu;
+            double ytu = zt * xu - xt * zu;
+            double ztu = xt * yu - yt * xu;
+            double r12 = sqrt(x12 * x12 + y12 * y12 + z12 * z12);
+            double cos1 = (xt * xu + yt * yu + zt * zu) / rr;
+            double sin1 = (x12 * xtu + y12 * ytu + z12 * ztu) / (r12 * rr);
+            double value = toDegrees(acos(cos1));
+            if (sin1 < 0.0) {
+                value = -value;
+            }
+            int o = offset[i];
+            double e = amplitude[o] * (1.0 + cos1 * cosine[o] + sin1 * sine[o]);
+            double dedphi = amplitude[o] * (cos1 * sine[o] - sin1 * cosine[o]);
+            double cosprev = cos1;
+            double sinprev = sin1;
+            int n = nFourier[i];
+            for (int j = 1; j < n; j++) {
+                double cosn = cos1 * cosprev - sin1 * sinprev;
+                double sinn = sin1 * cosprev + cos1 * sinprev;
+                e += amplitude[o + j] * (1.0 + cosn * cosine[o + j] + sinn * sine[o + j]);
+                dedphi += amplitude[o + j] * (1.0 + j) * (cosn * sine[o + j] - sinn * cosine[o + j]);
+                cosprev = cosn;
+                sinprev = sinn;
+            }
+            if (gradient) {
+                double x02 = x[a2] - x[a0];
+                double y02 = y[a2] - y[a0];
+                double z02 = z[a2] - z[a0];
+                double x13 = x[a3] - x[a1];
+                double y13 = y[a3] - y[a1];
+                double z13 = z[a3] - z[a1];
+                // x1 = (x0112 x v12) * dedphi / (r01_12 * r12)
+                double s1 = dedphi / (r01_12 * r12);
+                double xa = s1 * (yt * z12 - zt * y12);
+                double ya = s1 * (zt * x12 - xt * z12);
+                double za = s1 * (xt * y12 - yt * x12);
+                // x2 = (x1223 x v12) * -dedphi / (r12_23 * r12)
+                double s2 = -dedphi / (r12_23 * r12);
+                double xb = s2 * (yu * z12 - zu * y12);
+                double yb = s2 * (zu * x12 - xu * z12);
+                double zb = s2 * (xu * y12 - yu * x12);
+                // g0 = x1 x v12
+                double g0x = ya * z12 - za * y12;
+                double g0y = za * x12 - xa * z12;
+                double g0z = xa * y12 - ya * x12;
+                // g1 = v02 x x1 + x2 x v23
+                double g1x = y02 * za - z02 * ya + yb * z23 - zb * y23;
+                double g1y = z02 * xa - x02 * za + zb * x23 - xb * z23;
+                double g1z = x02 * ya - y02 * xa + xb * y23 - yb * x23;
+                // g2 = x1 x v01 + v13 x x2
+                double g2x = ya * z01 - za * y01 + y13 * zb - z13 * yb;
+                double g2y = za * x01 - xa * z01 + z13 * xb - x13 * zb;
+                double g2z = xa * y01 - ya * x01 + x13 * yb - y13 * xb;
+                // g3 = x2 x v12
+                double g3x = yb * z12 - zb * y12;
+                double g3y = zb * x12 - xb * z12;
+                double g3z = xb * y12 - yb * x12;
+                gradX.add(threadID, a0, g0x);
+                gradY.add(threadID, a0, g0y);
+                gradZ.add(threadID, a0, g0z);
+                gradX.add(threadID, a1, g1x);
+                gradY.add(threadID, a1, g1y);
+                gradZ.add(threadID, a1, g1z);
+                gradX.add(threadID, a2, g2x);
+                gradY.add(threadID, a2, g2y);
+                gradZ.add(threadID, a2, g2z);
+                gradX.add(threadID, a3, g3x);
+                gradY.add(threadID, a3, g3y);
+                gradZ.add(threadID, a3, g3z);
+            }
+            storeResult(i, value, e);
+            energy += e;
+        }
+        return energy;
+    }
+}
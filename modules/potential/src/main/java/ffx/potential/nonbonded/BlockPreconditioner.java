@@ -0,0 +1,682 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.nonbonded;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.lang.String.format;
+
+import static org.apache.commons.math3.util.FastMath.PI;
+import static org.apache.commons.math3.util.FastMath.exp;
+import static org.apache.commons.math3.util.FastMath.min;
+import static org.apache.commons.math3.util.FastMath.sqrt;
+
+import edu.rit.pj.IntegerForLoop;
+import edu.rit.pj.IntegerSchedule;
+import edu.rit.pj.ParallelRegion;
+import edu.rit.pj.ParallelTeam;
+
+import ffx.crystal.Crystal;
+
+import static ffx.numerics.Erf.erfc;
+
+/**
+ * Block-Jacobi preconditioner for the mutual induced dipole equations
+ * (&alpha;<sup>-1</sup> - T) &mu; = E.
+ * <p>
+ * Polarizable atoms are grouped into blocks by molecule, and molecules larger
+ * than the maximum block size are split into runs of consecutive atoms (which
+ * usually follow residue boundaries). For each block the dense 3n x 3n matrix
+ * &alpha;<sub>B</sub><sup>-1</sup> - T<sub>BB</sub> is built from the Thole
+ * damped (and optionally Ewald screened) dipole field tensor and factored by
+ * Cholesky decomposition once per SCF, since coordinates are fixed during the
+ * SCF. The blocks and their matrices are only rebuilt when the molecules or
+ * the set of polarizable atoms in use change. Applying the preconditioner is then a pair of triangular solves per
+ * block. Blocks whose matrix is not positive definite fall back to the
+ * diagonal preconditioner &alpha;.
+ *
+ * @author Michael J. Schnieders
+ * @since 1.0
+ */
+public class BlockPreconditioner {
+
+    private static final Logger logger = Logger.getLogger(BlockPreconditioner.class.getName());
+    private static final double SQRT_PI = sqrt(PI);
+
+    /**
+     * The maximum number of atoms per block.
+     */
+    private final int maxBlockSize;
+    /**
+     * Atom indices for each block.
+     */
+    private int blocks[][];
+    /**
+     * The block of each atom, or -1 for atoms that are not in a block.
+     */
+    private int blockIndex[];
+    /**
+     * Cholesky factor (lower triangle, row major) for each block.
+     */
+    private double factors[][];
+    /**
+     * False for blocks whose matrix is not positive definite, which use the
+     * diagonal preconditioner.
+     */
+    private boolean factored[];
+    /**
+     * The molecule array and the atoms in blocks when the blocks were built.
+     */
+    private int molecule[];
+    private boolean member[];
+    /**
+     * Atoms that are not part of any block (unused or not polarizable).
+     */
+    private int diagonal[];
+    private double polarizability[];
+    private int nFailed;
+
+    private final FactorRegion factorRegion;
+    private final SolveRegion solveRegion;
+    private final ScreenRegion screenRegion;
+
+    /**
+     * Constructor for BlockPreconditioner.
+     *
+     * @param nThreads The number of threads of the ParallelTeam that will be
+     * used.
+     * @param maxBlockSize The maximum number of atoms per block.
+     */
+    public BlockPreconditioner(int nThreads, int maxBlockSize) {
+        this.maxBlockSize = Math.max(1, maxBlockSize);
+        factorRegion = new FactorRegion(nThreads);
+        solveRegion = new SolveRegion(nThreads);
+        screenRegion = new ScreenRegion(nThreads);
+    }
+
+    /**
+     * Group polarizable atoms into blocks. The blocks and their factor arrays
+     * are kept if the molecules and the polarizable atoms in use are the same
+     * as for the previous call.
+     *
+     * @param nAtoms The number of atoms.
+     * @param molecule The molecule index of each atom.
+     * @param use Flag for each atom that is in use.
+     * @param polarizability The polarizability of each atom.
+     */
+    public void setBlocks(int nAtoms, int molecule[], boolean use[], double polarizability[]) {
+        this.polarizability = polarizability;
+        boolean changed = (blocks == null || molecule != this.molecule || member.length != nAtoms);
+        for (int i = 0; i < nAtoms && !changed; i++) {
+            changed = member[i] != (use[i] && polarizability[i] > 0.0);
+        }
+        if (!changed) {
+            return;
+        }
+        this.molecule = molecule;
+        member = new boolean[nAtoms];
+        Map<Integer, List<Integer>> molecules = new LinkedHashMap<>();
+        List<Integer> other = new ArrayList<>();
+        for (int i = 0; i < nAtoms; i++) {
+            if (use[i] && polarizability[i] > 0.0) {
+                member[i] = true;
+                molecules.computeIfAbsent(molecule[i], k -> new ArrayList<>()).add(i);
+            } else {
+                other.add(i);
+            }
+        }
+        List<int[]> blockList = new ArrayList<>();
+        for (List<Integer> atoms : molecules.values()) {
+            int n = atoms.size();
+            // Split large molecules into nearly equal runs of consecutive atoms.
+            int nBlocks = (n + maxBlockSize - 1) / maxBlockSize;
+            int start = 0;
+            for (int b = 0; b < nBlocks; b++) {
+                int end = (int) ((long) n * (b + 1) / nBlocks);
+                int block[] = new int[end - start];
+                for (int j = start; j < end; j++) {
+                    block[j - start] = atoms.get(j);
+                }
+                blockList.add(block);
+                start = end;
+            }
+        }
+        blocks = blockList.toArray(new int[blockList.size()][]);
+        blockIndex = new int[nAtoms];
+        Arrays.fill(blockIndex, -1);
+        for (int b = 0; b < blocks.length; b++) {
+            for (int i : blocks[b]) {
+                blockIndex[i] = b;
+            }
+        }
+        factors = new double[blocks.length][];
+        for (int b = 0; b < blocks.length; b++) {
+            int dim = 3 * blocks[b].length;
+            factors[b] = new double[dim * dim];
+        }
+        factored = new boolean[blocks.length];
+        diagonal = new int[other.size()];
+        for (int j = 0; j < diagonal.length; j++) {
+            diagonal[j] = other.get(j);
+        }
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine(format(" Block preconditioner: %d blocks of at most %d atoms.",
+                    blocks.length, maxBlockSize));
+        }
+    }
+
+    /**
+     * @return the number of blocks.
+     */
+    public int getNumberOfBlocks() {
+        return (blocks == null) ? 0 : blocks.length;
+    }
+
+    /**
+     * @return the block of each atom, or -1 for atoms that are not in a block.
+     */
+    public int[] getBlockIndex() {
+        return blockIndex;
+    }
+
+    /**
+     * @return the number of blocks that fell back to the diagonal
+     * preconditioner during the last factorization.
+     */
+    public int getNumberOfFailedBlocks() {
+        return nFailed;
+    }
+
+    /**
+     * Build and factor the block matrices for the current coordinates.
+     *
+     * @param parallelTeam The ParallelTeam to use.
+     * @param x X-coordinates.
+     * @param y Y-coordinates.
+     * @param z Z-coordinates.
+     * @param crystal The Crystal used for minimum image separations.
+     * @param ipdamp Thole damping factor of each atom.
+     * @param thole Thole parameter of each atom.
+     * @param aewald Ewald coefficient for the real space screening (0.0 for
+     * the bare dipole tensor).
+     */
+    public void factor(ParallelTeam parallelTeam, double x[], double y[], double z[],
+            Crystal crystal, double ipdamp[], double thole[], double aewald) {
+        factorRegion.x = x;
+        factorRegion.y = y;
+        factorRegion.z = z;
+        factorRegion.crystal = crystal;
+        factorRegion.ipdamp = ipdamp;
+        factorRegion.thole = thole;
+        factorRegion.aewald = aewald;
+        try {
+            parallelTeam.execute(factorRegion);
+        } catch (Exception e) {
+            String message = " Fatal exception factoring the block preconditioner.";
+            logger.log(Level.SEVERE, message, e);
+        }
+        nFailed = 0;
+        for (boolean positiveDefinite : factored) {
+            if (!positiveDefinite) {
+                nFailed++;
+            }
+        }
+        if (nFailed > 0) {
+            logger.fine(format(" %d preconditioner blocks are not positive definite.", nFailed));
+        }
+    }
+
+    /**
+     * Apply the preconditioner: rsdPre = M<sup>-1</sup> rsd, for both sets of
+     * residuals.
+     *
+     * @param parallelTeam The ParallelTeam to use.
+     * @param rsd The residual field [3][nAtoms].
+     * @param rsdPre The preconditioned residual [3][nAtoms].
+     * @param rsdCR The polarization group residual field [3][nAtoms].
+     * @param rsdPreCR The preconditioned polarization group residual
+     * [3][nAtoms].
+     */
+    public void solve(ParallelTeam parallelTeam, double rsd[][], double rsdPre[][],
+            double rsdCR[][], double rsdPreCR[][]) {
+        solveRegion.rsd = rsd;
+        solveRegion.rsdPre = rsdPre;
+        solveRegion.rsdCR = rsdCR;
+        solveRegion.rsdPreCR = rsdPreCR;
+        try {
+            parallelTeam.execute(solveRegion);
+        } catch (Exception e) {
+            String message = " Fatal exception applying the block preconditioner.";
+            logger.log(Level.SEVERE, message, e);
+        }
+    }
+
+    /**
+     * Add the field within each block of the difference between the real
+     * space tensor with Ewald coefficient aewald and the tensor of the block
+     * matrices: out += scale (T(aewald) - T) in, for both sets of dipoles.
+     * The Thole damping cancels in the difference. A long range field that
+     * includes the pairs within each block, such as the reciprocal space
+     * field, plus this field omits what the block matrices already hold.
+     *
+     * @param parallelTeam The ParallelTeam to use.
+     * @param aewald The Ewald coefficient.
+     * @param scale The scale factor of the field.
+     * @param in The induced dipoles [3][nAtoms].
+     * @param out The field [3][nAtoms].
+     * @param inCR The chain rule induced dipoles [3][nAtoms].
+     * @param outCR The chain rule field [3][nAtoms].
+     */
+    public void screenedField(ParallelTeam parallelTeam, double aewald, double scale,
+            double in[][], double out[][], double inCR[][], double outCR[][]) {
+        screenRegion.aewald = aewald;
+        screenRegion.scale = scale;
+        screenRegion.in = in;
+        screenRegion.out = out;
+        screenRegion.inCR = inCR;
+        screenRegion.outCR = outCR;
+        try {
+            parallelTeam.execute(screenRegion);
+        } catch (Exception e) {
+            String message = " Fatal exception computing the block screening field.";
+            logger.log(Level.SEVERE, message, e);
+        }
+    }
+
+    /**
+     * Compute the real space Ewald terms bn1 and bn2 of the dipole field
+     * tensor (bn0 is only needed to build them).
+     *
+     * @param aewald The Ewald coefficient (0.0 for the bare tensor).
+     * @param r The separation.
+     * @param bn The terms bn1 and bn2.
+     */
+    private static void ewaldTerms(double aewald, double r, double bn[]) {
+        final double rr1 = 1.0 / r;
+        final double rr2 = rr1 * rr1;
+        final double alsq2 = 2.0 * aewald * aewald;
+        final double an0 = (aewald > 0.0) ? alsq2 / (SQRT_PI * aewald) : 0.0;
+        final double an1 = alsq2 * an0;
+        final double ralpha = aewald * r;
+        final double exp2a = exp(-ralpha * ralpha);
+        final double bn0 = erfc(ralpha) * rr1;
+        bn[0] = (bn0 + an0 * exp2a) * rr2;
+        bn[1] = (3.0 * bn[0] + an1 * exp2a) * rr2;
+    }
+
+    /**
+     * In place Cholesky decomposition of a dense symmetric matrix stored row
+     * major. Only the lower triangle is referenced and overwritten.
+     *
+     * @param a The matrix.
+     * @param n The dimension.
+     * @return false if the matrix is not positive definite.
+     */
+    static boolean cholesky(double a[], int n) {
+        for (int j = 0; j < n; j++) {
+            int rj = j * n;
+            double d = a[rj + j];
+            for (int k = 0; k < j; k++) {
+                d -= a[rj + k] * a[rj + k];
+            }
+            if (!(d > 0.0)) {
+                return false;
+            }
+            d = sqrt(d);
+            a[rj + j] = d;
+            double id = 1.0 / d;
+            for (int i = j + 1; i < n; i++) {
+                int ri = i * n;
+                double s = a[ri + j];
+                for (int k = 0; k < j; k++) {
+                    s -= a[ri + k] * a[rj + k];
+                }
+                a[ri + j] = s * id;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Solve L L<sup>T</sup> b' = b in place.
+     *
+     * @param l The Cholesky factor.
+     * @param n The dimension.
+     * @param b The right hand side, overwritten by the solution.
+     */
+    static void choleskySolve(double l[], int n, double b[]) {
+        for (int i = 0; i < n; i++) {
+            int ri = i * n;
+            double s = b[i];
+            for (int k = 0; k < i; k++) {
+                s -= l[ri + k] * b[k];
+            }
+            b[i] = s / l[ri + i];
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            double s = b[i];
+            for (int k = i + 1; k < n; k++) {
+                s -= l[k * n + i] * b[k];
+            }
+            b[i] = s / l[i * n + i];
+        }
+    }
+
+    private class FactorRegion extends ParallelRegion {
+
+        private double x[], y[], z[];
+        private Crystal crystal;
+        private double ipdamp[], thole[];
+        private double aewald;
+        private final FactorLoop factorLoop[];
+
+        FactorRegion(int nThreads) {
+            factorLoop = new FactorLoop[nThreads];
+        }
+
+        @Override
+        public void run() throws Exception {
+            int ti = getThreadIndex();
+            if (factorLoop[ti] == null) {
+                factorLoop[ti] = new FactorLoop();
+            }
+            if (blocks.length > 0) {
+                execute(0, blocks.length - 1, factorLoop[ti]);
+            }
+        }
+
+        private class FactorLoop extends IntegerForLoop {
+
+            private final double dx[] = new double[3];
+            private final double bn[] = new double[2];
+
+            @Override
+            public IntegerSchedule schedule() {
+                return IntegerSchedule.dynamic(1);
+            }
+
+            @Override
+            public void run(int lb, int ub) {
+                for (int b = lb; b <= ub; b++) {
+                    final int block[] = blocks[b];
+                    final int n = block.length;
+                    final int dim = 3 * n;
+                    final double a[] = factors[b];
+                    for (int ii = 0; ii < n; ii++) {
+                        final int i = block[ii];
+                        final double ipolar = 1.0 / polarizability[i];
+                        final int d = 3 * ii;
+                        for (int l = 0; l < 3; l++) {
+                            for (int m = 0; m < 3; m++) {
+                                a[(d + l) * dim + d + m] = (l == m) ? ipolar : 0.0;
+                            }
+                        }
+                        for (int kk = 0; kk < ii; kk++) {
+                            final int k = block[kk];
+                            dx[0] = x[k] - x[i];
+                            dx[1] = y[k] - y[i];
+                            dx[2] = z[k] - z[i];
+                            final double r2 = crystal.image(dx);
+                            final double r = sqrt(r2);
+                            final double rr1 = 1.0 / r;
+                            final double rr2 = rr1 * rr1;
+                            ewaldTerms(aewald, r, bn);
+                            final double bn1 = bn[0];
+                            final double bn2 = bn[1];
+                            double scale3 = 1.0;
+                            double scale5 = 1.0;
+                            double damp = ipdamp[i] * ipdamp[k];
+                            final double pgamma = min(thole[i], thole[k]);
+                            final double rdamp = r * damp;
+                            damp = -pgamma * rdamp * rdamp * rdamp;
+                            if (damp > -50.0) {
+                                final double expdamp = exp(damp);
+                                scale3 = 1.0 - expdamp;
+                                scale5 = 1.0 - expdamp * (1.0 - damp);
+                            }
+                            final double rr3 = rr1 * rr2 * (1.0 - scale3);
+                            final double rr5 = 3.0 * rr1 * rr2 * rr2 * (1.0 - scale5);
+                            /**
+                             * The field tensor is T = (rr3 - bn1) I + (bn2 -
+                             * rr5) r r; the block matrix holds -T.
+                             */
+                            final double ta = bn1 - rr3;
+                            final double tb = rr5 - bn2;
+                            final int e = 3 * kk;
+                            for (int l = 0; l < 3; l++) {
+                                for (int m = 0; m < 3; m++) {
+                                    double t = tb * dx[l] * dx[m];
+                                    if (l == m) {
+                                        t += ta;
+                                    }
+                                    a[(d + l) * dim + e + m] = t;
+                                    a[(e + m) * dim + d + l] = t;
+                                }
+                            }
+                        }
+                    }
+                    factored[b] = cholesky(a, dim);
+                }
+            }
+        }
+    }
+
+    private class SolveRegion extends ParallelRegion {
+
+        private double rsd[][], rsdPre[][];
+        private double rsdCR[][], rsdPreCR[][];
+        private final SolveLoop solveLoop[];
+        private final DiagonalLoop diagonalLoop[];
+
+        SolveRegion(int nThreads) {
+            solveLoop = new SolveLoop[nThreads];
+            diagonalLoop = new DiagonalLoop[nThreads];
+        }
+
+        @Override
+        public void run() throws Exception {
+            int ti = getThreadIndex();
+            if (solveLoop[ti] == null) {
+                solveLoop[ti] = new SolveLoop();
+                diagonalLoop[ti] = new DiagonalLoop();
+            }
+            if (blocks.length > 0) {
+                execute(0, blocks.length - 1, solveLoop[ti]);
+            }
+            if (diagonal.length > 0) {
+                execute(0, diagonal.length - 1, diagonalLoop[ti]);
+            }
+        }
+
+        private class SolveLoop extends IntegerForLoop {
+
+            private double b[] = new double[0];
+
+            @Override
+            public IntegerSchedule schedule() {
+                return IntegerSchedule.fixed();
+            }
+
+            @Override
+            public void run(int lb, int ub) {
+                for (int j = lb; j <= ub; j++) {
+                    apply(j, rsd, rsdPre);
+                    apply(j, rsdCR, rsdPreCR);
+                }
+            }
+
+            private void apply(int j, double in[][], double out[][]) {
+                final int block[] = blocks[j];
+                final int n = block.length;
+                final double factor[] = factors[j];
+                if (!factored[j]) {
+                    for (int i : block) {
+                        final double polar = polarizability[i];
+                        out[0][i] = polar * in[0][i];
+                        out[1][i] = polar * in[1][i];
+                        out[2][i] = polar * in[2][i];
+                    }
+                    return;
+                }
+                if (b.length < 3 * n) {
+                    b = new double[3 * maxBlockSize];
+                }
+                for (int ii = 0; ii < n; ii++) {
+                    final int i = block[ii];
+                    b[3 * ii] = in[0][i];
+                    b[3 * ii + 1] = in[1][i];
+                    b[3 * ii + 2] = in[2][i];
+                }
+                choleskySolve(factor, 3 * n, b);
+                for (int ii = 0; ii < n; ii++) {
+                    final int i = block[ii];
+                    out[0][i] = b[3 * ii];
+                    out[1][i] = b[3 * ii + 1];
+                    out[2][i] = b[3 * ii + 2];
+                }
+            }
+        }
+
+        private class DiagonalLoop extends IntegerForLoop {
+
+            @Override
+            public IntegerSchedule schedule() {
+                return IntegerSchedule.fixed();
+            }
+
+            @Override
+            public void run(int lb, int ub) {
+                for (int j = lb; j <= ub; j++) {
+                    final int i = diagonal[j];
+                    final double polar = polarizability[i];
+                    rsdPre[0][i] = polar * rsd[0][i];
+                    rsdPre[1][i] = polar * rsd[1][i];
+                    rsdPre[2][i] = polar * rsd[2][i];
+                    rsdPreCR[0][i] = polar * rsdCR[0][i];
+                    rsdPreCR[1][i] = polar * rsdCR[1][i];
+                    rsdPreCR[2][i] = polar * rsdCR[2][i];
+                }
+            }
+        }
+    }
+
+    private class ScreenRegion extends ParallelRegion {
+
+        private double aewald;
+        private double scale;
+        private double in[][], out[][];
+        private double inCR[][], outCR[][];
+        private final ScreenLoop screenLoop[];
+
+        ScreenRegion(int nThreads) {
+            screenLoop = new ScreenLoop[nThreads];
+        }
+
+        @Override
+        public void run() throws Exception {
+            int ti = getThreadIndex();
+            if (screenLoop[ti] == null) {
+                screenLoop[ti] = new ScreenLoop();
+            }
+            if (blocks.length > 0) {
+                execute(0, blocks.length - 1, screenLoop[ti]);
+            }
+        }
+
+        /**
+         * Each block only updates the field of its own atoms.
+         */
+        private class ScreenLoop extends IntegerForLoop {
+
+            private final double dx[] = new double[3];
+            private final double bn[] = new double[2];
+            private final double bnBlock[] = new double[2];
+
+            @Override
+            public IntegerSchedule schedule() {
+                return IntegerSchedule.dynamic(1);
+            }
+
+            @Override
+            public void run(int lb, int ub) {
+                final double x[] = factorRegion.x;
+                final double y[] = factorRegion.y;
+                final double z[] = factorRegion.z;
+                for (int b = lb; b <= ub; b++) {
+                    if (!factored[b]) {
+                        continue;
+                    }
+                    final int block[] = blocks[b];
+                    final int n = block.length;
+                    for (int ii = 0; ii < n; ii++) {
+                        final int i = block[ii];
+                        for (int kk = 0; kk < ii; kk++) {
+                            final int k = block[kk];
+                            dx[0] = x[k] - x[i];
+                            dx[1] = y[k] - y[i];
+                            dx[2] = z[k] - z[i];
+                            final double r = sqrt(factorRegion.crystal.image(dx));
+                            ewaldTerms(aewald, r, bn);
+                            ewaldTerms(factorRegion.aewald, r, bnBlock);
+                            // The difference of the tensors is (bnBlock1 - bn1) I + (bn2 - bnBlock2) r r.
+                            final double ta = scale * (bnBlock[0] - bn[0]);
+                            final double tb = scale * (bn[1] - bnBlock[1]);
+                            add(i, k, ta, tb, in, out);
+                            add(i, k, ta, tb, inCR, outCR);
+                        }
+                    }
+                }
+            }
+
+            private void add(int i, int k, double ta, double tb, double in[][], double out[][]) {
+                final double uir = in[0][i] * dx[0] + in[1][i] * dx[1] + in[2][i] * dx[2];
+                final double ukr = in[0][k] * dx[0] + in[1][k] * dx[1] + in[2][k] * dx[2];
+                for (int l = 0; l < 3; l++) {
+                    out[l][i] += ta * in[l][k] + tb * ukr * dx[l];
+                    out[l][k] += ta * in[l][i] + tb * uir * dx[l];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,643 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.nonbonded;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import static java.lang.String.format;
+import static java.util.Arrays.copyOf;
+import static java.util.Arrays.fill;
+import static java.util.Arrays.sort;
+
+import static org.apache.commons.math3.util.FastMath.cbrt;
+import static org.apache.commons.math3.util.FastMath.ceil;
+import static org.apache.commons.math3.util.FastMath.max;
+import static org.apache.commons.math3.util.FastMath.min;
+import static org.apache.commons.math3.util.FastMath.sqrt;
+
+import ffx.crystal.Crystal;
+
+/**
+ * The ClusterPairList class groups spatially close atoms of the asymmetric unit
+ * into fixed size clusters (4 or 8 atoms) and stores a list of cluster pair
+ * "tiles" that contain all atom pairs within the cutoff plus buffer distance.
+ *
+ * Atoms are binned into columns in the x-y plane, sorted along z within each
+ * column and then cut into clusters. Tiles are derived from the per-atom
+ * Verlet lists of the asymmetric unit, so the cluster list is valid for as
+ * long as the Verlet lists are. Each tile has:
+ * <ul>
+ * <li>An interaction bitmask, with bit (a * clusterSize + b) set if atom a of
+ * the first cluster interacts with atom b of the second cluster with full
+ * weight. Padding slots, self pairs, pairs counted twice within a diagonal
+ * tile and masked pairs (i.e. 1-2 or 1-3) are cleared.</li>
+ * <li>A periodic shift vector that is added to the first cluster, which is the
+ * minimum image of the cluster centers. If a tile spans more than the largest
+ * sphere enclosed by the unit cell, the shift is not used and each pair is
+ * imaged instead.</li>
+ * </ul>
+ * Pairs with a mask strictly between 0 and 1 (i.e. scaled 1-4 interactions)
+ * are stored in a separate list, which is grouped by the cluster of the first
+ * atom.
+ *
+ * @author Michael J. Schnieders
+ *
+ * @since 1.0
+ */
+public class ClusterPairList {
+
+    private static final Logger logger = Logger.getLogger(ClusterPairList.class.getName());
+
+    /**
+     * The number of atoms per cluster.
+     */
+    private final int clusterSize;
+    /**
+     * Masking rules used to exclude (or scale) bonded pairs; may be null.
+     */
+    private final MaskingInterface maskingRules;
+    /**
+     * The number of atoms when the list was built.
+     */
+    private int nAtoms = 0;
+    /**
+     * The number of clusters.
+     */
+    private int nClusters = 0;
+    /**
+     * The atoms of each cluster, padded with -1. [nClusters * clusterSize]
+     */
+    private int clusterAtoms[];
+    /**
+     * The cluster of each atom. [nAtoms]
+     */
+    private int clusterOf[];
+    /**
+     * Cluster coordinates in struct-of-arrays layout, which are updated by the
+     * gather method. [nClusters * clusterSize]
+     */
+    private double x[], y[], z[];
+    /**
+     * Cluster centers. [3 * nClusters]
+     */
+    private double center[];
+    /**
+     * Cluster radii. [nClusters]
+     */
+    private double radius[];
+    /**
+     * The number of tiles.
+     */
+    private int nTiles = 0;
+    /**
+     * The first tile of each cluster. [nClusters + 1]
+     */
+    private int tileStart[];
+    /**
+     * The second cluster of each tile. [nTiles]
+     */
+    private int tileCluster[];
+    /**
+     * The interaction bitmask of each tile. [nTiles]
+     */
+    private long tileMask[];
+    /**
+     * The periodic shift of each tile. [3 * nTiles]
+     */
+    private double tileShift[];
+    /**
+     * If true, pairs of the tile must be imaged individually. [nTiles]
+     */
+    private boolean tileImage[];
+    /**
+     * The number of scaled pairs.
+     */
+    private int nScaled = 0;
+    /**
+     * The first scaled pair of each cluster. [nClusters + 1]
+     */
+    private int scaledStart[];
+    /**
+     * The atoms and scale factor of each scaled pair. [nScaled]
+     */
+    private int scaledI[], scaledK[];
+    private double scaledScale[];
+    /**
+     * The number of atom pairs with their interaction bit set.
+     */
+    private long pairCount = 0;
+    /**
+     * Work arrays.
+     */
+    private int column[];
+    private int order[];
+    private long keys[];
+    private int mark[];
+    private double mask[];
+    /**
+     * Reads compact neighbor lists in place.
+     */
+    private final CompactNeighborList.Cursor cursor = new CompactNeighborList.Cursor();
+
+    /**
+     * Constructor for a ClusterPairList.
+     *
+     * @param clusterSize The number of atoms per cluster (4 or 8).
+     * @param maskingRules Masking rules for bonded pairs (may be null).
+     */
+    public ClusterPairList(int clusterSize, MaskingInterface maskingRules) {
+        if (clusterSize != 4 && clusterSize != 8) {
+            throw new IllegalArgumentException(format(" Unsupported cluster size %d; use 4 or 8.", clusterSize));
+        }
+        this.clusterSize = clusterSize;
+        this.maskingRules = maskingRules;
+    }
+
+    /**
+     * Build clusters and cluster pair tiles for the asymmetric unit.
+     *
+     * @param xyz The coordinates of the asymmetric unit [3 * nAtoms].
+     * @param nAtoms The number of atoms.
+     * @param crystal The boundary conditions.
+     * @param lists The Verlet lists of the asymmetric unit, or null if compact
+     * lists are used.
+     * @param compact The compact Verlet lists, or null.
+     */
+    void build(double xyz[], int nAtoms, Crystal crystal, int lists[][], CompactNeighborList compact) {
+        this.nAtoms = nAtoms;
+        if (nAtoms == 0) {
+            nClusters = 0;
+            nTiles = 0;
+            nScaled = 0;
+            pairCount = 0;
+            return;
+        }
+        assignClusters(xyz);
+        findTiles(crystal, lists, compact);
+        maskTiles();
+        if (logger.isLoggable(Level.FINE)) {
+            long slots = (long) nTiles * clusterSize * clusterSize;
+            logger.fine(format("   Cluster pair list: %d clusters, %d tiles, %d pairs (%5.1f%% of tile slots), %d scaled",
+                    nClusters, nTiles, pairCount, 100.0 * pairCount / max(1, slots), nScaled));
+        }
+    }
+
+    /**
+     * Sort atoms into columns in the x-y plane, sort each column along z and
+     * cut the columns into clusters.
+     */
+    private void assignClusters(double xyz[]) {
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+        for (int i = 0; i < nAtoms; i++) {
+            int i3 = i * 3;
+            minX = min(minX, xyz[i3]);
+            minY = min(minY, xyz[i3 + 1]);
+            minZ = min(minZ, xyz[i3 + 2]);
+            maxX = max(maxX, xyz[i3]);
+            maxY = max(maxY, xyz[i3 + 1]);
+            maxZ = max(maxZ, xyz[i3 + 2]);
+        }
+        double lx = max(maxX - minX, 1.0);
+        double ly = max(maxY - minY, 1.0);
+        double lz = max(maxZ - minZ, 1.0);
+
+        /**
+         * Choose the column cross section so that clusters are roughly cubic.
+         */
+        double edge = cbrt(clusterSize * lx * ly * lz / nAtoms);
+        int nx = max(1, (int) ceil(lx / edge));
+        int ny = max(1, (int) ceil(ly / edge));
+        int nColumns = nx * ny;
+
+        if (column == null || column.length < nAtoms) {
+            column = new int[nAtoms];
+            order = new int[nAtoms];
+            keys = new long[nAtoms];
+            clusterOf = new int[nAtoms];
+        }
+        int columnStart[] = new int[nColumns + 1];
+        for (int i = 0; i < nAtoms; i++) {
+            int i3 = i * 3;
+            int ix = min(nx - 1, (int) ((xyz[i3] - minX) / edge));
+            int iy = min(ny - 1, (int) ((xyz[i3 + 1] - minY) / edge));
+            column[i] = ix + nx * iy;
+            columnStart[column[i] + 1]++;
+        }
+        for (int c = 0; c < nColumns; c++) {
+            columnStart[c + 1] += columnStart[c];
+        }
+
+        /**
+         * Within each column, sort by z using keys that pack the quantized z
+         * coordinate with the atom index.
+         */
+        int fill[] = copyOf(columnStart, nColumns);
+        double zScale = Integer.MAX_VALUE / lz;
+        for (int i = 0; i < nAtoms; i++) {
+            long zq = (long) ((xyz[i * 3 + 2] - minZ) * zScale);
+            keys[fill[column[i]]++] = (zq << 32) | i;
+        }
+        nClusters = 0;
+        for (int c = 0; c < nColumns; c++) {
+            int count = columnStart[c + 1] - columnStart[c];
+            if (count > 0) {
+                sort(keys, columnStart[c], columnStart[c + 1]);
+                nClusters += (count + clusterSize - 1) / clusterSize;
+            }
+        }
+
+        int nSlots = nClusters * clusterSize;
+        if (clusterAtoms == null || clusterAtoms.length < nSlots) {
+            clusterAtoms = new int[nSlots];
+            x = new double[nSlots];
+            y = new double[nSlots];
+            z = new double[nSlots];
+            center = new double[3 * nClusters];
+            radius = new double[nClusters];
+            tileStart = new int[nClusters + 1];
+            scaledStart = new int[nClusters + 1];
+            mark = new int[nClusters];
+        }
+        fill(clusterAtoms, 0, nSlots, -1);
+        int cluster = 0;
+        for (int c = 0; c < nColumns; c++) {
+            int slot = 0;
+            for (int j = columnStart[c]; j < columnStart[c + 1]; j++) {
+                int i = (int) (keys[j] & 0xFFFFFFFFL);
+                clusterAtoms[cluster * clusterSize + slot] = i;
+                clusterOf[i] = cluster;
+                if (++slot == clusterSize) {
+                    slot = 0;
+                    cluster++;
+                }
+            }
+            if (slot > 0) {
+                cluster++;
+            }
+        }
+
+        /**
+         * Cluster bounding spheres.
+         */
+        for (int c = 0; c < nClusters; c++) {
+            double bx0 = Double.MAX_VALUE, by0 = Double.MAX_VALUE, bz0 = Double.MAX_VALUE;
+            double bx1 = -Double.MAX_VALUE, by1 = -Double.MAX_VALUE, bz1 = -Double.MAX_VALUE;
+            for (int s = c * clusterSize; s < (c + 1) * clusterSize; s++) {
+                int i = clusterAtoms[s];
+                if (i >= 0) {
+                    int i3 = i * 3;
+                    bx0 = min(bx0, xyz[i3]);
+                    by0 = min(by0, xyz[i3 + 1]);
+                    bz0 = min(bz0, xyz[i3 + 2]);
+                    bx1 = max(bx1, xyz[i3]);
+                    by1 = max(by1, xyz[i3 + 1]);
+                    bz1 = max(bz1, xyz[i3 + 2]);
+                }
+            }
+            double cx = 0.5 * (bx0 + bx1);
+            double cy = 0.5 * (by0 + by1);
+            double cz = 0.5 * (bz0 + bz1);
+            double r2 = 0.0;
+            for (int s = c * clusterSize; s < (c + 1) * clusterSize; s++) {
+                int i = clusterAtoms[s];
+                if (i >= 0) {
+                    int i3 = i * 3;
+                    double dx = xyz[i3] - cx;
+                    double dy = xyz[i3 + 1] - cy;
+                    double dz = xyz[i3 + 2] - cz;
+                    r2 = max(r2, dx * dx + dy * dy + dz * dz);
+                }
+            }
+            center[c * 3] = cx;
+            center[c * 3 + 1] = cy;
+            center[c * 3 + 2] = cz;
+            radius[c] = sqrt(r2);
+        }
+    }
+
+    /**
+     * Collect the cluster pairs that contain at least one Verlet list pair,
+     * and compute the periodic shift of each.
+     */
+    private void findTiles(Crystal crystal, int lists[][], CompactNeighborList compact) {
+        int nKeys = 0;
+        long tileKeys[] = new long[max(16, nClusters * 8)];
+        fill(mark, 0, nClusters, -1);
+        for (int ci = 0; ci < nClusters; ci++) {
+            if (nKeys + 1 > tileKeys.length) {
+                tileKeys = copyOf(tileKeys, 2 * tileKeys.length);
+            }
+            mark[ci] = ci;
+            tileKeys[nKeys++] = ((long) ci << 32) | ci;
+            for (int s = ci * clusterSize; s < (ci + 1) * clusterSize; s++) {
+                int i = clusterAtoms[s];
+                if (i < 0) {
+                    continue;
+                }
+                final int neighbors[];
+                final int n;
+                if (compact != null) {
+                    n = cursor.reset(compact, 0, i);
+                    neighbors = null;
+                } else if (lists[i] != null) {
+                    neighbors = lists[i];
+                    n = neighbors.length;
+                } else {
+                    continue;
+                }
+                for (int j = 0; j < n; j++) {
+                    int k = (neighbors != null) ? neighbors[j] : cursor.next();
+                    int cj = clusterOf[k];
+                    if (mark[cj] != ci) {
+                        mark[cj] = ci;
+                        if (nKeys + 1 > tileKeys.length) {
+                            tileKeys = copyOf(tileKeys, 2 * tileKeys.length);
+                        }
+                        long lo = min(ci, cj);
+                        long hi = max(ci, cj);
+                        tileKeys[nKeys++] = (lo << 32) | hi;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Remove tiles found from both clusters.
+         */
+        sort(tileKeys, 0, nKeys);
+        nTiles = 0;
+        for (int t = 0; t < nKeys; t++) {
+            if (t == 0 || tileKeys[t] != tileKeys[t - 1]) {
+                tileKeys[nTiles++] = tileKeys[t];
+            }
+        }
+        if (tileCluster == null || tileCluster.length < nTiles) {
+            int capacity = nTiles + nTiles / 4;
+            tileCluster = new int[capacity];
+            tileMask = new long[capacity];
+            tileShift = new double[3 * capacity];
+            tileImage = new boolean[capacity];
+        }
+
+        double sphere = min(min(crystal.interfacialRadiusA, crystal.interfacialRadiusB),
+                crystal.interfacialRadiusC);
+        boolean aperiodic = crystal.aperiodic();
+        double dx[] = new double[3];
+        fill(tileStart, 0, nClusters + 1, 0);
+        for (int t = 0; t < nTiles; t++) {
+            int ci = (int) (tileKeys[t] >>> 32);
+            int cj = (int) (tileKeys[t] & 0xFFFFFFFFL);
+            tileStart[ci + 1]++;
+            tileCluster[t] = cj;
+            int t3 = t * 3;
+            if (aperiodic || ci == cj) {
+                tileShift[t3] = 0.0;
+                tileShift[t3 + 1] = 0.0;
+                tileShift[t3 + 2] = 0.0;
+                // A cluster that straddles a periodic boundary must image its own pairs.
+                tileImage[t] = !aperiodic && (2.0 * radius[ci] >= sphere);
+                continue;
+            }
+            double cx = center[ci * 3] - center[cj * 3];
+            double cy = center[ci * 3 + 1] - center[cj * 3 + 1];
+            double cz = center[ci * 3 + 2] - center[cj * 3 + 2];
+            dx[0] = cx;
+            dx[1] = cy;
+            dx[2] = cz;
+            double r = sqrt(crystal.image(dx));
+            tileShift[t3] = dx[0] - cx;
+            tileShift[t3 + 1] = dx[1] - cy;
+            tileShift[t3 + 2] = dx[2] - cz;
+            /**
+             * Every pair of the tile is within r + radius[ci] + radius[cj] of
+             * each other after the shift. A vector shorter than the largest
+             * enclosed sphere is its own minimum image.
+             */
+            tileImage[t] = (r + radius[ci] + radius[cj] >= sphere);
+        }
+        for (int c = 0; c < nClusters; c++) {
+            tileStart[c + 1] += tileStart[c];
+        }
+    }
+
+    /**
+     * Set the interaction bitmask of each tile and collect scaled pairs.
+     */
+    private void maskTiles() {
+        if (mask == null || mask.length < nAtoms) {
+            mask = new double[nAtoms];
+            fill(mask, 1.0);
+        }
+        if (scaledI == null) {
+            scaledI = new int[64];
+            scaledK = new int[64];
+            scaledScale = new double[64];
+        }
+        nScaled = 0;
+        pairCount = 0;
+        fill(tileMask, 0, nTiles, 0L);
+        for (int ci = 0; ci < nClusters; ci++) {
+            scaledStart[ci] = nScaled;
+            for (int a = 0; a < clusterSize; a++) {
+                int i = clusterAtoms[ci * clusterSize + a];
+                if (i < 0) {
+                    continue;
+                }
+                if (maskingRules != null) {
+                    maskingRules.applyMask(mask, i);
+                }
+                for (int t = tileStart[ci]; t < tileStart[ci + 1]; t++) {
+                    int cj = tileCluster[t];
+                    long bits = tileMask[t];
+                    for (int b = (ci == cj) ? a + 1 : 0; b < clusterSize; b++) {
+                        int k = clusterAtoms[cj * clusterSize + b];
+                        if (k < 0) {
+                            continue;
+                        }
+                        double m = mask[k];
+                        if (m == 1.0) {
+                            bits |= 1L << (a * clusterSize + b);
+                            pairCount++;
+                        } else if (m > 0.0) {
+                            if (nScaled == scaledI.length) {
+                                scaledI = copyOf(scaledI, 2 * nScaled);
+                                scaledK = copyOf(scaledK, 2 * nScaled);
+                                scaledScale = copyOf(scaledScale, 2 * nScaled);
+                            }
+                            scaledI[nScaled] = i;
+                            scaledK[nScaled] = k;
+                            scaledScale[nScaled] = m;
+                            nScaled++;
+                        }
+                    }
+                    tileMask[t] = bits;
+                }
+                if (maskingRules != null) {
+                    maskingRules.removeMask(mask, i);
+                }
+            }
+        }
+        scaledStart[nClusters] = nScaled;
+    }
+
+    /**
+     * Copy coordinates into the cluster struct-of-arrays layout. Padding slots
+     * are left unchanged, since their interaction bits are never set.
+     *
+     * @param xyz The coordinates of the asymmetric unit [3 * nAtoms].
+     */
+    void gather(double xyz[]) {
+        final int nSlots = nClusters * clusterSize;
+        for (int s = 0; s < nSlots; s++) {
+            int i = clusterAtoms[s];
+            if (i >= 0) {
+                int i3 = i * 3;
+                x[s] = xyz[i3];
+                y[s] = xyz[i3 + 1];
+                z[s] = xyz[i3 + 2];
+            }
+        }
+    }
+
+    /**
+     * The number of atoms per cluster.
+     *
+     * @return The cluster size.
+     */
+    public int getClusterSize() {
+        return clusterSize;
+    }
+
+    /**
+     * The number of atoms the list was built for.
+     *
+     * @return The number of atoms.
+     */
+    public int getAtomCount() {
+        return nAtoms;
+    }
+
+    /**
+     * The number of clusters.
+     *
+     * @return The number of clusters.
+     */
+    public int getClusterCount() {
+        return nClusters;
+    }
+
+    /**
+     * The number of cluster pair tiles.
+     *
+     * @return The number of tiles.
+     */
+    public int getTileCount() {
+        return nTiles;
+    }
+
+    /**
+     * The number of atom pairs evaluated with full weight by the tiles.
+     *
+     * @return The number of pairs.
+     */
+    public long getPairCount() {
+        return pairCount;
+    }
+
+    /**
+     * The number of scaled pairs.
+     *
+     * @return The number of scaled pairs.
+     */
+    public int getScaledCount() {
+        return nScaled;
+    }
+
+    int[] getClusterAtoms() {
+        return clusterAtoms;
+    }
+
+    double[] getX() {
+        return x;
+    }
+
+    double[] getY() {
+        return y;
+    }
+
+    double[] getZ() {
+        return z;
+    }
+
+    int[] getTileStart() {
+        return tileStart;
+    }
+
+    int[] getTileCluster() {
+        return tileCluster;
+    }
+
+    long[] getTileMask() {
+        return tileMask;
+    }
+
+    double[] getTileShift() {
+        return tileShift;
+    }
+
+    boolean[] getTileImage() {
+        return tileImage;
+    }
+
+    int[] getScaledStart() {
+        return scaledStart;
+    }
+
+    int[] getScaledI() {
+        return scaledI;
+    }
+
+    int[] getScaledK() {
+        return scaledK;
+    }
+
+    double[] getScaledScale() {
+        return scaledScale;
+    }
+}
@@ -0,0 +1,324 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.nonbonded;
+
+import static java.util.Arrays.copyOf;
+import static java.util.Arrays.sort;
+
+/**
+ * The CompactNeighborList class stores Verlet lists in a compressed sparse row
+ * layout. For each symmetry operator, the neighbors of every atom are sorted
+ * and delta-encoded as variable length integers (7 bits per byte) in a single
+ * byte array, with an offset array pointing to the start of each atom's list.
+ *
+ * Compared to one int array per atom, this typically reduces neighbor list
+ * memory by 2-4x and keeps each list contiguous in memory. Lists are encoded in
+ * parallel into per-thread buffers by the NeighborList builder, and then
+ * packed into the final layout. Neighbor loops read the lists in place with a
+ * {@link Cursor}.
+ *
+ * @author Michael J. Schnieders
+ *
+ * @since 1.0
+ */
+public class CompactNeighborList {
+
+    /**
+     * The number of symmetry operators.
+     */
+    private int nSymm;
+    /**
+     * The number of atoms in the asymmetric unit.
+     */
+    private int nAtoms;
+    /**
+     * Number of neighbors of each atom. [nSymm][nAtoms]
+     */
+    private int counts[][];
+    /**
+     * Offset of each atom's list into the packed data. [nSymm][nAtoms + 1]
+     */
+    private int offsets[][];
+    /**
+     * Packed, delta-encoded lists. [nSymm][nBytes]
+     */
+    private byte data[][];
+    /**
+     * Per-thread encoding buffers, which are released after packing.
+     */
+    private final byte threadData[][];
+    /**
+     * Current position within each thread buffer.
+     */
+    private final int threadPosition[];
+    /**
+     * The thread that encoded each list. [nSymm][nAtoms]
+     */
+    private int threadOf[][];
+    /**
+     * The offset of each list in its thread buffer. [nSymm][nAtoms]
+     */
+    private int threadOffset[][];
+    /**
+     * The number of bytes of each encoded list. [nSymm][nAtoms]
+     */
+    private int lengths[][];
+    /**
+     * The initial capacity of each thread buffer.
+     */
+    private int threadCapacity = 1024;
+
+    /**
+     * Constructor for a CompactNeighborList.
+     *
+     * @param nThreads The number of threads that encode lists.
+     */
+    public CompactNeighborList(int nThreads) {
+        threadData = new byte[nThreads][];
+        threadPosition = new int[nThreads];
+    }
+
+    /**
+     * Prepare to encode lists for the given number of symmetry operators and
+     * atoms.
+     *
+     * @param nSymm The number of symmetry operators.
+     * @param nAtoms The number of atoms.
+     */
+    void allocate(int nSymm, int nAtoms) {
+        this.nSymm = nSymm;
+        this.nAtoms = nAtoms;
+        if (counts == null || counts.length < nSymm || counts[0].length < nAtoms) {
+            counts = new int[nSymm][nAtoms];
+            offsets = new int[nSymm][nAtoms + 1];
+            threadOf = new int[nSymm][nAtoms];
+            threadOffset = new int[nSymm][nAtoms];
+            lengths = new int[nSymm][nAtoms];
+            data = new byte[nSymm][];
+        }
+        for (int i = 0; i < threadData.length; i++) {
+            threadPosition[i] = 0;
+            if (threadData[i] == null) {
+                threadData[i] = new byte[threadCapacity];
+            }
+        }
+    }
+
+    /**
+     * Sort and encode the neighbors of an atom into the buffer of the current
+     * thread.
+     *
+     * @param threadID The thread index.
+     * @param iSymm The symmetry operator.
+     * @param i The atom index.
+     * @param pairs The neighbors, which are sorted in place.
+     * @param n The number of neighbors.
+     */
+    void put(int threadID, int iSymm, int i, int pairs[], int n) {
+        sort(pairs, 0, n);
+        byte buffer[] = threadData[threadID];
+        int position = threadPosition[threadID];
+        // Each neighbor requires at most 5 bytes.
+        int required = position + 5 * n;
+        if (required > buffer.length) {
+            buffer = copyOf(buffer, Math.max(required, 2 * buffer.length));
+            threadData[threadID] = buffer;
+        }
+        threadOf[iSymm][i] = threadID;
+        threadOffset[iSymm][i] = position;
+        counts[iSymm][i] = n;
+        int previous = 0;
+        for (int j = 0; j < n; j++) {
+            int delta = pairs[j] - previous;
+            previous = pairs[j];
+            while ((delta & ~0x7F) != 0) {
+                buffer[position++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            buffer[position++] = (byte) delta;
+        }
+        lengths[iSymm][i] = position - threadOffset[iSymm][i];
+        threadPosition[threadID] = position;
+    }
+
+    /**
+     * Pack the per-thread buffers into the compressed sparse row layout and
+     * release the thread buffers.
+     */
+    void pack() {
+        int maxThread = 0;
+        for (int iSymm = 0; iSymm < nSymm; iSymm++) {
+            final int offset[] = offsets[iSymm];
+            final int thread[] = threadOf[iSymm];
+            final int start[] = threadOffset[iSymm];
+            final int length[] = lengths[iSymm];
+            offset[0] = 0;
+            for (int i = 0; i < nAtoms; i++) {
+                offset[i + 1] = offset[i] + length[i];
+            }
+            int nBytes = offset[nAtoms];
+            if (data[iSymm] == null || data[iSymm].length < nBytes) {
+                data[iSymm] = new byte[nBytes];
+            }
+            for (int i = 0; i < nAtoms; i++) {
+                System.arraycopy(threadData[thread[i]], start[i], data[iSymm], offset[i], length[i]);
+            }
+        }
+        for (int i = 0; i < threadData.length; i++) {
+            maxThread = Math.max(maxThread, threadPosition[i]);
+            threadData[i] = null;
+        }
+        threadCapacity = Math.max(1024, maxThread);
+    }
+
+    /**
+     * The number of neighbors of atom i.
+     *
+     * @param iSymm The symmetry operator.
+     * @param i The atom index.
+     * @return The number of neighbors.
+     */
+    public int getCount(int iSymm, int i) {
+        return counts[iSymm][i];
+    }
+
+    /**
+     * Decode the neighbors of atom i into a buffer.
+     *
+     * @param iSymm The symmetry operator.
+     * @param i The atom index.
+     * @param buffer A work array, which is reused if large enough.
+     * @return The buffer filled with getCount(iSymm, i) neighbors.
+     */
+    public int[] getList(int iSymm, int i, int buffer[]) {
+        final int n = counts[iSymm][i];
+        if (buffer == null || buffer.length < n) {
+            buffer = new int[Math.max(n, 2 * (buffer == null ? 0 : buffer.length))];
+        }
+        final byte packed[] = data[iSymm];
+        int position = offsets[iSymm][i];
+        int value = 0;
+        for (int j = 0; j < n; j++) {
+            int b = packed[position++];
+            int delta = b & 0x7F;
+            int shift = 7;
+            while (b < 0) {
+                b = packed[position++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            }
+            value += delta;
+            buffer[j] = value;
+        }
+        return buffer;
+    }
+
+    /**
+     * Reads the neighbors of an atom in place from the packed lists, without
+     * decoding them into an array first. Each thread of a neighbor loop owns
+     * its own Cursor.
+     */
+    public static final class Cursor {
+
+        private byte packed[];
+        private int position;
+        private int value;
+
+        /**
+         * Position the cursor at the start of the neighbors of atom i.
+         *
+         * @param list The compact neighbor lists.
+         * @param iSymm The symmetry operator.
+         * @param i The atom index.
+         * @return The number of neighbors.
+         */
+        public int reset(CompactNeighborList list, int iSymm, int i) {
+            packed = list.data[iSymm];
+            position = list.offsets[iSymm][i];
+            value = 0;
+            return list.counts[iSymm][i];
+        }
+
+        /**
+         * Decode the next neighbor. The caller must not read more than the
+         * count returned by reset.
+         *
+         * @return The index of the next neighbor.
+         */
+        public int next() {
+            int b = packed[position++];
+            int delta = b & 0x7F;
+            int shift = 7;
+            while (b < 0) {
+                b = packed[position++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            }
+            value += delta;
+            return value;
+        }
+    }
+
+    /**
+     * The total number of neighbors for all symmetry operators.
+     *
+     * @return The number of pairs.
+     */
+    public long getPairCount() {
+        long count = 0;
+        for (int iSymm = 0; iSymm < nSymm; iSymm++) {
+            for (int i = 0; i < nAtoms; i++) {
+                count += counts[iSymm][i];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The number of bytes used by the packed lists and their offsets.
+     *
+     * @return The memory used in bytes.
+     */
+    public long getMemory() {
+        long bytes = 0;
+        for (int iSymm = 0; iSymm < nSymm; iSymm++) {
+            bytes += offsets[iSymm][nAtoms] + 8L * (nAtoms + 1);
+        }
+        return bytes;
+    }
+}
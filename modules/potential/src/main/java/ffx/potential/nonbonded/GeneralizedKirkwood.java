@@ -46,6 +46,7 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import static java.lang.String.format;
+import static java.util.Arrays.copyOf;
 import static java.util.Arrays.fill;
 
 import static org.apache.commons.math3.util.FastMath.PI;
@@ -55,6 +56,7 @@ import static org.apache.commons.math3.util.FastMath.asin;
 import static org.apache.commons.math3.util.FastMath.atan2;
 import static org.apache.commons.math3.util.FastMath.cos;
 import static org.apache.commons.math3.util.FastMath.exp;
+import static org.apache.commons.math3.util.FastMath.floor;
 import static org.apache.commons.math3.util.FastMath.max;
 import static org.apache.commons.math3.util.FastMath.min;
 import static org.apache.commons.math3.util.FastMath.pow;
@@ -63,6 +65,7 @@ import static org.apache.commons.math3.util.FastMath.sqrt;
 import static org.apache.commons.math3.util.FastMath.tanh;
 
 import edu.rit.pj.IntegerForLoop;
+import edu.rit.pj.IntegerSchedule;
 import edu.rit.pj.ParallelRegion;
 import edu.rit.pj.ParallelTeam;
 import edu.rit.pj.reduction.DoubleOp;
@@ -138,6 +141,11 @@ public class GeneralizedKirkwood implements LambdaInterface {
      * This is lower than CAVDISP, since the favorable dispersion term is implicitly included.
      */
     private static final double DEFAULT_CAV_SURFACE_TENSION = 0.0049;
+    /**
+     * Maximum number of incremental Born radii updates before the descreening
+     * integrals are recomputed from scratch to discard accumulated round-off.
+     */
+    private static final int MAX_INCREMENTAL_BORN_UPDATES = 100;
     /**
      * Set of force fields for which we have fitted GK/GB radii.
      */
@@ -210,6 +218,7 @@ public class GeneralizedKirkwood implements LambdaInterface {
     private final BornCRRegion bornGradRegion;
     private final DispersionRegion dispersionRegion;
     private final CavitationRegion cavitationRegion;
+    private final ShrakeRupleyRegion shrakeRupleyRegion;
 
     /**
      * Gradient array for each thread.
@@ -263,6 +272,16 @@ public class GeneralizedKirkwood implements LambdaInterface {
      * Forces all atoms to be considered during Born radius updates.
      */
     private boolean bornUseAll = false;
+    /**
+     * If true, only the descreening integrals of atoms that have moved, and
+     * their neighbors, are updated between Born radii evaluations.
+     */
+    private boolean incrementalBorn = false;
+    /**
+     * If true, energy-only Shrake-Rupley evaluations recompute only the areas
+     * of atoms that have moved, and of atoms that overlap them.
+     */
+    private boolean incrementalArea = true;
     /**
      * Provides maps from atomtypes or biotypes to fitted GK radii (by
      * forcefield).
@@ -459,6 +478,8 @@ public class GeneralizedKirkwood implements LambdaInterface {
         sharedGKFieldCR = new SharedDoubleArray[3];
 
         bornUseAll = forceField.getBoolean(ForceField.ForceFieldBoolean.BORN_USE_ALL, false);
+        incrementalBorn = forceField.getBoolean(ForceField.ForceFieldBoolean.BORN_INCREMENTAL, false);
+        incrementalArea = forceField.getBoolean(ForceField.ForceFieldBoolean.SASA_INCREMENTAL, true);
 
         probe = forceField.getDouble(ForceField.ForceFieldDouble.PROBE_RADIUS, 1.4);
 
@@ -495,15 +516,30 @@ public class GeneralizedKirkwood implements LambdaInterface {
         gkEnergyRegion = new GKEnergyRegion(threadCount);
         bornGradRegion = new BornCRRegion(threadCount);
 
+        int surfacePoints = forceField.getInteger(ForceField.ForceFieldInteger.SASA_POINTS, 256);
         double tensionDefault = DEFAULT_CAV_SURFACE_TENSION;
         switch (nonPolar) {
             case CAV:
                 cavitationRegion = new CavitationRegion(threadCount);
+                shrakeRupleyRegion = null;
                 tensionDefault = DEFAULT_CAV_SURFACE_TENSION;
                 dispersionRegion = null;
                 break;
             case CAV_DISP:
                 cavitationRegion = new CavitationRegion(threadCount);
+                shrakeRupleyRegion = null;
+                tensionDefault = DEFAULT_CAVDISP_SURFACE_TENSION;
+                dispersionRegion = new DispersionRegion(threadCount);
+                break;
+            case CAV_SR:
+                cavitationRegion = null;
+                shrakeRupleyRegion = new ShrakeRupleyRegion(threadCount, surfacePoints);
+                tensionDefault = DEFAULT_CAV_SURFACE_TENSION;
+                dispersionRegion = null;
+                break;
+            case CAV_DISP_SR:
+                cavitationRegion = null;
+                shrakeRupleyRegion = new ShrakeRupleyRegion(threadCount, surfacePoints);
                 tensionDefault = DEFAULT_CAVDISP_SURFACE_TENSION;
                 dispersionRegion = new DispersionRegion(threadCount);
                 break;
@@ -511,6 +547,7 @@ public class GeneralizedKirkwood implements LambdaInterface {
                 // TODO: Check this. I'm unsure about this apolar model.
                 tensionDefault = DEFAULT_CAVDISP_SURFACE_TENSION;
                 cavitationRegion = null;
+                shrakeRupleyRegion = null;
                 dispersionRegion = new DispersionRegion(threadCount);
                 break;
             case HYDROPHOBIC_PMF:
@@ -519,6 +556,7 @@ public class GeneralizedKirkwood implements LambdaInterface {
             default:
                 tensionDefault = DEFAULT_CAV_SURFACE_TENSION;
                 cavitationRegion = null;
+                shrakeRupleyRegion = null;
                 dispersionRegion = null;
                 break;
         }
@@ -530,11 +568,18 @@ public class GeneralizedKirkwood implements LambdaInterface {
         logger.info(format("   Solvent Dielectric:                 %8.3f", epsilon));
         logger.info(format("   Non-Polar Model:                    %8s",
                 nonPolar.toString().replace('_', '-')));
+        if (incrementalBorn) {
+            logger.info("   Incremental Born Radii:                 true");
+        }
 
-        if (cavitationRegion != null) {
+        if (cavitationRegion != null || shrakeRupleyRegion != null) {
             logger.info(format("   Cavitation Probe Radius:            %8.3f (A)", probe));
             logger.info(format("   Cavitation Surface Tension:         %8.3f (Kcal/mol/A^2)", surfaceTension));
         }
+        if (shrakeRupleyRegion != null) {
+            logger.info(format("   Surface Area Points:                %8d", surfacePoints));
+            logger.info(format("   Incremental Surface Area:           %8b", incrementalArea));
+        }
 
     }
 
@@ -552,6 +597,9 @@ public class GeneralizedKirkwood implements LambdaInterface {
     }
 
     public void setCutoff(double cutoff) {
+        if (cutoff != this.cutoff) {
+            invalidateBornRadii();
+        }
         this.cutoff = cutoff;
         this.cut2 = cutoff * cutoff;
     }
@@ -561,6 +609,9 @@ public class GeneralizedKirkwood implements LambdaInterface {
     }
 
     public void setCrystal(Crystal crystal) {
+        if (crystal != this.crystal) {
+            invalidateBornRadii();
+        }
         this.crystal = crystal;
     }
 
@@ -585,16 +636,66 @@ public class GeneralizedKirkwood implements LambdaInterface {
 
     public void setBornUseAll(boolean bornUseAll) {
         this.bornUseAll = bornUseAll;
+        invalidateBornRadii();
     }
 
     public boolean getBornUseAll() {
         return bornUseAll;
     }
 
+    /**
+     * Turn incremental Born radii updates on or off. When on, each call to
+     * computeBornRadii only updates the descreening integrals of atoms that
+     * have moved since the previous call, and of their neighbors, which makes
+     * the cost of local moves (e.g. side-chain rotamers) proportional to the
+     * number of moved atoms.
+     *
+     * @param incrementalBorn If true, update Born radii incrementally.
+     */
+    public void setIncrementalBorn(boolean incrementalBorn) {
+        this.incrementalBorn = incrementalBorn;
+        invalidateBornRadii();
+    }
+
+    public boolean getIncrementalBorn() {
+        return incrementalBorn;
+    }
+
+    /**
+     * Returns the Born radius of each atom from the last call to
+     * computeBornRadii.
+     *
+     * @return The Born radii.
+     */
+    public double[] getBornRadii() {
+        return born;
+    }
+
+    /**
+     * Force the next call to computeBornRadii to recompute all descreening
+     * integrals.
+     */
+    public void invalidateBornRadii() {
+        if (bornRadiiRegion != null) {
+            bornRadiiRegion.invalidate();
+        }
+    }
+
+    /**
+     * Re-read the coordinates of the asymmetric unit, which are owned by the
+     * ParticleMeshEwald instance and may have been reallocated.
+     */
+    public void updateCoordinates() {
+        x = particleMeshEwald.coordinates[0][0];
+        y = particleMeshEwald.coordinates[0][1];
+        z = particleMeshEwald.coordinates[0][2];
+    }
+
     private void initAtomArrays() {
         if (fixedRadii) {
             fixedRadii = false;
         }
+        invalidateBornRadii();
 
         x = particleMeshEwald.coordinates[0][0];
         y = particleMeshEwald.coordinates[0][1];
@@ -838,6 +939,10 @@ public class GeneralizedKirkwood implements LambdaInterface {
             cavitationRegion.init();
         }
 
+        if (shrakeRupleyRegion != null) {
+            shrakeRupleyRegion.init();
+        }
+
     }
 
     public void setUse(boolean use[]) {
@@ -857,6 +962,13 @@ public class GeneralizedKirkwood implements LambdaInterface {
             return;
         }
 
+        /**
+         * No atoms have moved since the last incremental update.
+         */
+        if (incrementalBorn && !bornRadiiRegion.findMovedAtoms()) {
+            return;
+        }
+
         try {
             parallelTeam.execute(bornRadiiRegion);
         } catch (Exception e) {
@@ -946,6 +1058,22 @@ public class GeneralizedKirkwood implements LambdaInterface {
                     parallelTeam.execute(cavitationRegion);
                     cavitationTime += System.nanoTime();
                     break;
+                case CAV_SR:
+                    cavitationTime = -System.nanoTime();
+                    shrakeRupleyRegion.setGradient(gradient);
+                    parallelTeam.execute(shrakeRupleyRegion);
+                    cavitationTime += System.nanoTime();
+                    break;
+                case CAV_DISP_SR:
+                    dispersionTime = -System.nanoTime();
+                    dispersionRegion.setGradient(gradient);
+                    parallelTeam.execute(dispersionRegion);
+                    dispersionTime += System.nanoTime();
+                    cavitationTime = -System.nanoTime();
+                    shrakeRupleyRegion.setGradient(gradient);
+                    parallelTeam.execute(shrakeRupleyRegion);
+                    cavitationTime += System.nanoTime();
+                    break;
                 case BORN_CAV_DISP:
                     dispersionTime = -System.nanoTime();
                     dispersionRegion.setGradient(gradient);
@@ -994,6 +1122,19 @@ public class GeneralizedKirkwood implements LambdaInterface {
                     logger.info(format(" Dispersion          %16.8f %10.3f",
                             dispersionEnergy, dispersionTime * 1e-9));
                     break;
+                case CAV_SR:
+                    cavitationEnergy = shrakeRupleyRegion.getEnergy();
+                    logger.info(format(" Cavitation          %16.8f %10.3f",
+                            cavitationEnergy, cavitationTime * 1e-9));
+                    break;
+                case CAV_DISP_SR:
+                    cavitationEnergy = shrakeRupleyRegion.getEnergy();
+                    dispersionEnergy = dispersionRegion.getEnergy();
+                    logger.info(format(" Cavitation          %16.8f %10.3f",
+                            cavitationEnergy, cavitationTime * 1e-9));
+                    logger.info(format(" Dispersion          %16.8f %10.3f",
+                            dispersionEnergy, dispersionTime * 1e-9));
+                    break;
                 case BORN_CAV_DISP:
                     dispersionEnergy = dispersionRegion.getEnergy();
                     logger.info(format(" Dispersion          %16.8f %10.3f",
@@ -1015,6 +1156,13 @@ public class GeneralizedKirkwood implements LambdaInterface {
                 solvationEnergy = gkEnergyRegion.getEnergy() + dispersionRegion.getEnergy()
                         + cavitationRegion.getEnergy();
                 break;
+            case CAV_SR:
+                solvationEnergy = gkEnergyRegion.getEnergy() + shrakeRupleyRegion.getEnergy();
+                break;
+            case CAV_DISP_SR:
+                solvationEnergy = gkEnergyRegion.getEnergy() + dispersionRegion.getEnergy()
+                        + shrakeRupleyRegion.getEnergy();
+                break;
             case BORN_CAV_DISP:
                 solvationEnergy = gkEnergyRegion.getEnergy() + dispersionRegion.getEnergy();
                 break;
@@ -1046,6 +1194,8 @@ public class GeneralizedKirkwood implements LambdaInterface {
         switch (nonPolar) {
             case CAV:
             case CAV_DISP:
+            case CAV_SR:
+            case CAV_DISP_SR:
                 return cavitationEnergy;
             default:
                 if (throwError) {
@@ -1067,6 +1217,7 @@ public class GeneralizedKirkwood implements LambdaInterface {
     public double getDispersionEnergy(boolean throwError) {
         switch (nonPolar) {
             case CAV_DISP:
+            case CAV_DISP_SR:
             case BORN_CAV_DISP:
                 return dispersionEnergy;
             default:
@@ -1177,23 +1328,118 @@ public class GeneralizedKirkwood implements LambdaInterface {
 
     /**
      * Compute Born radii in parallel via the Grycuk method.
+     * <p>
+     * The descreening integral of each atom and the coordinates used to
+     * compute it are cached. If incremental updates are requested and only a
+     * small fraction of the atoms have moved, the contributions of each pair
+     * that includes a moved atom are removed at the cached coordinates and
+     * added back at the current coordinates, so that only the Born radii of
+     * moved atoms and their neighbors are updated.
      *
      * @since 1.0
      */
     private class BornRadiiRegion extends ParallelRegion {
 
         private final BornRadiiLoop bornRadiiLoop[];
+        private final IncrementalBornLoop incrementalBornLoop[];
         private SharedDoubleArray sharedBorn;
         private SharedDouble ecavTot;
+        /**
+         * Descreening integral of each atom from the last update.
+         */
+        private double descreen[];
+        /**
+         * Coordinates and use flags of each atom from the last update.
+         */
+        private double xCache[], yCache[], zCache[];
+        private boolean useCache[];
+        /**
+         * Atoms that have moved since the last update.
+         */
+        private int moved[];
+        private boolean isMoved[];
+        private int nMoved = 0;
+        /**
+         * True if the cached descreening integrals are current.
+         */
+        private boolean cacheValid = false;
+        /**
+         * True if the next execution is an incremental update.
+         */
+        private boolean incremental = false;
+        private int incrementalUpdates = 0;
 
         public BornRadiiRegion(int nt) {
             bornRadiiLoop = new BornRadiiLoop[nt];
+            incrementalBornLoop = new IncrementalBornLoop[nt];
             for (int i = 0; i < nt; i++) {
                 bornRadiiLoop[i] = new BornRadiiLoop();
+                incrementalBornLoop[i] = new IncrementalBornLoop();
             }
             ecavTot = new SharedDouble(0.0);
         }
 
+        /**
+         * Discard the cached descreening integrals.
+         */
+        public void invalidate() {
+            cacheValid = false;
+        }
+
+        /**
+         * Collect the atoms that have moved since the last update. An
+         * incremental update is scheduled if the cache is valid and it visits
+         * fewer pairs than a full recompute; otherwise all Born radii will be
+         * recomputed.
+         *
+         * @return false if no atom has moved and the Born radii are current.
+         */
+        public boolean findMovedAtoms() {
+            incremental = false;
+            if (!cacheValid || descreen == null || descreen.length < nAtoms
+                    || incrementalUpdates >= MAX_INCREMENTAL_BORN_UPDATES) {
+                return true;
+            }
+            /**
+             * The incremental update visits every atom for each moved atom,
+             * at both the cached and current coordinates, while the full
+             * recompute visits each neighbor list pair once.
+             */
+            long pairs = 0;
+            CompactNeighborList compactList = particleMeshEwald.compactNeighborLists;
+            for (int i = 0; i < nAtoms; i++) {
+                pairs += (compactList != null) ? compactList.getCount(0, i) : neighborLists[0][i].length;
+            }
+            long maxMoved = pairs / (2L * nAtoms);
+            nMoved = 0;
+            for (int i = 0; i < nAtoms; i++) {
+                if (use[i] != useCache[i]) {
+                    clearMoved();
+                    return true;
+                }
+                if (x[i] != xCache[i] || y[i] != yCache[i] || z[i] != zCache[i]) {
+                    if (nMoved >= maxMoved) {
+                        clearMoved();
+                        return true;
+                    }
+                    moved[nMoved++] = i;
+                    isMoved[i] = true;
+                }
+            }
+            if (nMoved == 0) {
+                return false;
+            }
+            incremental = true;
+            return true;
+        }
+
+        private void clearMoved() {
+            for (int n = 0; n < nMoved; n++) {
+                isMoved[moved[n]] = false;
+            }
+            nMoved = 0;
+        }
+
         @Override
         public void start() {
             if (sharedBorn == null || sharedBorn.length() < nAtoms) {
@@ -1202,12 +1448,27 @@ public class GeneralizedKirkwood implements LambdaInterface {
             for (int i = 0; i < nAtoms; i++) {
                 sharedBorn.set(i, 0.0);
             }
+            if (descreen == null || descreen.length < nAtoms) {
+                descreen = new double[nAtoms];
+                xCache = new double[nAtoms];
+                yCache = new double[nAtoms];
+                zCache = new double[nAtoms];
+                useCache = new boolean[nAtoms];
+                moved = new int[nAtoms];
+                isMoved = new boolean[nAtoms];
+                incremental = false;
+                nMoved = 0;
+            }
         }
 
         @Override
         public void run() {
             try {
-                execute(0, nAtoms - 1, bornRadiiLoop[getThreadIndex()]);
+                if (incremental) {
+                    execute(0, nMoved - 1, incrementalBornLoop[getThreadIndex()]);
+                } else {
+                    execute(0, nAtoms - 1, bornRadiiLoop[getThreadIndex()]);
+                }
             } catch (Exception e) {
                 String message = "Fatal exception computing Born radii in thread " + getThreadIndex() + "\n";
                 logger.log(Level.SEVERE, message, e);
@@ -1216,33 +1477,38 @@ public class GeneralizedKirkwood implements LambdaInterface {
 
         @Override
         public void finish() {
-            for (int i = 0; i < nAtoms; i++) {
-                final double baseRi = baseRadiusWithBondi[i];
-                if (!use[i]) {
-                    born[i] = baseRi;
-                } else {
-                    double sum = sharedBorn.get(i);
-                    if (sum <= 0.0) {
-                        sum = PI4_3 * 1.0e-9;
-                        born[i] = 1.0 / pow(sum / PI4_3, THIRD);
-                        //logger.info(format(" I < 0; Resetting %d to %12.6f", i, born[i]));
-                        logger.log(GK_WARN_LEVEL, format(" I < 0; Resetting %d to %12.6f", i, born[i]));
-                        continue;
-                    }
-                    born[i] = 1.0 / pow(sum / PI4_3, THIRD);
-                    if (verboseRadii) {
-                        logger.info(String.format(" Atom %s Born radius %14.8g", atoms[i], born[i]));
-                    }
-                    if (born[i] < baseRi) {
-                        // logger.info(format(" Less than base radii; resetting to %d %12.6f", i, baseRi));
-                        born[i] = baseRi;
-                        continue;
-                    }
-                    if (Double.isInfinite(born[i]) || Double.isNaN(born[i])) {
-                        logger.info(format(" NaN / Infinite: Resetting Base Radii %d %12.6f", i, baseRi));
-                        born[i] = baseRi;
+            if (incremental) {
+                /**
+                 * Only atoms whose descreening integral changed need a new
+                 * Born radius.
+                 */
+                for (int i = 0; i < nAtoms; i++) {
+                    double delta = sharedBorn.get(i);
+                    if (delta != 0.0) {
+                        descreen[i] += delta;
+                        bornRadius(i);
                     }
                 }
+                for (int n = 0; n < nMoved; n++) {
+                    int i = moved[n];
+                    xCache[i] = x[i];
+                    yCache[i] = y[i];
+                    zCache[i] = z[i];
+                }
+                clearMoved();
+                incrementalUpdates++;
+                incremental = false;
+            } else {
+                for (int i = 0; i < nAtoms; i++) {
+                    descreen[i] = sharedBorn.get(i);
+                    xCache[i] = x[i];
+                    yCache[i] = y[i];
+                    zCache[i] = z[i];
+                    useCache[i] = use[i];
+                    bornRadius(i);
+                }
+                incrementalUpdates = 0;
+                cacheValid = true;
             }
             if (verboseRadii) {
                 // This could get very verbose if printed at each step.
@@ -1251,6 +1517,94 @@ public class GeneralizedKirkwood implements LambdaInterface {
             }
         }
 
+        /**
+         * Convert the descreening integral of atom i into its Born radius.
+         *
+         * @param i the atom index.
+         */
+        private void bornRadius(int i) {
+            final double baseRi = baseRadiusWithBondi[i];
+            if (!use[i]) {
+                born[i] = baseRi;
+            } else {
+                double sum = descreen[i];
+                if (sum <= 0.0) {
+                    sum = PI4_3 * 1.0e-9;
+                    born[i] = 1.0 / pow(sum / PI4_3, THIRD);
+                    //logger.info(format(" I < 0; Resetting %d to %12.6f", i, born[i]));
+                    logger.log(GK_WARN_LEVEL, format(" I < 0; Resetting %d to %12.6f", i, born[i]));
+                    return;
+                }
+                born[i] = 1.0 / pow(sum / PI4_3, THIRD);
+                if (verboseRadii) {
+                    logger.info(String.format(" Atom %s Born radius %14.8g", atoms[i], born[i]));
+                }
+                if (born[i] < baseRi) {
+                    // logger.info(format(" Less than base radii; resetting to %d %12.6f", i, baseRi));
+                    born[i] = baseRi;
+                    return;
+                }
+                if (Double.isInfinite(born[i]) || Double.isNaN(born[i])) {
+                    logger.info(format(" NaN / Infinite: Resetting Base Radii %d %12.6f", i, baseRi));
+                    born[i] = baseRi;
+                }
+            }
+        }
+
+        /**
+         * Use pairwise descreening to compute integral of 1/r^6.
+         *
+         * @param r            atomic separation.
+         * @param r2           atomic separation squared.
+         * @param radius       base radius of the atom being descreened.
+         * @param scaledRadius scaled raduis of the atom doing the descreening.
+         * @return this contribution to the descreening integral.
+         */
+        private double integral(double r, double r2, double radius, double scaledRadius) {
+            double integral = 0.0;
+
+            // Descreen only if atom I does not engulf atom K.
+            if (radius < r + scaledRadius) {
+                // Atom i is engulfed by atom k.
+                if (radius + r < scaledRadius) {
+                    final double lower = radius;
+                    final double upper = scaledRadius - r;
+                    integral = (PI4_3 * (1.0 / (upper * upper * upper) - 1.0 / (lower * lower * lower)));
+                }
+
+                // Upper integration bound is always the same.
+                double upper = r + scaledRadius;
+
+                // Lower integration bound depends on atoms sizes and separation.
+                double lower;
+                if (radius + r < scaledRadius) {
+                    // Atom i is engulfed by atom k.
+                    lower = scaledRadius - r;
+                } else if (r < radius + scaledRadius) {
+                    // Atoms are overlapped, begin integration from ri.
+                    lower = radius;
+                } else {
+                    // No overlap between atoms.
+                    lower = r - scaledRadius;
+                }
+
+                double l2 = lower * lower;
+                double l4 = l2 * l2;
+                double lr = lower * r;
+                double l4r = l4 * r;
+                double u2 = upper * upper;
+                double u4 = u2 * u2;
+                double ur = upper * r;
+                double u4r = u4 * r;
+                double scaledRk2 = scaledRadius * scaledRadius;
+                double term = (3.0 * (r2 - scaledRk2) + 6.0 * u2 - 8.0 * ur) / u4r
+                        - (3.0 * (r2 - scaledRk2) + 6.0 * l2 - 8.0 * lr) / l4r;
+                integral -= PI_12 * term;
+            }
+
+            return integral;
+        }
+
         /**
          * Compute Born radii for a range of atoms via the Grycuk method.
          *
@@ -1258,6 +1612,8 @@ public class GeneralizedKirkwood implements LambdaInterface {
          */
         private class BornRadiiLoop extends IntegerForLoop {
 
+            private final CompactNeighborList.Cursor cursor = new CompactNeighborList.Cursor();
+
             private double localBorn[];
             // Extra padding to avert cache interference.
             private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
@@ -1282,60 +1638,6 @@ public class GeneralizedKirkwood implements LambdaInterface {
                 ecavTot.addAndGet(ecav);
             }
 
-            /**
-             * Use pairwise descreening to compute integral of 1/r^6.
-             *
-             * @param r            atomic separation.
-             * @param r2           atomic separation squared.
-             * @param radius       base radius of the atom being descreened.
-             * @param scaledRadius scaled raduis of the atom doing the descreening.
-             * @return this contribution to the descreening integral.
-             */
-            private double integral(double r, double r2, double radius, double scaledRadius) {
-                double integral = 0.0;
-
-                // Descreen only if atom I does not engulf atom K.
-                if (radius < r + scaledRadius) {
-                    // Atom i is engulfed by atom k.
-                    if (radius + r < scaledRadius) {
-                        final double lower = radius;
-                        final double upper = scaledRadius - r;
-                        integral = (PI4_3 * (1.0 / (upper * upper * upper) - 1.0 / (lower * lower * lower)));
-                    }
-
-                    // Upper integration bound is always the same.
-                    double upper = r + scaledRadius;
-
-                    // Lower integration bound depends on atoms sizes and separation.
-                    double lower;
-                    if (radius + r < scaledRadius) {
-                        // Atom i is engulfed by atom k.
-                        lower = scaledRadius - r;
-                    } else if (r < radius + scaledRadius) {
-                        // Atoms are overlapped, begin integration from ri.
-                        lower = radius;
-                    } else {
-                        // No overlap between atoms.
-                        lower = r - scaledRadius;
-                    }
-
-                    double l2 = lower * lower;
-                    double l4 = l2 * l2;
-                    double lr = lower * r;
-                    double l4r = l4 * r;
-                    double u2 = upper * upper;
-                    double u4 = u2 * u2;
-                    double ur = upper * r;
-                    double u4r = u4 * r;
-                    double scaledRk2 = scaledRadius * scaledRadius;
-                    double term = (3.0 * (r2 - scaledRk2) + 6.0 * u2 - 8.0 * ur) / u4r
-                            - (3.0 * (r2 - scaledRk2) + 6.0 * l2 - 8.0 * lr) / l4r;
-                    integral -= PI_12 * term;
-                }
-
-                return integral;
-            }
-
             @Override
             public void run(int lb, int ub) {
                 for (int i = lb; i <= ub; i++) {
@@ -1355,10 +1657,18 @@ public class GeneralizedKirkwood implements LambdaInterface {
                      * the integral is incremented rather than initialized.
                      */
                     localBorn[i] += PI4_3 / (baseRi * baseRi * baseRi);
-                    int list[] = neighborLists[0][i];
-                    int npair = list.length;
+                    int list[];
+                    int npair;
+                    CompactNeighborList compactList = particleMeshEwald.compactNeighborLists;
+                    if (compactList != null) {
+                        npair = cursor.reset(compactList, 0, i);
+                        list = null;
+                    } else {
+                        list = neighborLists[0][i];
+                        npair = list.length;
+                    }
                     for (int l = 0; l < npair; l++) {
-                        int k = list[l];
+                        int k = (list != null) ? list[l] : cursor.next();
                         final double baseRk = baseRadiusWithBondi[k];
                         if (i != k && baseRk > 0.0) {
                             if (!bornUseAll && !use[k]) {
@@ -1385,6 +1695,78 @@ public class GeneralizedKirkwood implements LambdaInterface {
                 }
             }
         }
+
+        /**
+         * Update the descreening integrals for pairs that include an atom
+         * that has moved since the last update.
+         *
+         * @since 1.0
+         */
+        private class IncrementalBornLoop extends IntegerForLoop {
+
+            private double localBorn[];
+            // Extra padding to avert cache interference.
+            private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
+            private long pad8, pad9, pada, padb, padc, padd, pade, padf;
+
+            @Override
+            public void start() {
+                if (localBorn == null || localBorn.length < nAtoms) {
+                    localBorn = new double[nAtoms];
+                }
+                fill(localBorn, 0.0);
+            }
+
+            @Override
+            public void finish() {
+                sharedBorn.reduce(localBorn, DoubleOp.SUM);
+            }
+
+            @Override
+            public void run(int lb, int ub) {
+                for (int n = lb; n <= ub; n++) {
+                    final int i = moved[n];
+                    final double baseRi = baseRadiusWithBondi[i];
+                    if (baseRi <= 0.0 || (!bornUseAll && !use[i])) {
+                        continue;
+                    }
+                    final double scaledRi = baseRi * overlapScale[i];
+                    final double xi = x[i];
+                    final double yi = y[i];
+                    final double zi = z[i];
+                    final double xiOld = xCache[i];
+                    final double yiOld = yCache[i];
+                    final double ziOld = zCache[i];
+                    for (int k = 0; k < nAtoms; k++) {
+                        final double baseRk = baseRadiusWithBondi[k];
+                        if (k == i || baseRk <= 0.0 || (!bornUseAll && !use[k])) {
+                            continue;
+                        }
+                        // A pair of moved atoms is updated once, by its lower index.
+                        if (isMoved[k] && k < i) {
+                            continue;
+                        }
+                        final double scaledRk = baseRk * overlapScale[k];
+
+                        // Remove the contribution at the previous coordinates.
+                        double r2 = crystal.image(xCache[k] - xiOld, yCache[k] - yiOld, zCache[k] - ziOld);
+                        if (r2 <= cut2) {
+                            final double r = sqrt(r2);
+                            localBorn[i] -= integral(r, r2, baseRi, scaledRk);
+                            localBorn[k] -= integral(r, r2, baseRk, scaledRi);
+                        }
+
+                        // Add the contribution at the current coordinates.
+                        r2 = crystal.image(x[k] - xi, y[k] - yi, z[k] - zi);
+                        if (r2 <= cut2) {
+                            final double r = sqrt(r2);
+                            localBorn[i] += integral(r, r2, baseRi, scaledRk);
+                            localBorn[k] += integral(r, r2, baseRk, scaledRi);
+                        }
+                    }
+                }
+            }
+        }
     }
 
     /**
@@ -1430,6 +1812,8 @@ public class GeneralizedKirkwood implements LambdaInterface {
          */
         private class PermanentGKFieldLoop extends IntegerForLoop {
 
+            private final CompactNeighborList.Cursor cursor = new CompactNeighborList.Cursor();
+
             private final double a[][];
             private final double gc[];
             private final double gux[], guy[], guz[];
@@ -1506,10 +1890,18 @@ public class GeneralizedKirkwood implements LambdaInterface {
                     qyzi = multipolei[t011] / 3.0;
                     qzzi = multipolei[t002] / 3.0;
                     rbi = born[i];
-                    int list[] = neighborLists[0][i];
-                    int npair = list.length;
+                    int list[];
+                    int npair;
+                    CompactNeighborList compactList = particleMeshEwald.compactNeighborLists;
+                    if (compactList != null) {
+                        npair = cursor.reset(compactList, 0, i);
+                        list = null;
+                    } else {
+                        list = neighborLists[0][i];
+                        npair = list.length;
+                    }
                     for (int l = 0; l < npair; l++) {
-                        int k = list[l];
+                        int k = (list != null) ? list[l] : cursor.next();
                         if (!use[k]) {
                             continue;
                         }
@@ -1772,6 +2164,8 @@ public class GeneralizedKirkwood implements LambdaInterface {
          */
         private class InducedGKFieldLoop extends IntegerForLoop {
 
+            private final CompactNeighborList.Cursor cursor = new CompactNeighborList.Cursor();
+
             private final double a[][];
             private final double gux[], guy[], guz[];
             private double fx_local[];
@@ -1845,10 +2239,18 @@ public class GeneralizedKirkwood implements LambdaInterface {
                     uiyCR = inducedDipoleCR[i][1];
                     uizCR = inducedDipoleCR[i][2];
                     rbi = born[i];
-                    int list[] = neighborLists[0][i];
-                    int nPair = list.length;
+                    int list[];
+                    int nPair;
+                    CompactNeighborList compactList = particleMeshEwald.compactNeighborLists;
+                    if (compactList != null) {
+                        nPair = cursor.reset(compactList, 0, i);
+                        list = null;
+                    } else {
+                        list = neighborLists[0][i];
+                        nPair = list.length;
+                    }
                     for (int l = 0; l < nPair; l++) {
-                        int k = list[l];
+                        int k = (list != null) ? list[l] : cursor.next();
                         if (!use[k]) {
                             continue;
                         }
@@ -2025,6 +2427,8 @@ public class GeneralizedKirkwood implements LambdaInterface {
          */
         private class GKEnergyLoop extends IntegerForLoop {
 
+            private final CompactNeighborList.Cursor cursor = new CompactNeighborList.Cursor();
+
             private final double a[][];
             private final double b[][];
             private final double gc[];
@@ -2140,10 +2544,18 @@ public class GeneralizedKirkwood implements LambdaInterface {
                     syi = dyi + pyi;
                     szi = dzi + pzi;
                     rbi = born[i];
-                    int list[] = neighborLists[0][i];
-                    int nPair = list.length;
+                    int list[];
+                    int nPair;
+                    CompactNeighborList compactList = particleMeshEwald.compactNeighborLists;
+                    if (compactList != null) {
+                        nPair = cursor.reset(compactList, 0, i);
+                        list = null;
+                    } else {
+                        list = neighborLists[0][i];
+                        nPair = list.length;
+                    }
                     for (int l = 0; l < nPair; l++) {
-                        int k = list[l];
+                        int k = (list != null) ? list[l] : cursor.next();
                         if (!use[k]) {
                             continue;
                         }
@@ -3641,6 +4053,8 @@ public class GeneralizedKirkwood implements LambdaInterface {
          */
         private class BornCRLoop extends IntegerForLoop {
 
+            private final CompactNeighborList.Cursor cursor = new CompactNeighborList.Cursor();
+
             private final double factor = -pow(PI, THIRD) * pow(6.0, (2.0 * THIRD)) / 9.0;
             private final double dx_local[];
             private double gX[];
@@ -3768,10 +4182,18 @@ public class GeneralizedKirkwood implements LambdaInterface {
                     final double rbi = born[i];
                     double termi = PI4_3 / (rbi * rbi * rbi);
                     termi = factor / pow(termi, (4.0 * THIRD));
-                    int list[] = neighborLists[0][i];
-                    int nPair = list.length;
+                    int list[];
+                    int nPair;
+                    CompactNeighborList compactList = particleMeshEwald.compactNeighborLists;
+                    if (compactList != null) {
+                        nPair = cursor.reset(compactList, 0, i);
+                        list = null;
+                    } else {
+                        list = neighborLists[0][i];
+                        nPair = list.length;
+                    }
                     for (int l = 0; l < nPair; l++) {
-                        int k = list[l];
+                        int k = (list != null) ? list[l] : cursor.next();
                         if (!use[k]) {
                             continue;
                         }
@@ -3936,6 +4358,8 @@ public class GeneralizedKirkwood implements LambdaInterface {
          */
         private class DispersionLoop extends IntegerForLoop {
 
+            private final CompactNeighborList.Cursor cursor = new CompactNeighborList.Cursor();
+
             private double gX[];
             private double gY[];
             private double gZ[];
@@ -3991,10 +4415,18 @@ public class GeneralizedKirkwood implements LambdaInterface {
                     final double xi = x[i];
                     final double yi = y[i];
                     final double zi = z[i];
-                    int list[] = neighborLists[0][i];
-                    int npair = list.length;
+                    int list[];
+                    int npair;
+                    CompactNeighborList compactList = particleMeshEwald.compactNeighborLists;
+                    if (compactList != null) {
+                        npair = cursor.reset(compactList, 0, i);
+                        list = null;
+                    } else {
+                        list = neighborLists[0][i];
+                        npair = list.length;
+                    }
                     for (int l = 0; l < npair; l++) {
-                        int k = list[l];
+                        int k = (list != null) ? list[l] : cursor.next();
                         final double rk = rDisp[k];
                         if (i != k && rk > 0.0 && use[k]) {
                             dx_local[0] = xi - x[k];
@@ -4400,6 +4832,8 @@ public class GeneralizedKirkwood implements LambdaInterface {
          */
         private class InitLoop extends IntegerForLoop {
 
+            private final CompactNeighborList.Cursor cursor = new CompactNeighborList.Cursor();
+
             public long time;
 
             @Override
@@ -4422,10 +4856,18 @@ public class GeneralizedKirkwood implements LambdaInterface {
                     double yr = y[i];
                     double zr = z[i];
                     double rri = r[i];
-                    final int list[] = neighborLists[0][i];
-                    int npair = list.length;
+                    final int list[];
+                    int npair;
+                    CompactNeighborList compactList = particleMeshEwald.compactNeighborLists;
+                    if (compactList != null) {
+                        npair = cursor.reset(compactList, 0, i);
+                        list = null;
+                    } else {
+                        list = neighborLists[0][i];
+                        npair = list.length;
+                    }
                     for (int l = 0; l < npair; l++) {
-                        int k = list[l];
+                        int k = (list != null) ? list[l] : cursor.next();
                         double rrik = rri + r[k];
                         double dx = x[k] - xr;
                         double dy = y[k] - yr;
@@ -4449,6 +4891,8 @@ public class GeneralizedKirkwood implements LambdaInterface {
          */
         private class AtomOverlapLoop extends IntegerForLoop {
 
+            private final CompactNeighborList.Cursor cursor = new CompactNeighborList.Cursor();
+
             public long time;
 
             @Override
@@ -4470,10 +4914,18 @@ public class GeneralizedKirkwood implements LambdaInterface {
                     if (skip.get(i) || !use[i]) {
                         continue;
                     }
-                    int list[] = neighborLists[0][i];
-                    int npair = list.length;
+                    int list[];
+                    int npair;
+                    CompactNeighborList compactList = particleMeshEwald.compactNeighborLists;
+                    if (compactList != null) {
+                        npair = cursor.reset(compactList, 0, i);
+                        list = null;
+                    } else {
+                        list = neighborLists[0][i];
+                        npair = list.length;
+                    }
                     for (int l = 0; l < npair; l++) {
-                        int k = list[l];
+                        int k = (list != null) ? list[l] : cursor.next();
                         if (k == i) {
                             continue;
                         }
@@ -5165,6 +5617,519 @@ public class GeneralizedKirkwood implements LambdaInterface {
         }
     }
 
+    /**
+     * Compute the cavitation energy in parallel from a smooth Shrake-Rupley
+     * solvent accessible surface area.
+     * <p>
+     * The surface of each probe-inflated sphere is represented by a fixed set
+     * of points on a golden section spiral. Neighbors are found with a spatial
+     * hash of cubic cells whose width is the largest possible interaction
+     * distance. Points buried inside a neighbor are recorded in a bit-packed
+     * occlusion mask, so that later neighbors only test points that are still
+     * exposed. Within a narrow band around each neighbor surface the
+     * occlusion is switched on by a quintic polynomial, which makes the area a
+     * continuous function of the coordinates with analytic gradients.
+     * <p>
+     * The area of each atom and the coordinates used to compute it are cached.
+     * For energy-only evaluations in which few atoms have moved, only the areas
+     * of moved atoms and of atoms that overlap their previous or current
+     * positions are recomputed.
+     *
+     * @since 1.0
+     */
+    private class ShrakeRupleyRegion extends ParallelRegion {
+
+        /**
+         * Half width of the band over which occlusion is switched on (A).
+         */
+        private static final double SWITCH_WIDTH = 0.25;
+        /**
+         * Areas are updated incrementally only if fewer than this fraction of
+         * the atoms have moved.
+         */
+        private static final double INCREMENTAL_FRACTION = 0.1;
+
+        private final ShrakeRupleyLoop shrakeRupleyLoop[];
+        private final SharedDouble sharedCavitation;
+        /**
+         * Unit sphere points.
+         */
+        private final int nPoints;
+        private final int nWords;
+        private final double ux[], uy[], uz[];
+        private boolean gradient = false;
+        /**
+         * Probe-inflated radius and cached surface area of each atom.
+         */
+        private double r[];
+        private double maxRadius;
+        private double area[];
+        /**
+         * Coordinates and use flags of the last evaluation.
+         */
+        private double xCache[], yCache[], zCache[];
+        private boolean useCache[];
+        private boolean cacheValid = false;
+        /**
+         * Spatial hash of cells, stored as linked lists of atoms per bucket.
+         */
+        private double cellWidth;
+        private int hashMask;
+        private int head[];
+        private int next[];
+        private int cellX[], cellY[], cellZ[];
+        /**
+         * Atoms whose area is computed by the next execution.
+         */
+        private int targets[];
+        private boolean isTarget[];
+        private int nTargets;
+        private int moved[];
+        private long hashTime = 0;
+        private long areaTime = 0;
+
+        public ShrakeRupleyRegion(int nt, int nPoints) {
+            this.nPoints = nPoints;
+            nWords = (nPoints + 63) >>> 6;
+            ux = new double[nPoints];
+            uy = new double[nPoints];
+            uz = new double[nPoints];
+            double increment = PI * (3.0 - sqrt(5.0));
+            for (int p = 0; p < nPoints; p++) {
+                double zp = 1.0 - (2.0 * p + 1.0) / nPoints;
+                double rp = sqrt(1.0 - zp * zp);
+                double phi = p * increment;
+                ux[p] = rp * cos(phi);
+                uy[p] = rp * sin(phi);
+                uz[p] = zp;
+            }
+            shrakeRupleyLoop = new ShrakeRupleyLoop[nt];
+            for (int i = 0; i < nt; i++) {
+                shrakeRupleyLoop[i] = new ShrakeRupleyLoop();
+            }
+            sharedCavitation = new SharedDouble();
+            init();
+        }
+
+        public final void init() {
+            if (r == null || r.length < nAtoms) {
+                r = new double[nAtoms];
+                area = new double[nAtoms];
+                xCache = new double[nAtoms];
+                yCache = new double[nAtoms];
+                zCache = new double[nAtoms];
+                useCache = new boolean[nAtoms];
+                next = new int[nAtoms];
+                cellX = new int[nAtoms];
+                cellY = new int[nAtoms];
+                cellZ = new int[nAtoms];
+                targets = new int[nAtoms];
+                isTarget = new boolean[nAtoms];
+                moved = new int[nAtoms];
+            }
+            int size = 1;
+            while (size < 2 * nAtoms) {
+                size <<= 1;
+            }
+            if (head == null || head.length != size) {
+                head = new int[size];
+            }
+            hashMask = size - 1;
+            /**
+             * Set the sphere radii.
+             */
+            maxRadius = 0.0;
+            for (int i = 0; i < nAtoms; i++) {
+                VDWType type = atoms[i].getVDWType();
+                double rmini = type.radius;
+                r[i] = rmini / 2.0;
+                if (r[i] != 0.0) {
+                    r[i] = r[i] + probe;
+                }
+                maxRadius = max(maxRadius, r[i]);
+            }
+            cellWidth = 2.0 * maxRadius + SWITCH_WIDTH;
+            cacheValid = false;
+        }
+
+        public void setGradient(boolean gradient) {
+            this.gradient = gradient;
+        }
+
+        public double getEnergy() {
+            return sharedCavitation.get();
+        }
+
+        @Override
+        public void start() {
+            hashTime = -System.nanoTime();
+            if (gradient || !incrementalArea || !cacheValid || !findTargets()) {
+                nTargets = nAtoms;
+                for (int i = 0; i < nAtoms; i++) {
+                    targets[i] = i;
+                }
+            }
+            buildHash();
+            hashTime += System.nanoTime();
+            areaTime = -System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (nTargets > 0) {
+                    execute(0, nTargets - 1, shrakeRupleyLoop[getThreadIndex()]);
+                }
+            } catch (Exception e) {
+                String message = "Fatal exception computing Shrake-Rupley cavitation energy in thread " + getThreadIndex() + "\n";
+                logger.log(Level.SEVERE, message, e);
+            }
+        }
+
+        @Override
+        public void finish() {
+            double sum = 0.0;
+            for (int i = 0; i < nAtoms; i++) {
+                if (use[i]) {
+                    sum += area[i];
+                }
+                xCache[i] = x[i];
+                yCache[i] = y[i];
+                zCache[i] = z[i];
+                useCache[i] = use[i];
+            }
+            for (int t = 0; t < nTargets; t++) {
+                isTarget[targets[t]] = false;
+            }
+            sharedCavitation.set(surfaceTension * sum);
+            cacheValid = true;
+            areaTime += System.nanoTime();
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine(String.format(" Shrake-Rupley Hash: %10.3f Area: %10.3f Atoms: %8d",
+                        hashTime * 1e-9, areaTime * 1e-9, nTargets));
+            }
+        }
+
+        /**
+         * Collect the atoms whose area may have changed since the last
+         * evaluation: each moved atom and every atom that overlaps its previous
+         * or current position.
+         *
+         * @return false if all areas should be recomputed.
+         */
+        private boolean findTargets() {
+            if (xCache.length < nAtoms) {
+                return false;
+            }
+            int maxMoved = (int) (INCREMENTAL_FRACTION * nAtoms);
+            int nMoved = 0;
+            for (int i = 0; i < nAtoms; i++) {
+                if (use[i] != useCache[i]) {
+                    return false;
+                }
+                if (x[i] != xCache[i] || y[i] != yCache[i] || z[i] != zCache[i]) {
+                    if (nMoved >= maxMoved) {
+                        return false;
+                    }
+                    moved[nMoved++] = i;
+                }
+            }
+            nTargets = 0;
+            for (int n = 0; n < nMoved; n++) {
+                final int m = moved[n];
+                final double rm = r[m];
+                addTarget(m);
+                if (rm == 0.0) {
+                    continue;
+                }
+                for (int k = 0; k < nAtoms; k++) {
+                    final double rk = r[k];
+                    if (isTarget[k] || rk == 0.0) {
+                        continue;
+                    }
+                    final double cut = rm + rk + SWITCH_WIDTH;
+                    final double cut2 = cut * cut;
+                    double dx = x[k] - xCache[m];
+                    double dy = y[k] - yCache[m];
+                    double dz = z[k] - zCache[m];
+                    if (dx * dx + dy * dy + dz * dz < cut2) {
+                        addTarget(k);
+                        continue;
+                    }
+                    dx = x[k] - x[m];
+                    dy = y[k] - y[m];
+                    dz = z[k] - z[m];
+                    if (dx * dx + dy * dy + dz * dz < cut2) {
+                        addTarget(k);
+                    }
+                }
+            }
+            return true;
+        }
+
+        private void addTarget(int i) {
+            if (!isTarget[i]) {
+                isTarget[i] = true;
+                targets[nTargets++] = i;
+            }
+        }
+
+        private int cell(double coordinate) {
+            return (int) floor(coordinate / cellWidth);
+        }
+
+        private int hash(int ix, int iy, int iz) {
+            return ((ix * 73856093) ^ (iy * 19349663) ^ (iz * 83492791)) & hashMask;
+        }
+
+        private void buildHash() {
+            fill(head, -1);
+            for (int i = 0; i < nAtoms; i++) {
+                if (r[i] == 0.0) {
+                    continue;
+                }
+                int ix = cell(x[i]);
+                int iy = cell(y[i]);
+                int iz = cell(z[i]);
+                cellX[i] = ix;
+                cellY[i] = iy;
+                cellZ[i] = iz;
+                int h = hash(ix, iy, iz);
+                next[i] = head[h];
+                head[h] = i;
+            }
+        }
+
+        /**
+         * Compute the surface area of a range of atoms.
+         *
+         * @since 1.0
+         */
+        private class ShrakeRupleyLoop extends IntegerForLoop {
+
+            private final long mask[];
+            private int nbIndex[] = new int[64];
+            private double nbX[] = new double[64];
+            private double nbY[] = new double[64];
+            private double nbZ[] = new double[64];
+            private double nbLower[] = new double[64];
+            private double nbLower2[] = new double[64];
+            private double nbUpper2[] = new double[64];
+            private double nbInvWidth[] = new double[64];
+            private int bandIndex[] = new int[64];
+            private double bandF[] = new double[64];
+            private double bandDF[] = new double[64];
+            private double bandPrefix[] = new double[65];
+            private double gX[], gY[], gZ[];
+            private double lgX[], lgY[], lgZ[];
+            // Extra padding to avert cache interference.
+            private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
+            private long pad8, pad9, pada, padb, padc, padd, pade, padf;
+
+            public ShrakeRupleyLoop() {
+                mask = new long[nWords];
+            }
+
+            @Override
+            public IntegerSchedule schedule() {
+                return IntegerSchedule.dynamic(16);
+            }
+
+            @Override
+            public void start() {
+                int threadID = getThreadIndex();
+                gX = grad[threadID][0];
+                gY = grad[threadID][1];
+                gZ = grad[threadID][2];
+                if (lambdaTerm) {
+                    lgX = lambdaGrad[threadID][0];
+                    lgY = lambdaGrad[threadID][1];
+                    lgZ = lambdaGrad[threadID][2];
+                }
+            }
+
+            @Override
+            public void run(int lb, int ub) {
+                for (int t = lb; t <= ub; t++) {
+                    int i = targets[t];
+                    area[i] = surface(i);
+                }
+            }
+
+            /**
+             * Compute the exposed area of atom i, and optionally its gradient.
+             *
+             * @param i the atom index.
+             * @return the solvent accessible surface area (A^2).
+             */
+            private double surface(int i) {
+                final double ri = r[i];
+                if (ri == 0.0 || !use[i]) {
+                    return 0.0;
+                }
+                final double xi = x[i];
+                final double yi = y[i];
+                final double zi = z[i];
+
+                // Collect neighbors from the 27 surrounding cells.
+                int nNeighbors = 0;
+                final int cx = cellX[i];
+                final int cy = cellY[i];
+                final int cz = cellZ[i];
+                for (int ix = cx - 1; ix <= cx + 1; ix++) {
+                    for (int iy = cy - 1; iy <= cy + 1; iy++) {
+                        for (int iz = cz - 1; iz <= cz + 1; iz++) {
+                            int k = head[hash(ix, iy, iz)];
+                            while (k >= 0) {
+                                // Skip atoms from other cells that share the bucket.
+                                if (k != i && cellX[k] == ix && cellY[k] == iy && cellZ[k] == iz) {
+                                    final double dx = x[k] - xi;
+                                    final double dy = y[k] - yi;
+                                    final double dz = z[k] - zi;
+                                    final double rk = r[k];
+                                    final double cut = ri + rk + SWITCH_WIDTH;
+                                    if (dx * dx + dy * dy + dz * dz < cut * cut) {
+                                        if (nNeighbors == nbIndex.length) {
+                                            growNeighbors();
+                                        }
+                                        final double lower = max(rk - SWITCH_WIDTH, 0.0);
+                                        final double upper = rk + SWITCH_WIDTH;
+                                        nbIndex[nNeighbors] = k;
+                                        nbX[nNeighbors] = dx;
+                                        nbY[nNeighbors] = dy;
+                                        nbZ[nNeighbors] = dz;
+                                        nbLower[nNeighbors] = lower;
+                                        nbLower2[nNeighbors] = lower * lower;
+                                        nbUpper2[nNeighbors] = upper * upper;
+                                        nbInvWidth[nNeighbors] = 1.0 / (upper - lower);
+                                        nNeighbors++;
+                                    }
+                                }
+                                k = next[k];
+                            }
+                        }
+                    }
+                }
+
+                // Mark the points buried inside a neighbor.
+                fill(mask, 0L);
+                if ((nPoints & 63) != 0) {
+                    mask[nWords - 1] = -1L << (nPoints & 63);
+                }
+                for (int n = 0; n < nNeighbors; n++) {
+                    final double lower2 = nbLower2[n];
+                    if (lower2 == 0.0) {
+                        continue;
+                    }
+                    final double dx = nbX[n];
+                    final double dy = nbY[n];
+                    final double dz = nbZ[n];
+                    for (int w = 0; w < nWords; w++) {
+                        long open = ~mask[w];
+                        while (open != 0L) {
+                            final int bit = Long.numberOfTrailingZeros(open);
+                            open &= open - 1L;
+                            final int p = (w << 6) + bit;
+                            final double px = ri * ux[p] - dx;
+                            final double py = ri * uy[p] - dy;
+                            final double pz = ri * uz[p] - dz;
+                            if (px * px + py * py + pz * pz <= lower2) {
+                                mask[w] |= 1L << bit;
+                            }
+                        }
+                    }
+                }
+
+                // Sum the smoothly switched exposure of the remaining points.
+                final double scale = 4.0 * PI * ri * ri / nPoints;
+                final double gScale = surfaceTension * scale;
+                double sum = 0.0;
+                for (int w = 0; w < nWords; w++) {
+                    long open = ~mask[w];
+                    while (open != 0L) {
+                        final int bit = Long.numberOfTrailingZeros(open);
+                        open &= open - 1L;
+                        final int p = (w << 6) + bit;
+                        final double px = ri * ux[p];
+                        final double py = ri * uy[p];
+                        final double pz = ri * uz[p];
+                        double exposure = 1.0;
+                        int nBand = 0;
+                        for (int n = 0; n < nNeighbors; n++) {
+                            final double dx = px - nbX[n];
+                            final double dy = py - nbY[n];
+                            final double dz = pz - nbZ[n];
+                            final double d2 = dx * dx + dy * dy + dz * dz;
+                            if (d2 >= nbUpper2[n]) {
+                                continue;
+                            }
+                            final double d = sqrt(d2);
+                            final double s = (d - nbLower[n]) * nbInvWidth[n];
+                            final double s2 = s * s;
+                            final double f = s2 * s * (10.0 + s * (6.0 * s - 15.0));
+                            exposure *= f;
+                            if (gradient) {
+                                final double oneMinusS = 1.0 - s;
+                                bandIndex[nBand] = n;
+                                bandF[nBand] = f;
+                                bandDF[nBand] = 30.0 * s2 * oneMinusS * oneMinusS * nbInvWidth[n] / d;
+                                nBand++;
+                            }
+                        }
+                        sum += exposure;
+                        if (nBand > 0) {
+                            bandPrefix[0] = 1.0;
+                            for (int j = 0; j < nBand; j++) {
+                                bandPrefix[j + 1] = bandPrefix[j] * bandF[j];
+                            }
+                            double suffix = 1.0;
+                            for (int j = nBand - 1; j >= 0; j--) {
+                                final double de = gScale * bandDF[j] * bandPrefix[j] * suffix;
+                                suffix *= bandF[j];
+                                final int n = bandIndex[j];
+                                final int k = nbIndex[n];
+                                final double dedx = de * (px - nbX[n]);
+                                final double dedy = de * (py - nbY[n]);
+                                final double dedz = de * (pz - nbZ[n]);
+                                gX[i] += lPow * dedx;
+                                gY[i] += lPow * dedy;
+                                gZ[i] += lPow * dedz;
+                                gX[k] -= lPow * dedx;
+                                gY[k] -= lPow * dedy;
+                                gZ[k] -= lPow * dedz;
+                                if (lambdaTerm) {
+                                    lgX[i] += dlPow * dedx;
+                                    lgY[i] += dlPow * dedy;
+                                    lgZ[i] += dlPow * dedz;
+                                    lgX[k] -= dlPow * dedx;
+                                    lgY[k] -= dlPow * dedy;
+                                    lgZ[k] -= dlPow * dedz;
+                                }
+                            }
+                        }
+                    }
+                }
+                return sum * scale;
+            }
+
+            private void growNeighbors() {
+                int size = 2 * nbIndex.length;
+                nbIndex = copyOf(nbIndex, size);
+                nbX = copyOf(nbX, size);
+                nbY = copyOf(nbY, size);
+                nbZ = copyOf(nbZ, size);
+                nbLower = copyOf(nbLower, size);
+                nbLower2 = copyOf(nbLower2, size);
+                nbUpper2 = copyOf(nbUpper2, size);
+                nbInvWidth = copyOf(nbInvWidth, size);
+                bandIndex = copyOf(bandIndex, size);
+                bandF = copyOf(bandF, size);
+                bandDF = copyOf(bandDF, size);
+                bandPrefix = copyOf(bandPrefix, size + 1);
+            }
+        }
+    }
+
     /**
      * Compute Volume energy in parallel.
      *
@@ -9841,7 +10806,7 @@ public class GeneralizedKirkwood implements LambdaInterface {
 
     public enum NonPolar {
 
-        CAV, CAV_DISP, HYDROPHOBIC_PMF, BORN_CAV_DISP, BORN_SOLV, NONE
+        CAV, CAV_DISP, CAV_SR, CAV_DISP_SR, HYDROPHOBIC_PMF, BORN_CAV_DISP, BORN_SOLV, NONE
     }
 
     private static enum RADII_MAP_TYPE {
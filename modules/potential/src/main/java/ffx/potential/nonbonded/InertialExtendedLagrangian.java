@@ -0,0 +1,334 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.nonbonded;
+
+import java.util.logging.Logger;
+import static java.lang.String.format;
+
+import static org.apache.commons.math3.util.FastMath.sqrt;
+
+/**
+ * Inertial extended Lagrangian propagation of auxiliary induced dipoles.
+ * <p>
+ * The auxiliary dipoles are dynamical variables that are integrated by
+ * velocity Verlet alongside the atomic coordinates, with a harmonic restoring
+ * force toward a target of one Jacobi step from the current dipoles,
+ * &mu;<sub>t</sub> = &alpha;(E + T &mu;). The induced dipoles at each step are
+ * then the auxiliary dipoles after zero or one Jacobi steps, which replaces
+ * a full SCF with one or two induced field evaluations. The fixed point of the
+ * auxiliary dynamics is the converged SCF solution.
+ * <p>
+ * Time is measured in steps, so the restoring force constant is the
+ * dimensionless kappa = &omega;<sup>2</sup>&Delta;t<sup>2</sup>, which must be
+ * small enough that kappa times the largest eigenvalue of 1 - &alpha;T is
+ * below 4. Numerical heating of the auxiliary dipoles is removed by weak
+ * coupling of their kinetic energy to the kinetic energy of the target
+ * dipoles, i.e. the kinetic energy of auxiliary dipoles that follow the SCF
+ * solution exactly.
+ * <p>
+ * The first two steps after a reset use a full SCF to start the auxiliary
+ * dipoles and their velocities. After that, only the first evaluation after
+ * each step uses the auxiliary dipoles; any other evaluation (for example a
+ * Monte Carlo barostat trial, or an energy after dynamics has finished) uses a
+ * full SCF and leaves the target of the step unchanged.
+ * <p>
+ * Reference: A. Albaugh, O. Demerdash and T. Head-Gordon, "An Efficient and
+ * Stable Hybrid Extended Lagrangian/Self-Consistent Field Scheme for Solving
+ * Classical Mutual Induction", J. Chem. Phys. 143, 174104 (2015).
+ *
+ * @author Michael J. Schnieders
+ * @since 1.0
+ */
+public class InertialExtendedLagrangian {
+
+    private static final Logger logger = Logger.getLogger(InertialExtendedLagrangian.class.getName());
+
+    /**
+     * The dimensionless restoring force constant
+     * &omega;<sup>2</sup>&Delta;t<sup>2</sup>.
+     */
+    private final double kappa;
+    /**
+     * Thermostat time constant of the auxiliary dipoles (psec).
+     */
+    private final double tau;
+    /**
+     * Number of Jacobi steps from the auxiliary dipoles (0 or 1).
+     */
+    private final int scfCycles;
+    private int nAtoms = 0;
+    /**
+     * Auxiliary dipoles, velocities and accelerations for the direct (0) and
+     * chain rule (1) induced dipoles [2][nAtoms][3].
+     */
+    private double aux[][][];
+    private double velocity[][][];
+    private double acceleration[][][];
+    /**
+     * Target dipoles of the most recent evaluation, and of the previous step.
+     */
+    private double target[][][];
+    private double previousTarget[][][];
+    private boolean targetSet = false;
+    private boolean active = false;
+    /**
+     * True if the auxiliary dipoles have been advanced since the last target
+     * was recorded.
+     */
+    private boolean advanced = false;
+    private int startupSteps = 0;
+    private double kineticEnergy;
+
+    /**
+     * Constructor for InertialExtendedLagrangian.
+     *
+     * @param kappa The dimensionless restoring force constant.
+     * @param tau The thermostat time constant (psec); zero or less disables
+     * the thermostat.
+     * @param scfCycles The number of Jacobi steps from the auxiliary dipoles
+     * (0 or 1).
+     */
+    public InertialExtendedLagrangian(double kappa, double tau, int scfCycles) {
+        if (kappa <= 0.0 || kappa >= 4.0) {
+            logger.warning(format(" Invalid iel-kappa %8.3f (<=0 or >=4); using 1.0.", kappa));
+            kappa = 1.0;
+        }
+        this.kappa = kappa;
+        this.tau = tau;
+        this.scfCycles = Math.min(Math.max(scfCycles, 0), 1);
+    }
+
+    /**
+     * True once the auxiliary dipoles are being propagated; before then the
+     * induced dipoles should be converged by a full SCF.
+     *
+     * @return true if the auxiliary dipoles are in use.
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * True if the auxiliary dipoles have been advanced by a step since the
+     * last target was recorded, i.e. they belong to the current coordinates
+     * and should replace the SCF.
+     *
+     * @return true if the auxiliary dipoles should be used.
+     */
+    public boolean isAdvanced() {
+        return active && advanced;
+    }
+
+    /**
+     * The number of Jacobi steps from the auxiliary dipoles.
+     *
+     * @return 0 or 1.
+     */
+    public int getScfCycles() {
+        return scfCycles;
+    }
+
+    /**
+     * The kinetic energy of the auxiliary dipoles after the last step (in
+     * Debye<sup>2</sup>/step<sup>2</sup> for unit mass).
+     *
+     * @return the kinetic energy.
+     */
+    public double getKineticEnergy() {
+        return kineticEnergy;
+    }
+
+    /**
+     * Discard the auxiliary dipoles, for example at the start of a new
+     * trajectory.
+     */
+    public void reset() {
+        active = false;
+        targetSet = false;
+        advanced = false;
+        startupSteps = 0;
+    }
+
+    /**
+     * Copy the auxiliary dipoles into the induced dipole arrays.
+     *
+     * @param dipole The induced dipoles [nAtoms][3].
+     * @param dipoleCR The chain rule induced dipoles [nAtoms][3].
+     */
+    public void getAuxiliaryDipoles(double dipole[][], double dipoleCR[][]) {
+        for (int i = 0; i < nAtoms; i++) {
+            System.arraycopy(aux[0][i], 0, dipole[i], 0, 3);
+            System.arraycopy(aux[1][i], 0, dipoleCR[i], 0, 3);
+        }
+    }
+
+    /**
+     * Record the target dipoles for the current coordinates. Only the first
+     * target after each step (or after a reset) is recorded, so that later
+     * evaluations at trial coordinates do not overwrite it.
+     *
+     * @param n The number of atoms.
+     * @param dipole The target induced dipoles [nAtoms][3].
+     * @param dipoleCR The target chain rule induced dipoles [nAtoms][3].
+     */
+    public void setTarget(int n, double dipole[][], double dipoleCR[][]) {
+        if (n != nAtoms) {
+            nAtoms = n;
+            aux = new double[2][nAtoms][3];
+            velocity = new double[2][nAtoms][3];
+            acceleration = new double[2][nAtoms][3];
+            target = new double[2][nAtoms][3];
+            previousTarget = new double[2][nAtoms][3];
+            reset();
+        }
+        if (targetSet) {
+            return;
+        }
+        for (int i = 0; i < nAtoms; i++) {
+            System.arraycopy(dipole[i], 0, target[0][i], 0, 3);
+            System.arraycopy(dipoleCR[i], 0, target[1][i], 0, 3);
+        }
+        targetSet = true;
+        advanced = false;
+    }
+
+    /**
+     * Advance the auxiliary dipoles by one time step. This should be called
+     * once per molecular dynamics step, after the force evaluation.
+     *
+     * @param dt The time step (psec).
+     */
+    public void propagate(double dt) {
+        if (!targetSet) {
+            return;
+        }
+        targetSet = false;
+        if (!active) {
+            if (startupSteps++ == 0) {
+                copy(target, previousTarget);
+                return;
+            }
+            /**
+             * Start from the converged dipoles, with velocities from their
+             * change over the last step.
+             */
+            for (int c = 0; c < 2; c++) {
+                for (int i = 0; i < nAtoms; i++) {
+                    for (int j = 0; j < 3; j++) {
+                        aux[c][i][j] = target[c][i][j];
+                        velocity[c][i][j] = target[c][i][j] - previousTarget[c][i][j];
+                        acceleration[c][i][j] = 0.0;
+                    }
+                }
+            }
+            copy(target, previousTarget);
+            active = true;
+        } else {
+            /**
+             * Complete the velocity Verlet step with the new accelerations.
+             */
+            double reference = 0.0;
+            kineticEnergy = 0.0;
+            for (int c = 0; c < 2; c++) {
+                for (int i = 0; i < nAtoms; i++) {
+                    final double a[] = acceleration[c][i];
+                    final double v[] = velocity[c][i];
+                    final double x[] = aux[c][i];
+                    final double t[] = target[c][i];
+                    final double tp[] = previousTarget[c][i];
+                    for (int j = 0; j < 3; j++) {
+                        final double an = kappa * (t[j] - x[j]);
+                        v[j] += 0.5 * (a[j] + an);
+                        a[j] = an;
+                        kineticEnergy += v[j] * v[j];
+                        final double dt2 = t[j] - tp[j];
+                        reference += dt2 * dt2;
+                    }
+                }
+            }
+            kineticEnergy *= 0.5;
+            reference *= 0.5;
+            copy(target, previousTarget);
+            /**
+             * Weak coupling of the auxiliary kinetic energy to the kinetic
+             * energy of the target dipoles.
+             */
+            if (tau > 0.0 && kineticEnergy > 0.0) {
+                double scale = 1.0 + (dt / tau) * (reference / kineticEnergy - 1.0);
+                scale = (scale > 0.0) ? sqrt(scale) : 0.0;
+                for (int c = 0; c < 2; c++) {
+                    for (int i = 0; i < nAtoms; i++) {
+                        final double v[] = velocity[c][i];
+                        v[0] *= scale;
+                        v[1] *= scale;
+                        v[2] *= scale;
+                    }
+                }
+                kineticEnergy *= scale * scale;
+            }
+        }
+        /**
+         * Advance the auxiliary dipoles to the next step.
+         */
+        for (int c = 0; c < 2; c++) {
+            for (int i = 0; i < nAtoms; i++) {
+                final double x[] = aux[c][i];
+                final double v[] = velocity[c][i];
+                final double a[] = acceleration[c][i];
+                for (int j = 0; j < 3; j++) {
+                    x[j] += v[j] + 0.5 * a[j];
+                }
+            }
+        }
+        advanced = true;
+    }
+
+    @Override
+    public String toString() {
+        return format("Inertial Extended Lagrangian (kappa %5.3f, tau %5.3f psec, SCF cycles %d)",
+                kappa, tau, scfCycles);
+    }
+
+    private void copy(double from[][][], double to[][][]) {
+        for (int c = 0; c < 2; c++) {
+            for (int i = 0; i < nAtoms; i++) {
+                System.arraycopy(from[c][i], 0, to[c][i], 0, 3);
+            }
+        }
+    }
+}
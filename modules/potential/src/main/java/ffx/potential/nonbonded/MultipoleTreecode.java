@@ -0,0 +1,882 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.nonbonded;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.vecmath.Point3d;
+
+import static java.util.Arrays.fill;
+
+import edu.rit.pj.IntegerForLoop;
+import edu.rit.pj.IntegerSchedule;
+import edu.rit.pj.ParallelRegion;
+import edu.rit.pj.ParallelTeam;
+
+import ffx.potential.bonded.Atom;
+
+import static ffx.potential.parameters.MultipoleType.t000;
+import static ffx.potential.parameters.MultipoleType.t001;
+import static ffx.potential.parameters.MultipoleType.t002;
+import static ffx.potential.parameters.MultipoleType.t003;
+import static ffx.potential.parameters.MultipoleType.t010;
+import static ffx.potential.parameters.MultipoleType.t011;
+import static ffx.potential.parameters.MultipoleType.t012;
+import static ffx.potential.parameters.MultipoleType.t020;
+import static ffx.potential.parameters.MultipoleType.t021;
+import static ffx.potential.parameters.MultipoleType.t030;
+import static ffx.potential.parameters.MultipoleType.t100;
+import static ffx.potential.parameters.MultipoleType.t101;
+import static ffx.potential.parameters.MultipoleType.t102;
+import static ffx.potential.parameters.MultipoleType.t110;
+import static ffx.potential.parameters.MultipoleType.t111;
+import static ffx.potential.parameters.MultipoleType.t120;
+import static ffx.potential.parameters.MultipoleType.t200;
+import static ffx.potential.parameters.MultipoleType.t201;
+import static ffx.potential.parameters.MultipoleType.t210;
+import static ffx.potential.parameters.MultipoleType.t300;
+
+/**
+ * The MultipoleTreecode class computes the far-field electrostatic potential
+ * of an aperiodic system of atomic multipoles with a Barnes-Hut treecode.
+ * <p>
+ * Interactions between atoms within the real space cutoff are left to the
+ * neighbor list driven real space loops, which apply masking and Thole
+ * damping. Masked pairs (for example members of a polarization group) are
+ * also left to the real space loops at any separation, and are given to the
+ * treecode as exclusions. All remaining pairs are undamped and unmasked, so
+ * their contribution to the potential (and its derivatives) at each atom is
+ * computed from an {@link Octree} whose nodes carry Cartesian multipole
+ * expansions of their atoms. A node is used in place of its atoms if it lies
+ * entirely beyond the cutoff and satisfies the acceptance criterion
+ * radius &lt; theta * distance; otherwise it is opened, with pairs in leaf
+ * nodes summed directly. The cost is O(N log N) for a fixed theta and
+ * expansion order.
+ * <p>
+ * Sources are given per channel, either as permanent multipoles in the
+ * global frame (rank 2, indexed like the global multipoles) or as dipoles
+ * (rank 1). The result for each channel is the potential and its Cartesian
+ * derivatives at each atom, using the same layout as the reciprocal space
+ * potential (t000, t100, ..., t111).
+ *
+ * @author Michael J. Schnieders
+ *
+ * @since 1.0
+ */
+public class MultipoleTreecode {
+
+    private static final Logger logger = Logger.getLogger(MultipoleTreecode.class.getName());
+
+    /**
+     * The number of potential derivative components up to 3rd order.
+     */
+    private static final int TENSOR_COUNT = 20;
+    /**
+     * Maximum Octree depth.
+     */
+    private static final int MAX_DEPTH = 20;
+    /**
+     * Acceptance parameter: a node of radius R at distance d is used if R &lt;
+     * theta * d.
+     */
+    private final double theta;
+    /**
+     * Order of the node multipole expansions.
+     */
+    private final int order;
+    /**
+     * Maximum number of atoms in a leaf.
+     */
+    private final int leafSize;
+    /**
+     * Real space cutoff; pairs at or within the cutoff are skipped.
+     */
+    private double cutoff;
+    private double cutoff2;
+    /**
+     * Partners of each atom that are excluded at any separation, or null.
+     */
+    private int exclusions[][];
+    /**
+     * Highest derivative order of 1/r that is needed.
+     */
+    private final int maxDerivative;
+    /**
+     * Multi-index tables, ordered by total order. [index]
+     */
+    private final int mt[], mu[], mv[];
+    /**
+     * The recursion direction, coefficient and predecessors of each
+     * multi-index. [index]
+     */
+    private final int dir[], coef[], km1[], km2[];
+    /**
+     * Index of the sum of two multi-indices. [index][index]
+     */
+    private final int sumIndex[][];
+    /**
+     * Location of each reciprocal space tensor component in the multi-index
+     * order.
+     */
+    private final int tensorIndex[] = new int[TENSOR_COUNT];
+    /**
+     * Number of multi-indices of the expansions.
+     */
+    private final int nMoments;
+    /**
+     * Atoms and coordinates of the current tree.
+     */
+    private int nAtoms;
+    private double x[], y[], z[];
+    private boolean use[];
+    /**
+     * Atom indices ordered by node; each node owns a contiguous range.
+     */
+    private int atomOrder[];
+    /**
+     * Node geometry and topology.
+     */
+    private int nNodes;
+    private int nodeStart[], nodeEnd[];
+    private int nodeChildren[][];
+    private double nodeX[], nodeY[], nodeZ[], nodeRadius[];
+    private int treeDepth;
+    /**
+     * Sources and expansions of the current evaluation.
+     */
+    private int nChannels;
+    private int sourceRank[];
+    private int maxRank;
+    private double sourceMoments[][][];
+    private double nodeMoments[][][];
+    private double phi[][][];
+    private int phiOrder;
+    private long interactions[];
+
+    private final MomentRegion momentRegion = new MomentRegion();
+    private final PotentialRegion potentialRegion = new PotentialRegion();
+    private final ParallelTeam parallelTeam;
+
+    /**
+     * Constructor for the MultipoleTreecode class.
+     *
+     * @param theta The acceptance parameter.
+     * @param order The order of the node expansions (at least 2).
+     * @param leafSize The maximum number of atoms per leaf.
+     * @param parallelTeam The ParallelTeam used to build the expansions and
+     * evaluate the potential.
+     */
+    public MultipoleTreecode(double theta, int order, int leafSize, ParallelTeam parallelTeam) {
+        this.theta = theta;
+        this.order = Math.max(2, order);
+        this.leafSize = Math.max(1, leafSize);
+        this.parallelTeam = parallelTeam;
+        maxDerivative = this.order + 3;
+        int n = count(maxDerivative);
+        nMoments = count(this.order);
+        mt = new int[n];
+        mu = new int[n];
+        mv = new int[n];
+        dir = new int[n];
+        coef = new int[n];
+        km1 = new int[n];
+        km2 = new int[n];
+        int index[][][] = new int[maxDerivative + 1][maxDerivative + 1][maxDerivative + 1];
+        int k = 0;
+        for (int l = 0; l <= maxDerivative; l++) {
+            for (int t = l; t >= 0; t--) {
+                for (int u = l - t; u >= 0; u--) {
+                    int v = l - t - u;
+                    mt[k] = t;
+                    mu[k] = u;
+                    mv[k] = v;
+                    index[t][u][v] = k;
+                    k++;
+                }
+            }
+        }
+        km1[0] = -1;
+        km2[0] = -1;
+        for (k = 1; k < n; k++) {
+            int t = mt[k];
+            int u = mu[k];
+            int v = mv[k];
+            if (t > 0) {
+                dir[k] = 0;
+                coef[k] = t - 1;
+                km1[k] = index[t - 1][u][v];
+                km2[k] = (t > 1) ? index[t - 2][u][v] : -1;
+            } else if (u > 0) {
+                dir[k] = 1;
+                coef[k] = u - 1;
+                km1[k] = index[t][u - 1][v];
+                km2[k] = (u > 1) ? index[t][u - 2][v] : -1;
+            } else {
+                dir[k] = 2;
+                coef[k] = v - 1;
+                km1[k] = index[t][u][v - 1];
+                km2[k] = (v > 1) ? index[t][u][v - 2] : -1;
+            }
+        }
+        /**
+         * Sums of two multi-indices whose total order does not exceed the
+         * highest derivative.
+         */
+        sumIndex = new int[n][n];
+        for (int a = 0; a < n; a++) {
+            for (int b = 0; b < n; b++) {
+                int t = mt[a] + mt[b];
+                int u = mu[a] + mu[b];
+                int v = mv[a] + mv[b];
+                sumIndex[a][b] = (t + u + v <= maxDerivative) ? index[t][u][v] : -1;
+            }
+        }
+        tensorIndex[t000] = index[0][0][0];
+        tensorIndex[t100] = index[1][0][0];
+        tensorIndex[t010] = index[0][1][0];
+        tensorIndex[t001] = index[0][0][1];
+        tensorIndex[t200] = index[2][0][0];
+        tensorIndex[t020] = index[0][2][0];
+        tensorIndex[t002] = index[0][0][2];
+        tensorIndex[t110] = index[1][1][0];
+        tensorIndex[t101] = index[1][0][1];
+        tensorIndex[t011] = index[0][1][1];
+        tensorIndex[t300] = index[3][0][0];
+        tensorIndex[t030] = index[0][3][0];
+        tensorIndex[t003] = index[0][0][3];
+        tensorIndex[t210] = index[2][1][0];
+        tensorIndex[t201] = index[2][0][1];
+        tensorIndex[t120] = index[1][2][0];
+        tensorIndex[t021] = index[0][2][1];
+        tensorIndex[t102] = index[1][0][2];
+        tensorIndex[t012] = index[0][1][2];
+        tensorIndex[t111] = index[1][1][1];
+    }
+
+    /**
+     * Set the real space cutoff. Pairs separated by more than the cutoff are
+     * included in the far-field potential.
+     *
+     * @param cutoff The real space cutoff.
+     */
+    public void setCutoff(double cutoff) {
+        this.cutoff = cutoff;
+        cutoff2 = cutoff * cutoff;
+    }
+
+    /**
+     * Set the partners of each atom whose interactions are computed by the
+     * real space loops at any separation. The lists must be symmetric.
+     *
+     * @param exclusions The excluded partners of each atom, or null.
+     */
+    public void setExclusions(int exclusions[][]) {
+        this.exclusions = exclusions;
+    }
+
+    /**
+     * Partition the atoms into an Octree for the current coordinates.
+     *
+     * @param atoms The atoms.
+     * @param x The X-coordinate of each atom.
+     * @param y The Y-coordinate of each atom.
+     * @param z The Z-coordinate of each atom.
+     * @param use Atoms to include as sources and targets.
+     */
+    public void build(Atom atoms[], double x[], double y[], double z[], boolean use[]) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.use = use;
+        nAtoms = atoms.length;
+        if (atomOrder == null || atomOrder.length != nAtoms) {
+            atomOrder = new int[nAtoms];
+        }
+        double xmin = Double.MAX_VALUE;
+        double ymin = Double.MAX_VALUE;
+        double zmin = Double.MAX_VALUE;
+        double xmax = -Double.MAX_VALUE;
+        double ymax = -Double.MAX_VALUE;
+        double zmax = -Double.MAX_VALUE;
+        List<Atom> used = new ArrayList<>(nAtoms);
+        for (int i = 0; i < nAtoms; i++) {
+            if (!use[i]) {
+                continue;
+            }
+            used.add(atoms[i]);
+            xmin = Math.min(xmin, x[i]);
+            ymin = Math.min(ymin, y[i]);
+            zmin = Math.min(zmin, z[i]);
+            xmax = Math.max(xmax, x[i]);
+            ymax = Math.max(ymax, y[i]);
+            zmax = Math.max(zmax, z[i]);
+        }
+        nNodes = 0;
+        treeDepth = 0;
+        if (used.isEmpty()) {
+            return;
+        }
+        double edge = Math.max(xmax - xmin, Math.max(ymax - ymin, zmax - zmin)) + 1.0;
+        Point3d corner = new Point3d(xmin - 0.5, ymin - 0.5, zmin - 0.5);
+        Octree octree = new Octree(0, corner, edge);
+        octree.setPartitionByCenter(true);
+        octree.setMaxAtomsPerVolume(leafSize);
+        octree.setMaxTreeDepth(MAX_DEPTH);
+        octree.addAtoms(used);
+
+        List<Octree> nodes = new ArrayList<>();
+        List<int[]> children = new ArrayList<>();
+        int counts[] = new int[1];
+        flatten(octree, nodes, children, counts);
+        nNodes = nodes.size();
+        nodeChildren = children.toArray(new int[nNodes][]);
+        /**
+         * Recompute each node range and geometry bottom-up; the node list is
+         * in pre-order so children follow their parent.
+         */
+        for (int n = nNodes - 1; n >= 0; n--) {
+            int child[] = nodeChildren[n];
+            if (child != null) {
+                nodeStart[n] = nodeStart[child[0]];
+                nodeEnd[n] = nodeEnd[child[child.length - 1]];
+            }
+            int start = nodeStart[n];
+            int end = nodeEnd[n];
+            double cx = 0.0;
+            double cy = 0.0;
+            double cz = 0.0;
+            for (int j = start; j < end; j++) {
+                int k = atomOrder[j];
+                cx += x[k];
+                cy += y[k];
+                cz += z[k];
+            }
+            double norm = 1.0 / (end - start);
+            cx *= norm;
+            cy *= norm;
+            cz *= norm;
+            double r2 = 0.0;
+            for (int j = start; j < end; j++) {
+                int k = atomOrder[j];
+                double dx = x[k] - cx;
+                double dy = y[k] - cy;
+                double dz = z[k] - cz;
+                r2 = Math.max(r2, dx * dx + dy * dy + dz * dz);
+            }
+            nodeX[n] = cx;
+            nodeY[n] = cy;
+            nodeZ[n] = cz;
+            nodeRadius[n] = Math.sqrt(r2);
+        }
+    }
+
+    /**
+     * Collect the non-empty nodes of the Octree in pre-order, placing the atoms
+     * of each leaf contiguously in the atom order.
+     *
+     * @return the index of the node, or -1 if it is empty.
+     */
+    private int flatten(Octree octree, List<Octree> nodes, List<int[]> children, int counts[]) {
+        Octree octreeChildren[] = octree.getChildren();
+        List<Atom> contents = octree.getContents();
+        if (octreeChildren == null && contents.isEmpty()) {
+            return -1;
+        }
+        int n = nodes.size();
+        nodes.add(octree);
+        children.add(null);
+        treeDepth = Math.max(treeDepth, octree.getDepth());
+        if (octreeChildren == null) {
+            if (nodeStart == null || nodeStart.length <= n) {
+                growNodes(2 * (n + 1));
+            }
+            nodeStart[n] = counts[0];
+            for (Atom atom : contents) {
+                atomOrder[counts[0]++] = atom.getIndex() - 1;
+            }
+            nodeEnd[n] = counts[0];
+            return n;
+        }
+        int child[] = new int[8];
+        int nChild = 0;
+        for (Octree octreeChild : octreeChildren) {
+            int c = flatten(octreeChild, nodes, children, counts);
+            if (c >= 0) {
+                child[nChild++] = c;
+            }
+        }
+        int keep[] = new int[nChild];
+        System.arraycopy(child, 0, keep, 0, nChild);
+        children.set(n, keep);
+        return n;
+    }
+
+    private void growNodes(int n) {
+        int start[] = new int[n];
+        int end[] = new int[n];
+        if (nodeStart != null) {
+            System.arraycopy(nodeStart, 0, start, 0, nodeStart.length);
+            System.arraycopy(nodeEnd, 0, end, 0, nodeEnd.length);
+        }
+        nodeStart = start;
+        nodeEnd = end;
+        nodeX = new double[n];
+        nodeY = new double[n];
+        nodeZ = new double[n];
+        nodeRadius = new double[n];
+    }
+
+    /**
+     * Compute the far-field potential and its derivatives at each atom due to
+     * one or more channels of sources. The tree must have been built for the
+     * current coordinates.
+     *
+     * @param sources Source moments for each channel. [channel][atom][]
+     * @param ranks The rank of each channel: 2 for permanent multipoles
+     * indexed like the global multipoles, or 1 for dipoles.
+     * @param phiOrder The highest derivative of the potential needed (0 to 3).
+     * @param phi The potential and its derivatives. [channel][atom][20]
+     */
+    public void computePotential(double sources[][][], int ranks[], int phiOrder, double phi[][][]) {
+        nChannels = sources.length;
+        this.sourceRank = ranks;
+        this.phiOrder = Math.min(3, Math.max(0, phiOrder));
+        this.phi = phi;
+        maxRank = 0;
+        for (int c = 0; c < nChannels; c++) {
+            maxRank = Math.max(maxRank, ranks[c]);
+        }
+        if (sourceMoments == null || sourceMoments.length != nChannels
+                || sourceMoments[0].length != nAtoms) {
+            sourceMoments = new double[nChannels][nAtoms][count(2)];
+        }
+        if (nodeMoments == null || nodeMoments.length != nChannels
+                || nodeMoments[0].length < nNodes) {
+            nodeMoments = new double[nChannels][nodeStart.length][nMoments];
+        }
+        /**
+         * Convert the sources to signed Taylor moments; the potential of a
+         * source at s is the sum over multi-indices k of moment_k times the
+         * k-th derivative of 1/|x - s| with respect to x.
+         */
+        for (int c = 0; c < nChannels; c++) {
+            double source[][] = sources[c];
+            double moments[][] = sourceMoments[c];
+            for (int i = 0; i < nAtoms; i++) {
+                double m[] = moments[i];
+                fill(m, 0.0);
+                if (!use[i]) {
+                    continue;
+                }
+                double s[] = source[i];
+                if (ranks[c] == 1) {
+                    m[1] = -s[0];
+                    m[2] = -s[1];
+                    m[3] = -s[2];
+                } else {
+                    final double oneThird = 1.0 / 3.0;
+                    final double twoThirds = 2.0 / 3.0;
+                    m[0] = s[t000];
+                    m[1] = -s[t100];
+                    m[2] = -s[t010];
+                    m[3] = -s[t001];
+                    m[4] = oneThird * s[t200];
+                    m[5] = twoThirds * s[t110];
+                    m[6] = twoThirds * s[t101];
+                    m[7] = oneThird * s[t020];
+                    m[8] = twoThirds * s[t011];
+                    m[9] = oneThird * s[t002];
+                }
+            }
+        }
+        if (interactions == null) {
+            interactions = new long[parallelTeam.getThreadCount()];
+        }
+        fill(interactions, 0L);
+        try {
+            if (nNodes > 0) {
+                parallelTeam.execute(momentRegion);
+            }
+            parallelTeam.execute(potentialRegion);
+        } catch (Exception e) {
+            String message = " Fatal exception computing the far-field multipole potential.\n";
+            logger.log(Level.SEVERE, message, e);
+        }
+    }
+
+    /**
+     * The number of node-atom and atom-atom interactions in the last
+     * evaluation.
+     *
+     * @return the number of interactions.
+     */
+    public long getInteractions() {
+        long sum = 0;
+        for (long count : interactions) {
+            sum += count;
+        }
+        return sum;
+    }
+
+    /**
+     * The number of non-empty nodes in the tree.
+     *
+     * @return the number of nodes.
+     */
+    public int getNodeCount() {
+        return nNodes;
+    }
+
+    /**
+     * The acceptance parameter.
+     *
+     * @return theta.
+     */
+    public double getTheta() {
+        return theta;
+    }
+
+    /**
+     * The order of the node expansions.
+     *
+     * @return the expansion order.
+     */
+    public int getOrder() {
+        return order;
+    }
+
+    /**
+     * The maximum number of atoms per leaf.
+     *
+     * @return the leaf size.
+     */
+    public int getLeafSize() {
+        return leafSize;
+    }
+
+    /**
+     * The number of multi-indices up to a total order.
+     */
+    private static int count(int l) {
+        return (l + 1) * (l + 2) * (l + 3) / 6;
+    }
+
+    /**
+     * Compute the Cartesian derivatives of 1/r up to order l by the
+     * McMurchie-Davidson recursion.
+     *
+     * @param dx Separation vector (target - source).
+     * @param l Highest derivative order.
+     * @param work Workspace of (maxDerivative + 1) * count(maxDerivative).
+     * @param d Derivatives of 1/r, ordered by multi-index.
+     */
+    private void derivatives(double dx, double dy, double dz, int l, double work[], double d[]) {
+        final int stride = count(maxDerivative);
+        final double r2 = dx * dx + dy * dy + dz * dz;
+        final double rr2 = 1.0 / r2;
+        double f = Math.sqrt(rr2);
+        for (int n = 0; n <= l; n++) {
+            work[n * stride] = f;
+            f *= -(2 * n + 1) * rr2;
+        }
+        final double r[] = {dx, dy, dz};
+        for (int n = l - 1; n >= 0; n--) {
+            final int m = count(l - n);
+            final int base = n * stride;
+            final int next = base + stride;
+            for (int k = 1; k < m; k++) {
+                double value = r[dir[k]] * work[next + km1[k]];
+                if (km2[k] >= 0) {
+                    value += coef[k] * work[next + km2[k]];
+                }
+                work[base + k] = value;
+            }
+        }
+        System.arraycopy(work, 0, d, 0, count(l));
+    }
+
+    /**
+     * Build the multipole expansion of each node about its center from the
+     * moments of its atoms.
+     */
+    private class MomentRegion extends ParallelRegion {
+
+        private MomentLoop momentLoop[];
+
+        @Override
+        public void start() {
+            int threadCount = getThreadCount();
+            if (momentLoop == null || momentLoop.length < threadCount) {
+                momentLoop = new MomentLoop[threadCount];
+            }
+        }
+
+        @Override
+        public void run() throws Exception {
+            int threadIndex = getThreadIndex();
+            if (momentLoop[threadIndex] == null) {
+                momentLoop[threadIndex] = new MomentLoop();
+            }
+            execute(0, nNodes - 1, momentLoop[threadIndex]);
+        }
+
+        private class MomentLoop extends IntegerForLoop {
+
+            private final double monomial[] = new double[nMoments];
+
+            @Override
+            public IntegerSchedule schedule() {
+                return IntegerSchedule.dynamic(1);
+            }
+
+            @Override
+            public void run(int lb, int ub) {
+                final int nSource = count(maxRank);
+                for (int n = lb; n <= ub; n++) {
+                    final double cx = nodeX[n];
+                    final double cy = nodeY[n];
+                    final double cz = nodeZ[n];
+                    for (int c = 0; c < nChannels; c++) {
+                        fill(nodeMoments[c][n], 0.0);
+                    }
+                    for (int j = nodeStart[n]; j < nodeEnd[n]; j++) {
+                        final int i = atomOrder[j];
+                        /**
+                         * Monomials (c - s)^m / m! of the translation from
+                         * the atom to the node center.
+                         */
+                        final double dx = cx - x[i];
+                        final double dy = cy - y[i];
+                        final double dz = cz - z[i];
+                        monomial[0] = 1.0;
+                        for (int k = 1; k < nMoments; k++) {
+                            final int a = dir[k];
+                            final double r = (a == 0) ? dx : (a == 1) ? dy : dz;
+                            monomial[k] = monomial[km1[k]] * r / (coef[k] + 1);
+                        }
+                        for (int c = 0; c < nChannels; c++) {
+                            final double m[] = sourceMoments[c][i];
+                            final double moments[] = nodeMoments[c][n];
+                            for (int s = 0; s < nSource; s++) {
+                                final double ms = m[s];
+                                if (ms == 0.0) {
+                                    continue;
+                                }
+                                final int sum[] = sumIndex[s];
+                                final int nm = count(order - (mt[s] + mu[s] + mv[s]));
+                                for (int k = 0; k < nm; k++) {
+                                    moments[sum[k]] += ms * monomial[k];
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Traverse the tree for each target atom.
+     */
+    private class PotentialRegion extends ParallelRegion {
+
+        private PotentialLoop potentialLoop[];
+
+        @Override
+        public void start() {
+            int threadCount = getThreadCount();
+            if (potentialLoop == null || potentialLoop.length < threadCount) {
+                potentialLoop = new PotentialLoop[threadCount];
+            }
+        }
+
+        @Override
+        public void run() throws Exception {
+            int threadIndex = getThreadIndex();
+            if (potentialLoop[threadIndex] == null) {
+                potentialLoop[threadIndex] = new PotentialLoop();
+            }
+            execute(0, nAtoms - 1, potentialLoop[threadIndex]);
+        }
+
+        private class PotentialLoop extends IntegerForLoop {
+
+            private final int stride = count(maxDerivative);
+            private final double work[] = new double[(maxDerivative + 1) * stride];
+            private final double d[] = new double[stride];
+            private double sums[][];
+            private int stack[] = new int[64];
+            private long count;
+
+            @Override
+            public IntegerSchedule schedule() {
+                return IntegerSchedule.dynamic(16);
+            }
+
+            @Override
+            public void start() {
+                count = 0;
+                if (sums == null || sums.length != nChannels) {
+                    sums = new double[nChannels][count(3)];
+                }
+                int depth = 8 * (treeDepth + 2);
+                if (stack.length < depth) {
+                    stack = new int[depth];
+                }
+            }
+
+            @Override
+            public void finish() {
+                interactions[getThreadIndex()] += count;
+            }
+
+            @Override
+            public void run(int lb, int ub) {
+                final int nTarget = count(phiOrder);
+                final int nSource = count(maxRank);
+                final int atomDerivative = maxRank + phiOrder;
+                final int nodeDerivative = order + phiOrder;
+                for (int i = lb; i <= ub; i++) {
+                    for (int c = 0; c < nChannels; c++) {
+                        fill(sums[c], 0.0);
+                    }
+                    if (use[i] && nNodes > 0) {
+                        final double xi = x[i];
+                        final double yi = y[i];
+                        final double zi = z[i];
+                        int top = 0;
+                        stack[top++] = 0;
+                        while (top > 0) {
+                            final int n = stack[--top];
+                            final double dx = xi - nodeX[n];
+                            final double dy = yi - nodeY[n];
+                            final double dz = zi - nodeZ[n];
+                            final double r = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                            final double radius = nodeRadius[n];
+                            if (r + radius < cutoff) {
+                                /**
+                                 * Every atom of the node is within the cutoff.
+                                 */
+                                continue;
+                            }
+                            if (r - radius > cutoff && radius < theta * r) {
+                                derivatives(dx, dy, dz, nodeDerivative, work, d);
+                                for (int c = 0; c < nChannels; c++) {
+                                    accumulate(nodeMoments[c][n], nMoments, nTarget, sums[c]);
+                                }
+                                count++;
+                                continue;
+                            }
+                            final int child[] = nodeChildren[n];
+                            if (child != null) {
+                                for (int c : child) {
+                                    stack[top++] = c;
+                                }
+                                continue;
+                            }
+                            for (int j = nodeStart[n]; j < nodeEnd[n]; j++) {
+                                final int k = atomOrder[j];
+                                final double xr = xi - x[k];
+                                final double yr = yi - y[k];
+                                final double zr = zi - z[k];
+                                final double r2 = xr * xr + yr * yr + zr * zr;
+                                if (k == i || r2 <= cutoff2) {
+                                    continue;
+                                }
+                                derivatives(xr, yr, zr, atomDerivative, work, d);
+                                for (int c = 0; c < nChannels; c++) {
+                                    accumulate(sourceMoments[c][k], nSource, nTarget, sums[c]);
+                                }
+                                count++;
+                            }
+                        }
+                        /**
+                         * Remove the excluded partners beyond the cutoff,
+                         * which were summed directly or through a node.
+                         */
+                        if (exclusions != null) {
+                            final int nDerivative = count(atomDerivative);
+                            for (int k : exclusions[i]) {
+                                final double xr = xi - x[k];
+                                final double yr = yi - y[k];
+                                final double zr = zi - z[k];
+                                final double r2 = xr * xr + yr * yr + zr * zr;
+                                if (!use[k] || r2 <= cutoff2) {
+                                    continue;
+                                }
+                                derivatives(xr, yr, zr, atomDerivative, work, d);
+                                for (int q = 0; q < nDerivative; q++) {
+                                    d[q] = -d[q];
+                                }
+                                for (int c = 0; c < nChannels; c++) {
+                                    accumulate(sourceMoments[c][k], nSource, nTarget, sums[c]);
+                                }
+                            }
+                        }
+                    }
+                    for (int c = 0; c < nChannels; c++) {
+                        final double p[] = phi[c][i];
+                        final double s[] = sums[c];
+                        for (int t = 0; t < TENSOR_COUNT; t++) {
+                            final int k = tensorIndex[t];
+                            p[t] = (k < nTarget) ? s[k] : 0.0;
+                        }
+                    }
+                }
+            }
+
+            /**
+             * Add the derivatives of the potential of an expansion to the
+             * target sums.
+             */
+            private void accumulate(double moments[], int nm, int nTarget, double sum[]) {
+                for (int q = 0; q < nTarget; q++) {
+                    final int index[] = sumIndex[q];
+                    double value = 0.0;
+                    for (int p = 0; p < nm; p++) {
+                        value += moments[p] * d[index[p]];
+                    }
+                    sum[q] += value;
+                }
+            }
+        }
+    }
+}
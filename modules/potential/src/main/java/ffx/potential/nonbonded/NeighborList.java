@@ -44,10 +44,12 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import static java.lang.String.format;
+import static java.lang.System.arraycopy;
 import static java.util.Arrays.copyOf;
 import static java.util.Arrays.fill;
 
 import static org.apache.commons.math3.util.FastMath.floor;
+import static org.apache.commons.math3.util.FastMath.max;
 import static org.apache.commons.math3.util.FastMath.min;
 import static org.apache.commons.math3.util.FastMath.sqrt;
 
@@ -61,6 +63,7 @@ import edu.rit.util.Range;
 import ffx.crystal.Crystal;
 import ffx.crystal.SymOp;
 import ffx.potential.bonded.Atom;
+import ffx.utilities.MetricsRegistry;
 
 /**
  * The NeighborList class builds Verlet lists in parallel via a spatial
@@ -127,7 +130,7 @@ public class NeighborList extends ParallelRegion {
     private double coordinates[][];
     /**
      * The reduced coordinates of the asymmetric unit when the list was last
-     * rebuilt.
+     * rebuilt. Lists and cells are built from these reference coordinates.
      */
     private double previous[];
     /**
@@ -306,6 +309,73 @@ public class NeighborList extends ParallelRegion {
      * Disable updates to the NeighborList; use with caution.
      */
     private boolean disableUpdates = false;
+    /**
+     * If true, only the pairs of atoms that have moved more than half the
+     * buffer are removed and re-inserted.
+     */
+    private boolean incremental = false;
+    /**
+     * True if the lists are consistent with the reference coordinates, which
+     * is required for an incremental update.
+     */
+    private boolean listsCurrent = false;
+    /**
+     * If more than this fraction of the atoms has moved more than half the
+     * buffer, all lists are rebuilt. Each moved atom costs a search of the
+     * cells around both its previous and its new position.
+     */
+    private static final double INCREMENTAL_FRACTION = 0.1;
+    /**
+     * Atoms that have moved more than half the buffer since the last update.
+     */
+    private int moved[];
+    private boolean isMoved[];
+    /**
+     * Atoms whose lists were changed by the last incremental update.
+     */
+    private int patched[];
+    private boolean isPatched[];
+    private int nPatched;
+    /**
+     * The number of incremental updates since the lists were last rebuilt.
+     */
+    private int incrementalUpdates;
+    /**
+     * Pair and mask work arrays for incremental updates.
+     */
+    private int incrementalPairs[] = new int[len];
+    private double incrementalMask[];
+    /**
+     * Atoms whose lists are rebuilt by the Verlet list loops.
+     */
+    private int rebuildAtoms[];
+    /**
+     * The number of atoms whose lists are rebuilt.
+     */
+    private int nRebuild;
+    /**
+     * If true, lists are stored in a CompactNeighborList instead of one array
+     * per atom.
+     */
+    private boolean compact = false;
+    /**
+     * The compact lists.
+     */
+    private CompactNeighborList compactList = null;
+    /**
+     * If true, the next list update must be a full rebuild.
+     */
+    private boolean rebuildPending = false;
+    /**
+     * Cluster pair list of the asymmetric unit, which is rebuilt along with
+     * the Verlet lists (or null).
+     */
+    private ClusterPairList clusterPairList = null;
+    /**
+     * Cached symmetry mates shared by the terms that share this NeighborList
+     * (or null until requested).
+     */
+    private SymmetryMateCache symmetryMateCache = null;
 
     /**
      * Constructor for the NeighborList class.
@@ -379,6 +449,97 @@ public class NeighborList extends ParallelRegion {
         return disableUpdates;
     }
 
+    /**
+     * If incremental is true, the pairs of atoms that have moved more than
+     * half the buffer are removed from the lists and re-inserted, and only
+     * those atoms are re-binned if they crossed a cell boundary. Lists are
+     * built from reference coordinates, so the buffer criterion is unchanged.
+     * Incremental updates are used for P1 (or aperiodic) systems.
+     *
+     * @param incremental If true, use incremental list updates.
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Getter for the incremental field.
+     *
+     * @return If incremental list updates are enabled.
+     */
+    public boolean getIncremental() {
+        return incremental;
+    }
+
+    /**
+     * If compact is true, lists are stored in a CompactNeighborList and the
+     * per-atom list arrays passed to buildList are not filled. Incremental
+     * updates are not used for compact lists.
+     *
+     * @param compact If true, use the compact list layout.
+     */
+    public void setCompact(boolean compact) {
+        if (compact != this.compact) {
+            this.compact = compact;
+            rebuildPending = true;
+            listsCurrent = false;
+        }
+        if (compact && compactList == null) {
+            compactList = new CompactNeighborList(threadCount);
+        }
+    }
+
+    /**
+     * Return the compact lists, or null if the compact layout is not in use.
+     *
+     * @return The CompactNeighborList.
+     */
+    public CompactNeighborList getCompactNeighborList() {
+        return compact ? compactList : null;
+    }
+
+    /**
+     * If clusterSize is 4 or 8, a ClusterPairList of the asymmetric unit is
+     * built whenever the Verlet lists are rebuilt. Incremental updates are not
+     * used for cluster pair lists.
+     *
+     * @param clusterSize The number of atoms per cluster, or 0 to disable.
+     * @param maskingRules Masking rules used to exclude bonded pairs from the
+     * cluster pair tiles.
+     */
+    public void setClusterPairs(int clusterSize, MaskingInterface maskingRules) {
+        if (clusterSize <= 0) {
+            clusterPairList = null;
+        } else {
+            clusterPairList = new ClusterPairList(clusterSize, maskingRules);
+            rebuildPending = true;
+            listsCurrent = false;
+        }
+    }
+
+    /**
+     * Return the cluster pair list, or null if cluster pairs are not in use.
+     *
+     * @return The ClusterPairList.
+     */
+    public ClusterPairList getClusterPairList() {
+        return clusterPairList;
+    }
+
+    /**
+     * Return the symmetry mate cache of the atoms in this NeighborList, which
+     * allows the VanDerWaals and ParticleMeshEwald terms that share the
+     * NeighborList to also share symmetry mates.
+     *
+     * @return The SymmetryMateCache.
+     */
+    public SymmetryMateCache getSymmetryMateCache() {
+        if (symmetryMateCache == null) {
+            symmetryMateCache = new SymmetryMateCache(crystal, atoms);
+        }
+        return symmetryMateCache;
+    }
+
     private void initNeighborList(boolean print) {
 
         /**
@@ -392,6 +553,13 @@ public class NeighborList extends ParallelRegion {
             frac = new double[3 * nAtoms];
             previous = new double[3 * nAtoms];
             listCount = new int[nAtoms];
+            moved = new int[nAtoms];
+            isMoved = new boolean[nAtoms];
+            patched = new int[nAtoms];
+            isPatched = new boolean[nAtoms];
+            incrementalMask = new double[nAtoms];
+            fill(incrementalMask, 1.0);
+            rebuildAtoms = new int[nAtoms];
             pairwiseSchedule = new PairwiseSchedule(threadCount, nAtoms, ranges);
         } else {
             pairwiseSchedule.setAtoms(nAtoms);
@@ -476,6 +644,11 @@ public class NeighborList extends ParallelRegion {
             cellOffset = new int[nSymmMax][nAtoms];
         }
 
+        /**
+         * The next list update must be a full rebuild.
+         */
+        listsCurrent = false;
+
         if (cellStart == null) {
             cellStart = new int[nSymm][nCells];
             cellCount = new int[nSymm][nCells];
@@ -503,6 +676,9 @@ public class NeighborList extends ParallelRegion {
     public void setCrystal(Crystal crystal) {
         this.crystal = crystal;
         initNeighborList(false);
+        if (symmetryMateCache != null) {
+            symmetryMateCache.setCrystal(crystal);
+        }
     }
 
     /**
@@ -515,6 +691,9 @@ public class NeighborList extends ParallelRegion {
         this.atoms = atoms;
         this.nAtoms = atoms.length;
         initNeighborList(false);
+        if (symmetryMateCache != null) {
+            symmetryMateCache.setAtoms(atoms);
+        }
     }
 
     /**
@@ -537,6 +716,35 @@ public class NeighborList extends ParallelRegion {
         this.coordinates = coordinates;
         this.lists = lists;
         this.use = use;
+        if (rebuildPending) {
+            forceRebuild = true;
+            rebuildPending = false;
+        }
+        if (!forceRebuild && incremental && !compact && clusterPairList == null && nSymm == 1 && use == null && listsCurrent
+                && lists[0] != null && lists[0].length >= nAtoms) {
+            int nMoved = movedAtoms();
+            if (nMoved == 0) {
+                return;
+            }
+            if (nMoved <= INCREMENTAL_FRACTION * nAtoms) {
+                long incrementalTime = -System.nanoTime();
+                updatePairs(nMoved);
+                countPairs();
+                incrementalTime += System.nanoTime();
+                incrementalUpdates++;
+
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine(format("   Incremental neighbor list update: %d moved atoms, %d lists changed",
+                            nMoved, nPatched));
+                }
+
+                pairwiseSchedule.updateRanges(sharedCount.get(), atomsWithIteractions, listCount);
+                MetricsRegistry.recordTime("neighborList.incremental.time", incrementalTime);
+                MetricsRegistry.record("neighborList.incremental.lists", nPatched);
+                return;
+            }
+            forceRebuild = true;
+        }
         if (forceRebuild || motion()) {
             /**
              * Save the current coordinates.
@@ -558,6 +766,10 @@ public class NeighborList extends ParallelRegion {
 
             verletTime = -System.nanoTime();
             createNeighborList();
+            if (clusterPairList != null) {
+                clusterPairList.build(coordinates[0], nAtoms, crystal,
+                        compact ? null : lists[0], getCompactNeighborList());
+            }
             verletTime += System.nanoTime();
 
             if (print) {
@@ -565,6 +777,9 @@ public class NeighborList extends ParallelRegion {
             }
 
             pairwiseSchedule.updateRanges(sharedCount.get(), atomsWithIteractions, listCount);
+            listsCurrent = (use == null);
+            incrementalUpdates = 0;
+            MetricsRegistry.recordTime("neighborList.rebuild.time", cellTime + verletTime);
         }
     }
 
@@ -577,6 +792,24 @@ public class NeighborList extends ParallelRegion {
         return lists;
     }
 
+    /**
+     * The number of incremental updates since the lists were last rebuilt.
+     *
+     * @return The number of incremental updates.
+     */
+    public int getIncrementalUpdateCount() {
+        return incrementalUpdates;
+    }
+
+    /**
+     * The number of lists changed by the last incremental update.
+     *
+     * @return The number of lists changed.
+     */
+    public int getIncrementalListCount() {
+        return nPatched;
+    }
+
     /**
      * Takes a list of Atoms and obtains the local indices for these atoms.
      *
@@ -606,14 +839,23 @@ public class NeighborList extends ParallelRegion {
     public Set<Integer> getNeighborIndices(List<Integer> atomIndices, double maxDist) {
         double md2 = maxDist * maxDist;
         Set<Integer> neighbors = new HashSet<>();
+        int[] work = null;
         for (Integer intI : atomIndices) {
             int i = intI.intValue();
             double[] xyzI = new double[3];
             atoms[i].getXYZ(xyzI);
             for (int iSymm = 0; iSymm < nSymm; iSymm++) {
                 SymOp symOp = crystal.spaceGroup.getSymOp(iSymm);
-                int[] listi = lists[iSymm][i];
-                int nListI = listi.length;
+                int[] listi;
+                int nListI;
+                if (compact) {
+                    work = compactList.getList(iSymm, i, work);
+                    listi = work;
+                    nListI = compactList.getCount(iSymm, i);
+                } else {
+                    listi = lists[iSymm][i];
+                    nListI = listi.length;
+                }
                 for (int j = 0; j < nListI; j++) {
                     int indexJ = listi[j];
                     if (atomIndices.contains(indexJ) || neighbors.contains(indexJ)) {
@@ -721,7 +963,7 @@ public class NeighborList extends ParallelRegion {
                 cellCounts[i] = 0;
             }
             // Convert to fractional coordinates.
-            final double xyz[] = coordinates[iSymm];
+            final double xyz[] = (iSymm == 0) ? previous : coordinates[iSymm];
             crystal.toFractionalCoordinates(nAtoms, xyz, frac);
             // Assign each atom to a cell using fractional coordinates.
             for (int i = 0; i < nAtoms; i++) {
@@ -797,39 +1039,361 @@ public class NeighborList extends ParallelRegion {
         }
     }
 
+    /**
+     * Find atoms that have moved more than half the buffer since the last
+     * update.
+     *
+     * @return The number of atoms that moved.
+     */
+    private int movedAtoms() {
+        double current[] = coordinates[0];
+        int nMoved = 0;
+        for (int i = 0; i < nAtoms; i++) {
+            int i3 = i * 3;
+            int iX = i3 + XX;
+            int iY = i3 + YY;
+            int iZ = i3 + ZZ;
+            double dx = previous[iX] - current[iX];
+            double dy = previous[iY] - current[iY];
+            double dz = previous[iZ] - current[iZ];
+            double dr2 = crystal.image(dx, dy, dz);
+            if (dr2 > motion2) {
+                moved[nMoved++] = i;
+            }
+        }
+        return nMoved;
+    }
+
+    /**
+     * Remove every pair that includes a moved atom, searching the cells around
+     * its reference position, then update its reference position, re-bin it if
+     * it crossed a cell boundary and insert its pairs at the new position.
+     *
+     * Atoms that did not move keep their reference coordinates, and therefore
+     * their cells and their pairs with each other. Each new pair is stored in
+     * the list of the moved atom, or of the lower index if both moved.
+     *
+     * @param nMoved The number of moved atoms.
+     */
+    private void updatePairs(int nMoved) {
+        final int list[][] = lists[0];
+        final double current[] = coordinates[0];
+        for (int k = 0; k < nMoved; k++) {
+            isMoved[moved[k]] = true;
+        }
+        nPatched = 0;
+
+        /**
+         * Remove the pairs of each moved atom at its reference position.
+         */
+        for (int k = 0; k < nMoved; k++) {
+            final int m = moved[k];
+            if (list[m].length > 0) {
+                list[m] = new int[0];
+                patch(m);
+            }
+            final int m3 = m * 3;
+            final double xm = previous[m3 + XX];
+            final double ym = previous[m3 + YY];
+            final double zm = previous[m3 + ZZ];
+            final int nearby = nearbyAtoms(cellA[m], cellB[m], cellC[m]);
+            for (int n = 0; n < nearby; n++) {
+                final int j = incrementalPairs[n];
+                // The lists of moved atoms are cleared.
+                if (isMoved[j]) {
+                    continue;
+                }
+                final int j3 = j * 3;
+                final double d2 = crystal.image(xm - previous[j3 + XX],
+                        ym - previous[j3 + YY], zm - previous[j3 + ZZ]);
+                if (d2 <= cutoffPlusBuffer2 && remove(list, j, m)) {
+                    patch(j);
+                }
+            }
+        }
+
+        /**
+         * Update the reference position of each moved atom and re-bin the
+         * atoms that crossed a cell boundary.
+         */
+        final double xyz[] = new double[3];
+        final double uvw[] = new double[3];
+        for (int k = 0; k < nMoved; k++) {
+            final int m = moved[k];
+            final int m3 = m * 3;
+            previous[m3 + XX] = current[m3 + XX];
+            previous[m3 + YY] = current[m3 + YY];
+            previous[m3 + ZZ] = current[m3 + ZZ];
+            xyz[0] = previous[m3 + XX];
+            xyz[1] = previous[m3 + YY];
+            xyz[2] = previous[m3 + ZZ];
+            crystal.toFractionalCoordinates(xyz, uvw);
+            final int a = (int) floor(unitInterval(uvw[0]) * nA);
+            final int b = (int) floor(unitInterval(uvw[1]) * nB);
+            final int c = (int) floor(unitInterval(uvw[2]) * nC);
+            final int index = a + b * nA + c * nAB;
+            if (index != cellIndex[0][m]) {
+                moveCell(m, cellIndex[0][m], index);
+                cellIndex[0][m] = index;
+                cellA[m] = a;
+                cellB[m] = b;
+                cellC[m] = c;
+            }
+        }
+
+        /**
+         * Insert the pairs of each moved atom at its new reference position.
+         */
+        for (int k = 0; k < nMoved; k++) {
+            final int m = moved[k];
+            final int m3 = m * 3;
+            final double xm = previous[m3 + XX];
+            final double ym = previous[m3 + YY];
+            final double zm = previous[m3 + ZZ];
+            final boolean mActive = atoms[m].isActive();
+            if (maskingRules != null) {
+                maskingRules.applyMask(incrementalMask, m);
+            }
+            final int nearby = nearbyAtoms(cellA[m], cellB[m], cellC[m]);
+            int n = 0;
+            for (int l = 0; l < nearby; l++) {
+                final int j = incrementalPairs[l];
+                // A pair of moved atoms is stored by the lower index.
+                if (j == m || (isMoved[j] && j < m) || incrementalMask[j] <= 0.0) {
+                    continue;
+                }
+                if (!mActive && !atoms[j].isActive() && !inactiveInteractions) {
+                    continue;
+                }
+                if (!intermolecular && (molecules[m] != molecules[j])) {
+                    continue;
+                }
+                final int j3 = j * 3;
+                final double d2 = crystal.image(xm - previous[j3 + XX],
+                        ym - previous[j3 + YY], zm - previous[j3 + ZZ]);
+                if (d2 <= cutoffPlusBuffer2) {
+                    incrementalPairs[n++] = j;
+                }
+            }
+            if (maskingRules != null) {
+                maskingRules.removeMask(incrementalMask, m);
+            }
+            list[m] = copyOf(incrementalPairs, n);
+            patch(m);
+        }
+
+        for (int k = 0; k < nMoved; k++) {
+            isMoved[moved[k]] = false;
+        }
+        for (int k = 0; k < nPatched; k++) {
+            final int i = patched[k];
+            isPatched[i] = false;
+            listCount[i] = list[i].length;
+        }
+    }
+
+    /**
+     * Move a fractional coordinate into the range 0.0 <= u < 1.0, as
+     * assignAtomsToCells does.
+     */
+    private static double unitInterval(double u) {
+        while (u < 0.0) {
+            u += 1.0;
+        }
+        while (u >= 1.0) {
+            u -= 1.0;
+        }
+        return u;
+    }
+
+    /**
+     * Collect the atoms in the cells within the search volume of a cell into
+     * the front of the incremental pair array.
+     *
+     * @return The number of atoms collected.
+     */
+    private int nearbyAtoms(int a, int b, int c) {
+        final int edgeA = (nA == 1) ? 0 : nEdgeA;
+        final int edgeB = (nB == 1) ? 0 : nEdgeB;
+        final int edgeC = (nC == 1) ? 0 : nEdgeC;
+        final int cellAtoms[] = cellList[0];
+        final int starts[] = cellStart[0];
+        final int counts[] = cellCount[0];
+        int n = 0;
+        for (int ai = a - edgeA; ai <= a + edgeA; ai++) {
+            for (int bi = b - edgeB; bi <= b + edgeB; bi++) {
+                for (int ci = c - edgeC; ci <= c + edgeC; ci++) {
+                    final int index = image(ai, bi, ci);
+                    final int count = counts[index];
+                    if (n + count > incrementalPairs.length) {
+                        incrementalPairs = copyOf(incrementalPairs, max(n + count, 2 * incrementalPairs.length));
+                    }
+                    arraycopy(cellAtoms, starts[index], incrementalPairs, n, count);
+                    n += count;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Remove atom m from the list of atom j.
+     *
+     * @return True if atom m was found.
+     */
+    private static boolean remove(int list[][], int j, int m) {
+        final int listj[] = list[j];
+        final int n = listj.length;
+        for (int l = 0; l < n; l++) {
+            if (listj[l] == m) {
+                int removed[] = copyOf(listj, n - 1);
+                arraycopy(listj, l + 1, removed, l, n - l - 1);
+                list[j] = removed;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Record that the list of atom i was changed.
+     */
+    private void patch(int i) {
+        if (!isPatched[i]) {
+            isPatched[i] = true;
+            patched[nPatched++] = i;
+        }
+    }
+
+    /**
+     * Move atom i from one cell to another of the asymmetric unit, keeping
+     * the atoms ordered by cell.
+     */
+    private void moveCell(int i, int from, int to) {
+        final int cellAtoms[] = cellList[0];
+        final int starts[] = cellStart[0];
+        final int counts[] = cellCount[0];
+        int p = starts[from];
+        while (cellAtoms[p] != i) {
+            p++;
+        }
+        if (from < to) {
+            // Shift the atoms between the two positions down by one.
+            final int end = starts[to] - 1;
+            arraycopy(cellAtoms, p + 1, cellAtoms, p, end - p);
+            cellAtoms[end] = i;
+            for (int index = from + 1; index <= to; index++) {
+                starts[index]--;
+            }
+        } else {
+            // Shift the atoms between the two positions up by one.
+            final int end = starts[to] + counts[to];
+            arraycopy(cellAtoms, end, cellAtoms, end + 1, p - end);
+            cellAtoms[end] = i;
+            for (int index = to + 1; index <= from; index++) {
+                starts[index]++;
+            }
+        }
+        counts[from]--;
+        counts[to]++;
+    }
+
     /**
      * Execute the parallel Verlet list builder.
      *
      * @since 1.0
      */
     private void createNeighborList() {
-        asymmetricUnitCount = 0;
-        symmetryMateCount = 0;
-        for (int iSymm = 0; iSymm < nSymm; iSymm++) {
-            if (lists[iSymm] == null || lists[iSymm].length < nAtoms) {
-                lists[iSymm] = new int[nAtoms][];
+        if (compact) {
+            compactList.allocate(nSymm, nAtoms);
+        } else {
+            for (int iSymm = 0; iSymm < nSymm; iSymm++) {
+                if (lists[iSymm] == null || lists[iSymm].length < nAtoms) {
+                    lists[iSymm] = new int[nAtoms][];
+                }
             }
         }
+        nRebuild = nAtoms;
+        for (int i = 0; i < nAtoms; i++) {
+            rebuildAtoms[i] = i;
+        }
         try {
             parallelTeam.execute(this);
         } catch (Exception e) {
             String message = "Fatal exception building neighbor list.\n";
             logger.log(Level.SEVERE, message, e);
         }
-        int list[][] = lists[0];
+        if (compact) {
+            compactList.pack();
+        }
+        countPairs();
+    }
+
+    /**
+     * Count the pairs in the lists.
+     */
+    private void countPairs() {
+        asymmetricUnitCount = 0;
+        symmetryMateCount = 0;
         atomsWithIteractions = 0;
+        int total = 0;
         for (int i = 0; i < nAtoms; i++) {
-            asymmetricUnitCount += list[i].length;
+            asymmetricUnitCount += listSize(0, i);
+            total += listCount[i];
             if (listCount[i] > 0) {
                 atomsWithIteractions++;
             }
         }
+        sharedCount.set(total);
         for (int iSymm = 1; iSymm < nSymm; iSymm++) {
-            list = lists[iSymm];
             for (int i = 0; i < nAtoms; i++) {
-                symmetryMateCount += list[i].length;
+                symmetryMateCount += listSize(iSymm, i);
             }
         }
+        if (compact && logger.isLoggable(Level.FINE)) {
+            logger.fine(format("   Compact neighbor list:             %10d pairs %10d bytes",
+                    compactList.getPairCount(), compactList.getMemory()));
+        }
+    }
+
+    /**
+     * The number of neighbors of atom i for symmetry operator iSymm.
+     */
+    private int listSize(int iSymm, int i) {
+        if (compact) {
+            return compactList.getCount(iSymm, i);
+        }
+        return lists[iSymm][i].length;
+    }
+
+    /**
+     * If the index is >= to nX, it is mapped back into the periodic unit cell
+     * by subtracting nX. If the index is less than 0, it is mapped into the
+     * periodic unit cell by adding nX. The Neighbor list algorithm never
+     * requires multiple additions or subtractions of nX.
+     *
+     * @param i The index along the a-axis.
+     * @param j The index along the b-axis.
+     * @param k The index along the c-axis.
+     * @return The pointer into the 1D cell array.
+     */
+    private int image(int i, int j, int k) {
+        if (i >= nA) {
+            i -= nA;
+        } else if (i < 0) {
+            i += nA;
+        }
+        if (j >= nB) {
+            j -= nB;
+        } else if (j < 0) {
+            j += nB;
+        }
+        if (k >= nC) {
+            k -= nC;
+        } else if (k < 0) {
+            k += nC;
+        }
+        return i + j * nA + k * nAB;
     }
 
     /**
@@ -855,7 +1419,7 @@ public class NeighborList extends ParallelRegion {
     @Override
     public void run() {
         try {
-            execute(0, nAtoms - 1, verletListLoop[getThreadIndex()]);
+            execute(0, nRebuild - 1, verletListLoop[getThreadIndex()]);
         } catch (Exception e) {
             String message = "Fatal exception building neighbor list in thread: " + getThreadIndex() + "\n";
             logger.log(Level.SEVERE, message, e);
@@ -916,6 +1480,7 @@ public class NeighborList extends ParallelRegion {
         private int n;
         private int iSymm;
         private int atomIndex;
+        private int threadID;
         private boolean iactive = true;
         private int count;
         private int asymmetricIndex[];
@@ -939,7 +1504,8 @@ public class NeighborList extends ParallelRegion {
 
         @Override
         public void start() {
-            xyz = coordinates[0];
+            xyz = previous;
+            threadID = getThreadIndex();
             count = 0;
             if (mask == null || mask.length < nAtoms) {
                 mask = new double[nAtoms];
@@ -956,9 +1522,10 @@ public class NeighborList extends ParallelRegion {
         public void run(final int lb, final int ub) {
             asymmetricIndex = cellIndex[0];
             for (iSymm = 0; iSymm < nSymm; iSymm++) {
-                int list[][] = lists[iSymm];
-                // Loop over all atoms.
-                for (atomIndex = lb; atomIndex <= ub; atomIndex++) {
+                int list[][] = compact ? null : lists[iSymm];
+                // Loop over the atoms whose lists are being rebuilt.
+                for (int k = lb; k <= ub; k++) {
+                    atomIndex = rebuildAtoms[k];
                     n = 0;
 
                     if (iSymm == 0) {
@@ -1042,44 +1609,18 @@ public class NeighborList extends ParallelRegion {
                         }
                     }
 
-                    list[atomIndex] = new int[n];
+                    if (compact) {
+                        compactList.put(threadID, iSymm, atomIndex, pairs, n);
+                    } else {
+                        list[atomIndex] = new int[n];
+                        System.arraycopy(pairs, 0, list[atomIndex], 0, n);
+                    }
                     listCount[atomIndex] += n;
                     count += n;
-                    System.arraycopy(pairs, 0, list[atomIndex], 0, n);
                 }
             }
         }
 
-        /**
-         * If the index is >= to nX, it is mapped back into the periodic unit
-         * cell by subtracting nX. If the index is less than 0, it is mapped
-         * into the periodic unit cell by adding nX. The Neighbor list algorithm
-         * never requires multiple additions or subtractions of nX.
-         *
-         * @param i The index along the a-axis.
-         * @param j The index along the b-axis.
-         * @param k The index along the c-axis.
-         * @return The pointer into the 1D cell array.
-         */
-        private int image(int i, int j, int k) {
-            if (i >= nA) {
-                i -= nA;
-            } else if (i < 0) {
-                i += nA;
-            }
-            if (j >= nB) {
-                j -= nB;
-            } else if (j < 0) {
-                j += nB;
-            }
-            if (k >= nC) {
-                k -= nC;
-            } else if (k < 0) {
-                k += nC;
-            }
-            return i + j * nA + k * nAB;
-        }
-
         private void atomCellPairs(final int pairCellIndex) {
             final int atomCellIndex = asymmetricIndex[atomIndex];
             final int i3 = atomIndex * 3;
@@ -1089,7 +1630,7 @@ public class NeighborList extends ParallelRegion {
             final int pairCellAtoms[] = cellList[iSymm];
             int start = cellStart[iSymm][pairCellIndex];
             final int pairStop = start + cellCount[iSymm][pairCellIndex];
-            final double pair[] = coordinates[iSymm];
+            final double pair[] = (iSymm == 0) ? previous : coordinates[iSymm];
             /**
              * Check if this pair search is over atoms in the asymmetric unit.
              */
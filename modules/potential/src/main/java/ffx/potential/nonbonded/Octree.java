@@ -57,10 +57,15 @@ public class Octree {
 
     private static final Logger logger = Logger.getLogger(Octree.class.getName());
     private static boolean warnedAboutSplit = false;
-    private static boolean leaveStraddlersInParent = false;
 
-    private static int maxAtomsPerVolume = 20;
-    private static int maxTreeDepth = 10;
+    /**
+     * Partitioning settings are set on the root before atoms are added and are
+     * inherited by every child volume.
+     */
+    private boolean leaveStraddlersInParent = false;
+    private boolean partitionByCenter = false;
+    private int maxAtomsPerVolume = 20;
+    private int maxTreeDepth = 10;
 
     private int depth;
     private Octree children[];
@@ -159,28 +164,40 @@ public class Octree {
         leaveStraddlersInParent = set;
     }
 
+    /**
+     * If set, atoms are partitioned by their center alone (rather than by
+     * their van der Waals sphere), so that every atom belongs to exactly one
+     * leaf volume.
+     *
+     * @param set true to partition atoms by center.
+     */
+    public void setPartitionByCenter(boolean set) {
+        partitionByCenter = set;
+    }
+
+    private Octree newChild(Point3d childCorner, double childEdge) {
+        Octree child = new Octree(depth + 1, childCorner, childEdge);
+        child.leaveStraddlersInParent = leaveStraddlersInParent;
+        child.partitionByCenter = partitionByCenter;
+        child.maxAtomsPerVolume = maxAtomsPerVolume;
+        child.maxTreeDepth = maxTreeDepth;
+        return child;
+    }
+
     private void split() {
         double sel = edgeLength / 2;
         double x = corner.x;    // for Java3d 1.3 compatibility, use corner.getX() in 1.5+
         double y = corner.y;
         double z = corner.z;
         children = new Octree[8];
-        children[0] = new Octree(depth + 1,
-                new Point3d(x, y, z), sel);
-        children[1] = new Octree(depth + 1,
-                new Point3d(x + sel, y, z), sel);
-        children[2] = new Octree(depth + 1,
-                new Point3d(x, y + sel, z), sel);
-        children[3] = new Octree(depth + 1,
-                new Point3d(x, y, z + sel), sel);
-        children[4] = new Octree(depth + 1,
-                new Point3d(x + sel, y + sel, z), sel);
-        children[5] = new Octree(depth + 1,
-                new Point3d(x + sel, y, z + sel), sel);
-        children[6] = new Octree(depth + 1,
-                new Point3d(x, y + sel, z + sel), sel);
-        children[7] = new Octree(depth + 1,
-                new Point3d(x + sel, y + sel, z + sel), sel);
+        children[0] = newChild(new Point3d(x, y, z), sel);
+        children[1] = newChild(new Point3d(x + sel, y, z), sel);
+        children[2] = newChild(new Point3d(x, y + sel, z), sel);
+        children[3] = newChild(new Point3d(x, y, z + sel), sel);
+        children[4] = newChild(new Point3d(x + sel, y + sel, z), sel);
+        children[5] = newChild(new Point3d(x + sel, y, z + sel), sel);
+        children[6] = newChild(new Point3d(x, y + sel, z + sel), sel);
+        children[7] = newChild(new Point3d(x + sel, y + sel, z + sel), sel);
     }
 
     private void addAtom(Atom atom) {
@@ -270,16 +287,26 @@ public class Octree {
         double midX = corner.x + (edgeLength / 2);  // for Java3d 1.3 compatibility, use corner.getX() in 1.5+
         double midY = corner.y + (edgeLength / 2);
         double midZ = corner.z + (edgeLength / 2);
-        double vdwr = atom.getVDWR();
         double atomX = atom.getX();
         double atomY = atom.getY();
         double atomZ = atom.getZ();
-        boolean leftSide = (atomX + vdwr < midX);
-        boolean rightSide = (atomX - vdwr > midX);
-        boolean topSide = (atomY + vdwr < midY);
-        boolean botSide = (atomY - vdwr > midY);
-        boolean frontSide = (atomZ + vdwr < midZ);
-        boolean backSide = (atomZ - vdwr > midZ);
+        boolean leftSide, rightSide, topSide, botSide, frontSide, backSide;
+        if (partitionByCenter) {
+            leftSide = (atomX < midX);
+            rightSide = !leftSide;
+            topSide = (atomY < midY);
+            botSide = !topSide;
+            frontSide = (atomZ < midZ);
+            backSide = !frontSide;
+        } else {
+            double vdwr = atom.getVDWR();
+            leftSide = (atomX + vdwr < midX);
+            rightSide = (atomX - vdwr > midX);
+            topSide = (atomY + vdwr < midY);
+            botSide = (atomY - vdwr > midY);
+            frontSide = (atomZ + vdwr < midZ);
+            backSide = (atomZ - vdwr > midZ);
+        }
         if (leftSide) {
             b[1] = false;
             b[4] = false;
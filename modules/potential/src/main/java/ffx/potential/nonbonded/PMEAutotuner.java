@@ -0,0 +1,251 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.nonbonded;
+
+import java.io.File;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static java.lang.String.format;
+
+import ffx.potential.nonbonded.ReciprocalSpace.GridMethod;
+
+/**
+ * The PMEAutotuner times each candidate execution plan of particle mesh Ewald
+ * over the first few energy evaluations, and then locks in the fastest. A plan
+ * combines the {@link ReciprocalSpace} grid method with the split of threads
+ * between the concurrent real space and reciprocal space sections. Each plan
+ * is found once per system size, space group, FFT grid and thread count, and
+ * then stored in a wisdom file by {@link PMEWisdom}.
+ *
+ * @author Michael J. Schnieders
+ * @since 1.0
+ */
+public class PMEAutotuner {
+
+    private static final Logger logger = Logger.getLogger(PMEAutotuner.class.getName());
+
+    /**
+     * A PME execution plan.
+     */
+    public static class Plan {
+
+        /**
+         * The method used to place multipoles onto the FFT grid.
+         */
+        public final GridMethod gridMethod;
+        /**
+         * The number of real space threads, or 0 if real and reciprocal space
+         * are done sequentially with all threads.
+         */
+        public final int realSpaceThreads;
+
+        public Plan(GridMethod gridMethod, int realSpaceThreads) {
+            this.gridMethod = gridMethod;
+            this.realSpaceThreads = realSpaceThreads;
+        }
+
+        /**
+         * Parse a plan of the form GRID_METHOD:realSpaceThreads.
+         *
+         * @param plan the plan String.
+         * @return the Plan, or null if it could not be parsed.
+         */
+        public static Plan parse(String plan) {
+            if (plan == null) {
+                return null;
+            }
+            try {
+                String tokens[] = plan.trim().split(":");
+                return new Plan(GridMethod.valueOf(tokens[0]), Integer.parseInt(tokens[1]));
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Plan)) {
+                return false;
+            }
+            Plan other = (Plan) o;
+            return gridMethod == other.gridMethod && realSpaceThreads == other.realSpaceThreads;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * gridMethod.hashCode() + realSpaceThreads;
+        }
+
+        @Override
+        public String toString() {
+            return format("%s:%d", gridMethod, realSpaceThreads);
+        }
+    }
+
+    private final List<Plan> candidates;
+    private final int evaluations;
+    private final File wisdomFile;
+    /**
+     * The fastest evaluation time of each candidate (nsec).
+     */
+    private final long times[];
+    private String key = null;
+    private Plan plan = null;
+    private boolean tuning = false;
+    private int current;
+    private int samples;
+    private boolean sampleGradient;
+    private boolean sampleSet;
+
+    /**
+     * Constructor for PMEAutotuner.
+     *
+     * @param candidates the candidate plans.
+     * @param evaluations the number of timed evaluations of each plan.
+     * @param wisdomFile the wisdom file, or null to skip the cache.
+     */
+    public PMEAutotuner(List<Plan> candidates, int evaluations, File wisdomFile) {
+        this.candidates = candidates;
+        this.evaluations = Math.max(1, evaluations);
+        this.wisdomFile = wisdomFile;
+        times = new long[candidates.size()];
+    }
+
+    /**
+     * Begin tuning for a system, unless the system is unchanged or its plan
+     * is found in the wisdom file.
+     *
+     * @param key the system key.
+     * @return the plan to apply, or null if the plan is unchanged.
+     */
+    public Plan start(String key) {
+        if (key.equals(this.key)) {
+            return null;
+        }
+        this.key = key;
+        Plan wisdom = Plan.parse(PMEWisdom.readWisdom(wisdomFile, key));
+        if (wisdom != null && candidates.contains(wisdom)) {
+            logger.info(format(" PME plan %s for %s from wisdom.", wisdom, key));
+            tuning = false;
+            plan = wisdom;
+            return plan;
+        }
+        tuning = true;
+        current = 0;
+        /**
+         * The first plan also runs untimed evaluations to warm up the JIT.
+         */
+        samples = -evaluations;
+        sampleSet = false;
+        for (int i = 0; i < times.length; i++) {
+            times[i] = Long.MAX_VALUE;
+        }
+        plan = candidates.get(0);
+        return plan;
+    }
+
+    /**
+     * Check if candidate plans are still being timed.
+     *
+     * @return true during tuning.
+     */
+    public boolean isTuning() {
+        return tuning;
+    }
+
+    /**
+     * The current plan.
+     *
+     * @return the current Plan.
+     */
+    public Plan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Record the time of an energy evaluation with the current plan. Only
+     * evaluations of the same kind (with or without the gradient) as the first
+     * one are compared.
+     *
+     * @param gradient true if the gradient was computed.
+     * @param time the evaluation time (nsec).
+     * @return the next plan to apply, or null if the plan is unchanged.
+     */
+    public Plan record(boolean gradient, long time) {
+        if (!tuning) {
+            return null;
+        }
+        if (!sampleSet) {
+            sampleGradient = gradient;
+            sampleSet = true;
+        } else if (gradient != sampleGradient) {
+            return null;
+        }
+        if (samples >= 0) {
+            times[current] = Math.min(times[current], time);
+        }
+        if (++samples < evaluations) {
+            return null;
+        }
+        samples = 0;
+        if (++current < candidates.size()) {
+            plan = candidates.get(current);
+            return plan;
+        }
+
+        /**
+         * Lock in the fastest plan.
+         */
+        int best = 0;
+        StringBuilder sb = new StringBuilder(format("\n PME Autotuning (%s)\n", key));
+        sb.append(" Plan           Time (sec)\n");
+        for (int i = 0; i < times.length; i++) {
+            sb.append(format(" %-12s %10.4f\n", candidates.get(i), times[i] * 1.0e-9));
+            if (times[i] < times[best]) {
+                best = i;
+            }
+        }
+        plan = candidates.get(best);
+        sb.append(format(" Selected:    %s", plan));
+        logger.info(sb.toString());
+        tuning = false;
+        PMEWisdom.writeWisdom(wisdomFile, key, plan.toString());
+        return plan;
+    }
+}
@@ -37,9 +37,16 @@
  */
 package ffx.potential.nonbonded;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -64,6 +71,11 @@ import ffx.potential.parameters.ForceField.ForceFieldString;
  * gold standard gradients are computed using: <ol> <li>An Ewald coefficient of
  * 0.42.</li> <li>A real space cutoff of 10.0 Angstroms.</li> <li>A grid spacing
  * of 0.5 Angstroms.</li> <li>A b-Spline order of 10.</li> </ol>
+ * <p>
+ * PMEWisdom also maintains a wisdom file of the fastest execution plans found
+ * by the {@link PMEAutotuner}, in the spirit of FFTW wisdom. Each plan is
+ * stored as a property keyed by the system size, space group, FFT grid and
+ * thread count.
  *
  * @author Michael J. Schnieders
  * @since 1.0
@@ -331,6 +343,69 @@ public class PMEWisdom {
         return bestTime;
     }
 
+    /**
+     * The default wisdom file ($HOME/.ffx/pme-wisdom.properties).
+     *
+     * @return the default wisdom file.
+     */
+    public static File defaultWisdomFile() {
+        return new File(System.getProperty("user.home") + File.separator
+                + ".ffx" + File.separator + "pme-wisdom.properties");
+    }
+
+    /**
+     * Look up a plan in a wisdom file.
+     *
+     * @param wisdomFile the wisdom file.
+     * @param key the plan key.
+     * @return the plan, or null if the file does not contain the key.
+     */
+    public static synchronized String readWisdom(File wisdomFile, String key) {
+        if (wisdomFile == null || !wisdomFile.canRead()) {
+            return null;
+        }
+        Properties wisdom = new Properties();
+        try (InputStream in = new FileInputStream(wisdomFile)) {
+            wisdom.load(in);
+        } catch (IOException e) {
+            logger.warning(String.format(" Could not read PME wisdom from %s: %s", wisdomFile, e));
+            return null;
+        }
+        return wisdom.getProperty(key);
+    }
+
+    /**
+     * Add a plan to a wisdom file, replacing any previous plan for the key.
+     *
+     * @param wisdomFile the wisdom file.
+     * @param key the plan key.
+     * @param plan the plan.
+     */
+    public static synchronized void writeWisdom(File wisdomFile, String key, String plan) {
+        if (wisdomFile == null) {
+            return;
+        }
+        Properties wisdom = new Properties();
+        if (wisdomFile.canRead()) {
+            try (InputStream in = new FileInputStream(wisdomFile)) {
+                wisdom.load(in);
+            } catch (IOException e) {
+                logger.warning(String.format(" Could not read PME wisdom from %s: %s", wisdomFile, e));
+            }
+        }
+        wisdom.setProperty(key, plan);
+        File parent = wisdomFile.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            logger.warning(String.format(" Could not create the PME wisdom directory %s", parent));
+            return;
+        }
+        try (OutputStream out = new FileOutputStream(wisdomFile)) {
+            wisdom.store(out, " Force Field X PME wisdom");
+        } catch (IOException e) {
+            logger.warning(String.format(" Could not write PME wisdom to %s: %s", wisdomFile, e));
+        }
+    }
+
     public void destroy() throws Exception {
         parallelTeam.shutdown();
     }
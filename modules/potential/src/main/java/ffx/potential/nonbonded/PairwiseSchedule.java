@@ -78,6 +78,26 @@ public class PairwiseSchedule extends IntegerSchedule {
         this.nAtoms = nAtoms;
     }
 
+    /**
+     * Returns a schedule that shares the ranges of this schedule, but tracks
+     * its own progress, so that the two can be used concurrently by different
+     * ParallelTeams.
+     *
+     * @return a new PairwiseSchedule backed by the same ranges.
+     */
+    public PairwiseSchedule share() {
+        return new PairwiseSchedule(nThreads, nAtoms, ranges);
+    }
+
+    /**
+     * Returns the number of threads this schedule has a range for.
+     *
+     * @return the number of threads.
+     */
+    public int getThreadCount() {
+        return nThreads;
+    }
+
     /**
      * {@inheritDoc}
      *
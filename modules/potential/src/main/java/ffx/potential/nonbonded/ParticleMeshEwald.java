@@ -44,7 +44,9 @@ import java.util.List;
 import java.util.logging.Logger;
 
 import ffx.crystal.Crystal;
+import ffx.potential.CoordinateStore;
 import ffx.potential.ForceFieldEnergy.Platform;
+import ffx.potential.GradientStore;
 import ffx.potential.bonded.Atom;
 import ffx.potential.bonded.Bond;
 import ffx.potential.bonded.LambdaInterface;
@@ -126,6 +128,10 @@ public abstract class ParticleMeshEwald implements LambdaInterface {
      * [nsymm][nAtoms][nAllNeighbors]
      */
     public int neighborLists[][][];
+    /**
+     * Compact neighbor lists, or null if the per-atom neighborLists are in use.
+     */
+    public CompactNeighborList compactNeighborLists;
 
     /**
      * Dimensions of [nsymm][nAtoms][10]
@@ -186,7 +192,10 @@ public abstract class ParticleMeshEwald implements LambdaInterface {
      */
     public enum SCFAlgorithm {
         // I actually don't know if OpenMM does SOR or CG, but they both just become "Mutual".
-        SOR(true, true), CG(true, true), EPT(false, true);
+        // CG_BLOCK and CG_TWO_LEVEL are CG with block-Jacobi and two-level (block-Jacobi plus coarse PME) preconditioners.
+        // TCG1 and TCG2 are non-iterative truncated conjugate gradient with one or two steps.
+        SOR(true, true), CG(true, true), CG_BLOCK(true, true), CG_TWO_LEVEL(true, true), EPT(false, true),
+        TCG1(true, false), TCG2(true, false);
 
         private final List<Platform> supportedPlatforms;
 
@@ -226,10 +235,33 @@ public abstract class ParticleMeshEwald implements LambdaInterface {
         public boolean isSupported(Platform platform) {
             return supportedPlatforms.contains(platform);
         }
+
+        /**
+         * Checks if this is a preconditioned conjugate gradient algorithm.
+         *
+         * @return true for CG, CG_BLOCK and CG_TWO_LEVEL.
+         */
+        public boolean isConjugateGradient() {
+            return this == CG || this == CG_BLOCK || this == CG_TWO_LEVEL;
+        }
+
+        /**
+         * Checks if this is a truncated conjugate gradient algorithm.
+         *
+         * @return true for TCG1 and TCG2.
+         */
+        public boolean isTruncated() {
+            return this == TCG1 || this == TCG2;
+        }
     }
 
+    /**
+     * Describes available induced dipole predictors. IEL propagates auxiliary
+     * induced dipoles with the inertial extended Lagrangian instead of
+     * converging an SCF at each step.
+     */
     public enum SCFPredictor {
-        NONE, LS, POLY, ASPC
+        NONE, LS, POLY, ASPC, IEL
     }
 
     public enum Mask {
@@ -250,6 +282,34 @@ public abstract class ParticleMeshEwald implements LambdaInterface {
 
     public abstract void setAtoms(Atom atoms[], int molecule[]);
 
+    /**
+     * Read coordinates from, and add the gradient to, the struct-of-arrays
+     * stores of the ForceFieldEnergy rather than through the Atom accessors.
+     * The stores must be indexed like the current atom array; they are
+     * dropped by setAtoms. By default the Atom accessors are used.
+     *
+     * @param coordinateStore The CoordinateStore, or null.
+     * @param gradientStore The GradientStore, or null.
+     */
+    public void setStores(CoordinateStore coordinateStore, GradientStore gradientStore) {
+    }
+
+    /**
+     * If true, the gradient is not added to the atoms during the energy
+     * method, so that the energy can be evaluated concurrently with other
+     * terms that accumulate gradient into the atoms. The gradient is then
+     * added by the addDeferredGradient method.
+     *
+     * @param deferGradient If true, defer the gradient reduction into the atoms.
+     */
+    public abstract void setDeferGradient(boolean deferGradient);
+
+    /**
+     * Add the gradient from the most recent energy evaluation to the atoms, if
+     * it was deferred.
+     */
+    public abstract void addDeferredGradient();
+
     public abstract void setFixedCharges(Atom atoms[]);
 
     public abstract double energy(boolean gradient, boolean print);
@@ -37,6 +37,8 @@
  */
 package ffx.potential.nonbonded;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -68,9 +70,12 @@ import edu.rit.util.Range;
 
 import ffx.crystal.Crystal;
 import ffx.crystal.SymOp;
+import ffx.numerics.EwaldTable;
 import ffx.numerics.MultipoleTensor;
 import ffx.numerics.VectorMath;
+import ffx.potential.CoordinateStore;
 import ffx.potential.ForceFieldEnergy.Platform;
+import ffx.potential.GradientStore;
 import ffx.potential.bonded.Angle;
 import ffx.potential.bonded.Atom;
 import ffx.potential.bonded.Atom.Resolution;
@@ -78,7 +83,9 @@ import ffx.potential.bonded.Bond;
 import ffx.potential.bonded.LambdaInterface;
 import ffx.potential.bonded.Torsion;
 import ffx.potential.extended.ExtendedVariable;
+import ffx.potential.nonbonded.PMEAutotuner.Plan;
 import ffx.potential.nonbonded.ReciprocalSpace.FFTMethod;
+import ffx.potential.nonbonded.ReciprocalSpace.GridMethod;
 import ffx.potential.parameters.AtomType;
 import ffx.potential.parameters.ForceField;
 import ffx.potential.parameters.ForceField.ForceFieldBoolean;
@@ -89,6 +96,7 @@ import ffx.potential.parameters.ForceField.ForceFieldType;
 import ffx.potential.parameters.MultipoleType;
 import ffx.potential.parameters.PolarizeType;
 import ffx.potential.utils.EnergyException;
+import ffx.utilities.MetricsRegistry;
 import static ffx.numerics.Erf.erfc;
 import static ffx.numerics.VectorMath.cross;
 import static ffx.numerics.VectorMath.diff;
@@ -250,7 +258,73 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
     private int[][] preconditionerCounts;
     private double preconditionerCutoff = 4.5;
     private double preconditionerEwald = 0.0;
+    /**
+     * Block-Jacobi preconditioner (CG_BLOCK and CG_TWO_LEVEL).
+     */
+    private final BlockPreconditioner blockPreconditioner;
+    /**
+     * The residual plus the field between blocks of the block preconditioned
+     * residual [3][nAtoms].
+     */
+    private double blockField[][];
+    private double blockFieldCR[][];
+    /**
+     * Coarse mesh for the long range correction of the two-level
+     * preconditioner (CG_TWO_LEVEL).
+     */
+    private final ReciprocalSpace coarseReciprocalSpace;
+    private double coarsePhi[][];
+    private double coarsePhiCR[][];
+    /**
+     * The fraction of the long range remainder added by the two-level
+     * preconditioner.
+     */
+    private double coarseWeight;
+    /**
+     * Time spent building and applying the preconditioner during the last
+     * SCF.
+     */
+    private long preconditionerTime;
+    /**
+     * The number of SCF iterations of the last energy evaluation.
+     */
+    private int scfIterations;
     private final int preconditionerListSize = 50;
+    /**
+     * Truncated conjugate gradient solver (TCG1 and TCG2).
+     */
+    private final TruncatedConjugateGradient tcgSolver;
+    private final TCGDipoleField tcgDipoleField;
+    private final TCGGradientRegion tcgGradientRegion;
+    /**
+     * The direct and chain rule fields [3][nAtoms], which are overwritten by
+     * each TCG field evaluation.
+     */
+    private double tcgField[][];
+    private double tcgFieldCR[][];
+    /**
+     * Inertial extended Lagrangian propagation of the induced dipoles (the
+     * IEL predictor), or null.
+     */
+    private final InertialExtendedLagrangian inertialExtendedLagrangian;
+    /**
+     * The iEL target dipoles [nAtoms][3], one Jacobi step from the current
+     * induced dipoles.
+     */
+    private double ielTarget[][];
+    private double ielTargetCR[][];
+    /**
+     * The forward and adjoint vector of each TCG gradient pair, expanded to
+     * symmetry mates [nPairs][nSymm][nAtoms][3].
+     */
+    private double tcgPairDipole[][][][];
+    private double tcgPairAdjoint[][][][];
+    /**
+     * The reciprocal space Cartesian potential Hessian of each TCG gradient
+     * pair vector [nPairs][nAtoms][6].
+     */
+    private double tcgPairHessian[][][];
+    private double tcgPairAdjointHessian[][][];
 
     /**
      * *************************************************************************
@@ -395,7 +469,7 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
     private boolean use[];
     private Crystal vaporCrystal;
     private int vaporLists[][][];
-    private IntegerSchedule vaporPermanentSchedule;
+    private PairwiseSchedule vaporPermanentSchedule;
     private IntegerSchedule vaporEwaldSchedule;
     private Range vacuumRanges[];
     /**
@@ -506,6 +580,39 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
     private double aewald3;
     private double off;
     private double off2;
+    /**
+     * Tabulated real space coefficients for the current Ewald parameters, or
+     * null when erfc and exp are evaluated directly.
+     */
+    private EwaldTable ewaldTable = null;
+    /**
+     * Use an EwaldTable for the real space coefficients (EWALD_TABLE keyword
+     * or the "ewald-table" property).
+     */
+    private final boolean useEwaldTable;
+
+    /**
+     * Induced dipole pair tensor cache (SCFCACHE keyword). The six unique
+     * components of the damped dipole-dipole tensor for each real space pair
+     * are stored by the first induced field evaluation of an SCF and reused
+     * by the rest. [nSymm][nAtoms][6 * nPairs]
+     */
+    private final boolean scfCache;
+    /**
+     * Memory ceiling for the pair tensor cache in bytes (SCF_CACHE_MEMORY
+     * keyword in MB).
+     */
+    private final long scfCacheMemory;
+    private double pairTensors[][][];
+    /**
+     * True if the pair tensors fit within the memory ceiling for the current
+     * SCF.
+     */
+    private boolean usePairTensors = false;
+    /**
+     * True once the pair tensors have been filled for the current SCF.
+     */
+    private boolean pairTensorsCached = false;
 
     /**
      * PCG Variables.
@@ -530,19 +637,19 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
     /**
      * Either 1 or 2; see description below.
      */
-    private final int sectionThreads;
+    private int sectionThreads;
     /**
      * If real and reciprocal space are done sequentially or OpenCL is used,
      * then realSpaceThreads == maxThreads. Otherwise the number of
      * realSpaceThreads is set to ffx.realSpaceThreads.
      */
-    private final int realSpaceThreads;
+    private int realSpaceThreads;
     /**
      * If real and reciprocal space are done sequentially then reciprocalThreads
      * == maxThreads If CUDA is used, reciprocalThreads == 1 Otherwise,
      * reciprocalThreads = maxThreads - realSpaceThreads
      */
-    private final int reciprocalThreads;
+    private int reciprocalThreads;
     /**
      * Gradient array for each thread. [threadID][X/Y/Z][atomID]
      */
@@ -591,7 +698,7 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
      * If it contains 2 threads, the real and reciprocal space calculations will
      * be done concurrently.
      */
-    private final ParallelTeam sectionTeam;
+    private ParallelTeam sectionTeam;
     /**
      * If the real and reciprocal space parts of PME are done sequentially, then
      * the realSpaceTeam is equal parallalTeam.
@@ -599,7 +706,7 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
      * If the real and reciprocal space parts of PME are done concurrently, then
      * the realSpaceTeam will have fewer threads than the default parallelTeam.
      */
-    private final ParallelTeam realSpaceTeam;
+    private ParallelTeam realSpaceTeam;
     /**
      * If the real and reciprocal space parts of PME are done sequentially, then
      * the reciprocalSpaceTeam is equal parallalTeam.
@@ -608,13 +715,54 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
      * the reciprocalSpaceTeam will have fewer threads than the default
      * parallelTeam.
      */
-    private final ParallelTeam fftTeam;
+    private ParallelTeam fftTeam;
     private final boolean gpuFFT;
-    private IntegerSchedule permanentSchedule;
+    /**
+     * Times the grid method and real/reciprocal space thread split over the
+     * first energy evaluations, or null.
+     */
+    private final PMEAutotuner pmeAutotuner;
+    /**
+     * Computes the interactions beyond the real space cutoff of an aperiodic
+     * system, or null.
+     */
+    private final MultipoleTreecode treecode;
+    /**
+     * Far-field potential of the permanent multipoles. [1][nAtoms][tensorCount]
+     */
+    private double treecodePermanentPhi[][][];
+    /**
+     * Far-field potential of the induced dipoles and chain rule induced
+     * dipoles. [2][nAtoms][tensorCount]
+     */
+    private double treecodeInducedPhi[][][];
+    /**
+     * The 1-2 through 1-5 partners and polarization group members of each
+     * atom. These pairs are masked, so they are left to the real space loops
+     * at any separation rather than to the treecode. [nAtoms][]
+     */
+    private int treecodeExclusions[][];
+    private PairwiseSchedule permanentSchedule;
     private NeighborList neighborList;
+    /**
+     * Symmetry mates shared with the VanDerWaals term through the
+     * NeighborList. The mates are the coordinates array of this class.
+     */
+    private final SymmetryMateCache symmetryMateCache;
+    /**
+     * Struct-of-arrays coordinates and gradient of the ForceFieldEnergy,
+     * indexed like the atom array, or null to use the Atom accessors.
+     */
+    private CoordinateStore coordinateStore = null;
+    private GradientStore gradientStore = null;
+    /**
+     * If true, the reduced gradient is not added to the atoms by the
+     * ReduceRegion; the addDeferredGradient method must be called.
+     */
+    private boolean deferGradient = false;
     private final InitializationRegion initializationRegion;
-    private final PermanentFieldRegion permanentFieldRegion;
-    private final InducedDipoleFieldRegion inducedDipoleFieldRegion;
+    private PermanentFieldRegion permanentFieldRegion;
+    private InducedDipoleFieldRegion inducedDipoleFieldRegion;
     private final ExpandInducedDipolesRegion expandInducedDipolesRegion;
     private final DirectRegion directRegion;
     private final SORRegion sorRegion;
@@ -667,8 +815,14 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
         this.parallelTeam = parallelTeam;
         this.neighborList = neighborList;
         this.elecForm = elecForm;
+        symmetryMateCache = neighborList.getSymmetryMateCache();
         neighborLists = neighborList.getNeighborList();
-        permanentSchedule = neighborList.getPairwiseSchedule();
+        compactNeighborLists = neighborList.getCompactNeighborList();
+        /**
+         * The Van der Waals term may run concurrently with particle mesh Ewald,
+         * so the neighbor list schedule is shared rather than reused.
+         */
+        permanentSchedule = neighborList.getPairwiseSchedule().share();
         nAtoms = atoms.length;
         nSymm = crystal.spaceGroup.getNumberOfSymOps();
         maxThreads = parallelTeam.getThreadCount();
@@ -713,7 +867,11 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
 
         double ewaldPrecision = forceField.getDouble(ForceFieldDouble.EWALD_PRECISION, 1.0e-8);
         aewald = forceField.getDouble(ForceFieldDouble.EWALD_ALPHA, ewaldCoefficient(off, ewaldPrecision));
+        useEwaldTable = forceField.getBoolean(ForceFieldBoolean.EWALD_TABLE, EwaldTable.isEnabled());
         setEwaldParameters(off, aewald);
+        if (ewaldTable != null) {
+            logger.info(ewaldTable.toString());
+        }
 
         reciprocalSpaceTerm = forceField.getBoolean(ForceFieldBoolean.RECIPTERM, true);
 
@@ -724,8 +882,12 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
         } catch (Exception e) {
             scfPredictor = SCFPredictor.NONE;
         }
+        if (scfPredictor == SCFPredictor.IEL && lambdaTerm) {
+            logger.warning(" SCF predictor IEL does not support lambda; using NONE.");
+            scfPredictor = SCFPredictor.NONE;
+        }
 
-        if (scfPredictor != SCFPredictor.NONE) {
+        if (scfPredictor != SCFPredictor.NONE && scfPredictor != SCFPredictor.IEL) {
             predictorCount = 0;
             int defaultOrder = 6;
             predictorOrder = forceField.getInteger(ForceFieldInteger.SCF_PREDICTOR_ORDER, defaultOrder);
@@ -739,6 +901,9 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             predictorStartIndex = 0;
         }
 
+        scfCache = forceField.getBoolean(ForceFieldBoolean.SCFCACHE, false);
+        scfCacheMemory = forceField.getInteger(ForceFieldInteger.SCF_CACHE_MEMORY, 512) * 1024L * 1024L;
+
         String algorithm = forceField.getString(ForceFieldString.SCF_ALGORITHM, "CG");
         try {
             algorithm = algorithm.replaceAll("-", "_").toUpperCase();
@@ -753,11 +918,30 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             scfAlgorithm = SCFAlgorithm.CG;
         }
 
+        if (scfAlgorithm.isTruncated()) {
+            if (lambdaTerm || forceField.getBoolean(ForceFieldBoolean.GKTERM, false)) {
+                logger.warning(format(" SCF algorithm %s does not support lambda or GK; using CG.", scfAlgorithm));
+                scfAlgorithm = SCFAlgorithm.CG;
+            } else if (scfPredictor != SCFPredictor.NONE) {
+                logger.info(format(" SCF predictor %s is not used by SCF algorithm %s.", scfPredictor, scfAlgorithm));
+                scfPredictor = SCFPredictor.NONE;
+            }
+        }
+
+        if (scfPredictor == SCFPredictor.IEL) {
+            double kappa = forceField.getDouble(ForceFieldDouble.IEL_KAPPA, 1.0);
+            double tau = forceField.getDouble(ForceFieldDouble.IEL_TAU, 0.1);
+            int cycles = forceField.getInteger(ForceFieldInteger.IEL_SCF_CYCLES, 0);
+            inertialExtendedLagrangian = new InertialExtendedLagrangian(kappa, tau, cycles);
+        } else {
+            inertialExtendedLagrangian = null;
+        }
+
         /**
          * The size of the preconditioner neighbor list depends on the size of
          * the preconditioner cutoff.
          */
-        if (scfAlgorithm == SCFAlgorithm.CG) {
+        if (scfAlgorithm.isConjugateGradient()) {
             inducedDipolePreconditionerRegion = new InducedDipolePreconditionerRegion(maxThreads);
             pcgRegion = new PCGRegion(maxThreads);
             pcgInitRegion1 = new PCGInitRegion1(maxThreads);
@@ -776,12 +960,30 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
         } else {
             preconditionerCutoff = 0.0;
             inducedDipolePreconditionerRegion = null;
-            pcgRegion = null;
+            pcgRegion = (scfAlgorithm.isTruncated() || inertialExtendedLagrangian != null)
+                    ? new PCGRegion(maxThreads) : null;
             pcgInitRegion1 = null;
             pcgInitRegion2 = null;
             pcgIterRegion1 = null;
             pcgIterRegion2 = null;
         }
+        if (scfAlgorithm == SCFAlgorithm.CG_BLOCK || scfAlgorithm == SCFAlgorithm.CG_TWO_LEVEL) {
+            int blockSize = forceField.getInteger(ForceFieldInteger.SCF_BLOCK_SIZE, 24);
+            blockPreconditioner = new BlockPreconditioner(maxThreads, blockSize);
+        } else {
+            blockPreconditioner = null;
+        }
+        if (scfAlgorithm.isTruncated()) {
+            int order = (scfAlgorithm == SCFAlgorithm.TCG1) ? 1 : 2;
+            boolean peek = forceField.getBoolean(ForceFieldBoolean.TCG_PEEK, true);
+            tcgSolver = new TruncatedConjugateGradient(order, peek);
+            tcgDipoleField = new TCGDipoleField();
+            tcgGradientRegion = new TCGGradientRegion(maxThreads);
+        } else {
+            tcgSolver = null;
+            tcgDipoleField = null;
+            tcgGradientRegion = null;
+        }
 
         if (lambdaTerm) {
             /**
@@ -915,11 +1117,11 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
         String temp = forceField.getString(ForceField.ForceFieldString.FFT_METHOD, "PJ");
         FFTMethod method;
         try {
-            method = ReciprocalSpace.FFTMethod.valueOf(temp.toUpperCase().trim());
+            method = ReciprocalSpace.FFTMethod.valueOf(temp.toUpperCase().trim().replace('-', '_'));
         } catch (Exception e) {
             method = ReciprocalSpace.FFTMethod.PJ;
         }
-        gpuFFT = method != FFTMethod.PJ;
+        gpuFFT = method == FFTMethod.CUDA || method == FFTMethod.OPENCL;
 
         if (lambdaTerm) {
             shareddEdLambda = new SharedDouble();
@@ -936,6 +1138,27 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             vacuumRanges = null;
         }
 
+        /**
+         * The treecode adds the interactions beyond the cutoff of an aperiodic
+         * system, which are neither masked nor damped.
+         */
+        if (forceField.getBoolean(ForceFieldBoolean.TREECODE, false)) {
+            if (!crystal.aperiodic() || aewald > 0.0) {
+                logger.warning(" The multipole treecode requires aperiodic electrostatics; it will not be used.");
+                treecode = null;
+            } else if (lambdaTerm || tcgSolver != null) {
+                logger.warning(" The multipole treecode does not support lambda or TCG; it will not be used.");
+                treecode = null;
+            } else {
+                double theta = forceField.getDouble(ForceFieldDouble.TREECODE_THETA, 0.5);
+                int order = forceField.getInteger(ForceFieldInteger.TREECODE_ORDER, 4);
+                int leafSize = forceField.getInteger(ForceFieldInteger.TREECODE_LEAF_SIZE, 16);
+                treecode = new MultipoleTreecode(theta, order, leafSize, parallelTeam);
+            }
+        } else {
+            treecode = null;
+        }
+
         if (logger.isLoggable(Level.INFO)) {
             StringBuilder sb = new StringBuilder();
             sb.append(format("\n Electrostatics       %25s\n", getClass().getSimpleName()));
@@ -943,9 +1166,18 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             if (polarization == Polarization.MUTUAL) {
                 sb.append(format("    SCF Convergence Criteria:         %8.3e\n", poleps));
                 sb.append(format("    SCF Predictor:                     %8s\n", scfPredictor));
+                if (inertialExtendedLagrangian != null) {
+                    sb.append(format("    iEL SCF Cycles:                    %8d\n",
+                            inertialExtendedLagrangian.getScfCycles()));
+                }
                 sb.append(format("    SCF Algorithm:                     %8s\n", scfAlgorithm));
                 if (scfAlgorithm == SCFAlgorithm.SOR) {
                     sb.append(format("    SOR Parameter:                     %8.3f\n", polsor));
+                } else if (tcgSolver != null) {
+                    sb.append(format("    TCG Peek Step:                     %8B\n", tcgSolver.getPeek()));
+                } else if (blockPreconditioner != null) {
+                    sb.append(format("    CG Preconditioner Block Size:      %8d\n",
+                            forceField.getInteger(ForceFieldInteger.SCF_BLOCK_SIZE, 24)));
                 } else {
                     sb.append(format("    CG Preconditioner Cut-Off:         %8.3f\n", preconditionerCutoff));
                     sb.append(format("    CG Preconditioner Ewald Coeff.:    %8.3f\n", preconditionerEwald));
@@ -957,6 +1189,11 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                 sb.append(format("    Particle Cut-Off:                  %8.3f (A)", off));
             } else {
                 sb.append(format("    Electrostatics Cut-Off:            %8.3f (A)\n", off));
+                if (treecode != null) {
+                    sb.append(format("    Treecode Acceptance Theta:         %8.3f\n", treecode.getTheta()));
+                    sb.append(format("    Treecode Expansion Order:          %8d\n", treecode.getOrder()));
+                    sb.append(format("    Treecode Leaf Size:                %8d\n", treecode.getLeafSize()));
+                }
             }
             logger.info(sb.toString());
         }
@@ -1019,8 +1256,40 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             reciprocalSpace = null;
             reciprocalEnergyRegion = null;
         }
+        if (reciprocalSpace != null && scfAlgorithm == SCFAlgorithm.CG_TWO_LEVEL) {
+            double density = forceField.getDouble(ForceFieldDouble.PME_MESH_DENSITY, 1.2);
+            density = forceField.getDouble(ForceFieldDouble.SCF_COARSE_MESH_DENSITY, 0.5 * density);
+            coarseWeight = forceField.getDouble(ForceFieldDouble.SCF_COARSE_WEIGHT, 0.5);
+            logger.info(format("   Two-Level SCF Preconditioner Coarse Mesh (density %5.3f, weight %5.3f)",
+                    density, coarseWeight));
+            coarseReciprocalSpace = new ReciprocalSpace(this, crystal.getUnitCell(), forceField,
+                    atoms, aewald, fftTeam, parallelTeam, density, false);
+        } else {
+            coarseReciprocalSpace = null;
+        }
         permanentFieldRegion = new PermanentFieldRegion(realSpaceTeam);
         inducedDipoleFieldRegion = new InducedDipoleFieldRegion(realSpaceTeam);
+        if (reciprocalSpace != null && !gpuFFT
+                && forceField.getBoolean(ForceFieldBoolean.PME_AUTOTUNE, false)) {
+            List<Plan> candidates = new ArrayList<>();
+            GridMethod gridMethods[] = reciprocalSpace.supportsGridMethods()
+                    ? GridMethod.values() : new GridMethod[]{GridMethod.SPATIAL};
+            int splits[] = {0, realSpaceThreads, maxThreads / 4, maxThreads / 2, (3 * maxThreads) / 4};
+            for (GridMethod gridMethod : gridMethods) {
+                for (int split : splits) {
+                    Plan plan = new Plan(gridMethod, (split < maxThreads) ? split : 0);
+                    if (!candidates.contains(plan)) {
+                        candidates.add(plan);
+                    }
+                }
+            }
+            int evaluations = forceField.getInteger(ForceFieldInteger.PME_AUTOTUNE_EVALUATIONS, 3);
+            String wisdom = forceField.getString(ForceFieldString.PME_WISDOM_FILE, null);
+            File wisdomFile = (wisdom != null) ? new File(wisdom) : PMEWisdom.defaultWisdomFile();
+            pmeAutotuner = new PMEAutotuner(candidates, evaluations, wisdomFile);
+        } else {
+            pmeAutotuner = null;
+        }
         directRegion = new DirectRegion(maxThreads);
         sorRegion = new SORRegion(maxThreads);
         realSpaceEnergyRegion = new RealSpaceEnergyRegion(maxThreads);
@@ -1073,6 +1342,10 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             directDipoleCR = new double[nAtoms][3];
             cartesianDipolePhi = new double[nAtoms][tensorCount];
             cartesianDipolePhiCR = new double[nAtoms][tensorCount];
+            if (treecode != null) {
+                treecodePermanentPhi = new double[1][nAtoms][tensorCount];
+                treecodeInducedPhi = new double[2][nAtoms][tensorCount];
+            }
             ip11 = new int[nAtoms][];
             ip12 = new int[nAtoms][];
             ip13 = new int[nAtoms][];
@@ -1080,7 +1353,7 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             ipdamp = new double[nAtoms];
             polarizability = new double[nAtoms];
             realSpaceSchedule = new PairwiseSchedule(maxThreads, nAtoms, realSpaceRanges);
-            if (scfAlgorithm == SCFAlgorithm.CG) {
+            if (scfAlgorithm.isConjugateGradient()) {
                 rsd = new double[3][nAtoms];
                 rsdCR = new double[3][nAtoms];
                 rsdPre = new double[3][nAtoms];
@@ -1090,7 +1363,15 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                 vec = new double[3][nAtoms];
                 vecCR = new double[3][nAtoms];
             }
-            if (scfPredictor != SCFPredictor.NONE) {
+            if (tcgSolver != null) {
+                tcgField = new double[3][nAtoms];
+                tcgFieldCR = new double[3][nAtoms];
+            }
+            if (inertialExtendedLagrangian != null) {
+                ielTarget = new double[nAtoms][3];
+                ielTargetCR = new double[nAtoms][3];
+            }
+            if (scfPredictor != SCFPredictor.NONE && scfPredictor != SCFPredictor.IEL) {
                 if (lambdaTerm) {
                     predictorInducedDipole = new double[3][predictorOrder][nAtoms][3];
                     predictorInducedDipoleCR = new double[3][predictorOrder][nAtoms][3];
@@ -1114,7 +1395,6 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             isSoft = new boolean[nAtoms];
             use = new boolean[nAtoms];
 
-            coordinates = new double[nSymm][3][nAtoms];
             globalMultipole = new double[nSymm][nAtoms][10];
             inducedDipole = new double[nSymm][nAtoms][3];
             inducedDipoleCR = new double[nSymm][nAtoms][3];
@@ -1127,6 +1407,8 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             preconditionerLists = new int[nSymm][nAtoms][preconditionerListSize];
             preconditionerCounts = new int[nSymm][nAtoms];
         }
+        symmetryMateCache.setAtoms(atoms);
+        coordinates = symmetryMateCache.getMates();
 
         /**
          * Initialize the soft core lambda mask to false for all atoms.
@@ -1144,6 +1426,9 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
          * Assign polarization groups.
          */
         assignPolarizationGroups();
+        if (treecode != null) {
+            assignTreecodeExclusions();
+        }
         /**
          * Fill the thole, inverse polarization damping and polarizability
          * arrays.
@@ -1162,6 +1447,59 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
         }
     }
 
+    /**
+     * Collect the masked partners of each atom for the treecode. Polarization
+     * groups can span more than a short cutoff, so their members (and the
+     * topological partners) must not be added back to the far-field potential
+     * without their mask.
+     */
+    private void assignTreecodeExclusions() {
+        treecodeExclusions = new int[nAtoms][];
+        int mask[] = new int[nAtoms];
+        fill(mask, -1);
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < nAtoms; i++) {
+            list.clear();
+            mask[i] = i;
+            Atom ai = atoms[i];
+            List<Atom> partners = new ArrayList<>(ai.get1_5s());
+            for (Torsion torsion : ai.getTorsions()) {
+                Atom ak = torsion.get1_4(ai);
+                if (ak != null) {
+                    partners.add(ak);
+                }
+            }
+            for (Angle angle : ai.getAngles()) {
+                Atom ak = angle.get1_3(ai);
+                if (ak != null) {
+                    partners.add(ak);
+                }
+            }
+            for (Bond bond : ai.getBonds()) {
+                partners.add(bond.get1_2(ai));
+            }
+            for (Atom ak : partners) {
+                int k = ak.getIndex() - 1;
+                if (mask[k] != i) {
+                    mask[k] = i;
+                    list.add(k);
+                }
+            }
+            for (int k : ip11[i]) {
+                if (mask[k] != i) {
+                    mask[k] = i;
+                    list.add(k);
+                }
+            }
+            treecodeExclusions[i] = new int[list.size()];
+            int j = 0;
+            for (int k : list) {
+                treecodeExclusions[i][j++] = k;
+            }
+        }
+        treecode.setExclusions(treecodeExclusions);
+    }
+
     /**
      * Pass in atoms that have been assigned electrostatics from a fixed charge
      * force field.
@@ -1281,17 +1619,89 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
         this.atoms = atoms;
         this.molecule = molecule;
         nAtoms = atoms.length;
+        // The stores are indexed like the previous atom array.
+        coordinateStore = null;
+        gradientStore = null;
         initAtomArrays();
 
         if (reciprocalSpace != null) {
             reciprocalSpace.setAtoms(atoms);
         }
+        if (coarseReciprocalSpace != null) {
+            coarseReciprocalSpace.setAtoms(atoms);
+        }
 
         if (generalizedKirkwood != null) {
             generalizedKirkwood.setAtoms(atoms);
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * The symmetry mates, which are the coordinates of both the real space
+     * and reciprocal space calculations, are read from the CoordinateStore.
+     */
+    @Override
+    public void setStores(CoordinateStore coordinateStore, GradientStore gradientStore) {
+        if (coordinateStore == null || gradientStore == null
+                || coordinateStore.size() != nAtoms || gradientStore.size() != nAtoms) {
+            coordinateStore = null;
+            gradientStore = null;
+        }
+        this.coordinateStore = coordinateStore;
+        this.gradientStore = gradientStore;
+        symmetryMateCache.setCoordinateStore(coordinateStore);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDeferGradient(boolean deferGradient) {
+        this.deferGradient = deferGradient;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addDeferredGradient() {
+        if (!deferGradient || !gradient) {
+            return;
+        }
+        addGradient(0, nAtoms - 1);
+    }
+
+    /**
+     * Add the reduced gradient of atoms lb through ub to the active atoms.
+     *
+     * @param lb The first atom.
+     * @param ub The last atom.
+     */
+    private void addGradient(int lb, int ub) {
+        final double gx[] = grad[0][0];
+        final double gy[] = grad[0][1];
+        final double gz[] = grad[0][2];
+        if (gradientStore != null && !coordinateStore.isReleased()) {
+            final double sx[] = gradientStore.getGradX();
+            final double sy[] = gradientStore.getGradY();
+            final double sz[] = gradientStore.getGradZ();
+            for (int i = lb; i <= ub; i++) {
+                if (atoms[i].isActive()) {
+                    sx[i] += gx[i];
+                    sy[i] += gy[i];
+                    sz[i] += gz[i];
+                }
+            }
+        } else {
+            for (int i = lb; i <= ub; i++) {
+                Atom ai = atoms[i];
+                ai.addToXYZGradient(gx[i], gy[i], gz[i]);
+            }
+        }
+    }
+
     @Override
     public void setCrystal(Crystal crystal) {
         /**
@@ -1299,7 +1709,6 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
          */
         int nSymmNew = crystal.spaceGroup.getNumberOfSymOps();
         if (nSymm < nSymmNew) {
-            coordinates = new double[nSymmNew][3][nAtoms];
             realSpaceLists = new int[nSymmNew][nAtoms][];
             realSpaceCounts = new int[nSymmNew][nAtoms];
             preconditionerLists = new int[nSymmNew][nAtoms][preconditionerListSize];
@@ -1312,7 +1721,10 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             }
         }
         nSymm = nSymmNew;
+        symmetryMateCache.setCrystal(crystal);
+        setMates(symmetryMateCache.getMates());
         neighborLists = neighborList.getNeighborList();
+        compactNeighborLists = neighborList.getCompactNeighborList();
         this.crystal = crystal;
         /**
          * Production NPT simulations will include reciprocal space
@@ -1321,6 +1733,32 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
         if (reciprocalSpace != null) {
             reciprocalSpace.setCrystal(crystal.getUnitCell());
         }
+        if (coarseReciprocalSpace != null) {
+            coarseReciprocalSpace.setCrystal(crystal.getUnitCell());
+        }
+    }
+
+    /**
+     * Point the coordinates array, and the terms that alias it, at the
+     * symmetry mates. The cache reallocates the mates when the number of atoms
+     * or symmetry operators changes.
+     *
+     * @param mates the symmetry mates [nSymm][3][nAtoms].
+     */
+    private void setMates(double mates[][][]) {
+        if (mates == coordinates) {
+            return;
+        }
+        coordinates = mates;
+        if (reciprocalSpace != null) {
+            reciprocalSpace.setCoordinates(mates);
+        }
+        if (coarseReciprocalSpace != null) {
+            coarseReciprocalSpace.setCoordinates(mates);
+        }
+        if (generalizedKirkwood != null) {
+            generalizedKirkwood.updateCoordinates();
+        }
     }
 
     /**
@@ -1335,6 +1773,14 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
 
         this.gradient = gradient;
 
+        /**
+         * Find the execution plan for a new system.
+         */
+        long startTime = System.nanoTime();
+        if (pmeAutotuner != null) {
+            applyPlan(pmeAutotuner.start(autotuneKey()));
+        }
+
         /**
          * for (int i=0; i<nAtoms; i++) { StringBuffer sb = new
          * StringBuffer(format(" ip11 %6d", i)); for (int j=0; j<ip11[i].length;
@@ -1394,8 +1840,10 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
         double energy;
 
         /**
-         * Expand the coordinates and rotate multipoles into the global frame.
+         * Update the symmetry mates of atoms that have moved, then rotate
+         * multipoles into the global frame.
          */
+        setMates(symmetryMateCache.update(atoms, parallelTeam));
         try {
             parallelTeam.execute(initializationRegion);
         } catch (RuntimeException e) {
@@ -1465,6 +1913,10 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             }
         }
 
+        if (pmeAutotuner != null && pmeAutotuner.isTuning()) {
+            applyPlan(pmeAutotuner.record(gradient, System.nanoTime() - startTime));
+        }
+
         return permanentMultipoleEnergy + polarizationEnergy;
     }
 
@@ -1661,7 +2113,7 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
         /**
          * Save the current parallelization schedule.
          */
-        IntegerSchedule permanentScheduleBack = permanentSchedule;
+        PairwiseSchedule permanentScheduleBack = permanentSchedule;
         IntegerSchedule ewaldScheduleBack = realSpaceSchedule;
         Range rangesBack[] = realSpaceRanges;
         permanentSchedule = vaporPermanentSchedule;
@@ -1674,7 +2126,9 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
         Crystal crystalBack = crystal;
         int nSymmBack = nSymm;
         int listsBack[][][] = neighborLists;
+        CompactNeighborList compactBack = compactNeighborLists;
         neighborLists = vaporLists;
+        compactNeighborLists = null;
         crystal = vaporCrystal;
         nSymm = 1;
 
@@ -1709,6 +2163,7 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
         aewald = aewaldBack;
         setEwaldParameters(off, aewald);
         neighborLists = listsBack;
+        compactNeighborLists = compactBack;
         crystal = crystalBack;
         nSymm = nSymmBack;
         permanentSchedule = permanentScheduleBack;
@@ -1766,6 +2221,16 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             if (reciprocalSpaceTerm && aewald > 0.0) {
                 reciprocalSpace.computePermanentPhi(cartMultipolePhi);
             }
+
+            /**
+             * Collect the far-field potential beyond the cutoff.
+             */
+            if (treecode != null) {
+                treecode.setCutoff(off);
+                treecode.build(atoms, coordinates[0][0], coordinates[0][1], coordinates[0][2], use);
+                treecode.computePotential(new double[][][]{globalMultipole[0]}, new int[]{2},
+                        gradient ? 3 : 2, treecodePermanentPhi);
+            }
         } catch (RuntimeException e) {
             String message = "Fatal exception computing the permanent multipole field..\n";
             logger.log(Level.WARNING, message, e);
@@ -1789,9 +2254,9 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
          * Do the self-consistent field calculation.
          */
         if (polarization != Polarization.NONE && doPolarization) {
-            selfConsistentField(logger.isLoggable(Level.FINE));
+            scfIterations = selfConsistentField(logger.isLoggable(Level.FINE));
             if (reciprocalSpaceTerm && aewald > 0.0) {
-                if (gradient && polarization == Polarization.DIRECT) {
+                if (gradient && (polarization == Polarization.DIRECT || tcgSolver != null)) {
                     try {
                         reciprocalSpace.splineInducedDipoles(inducedDipole, inducedDipoleCR, use);
                         sectionTeam.execute(inducedDipoleFieldRegion);
@@ -1808,7 +2273,7 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                     reciprocalSpace.cartToFracInducedDipoles(inducedDipole, inducedDipoleCR);
                 }
             }
-            if (scfPredictor != SCFPredictor.NONE) {
+            if (scfPredictor != SCFPredictor.NONE && scfPredictor != SCFPredictor.IEL) {
                 saveMutualInducedDipoles();
             }
         }
@@ -1835,6 +2300,15 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             ereal = realSpaceEnergyRegion.getPermanentEnergy();
             ereali = realSpaceEnergyRegion.getPolarizationEnergy();
             interactions += realSpaceEnergyRegion.getInteractions();
+            if (treecode != null) {
+                ereal += treecodePermanentEnergy();
+                if (polarization != Polarization.NONE && doPolarization) {
+                    ereali += treecodePolarizationEnergy();
+                }
+            }
+            if (gradient && tcgSolver != null && polarization == Polarization.MUTUAL && doPolarization) {
+                parallelTeam.execute(tcgGradientRegion);
+            }
         } catch (Exception e) {
             String message = "Exception computing the electrostatic energy.\n";
             logger.log(Level.SEVERE, message, e);
@@ -1884,6 +2358,149 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
         return permanentMultipoleEnergy + polarizationEnergy + generalizedKirkwoodEnergy;
     }
 
+    /**
+     * Permanent multipole energy of all pairs beyond the cutoff, and its
+     * gradient and torque if required.
+     *
+     * @return the far-field permanent multipole energy.
+     */
+    private double treecodePermanentEnergy() {
+        final double g[] = new double[3];
+        final double tq[] = new double[3];
+        final double multipole[][] = globalMultipole[0];
+        final double phi[][] = treecodePermanentPhi[0];
+        double e = 0.0;
+        for (int i = 0; i < nAtoms; i++) {
+            if (!use[i]) {
+                continue;
+            }
+            final double mpole[] = multipole[i];
+            final double p[] = phi[i];
+            e += mpole[t000] * p[t000] + mpole[t100] * p[t100] + mpole[t010] * p[t010] + mpole[t001] * p[t001]
+                    + oneThird * (mpole[t200] * p[t200] + mpole[t020] * p[t020] + mpole[t002] * p[t002]
+                    + 2.0 * (mpole[t110] * p[t110] + mpole[t101] * p[t101] + mpole[t011] * p[t011]));
+            if (gradient) {
+                multipoleGradient(mpole, p, g);
+                multipoleTorque(mpole, p, tq);
+                final double prefactor = permanentScale * ELECTRIC;
+                grad[0][0][i] += prefactor * g[0];
+                grad[0][1][i] += prefactor * g[1];
+                grad[0][2][i] += prefactor * g[2];
+                torque[0][0][i] += prefactor * tq[0];
+                torque[0][1][i] += prefactor * tq[1];
+                torque[0][2][i] += prefactor * tq[2];
+            }
+        }
+        return permanentScale * 0.5 * ELECTRIC * e;
+    }
+
+    /**
+     * Polarization energy due to all pairs beyond the cutoff, and its gradient
+     * and torque if required.
+     *
+     * @return the far-field polarization energy.
+     */
+    private double treecodePolarizationEnergy() {
+        final double ind[][] = inducedDipole[0];
+        final double indCR[][] = inducedDipoleCR[0];
+        if (gradient) {
+            treecode.computePotential(new double[][][]{ind, indCR}, new int[]{1, 1}, 3, treecodeInducedPhi);
+        }
+        final boolean mutual = (polarization == Polarization.MUTUAL);
+        final double g[] = new double[3];
+        final double tq[] = new double[3];
+        final double sPhi[] = new double[tensorCount];
+        final double multipole[][] = globalMultipole[0];
+        final double phi[][] = treecodePermanentPhi[0];
+        double e = 0.0;
+        for (int i = 0; i < nAtoms; i++) {
+            if (!use[i]) {
+                continue;
+            }
+            final double p[] = phi[i];
+            final double u[] = ind[i];
+            e += u[0] * p[t100] + u[1] * p[t010] + u[2] * p[t001];
+            if (gradient) {
+                final double uCR[] = indCR[i];
+                final double iPhi[] = treecodeInducedPhi[0][i];
+                final double iCRPhi[] = treecodeInducedPhi[1][i];
+                final double sx = u[0] + uCR[0];
+                final double sy = u[1] + uCR[1];
+                final double sz = u[2] + uCR[2];
+                double gx = sx * p[t200] + sy * p[t110] + sz * p[t101];
+                double gy = sx * p[t110] + sy * p[t020] + sz * p[t011];
+                double gz = sx * p[t101] + sy * p[t011] + sz * p[t002];
+                if (mutual) {
+                    gx += u[0] * iCRPhi[t200] + u[1] * iCRPhi[t110] + u[2] * iCRPhi[t101]
+                            + uCR[0] * iPhi[t200] + uCR[1] * iPhi[t110] + uCR[2] * iPhi[t101];
+                    gy += u[0] * iCRPhi[t110] + u[1] * iCRPhi[t020] + u[2] * iCRPhi[t011]
+                            + uCR[0] * iPhi[t110] + uCR[1] * iPhi[t020] + uCR[2] * iPhi[t011];
+                    gz += u[0] * iCRPhi[t101] + u[1] * iCRPhi[t011] + u[2] * iCRPhi[t002]
+                            + uCR[0] * iPhi[t101] + uCR[1] * iPhi[t011] + uCR[2] * iPhi[t002];
+                }
+                for (int t = 0; t < tensorCount; t++) {
+                    sPhi[t] = iPhi[t] + iCRPhi[t];
+                }
+                multipoleGradient(multipole[i], sPhi, g);
+                gx += g[0];
+                gy += g[1];
+                gz += g[2];
+                for (int t = 0; t < tensorCount; t++) {
+                    sPhi[t] *= 0.5;
+                }
+                multipoleTorque(multipole[i], sPhi, tq);
+                final double prefactor = polarizationScale * ELECTRIC;
+                grad[0][0][i] += 0.5 * prefactor * gx;
+                grad[0][1][i] += 0.5 * prefactor * gy;
+                grad[0][2][i] += 0.5 * prefactor * gz;
+                torque[0][0][i] += prefactor * tq[0];
+                torque[0][1][i] += prefactor * tq[1];
+                torque[0][2][i] += prefactor * tq[2];
+            }
+        }
+        return polarizationScale * 0.5 * ELECTRIC * e;
+    }
+
+    /**
+     * The gradient of the energy of a multipole in a potential with respect to
+     * the position of the multipole.
+     *
+     * @param mpole The multipole in the global frame.
+     * @param phi The potential and its derivatives through 3rd order.
+     * @param g The gradient.
+     */
+    private static void multipoleGradient(double mpole[], double phi[], double g[]) {
+        g[0] = mpole[t000] * phi[t100] + mpole[t100] * phi[t200] + mpole[t010] * phi[t110] + mpole[t001] * phi[t101]
+                + oneThird * (mpole[t200] * phi[t300] + mpole[t020] * phi[t120] + mpole[t002] * phi[t102]
+                + 2.0 * (mpole[t110] * phi[t210] + mpole[t101] * phi[t201] + mpole[t011] * phi[t111]));
+        g[1] = mpole[t000] * phi[t010] + mpole[t100] * phi[t110] + mpole[t010] * phi[t020] + mpole[t001] * phi[t011]
+                + oneThird * (mpole[t200] * phi[t210] + mpole[t020] * phi[t030] + mpole[t002] * phi[t012]
+                + 2.0 * (mpole[t110] * phi[t120] + mpole[t101] * phi[t111] + mpole[t011] * phi[t021]));
+        g[2] = mpole[t000] * phi[t001] + mpole[t100] * phi[t101] + mpole[t010] * phi[t011] + mpole[t001] * phi[t002]
+                + oneThird * (mpole[t200] * phi[t201] + mpole[t020] * phi[t021] + mpole[t002] * phi[t003]
+                + 2.0 * (mpole[t110] * phi[t111] + mpole[t101] * phi[t102] + mpole[t011] * phi[t012]));
+    }
+
+    /**
+     * The torque on a multipole in a potential.
+     *
+     * @param mpole The multipole in the global frame.
+     * @param phi The potential and its derivatives through 2nd order.
+     * @param tq The torque.
+     */
+    private static void multipoleTorque(double mpole[], double phi[], double tq[]) {
+        final double twoThirds = 2.0 / 3.0;
+        tq[0] = -mpole[t010] * phi[t001] + mpole[t001] * phi[t010]
+                - twoThirds * (mpole[t110] * phi[t101] + mpole[t020] * phi[t011] + mpole[t011] * phi[t002]
+                - mpole[t101] * phi[t110] - mpole[t011] * phi[t020] - mpole[t002] * phi[t011]);
+        tq[1] = -mpole[t001] * phi[t100] + mpole[t100] * phi[t001]
+                - twoThirds * (mpole[t101] * phi[t200] + mpole[t011] * phi[t110] + mpole[t002] * phi[t101]
+                - mpole[t200] * phi[t101] - mpole[t110] * phi[t011] - mpole[t101] * phi[t002]);
+        tq[2] = -mpole[t100] * phi[t010] + mpole[t010] * phi[t100]
+                - twoThirds * (mpole[t200] * phi[t110] + mpole[t110] * phi[t020] + mpole[t101] * phi[t011]
+                - mpole[t110] * phi[t200] - mpole[t020] * phi[t110] - mpole[t011] * phi[t101]);
+    }
+
     /**
      * <p>
      * Getter for the field <code>interactions</code>.</p>
@@ -1895,6 +2512,16 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
         return interactions;
     }
 
+    /**
+     * <p>
+     * Getter for the field <code>scfIterations</code>.</p>
+     *
+     * @return the number of SCF iterations of the last energy evaluation.
+     */
+    public int getScfIterations() {
+        return scfIterations;
+    }
+
     public double getPermanentEnergy() {
         return permanentMultipoleEnergy;
     }
@@ -2010,6 +2637,17 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
         return lambdaTorque;
     }
 
+    /**
+     * The inertial extended Lagrangian of the induced dipoles, which should
+     * be propagated once per molecular dynamics step.
+     *
+     * @return the InertialExtendedLagrangian, or null if the IEL predictor
+     * is not in use.
+     */
+    public InertialExtendedLagrangian getInertialExtendedLagrangian() {
+        return inertialExtendedLagrangian;
+    }
+
     /**
      * Apply the selected polarization model (NONE, Direct or Mutual).
      */
@@ -2018,6 +2656,7 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             return -1;
         }
         long startTime = System.nanoTime();
+        initPairTensorCache();
 
         /**
          * Compute the direct induced dipoles.
@@ -2050,6 +2689,17 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             return 0;
         }
 
+        /**
+         * Once the auxiliary dipoles are in use, they replace the SCF for the
+         * first evaluation after each step; other evaluations are converged.
+         */
+        if (inertialExtendedLagrangian != null && inertialExtendedLagrangian.isAdvanced()) {
+            int evaluations = scfByIEL(print, startTime);
+            MetricsRegistry.record("pme.scf.iterations", evaluations);
+            MetricsRegistry.recordTime("pme.scf.time", System.nanoTime() - startTime);
+            return evaluations;
+        }
+
         /**
          * Predict the current self-consistent induced dipoles using information
          * from previous steps.
@@ -2091,11 +2741,28 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             case SOR:
                 iterations = scfBySOR(print, startTime);
                 break;
+            case TCG1:
+            case TCG2:
+                iterations = scfByTCG(print, startTime);
+                break;
             case CG:
+            case CG_BLOCK:
+            case CG_TWO_LEVEL:
             default:
                 iterations = scfByPCG(print, startTime);
+                MetricsRegistry.recordTime("pme.scf.preconditioner.time", preconditionerTime);
                 break;
         }
+        MetricsRegistry.record("pme.scf.iterations", iterations);
+        MetricsRegistry.recordTime("pme.scf.time", System.nanoTime() - startTime);
+
+        /**
+         * The converged dipoles start the auxiliary dipoles (the target is
+         * ignored unless it is the first of the step).
+         */
+        if (inertialExtendedLagrangian != null) {
+            inertialExtendedLagrangian.setTarget(nAtoms, inducedDipole[0], inducedDipoleCR[0]);
+        }
 
         if (System.getProperty("printInducedDipoles") != null) {
             StringBuilder sb = new StringBuilder();
@@ -2110,6 +2777,51 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
         return iterations;
     }
 
+    /**
+     * Prepare the induced dipole pair tensor cache for a new SCF. Coordinates
+     * and neighbor lists are fixed during the SCF, so the pair tensors filled
+     * by the first induced field evaluation remain valid until the next call.
+     * If the cache would exceed its memory ceiling, the pair tensors are
+     * recomputed in every induced field evaluation.
+     */
+    private void initPairTensorCache() {
+        pairTensorsCached = false;
+        if (!scfCache) {
+            usePairTensors = false;
+            return;
+        }
+        long pairs = 0;
+        for (int iSymm = 0; iSymm < nSymm; iSymm++) {
+            for (int i = 0; i < nAtoms; i++) {
+                pairs += realSpaceCounts[iSymm][i];
+            }
+        }
+        long bytes = 6L * 8L * pairs;
+        if (bytes > scfCacheMemory) {
+            if (usePairTensors || pairTensors == null) {
+                logger.info(format(" SCF pair tensor cache requires %d MB (limit %d MB); pair tensors will be recomputed.",
+                        bytes / (1024 * 1024), scfCacheMemory / (1024 * 1024)));
+            }
+            usePairTensors = false;
+            pairTensors = new double[0][][];
+            return;
+        }
+        if (pairTensors == null || pairTensors.length != nSymm
+                || pairTensors[0].length != nAtoms) {
+            pairTensors = new double[nSymm][nAtoms][];
+        }
+        for (int iSymm = 0; iSymm < nSymm; iSymm++) {
+            for (int i = 0; i < nAtoms; i++) {
+                int n = 6 * realSpaceCounts[iSymm][i];
+                double tensors[] = pairTensors[iSymm][i];
+                if (tensors == null || tensors.length < n) {
+                    pairTensors[iSymm][i] = new double[n];
+                }
+            }
+        }
+        usePairTensors = true;
+    }
+
     /**
      * Converge the SCF using Successive Over-Relaxation (SOR).
      */
@@ -2206,6 +2918,96 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
         return completedSCFCycles;
     }
 
+    /**
+     * The autotuning key describes the system size, space group, FFT grid,
+     * thread count and FFT method.
+     */
+    private String autotuneKey() {
+        return format("%d-%s-%dx%dx%d-%d-%s", nAtoms, crystal.getUnitCell().spaceGroup.shortName,
+                reciprocalSpace.getXDim(), reciprocalSpace.getYDim(), reciprocalSpace.getZDim(),
+                maxThreads, forceField.getString(ForceFieldString.FFT_METHOD, "PJ").toUpperCase());
+    }
+
+    /**
+     * Apply a PME execution plan.
+     *
+     * @param plan the Plan, or null to keep the current plan.
+     */
+    private void applyPlan(Plan plan) {
+        if (plan == null) {
+            return;
+        }
+        reciprocalSpace.setGridMethod(plan.gridMethod);
+        setRealSpaceThreads(plan.realSpaceThreads);
+    }
+
+    /**
+     * Split the threads between concurrent real space and reciprocal space
+     * sections, as for the pme-real-threads keyword.
+     *
+     * @param realThreads the number of real space threads, or 0 to compute
+     * real and reciprocal space sequentially with all threads.
+     */
+    private void setRealSpaceThreads(int realThreads) {
+        if (gpuFFT || realThreads >= maxThreads || realThreads < 0) {
+            return;
+        }
+        if (realThreads == 0 && sectionThreads == 1) {
+            return;
+        }
+        if (realThreads > 0 && sectionThreads == 2 && realThreads == realSpaceThreads) {
+            return;
+        }
+
+        /**
+         * Shut down the current teams, other than the default team.
+         */
+        for (ParallelTeam team : new ParallelTeam[]{sectionTeam, realSpaceTeam, fftTeam}) {
+            if (team != parallelTeam) {
+                try {
+                    team.shutdown();
+                } catch (Exception e) {
+                    logger.warning(" Exception in shutting down a PME ParallelTeam.");
+                }
+            }
+        }
+        if (realThreads > 0) {
+            sectionThreads = 2;
+            realSpaceThreads = realThreads;
+            reciprocalThreads = maxThreads - realThreads;
+            sectionTeam = new ParallelTeam(sectionThreads);
+            realSpaceTeam = new ParallelTeam(realSpaceThreads);
+            fftTeam = new ParallelTeam(reciprocalThreads);
+        } else {
+            sectionThreads = 1;
+            realSpaceThreads = maxThreads;
+            reciprocalThreads = maxThreads;
+            sectionTeam = new ParallelTeam(sectionThreads);
+            realSpaceTeam = parallelTeam;
+            fftTeam = parallelTeam;
+        }
+        permanentFieldRegion = new PermanentFieldRegion(realSpaceTeam);
+        inducedDipoleFieldRegion = new InducedDipoleFieldRegion(realSpaceTeam);
+        /**
+         * The real space ranges are rebuilt for the new real space team.
+         */
+        fill(realSpaceRanges, null);
+        /**
+         * Threads outside of the new real space team no longer clear their
+         * field arrays, which are still summed over every thread.
+         */
+        for (int i = 0; i < maxThreads; i++) {
+            for (int j = 0; j < 3; j++) {
+                fill(field[i][j], 0.0);
+                fill(fieldCR[i][j], 0.0);
+            }
+        }
+        reciprocalSpace.setFFTTeam(fftTeam);
+        if (coarseReciprocalSpace != null) {
+            coarseReciprocalSpace.setFFTTeam(fftTeam);
+        }
+    }
+
     @Override
     public void destroy() throws Exception {
         if (fftTeam != null) {
@@ -2466,10 +3268,13 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                 private double fXCR[], fYCR[], fZCR[];
                 private double mask_local[];
                 private double maskp_local[];
+                private boolean exclude_local[];
+                private final CompactNeighborList.Cursor cursor = new CompactNeighborList.Cursor();
                 private int count;
                 // Extra padding to avert cache interference.
                 private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
                 private long pad8, pad9, pada, padb, padc, padd, pade, padf;
+                private final double bn[] = new double[4];
 
                 public PermanentRealSpaceFieldLoop() {
                     super();
@@ -2494,6 +3299,10 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                         fill(mask_local, 1.0);
                         fill(maskp_local, 1.0);
                     }
+                    if (treecodeExclusions != null
+                            && (exclude_local == null || exclude_local.length < nAtoms)) {
+                        exclude_local = new boolean[nAtoms];
+                    }
                 }
 
                 @Override
@@ -2503,8 +3312,16 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                     realSpacePermTime[threadIndex] += System.nanoTime();
                 }
 
+                /**
+                 * The neighbor list schedule has a range for each thread of
+                 * the team that built it, so a real space team of a different
+                 * size uses a dynamic schedule.
+                 */
                 @Override
                 public IntegerSchedule schedule() {
+                    if (threadCount != permanentSchedule.getThreadCount()) {
+                        return IntegerSchedule.dynamic(10);
+                    }
                     return permanentSchedule;
                 }
 
@@ -2580,17 +3397,33 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                         for (int index : ip11[i]) {
                             mask_local[index] = d11scale;
                         }
+                        /**
+                         * Masked pairs beyond the cutoff are excluded from the
+                         * treecode, so they are kept here.
+                         */
+                        if (treecodeExclusions != null) {
+                            for (int index : treecodeExclusions[i]) {
+                                exclude_local[index] = true;
+                            }
+                        }
                         /**
                          * Loop over the neighbor list.
                          */
-                        final int list[] = lists[i];
-                        int npair = list.length;
+                        final int list[];
+                        final int npair;
+                        if (compactNeighborLists != null) {
+                            npair = cursor.reset(compactNeighborLists, 0, i);
+                            list = null;
+                        } else {
+                            list = lists[i];
+                            npair = list.length;
+                        }
                         counts[i] = 0;
                         preCounts[i] = 0;
                         final int ewald[] = ewalds[i];
                         int preList[] = preLists[i];
                         for (int j = 0; j < npair; j++) {
-                            int k = list[j];
+                            int k = (list != null) ? list[j] : cursor.next();
                             if (!use[k]) {
                                 continue;
                             }
@@ -2608,7 +3441,7 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                             dx_local[1] = yk - yi;
                             dx_local[2] = zk - zi;
                             final double r2 = crystal.image(dx_local);
-                            if (r2 <= off2) {
+                            if (r2 <= off2 || (treecodeExclusions != null && exclude_local[k])) {
                                 count++;
                                 ewald[counts[i]++] = k;
                                 final double xr = dx_local[0];
@@ -2639,14 +3472,22 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                                 /**
                                  * Calculate the error function damping terms.
                                  */
-                                final double ralpha = aewald * r;
-                                final double exp2a = exp(-ralpha * ralpha);
                                 final double rr1 = 1.0 / r;
                                 final double rr2 = rr1 * rr1;
-                                final double bn0 = erfc(ralpha) * rr1;
-                                final double bn1 = (bn0 + an0 * exp2a) * rr2;
-                                final double bn2 = (3.0 * bn1 + an1 * exp2a) * rr2;
-                                final double bn3 = (5.0 * bn2 + an2 * exp2a) * rr2;
+                                final double bn0, bn1, bn2, bn3;
+                                if (ewaldTable != null && ewaldTable.interpolate(r, bn)) {
+                                    bn0 = bn[0];
+                                    bn1 = bn[1];
+                                    bn2 = bn[2];
+                                    bn3 = bn[3];
+                                } else {
+                                    final double ralpha = aewald * r;
+                                    final double exp2a = exp(-ralpha * ralpha);
+                                    bn0 = erfc(ralpha) * rr1;
+                                    bn1 = (bn0 + an0 * exp2a) * rr2;
+                                    bn2 = (3.0 * bn1 + an1 * exp2a) * rr2;
+                                    bn3 = (5.0 * bn2 + an2 * exp2a) * rr2;
+                                }
                                 /**
                                  * Compute the error function scaled and
                                  * unscaled terms.
@@ -2753,6 +3594,11 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                         for (int index : ip11[i]) {
                             mask_local[index] = 1.0;
                         }
+                        if (treecodeExclusions != null) {
+                            for (int index : treecodeExclusions[i]) {
+                                exclude_local[index] = false;
+                            }
+                        }
                     }
                     /**
                      * Loop over symmetry mates.
@@ -2795,14 +3641,21 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                             /**
                              * Loop over the neighbor list.
                              */
-                            final int list[] = lists[i];
-                            final int npair = list.length;
+                            final int list[];
+                            final int npair;
+                            if (compactNeighborLists != null) {
+                                npair = cursor.reset(compactNeighborLists, iSymm, i);
+                                list = null;
+                            } else {
+                                list = lists[i];
+                                npair = list.length;
+                            }
                             counts[i] = 0;
                             preCounts[i] = 0;
                             final int ewald[] = ewalds[i];
                             final int preList[] = preLists[i];
                             for (int j = 0; j < npair; j++) {
-                                int k = list[j];
+                                int k = (list != null) ? list[j] : cursor.next();
                                 if (!use[k]) {
                                     continue;
                                 }
@@ -2844,14 +3697,22 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                                      * Calculate the error function damping
                                      * terms.
                                      */
-                                    final double ralpha = aewald * r;
-                                    final double exp2a = exp(-ralpha * ralpha);
                                     final double rr1 = 1.0 / r;
                                     final double rr2 = rr1 * rr1;
-                                    final double bn0 = erfc(ralpha) * rr1;
-                                    final double bn1 = (bn0 + an0 * exp2a) * rr2;
-                                    final double bn2 = (3.0 * bn1 + an1 * exp2a) * rr2;
-                                    final double bn3 = (5.0 * bn2 + an2 * exp2a) * rr2;
+                                    final double bn0, bn1, bn2, bn3;
+                                    if (ewaldTable != null && ewaldTable.interpolate(r, bn)) {
+                                        bn0 = bn[0];
+                                        bn1 = bn[1];
+                                        bn2 = bn[2];
+                                        bn3 = bn[3];
+                                    } else {
+                                        final double ralpha = aewald * r;
+                                        final double exp2a = exp(-ralpha * ralpha);
+                                        bn0 = erfc(ralpha) * rr1;
+                                        bn1 = (bn0 + an0 * exp2a) * rr2;
+                                        bn2 = (3.0 * bn1 + an1 * exp2a) * rr2;
+                                        bn3 = (5.0 * bn2 + an2 * exp2a) * rr2;
+                                    }
                                     /**
                                      * Compute the error function scaled and
                                      * unscaled terms.
@@ -2969,6 +3830,28 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             }
         }
 
+        /**
+         * Add the induced dipole field beyond the cutoff.
+         */
+        @Override
+        public void finish() {
+            if (treecode == null) {
+                return;
+            }
+            treecode.computePotential(new double[][][]{inducedDipole[0], inducedDipoleCR[0]},
+                    new int[]{1, 1}, 1, treecodeInducedPhi);
+            final double phi[][] = treecodeInducedPhi[0];
+            final double phiCR[][] = treecodeInducedPhi[1];
+            for (int i = 0; i < nAtoms; i++) {
+                field[0][0][i] -= phi[i][t100];
+                field[0][1][i] -= phi[i][t010];
+                field[0][2][i] -= phi[i][t001];
+                fieldCR[0][0][i] -= phiCR[i][t100];
+                fieldCR[0][1][i] -= phiCR[i][t010];
+                fieldCR[0][2][i] -= phiCR[i][t001];
+            }
+        }
+
         private class InducedDipoleRealSpaceFieldSection extends ParallelSection {
 
             private final InducedDipoleRealSpaceFieldRegion polarizationRealSpaceFieldRegion;
@@ -2985,6 +3868,7 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                 try {
                     realSpaceSCFTotal -= System.nanoTime();
                     pt.execute(polarizationRealSpaceFieldRegion);
+                    pairTensorsCached = usePairTensors;
                     realSpaceSCFTotal += System.nanoTime();
                 } catch (Exception e) {
                     String message = "Fatal exception computing the real space field.\n";
@@ -3030,6 +3914,8 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                 private double x[], y[], z[];
                 private double fX[], fY[], fZ[];
                 private double fXCR[], fYCR[], fZCR[];
+                private final double bn[] = new double[3];
+                private boolean usePairTensorCache;
 
                 public InducedRealSpaceFieldLoop() {
                 }
@@ -3060,6 +3946,7 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                     z = coordinates[0][2];
                     ind = inducedDipole[0];
                     indCR = inducedDipoleCR[0];
+                    usePairTensorCache = usePairTensors && pairTensorsCached;
                 }
 
                 @Override
@@ -3072,6 +3959,7 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                 public void run(int lb, int ub) {
                     final double dx[] = new double[3];
                     final double transOp[][] = new double[3][3];
+                    final double t[] = new double[6];
                     /**
                      * Loop over a chunk of atoms.
                      */
@@ -3101,6 +3989,7 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                         final double piz = dipoleCRi[2];
                         final double pdi = ipdamp[i];
                         final double pti = thole[i];
+                        final double tensors[] = (usePairTensors) ? pairTensors[0][i] : t;
                         /**
                          * Loop over the neighbor list.
                          */
@@ -3118,99 +4007,40 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                                     continue;
                                 }
                             }
-                            final double pdk = ipdamp[k];
-                            final double ptk = thole[k];
-                            dx[0] = x[k] - xi;
-                            dx[1] = y[k] - yi;
-                            dx[2] = z[k] - zi;
-                            final double r2 = crystal.image(dx);
-                            /**
-                             * Calculate the error function damping terms.
-                             */
-                            final double r = sqrt(r2);
-                            final double rr1 = 1.0 / r;
-                            final double rr2 = rr1 * rr1;
-                            final double ralpha = aewald * r;
-                            final double exp2a = exp(-ralpha * ralpha);
-                            final double bn0 = erfc(ralpha) * rr1;
-                            final double bn1 = (bn0 + an0 * exp2a) * rr2;
-                            final double bn2 = (3.0 * bn1 + an1 * exp2a) * rr2;
-                            double scale3 = 1.0;
-                            double scale5 = 1.0;
-                            double damp = pdi * pdk;
-                            //if (damp != 0.0) {
-                            final double pgamma = min(pti, ptk);
-                            final double rdamp = r * damp;
-                            damp = -pgamma * rdamp * rdamp * rdamp;
-                            if (damp > -50.0) {
-                                final double expdamp = exp(damp);
-                                scale3 = 1.0 - expdamp;
-                                scale5 = 1.0 - expdamp * (1.0 - damp);
+                            final int l = (usePairTensors) ? 6 * j : 0;
+                            if (!usePairTensorCache) {
+                                dx[0] = x[k] - xi;
+                                dx[1] = y[k] - yi;
+                                dx[2] = z[k] - zi;
+                                final double r2 = crystal.image(dx);
+                                pairTensor(dx, r2, pdi, pti, k, 1.0, tensors, l);
                             }
-                            //}
-                            double rr3 = rr1 * rr2;
-                            double rr5 = 3.0 * rr3 * rr2;
-                            rr3 *= (1.0 - scale3);
-                            rr5 *= (1.0 - scale5);
-                            final double xr = dx[0];
-                            final double yr = dx[1];
-                            final double zr = dx[2];
+                            final double txx = tensors[l];
+                            final double tyy = tensors[l + 1];
+                            final double tzz = tensors[l + 2];
+                            final double txy = tensors[l + 3];
+                            final double txz = tensors[l + 4];
+                            final double tyz = tensors[l + 5];
                             final double dipolek[] = ind[k];
                             final double ukx = dipolek[0];
                             final double uky = dipolek[1];
                             final double ukz = dipolek[2];
-                            final double ukr = ukx * xr + uky * yr + ukz * zr;
-                            final double bn2ukr = bn2 * ukr;
-                            final double fimx = -bn1 * ukx + bn2ukr * xr;
-                            final double fimy = -bn1 * uky + bn2ukr * yr;
-                            final double fimz = -bn1 * ukz + bn2ukr * zr;
-                            final double rr5ukr = rr5 * ukr;
-                            final double fidx = -rr3 * ukx + rr5ukr * xr;
-                            final double fidy = -rr3 * uky + rr5ukr * yr;
-                            final double fidz = -rr3 * ukz + rr5ukr * zr;
-                            fx += (fimx - fidx);
-                            fy += (fimy - fidy);
-                            fz += (fimz - fidz);
+                            fx += txx * ukx + txy * uky + txz * ukz;
+                            fy += txy * ukx + tyy * uky + tyz * ukz;
+                            fz += txz * ukx + tyz * uky + tzz * ukz;
                             final double dipolepk[] = indCR[k];
                             final double pkx = dipolepk[0];
                             final double pky = dipolepk[1];
                             final double pkz = dipolepk[2];
-                            final double pkr = pkx * xr + pky * yr + pkz * zr;
-                            final double bn2pkr = bn2 * pkr;
-                            final double pimx = -bn1 * pkx + bn2pkr * xr;
-                            final double pimy = -bn1 * pky + bn2pkr * yr;
-                            final double pimz = -bn1 * pkz + bn2pkr * zr;
-                            final double rr5pkr = rr5 * pkr;
-                            final double pidx = -rr3 * pkx + rr5pkr * xr;
-                            final double pidy = -rr3 * pky + rr5pkr * yr;
-                            final double pidz = -rr3 * pkz + rr5pkr * zr;
-                            px += (pimx - pidx);
-                            py += (pimy - pidy);
-                            pz += (pimz - pidz);
-                            final double uir = uix * xr + uiy * yr + uiz * zr;
-                            final double bn2uir = bn2 * uir;
-                            final double fkmx = -bn1 * uix + bn2uir * xr;
-                            final double fkmy = -bn1 * uiy + bn2uir * yr;
-                            final double fkmz = -bn1 * uiz + bn2uir * zr;
-                            final double rr5uir = rr5 * uir;
-                            final double fkdx = -rr3 * uix + rr5uir * xr;
-                            final double fkdy = -rr3 * uiy + rr5uir * yr;
-                            final double fkdz = -rr3 * uiz + rr5uir * zr;
-                            fX[k] += (fkmx - fkdx);
-                            fY[k] += (fkmy - fkdy);
-                            fZ[k] += (fkmz - fkdz);
-                            final double pir = pix * xr + piy * yr + piz * zr;
-                            final double bn2pir = bn2 * pir;
-                            final double pkmx = -bn1 * pix + bn2pir * xr;
-                            final double pkmy = -bn1 * piy + bn2pir * yr;
-                            final double pkmz = -bn1 * piz + bn2pir * zr;
-                            final double rr5pir = rr5 * pir;
-                            final double pkdx = -rr3 * pix + rr5pir * xr;
-                            final double pkdy = -rr3 * piy + rr5pir * yr;
-                            final double pkdz = -rr3 * piz + rr5pir * zr;
-                            fXCR[k] += (pkmx - pkdx);
-                            fYCR[k] += (pkmy - pkdy);
-                            fZCR[k] += (pkmz - pkdz);
+                            px += txx * pkx + txy * pky + txz * pkz;
+                            py += txy * pkx + tyy * pky + tyz * pkz;
+                            pz += txz * pkx + tyz * pky + tzz * pkz;
+                            fX[k] += txx * uix + txy * uiy + txz * uiz;
+                            fY[k] += txy * uix + tyy * uiy + tyz * uiz;
+                            fZ[k] += txz * uix + tyz * uiy + tzz * uiz;
+                            fXCR[k] += txx * pix + txy * piy + txz * piz;
+                            fYCR[k] += txy * pix + tyy * piy + tyz * piz;
+                            fZCR[k] += txz * pix + tyz * piy + tzz * piz;
                         }
                         fX[i] += fx;
                         fY[i] += fy;
@@ -3258,6 +4088,7 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                             final double piz = dipoleCRi[2];
                             final double pdi = ipdamp[i];
                             final double pti = thole[i];
+                            final double tensors[] = (usePairTensors) ? pairTensors[iSymm][i] : t;
                             /**
                              * Loop over the neighbor list.
                              */
@@ -3268,47 +4099,24 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                                 if (!use[k]) {
                                     continue;
                                 }
-                                double selfScale = 1.0;
-                                if (i == k) {
-                                    selfScale = 0.5;
-                                }
-                                final double pdk = ipdamp[k];
-                                final double ptk = thole[k];
-                                dx[0] = xs[k] - xi;
-                                dx[1] = ys[k] - yi;
-                                dx[2] = zs[k] - zi;
-                                final double r2 = crystal.image(dx);
-                                /**
-                                 * Calculate the error function damping terms.
-                                 */
-                                final double r = sqrt(r2);
-                                final double rr1 = 1.0 / r;
-                                final double rr2 = rr1 * rr1;
-                                final double ralpha = aewald * r;
-                                final double exp2a = exp(-ralpha * ralpha);
-                                final double bn0 = erfc(ralpha) * rr1;
-                                final double bn1 = (bn0 + an0 * exp2a) * rr2;
-                                final double bn2 = (3.0 * bn1 + an1 * exp2a) * rr2;
-                                double scale3 = 1.0;
-                                double scale5 = 1.0;
-                                double damp = pdi * pdk;
-                                //if (damp != 0.0) {
-                                final double pgamma = min(pti, ptk);
-                                final double rdamp = r * damp;
-                                damp = -pgamma * rdamp * rdamp * rdamp;
-                                if (damp > -50.0) {
-                                    final double expdamp = exp(damp);
-                                    scale3 = 1.0 - expdamp;
-                                    scale5 = 1.0 - expdamp * (1.0 - damp);
+                                final int l = (usePairTensors) ? 6 * j : 0;
+                                if (!usePairTensorCache) {
+                                    double selfScale = 1.0;
+                                    if (i == k) {
+                                        selfScale = 0.5;
+                                    }
+                                    dx[0] = xs[k] - xi;
+                                    dx[1] = ys[k] - yi;
+                                    dx[2] = zs[k] - zi;
+                                    final double r2 = crystal.image(dx);
+                                    pairTensor(dx, r2, pdi, pti, k, selfScale, tensors, l);
                                 }
-                                //}
-                                double rr3 = rr1 * rr2;
-                                double rr5 = 3.0 * rr3 * rr2;
-                                rr3 *= (1.0 - scale3);
-                                rr5 *= (1.0 - scale5);
-                                final double xr = dx[0];
-                                final double yr = dx[1];
-                                final double zr = dx[2];
+                                final double txx = tensors[l];
+                                final double tyy = tensors[l + 1];
+                                final double tzz = tensors[l + 2];
+                                final double txy = tensors[l + 3];
+                                final double txz = tensors[l + 4];
+                                final double tyz = tensors[l + 5];
                                 final double dipolek[] = inds[k];
                                 final double ukx = dipolek[0];
                                 final double uky = dipolek[1];
@@ -3317,57 +4125,21 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                                 final double pkx = dipolepk[0];
                                 final double pky = dipolepk[1];
                                 final double pkz = dipolepk[2];
-                                final double ukr = ukx * xr + uky * yr + ukz * zr;
-                                final double bn2ukr = bn2 * ukr;
-                                final double fimx = -bn1 * ukx + bn2ukr * xr;
-                                final double fimy = -bn1 * uky + bn2ukr * yr;
-                                final double fimz = -bn1 * ukz + bn2ukr * zr;
-                                final double rr5ukr = rr5 * ukr;
-                                final double fidx = -rr3 * ukx + rr5ukr * xr;
-                                final double fidy = -rr3 * uky + rr5ukr * yr;
-                                final double fidz = -rr3 * ukz + rr5ukr * zr;
-                                fx += selfScale * (fimx - fidx);
-                                fy += selfScale * (fimy - fidy);
-                                fz += selfScale * (fimz - fidz);
-                                final double pkr = pkx * xr + pky * yr + pkz * zr;
-                                final double bn2pkr = bn2 * pkr;
-                                final double pimx = -bn1 * pkx + bn2pkr * xr;
-                                final double pimy = -bn1 * pky + bn2pkr * yr;
-                                final double pimz = -bn1 * pkz + bn2pkr * zr;
-                                final double rr5pkr = rr5 * pkr;
-                                final double pidx = -rr3 * pkx + rr5pkr * xr;
-                                final double pidy = -rr3 * pky + rr5pkr * yr;
-                                final double pidz = -rr3 * pkz + rr5pkr * zr;
-                                px += selfScale * (pimx - pidx);
-                                py += selfScale * (pimy - pidy);
-                                pz += selfScale * (pimz - pidz);
-                                final double uir = uix * xr + uiy * yr + uiz * zr;
-                                final double bn2uir = bn2 * uir;
-                                final double fkmx = -bn1 * uix + bn2uir * xr;
-                                final double fkmy = -bn1 * uiy + bn2uir * yr;
-                                final double fkmz = -bn1 * uiz + bn2uir * zr;
-                                final double rr5uir = rr5 * uir;
-                                final double fkdx = -rr3 * uix + rr5uir * xr;
-                                final double fkdy = -rr3 * uiy + rr5uir * yr;
-                                final double fkdz = -rr3 * uiz + rr5uir * zr;
-                                double xc = selfScale * (fkmx - fkdx);
-                                double yc = selfScale * (fkmy - fkdy);
-                                double zc = selfScale * (fkmz - fkdz);
+                                fx += txx * ukx + txy * uky + txz * ukz;
+                                fy += txy * ukx + tyy * uky + tyz * ukz;
+                                fz += txz * ukx + tyz * uky + tzz * ukz;
+                                px += txx * pkx + txy * pky + txz * pkz;
+                                py += txy * pkx + tyy * pky + tyz * pkz;
+                                pz += txz * pkx + tyz * pky + tzz * pkz;
+                                double xc = txx * uix + txy * uiy + txz * uiz;
+                                double yc = txy * uix + tyy * uiy + tyz * uiz;
+                                double zc = txz * uix + tyz * uiy + tzz * uiz;
                                 fX[k] += (xc * transOp[0][0] + yc * transOp[1][0] + zc * transOp[2][0]);
                                 fY[k] += (xc * transOp[0][1] + yc * transOp[1][1] + zc * transOp[2][1]);
                                 fZ[k] += (xc * transOp[0][2] + yc * transOp[1][2] + zc * transOp[2][2]);
-                                final double pir = pix * xr + piy * yr + piz * zr;
-                                final double bn2pir = bn2 * pir;
-                                final double pkmx = -bn1 * pix + bn2pir * xr;
-                                final double pkmy = -bn1 * piy + bn2pir * yr;
-                                final double pkmz = -bn1 * piz + bn2pir * zr;
-                                final double rr5pir = rr5 * pir;
-                                final double pkdx = -rr3 * pix + rr5pir * xr;
-                                final double pkdy = -rr3 * piy + rr5pir * yr;
-                                final double pkdz = -rr3 * piz + rr5pir * zr;
-                                xc = selfScale * (pkmx - pkdx);
-                                yc = selfScale * (pkmy - pkdy);
-                                zc = selfScale * (pkmz - pkdz);
+                                xc = txx * pix + txy * piy + txz * piz;
+                                yc = txy * pix + tyy * piy + tyz * piz;
+                                zc = txz * pix + tyz * piy + tzz * piz;
                                 fXCR[k] += (xc * transOp[0][0] + yc * transOp[1][0] + zc * transOp[2][0]);
                                 fYCR[k] += (xc * transOp[0][1] + yc * transOp[1][1] + zc * transOp[2][1]);
                                 fZCR[k] += (xc * transOp[0][2] + yc * transOp[1][2] + zc * transOp[2][2]);
@@ -3381,6 +4153,72 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                         }
                     }
                 }
+
+                /**
+                 * Compute the six unique components (xx, yy, zz, xy, xz, yz)
+                 * of the Ewald screened, Thole damped dipole field tensor for
+                 * the pair separated by dx.
+                 *
+                 * @param dx The separation vector.
+                 * @param r2 The squared separation.
+                 * @param pdi The damping factor of atom i.
+                 * @param pti The Thole parameter of atom i.
+                 * @param k The index of atom k.
+                 * @param scale Scale factor for the tensor.
+                 * @param t The tensor is stored in this array.
+                 * @param offset Offset into t.
+                 */
+                private void pairTensor(final double dx[], final double r2,
+                        final double pdi, final double pti, final int k,
+                        final double scale, final double t[], final int offset) {
+                    /**
+                     * Calculate the error function damping terms.
+                     */
+                    final double r = sqrt(r2);
+                    final double rr1 = 1.0 / r;
+                    final double rr2 = rr1 * rr1;
+                    final double bn1, bn2;
+                    if (ewaldTable != null && ewaldTable.interpolate(r, bn)) {
+                        bn1 = bn[1];
+                        bn2 = bn[2];
+                    } else {
+                        final double ralpha = aewald * r;
+                        final double exp2a = exp(-ralpha * ralpha);
+                        final double bn0 = erfc(ralpha) * rr1;
+                        bn1 = (bn0 + an0 * exp2a) * rr2;
+                        bn2 = (3.0 * bn1 + an1 * exp2a) * rr2;
+                    }
+                    double scale3 = 1.0;
+                    double scale5 = 1.0;
+                    double damp = pdi * ipdamp[k];
+                    final double pgamma = min(pti, thole[k]);
+                    final double rdamp = r * damp;
+                    damp = -pgamma * rdamp * rdamp * rdamp;
+                    if (damp > -50.0) {
+                        final double expdamp = exp(damp);
+                        scale3 = 1.0 - expdamp;
+                        scale5 = 1.0 - expdamp * (1.0 - damp);
+                    }
+                    double rr3 = rr1 * rr2;
+                    double rr5 = 3.0 * rr3 * rr2;
+                    rr3 *= (1.0 - scale3);
+                    rr5 *= (1.0 - scale5);
+                    /**
+                     * The field at i due to a dipole u at k is
+                     * (rr3 - bn1) u + (bn2 - rr5) (u.r) r.
+                     */
+                    final double a = scale * (rr3 - bn1);
+                    final double b = scale * (bn2 - rr5);
+                    final double xr = dx[0];
+                    final double yr = dx[1];
+                    final double zr = dx[2];
+                    t[offset] = a + b * xr * xr;
+                    t[offset + 1] = a + b * yr * yr;
+                    t[offset + 2] = a + b * zr * zr;
+                    t[offset + 3] = b * xr * yr;
+                    t[offset + 4] = b * xr * zr;
+                    t[offset + 5] = b * yr * zr;
+                }
             }
         }
     }
@@ -3478,6 +4316,21 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                         fieldCR[0][2][i] += fz;
                     }
                 }
+                if (treecode != null) {
+                    /**
+                     * Add the permanent field beyond the cutoff.
+                     */
+                    final double phi[][] = treecodePermanentPhi[0];
+                    for (int i = lb; i <= ub; i++) {
+                        final double phii[] = phi[i];
+                        field[0][0][i] -= phii[t100];
+                        field[0][1][i] -= phii[t010];
+                        field[0][2][i] -= phii[t001];
+                        fieldCR[0][0][i] -= phii[t100];
+                        fieldCR[0][1][i] -= phii[t010];
+                        fieldCR[0][2][i] -= phii[t001];
+                    }
+                }
                 /**
                  * Set the direct induced dipoles to the polarizability
                  * multiplied by the direct field.
@@ -3757,6 +4610,7 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             private double ukx, uky, ukz;
             private double pkx, pky, pkz;
             private double bn0, bn1, bn2, bn3, bn4, bn5, bn6;
+            private final double bn[] = new double[7];
             private double r2, rr1, rr2, rr3, rr5, rr7, rr9, rr11, rr13;
             private double scale, scale3, scale5, scale7;
             private double scalep, scaled;
@@ -4077,17 +4931,27 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                         scale5 = 1.0;
                         scale7 = 1.0;
                         double r = sqrt(r2 + beta);
-                        double ralpha = aewald * r;
-                        double exp2a = exp(-ralpha * ralpha);
                         rr1 = 1.0 / r;
                         rr2 = rr1 * rr1;
-                        bn0 = erfc(ralpha) * rr1;
-                        bn1 = (bn0 + an0 * exp2a) * rr2;
-                        bn2 = (3.0 * bn1 + an1 * exp2a) * rr2;
-                        bn3 = (5.0 * bn2 + an2 * exp2a) * rr2;
-                        bn4 = (7.0 * bn3 + an3 * exp2a) * rr2;
-                        bn5 = (9.0 * bn4 + an4 * exp2a) * rr2;
-                        bn6 = (11.0 * bn5 + an5 * exp2a) * rr2;
+                        if (ewaldTable != null && ewaldTable.interpolate(r, bn)) {
+                            bn0 = bn[0];
+                            bn1 = bn[1];
+                            bn2 = bn[2];
+                            bn3 = bn[3];
+                            bn4 = bn[4];
+                            bn5 = bn[5];
+                            bn6 = bn[6];
+                        } else {
+                            double ralpha = aewald * r;
+                            double exp2a = exp(-ralpha * ralpha);
+                            bn0 = erfc(ralpha) * rr1;
+                            bn1 = (bn0 + an0 * exp2a) * rr2;
+                            bn2 = (3.0 * bn1 + an1 * exp2a) * rr2;
+                            bn3 = (5.0 * bn2 + an2 * exp2a) * rr2;
+                            bn4 = (7.0 * bn3 + an3 * exp2a) * rr2;
+                            bn5 = (9.0 * bn4 + an4 * exp2a) * rr2;
+                            bn6 = (11.0 * bn5 + an5 * exp2a) * rr2;
+                        }
                         rr3 = rr1 * rr2;
                         rr5 = 3.0 * rr3 * rr2;
                         rr7 = 5.0 * rr5 * rr2;
@@ -4153,17 +5017,27 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                                 scale5 = 1.0;
                                 scale7 = 1.0;
                                 r = sqrt(r2);
-                                ralpha = aewald * r;
-                                exp2a = exp(-ralpha * ralpha);
                                 rr1 = 1.0 / r;
                                 rr2 = rr1 * rr1;
-                                bn0 = erfc(ralpha) * rr1;
-                                bn1 = (bn0 + an0 * exp2a) * rr2;
-                                bn2 = (3.0 * bn1 + an1 * exp2a) * rr2;
-                                bn3 = (5.0 * bn2 + an2 * exp2a) * rr2;
-                                bn4 = (7.0 * bn3 + an3 * exp2a) * rr2;
-                                bn5 = (9.0 * bn4 + an4 * exp2a) * rr2;
-                                bn6 = (11.0 * bn5 + an5 * exp2a) * rr2;
+                                if (ewaldTable != null && ewaldTable.interpolate(r, bn)) {
+                                    bn0 = bn[0];
+                                    bn1 = bn[1];
+                                    bn2 = bn[2];
+                                    bn3 = bn[3];
+                                    bn4 = bn[4];
+                                    bn5 = bn[5];
+                                    bn6 = bn[6];
+                                } else {
+                                    double ralpha = aewald * r;
+                                    double exp2a = exp(-ralpha * ralpha);
+                                    bn0 = erfc(ralpha) * rr1;
+                                    bn1 = (bn0 + an0 * exp2a) * rr2;
+                                    bn2 = (3.0 * bn1 + an1 * exp2a) * rr2;
+                                    bn3 = (5.0 * bn2 + an2 * exp2a) * rr2;
+                                    bn4 = (7.0 * bn3 + an3 * exp2a) * rr2;
+                                    bn5 = (9.0 * bn4 + an4 * exp2a) * rr2;
+                                    bn6 = (11.0 * bn5 + an5 * exp2a) * rr2;
+                                }
                                 rr3 = rr1 * rr2;
                                 rr5 = 3.0 * rr3 * rr2;
                                 rr7 = 5.0 * rr5 * rr2;
@@ -4787,7 +5661,7 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                 /*
                  * Correction to convert mutual to direct polarization force.
                  */
-                if (polarization == Polarization.DIRECT) {
+                if (polarization == Polarization.DIRECT || tcgSolver != null) {
                     final double gfd = 0.5 * (bn2 * scip2 - bn3 * (scip3 * sci4 + sci3 * scip4));
                     final double gfdr = 0.5 * (rr5 * scip2 * usc3 - rr7 * (scip3 * sci4 + sci3 * scip4) * usc5);
                     ftm2ix = ftm2ix - gfd * xr - 0.5 * bn2 * (sci4 * pix + scip4 * uix + sci3 * pkx + scip3 * ukx);
@@ -5212,7 +6086,7 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                             double gx = insx * fPhi[t200] + insy * fPhi[t110] + insz * fPhi[t101];
                             double gy = insx * fPhi[t110] + insy * fPhi[t020] + insz * fPhi[t011];
                             double gz = insx * fPhi[t101] + insy * fPhi[t011] + insz * fPhi[t002];
-                            if (polarization == Polarization.MUTUAL) {
+                            if (polarization == Polarization.MUTUAL && tcgSolver == null) {
                                 gx += indx * fiCRPhi[t200] + inpx * fiPhi[t200] + indy * fiCRPhi[t110] + inpy * fiPhi[t110] + indz * fiCRPhi[t101] + inpz * fiPhi[t101];
                                 gy += indx * fiCRPhi[t110] + inpx * fiPhi[t110] + indy * fiCRPhi[t020] + inpy * fiPhi[t020] + indz * fiCRPhi[t011] + inpz * fiPhi[t011];
                                 gz += indx * fiCRPhi[t101] + inpx * fiPhi[t101] + indy * fiCRPhi[t011] + inpy * fiPhi[t011] + indz * fiCRPhi[t002] + inpz * fiPhi[t002];
@@ -5301,11 +6175,6 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
 
         private class InitializationLoop extends IntegerForLoop {
 
-            private final double in[] = new double[3];
-            private final double out[] = new double[3];
-            private double x[];
-            private double y[];
-            private double z[];
             // Extra padding to avert cache interference.
             private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
             private long pad8, pad9, pada, padb, padc, padd, pade, padf;
@@ -5317,9 +6186,6 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
 
             @Override
             public void start() {
-                x = coordinates[0][0];
-                y = coordinates[0][1];
-                z = coordinates[0][2];
                 int threadID = getThreadIndex();
                 if (gradient) {
                     double gX[] = grad[threadID][0];
@@ -5354,14 +6220,11 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             @Override
             public void run(int lb, int ub) {
                 /**
-                 * Initialize the local coordinate arrays.
+                 * The coordinates and their symmetry mates are current in the
+                 * SymmetryMateCache.
                  */
                 for (int i = lb; i <= ub; i++) {
-                    Atom atom = atoms[i];
-                    x[i] = atom.getX();
-                    y[i] = atom.getY();
-                    z[i] = atom.getZ();
-                    use[i] = atom.getUse();
+                    use[i] = atoms[i].getUse();
 
                     /**
                      * Real space Ewald is cutoff at ~7 A, compared to ~12 A for
@@ -5372,7 +6235,7 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                      * space loops, especially the SCF, then do not spend time
                      * evaluating pairwise distances outside the cutoff.
                      */
-                    int size = neighborLists[0][i].length;
+                    int size = neighborCount(0, i);
                     if (vaporLists != null) {
                         size = max(size, vaporLists[0][i].length);
                     }
@@ -5381,24 +6244,9 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                     }
                 }
 
-                /**
-                 * Expand coordinates.
-                 */
-                List<SymOp> symOps = crystal.spaceGroup.symOps;
                 for (int iSymm = 1; iSymm < nSymm; iSymm++) {
-                    SymOp symOp = symOps.get(iSymm);
-                    double xs[] = coordinates[iSymm][0];
-                    double ys[] = coordinates[iSymm][1];
-                    double zs[] = coordinates[iSymm][2];
                     for (int i = lb; i <= ub; i++) {
-                        in[0] = x[i];
-                        in[1] = y[i];
-                        in[2] = z[i];
-                        crystal.applySymOp(in, out, symOp);
-                        xs[i] = out[0];
-                        ys[i] = out[1];
-                        zs[i] = out[2];
-                        int size = neighborLists[iSymm][i].length;
+                        int size = neighborCount(iSymm, i);
                         if (realSpaceLists[iSymm][i] == null || realSpaceLists[iSymm][i].length < size) {
                             realSpaceLists[iSymm][i] = new int[size];
                         }
@@ -5991,9 +6839,8 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                             gz[i] += tz[i];
                         }
                     }
-                    for (int i = lb; i <= ub; i++) {
-                        Atom ai = atoms[i];
-                        ai.addToXYZGradient(gx[i], gy[i], gz[i]);
+                    if (!deferGradient) {
+                        addGradient(lb, ub);
                     }
                 }
                 if (lambdaTerm) {
@@ -6039,6 +6886,9 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             an3 = alsq2 * an2;
             an4 = alsq2 * an3;
             an5 = alsq2 * an4;
+            if (useEwaldTable) {
+                ewaldTable = EwaldTable.getTable(aewald, off, 6);
+            }
         } else {
             an0 = 0.0;
             an1 = 0.0;
@@ -6046,7 +6896,19 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             an3 = 0.0;
             an4 = 0.0;
             an5 = 0.0;
+            ewaldTable = null;
+        }
+    }
+
+    /**
+     * Number of neighbors of atom i in symmetry mate iSymm, from either the
+     * compact or the per-atom neighbor lists.
+     */
+    private int neighborCount(int iSymm, int i) {
+        if (compactNeighborLists != null) {
+            return compactNeighborLists.getCount(iSymm, i);
         }
+        return neighborLists[iSymm][i].length;
     }
 
     /**
@@ -6853,6 +7715,11 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
         computeInduceDipoleField();
 
         try {
+            /**
+             * Set up the block preconditioner for the current coordinates.
+             */
+            initPreconditioner();
+
             /**
              * Set initial conjugate gradient residual (a field).
              *
@@ -6864,10 +7731,7 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             /**
              * Compute preconditioner.
              */
-            if (nSymm > 1) {
-                parallelTeam.execute(expandInducedDipolesRegion);
-            }
-            parallelTeam.execute(inducedDipolePreconditionerRegion);
+            applyPreconditioner();
 
             /**
              * Revert to the stored induce dipoles.
@@ -6929,10 +7793,7 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                 /**
                  * Compute preconditioner.
                  */
-                if (nSymm > 1) {
-                    parallelTeam.execute(expandInducedDipolesRegion);
-                }
-                parallelTeam.execute(inducedDipolePreconditionerRegion);
+                applyPreconditioner();
 
                 /**
                  * Revert the induced dipoles to the saved values.
@@ -6992,6 +7853,8 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
         if (print) {
             sb.append(format(" Direct:                  %7.4f\n",
                     TO_SECONDS * directTime));
+            sb.append(format(" Preconditioner:          %7.4f\n",
+                    TO_SECONDS * preconditionerTime));
             startTime = System.nanoTime() - startTime;
             sb.append(format(" Total:                   %7.4f",
                     startTime * TO_SECONDS));
@@ -7020,6 +7883,263 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
         return completedSCFCycles;
     }
 
+    /**
+     * Compute the induced dipoles by truncated conjugate gradient (TCG1 or
+     * TCG2), which uses a fixed number of induced field evaluations. If the
+     * gradient is requested, the chain rule induced dipoles are replaced by
+     * the TCG adjoint dipoles, and the vectors of each field evaluation are
+     * saved for the dipole-dipole gradient.
+     *
+     * @return the number of induced field evaluations.
+     */
+    private int scfByTCG(boolean print, long startTime) {
+        long directTime = System.nanoTime() - startTime;
+        /**
+         * Save the direct and chain rule fields, since field[0] and fieldCR[0]
+         * are overwritten by each induced field evaluation.
+         */
+        for (int j = 0; j < 3; j++) {
+            System.arraycopy(field[0][j], 0, tcgField[j], 0, nAtoms);
+            System.arraycopy(fieldCR[0][j], 0, tcgFieldCR[j], 0, nAtoms);
+        }
+        int nPairs = tcgSolver.getPairCount();
+        if (gradient && (tcgPairDipole == null || tcgPairDipole[0].length != nSymm
+                || tcgPairDipole[0][0].length != nAtoms)) {
+            tcgPairDipole = new double[nPairs][nSymm][nAtoms][3];
+            tcgPairAdjoint = new double[nPairs][nSymm][nAtoms][3];
+            tcgPairHessian = new double[nPairs][nAtoms][6];
+            tcgPairAdjointHessian = new double[nPairs][nAtoms][6];
+        }
+
+        long solveTime = -System.nanoTime();
+        tcgSolver.solve(nAtoms, polarizability, tcgField, tcgFieldCR, tcgDipoleField);
+        solveTime += System.nanoTime();
+        int evaluations = tcgSolver.getFieldEvaluations();
+
+        double dipole[][] = tcgSolver.getDipoles();
+        double dipoleCR[][] = tcgSolver.getDipolesCR();
+        long adjointTime = 0;
+        if (gradient) {
+            adjointTime = -System.nanoTime();
+            tcgSolver.adjoint(tcgFieldCR, tcgDipoleField);
+            adjointTime += System.nanoTime();
+            evaluations += tcgSolver.getFieldEvaluations();
+            dipoleCR = tcgSolver.getAdjointDipoles();
+        }
+        for (int i = 0; i < nAtoms; i++) {
+            final double ind[] = inducedDipole[0][i];
+            final double indCR[] = inducedDipoleCR[0][i];
+            for (int j = 0; j < 3; j++) {
+                ind[j] = dipole[j][i];
+                indCR[j] = dipoleCR[j][i];
+            }
+        }
+        if (nSymm > 1) {
+            try {
+                parallelTeam.execute(expandInducedDipolesRegion);
+            } catch (Exception e) {
+                String message = " Exception expanding TCG induced dipoles.";
+                logger.log(Level.SEVERE, message, e);
+            }
+        }
+
+        if (print) {
+            StringBuilder sb = new StringBuilder(format(
+                    "\n Truncated Conjugate Gradient (Order %d, Peek %B)\n",
+                    tcgSolver.getOrder(), tcgSolver.getPeek()));
+            sb.append(format(" Field Evaluations:       %7d\n", evaluations));
+            sb.append(format(" Direct:                  %7.4f\n", TO_SECONDS * directTime));
+            sb.append(format(" Dipoles:                 %7.4f\n", TO_SECONDS * solveTime));
+            if (gradient) {
+                sb.append(format(" Adjoint:                 %7.4f\n", TO_SECONDS * adjointTime));
+            }
+            startTime = System.nanoTime() - startTime;
+            sb.append(format(" Total:                   %7.4f", startTime * TO_SECONDS));
+            logger.info(sb.toString());
+        }
+        return evaluations;
+    }
+
+    /**
+     * Compute the induced dipoles from the inertial extended Lagrangian
+     * auxiliary dipoles, followed by zero or one Jacobi steps. The target of
+     * the auxiliary dynamics is one Jacobi step from the auxiliary dipoles.
+     *
+     * @return the number of induced field evaluations, including the final
+     * evaluation that gives the target dipoles and the gradient.
+     */
+    private int scfByIEL(boolean print, long startTime) {
+        long directTime = System.nanoTime() - startTime;
+        inertialExtendedLagrangian.getAuxiliaryDipoles(inducedDipole[0], inducedDipoleCR[0]);
+        int cycles = inertialExtendedLagrangian.getScfCycles();
+        double eps = 0.0;
+        if (cycles > 0) {
+            computeInduceDipoleField();
+            eps = jacobiStep(ielTarget, ielTargetCR);
+            for (int i = 0; i < nAtoms; i++) {
+                System.arraycopy(ielTarget[i], 0, inducedDipole[0][i], 0, 3);
+                System.arraycopy(ielTargetCR[i], 0, inducedDipoleCR[0][i], 0, 3);
+            }
+        }
+
+        /**
+         * Find the final induced dipole field, which without a Jacobi step
+         * also gives the target dipoles.
+         */
+        computeInduceDipoleField();
+        if (cycles == 0) {
+            eps = jacobiStep(ielTarget, ielTargetCR);
+        }
+        inertialExtendedLagrangian.setTarget(nAtoms, ielTarget, ielTargetCR);
+        int evaluations = cycles + 1;
+
+        if (print) {
+            StringBuilder sb = new StringBuilder(format("\n Inertial Extended Lagrangian\n"));
+            sb.append(format(" Field Evaluations:       %7d\n", evaluations));
+            sb.append(format(" RMS Residual (Debye):    %7.4f\n", MultipoleType.DEBYE * sqrt(eps / (double) nAtoms)));
+            sb.append(format(" Direct:                  %7.4f\n", TO_SECONDS * directTime));
+            startTime = System.nanoTime() - startTime;
+            sb.append(format(" Total:                   %7.4f", startTime * TO_SECONDS));
+            logger.info(sb.toString());
+        }
+        return evaluations;
+    }
+
+    /**
+     * Apply one Jacobi step to the current induced dipoles using the induced
+     * field in field[0] and fieldCR[0].
+     *
+     * @param dipole The updated induced dipoles [nAtoms][3].
+     * @param dipoleCR The updated chain rule induced dipoles [nAtoms][3].
+     * @return the summed squared change of the induced dipoles.
+     */
+    private double jacobiStep(double dipole[][], double dipoleCR[][]) {
+        double eps = 0.0;
+        for (int i = 0; i < nAtoms; i++) {
+            final double ind[] = inducedDipole[0][i];
+            final double indCR[] = inducedDipoleCR[0][i];
+            final double polar = polarizability[i];
+            for (int j = 0; j < 3; j++) {
+                final double mu = directDipole[i][j] + polar * field[0][j][i];
+                final double muCR = directDipoleCR[i][j] + polar * fieldCR[0][j][i];
+                final double d = mu - ind[j];
+                eps += d * d;
+                dipole[i][j] = mu;
+                dipoleCR[i][j] = muCR;
+            }
+        }
+        return eps;
+    }
+
+    /**
+     * Build the block preconditioner for the current coordinates, which are
+     * fixed during the SCF.
+     */
+    private void initPreconditioner() {
+        preconditionerTime = -System.nanoTime();
+        if (blockPreconditioner != null) {
+            blockPreconditioner.setBlocks(nAtoms, molecule, use, polarizability);
+            blockPreconditioner.factor(parallelTeam, coordinates[0][0], coordinates[0][1], coordinates[0][2],
+                    crystal, ipdamp, thole, preconditionerEwald);
+            if (coarseReciprocalSpace != null) {
+                coarseReciprocalSpace.computeBSplines();
+                coarseReciprocalSpace.assignAtomsToGrid();
+            }
+        }
+        preconditionerTime += System.nanoTime();
+    }
+
+    /**
+     * Apply the preconditioner to the residual fields rsd and rsdCR. For CG
+     * the short range field of the polarizability scaled residual (loaded
+     * into the induced dipole arrays) is computed here and combined with the
+     * residual by the PCG regions. The block preconditioners set rsdPre to
+     * B<sup>-1</sup> (rsd + R y) with y = B<sup>-1</sup> rsd, where B holds
+     * the dense block matrices and R is the field operator between blocks:
+     * the short range field within the preconditioner cutoff. CG_TWO_LEVEL
+     * adds the coarse weight times the long range remainder, which is the
+     * real space Ewald field minus the short range field, plus the
+     * reciprocal space and self field evaluated on a coarse mesh, less the
+     * part within each block. This one term expansion of the inverse
+     * overshoots the collective long range modes, so the full remainder
+     * (weight 1.0) converges no faster than the short range field alone.
+     *
+     * @throws Exception if a parallel region fails.
+     */
+    private void applyPreconditioner() throws Exception {
+        preconditionerTime -= System.nanoTime();
+        switch (scfAlgorithm) {
+            case CG_BLOCK:
+            case CG_TWO_LEVEL:
+                blockPreconditioner.solve(parallelTeam, rsd, rsdPre, rsdCR, rsdPreCR);
+                blockCorrection();
+                break;
+            case CG:
+            default:
+                if (nSymm > 1) {
+                    parallelTeam.execute(expandInducedDipolesRegion);
+                }
+                parallelTeam.execute(inducedDipolePreconditionerRegion);
+        }
+        preconditionerTime += System.nanoTime();
+    }
+
+    /**
+     * Add the field between blocks of the block preconditioned residual to
+     * the residual and solve the blocks again. The induced dipole arrays and
+     * the field arrays are used as scratch space; the PCG regions restore the
+     * induced dipoles afterward.
+     *
+     * @throws Exception if a parallel region fails.
+     */
+    private void blockCorrection() throws Exception {
+        if (blockField == null || blockField[0].length < nAtoms) {
+            blockField = new double[3][nAtoms];
+            blockFieldCR = new double[3][nAtoms];
+            if (coarseReciprocalSpace != null) {
+                coarsePhi = new double[nAtoms][tensorCount];
+                coarsePhiCR = new double[nAtoms][tensorCount];
+            }
+        }
+        for (int i = 0; i < nAtoms; i++) {
+            inducedDipole[0][i][0] = rsdPre[0][i];
+            inducedDipole[0][i][1] = rsdPre[1][i];
+            inducedDipole[0][i][2] = rsdPre[2][i];
+            inducedDipoleCR[0][i][0] = rsdPreCR[0][i];
+            inducedDipoleCR[0][i][1] = rsdPreCR[1][i];
+            inducedDipoleCR[0][i][2] = rsdPreCR[2][i];
+        }
+        if (nSymm > 1) {
+            parallelTeam.execute(expandInducedDipolesRegion);
+        }
+        parallelTeam.execute(inducedDipolePreconditionerRegion);
+        for (int j = 0; j < 3; j++) {
+            for (int i = 0; i < nAtoms; i++) {
+                blockField[j][i] = rsd[j][i] + field[0][j][i];
+                blockFieldCR[j][i] = rsdCR[j][i] + fieldCR[0][j][i];
+            }
+        }
+        if (coarseReciprocalSpace != null) {
+            coarseReciprocalSpace.splineInducedDipoles(inducedDipole, inducedDipoleCR, use);
+            coarseReciprocalSpace.inducedDipoleConvolution();
+            coarseReciprocalSpace.computeInducedPhi(coarsePhi, coarsePhiCR);
+            final double w = coarseWeight;
+            for (int i = 0; i < nAtoms; i++) {
+                final double phi[] = coarsePhi[i];
+                final double phiCR[] = coarsePhiCR[i];
+                blockField[0][i] += w * (aewald3 * rsdPre[0][i] - phi[t100]);
+                blockField[1][i] += w * (aewald3 * rsdPre[1][i] - phi[t010]);
+                blockField[2][i] += w * (aewald3 * rsdPre[2][i] - phi[t001]);
+                blockFieldCR[0][i] += w * (aewald3 * rsdPreCR[0][i] - phiCR[t100]);
+                blockFieldCR[1][i] += w * (aewald3 * rsdPreCR[1][i] - phiCR[t010]);
+                blockFieldCR[2][i] += w * (aewald3 * rsdPreCR[2][i] - phiCR[t001]);
+            }
+            // The block matrices already hold the long range part within each block.
+            blockPreconditioner.screenedField(parallelTeam, aewald, w, rsdPre, blockField, rsdPreCR, blockFieldCR);
+        }
+        blockPreconditioner.solve(parallelTeam, blockField, rsdPre, blockFieldCR, rsdPreCR);
+    }
+
     /**
      * Evaluate the real space field due to induced dipoles using a short cutoff
      * (~3-4 A).
@@ -7029,6 +8149,12 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
         private final InducedPreconditionerFieldLoop inducedPreconditionerFieldLoop[];
         private final ReduceLoop reduceLoop[];
         private double aewaldCopy;
+        /**
+         * The two-level preconditioner blends the real space Ewald tensor
+         * into the short range tensor with this weight.
+         */
+        private double weight;
+        private double an0Weight, an1Weight;
 
         public InducedDipolePreconditionerRegion(int threadCount) {
             inducedPreconditionerFieldLoop = new InducedPreconditionerFieldLoop[threadCount];
@@ -7043,6 +8169,10 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             // Set the Ewald parameter to a value that optimizes the preconditioner.
             aewald = preconditionerEwald;
             setEwaldParameters(off, aewald);
+
+            weight = (coarseReciprocalSpace != null) ? coarseWeight : 0.0;
+            an0Weight = 2.0 * aewaldCopy / SQRT_PI;
+            an1Weight = 2.0 * aewaldCopy * aewaldCopy * an0Weight;
         }
 
         @Override
@@ -7052,6 +8182,19 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             setEwaldParameters(off, aewald);
         }
 
+        /**
+         * Compute the real space Ewald terms bn1 and bn2 of the SCF Ewald
+         * coefficient.
+         */
+        private void realSpaceTerms(double r, double bn[]) {
+            final double rr1 = 1.0 / r;
+            final double rr2 = rr1 * rr1;
+            final double ralpha = aewaldCopy * r;
+            final double exp2a = exp(-ralpha * ralpha);
+            bn[0] = (erfc(ralpha) * rr1 + an0Weight * exp2a) * rr2;
+            bn[1] = (3.0 * bn[0] + an1Weight * exp2a) * rr2;
+        }
+
         @Override
         public void run() {
             int threadIndex = getThreadIndex();
@@ -7074,6 +8217,8 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
             private double ind[][], indCR[][];
             private double fX[], fY[], fZ[];
             private double fXCR[], fYCR[], fZCR[];
+            private final double bn[] = new double[3];
+            private final double bnWeight[] = new double[2];
 
             public InducedPreconditionerFieldLoop() {
             }
@@ -7121,6 +8266,8 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                  */
                 int lists[][] = preconditionerLists[0];
                 int counts[] = preconditionerCounts[0];
+                // The block preconditioners solve the pairs within a block exactly.
+                final int block[] = (blockPreconditioner != null) ? blockPreconditioner.getBlockIndex() : null;
                 for (int i = lb; i <= ub; i++) {
                     if (!use[i]) {
                         continue;
@@ -7149,9 +8296,10 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                      */
                     final int list[] = lists[i];
                     final int npair = counts[i];
+                    final int blocki = (block != null) ? block[i] : -1;
                     for (int j = 0; j < npair; j++) {
                         final int k = list[j];
-                        if (!use[k]) {
+                        if (!use[k] || (blocki >= 0 && block[k] == blocki)) {
                             continue;
                         }
                         final double pdk = ipdamp[k];
@@ -7166,13 +8314,25 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                         final double r = sqrt(r2);
                         final double rr1 = 1.0 / r;
                         final double rr2 = rr1 * rr1;
-                        final double ralpha = aewald * r;
-                        final double exp2a = exp(-ralpha * ralpha);
-                        final double bn0 = erfc(ralpha) * rr1;
-                        // final double exp2a = 1.0;
-                        // final double bn0 = rr1;
-                        final double bn1 = (bn0 + an0 * exp2a) * rr2;
-                        final double bn2 = (3.0 * bn1 + an1 * exp2a) * rr2;
+                        double bn0, bn1, bn2;
+                        if (ewaldTable != null && ewaldTable.interpolate(r, bn)) {
+                            bn0 = bn[0];
+                            bn1 = bn[1];
+                            bn2 = bn[2];
+                        } else {
+                            final double ralpha = aewald * r;
+                            final double exp2a = exp(-ralpha * ralpha);
+                            bn0 = erfc(ralpha) * rr1;
+                            // final double exp2a = 1.0;
+                            // final double bn0 = rr1;
+                            bn1 = (bn0 + an0 * exp2a) * rr2;
+                            bn2 = (3.0 * bn1 + an1 * exp2a) * rr2;
+                        }
+                        if (weight > 0.0) {
+                            realSpaceTerms(r, bnWeight);
+                            bn1 += weight * (bnWeight[0] - bn1);
+                            bn2 += weight * (bnWeight[1] - bn2);
+                        }
                         double scale3 = 1.0;
                         double scale5 = 1.0;
                         double damp = pdi * pdk;
@@ -7320,13 +8480,25 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                             final double r = sqrt(r2);
                             final double rr1 = 1.0 / r;
                             final double rr2 = rr1 * rr1;
-                            final double ralpha = aewald * r;
-                            final double exp2a = exp(-ralpha * ralpha);
-                            final double bn0 = erfc(ralpha) * rr1;
-                            //final double exp2a = 1.0;
-                            //final double bn0 = rr1;
-                            final double bn1 = (bn0 + an0 * exp2a) * rr2;
-                            final double bn2 = (3.0 * bn1 + an1 * exp2a) * rr2;
+                            double bn0, bn1, bn2;
+                            if (ewaldTable != null && ewaldTable.interpolate(r, bn)) {
+                                bn0 = bn[0];
+                                bn1 = bn[1];
+                                bn2 = bn[2];
+                            } else {
+                                final double ralpha = aewald * r;
+                                final double exp2a = exp(-ralpha * ralpha);
+                                bn0 = erfc(ralpha) * rr1;
+                                //final double exp2a = 1.0;
+                                //final double bn0 = rr1;
+                                bn1 = (bn0 + an0 * exp2a) * rr2;
+                                bn2 = (3.0 * bn1 + an1 * exp2a) * rr2;
+                            }
+                            if (weight > 0.0) {
+                                realSpaceTerms(r, bnWeight);
+                                bn1 += weight * (bnWeight[0] - bn1);
+                                bn2 += weight * (bnWeight[1] - bn2);
+                            }
                             double scale3 = 1.0;
                             double scale5 = 1.0;
                             double damp = pdi * pdk;
@@ -7578,16 +8750,19 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                     inducedDipoleCR[0][i][2] = vecCR[2][i];
 
                     /**
-                     * Set initial conjugate vector (induced dipoles).
+                     * Set initial conjugate vector (induced dipoles). The
+                     * block preconditioners have already set rsdPre.
                      */
-                    double udiag = 2.0;
-                    double polar = polarizability[i];
-                    rsdPre[0][i] = polar * (field[0][0][i] + udiag * rsd[0][i]);
-                    rsdPre[1][i] = polar * (field[0][1][i] + udiag * rsd[1][i]);
-                    rsdPre[2][i] = polar * (field[0][2][i] + udiag * rsd[2][i]);
-                    rsdPreCR[0][i] = polar * (fieldCR[0][0][i] + udiag * rsdCR[0][i]);
-                    rsdPreCR[1][i] = polar * (fieldCR[0][1][i] + udiag * rsdCR[1][i]);
-                    rsdPreCR[2][i] = polar * (fieldCR[0][2][i] + udiag * rsdCR[2][i]);
+                    if (blockPreconditioner == null) {
+                        double udiag = 2.0;
+                        double polar = polarizability[i];
+                        rsdPre[0][i] = polar * (field[0][0][i] + udiag * rsd[0][i]);
+                        rsdPre[1][i] = polar * (field[0][1][i] + udiag * rsd[1][i]);
+                        rsdPre[2][i] = polar * (field[0][2][i] + udiag * rsd[2][i]);
+                        rsdPreCR[0][i] = polar * (fieldCR[0][0][i] + udiag * rsdCR[0][i]);
+                        rsdPreCR[1][i] = polar * (fieldCR[0][1][i] + udiag * rsdCR[1][i]);
+                        rsdPreCR[2][i] = polar * (fieldCR[0][2][i] + udiag * rsdCR[2][i]);
+                    }
                     conj[0][i] = rsdPre[0][i];
                     conj[1][i] = rsdPre[1][i];
                     conj[2][i] = rsdPre[2][i];
@@ -7863,13 +9038,15 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
                      * Compute the dot product of the residual and
                      * preconditioner.
                      */
-                    double polar = polarizability[i];
-                    rsdPre[0][i] = polar * (field[0][0][i] + udiag * rsd[0][i]);
-                    rsdPre[1][i] = polar * (field[0][1][i] + udiag * rsd[1][i]);
-                    rsdPre[2][i] = polar * (field[0][2][i] + udiag * rsd[2][i]);
-                    rsdPreCR[0][i] = polar * (fieldCR[0][0][i] + udiag * rsdCR[0][i]);
-                    rsdPreCR[1][i] = polar * (fieldCR[0][1][i] + udiag * rsdCR[1][i]);
-                    rsdPreCR[2][i] = polar * (fieldCR[0][2][i] + udiag * rsdCR[2][i]);
+                    if (blockPreconditioner == null) {
+                        double polar = polarizability[i];
+                        rsdPre[0][i] = polar * (field[0][0][i] + udiag * rsd[0][i]);
+                        rsdPre[1][i] = polar * (field[0][1][i] + udiag * rsd[1][i]);
+                        rsdPre[2][i] = polar * (field[0][2][i] + udiag * rsd[2][i]);
+                        rsdPreCR[0][i] = polar * (fieldCR[0][0][i] + udiag * rsdCR[0][i]);
+                        rsdPreCR[1][i] = polar * (fieldCR[0][1][i] + udiag * rsdCR[1][i]);
+                        rsdPreCR[2][i] = polar * (fieldCR[0][2][i] + udiag * rsdCR[2][i]);
+                    }
                     dot += rsd[0][i] * rsdPre[0][i]
                             + rsd[1][i] * rsdPre[1][i]
                             + rsd[2][i] * rsdPre[2][i];
@@ -8030,6 +9207,260 @@ public class ParticleMeshEwaldCart extends ParticleMeshEwald implements LambdaIn
         }
     }
 
+    /**
+     * The induced dipole field operator of the TCG solver. Each evaluation
+     * loads the two sets of dipoles into the induced and chain rule induced
+     * dipoles and computes their total field. If the gradient is requested,
+     * the first set (expanded to symmetry mates) and its reciprocal space
+     * potential Hessian are saved for the dipole-dipole gradient.
+     */
+    private class TCGDipoleField implements TruncatedConjugateGradient.DipoleField {
+
+        @Override
+        public void field(double dipole[][], double dipoleCR[][], double f[][], double fCR[][],
+                int pair, boolean adjoint) {
+            final double induced0[][] = inducedDipole[0];
+            final double inducedCR0[][] = inducedDipoleCR[0];
+            for (int i = 0; i < nAtoms; i++) {
+                final double ind[] = induced0[i];
+                final double indCR[] = inducedCR0[i];
+                for (int j = 0; j < 3; j++) {
+                    ind[j] = dipole[j][i];
+                    indCR[j] = dipoleCR[j][i];
+                }
+            }
+            computeInduceDipoleField();
+            for (int j = 0; j < 3; j++) {
+                System.arraycopy(field[0][j], 0, f[j], 0, nAtoms);
+                System.arraycopy(fieldCR[0][j], 0, fCR[j], 0, nAtoms);
+            }
+            if (!gradient) {
+                return;
+            }
+            final double mates[][][] = (adjoint) ? tcgPairAdjoint[pair] : tcgPairDipole[pair];
+            for (int iSymm = 0; iSymm < nSymm; iSymm++) {
+                for (int i = 0; i < nAtoms; i++) {
+                    System.arraycopy(inducedDipole[iSymm][i], 0, mates[iSymm][i], 0, 3);
+                }
+            }
+            if (reciprocalSpaceTerm && aewald > 0.0) {
+                final double hessian[][] = (adjoint) ? tcgPairAdjointHessian[pair] : tcgPairHessian[pair];
+                for (int i = 0; i < nAtoms; i++) {
+                    final double phi[] = cartesianDipolePhi[i];
+                    final double h[] = hessian[i];
+                    h[0] = phi[t200];
+                    h[1] = phi[t020];
+                    h[2] = phi[t002];
+                    h[3] = phi[t110];
+                    h[4] = phi[t101];
+                    h[5] = phi[t011];
+                }
+            }
+        }
+    }
+
+    /**
+     * The dipole-dipole contribution to the TCG polarization gradient,
+     * -1/2 Sum_k yk . dT . vk, where vk and yk are the forward and adjoint
+     * vectors of the k-th induced field evaluation.
+     */
+    private class TCGGradientRegion extends ParallelRegion {
+
+        private final TCGGradientLoop tcgGradientLoop[];
+
+        public TCGGradientRegion(int nt) {
+            tcgGradientLoop = new TCGGradientLoop[nt];
+        }
+
+        @Override
+        public void run() {
+            int threadIndex = getThreadIndex();
+            if (tcgGradientLoop[threadIndex] == null) {
+                tcgGradientLoop[threadIndex] = new TCGGradientLoop();
+            }
+            try {
+                execute(0, nAtoms - 1, tcgGradientLoop[threadIndex]);
+            } catch (Exception e) {
+                String message = "Fatal exception computing the TCG gradient in thread " + threadIndex + "\n";
+                logger.log(Level.SEVERE, message, e);
+            }
+        }
+
+        private class TCGGradientLoop extends IntegerForLoop {
+
+            private double gX[], gY[], gZ[];
+            private final double dx[] = new double[3];
+            private final double g[] = new double[3];
+            private final double transOp[][] = new double[3][3];
+            private final double bn[] = new double[4];
+            /**
+             * The derivative of the dipole field tensor is
+             * b (a.c) r + c (a.r)(c.r) r + b [(c.r) a + (a.r) c].
+             */
+            private double tb, tc;
+
+            @Override
+            public IntegerSchedule schedule() {
+                return realSpaceSchedule;
+            }
+
+            @Override
+            public void start() {
+                int threadIndex = getThreadIndex();
+                gX = grad[threadIndex][0];
+                gY = grad[threadIndex][1];
+                gZ = grad[threadIndex][2];
+            }
+
+            @Override
+            public void run(int lb, int ub) {
+                final double x[] = coordinates[0][0];
+                final double y[] = coordinates[0][1];
+                final double z[] = coordinates[0][2];
+                final int nPairs = tcgSolver.getPairCount();
+                final double scale = 0.5 * ELECTRIC * polarizationScale;
+                for (int iSymm = 0; iSymm < nSymm; iSymm++) {
+                    if (iSymm > 0) {
+                        SymOp symOp = crystal.spaceGroup.getSymOp(iSymm);
+                        crystal.getTransformationOperator(symOp, transOp);
+                    }
+                    final int lists[][] = realSpaceLists[iSymm];
+                    final int counts[] = realSpaceCounts[iSymm];
+                    final double xs[] = coordinates[iSymm][0];
+                    final double ys[] = coordinates[iSymm][1];
+                    final double zs[] = coordinates[iSymm][2];
+                    for (int i = lb; i <= ub; i++) {
+                        if (!use[i]) {
+                            continue;
+                        }
+                        final double xi = x[i];
+                        final double yi = y[i];
+                        final double zi = z[i];
+                        final double pdi = ipdamp[i];
+                        final double pti = thole[i];
+                        final int list[] = lists[i];
+                        final int npair = counts[i];
+                        for (int j = 0; j < npair; j++) {
+                            final int k = list[j];
+                            if (!use[k]) {
+                                continue;
+                            }
+                            dx[0] = xs[k] - xi;
+                            dx[1] = ys[k] - yi;
+                            dx[2] = zs[k] - zi;
+                            final double r2 = crystal.image(dx);
+                            tensorDerivative(r2, pdi, pti, k);
+                            g[0] = 0.0;
+                            g[1] = 0.0;
+                            g[2] = 0.0;
+                            for (int p = 0; p < nPairs; p++) {
+                                addPair(tcgPairAdjoint[p][0][i], tcgPairDipole[p][iSymm][k]);
+                                addPair(tcgPairAdjoint[p][iSymm][k], tcgPairDipole[p][0][i]);
+                            }
+                            double selfScale = (iSymm > 0 && i == k) ? 0.5 : 1.0;
+                            final double gx = scale * selfScale * g[0];
+                            final double gy = scale * selfScale * g[1];
+                            final double gz = scale * selfScale * g[2];
+                            gX[i] += gx;
+                            gY[i] += gy;
+                            gZ[i] += gz;
+                            if (iSymm == 0) {
+                                gX[k] -= gx;
+                                gY[k] -= gy;
+                                gZ[k] -= gz;
+                            } else {
+                                gX[k] -= (gx * transOp[0][0] + gy * transOp[1][0] + gz * transOp[2][0]);
+                                gY[k] -= (gx * transOp[0][1] + gy * transOp[1][1] + gz * transOp[2][1]);
+                                gZ[k] -= (gx * transOp[0][2] + gy * transOp[1][2] + gz * transOp[2][2]);
+                            }
+                        }
+                    }
+                }
+                if (!reciprocalSpaceTerm || aewald <= 0.0) {
+                    return;
+                }
+                /**
+                 * The reciprocal space contribution is -(Hv y + Hy v), where
+                 * Hv and Hy are the potential Hessians of v and y.
+                 */
+                for (int i = lb; i <= ub; i++) {
+                    if (!use[i]) {
+                        continue;
+                    }
+                    double gx = 0.0;
+                    double gy = 0.0;
+                    double gz = 0.0;
+                    for (int p = 0; p < nPairs; p++) {
+                        final double v[] = tcgPairDipole[p][0][i];
+                        final double u[] = tcgPairAdjoint[p][0][i];
+                        final double hv[] = tcgPairHessian[p][i];
+                        final double hu[] = tcgPairAdjointHessian[p][i];
+                        gx += hv[0] * u[0] + hv[3] * u[1] + hv[4] * u[2]
+                                + hu[0] * v[0] + hu[3] * v[1] + hu[4] * v[2];
+                        gy += hv[3] * u[0] + hv[1] * u[1] + hv[5] * u[2]
+                                + hu[3] * v[0] + hu[1] * v[1] + hu[5] * v[2];
+                        gz += hv[4] * u[0] + hv[5] * u[1] + hv[2] * u[2]
+                                + hu[4] * v[0] + hu[5] * v[1] + hu[2] * v[2];
+                    }
+                    gX[i] += scale * gx;
+                    gY[i] += scale * gy;
+                    gZ[i] += scale * gz;
+                }
+            }
+
+            /**
+             * Add the derivative of a . T . c with respect to the separation
+             * vector to g.
+             */
+            private void addPair(final double a[], final double c[]) {
+                final double ac = a[0] * c[0] + a[1] * c[1] + a[2] * c[2];
+                final double ar = a[0] * dx[0] + a[1] * dx[1] + a[2] * dx[2];
+                final double cr = c[0] * dx[0] + c[1] * dx[1] + c[2] * dx[2];
+                final double s = tb * ac + tc * ar * cr;
+                g[0] += s * dx[0] + tb * (cr * a[0] + ar * c[0]);
+                g[1] += s * dx[1] + tb * (cr * a[1] + ar * c[1]);
+                g[2] += s * dx[2] + tb * (cr * a[2] + ar * c[2]);
+            }
+
+            /**
+             * Compute the coefficients of the derivative of the Ewald screened,
+             * Thole damped dipole field tensor (see pairTensor of the induced
+             * real space field loop).
+             */
+            private void tensorDerivative(final double r2, final double pdi,
+                    final double pti, final int k) {
+                final double r = sqrt(r2);
+                final double rr1 = 1.0 / r;
+                final double rr2 = rr1 * rr1;
+                final double bn2, bn3;
+                if (ewaldTable != null && ewaldTable.interpolate(r, bn)) {
+                    bn2 = bn[2];
+                    bn3 = bn[3];
+                } else {
+                    final double ralpha = aewald * r;
+                    final double exp2a = exp(-ralpha * ralpha);
+                    final double bn0 = erfc(ralpha) * rr1;
+                    final double bn1 = (bn0 + an0 * exp2a) * rr2;
+                    bn2 = (3.0 * bn1 + an1 * exp2a) * rr2;
+                    bn3 = (5.0 * bn2 + an2 * exp2a) * rr2;
+                }
+                double damp = pdi * ipdamp[k];
+                final double pgamma = min(pti, thole[k]);
+                final double rdamp = r * damp;
+                damp = -pgamma * rdamp * rdamp * rdamp;
+                double rr5 = 0.0;
+                double rr7 = 0.0;
+                if (damp > -50.0) {
+                    final double expdamp = exp(damp);
+                    rr5 = 3.0 * rr1 * rr2 * rr2 * expdamp * (1.0 - damp);
+                    rr7 = 15.0 * rr1 * rr2 * rr2 * rr2 * expdamp * (1.0 - damp + 0.6 * damp * damp);
+                }
+                tb = bn2 - rr5;
+                tc = rr7 - bn3;
+            }
+        }
+    }
+
     /**
      * Save the current converged mutual induced dipoles.
      */
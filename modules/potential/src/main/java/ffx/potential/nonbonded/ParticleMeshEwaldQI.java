@@ -62,6 +62,7 @@ import edu.rit.util.Range;
 
 import ffx.crystal.Crystal;
 import ffx.crystal.SymOp;
+import ffx.numerics.EwaldTable;
 import ffx.numerics.MultipoleTensor;
 import ffx.numerics.MultipoleTensor.OPERATOR;
 import ffx.numerics.MultipoleTensorQI;
@@ -82,6 +83,7 @@ import ffx.potential.parameters.ForceField.ForceFieldString;
 import ffx.potential.parameters.MultipoleType;
 import ffx.potential.parameters.PolarizeType;
 import ffx.potential.utils.EnergyException;
+import ffx.utilities.MetricsRegistry;
 import static ffx.numerics.Erf.erfc;
 import static ffx.numerics.MultipoleTensor.checkDampingCriterion;
 import static ffx.numerics.VectorMath.cross;
@@ -415,7 +417,7 @@ public class ParticleMeshEwaldQI extends ParticleMeshEwald {
     private boolean use[];
     private Crystal vaporCrystal;
     private int vaporLists[][][];
-    private IntegerSchedule vaporPermanentSchedule;
+    private PairwiseSchedule vaporPermanentSchedule;
     private IntegerSchedule vaporEwaldSchedule;
     private Range vacuumRanges[];
     /**
@@ -504,6 +506,11 @@ public class ParticleMeshEwaldQI extends ParticleMeshEwald {
     private double aewald3;
     private double off;
     private double off2;
+    /**
+     * Use an EwaldTable for the screened Coulomb tensor source terms
+     * (EWALD_TABLE keyword or the "ewald-table" property).
+     */
+    private final boolean useEwaldTable;
 
     /**
      * PCG Variables.
@@ -545,6 +552,11 @@ public class ParticleMeshEwaldQI extends ParticleMeshEwald {
      * Gradient array for each thread. [threadID][X/Y/Z][atomID]
      */
     private double grad[][][];
+    /**
+     * If true, the reduced gradient is not added to the atoms by the
+     * ReduceRegion; the addDeferredGradient method must be called.
+     */
+    private boolean deferGradient = false;
     /**
      * Torque array for each thread. [threadID][X/Y/Z][atomID]
      */
@@ -608,7 +620,7 @@ public class ParticleMeshEwaldQI extends ParticleMeshEwald {
      */
     private final ParallelTeam fftTeam;
     private final boolean gpuFFT;
-    private IntegerSchedule permanentSchedule;
+    private PairwiseSchedule permanentSchedule;
     private NeighborList neighborList;
     private final InitializationRegion initializationRegion;
     private final PermanentFieldRegion permanentFieldRegion;
@@ -668,8 +680,17 @@ public class ParticleMeshEwaldQI extends ParticleMeshEwald {
         this.parallelTeam = parallelTeam;
         this.neighborList = neighborList;
         this.elecForm = elecForm;
+        if (neighborList.getCompactNeighborList() != null) {
+            logger.warning(" Compact neighbor lists are not supported by the QI frame;"
+                    + " the shared neighbor list (including van der Waals) will use per-atom lists.");
+            neighborList.setCompact(false);
+        }
         neighborLists = neighborList.getNeighborList();
-        permanentSchedule = neighborList.getPairwiseSchedule();
+        /**
+         * The Van der Waals term may run concurrently with particle mesh Ewald,
+         * so the neighbor list schedule is shared rather than reused.
+         */
+        permanentSchedule = neighborList.getPairwiseSchedule().share();
         nAtoms = atoms.length;
         nSymm = crystal.spaceGroup.getNumberOfSymOps();
         maxThreads = parallelTeam.getThreadCount();
@@ -714,6 +735,7 @@ public class ParticleMeshEwaldQI extends ParticleMeshEwald {
         double ewaldPrecision = forceField.getDouble(ForceFieldDouble.EWALD_PRECISION, 1.0e-8);
         aewald = forceField.getDouble(ForceFieldDouble.EWALD_ALPHA, ewaldCoefficient(off, ewaldPrecision));
         setEwaldParameters(off, aewald);
+        useEwaldTable = forceField.getBoolean(ForceFieldBoolean.EWALD_TABLE, EwaldTable.isEnabled());
 
         reciprocalSpaceTerm = forceField.getBoolean(ForceFieldBoolean.RECIPTERM, true);
 
@@ -741,6 +763,12 @@ public class ParticleMeshEwaldQI extends ParticleMeshEwald {
             scfAlgorithm = SCFAlgorithm.CG;
         }
 
+        if (scfAlgorithm == SCFAlgorithm.CG_BLOCK || scfAlgorithm == SCFAlgorithm.CG_TWO_LEVEL
+                || scfAlgorithm.isTruncated()) {
+            logger.info(String.format(" SCF algorithm %s is only available for Cartesian PME; using CG.", scfAlgorithm));
+            scfAlgorithm = SCFAlgorithm.CG;
+        }
+
         generalizedKirkwoodTerm = forceField.getBoolean(ForceFieldBoolean.GKTERM, false);
         if (generalizedKirkwoodTerm && scfAlgorithm == SCFAlgorithm.CG) {
             scfAlgorithm = SCFAlgorithm.SOR;
@@ -902,11 +930,11 @@ public class ParticleMeshEwaldQI extends ParticleMeshEwald {
         String temp = forceField.getString(ForceField.ForceFieldString.FFT_METHOD, "PJ");
         FFTMethod method;
         try {
-            method = ReciprocalSpace.FFTMethod.valueOf(temp.toUpperCase().trim());
+            method = ReciprocalSpace.FFTMethod.valueOf(temp.toUpperCase().trim().replace('-', '_'));
         } catch (Exception e) {
             method = ReciprocalSpace.FFTMethod.PJ;
         }
-        gpuFFT = method != FFTMethod.PJ;
+        gpuFFT = method == FFTMethod.CUDA || method == FFTMethod.OPENCL;
 
         if (lambdaTerm) {
             shareddEdLambda = new SharedDouble();
@@ -1298,6 +1326,41 @@ public class ParticleMeshEwaldQI extends ParticleMeshEwald {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDeferGradient(boolean deferGradient) {
+        this.deferGradient = deferGradient;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addDeferredGradient() {
+        if (!deferGradient || !gradient) {
+            return;
+        }
+        addGradient(0, nAtoms - 1);
+    }
+
+    /**
+     * Add the reduced gradient of atoms lb through ub to the Atom objects.
+     *
+     * @param lb The first atom.
+     * @param ub The last atom.
+     */
+    private void addGradient(int lb, int ub) {
+        final double gx[] = grad[0][0];
+        final double gy[] = grad[0][1];
+        final double gz[] = grad[0][2];
+        for (int i = lb; i <= ub; i++) {
+            Atom ai = atoms[i];
+            ai.addToXYZGradient(gx[i], gy[i], gz[i]);
+        }
+    }
+
     @Override
     public void setCrystal(Crystal crystal) {
         /**
@@ -1663,7 +1726,7 @@ public class ParticleMeshEwaldQI extends ParticleMeshEwald {
         /**
          * Save the current parallelization schedule.
          */
-        IntegerSchedule permanentScheduleBack = permanentSchedule;
+        PairwiseSchedule permanentScheduleBack = permanentSchedule;
         IntegerSchedule ewaldScheduleBack = realSpaceSchedule;
         Range rangesBack[] = realSpaceRanges;
         permanentSchedule = vaporPermanentSchedule;
@@ -2068,6 +2131,7 @@ public class ParticleMeshEwaldQI extends ParticleMeshEwald {
                 iterations = scfByPCG(print, startTime);
                 break;
         }
+        MetricsRegistry.record("pme.scf.iterations", iterations);
 
         return iterations;
     }
@@ -2465,8 +2529,16 @@ public class ParticleMeshEwaldQI extends ParticleMeshEwald {
                     realSpacePermTimes[threadIndex] += System.nanoTime();
                 }
 
+                /**
+                 * The neighbor list schedule has a range for each thread of
+                 * the team that built it, so a team of a different size uses
+                 * a dynamic schedule.
+                 */
                 @Override
                 public IntegerSchedule schedule() {
+                    if (threadCount != permanentSchedule.getThreadCount()) {
+                        return IntegerSchedule.dynamic(10);
+                    }
                     return permanentSchedule;
                 }
 
@@ -3858,6 +3930,11 @@ public class ParticleMeshEwaldQI extends ParticleMeshEwald {
                     coulTensorPolar = new MultipoleTensorQI(OPERATOR.COULOMB, order, aewald);
                 }
                 tholeTensor = new MultipoleTensorQI(OPERATOR.THOLE_FIELD, 4, aewald);
+                if (useEwaldTable && aewald > 0.0) {
+                    EwaldTable ewaldTable = EwaldTable.getTable(aewald, off, order);
+                    scrnTensor.setEwaldTable(ewaldTable);
+                    scrnTensorPolar.setEwaldTable(ewaldTable);
+                }
             }
 
             private void init() {
@@ -5755,9 +5832,8 @@ public class ParticleMeshEwaldQI extends ParticleMeshEwald {
                         }
                     }
                     // Add gradient to Atom objects.
-                    for (int i = lb; i <= ub; i++) {
-                        Atom ai = atoms[i];
-                        ai.addToXYZGradient(gx[i], gy[i], gz[i]);
+                    if (!deferGradient) {
+                        addGradient(lb, ub);
                     }
                 }
                 if (lambdaTerm) {
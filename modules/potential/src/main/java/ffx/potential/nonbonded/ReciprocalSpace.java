@@ -37,10 +37,12 @@
  */
 package ffx.potential.nonbonded;
 
+import java.io.IOException;
 import java.nio.DoubleBuffer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import static java.lang.String.format;
+import static java.util.Arrays.fill;
 
 import static org.apache.commons.math3.util.FastMath.PI;
 import static org.apache.commons.math3.util.FastMath.cos;
@@ -52,15 +54,21 @@ import static org.apache.commons.math3.util.FastMath.round;
 import static org.apache.commons.math3.util.FastMath.sin;
 import static org.apache.commons.math3.util.FastMath.sqrt;
 
+import edu.rit.mp.DoubleBuf;
+import edu.rit.pj.Comm;
 import edu.rit.pj.IntegerForLoop;
 import edu.rit.pj.IntegerSchedule;
 import edu.rit.pj.ParallelRegion;
 import edu.rit.pj.ParallelTeam;
+import edu.rit.pj.reduction.DoubleOp;
+import edu.rit.util.Range;
 
 import ffx.crystal.Crystal;
 import ffx.numerics.MultipoleTensor;
 import ffx.numerics.fft.Complex;
+import ffx.numerics.fft.Complex3DBlocked;
 import ffx.numerics.fft.Complex3DCuda;
+import ffx.numerics.fft.Complex3DDistributed;
 import ffx.numerics.fft.Complex3DOpenCL;
 import ffx.numerics.fft.Complex3DParallel;
 import ffx.numerics.fft.Real3DParallel;
@@ -69,6 +77,7 @@ import ffx.potential.extended.ExtUtils;
 import ffx.potential.parameters.ForceField;
 import ffx.potential.parameters.ForceField.ForceFieldDouble;
 import ffx.potential.parameters.ForceField.ForceFieldInteger;
+import ffx.utilities.MetricsRegistry;
 import static ffx.crystal.Crystal.mod;
 import static ffx.numerics.UniformBSpline.bSpline;
 import static ffx.numerics.UniformBSpline.bSplineDerivatives;
@@ -147,6 +156,14 @@ public class ReciprocalSpace {
      * The b-Spline order to use for discretization to/from the reciprocal grid.
      */
     private final int bSplineOrder;
+    /**
+     * The mesh density (grid points per Angstrom).
+     */
+    private final double meshDensity;
+    /**
+     * If true, the PME_GRID_X/Y/Z keywords override the mesh density.
+     */
+    private final boolean useGridKeywords;
     /**
      * Three derivatives of the potential are needed for AMOEBA. Specifically,
      * the field gradient is used to compute the energy of the quadrupole moment
@@ -171,6 +188,31 @@ public class ReciprocalSpace {
      * fftY * fftZ * 2).
      */
     private int fftSpace;
+    /**
+     * Number of doubles needed for one real grid of a real to complex 3D FFT
+     * ((fftX + 2) * fftY * fftZ).
+     */
+    private int realSpace;
+    /**
+     * Strides between grid points along X, Y and Z; the grid is complex for
+     * the PJ and GPU methods and real for the PJ_REAL method.
+     */
+    private int gridStrideX, gridStrideY, gridStrideZ;
+    /**
+     * Offset from the induced dipole density to the induced dipole chain rule
+     * density: the imaginary part of a complex grid, or a second real grid.
+     */
+    private int inducedOffset;
+    /**
+     * Local Z-plane of the grid for each global Z-plane. For the PJ_DISTRIBUTED
+     * method, this process holds its slab of Z-planes followed by halo planes.
+     */
+    private int gridPlane[];
+    /**
+     * Number of halo planes after the slab of this process that receive
+     * density from the atoms it owns (PJ_DISTRIBUTED).
+     */
+    private int haloPlanes;
     /**
      * Reciprocal space grid. [fftSpace]
      */
@@ -215,20 +257,20 @@ public class ReciprocalSpace {
      * Parallel team instance.
      */
     private final ParallelTeam parallelTeam;
-    private final ParallelTeam fftTeam;
+    private ParallelTeam fftTeam;
     private final BSplineRegion bSplineRegion;
 
     private SpatialDensityRegion spatialDensityRegion;
-    private final SpatialPermanentLoop spatialPermanentLoops[];
-    private final SpatialInducedLoop spatialInducedLoops[];
+    private SpatialPermanentLoop spatialPermanentLoops[];
+    private SpatialInducedLoop spatialInducedLoops[];
 
     private SliceRegion sliceRegion;
-    private final SlicePermanentLoop slicePermanentLoops[];
-    private final SliceInducedLoop sliceInducedLoops[];
+    private SlicePermanentLoop slicePermanentLoops[];
+    private SliceInducedLoop sliceInducedLoops[];
 
     private RowRegion rowRegion;
-    private final RowPermanentLoop rowPermanentLoops[];
-    private final RowInducedLoop rowInducedLoops[];
+    private RowPermanentLoop rowPermanentLoops[];
+    private RowInducedLoop rowInducedLoops[];
 
     /**
      * ExtendedSystem variables
@@ -241,13 +283,13 @@ public class ReciprocalSpace {
      * Number of atoms for a given symmetry operator that a given thread is
      * responsible for applying to the FFT grid. gridAtomCount[nSymm][nThread]
      */
-    private final int gridAtomCount[][];
+    private int gridAtomCount[][];
     /**
      * Atom indices for a given symmetry operator that a given thread is
      * responsible for applying to the FFT grid.
      * gridAtomCount[nSymm][nThread][nAtoms]
      */
-    private final int gridAtomList[][][];
+    private int gridAtomList[][][];
 
     private final PermanentPhiRegion permanentPhiRegion;
     private final PermanentPhiRegion permanentPhiDotRegion;
@@ -274,11 +316,20 @@ public class ReciprocalSpace {
     private Complex3DCuda cudaFFT3D;
     private Complex3DOpenCL clFFT3D;
     private Complex3DParallel pjFFT3D;
+    private Real3DParallel realFFT3D;
+    private Complex3DDistributed distributedFFT3D;
     private GridMethod gridMethod = GridMethod.SPATIAL;
 
+    /**
+     * The PJ_REAL method uses real to complex transforms of Hermitian
+     * symmetric data on the CPU. The PJ_BLOCKED method uses cache blocked
+     * complex transforms on the CPU. The PJ_DISTRIBUTED method decomposes the
+     * grid into Z-slabs across the processes of the world communicator; each
+     * process spreads the atoms whose b-Splines start in its slab.
+     */
     public enum FFTMethod {
 
-        CUDA, OPENCL, PJ
+        CUDA, OPENCL, PJ, PJ_REAL, PJ_BLOCKED, PJ_DISTRIBUTED
     }
 
     public enum GridMethod {
@@ -301,7 +352,33 @@ public class ReciprocalSpace {
     public ReciprocalSpace(ParticleMeshEwald particleMeshEwald,
             Crystal crystal, ForceField forceField, Atom atoms[],
             double aewald, ParallelTeam fftTeam, ParallelTeam parallelTeam) {
+        this(particleMeshEwald, crystal, forceField, atoms, aewald, fftTeam, parallelTeam,
+                forceField.getDouble(ForceFieldDouble.PME_MESH_DENSITY, 1.2), true);
+    }
 
+    /**
+     * Reciprocal Space PME contribution on a mesh of the given density, such
+     * as the coarse mesh of a two-level SCF preconditioner.
+     *
+     * @param particleMeshEwald a
+     * {@link ffx.potential.nonbonded.ParticleMeshEwald} object.
+     * @param crystal a {@link ffx.crystal.Crystal} object.
+     * @param forceField a {@link ffx.potential.parameters.ForceField} object.
+     * @param atoms an array of {@link ffx.potential.bonded.Atom} objects.
+     * @param aewald the Ewald parameter.
+     * @param fftTeam a {@link edu.rit.pj.ParallelTeam} object.
+     * @param parallelTeam a {@link edu.rit.pj.ParallelTeam} object.
+     * @param meshDensity the mesh density (grid points per Angstrom).
+     * @param useGridKeywords if true, the PME_GRID_X/Y/Z keywords override
+     * the mesh density.
+     */
+    public ReciprocalSpace(ParticleMeshEwald particleMeshEwald,
+            Crystal crystal, ForceField forceField, Atom atoms[],
+            double aewald, ParallelTeam fftTeam, ParallelTeam parallelTeam,
+            double meshDensity, boolean useGridKeywords) {
+
+        this.meshDensity = meshDensity;
+        this.useGridKeywords = useGridKeywords;
         this.particleMeshEwald = particleMeshEwald;
         this.crystal = crystal.getUnitCell();
         this.forceField = forceField;
@@ -336,12 +413,25 @@ public class ReciprocalSpace {
         String temp = forceField.getString(ForceField.ForceFieldString.FFT_METHOD, "PJ");
         FFTMethod method;
         try {
-            method = FFTMethod.valueOf(temp.toUpperCase().trim());
+            method = FFTMethod.valueOf(temp.toUpperCase().trim().replace('-', '_'));
         } catch (Exception e) {
             method = FFTMethod.PJ;
         }
         fftMethod = method;
 
+        temp = forceField.getString(ForceField.ForceFieldString.PME_GRID_METHOD, "SPATIAL");
+        GridMethod grid;
+        try {
+            grid = GridMethod.valueOf(temp.toUpperCase().trim());
+        } catch (Exception e) {
+            grid = GridMethod.SPATIAL;
+        }
+        if (grid != GridMethod.SPATIAL && !supportsGridMethods()) {
+            logger.info(format(" Grid method %s is not supported by FFT method %s; using SPATIAL.", grid, fftMethod));
+            grid = GridMethod.SPATIAL;
+        }
+        gridMethod = grid;
+
         bSplineOrder = forceField.getInteger(ForceFieldInteger.PME_ORDER, 5);
 
         /**
@@ -367,52 +457,7 @@ public class ReciprocalSpace {
          * Construct the parallel BSplineRegion, DensityLoops and Phi objects.
          */
         bSplineRegion = new BSplineRegion();
-        switch (gridMethod) {
-            case SPATIAL:
-                spatialPermanentLoops = new SpatialPermanentLoop[threadCount];
-                spatialInducedLoops = new SpatialInducedLoop[threadCount];
-                for (int i = 0; i < threadCount; i++) {
-                    spatialPermanentLoops[i] = new SpatialPermanentLoop(spatialDensityRegion, bSplineRegion);
-                    spatialInducedLoops[i] = new SpatialInducedLoop(spatialDensityRegion, bSplineRegion);
-                }
-                slicePermanentLoops = null;
-                sliceInducedLoops = null;
-                rowPermanentLoops = null;
-                rowInducedLoops = null;
-                gridAtomCount = null;
-                gridAtomList = null;
-                break;
-
-            case ROW:
-                rowPermanentLoops = new RowPermanentLoop[threadCount];
-                rowInducedLoops = new RowInducedLoop[threadCount];
-                for (int i = 0; i < threadCount; i++) {
-                    rowPermanentLoops[i] = new RowPermanentLoop(rowRegion, bSplineRegion);
-                    rowInducedLoops[i] = new RowInducedLoop(rowRegion, bSplineRegion);
-                }
-                gridAtomCount = new int[nSymm][threadCount];
-                gridAtomList = new int[nSymm][threadCount][nAtoms];
-                spatialPermanentLoops = null;
-                spatialInducedLoops = null;
-                slicePermanentLoops = null;
-                sliceInducedLoops = null;
-                break;
-
-            case SLICE:
-            default:
-                slicePermanentLoops = new SlicePermanentLoop[threadCount];
-                sliceInducedLoops = new SliceInducedLoop[threadCount];
-                for (int i = 0; i < threadCount; i++) {
-                    slicePermanentLoops[i] = new SlicePermanentLoop(sliceRegion, bSplineRegion);
-                    sliceInducedLoops[i] = new SliceInducedLoop(sliceRegion, bSplineRegion);
-                }
-                gridAtomCount = new int[nSymm][threadCount];
-                gridAtomList = new int[nSymm][threadCount][nAtoms];
-                spatialPermanentLoops = null;
-                spatialInducedLoops = null;
-                rowPermanentLoops = null;
-                rowInducedLoops = null;
-        }
+        initDensityLoops();
         permanentPhiRegion = new PermanentPhiRegion(bSplineRegion);
         polarizationPhiRegion = new InducedPhiRegion(bSplineRegion);
         if (esvTerm) {
@@ -447,13 +492,95 @@ public class ReciprocalSpace {
             case ROW:
                 rowRegion.setAtoms(atoms);
                 rowRegion.coordinates = coordinates;
+                initDensityLoops();
                 break;
             case SLICE:
                 sliceRegion.setAtoms(atoms);
                 sliceRegion.coordinates = coordinates;
+                initDensityLoops();
         }
     }
 
+    /**
+     * Set the coordinates of the symmetry mates, which are owned by the
+     * ParticleMeshEwald instance and reallocated when the number of atoms or
+     * symmetry operators changes.
+     *
+     * @param coordinates the coordinates [nSymm][3][nAtoms].
+     */
+    public void setCoordinates(double coordinates[][][]) {
+        this.coordinates = coordinates;
+        if (spatialDensityRegion != null) {
+            spatialDensityRegion.coordinates = coordinates;
+        }
+        if (rowRegion != null) {
+            rowRegion.coordinates = coordinates;
+        }
+        if (sliceRegion != null) {
+            sliceRegion.coordinates = coordinates;
+        }
+    }
+
+    /**
+     * The grid method used to place multipoles and induced dipoles onto the
+     * FFT grid.
+     *
+     * @return the current GridMethod.
+     */
+    public GridMethod getGridMethod() {
+        return gridMethod;
+    }
+
+    /**
+     * Change the grid method used to place multipoles and induced dipoles
+     * onto the FFT grid. The GPU and distributed FFT methods only support
+     * the SPATIAL method.
+     *
+     * @param gridMethod the new GridMethod.
+     * @return true if the grid method is in use.
+     */
+    public boolean setGridMethod(GridMethod gridMethod) {
+        if (gridMethod == this.gridMethod) {
+            return true;
+        }
+        if (gridMethod != GridMethod.SPATIAL && !supportsGridMethods()) {
+            return false;
+        }
+        this.gridMethod = gridMethod;
+        initDensityRegion(true);
+        initDensityLoops();
+        return true;
+    }
+
+    /**
+     * Check if grid methods other than SPATIAL are supported by the FFT
+     * method.
+     *
+     * @return true if the SLICE and ROW methods are supported.
+     */
+    public boolean supportsGridMethods() {
+        return fftMethod == FFTMethod.PJ || fftMethod == FFTMethod.PJ_BLOCKED
+                || fftMethod == FFTMethod.PJ_REAL;
+    }
+
+    /**
+     * Change the ParallelTeam used for the 3D FFTs, for example when the
+     * split of threads between real and reciprocal space changes. The FFT
+     * objects of the CPU methods are rebuilt for the new team.
+     *
+     * @param fftTeam the ParallelTeam for the 3D FFTs.
+     */
+    public void setFFTTeam(ParallelTeam fftTeam) {
+        if (fftTeam == this.fftTeam) {
+            return;
+        }
+        this.fftTeam = fftTeam;
+        pjFFT3D = null;
+        realFFT3D = null;
+        distributedFFT3D = null;
+        initConvolution();
+    }
+
     private void initAtomArrays() {
         if (fracMultipolePhi == null || fracMultipolePhi.length < nAtoms) {
             /**
@@ -498,9 +625,9 @@ public class ReciprocalSpace {
         int fftYCurrent = fftY;
         int fftZCurrent = fftZ;
 
-        double density = forceField.getDouble(ForceFieldDouble.PME_MESH_DENSITY, 1.2);
+        double density = meshDensity;
 
-        int nX = forceField.getInteger(ForceFieldInteger.PME_GRID_X, -1);
+        int nX = (useGridKeywords) ? forceField.getInteger(ForceFieldInteger.PME_GRID_X, -1) : -1;
         if (nX < 2) {
             nX = (int) Math.floor(crystal.a * density) + 1;
             if (nX % 2 != 0) {
@@ -510,7 +637,7 @@ public class ReciprocalSpace {
                 nX += 2;
             }
         }
-        int nY = forceField.getInteger(ForceFieldInteger.PME_GRID_Y, -1);
+        int nY = (useGridKeywords) ? forceField.getInteger(ForceFieldInteger.PME_GRID_Y, -1) : -1;
         if (nY < 2) {
             nY = (int) Math.floor(crystal.b * density) + 1;
             if (nY % 2 != 0) {
@@ -520,7 +647,7 @@ public class ReciprocalSpace {
                 nY += 2;
             }
         }
-        int nZ = forceField.getInteger(ForceFieldInteger.PME_GRID_Z, -1);
+        int nZ = (useGridKeywords) ? forceField.getInteger(ForceFieldInteger.PME_GRID_Z, -1) : -1;
         if (nZ < 2) {
             nZ = (int) Math.floor(crystal.c * density) + 1;
             if (nZ % 2 != 0) {
@@ -531,6 +658,11 @@ public class ReciprocalSpace {
             }
         }
 
+        if (fftMethod == FFTMethod.PJ_REAL && nX % 2 != 0) {
+            nX++;
+            logger.info(format(" The X-axis of the real FFT grid must be even (%d).", nX));
+        }
+
         fftX = nX;
         fftY = nY;
         fftZ = nZ;
@@ -554,18 +686,101 @@ public class ReciprocalSpace {
         }
 
         fftSpace = fftX * fftY * fftZ * 2;
+        realSpace = (fftX + 2) * fftY * fftZ;
+        if (fftMethod == FFTMethod.PJ_REAL) {
+            gridStrideX = 1;
+            gridStrideY = fftX + 2;
+            inducedOffset = realSpace;
+        } else {
+            gridStrideX = 2;
+            gridStrideY = 2 * fftX;
+            inducedOffset = 1;
+        }
+        gridStrideZ = gridStrideY * fftY;
+        if (gridPlane == null || gridPlane.length != fftZ) {
+            gridPlane = new int[fftZ];
+        }
+        for (int k = 0; k < fftZ; k++) {
+            gridPlane[k] = k;
+        }
         boolean dimChanged = fftX != fftXCurrent || fftY != fftYCurrent || fftZ != fftZCurrent;
 
         switch (fftMethod) {
+            case PJ_DISTRIBUTED:
+                if (distributedFFT3D == null || dimChanged) {
+                    Comm comm = Comm.world();
+                    haloPlanes = bSplineOrder - 1;
+                    if (comm.size() > 1 && fftZ / comm.size() < haloPlanes) {
+                        logger.severe(format(" The Z-dimension of the PME grid (%d) is too small for %d processes.",
+                                fftZ, comm.size()));
+                    }
+                    distributedFFT3D = new Complex3DDistributed(fftX, fftY, fftZ, comm, fftTeam, recipSchedule);
+                    int slabSize = distributedFFT3D.getSlabSize(haloPlanes);
+                    if (splineGrid == null || splineGrid.length < slabSize) {
+                        splineGrid = new double[slabSize];
+                    }
+                    splineBuffer = DoubleBuffer.wrap(splineGrid);
+                    logger.info(format(" Distributed PME Z-planes %d to %d of %d (process %d of %d).",
+                            distributedFFT3D.getZStart(), distributedFFT3D.getZStart() + distributedFFT3D.getZCount() - 1,
+                            fftZ, comm.rank(), comm.size()));
+                }
+                distributedFFT3D.setRecip(generalizedInfluenceFunction());
+                /**
+                 * Planes outside of the slab and its halo map to a negative
+                 * index to catch invalid access.
+                 */
+                for (int k = 0; k < fftZ; k++) {
+                    int local = mod(k - distributedFFT3D.getZStart(), fftZ);
+                    if (local < distributedFFT3D.getZCount() + haloPlanes) {
+                        gridPlane[k] = local;
+                    } else {
+                        gridPlane[k] = -fftZ;
+                    }
+                }
+                pjFFT3D = null;
+                realFFT3D = null;
+                cudaFFT3D = null;
+                clFFT3D = null;
+                gpuThread = null;
+                break;
+            case PJ_REAL:
+                if (realFFT3D == null || dimChanged) {
+                    realFFT3D = new Real3DParallel(fftX, fftY, fftZ, fftTeam, recipSchedule);
+                    /**
+                     * The induced dipoles and their chain rule terms require a
+                     * second real grid.
+                     */
+                    int gridSpace = realSpace;
+                    if (particleMeshEwald.polarization != ParticleMeshEwald.Polarization.NONE) {
+                        gridSpace *= 2;
+                    }
+                    if (splineGrid == null || splineGrid.length < gridSpace) {
+                        splineGrid = new double[gridSpace];
+                    }
+                    splineBuffer = DoubleBuffer.wrap(splineGrid);
+                }
+                realFFT3D.setRecip(realInfluenceFunction());
+                pjFFT3D = null;
+                cudaFFT3D = null;
+                clFFT3D = null;
+                gpuThread = null;
+                break;
             case PJ:
+            case PJ_BLOCKED:
                 if (pjFFT3D == null || dimChanged) {
-                    pjFFT3D = new Complex3DParallel(fftX, fftY, fftZ, fftTeam, recipSchedule);
+                    if (fftMethod == FFTMethod.PJ_BLOCKED) {
+                        pjFFT3D = new Complex3DBlocked(fftX, fftY, fftZ, fftTeam,
+                                recipSchedule, Complex3DBlocked.DEFAULT_TILE);
+                    } else {
+                        pjFFT3D = new Complex3DParallel(fftX, fftY, fftZ, fftTeam, recipSchedule);
+                    }
                     if (splineGrid == null || splineGrid.length < fftSpace) {
                         splineGrid = new double[fftSpace];
                     }
                     splineBuffer = DoubleBuffer.wrap(splineGrid);
                 }
                 pjFFT3D.setRecip(generalizedInfluenceFunction());
+                realFFT3D = null;
                 cudaFFT3D = null;
                 clFFT3D = null;
                 gpuThread = null;
@@ -583,6 +798,7 @@ public class ReciprocalSpace {
                 }
                 cudaFFT3D.setRecip(generalizedInfluenceFunction());
                 pjFFT3D = null;
+                realFFT3D = null;
                 clFFT3D = null;
                 break;
             case OPENCL:
@@ -598,10 +814,21 @@ public class ReciprocalSpace {
                 }
                 clFFT3D.setRecip(generalizedInfluenceFunction());
                 pjFFT3D = null;
+                realFFT3D = null;
                 cudaFFT3D = null;
                 break;
         }
 
+        initDensityRegion(dimChanged);
+        return density;
+    }
+
+    /**
+     * Create or update the density region of the current grid method.
+     *
+     * @param dimChanged true if the FFT grid dimensions have changed.
+     */
+    private void initDensityRegion(boolean dimChanged) {
         switch (gridMethod) {
             case SPATIAL:
                 if (spatialDensityRegion == null || dimChanged) {
@@ -622,6 +849,9 @@ public class ReciprocalSpace {
                     if (fftMethod != FFTMethod.PJ) {
                         rowRegion.setGridBuffer(splineBuffer);
                     }
+                    if (rowPermanentLoops != null) {
+                        initDensityLoops();
+                    }
                 } else {
                     rowRegion.setCrystal(crystal, fftX, fftY, fftZ);
                     rowRegion.coordinates = coordinates;
@@ -636,12 +866,66 @@ public class ReciprocalSpace {
                     if (fftMethod != FFTMethod.PJ) {
                         sliceRegion.setGridBuffer(splineBuffer);
                     }
+                    if (slicePermanentLoops != null) {
+                        initDensityLoops();
+                    }
                 } else {
                     sliceRegion.setCrystal(crystal, fftX, fftY, fftZ);
                     sliceRegion.coordinates = coordinates;
                 }
         }
-        return density;
+    }
+
+    /**
+     * Construct the density loops of the current grid method.
+     */
+    private void initDensityLoops() {
+        switch (gridMethod) {
+            case SPATIAL:
+                spatialPermanentLoops = new SpatialPermanentLoop[threadCount];
+                spatialInducedLoops = new SpatialInducedLoop[threadCount];
+                for (int i = 0; i < threadCount; i++) {
+                    spatialPermanentLoops[i] = new SpatialPermanentLoop(spatialDensityRegion, bSplineRegion);
+                    spatialInducedLoops[i] = new SpatialInducedLoop(spatialDensityRegion, bSplineRegion);
+                }
+                slicePermanentLoops = null;
+                sliceInducedLoops = null;
+                rowPermanentLoops = null;
+                rowInducedLoops = null;
+                gridAtomCount = null;
+                gridAtomList = null;
+                break;
+
+            case ROW:
+                rowPermanentLoops = new RowPermanentLoop[threadCount];
+                rowInducedLoops = new RowInducedLoop[threadCount];
+                for (int i = 0; i < threadCount; i++) {
+                    rowPermanentLoops[i] = new RowPermanentLoop(rowRegion, bSplineRegion);
+                    rowInducedLoops[i] = new RowInducedLoop(rowRegion, bSplineRegion);
+                }
+                gridAtomCount = new int[nSymm][threadCount];
+                gridAtomList = new int[nSymm][threadCount][nAtoms];
+                spatialPermanentLoops = null;
+                spatialInducedLoops = null;
+                slicePermanentLoops = null;
+                sliceInducedLoops = null;
+                break;
+
+            case SLICE:
+            default:
+                slicePermanentLoops = new SlicePermanentLoop[threadCount];
+                sliceInducedLoops = new SliceInducedLoop[threadCount];
+                for (int i = 0; i < threadCount; i++) {
+                    slicePermanentLoops[i] = new SlicePermanentLoop(sliceRegion, bSplineRegion);
+                    sliceInducedLoops[i] = new SliceInducedLoop(sliceRegion, bSplineRegion);
+                }
+                gridAtomCount = new int[nSymm][threadCount];
+                gridAtomList = new int[nSymm][threadCount][nAtoms];
+                spatialPermanentLoops = null;
+                spatialInducedLoops = null;
+                rowPermanentLoops = null;
+                rowInducedLoops = null;
+        }
     }
 
     public void printTimings() {
@@ -757,6 +1041,28 @@ public class ReciprocalSpace {
         }
     }
 
+    /**
+     * Assign the atoms to the grid regions for the current coordinates, which
+     * splinePermanentMultipoles otherwise does. A mesh that only places
+     * induced dipoles, such as the coarse mesh of a two-level SCF
+     * preconditioner, calls this after computeBSplines.
+     */
+    public void assignAtomsToGrid() {
+        switch (gridMethod) {
+            case SPATIAL:
+                spatialDensityRegion.setCrystal(crystal.getUnitCell(), fftX, fftY, fftZ);
+                spatialDensityRegion.assignAtomsToCells();
+                break;
+            case ROW:
+                rowRegion.setCrystal(crystal.getUnitCell(), fftX, fftY, fftZ);
+                break;
+            case SLICE:
+            default:
+                sliceRegion.setCrystal(crystal.getUnitCell(), fftX, fftY, fftZ);
+                break;
+        }
+    }
+
     /**
      * Use b-Splines to place the permanent multipoles onto the FFT grid for the
      * atoms in use.
@@ -785,12 +1091,18 @@ public class ReciprocalSpace {
                 spatialDensityRegion.setGridBuffer(splineBuffer);
                 break;
             case PJ:
+            case PJ_BLOCKED:
                 break;
         }
 
         switch (gridMethod) {
             case SPATIAL:
                 spatialDensityRegion.setCrystal(crystal.getUnitCell(), fftX, fftY, fftZ);
+                if (fftMethod == FFTMethod.PJ_REAL) {
+                    spatialDensityRegion.setGridSize(realSpace);
+                } else if (fftMethod == FFTMethod.PJ_DISTRIBUTED) {
+                    spatialDensityRegion.setGridSize(distributedFFT3D.getSlabSize(haloPlanes));
+                }
                 spatialDensityRegion.assignAtomsToCells();
                 spatialDensityRegion.setDensityLoop(spatialPermanentLoops);
                 for (int i = 0; i < threadCount; i++) {
@@ -807,6 +1119,9 @@ public class ReciprocalSpace {
                 break;
             case ROW:
                 rowRegion.setCrystal(crystal.getUnitCell(), fftX, fftY, fftZ);
+                if (fftMethod == FFTMethod.PJ_REAL) {
+                    rowRegion.setGridSize(realSpace);
+                }
                 rowRegion.setDensityLoop(rowPermanentLoops);
                 for (int i = 0; i < threadCount; i++) {
                     rowPermanentLoops[i].setPermanent(globalMultipoles, fracMultipoles);
@@ -822,6 +1137,9 @@ public class ReciprocalSpace {
             case SLICE:
             default:
                 sliceRegion.setCrystal(crystal.getUnitCell(), fftX, fftY, fftZ);
+                if (fftMethod == FFTMethod.PJ_REAL) {
+                    sliceRegion.setGridSize(realSpace);
+                }
                 sliceRegion.setDensityLoop(slicePermanentLoops);
                 for (int i = 0; i < threadCount; i++) {
                     slicePermanentLoops[i].setPermanent(globalMultipoles, fracMultipoles);
@@ -844,7 +1162,7 @@ public class ReciprocalSpace {
      * permanentMultipoleConvolution</p>
      */
     public void permanentMultipoleConvolution() {
-        convTotal -= System.nanoTime();
+        long convTime = -System.nanoTime();
         try {
             switch (fftMethod) {
                 case OPENCL:
@@ -854,14 +1172,23 @@ public class ReciprocalSpace {
                     cudaFFT3D.convolution(splineGrid);
                     break;
                 case PJ:
+                case PJ_BLOCKED:
                     pjFFT3D.convolution(splineGrid);
                     break;
+                case PJ_REAL:
+                    realFFT3D.convolution(splineGrid);
+                    break;
+                case PJ_DISTRIBUTED:
+                    distributedConvolution();
+                    break;
             }
         } catch (Exception e) {
             String message = " Fatal exception evaluating permanent convolution.";
             logger.log(Level.SEVERE, message, e);
         }
-        convTotal += System.nanoTime();
+        convTime += System.nanoTime();
+        convTotal += convTime;
+        MetricsRegistry.recordTime("pme.fft.permanent.time", convTime);
     }
 
     /**
@@ -874,6 +1201,7 @@ public class ReciprocalSpace {
         try {
             permanentPhiRegion.setCartPermanentPhi(cartPermanentPhi);
             parallelTeam.execute(permanentPhiRegion);
+            reducePhi(cartPermanentPhi, fracMultipolePhi);
         } catch (Exception e) {
             String message = " Fatal exception evaluating permanent reciprocal space potential.";
             logger.log(Level.SEVERE, message, e);
@@ -889,6 +1217,7 @@ public class ReciprocalSpace {
         try {
             permanentPhiDotRegion.setCartPermanentDotPhi(cartPermanentDotPhi);
             parallelTeam.execute(permanentPhiDotRegion);
+            reducePhi(cartPermanentDotPhi, fracMultipoleDotPhi);
         } catch (Exception e) {
             String message = " Fatal exception evaluating permanent reciprocal space potential.";
             logger.log(Level.SEVERE, message, e);
@@ -918,11 +1247,17 @@ public class ReciprocalSpace {
                 spatialDensityRegion.setGridBuffer(splineBuffer);
                 break;
             case PJ:
+            case PJ_BLOCKED:
                 break;
         }
 
         switch (gridMethod) {
             case SPATIAL:
+                if (fftMethod == FFTMethod.PJ_REAL) {
+                    spatialDensityRegion.setGridSize(2 * realSpace);
+                } else if (fftMethod == FFTMethod.PJ_DISTRIBUTED) {
+                    spatialDensityRegion.setGridSize(distributedFFT3D.getSlabSize(haloPlanes));
+                }
                 spatialDensityRegion.setDensityLoop(spatialInducedLoops);
                 for (int i = 0; i < threadCount; i++) {
                     spatialInducedLoops[i].setInducedDipoles(inducedDipole, inducedDipoleCR);
@@ -936,7 +1271,10 @@ public class ReciprocalSpace {
                     logger.log(Level.SEVERE, message, e);
                 }
                 break;
-            case SLICE:
+            case ROW:
+                if (fftMethod == FFTMethod.PJ_REAL) {
+                    rowRegion.setGridSize(2 * realSpace);
+                }
                 rowRegion.setDensityLoop(rowInducedLoops);
                 for (int i = 0; i < threadCount; i++) {
                     rowInducedLoops[i].setInducedDipoles(inducedDipole, inducedDipoleCR);
@@ -949,7 +1287,11 @@ public class ReciprocalSpace {
                     logger.log(Level.SEVERE, message, e);
                 }
                 break;
+            case SLICE:
             default:
+                if (fftMethod == FFTMethod.PJ_REAL) {
+                    sliceRegion.setGridSize(2 * realSpace);
+                }
                 sliceRegion.setDensityLoop(sliceInducedLoops);
                 for (int i = 0; i < threadCount; i++) {
                     sliceInducedLoops[i].setInducedDipoles(inducedDipole, inducedDipoleCR);
@@ -976,7 +1318,7 @@ public class ReciprocalSpace {
      * FORTRAN: signum(0.0) .eq. 1.0
      */
     public void inducedDipoleConvolution() {
-        convTotal -= System.nanoTime();
+        long convTime = -System.nanoTime();
         try {
             switch (fftMethod) {
                 case OPENCL:
@@ -986,14 +1328,24 @@ public class ReciprocalSpace {
                     cudaFFT3D.convolution(splineGrid);
                     break;
                 case PJ:
+                case PJ_BLOCKED:
                     pjFFT3D.convolution(splineGrid);
                     break;
+                case PJ_REAL:
+                    realFFT3D.convolution(splineGrid);
+                    realFFT3D.convolution(splineGrid, realSpace);
+                    break;
+                case PJ_DISTRIBUTED:
+                    distributedConvolution();
+                    break;
             }
         } catch (Exception e) {
             String message = "Fatal exception evaluating induced convolution.";
             logger.log(Level.SEVERE, message, e);
         }
-        convTotal += System.nanoTime();
+        convTime += System.nanoTime();
+        convTotal += convTime;
+        MetricsRegistry.recordTime("pme.fft.induced.time", convTime);
     }
 
     /**
@@ -1010,6 +1362,8 @@ public class ReciprocalSpace {
             polarizationPhiRegion.setCartInducedDipolePhi(
                     cartInducedDipolePhi, cartInducedDipoleCRPhi);
             parallelTeam.execute(polarizationPhiRegion);
+            reducePhi(cartInducedDipolePhi, cartInducedDipoleCRPhi,
+                    fracInducedDipolePhi, fracInducedDipolePhiCR);
         } catch (Exception e) {
             String message = "Fatal exception evaluating induced reciprocal space potential.";
             logger.log(Level.SEVERE, message, e);
@@ -1024,6 +1378,8 @@ public class ReciprocalSpace {
             polarizationPhiRegion.setCartInducedDipolePhi(
                     cartInducedDipolePhi, cartInducedDipoleCRPhi);
             parallelTeam.execute(polarizationPhiRegion);
+            reducePhi(cartInducedDipolePhi, cartInducedDipoleCRPhi,
+                    fracInducedDipolePhi, fracInducedDipolePhiCR);
             if (esvTerm) {
                 if (cartUnscaledDipolePhi == null) {
                     logger.warning("EsvTerm is true, so ReciprocalSpace::computeInducedPhi"
@@ -1032,6 +1388,8 @@ public class ReciprocalSpace {
                 polarUnscaledPhiRegion.setCartInducedDipolePhi(
                         cartUnscaledDipolePhi, cartUnscaledDipolePhiCR);
                 parallelTeam.execute(polarUnscaledPhiRegion);
+                reducePhi(cartUnscaledDipolePhi, cartUnscaledDipolePhiCR,
+                        fracInducedDipolePhi, fracInducedDipolePhiCR);
             }
         } catch (RuntimeException ex) {
             logger.warning("Fatal exception evaluating induced reciprocal space potential.");
@@ -1405,6 +1763,13 @@ public class ReciprocalSpace {
                 return;
             }
 
+            /**
+             * Other processes spread the atoms that start in their slab.
+             */
+            if (distributedFFT3D != null && !ownsPlane(bSplines.initGrid[iSymm][n][2])) {
+                return;
+            }
+
             final double[][] splx = bSplines.splineX[iSymm][n];
             final double[][] sply = bSplines.splineY[iSymm][n];
             final double[][] splz = bSplines.splineZ[iSymm][n];
@@ -1450,7 +1815,7 @@ public class ReciprocalSpace {
                     int i0 = igrd0;
                     for (int ith1 = 0; ith1 < bSplineOrder; ith1++) {
                         final int i = mod(++i0, fftX);
-                        final int ii = iComplex3D(i, j, k, fftX, fftY);
+                        final int ii = gridIndex(i, j, k);
                         final double splxi[] = splx[ith1];
                         final double add = splxi[0] * term0 + splxi[1] * term1 + splxi[2] * term2;
                         final double current = splineBuffer.get(ii);
@@ -1550,6 +1915,9 @@ public class ReciprocalSpace {
             if (use != null && !use[n]) {
                 return;
             }
+            if (distributedFFT3D != null && !ownsPlane(bSplineRegion.initGrid[iSymm][n][2])) {
+                return;
+            }
             final double[][] splx = bSplineRegion.splineX[iSymm][n];
             final double[][] sply = bSplineRegion.splineY[iSymm][n];
             final double[][] splz = bSplineRegion.splineZ[iSymm][n];
@@ -1580,14 +1948,14 @@ public class ReciprocalSpace {
                     int i0 = igrd0;
                     for (int ith1 = 0; ith1 < bSplineOrder; ith1++) {
                         final int i = mod(++i0, fftX);
-                        final int ii = iComplex3D(i, j, k, fftX, fftY);
+                        final int ii = gridIndex(i, j, k);
                         final double splxi[] = splx[ith1];
                         final double add = splxi[0] * term0 + splxi[1] * term1;
                         final double addi = splxi[0] * termp0 + splxi[1] * termp1;
                         final double current = splineBuffer.get(ii);
-                        final double currenti = splineBuffer.get(ii + 1);
+                        final double currenti = splineBuffer.get(ii + inducedOffset);
                         splineBuffer.put(ii, current + add);
-                        splineBuffer.put(ii + 1, currenti + addi);
+                        splineBuffer.put(ii + inducedOffset, currenti + addi);
                         //splineGrid[ii] += add;
                         //splineGrid[ii + 1] += addi;
                     }
@@ -1751,7 +2119,7 @@ public class ReciprocalSpace {
                 final double qxz1 = qxz * v1;
                 final double qyz1 = qyz * v1;
                 final int k = mod(++k0, fftZ);
-                if (k < lb || k > ub) {
+                if (k < lbZ || k > ubZ) {
                     continue;
                 }
                 int j0 = jgrd0;
@@ -1765,10 +2133,17 @@ public class ReciprocalSpace {
                     final double term1 = (dx0 + qxz1) * u0 + qxy0 * u1;
                     final double term2 = qxx0 * u0;
                     final int j = mod(++j0, fftY);
+                    /**
+                     * Only the rows of this thread are updated.
+                     */
+                    final int row = j + fftY * k;
+                    if (row < lb || row > ub) {
+                        continue;
+                    }
                     int i0 = igrd0;
                     for (int ith1 = 0; ith1 < bSplineOrder; ith1++) {
                         final int i = mod(++i0, fftX);
-                        final int ii = iComplex3D(i, j, k, fftX, fftY);
+                        final int ii = gridIndex(i, j, k);
                         final double splxi[] = splx[ith1];
                         final double add = splxi[0] * term0 + splxi[1] * term1 + splxi[2] * term2;
                         final double current = splineBuffer.get(ii);
@@ -1921,17 +2296,24 @@ public class ReciprocalSpace {
                     final double termp0 = pz1 * u0 + py0 * u1;
                     final double termp1 = px0 * u0;
                     final int j = mod(++j0, fftY);
+                    /**
+                     * Only the rows of this thread are updated.
+                     */
+                    final int row = j + fftY * k;
+                    if (row < lb || row > ub) {
+                        continue;
+                    }
                     int i0 = igrd0;
                     for (int ith1 = 0; ith1 < bSplineOrder; ith1++) {
                         final int i = mod(++i0, fftX);
-                        final int ii = iComplex3D(i, j, k, fftX, fftY);
+                        final int ii = gridIndex(i, j, k);
                         final double splxi[] = splx[ith1];
                         final double add = splxi[0] * term0 + splxi[1] * term1;
                         final double addi = splxi[0] * termp0 + splxi[1] * termp1;
                         final double current = splineBuffer.get(ii);
-                        final double currenti = splineBuffer.get(ii + 1);
+                        final double currenti = splineBuffer.get(ii + inducedOffset);
                         splineBuffer.put(ii, current + add);
-                        splineBuffer.put(ii + 1, currenti + addi);
+                        splineBuffer.put(ii + inducedOffset, currenti + addi);
                         //splineGrid[ii] += add;
                         //splineGrid[ii + 1] += addi;
                     }
@@ -2095,7 +2477,7 @@ public class ReciprocalSpace {
                     int i0 = igrd0;
                     for (int ith1 = 0; ith1 < bSplineOrder; ith1++) {
                         final int i = mod(++i0, fftX);
-                        final int ii = iComplex3D(i, j, k, fftX, fftY);
+                        final int ii = gridIndex(i, j, k);
                         final double splxi[] = splx[ith1];
                         final double add = splxi[0] * term0 + splxi[1] * term1 + splxi[2] * term2;
                         final double current = splineBuffer.get(ii);
@@ -2243,14 +2625,14 @@ public class ReciprocalSpace {
                     int i0 = igrd0;
                     for (int ith1 = 0; ith1 < bSplineOrder; ith1++) {
                         final int i = mod(++i0, fftX);
-                        final int ii = iComplex3D(i, j, k, fftX, fftY);
+                        final int ii = gridIndex(i, j, k);
                         final double splxi[] = splx[ith1];
                         final double add = splxi[0] * term0 + splxi[1] * term1;
                         final double addi = splxi[0] * termp0 + splxi[1] * termp1;
                         final double current = splineBuffer.get(ii);
-                        final double currenti = splineBuffer.get(ii + 1);
+                        final double currenti = splineBuffer.get(ii + inducedOffset);
                         splineBuffer.put(ii, current + add);
-                        splineBuffer.put(ii + 1, currenti + addi);
+                        splineBuffer.put(ii + inducedOffset, currenti + addi);
                         //splineGrid[ii] += add;
                         //splineGrid[ii + 1] += addi;
                     }
@@ -2333,6 +2715,15 @@ public class ReciprocalSpace {
             @Override
             public void run(final int lb, final int ub) {
                 for (int n = lb; n <= ub; n++) {
+                    /**
+                     * The potential at atoms owned by other processes is
+                     * summed in by the reduction.
+                     */
+                    if (distributedFFT3D != null && !ownsPlane(bSplineRegion.initGrid[0][n][2])) {
+                        fill(fracPermPhi[n], 0.0);
+                        fill(cartPermPhi[n], 0.0);
+                        continue;
+                    }
                     final double[][] splx = bSplineRegion.splineX[0][n];
                     final double[][] sply = bSplineRegion.splineY[0][n];
                     final double[][] splz = bSplineRegion.splineZ[0][n];
@@ -2382,7 +2773,7 @@ public class ReciprocalSpace {
                             double t3 = 0.0;
                             for (int ith1 = 0; ith1 < bSplineOrder; ith1++) {
                                 final int i = mod(++i0, fftX);
-                                final int ii = iComplex3D(i, j, k, fftX, fftY);
+                                final int ii = gridIndex(i, j, k);
                                 //final double tq = splineGrid[ii];
                                 final double tq = splineBuffer.get(ii);
                                 final double splxi[] = splx[ith1];
@@ -2544,6 +2935,13 @@ public class ReciprocalSpace {
             @Override
             public void run(int lb, int ub) {
                 for (int n = lb; n <= ub; n++) {
+                    if (distributedFFT3D != null && !ownsPlane(bSplineRegion.initGrid[0][n][2])) {
+                        fill(fracInducedDipolePhi[n], 0.0);
+                        fill(fracInducedDipolePhiCR[n], 0.0);
+                        fill(cartInducedDipolePhi[n], 0.0);
+                        fill(cartInducedDipoleCRPhi[n], 0.0);
+                        continue;
+                    }
                     final double[][] splx = bSplineRegion.splineX[0][n];
                     final double[][] sply = bSplineRegion.splineY[0][n];
                     final double[][] splz = bSplineRegion.splineZ[0][n];
@@ -2627,11 +3025,11 @@ public class ReciprocalSpace {
                             double t3p = 0.0;
                             for (int ith1 = 0; ith1 < bSplineOrder; ith1++) {
                                 final int i = mod(++i0, fftX);
-                                final int ii = iComplex3D(i, j, k, fftX, fftY);
+                                final int ii = gridIndex(i, j, k);
                                 //final double tq = splineGrid[ii];
                                 //final double tp = splineGrid[ii + 1];
                                 final double tq = splineBuffer.get(ii);
-                                final double tp = splineBuffer.get(ii + 1);
+                                final double tp = splineBuffer.get(ii + inducedOffset);
                                 final double splxi[] = splx[ith1];
                                 t0 += tq * splxi[0];
                                 t1 += tq * splxi[1];
@@ -2872,6 +3270,77 @@ public class ReciprocalSpace {
         return influenceFunction;
     }
 
+    /**
+     * Extract the non-redundant half (kX = 0 .. fftX/2) of the influence
+     * function for real to complex transforms.
+     */
+    private double[] realInfluenceFunction() {
+        double influenceFunction[] = generalizedInfluenceFunction();
+        int nX1 = fftX / 2 + 1;
+        double realInfluenceFunction[] = new double[nX1 * fftY * fftZ];
+        for (int kZ = 0, index = 0; kZ < fftZ; kZ++) {
+            for (int kY = 0; kY < fftY; kY++) {
+                int offset = fftX * (kY + fftY * kZ);
+                for (int kX = 0; kX < nX1; kX++) {
+                    realInfluenceFunction[index++] = influenceFunction[offset + kX];
+                }
+            }
+        }
+        return realInfluenceFunction;
+    }
+
+    /**
+     * Check if the b-Spline of an atom starts in the slab of this process
+     * (PJ_DISTRIBUTED).
+     *
+     * @param k0 the initial Z grid index of the atom.
+     * @return true if this process spreads the atom and computes its potential.
+     */
+    private boolean ownsPlane(int k0) {
+        final int k = mod(k0 + 1, fftZ) - distributedFFT3D.getZStart();
+        return k >= 0 && k < distributedFFT3D.getZCount();
+    }
+
+    /**
+     * Add the halo density into the processes that own it, convolve the
+     * distributed grid and then fill the halo planes with the potential.
+     */
+    private void distributedConvolution() {
+        distributedFFT3D.reduceHalo(splineGrid, haloPlanes);
+        distributedFFT3D.convolution(splineGrid);
+        distributedFFT3D.fillHalo(splineGrid, haloPlanes);
+    }
+
+    /**
+     * Sum the potential of the atoms owned by each process (PJ_DISTRIBUTED).
+     *
+     * @param phi arrays of potential [nAtoms][tensorCount].
+     */
+    private void reducePhi(double[][]... phi) {
+        if (distributedFFT3D == null) {
+            return;
+        }
+        try {
+            Comm comm = Comm.world();
+            Range atoms = new Range(0, nAtoms - 1);
+            for (double p[][] : phi) {
+                if (p != null) {
+                    comm.allReduce(DoubleBuf.rowSliceBuffer(p, atoms), DoubleOp.SUM);
+                }
+            }
+        } catch (IOException e) {
+            String message = " Fatal exception reducing the distributed reciprocal space potential.";
+            logger.log(Level.SEVERE, message, e);
+        }
+    }
+
+    /**
+     * Compute the index of a grid point into the spline grid.
+     */
+    private int gridIndex(int i, int j, int k) {
+        return i * gridStrideX + j * gridStrideY + gridPlane[k] * gridStrideZ;
+    }
+
     private void transformMultipoleMatrix() {
         double a[][] = new double[3][3];
         for (int i = 0; i < 3; i++) {
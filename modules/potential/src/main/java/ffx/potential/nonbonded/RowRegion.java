@@ -160,6 +160,16 @@ public class RowRegion extends ParallelRegion {
         gridBuffer = grid;
     }
 
+    /**
+     * Set the number of grid entries initialized before density is placed on
+     * the grid. The default of gX * gY * gZ * 2 is reset by setCrystal.
+     *
+     * @param gridSize the number of grid entries.
+     */
+    public void setGridSize(int gridSize) {
+        this.gridSize = gridSize;
+    }
+
     public int getNsymm() {
         return nSymm;
     }
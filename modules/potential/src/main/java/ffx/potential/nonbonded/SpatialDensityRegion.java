@@ -227,6 +227,16 @@ public class SpatialDensityRegion extends ParallelRegion {
         gridBuffer = grid;
     }
 
+    /**
+     * Set the number of grid entries initialized before density is placed on
+     * the grid. The default of gX * gY * gZ * 2 is reset by setCrystal.
+     *
+     * @param gridSize the number of grid entries.
+     */
+    public void setGridSize(int gridSize) {
+        this.gridSize = gridSize;
+    }
+
     /**
      * <p>
      * getNsymm</p>
@@ -0,0 +1,435 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.nonbonded;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.rit.pj.IntegerForLoop;
+import edu.rit.pj.IntegerSchedule;
+import edu.rit.pj.ParallelRegion;
+import edu.rit.pj.ParallelTeam;
+import edu.rit.pj.reduction.SharedInteger;
+
+import ffx.crystal.Crystal;
+import ffx.crystal.SymOp;
+import ffx.potential.CoordinateStore;
+import ffx.potential.bonded.Atom;
+
+/**
+ * The SymmetryMateCache class stores the Cartesian coordinates of every
+ * symmetry mate in contiguous structure of arrays layout [nSymm][3][nAtoms].
+ * The first symmetry operator is the identity, so mates[0] holds the
+ * coordinates of the asymmetric unit.
+ * <p>
+ * One cache is owned by each {@link NeighborList} and is shared by all energy
+ * terms that share the neighbor list. Each call to update compares the current
+ * atomic coordinates to the cached asymmetric unit and only applies the
+ * symmetry operators to atoms that have moved. The update count when each atom
+ * last moved is recorded, so that a term that derives its own coordinates from
+ * the mates (e.g. the reduced hydrogen positions of {@link VanDerWaals}) can
+ * also limit its work to moved atoms.
+ *
+ * @author Michael J. Schnieders
+ *
+ * @since 1.0
+ */
+public class SymmetryMateCache {
+
+    private static final Logger logger = Logger.getLogger(SymmetryMateCache.class.getName());
+
+    /**
+     * The atoms whose symmetry mates are cached.
+     */
+    private Atom atoms[];
+    /**
+     * The struct-of-arrays coordinates of the atoms, or null to read them
+     * through the Atom accessors.
+     */
+    private CoordinateStore coordinateStore = null;
+    /**
+     * The number of atoms in the asymmetric unit.
+     */
+    private int nAtoms;
+    /**
+     * The crystal that defines the symmetry operators.
+     */
+    private Crystal crystal;
+    /**
+     * The number of symmetry operators.
+     */
+    private int nSymm;
+    /**
+     * Unit cell parameters used to compute the Cartesian operators.
+     */
+    private double a, b, c, alpha, beta, gamma;
+    /**
+     * Cartesian rotation matrices for each symmetry operator. [nSymm][3][3]
+     */
+    private double rot[][][];
+    /**
+     * Cartesian translations for each symmetry operator. [nSymm][3]
+     */
+    private double trans[][];
+    /**
+     * Coordinates of the symmetry mates. [nSymm][3][nAtoms]
+     */
+    private double mates[][][];
+    /**
+     * The update count when each atom last moved. [nAtoms]
+     */
+    private long lastMoved[];
+    /**
+     * The number of updates that found at least one moved atom.
+     */
+    private long updateCount = 0;
+    /**
+     * If false, all mates are regenerated by the next update.
+     */
+    private boolean valid = false;
+    /**
+     * If false, every update regenerates all mates from fractional
+     * coordinates.
+     */
+    private boolean incremental = true;
+    /**
+     * Parallel constructs used to update the cache.
+     */
+    private final UpdateRegion updateRegion = new UpdateRegion();
+    private final SharedInteger sharedMoved = new SharedInteger();
+
+    /**
+     * Constructor for the SymmetryMateCache class.
+     *
+     * @param crystal Definition of the unit cell and space group.
+     * @param atoms The atoms of the asymmetric unit.
+     */
+    public SymmetryMateCache(Crystal crystal, Atom atoms[]) {
+        this.atoms = atoms;
+        nAtoms = atoms.length;
+        setCrystal(crystal);
+    }
+
+    /**
+     * Set the crystal, which reallocates memory if the number of symmetry
+     * operators has increased and invalidates all cached mates.
+     *
+     * @param crystal A crystal defining boundary conditions and symmetry.
+     */
+    public synchronized void setCrystal(Crystal crystal) {
+        this.crystal = crystal;
+        nSymm = crystal.spaceGroup.getNumberOfSymOps();
+        allocate();
+        updateOperators();
+    }
+
+    /**
+     * Set the atoms, which reallocates memory if the number of atoms has
+     * changed and invalidates all cached mates.
+     *
+     * @param atoms The atoms of the asymmetric unit.
+     */
+    public synchronized void setAtoms(Atom atoms[]) {
+        this.atoms = atoms;
+        nAtoms = atoms.length;
+        coordinateStore = null;
+        allocate();
+        valid = false;
+    }
+
+    /**
+     * Read the coordinates of the asymmetric unit directly from a
+     * CoordinateStore indexed like the atom array. The store is dropped if the
+     * atoms are changed.
+     *
+     * @param coordinateStore The CoordinateStore, or null to read coordinates
+     * through the Atom accessors.
+     */
+    public synchronized void setCoordinateStore(CoordinateStore coordinateStore) {
+        this.coordinateStore = coordinateStore;
+    }
+
+    /**
+     * Only transform moved atoms, using the Cartesian symmetry operators (the
+     * default). Otherwise every update regenerates all mates through the
+     * fractional coordinate symmetry operators of the Crystal, which is the
+     * uncached reference path.
+     *
+     * @param incremental True to update the cache incrementally.
+     */
+    public synchronized void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        valid = false;
+    }
+
+    /**
+     * Regenerate all symmetry mates during the next update.
+     */
+    public synchronized void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Bring the cached symmetry mates up to date with the current atomic
+     * coordinates. Only atoms that have moved since the last update are
+     * transformed. Concurrent calls are serialized, so that the first term to
+     * call update does the work and later calls find nothing has moved.
+     *
+     * @param atoms The atoms of the calling term.
+     * @param parallelTeam The ParallelTeam of the calling term.
+     * @return The symmetry mates [nSymm][3][nAtoms], which are reallocated if
+     * the number of atoms or symmetry operators has changed.
+     */
+    public synchronized double[][][] update(Atom atoms[], ParallelTeam parallelTeam) {
+        if (atoms != this.atoms) {
+            this.atoms = atoms;
+            coordinateStore = null;
+            if (atoms.length != nAtoms) {
+                nAtoms = atoms.length;
+                allocate();
+            }
+            valid = false;
+        }
+        if (crystal.a != a || crystal.b != b || crystal.c != c
+                || crystal.alpha != alpha || crystal.beta != beta || crystal.gamma != gamma
+                || crystal.spaceGroup.getNumberOfSymOps() != nSymm) {
+            nSymm = crystal.spaceGroup.getNumberOfSymOps();
+            allocate();
+            updateOperators();
+        }
+        try {
+            parallelTeam.execute(updateRegion);
+        } catch (Exception e) {
+            String message = " Fatal exception updating symmetry mates.\n";
+            logger.log(Level.SEVERE, message, e);
+        }
+        return mates;
+    }
+
+    /**
+     * The cached coordinates of each symmetry mate. The array is only
+     * reallocated by setCrystal, setAtoms or an update after a change in the
+     * number of atoms or symmetry operators, so callers that keep a reference
+     * must refresh it after each of these calls.
+     *
+     * @return The symmetry mates [nSymm][3][nAtoms].
+     */
+    public double[][][] getMates() {
+        return mates;
+    }
+
+    /**
+     * The number of updates that found at least one moved atom.
+     *
+     * @return The update count.
+     */
+    public long getUpdateCount() {
+        return updateCount;
+    }
+
+    /**
+     * Check if an atom has moved since a previous update count.
+     *
+     * @param i The index of the atom.
+     * @param since An update count returned by getUpdateCount.
+     * @return True if the mates of atom i have been regenerated since.
+     */
+    public boolean moved(int i, long since) {
+        return lastMoved[i] > since;
+    }
+
+    private void allocate() {
+        if (mates == null || mates.length < nSymm || mates[0][0].length != nAtoms) {
+            mates = new double[nSymm][3][nAtoms];
+            lastMoved = new long[nAtoms];
+        }
+        valid = false;
+    }
+
+    /**
+     * Compute the Cartesian form of each symmetry operator. For fractional
+     * coordinates f = x.A, the mate x' = (rot.f + tr).A^-1 is given by
+     * x' = R.x + t with R = (A^-1)^T.rot.A^T and t = tr.A^-1.
+     */
+    private void updateOperators() {
+        a = crystal.a;
+        b = crystal.b;
+        c = crystal.c;
+        alpha = crystal.alpha;
+        beta = crystal.beta;
+        gamma = crystal.gamma;
+        double A[][] = crystal.A;
+        double Ai[][] = crystal.Ai;
+        List<SymOp> symOps = crystal.spaceGroup.symOps;
+        rot = new double[nSymm][3][3];
+        trans = new double[nSymm][3];
+        for (int s = 0; s < nSymm; s++) {
+            SymOp symOp = symOps.get(s);
+            for (int m = 0; m < 3; m++) {
+                for (int k = 0; k < 3; k++) {
+                    double sum = 0.0;
+                    for (int j = 0; j < 3; j++) {
+                        for (int l = 0; l < 3; l++) {
+                            sum += Ai[j][m] * symOp.rot[j][l] * A[k][l];
+                        }
+                    }
+                    rot[s][m][k] = sum;
+                }
+                double sum = 0.0;
+                for (int j = 0; j < 3; j++) {
+                    sum += symOp.tr[j] * Ai[j][m];
+                }
+                trans[s][m] = sum;
+            }
+        }
+        valid = false;
+    }
+
+    private class UpdateRegion extends ParallelRegion {
+
+        private UpdateLoop updateLoop[];
+        private long next;
+
+        @Override
+        public void start() {
+            int threadCount = getThreadCount();
+            if (updateLoop == null || updateLoop.length < threadCount) {
+                updateLoop = new UpdateLoop[threadCount];
+            }
+            next = updateCount + 1;
+            sharedMoved.set(0);
+        }
+
+        @Override
+        public void run() throws Exception {
+            int threadIndex = getThreadIndex();
+            if (updateLoop[threadIndex] == null) {
+                updateLoop[threadIndex] = new UpdateLoop();
+            }
+            execute(0, nAtoms - 1, updateLoop[threadIndex]);
+        }
+
+        @Override
+        public void finish() {
+            if (sharedMoved.get() > 0) {
+                updateCount = next;
+            }
+            valid = true;
+        }
+
+        private class UpdateLoop extends IntegerForLoop {
+
+            private int moved;
+            private final double xyz[] = new double[3];
+            private final double mate[] = new double[3];
+
+            @Override
+            public IntegerSchedule schedule() {
+                return IntegerSchedule.fixed();
+            }
+
+            @Override
+            public void start() {
+                moved = 0;
+            }
+
+            @Override
+            public void finish() {
+                sharedMoved.addAndGet(moved);
+            }
+
+            @Override
+            public void run(int lb, int ub) {
+                final double x[] = mates[0][0];
+                final double y[] = mates[0][1];
+                final double z[] = mates[0][2];
+                /**
+                 * The store is skipped if another ForceFieldEnergy has taken
+                 * over its atoms, since it may then be stale.
+                 */
+                CoordinateStore store = coordinateStore;
+                final boolean readStore = (store != null && !store.isReleased() && store.size() == nAtoms);
+                final double sx[] = readStore ? store.getX() : null;
+                final double sy[] = readStore ? store.getY() : null;
+                final double sz[] = readStore ? store.getZ() : null;
+                for (int i = lb; i <= ub; i++) {
+                    double xi, yi, zi;
+                    if (readStore) {
+                        xi = sx[i];
+                        yi = sy[i];
+                        zi = sz[i];
+                    } else {
+                        Atom atom = atoms[i];
+                        xi = atom.getX();
+                        yi = atom.getY();
+                        zi = atom.getZ();
+                    }
+                    if (incremental && valid && xi == x[i] && yi == y[i] && zi == z[i]) {
+                        continue;
+                    }
+                    moved++;
+                    lastMoved[i] = next;
+                    x[i] = xi;
+                    y[i] = yi;
+                    z[i] = zi;
+                    if (!incremental) {
+                        xyz[0] = xi;
+                        xyz[1] = yi;
+                        xyz[2] = zi;
+                        List<SymOp> symOps = crystal.spaceGroup.symOps;
+                        for (int s = 1; s < nSymm; s++) {
+                            crystal.applySymOp(xyz, mate, symOps.get(s));
+                            mates[s][0][i] = mate[0];
+                            mates[s][1][i] = mate[1];
+                            mates[s][2][i] = mate[2];
+                        }
+                        continue;
+                    }
+                    for (int s = 1; s < nSymm; s++) {
+                        final double r[][] = rot[s];
+                        final double t[] = trans[s];
+                        mates[s][0][i] = r[0][0] * xi + r[0][1] * yi + r[0][2] * zi + t[0];
+                        mates[s][1][i] = r[1][0] * xi + r[1][1] * yi + r[1][2] * zi + t[1];
+                        mates[s][2][i] = r[2][0] * xi + r[2][1] * yi + r[2][2] * zi + t[2];
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,519 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.nonbonded;
+
+import static java.lang.System.arraycopy;
+import static java.util.Arrays.fill;
+
+/**
+ * Truncated conjugate gradient (TCG) solver for the mutual induced dipole
+ * equations (&alpha;<sup>-1</sup> - T) &mu; = E.
+ * <p>
+ * A fixed number of Jacobi preconditioned conjugate gradient steps is taken
+ * from the direct induced dipoles &alpha;E, optionally followed by a "peek"
+ * step &mu; += &omega; &alpha; r. The induced dipoles are then an explicit
+ * function of the coordinates, so the polarization energy
+ * -&frac12; &mu;<sub>d</sub> &middot; E<sub>p</sub> can be differentiated
+ * analytically and the forces are energy conserving, without the drift of a
+ * loosely converged SCF. The cost is fixed at order + 1 field evaluations for
+ * the dipoles and another order + 1 for the adjoint that is needed for the
+ * gradient.
+ * <p>
+ * The gradient is evaluated by reverse differentiation of the recursion. For
+ * the fixed step sequence the result is
+ * <pre>
+ * dU = -&frac12; (&mu;<sub>d</sub> &middot; dE<sub>p</sub> + &#274; &middot; dE<sub>d</sub> + &Sigma;<sub>k</sub> &#563;<sub>k</sub> &middot; dT &middot; v<sub>k</sub>)
+ * </pre>
+ * where &#274; are the adjoint dipoles, and v<sub>k</sub> and
+ * &#563;<sub>k</sub> are the vectors each field evaluation was applied to in
+ * the forward and adjoint passes. The first two terms have the form of the
+ * direct polarization gradient; the pair terms are the derivative of the
+ * dipole-dipole interaction.
+ * <p>
+ * Reference: F. Aviat, A. Levitt, B. Stamm, Y. Maday, P. Ren, J. W. Ponder,
+ * L. Lagardere and J.-P. Piquemal, "Truncated Conjugate Gradient: An Optimal
+ * Strategy for the Analytical Evaluation of the Many-Body Polarization Energy
+ * and Forces in Molecular Simulations", J. Chem. Theory Comput. 13, 180-190
+ * (2017).
+ *
+ * @author Michael J. Schnieders
+ * @since 1.0
+ */
+public class TruncatedConjugateGradient {
+
+    /**
+     * The field of two sets of trial induced dipoles.
+     */
+    public interface DipoleField {
+
+        /**
+         * Compute the field T &mu; due to each of two sets of induced dipoles.
+         * All arrays are dimensioned [3][nAtoms].
+         *
+         * @param dipole The first set of dipoles.
+         * @param dipoleCR The second set of dipoles.
+         * @param field The field of the first set.
+         * @param fieldCR The field of the second set.
+         * @param pair The gradient pair the first set belongs to.
+         * @param adjoint True if the first set is an adjoint vector, false if
+         * it is a forward vector.
+         */
+        void field(double dipole[][], double dipoleCR[][], double field[][], double fieldCR[][],
+                int pair, boolean adjoint);
+    }
+
+    /**
+     * The peek step size.
+     */
+    private static final double OMEGA = 1.0;
+
+    private final int order;
+    private final boolean peek;
+    private int nAtoms;
+    private double polarizability[];
+
+    /**
+     * Current vectors for the direct (0) and chain rule (1) systems.
+     */
+    private double x[][][];
+    private double r[][][];
+    private double z[][][];
+    private double p[][][];
+    private double w[][][];
+    private double q[][][];
+    private double y[][][];
+    /**
+     * Forward vectors of the direct system that the adjoint pass needs.
+     */
+    private double vx0[][];
+    private double vp[][][];
+    private double vw[][][];
+    private double vq[][][];
+    private double vz[][][];
+    private final double rho[];
+    private final double sigma[];
+    private final double gamma[];
+    private final double beta[];
+    /**
+     * Adjoint vectors.
+     */
+    private double adjoint[][];
+    private double pairAdjoint[][][];
+    private double rb[][], pb[][], wb[][], qb[][], zb[][], tb[][], zero[][];
+
+    /**
+     * Constructor for TruncatedConjugateGradient.
+     *
+     * @param order The number of conjugate gradient steps (1 or 2 is
+     * typical).
+     * @param peek Apply the peek step.
+     */
+    public TruncatedConjugateGradient(int order, boolean peek) {
+        this.order = Math.max(1, order);
+        this.peek = peek;
+        rho = new double[this.order + 1];
+        sigma = new double[this.order];
+        gamma = new double[this.order];
+        beta = new double[this.order];
+    }
+
+    /**
+     * The number of conjugate gradient steps.
+     *
+     * @return the order.
+     */
+    public int getOrder() {
+        return order;
+    }
+
+    /**
+     * True if the peek step is applied.
+     *
+     * @return true if the peek step is applied.
+     */
+    public boolean getPeek() {
+        return peek;
+    }
+
+    /**
+     * The number of field evaluations made by each of solve and adjoint.
+     *
+     * @return the number of field evaluations.
+     */
+    public int getFieldEvaluations() {
+        return order + 1;
+    }
+
+    /**
+     * The number of dipole-dipole gradient pairs (one per field evaluation).
+     *
+     * @return the number of pairs.
+     */
+    public int getPairCount() {
+        return order + 1;
+    }
+
+    /**
+     * Compute TCG induced dipoles for the direct and chain rule fields.
+     *
+     * @param nAtoms The number of atoms.
+     * @param polarizability The polarizability of each atom.
+     * @param directField The direct field [3][nAtoms].
+     * @param directFieldCR The chain rule (polarization) field [3][nAtoms].
+     * @param dipoleField The field operator.
+     */
+    public void solve(int nAtoms, double polarizability[], double directField[][],
+            double directFieldCR[][], DipoleField dipoleField) {
+        allocate(nAtoms);
+        this.polarizability = polarizability;
+        double e[][][] = {directField, directFieldCR};
+        for (int c = 0; c < 2; c++) {
+            scale(polarizability, e[c], x[c]);
+        }
+        copy(x[0], vx0);
+        dipoleField.field(x[0], x[1], y[0], y[1], 0, false);
+        double rho1 = 0.0;
+        for (int c = 0; c < 2; c++) {
+            copy(y[c], r[c]);
+            copy(r[c], w[c]);
+            scale(polarizability, r[c], z[c]);
+            copy(z[c], p[c]);
+        }
+        rho[0] = dot(r[0], z[0]);
+        rho1 = dot(r[1], z[1]);
+        for (int n = 0; n < order; n++) {
+            copy(p[0], vp[n]);
+            copy(w[0], vw[n]);
+            dipoleField.field(p[0], p[1], y[0], y[1], n + 1, false);
+            for (int c = 0; c < 2; c++) {
+                double rhoc = (c == 0) ? rho[n] : rho1;
+                subtract(w[c], y[c], q[c]);
+                double sig = dot(p[c], q[c]);
+                double gam = (sig != 0.0) ? rhoc / sig : 0.0;
+                if (c == 0) {
+                    sigma[n] = sig;
+                    gamma[n] = gam;
+                    copy(q[c], vq[n]);
+                }
+                axpy(gam, p[c], x[c]);
+                axpy(-gam, q[c], r[c]);
+                scale(polarizability, r[c], z[c]);
+                if (c == 0) {
+                    copy(z[c], vz[n + 1]);
+                }
+                if (n + 1 < order) {
+                    double rhoNext = dot(r[c], z[c]);
+                    double bet = (rhoc != 0.0) ? rhoNext / rhoc : 0.0;
+                    for (int j = 0; j < 3; j++) {
+                        for (int i = 0; i < nAtoms; i++) {
+                            p[c][j][i] = z[c][j][i] + bet * p[c][j][i];
+                            w[c][j][i] = r[c][j][i] + bet * w[c][j][i];
+                        }
+                    }
+                    if (c == 0) {
+                        beta[n] = bet;
+                        rho[n + 1] = rhoNext;
+                    } else {
+                        rho1 = rhoNext;
+                    }
+                }
+            }
+        }
+        if (peek) {
+            for (int c = 0; c < 2; c++) {
+                axpy(OMEGA, z[c], x[c]);
+            }
+        }
+    }
+
+    /**
+     * Compute the adjoint dipoles and the adjoint vectors of each field
+     * evaluation by reverse differentiation of the direct system recursion,
+     * with respect to a seed vector (the chain rule field for the polarization
+     * energy). Must follow a call to solve.
+     *
+     * @param seed The seed vector [3][nAtoms].
+     * @param dipoleField The field operator.
+     */
+    public void adjoint(double seed[][], DipoleField dipoleField) {
+        double alpha[] = polarizability;
+        // Adjoint of the peek step.
+        fill3(rb, 0.0);
+        fill3(zb, 0.0);
+        if (peek) {
+            axpy(OMEGA, seed, zb);
+        }
+        fill3(pb, 0.0);
+        fill3(wb, 0.0);
+        double rhob[] = new double[order + 1];
+        for (int n = order - 1; n >= 0; n--) {
+            double betab = 0.0;
+            if (n + 1 < order) {
+                // Adjoint of w(n+1) = r(n+1) + beta w(n) and p(n+1) = z(n+1) + beta p(n).
+                betab = dot(wb, vw[n]) + dot(pb, vp[n]);
+                add(wb, rb);
+                add(pb, zb);
+                scaleInPlace(beta[n], wb);
+                scaleInPlace(beta[n], pb);
+                // Adjoint of beta(n) = rho(n+1) / rho(n).
+                rhob[n + 1] += betab / rho[n];
+                rhob[n] -= betab * rho[n + 1] / (rho[n] * rho[n]);
+                // Adjoint of rho(n+1) = r(n+1) . alpha r(n+1).
+                axpy(2.0 * rhob[n + 1], vz[n + 1], rb);
+            } else {
+                fill3(pb, 0.0);
+                fill3(wb, 0.0);
+            }
+            // Adjoint of z(n+1) = alpha r(n+1).
+            scaleAdd(alpha, zb, rb);
+            fill3(zb, 0.0);
+            // Adjoint of r(n+1) = r(n) - gamma q(n); r(n) adjoint is rb itself.
+            double gammab = -dot(rb, vq[n]);
+            for (int j = 0; j < 3; j++) {
+                for (int i = 0; i < nAtoms; i++) {
+                    qb[j][i] = -gamma[n] * rb[j][i];
+                }
+            }
+            // Adjoint of x(n+1) = x(n) + gamma p(n).
+            gammab += dot(seed, vp[n]);
+            axpy(gamma[n], seed, pb);
+            // Adjoint of gamma(n) = rho(n) / sigma(n).
+            double sigmab = 0.0;
+            if (sigma[n] != 0.0) {
+                rhob[n] += gammab / sigma[n];
+                sigmab = -gammab * gamma[n] / sigma[n];
+            }
+            // Adjoint of sigma(n) = p(n) . q(n).
+            axpy(sigmab, vq[n], pb);
+            axpy(sigmab, vp[n], qb);
+            // Adjoint of q(n) = w(n) - T p(n).
+            add(qb, wb);
+            for (int j = 0; j < 3; j++) {
+                for (int i = 0; i < nAtoms; i++) {
+                    pairAdjoint[n + 1][j][i] = -qb[j][i];
+                }
+            }
+            dipoleField.field(pairAdjoint[n + 1], zero, tb, y[1], n + 1, true);
+            add(tb, pb);
+            if (n > 0) {
+                // Adjoint of p(n) = z(n) + beta p(n-1) and w(n) = r(n) + beta w(n-1) is applied at step n - 1.
+                continue;
+            }
+            // Adjoint of p(0) = z(0), w(0) = r(0) and rho(0) = r(0) . alpha r(0).
+            add(wb, rb);
+            add(pb, zb);
+            axpy(2.0 * rhob[0], vz[0], rb);
+            scaleAdd(alpha, zb, rb);
+        }
+        // Adjoint of r(0) = T x(0).
+        copy(rb, pairAdjoint[0]);
+        dipoleField.field(pairAdjoint[0], zero, tb, y[1], 0, true);
+        // Adjoint of x(0) = alpha E.
+        for (int j = 0; j < 3; j++) {
+            for (int i = 0; i < nAtoms; i++) {
+                adjoint[j][i] = alpha[i] * (seed[j][i] + tb[j][i]);
+            }
+        }
+    }
+
+    /**
+     * The TCG dipoles of the direct field [3][nAtoms].
+     *
+     * @return the induced dipoles.
+     */
+    public double[][] getDipoles() {
+        return x[0];
+    }
+
+    /**
+     * The TCG dipoles of the chain rule field [3][nAtoms].
+     *
+     * @return the chain rule induced dipoles.
+     */
+    public double[][] getDipolesCR() {
+        return x[1];
+    }
+
+    /**
+     * The adjoint dipoles &#274; [3][nAtoms], which converge to the chain rule
+     * induced dipoles as the order increases.
+     *
+     * @return the adjoint dipoles.
+     */
+    public double[][] getAdjointDipoles() {
+        return adjoint;
+    }
+
+    /**
+     * The forward vector v<sub>k</sub> of a gradient pair.
+     *
+     * @param k The pair index.
+     * @return the forward vector [3][nAtoms].
+     */
+    public double[][] getPairVector(int k) {
+        return (k == 0) ? vx0 : vp[k - 1];
+    }
+
+    /**
+     * The adjoint vector &#563;<sub>k</sub> of a gradient pair.
+     *
+     * @param k The pair index.
+     * @return the adjoint vector [3][nAtoms].
+     */
+    public double[][] getPairAdjoint(int k) {
+        return pairAdjoint[k];
+    }
+
+    private void allocate(int n) {
+        nAtoms = n;
+        if (x != null && x[0][0].length >= n) {
+            return;
+        }
+        x = new double[2][3][n];
+        r = new double[2][3][n];
+        z = new double[2][3][n];
+        p = new double[2][3][n];
+        w = new double[2][3][n];
+        q = new double[2][3][n];
+        y = new double[2][3][n];
+        vx0 = new double[3][n];
+        vp = new double[order][3][n];
+        vw = new double[order][3][n];
+        vq = new double[order][3][n];
+        vz = new double[order + 1][][];
+        for (int k = 1; k <= order; k++) {
+            vz[k] = new double[3][n];
+        }
+        adjoint = new double[3][n];
+        pairAdjoint = new double[order + 1][3][n];
+        rb = new double[3][n];
+        pb = new double[3][n];
+        wb = new double[3][n];
+        qb = new double[3][n];
+        zb = new double[3][n];
+        tb = new double[3][n];
+        zero = new double[3][n];
+        // z(0) = p(0)
+        vz[0] = vp[0];
+    }
+
+    private double dot(double a[][], double b[][]) {
+        double sum = 0.0;
+        for (int j = 0; j < 3; j++) {
+            final double aj[] = a[j];
+            final double bj[] = b[j];
+            for (int i = 0; i < nAtoms; i++) {
+                sum += aj[i] * bj[i];
+            }
+        }
+        return sum;
+    }
+
+    private void copy(double from[][], double to[][]) {
+        for (int j = 0; j < 3; j++) {
+            arraycopy(from[j], 0, to[j], 0, nAtoms);
+        }
+    }
+
+    private void fill3(double a[][], double value) {
+        for (int j = 0; j < 3; j++) {
+            fill(a[j], 0, nAtoms, value);
+        }
+    }
+
+    /**
+     * b += a
+     */
+    private void add(double a[][], double b[][]) {
+        axpy(1.0, a, b);
+    }
+
+    /**
+     * b += s a
+     */
+    private void axpy(double s, double a[][], double b[][]) {
+        for (int j = 0; j < 3; j++) {
+            final double aj[] = a[j];
+            final double bj[] = b[j];
+            for (int i = 0; i < nAtoms; i++) {
+                bj[i] += s * aj[i];
+            }
+        }
+    }
+
+    /**
+     * c = a - b
+     */
+    private void subtract(double a[][], double b[][], double c[][]) {
+        for (int j = 0; j < 3; j++) {
+            for (int i = 0; i < nAtoms; i++) {
+                c[j][i] = a[j][i] - b[j][i];
+            }
+        }
+    }
+
+    /**
+     * b = alpha a
+     */
+    private void scale(double alpha[], double a[][], double b[][]) {
+        for (int j = 0; j < 3; j++) {
+            for (int i = 0; i < nAtoms; i++) {
+                b[j][i] = alpha[i] * a[j][i];
+            }
+        }
+    }
+
+    /**
+     * b += alpha a
+     */
+    private void scaleAdd(double alpha[], double a[][], double b[][]) {
+        for (int j = 0; j < 3; j++) {
+            for (int i = 0; i < nAtoms; i++) {
+                b[j][i] += alpha[i] * a[j][i];
+            }
+        }
+    }
+
+    private void scaleInPlace(double s, double a[][]) {
+        for (int j = 0; j < 3; j++) {
+            for (int i = 0; i < nAtoms; i++) {
+                a[j][i] *= s;
+            }
+        }
+    }
+}
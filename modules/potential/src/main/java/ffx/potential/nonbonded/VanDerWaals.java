@@ -63,8 +63,11 @@ import ffx.crystal.SymOp;
 import ffx.numerics.AdderDoubleArray;
 import ffx.numerics.AtomicDoubleArray;
 import ffx.numerics.AtomicDoubleArray.AtomicDoubleArrayImpl;
+import ffx.numerics.BlockedDoubleArray;
 import ffx.numerics.MultiDoubleArray;
 import ffx.numerics.PJDoubleArray;
+import ffx.potential.CoordinateStore;
+import ffx.potential.GradientStore;
 import ffx.potential.bonded.Angle;
 import ffx.potential.bonded.Atom;
 import ffx.potential.bonded.Atom.Resolution;
@@ -75,6 +78,7 @@ import ffx.potential.extended.ExtendedSystem;
 import ffx.potential.parameters.AtomType;
 import ffx.potential.parameters.ForceField;
 import ffx.potential.parameters.ForceField.ForceFieldDouble;
+import ffx.potential.parameters.ForceField.ForceFieldInteger;
 import ffx.potential.parameters.VDWType;
 import static ffx.numerics.AtomicDoubleArray.AtomicDoubleArrayImpl.MULTI;
 import static ffx.potential.nonbonded.VanDerWaalsForm.EPS;
@@ -97,6 +101,11 @@ public class VanDerWaals implements MaskingInterface,
         LambdaInterface {
 
     private static final Logger logger = Logger.getLogger(VanDerWaals.class.getName());
+    /**
+     * Default neighbor list buffer (A), used unless the list-buffer keyword is
+     * set.
+     */
+    private static final double DEFAULT_LIST_BUFFER = 2.0;
 
     /**
      * This field specifies resolution for multi-scale modeling.
@@ -113,6 +122,12 @@ public class VanDerWaals implements MaskingInterface,
      */
     private Atom atoms[];
     private Atom previousAtoms[];
+    /**
+     * Struct-of-arrays coordinates and gradient of the ForceFieldEnergy,
+     * indexed like the atom array, or null to use the Atom accessors.
+     */
+    private CoordinateStore coordinateStore = null;
+    private GradientStore gradientStore = null;
     /**
      * Specification of the molecular index for each atom.
      */
@@ -304,8 +319,45 @@ public class VanDerWaals implements MaskingInterface,
      * interactions fully.
      */
     private NeighborList neighborList;
+    /**
+     * Symmetry mates of the atomic coordinates, which are shared with the
+     * ParticleMeshEwald term through the NeighborList.
+     */
+    private final SymmetryMateCache symmetryMateCache;
+    /**
+     * The SymmetryMateCache update count when the reduced symmetry mates were
+     * last expanded, or -1 to expand all atoms.
+     */
+    private long symmetryMateCount = -1;
     private final VanDerWaalsRegion vanDerWaalsRegion;
     private boolean neighborListOnly = true;
+    /**
+     * If true, the VanDerWaalsRegion returns after updating the neighbor list.
+     */
+    private boolean updateNeighborListOnly = false;
+    /**
+     * If true, the neighbor list has already been updated for the current
+     * coordinates by the updateNeighborList method.
+     */
+    private boolean neighborListCurrent = false;
+    /**
+     * Cluster pair list of the asymmetric unit (or null).
+     */
+    private ClusterPairList clusterPairList = null;
+    /**
+     * If true, interactions within the asymmetric unit are evaluated by the
+     * cluster pair kernel.
+     */
+    private boolean clusterKernel = false;
+    /**
+     * Tabulated hard core interactions (or null).
+     */
+    private VanDerWaalsTable vdwTable = null;
+    /**
+     * If true, the reduced gradient is not added to the atoms by the
+     * VanDerWaalsRegion; the addDeferredGradient method must be called.
+     */
+    private boolean deferGradient = false;
     /**
      * Timing variables.
      */
@@ -401,9 +453,16 @@ public class VanDerWaals implements MaskingInterface,
         initAtomArrays();
 
         /**
-         * Set up the cutoff and polynomial switch.
+         * Set up the cutoff and polynomial switch. Lists are rebuilt once an
+         * atom moves half the buffer, so a smaller buffer gives fewer pairs
+         * but more frequent updates.
          */
-        double buff = 2.0;
+        double buff = forceField.getDouble(ForceFieldDouble.LIST_BUFFER, DEFAULT_LIST_BUFFER);
+        if (!(buff > 0.0) || Double.isInfinite(buff)) {
+            logger.warning(format(" The list-buffer must be greater than 0 (%8.3f); using %8.3f A.",
+                    buff, DEFAULT_LIST_BUFFER));
+            buff = DEFAULT_LIST_BUFFER;
+        }
         double cut;
         double off;
 
@@ -462,8 +521,32 @@ public class VanDerWaals implements MaskingInterface,
              */
             neighborList = new NeighborList(null, this.crystal, atoms, off, buff, parallelTeam);
         }
+        symmetryMateCache = neighborList.getSymmetryMateCache();
+        symmetryMateCache.setIncremental(forceField.getBoolean(ForceField.ForceFieldBoolean.SYMMETRY_MATE_CACHE, true));
         pairwiseSchedule = neighborList.getPairwiseSchedule();
         neighborLists = new int[nSymm][][];
+        neighborList.setCompact(forceField.getBoolean(ForceField.ForceFieldBoolean.COMPACT_NEIGHBOR_LIST, false));
+        int clusterSize = forceField.getInteger(ForceFieldInteger.VDW_CLUSTER_SIZE, 0);
+        if (clusterSize != 0 && clusterSize != 4 && clusterSize != 8) {
+            logger.info(format(" Unsupported VDW-CLUSTER-SIZE %d; cluster pairs are disabled.", clusterSize));
+            clusterSize = 0;
+        }
+        neighborList.setClusterPairs(clusterSize, this);
+
+        /**
+         * Optionally tabulate the hard core energy of each class pair.
+         */
+        if (forceField.getBoolean(ForceField.ForceFieldBoolean.VDW_TABLE, false)) {
+            if (disabledNeighborUpdates) {
+                logger.info(" Tabulated van der Waals interactions require a cutoff; using the analytic path.");
+            } else {
+                int points = forceField.getInteger(ForceFieldInteger.VDW_TABLE_POINTS, VanDerWaalsTable.DEFAULT_POINTS);
+                vdwTable = new VanDerWaalsTable(vdwForm, nonbondedCutoff, multiplicativeSwitch,
+                        VanDerWaalsTable.DEFAULT_MIN_R, points);
+                vdwTable.build(atomClass);
+                checkTable();
+            }
+        }
 
         /**
          * Reduce and expand the coordinates of the asymmetric unit. Then build
@@ -472,11 +555,18 @@ public class VanDerWaals implements MaskingInterface,
         buildNeighborList(atoms);
         // Then, optionally, prevent that neighbor list from ever updating.
         neighborList.setDisableUpdates(forceField.getBoolean(ForceField.ForceFieldBoolean.DISABLE_NEIGHBOR_UPDATES, false));
+        neighborList.setIncremental(forceField.getBoolean(ForceField.ForceFieldBoolean.INCREMENTAL_NEIGHBOR_LIST, false));
 
         logger.info("\n  Van der Waals");
         logger.info(format("   Switch Start:                         %6.3f (A)", cut));
         logger.info(format("   Cut-Off:                              %6.3f (A)", off));
         logger.info(format("   Long-Range Correction:                %b", doLongRangeCorrection));
+        if (clusterSize > 0) {
+            logger.info(format("   Cluster Pair Size:                    %6d", clusterSize));
+        }
+        if (vdwTable != null) {
+            logger.info(vdwTable.toString());
+        }
 
         if (lambdaTerm) {
             logger.info("   Alchemical Parameters");
@@ -513,6 +603,7 @@ public class VanDerWaals implements MaskingInterface,
             atoms = esvSystem.getExtendedAtoms();
             nAtoms = atoms.length;
         }
+        symmetryMateCount = -1;
         if (atomClass == null || nAtoms > atomClass.length
                 || lambdaTerm || esvTerm) {
             atomClass = new int[nAtoms];
@@ -546,6 +637,16 @@ public class VanDerWaals implements MaskingInterface,
                         lambdaGradZ = new MultiDoubleArray(threadCount, nAtoms);
                     }
                     break;
+                case BLOCKED:
+                    gradX = new BlockedDoubleArray(threadCount, nAtoms);
+                    gradY = new BlockedDoubleArray(threadCount, nAtoms);
+                    gradZ = new BlockedDoubleArray(threadCount, nAtoms);
+                    if (lambdaTerm) {
+                        lambdaGradX = new BlockedDoubleArray(threadCount, nAtoms);
+                        lambdaGradY = new BlockedDoubleArray(threadCount, nAtoms);
+                        lambdaGradZ = new BlockedDoubleArray(threadCount, nAtoms);
+                    }
+                    break;
                 case PJ:
                     gradX = new PJDoubleArray(threadCount, nAtoms);
                     gradY = new PJDoubleArray(threadCount, nAtoms);
@@ -685,12 +786,14 @@ public class VanDerWaals implements MaskingInterface,
     }
 
     public final void buildNeighborList(Atom[] atoms) {
+        neighborListCurrent = false;
         neighborList.setAtoms(atoms);
         if (esvTerm) {  // TODO: Move ESV neighborlist construction into the parallel team.
             neighborList.buildList(reduced, neighborLists, null, neighborListOnly, true);
         } else {
             neighborListOnly = true;
             try {
+                symmetryMateCache.update(atoms, parallelTeam);
                 parallelTeam.execute(vanDerWaalsRegion);
             } catch (Exception e) {
                 String message = " Fatal exception expanding coordinates.\n";
@@ -704,15 +807,33 @@ public class VanDerWaals implements MaskingInterface,
         this.atoms = atoms;
         this.nAtoms = atoms.length;
         this.molecule = molecule;
+        // The stores are indexed like the previous atom array.
+        coordinateStore = null;
+        gradientStore = null;
 
         if (nAtoms != molecule.length) {
             logger.warning("Atom and molecule arrays are of different lengths.");
             throw new IllegalArgumentException();
         }
         initAtomArrays();
+        if (vdwTable != null) {
+            vdwTable.build(atomClass);
+            checkTable();
+        }
         buildNeighborList(atoms);
     }
 
+    /**
+     * Use the analytic path if the tabulated energy is not accurate enough.
+     */
+    private void checkTable() {
+        if (!vdwTable.isAccurate()) {
+            logger.info(format(" Tabulated van der Waals relative error %10.3e exceeds %10.3e; using the analytic path.",
+                    vdwTable.getMaxRelativeEnergyError(), VanDerWaalsTable.MAX_RELATIVE_ERROR));
+            vdwTable = null;
+        }
+    }
+
     /**
      * Allow sharing the of the VanDerWaals NeighborList with ParticleMeshEwald.
      *
@@ -888,6 +1009,15 @@ public class VanDerWaals implements MaskingInterface,
         return vdwForm;
     }
 
+    /**
+     * The tabulated hard core interactions in use.
+     *
+     * @return The VanDerWaalsTable, or null if the analytic path is used.
+     */
+    public VanDerWaalsTable getVanDerWaalsTable() {
+        return vdwTable;
+    }
+
     /**
      * Get the buffer size.
      *
@@ -912,14 +1042,105 @@ public class VanDerWaals implements MaskingInterface,
         this.print = print;
 
         try {
+            symmetryMateCache.update(atoms, parallelTeam);
             parallelTeam.execute(vanDerWaalsRegion);
         } catch (Exception e) {
             String message = " Fatal exception expanding coordinates.\n";
             logger.log(Level.SEVERE, message, e);
         }
+        neighborListCurrent = false;
         return sharedEnergy.get();
     }
 
+    /**
+     * Expand the coordinates and update the neighbor list (if an atom has
+     * moved more than half the buffer) without computing the energy. The
+     * neighbor list is shared with the real space particle mesh Ewald
+     * calculation, which can then proceed concurrently with the next call to
+     * the energy method.
+     */
+    public void updateNeighborList() {
+        updateNeighborListOnly = true;
+        try {
+            symmetryMateCache.update(atoms, parallelTeam);
+            parallelTeam.execute(vanDerWaalsRegion);
+            neighborListCurrent = true;
+        } catch (Exception e) {
+            String message = " Fatal exception updating the neighbor list.\n";
+            logger.log(Level.SEVERE, message, e);
+        } finally {
+            updateNeighborListOnly = false;
+        }
+    }
+
+    /**
+     * If true, the Van der Waals gradient is not added to the atoms during the
+     * energy method, so that the energy can be evaluated concurrently with
+     * other terms that accumulate gradient into the atoms. The gradient is
+     * then added by the addDeferredGradient method.
+     *
+     * @param deferGradient If true, defer the gradient reduction into the atoms.
+     */
+    public void setDeferGradient(boolean deferGradient) {
+        this.deferGradient = deferGradient;
+    }
+
+    /**
+     * Add the Van der Waals gradient from the most recent energy evaluation to
+     * the atoms, if it was deferred.
+     */
+    public void addDeferredGradient() {
+        if (!deferGradient || !gradient) {
+            return;
+        }
+        addGradient(0, nAtoms - 1);
+    }
+
+    /**
+     * Read coordinates from, and add the gradient to, the struct-of-arrays
+     * stores of the ForceFieldEnergy rather than through the Atom accessors.
+     * The stores must be indexed like the current atom array; they are
+     * dropped by setAtoms.
+     *
+     * @param coordinateStore The CoordinateStore, or null.
+     * @param gradientStore The GradientStore, or null.
+     */
+    public void setStores(CoordinateStore coordinateStore, GradientStore gradientStore) {
+        if (coordinateStore == null || gradientStore == null
+                || coordinateStore.size() != nAtoms || gradientStore.size() != nAtoms) {
+            coordinateStore = null;
+            gradientStore = null;
+        }
+        this.coordinateStore = coordinateStore;
+        this.gradientStore = gradientStore;
+        symmetryMateCache.setCoordinateStore(coordinateStore);
+    }
+
+    /**
+     * Add the reduced gradient of atoms lb through ub to the active atoms.
+     *
+     * @param lb The first atom.
+     * @param ub The last atom.
+     */
+    private void addGradient(int lb, int ub) {
+        if (gradientStore != null && !coordinateStore.isReleased()) {
+            final double gx[] = gradientStore.getGradX();
+            final double gy[] = gradientStore.getGradY();
+            final double gz[] = gradientStore.getGradZ();
+            for (int i = lb; i <= ub; i++) {
+                if (atoms[i].isActive()) {
+                    gx[i] += gradX.get(i);
+                    gy[i] += gradY.get(i);
+                    gz[i] += gradZ.get(i);
+                }
+            }
+        } else {
+            for (int i = lb; i <= ub; i++) {
+                atoms[i].addToXYZGradient(gradX.get(i), gradY.get(i), gradZ.get(i));
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -1327,11 +1548,13 @@ public class VanDerWaals implements MaskingInterface,
                 reducedXYZ = reduced[0];
                 neighborLists = new int[nSymm][][];
             }
+            symmetryMateCount = -1;
         }
         neighborList.setCrystal(crystal);
         neighborListOnly = true;
         try {
             print = false;
+            symmetryMateCache.update(atoms, parallelTeam);
             parallelTeam.execute(vanDerWaalsRegion);
         } catch (Exception e) {
             String message = " Fatal exception expanding coordinates.\n";
@@ -1358,12 +1581,18 @@ public class VanDerWaals implements MaskingInterface,
         private final InitializationLoop initializationLoop[];
         private final ExpandLoop expandLoop[];
         private final VanDerWaalsLoop vanDerWaalsLoop[];
+        private final ClusterPairLoop clusterPairLoop[];
         private final ReductionLoop reductionLoop[];
+        /**
+         * The SymmetryMateCache update count for this execution.
+         */
+        private long mateCount;
 
         public VanDerWaalsRegion() {
             initializationLoop = new InitializationLoop[threadCount];
             expandLoop = new ExpandLoop[threadCount];
             vanDerWaalsLoop = new VanDerWaalsLoop[threadCount];
+            clusterPairLoop = new ClusterPairLoop[threadCount];
             reductionLoop = new ReductionLoop[threadCount];
         }
 
@@ -1386,6 +1615,13 @@ public class VanDerWaals implements MaskingInterface,
                 sharedEnergy.set(0.0);
             }
             sharedInteractions.set(0);
+            mateCount = symmetryMateCache.getUpdateCount();
+            /**
+             * The cluster pair kernel does not support softcore or extended
+             * system interactions.
+             */
+            clusterPairList = neighborList.getClusterPairList();
+            clusterKernel = (clusterPairList != null && !lambdaTerm && !esvTerm && resolution == null);
             if (lambdaTerm) {
                 shareddEdL.set(0.0);
                 sharedd2EdL2.set(0.0);
@@ -1413,6 +1649,7 @@ public class VanDerWaals implements MaskingInterface,
         @Override
         public void finish() throws IOException {
             neighborListOnly = false;
+            symmetryMateCount = mateCount;
         }
 
         @Override
@@ -1426,6 +1663,7 @@ public class VanDerWaals implements MaskingInterface,
                 initializationLoop[threadIndex] = new InitializationLoop();
                 expandLoop[threadIndex] = new ExpandLoop();
                 vanDerWaalsLoop[threadIndex] = new VanDerWaalsLoop();
+                clusterPairLoop[threadIndex] = new ClusterPairLoop();
                 reductionLoop[threadIndex] = new ReductionLoop();
             }
 
@@ -1452,12 +1690,18 @@ public class VanDerWaals implements MaskingInterface,
             /**
              * Build the neighbor-list (if necessary) using reduced coordinates.
              */
-            if (threadIndex == 0) {
+            if (threadIndex == 0 && !neighborListCurrent) {
                 neighborList.buildList(reduced, neighborLists, null, neighborListOnly, false);
             }
+            if (threadIndex == 0 && clusterKernel && !neighborListOnly && !updateNeighborListOnly) {
+                clusterKernel = (clusterPairList.getAtomCount() == nAtoms);
+                if (clusterKernel) {
+                    clusterPairList.gather(reducedXYZ);
+                }
+            }
             barrier();
 
-            if (neighborListOnly) {
+            if (neighborListOnly || updateNeighborListOnly) {
                 return;
             }
 
@@ -1469,6 +1713,9 @@ public class VanDerWaals implements MaskingInterface,
                     vdwTotal = -System.nanoTime();
                 }
                 execute(0, nAtoms - 1, vanDerWaalsLoop[threadIndex]);
+                if (clusterKernel) {
+                    execute(0, clusterPairList.getClusterCount() - 1, clusterPairLoop[threadIndex]);
+                }
                 if (threadIndex == 0) {
                     vdwTotal += System.nanoTime();
                 }
@@ -1518,6 +1765,9 @@ public class VanDerWaals implements MaskingInterface,
                 int countMax = 0;
                 for (int i = 0; i < threadCount; i++) {
                     int count = vanDerWaalsLoop[i].getCount();
+                    if (clusterKernel) {
+                        count += clusterPairLoop[i].getCount();
+                    }
                     long totalTime = initializationTime[i] + vdwTime[i] + reductionTime[i];
                     logger.fine(format("    %3d   %7.4f %7.4f %7.4f %7.4f %10d",
                             i, initializationTime[i] * 1e-9, vdwTime[i] * 1e-9,
@@ -1570,12 +1820,19 @@ public class VanDerWaals implements MaskingInterface,
 
             @Override
             public void run(int lb, int ub) {
+                /**
+                 * The asymmetric unit of the SymmetryMateCache is current,
+                 * having been read from the coordinate store (if present).
+                 */
+                double mate[][] = symmetryMateCache.getMates()[0];
+                final double x[] = mate[0];
+                final double y[] = mate[1];
+                final double z[] = mate[2];
                 for (int i = lb, i3 = 3 * lb; i <= ub; i++, i3 += 3) {
-                    Atom atom = atoms[i];
-                    coordinates[i3 + XX] = atom.getX();
-                    coordinates[i3 + YY] = atom.getY();
-                    coordinates[i3 + ZZ] = atom.getZ();
-                    use[i] = atom.getUse();
+                    coordinates[i3 + XX] = x[i];
+                    coordinates[i3 + YY] = y[i];
+                    coordinates[i3 + ZZ] = z[i];
+                    use[i] = atoms[i].getUse();
                 }
                 if (gradient) {
                     gradX.reset(threadID, lb, ub);
@@ -1593,8 +1850,6 @@ public class VanDerWaals implements MaskingInterface,
         private class ExpandLoop extends IntegerForLoop {
 
             private int threadID;
-            private final double in[] = new double[3];
-            private final double out[] = new double[3];
             // Extra padding to avert cache interference.
             private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
             private long pad8, pad9, pada, padb, padc, padd, pade, padf;
@@ -1648,38 +1903,59 @@ public class VanDerWaals implements MaskingInterface,
                 }
 
                 List<SymOp> symOps = crystal.spaceGroup.symOps;
+                double mates[][][] = symmetryMateCache.getMates();
 
-                if (symOps.size() != nSymm) {
+                if (symOps.size() != nSymm || mates.length < nSymm) {
                     String message = format(" Programming Error: nSymm %d != symOps.size %d", nSymm, symOps.size());
                     logger.log(Level.WARNING, message);
                     logger.log(Level.WARNING, " Replicates\n{0}", crystal.toString());
                     logger.log(Level.WARNING, " Unit Cell\n{0}", crystal.getUnitCell().toString());
                 }
 
+                /**
+                 * Symmetry operators are affine, so the reduced mate of an
+                 * atom follows from the cached mates of the atom and its
+                 * reduction partner. Only atoms whose mates have changed since
+                 * the last expansion are updated.
+                 */
                 double sp2 = crystal.getSpecialPositionCutoff();
                 sp2 *= sp2;
-                for (int iSymOp = 1; iSymOp < nSymm; iSymOp++) {
-                    SymOp symOp = symOps.get(iSymOp);
-                    double xyz[] = reduced[iSymOp];
-                    for (int i = lb; i <= ub; i++) {
-                        int i3 = i * 3;
-                        int iX = i3 + XX;
-                        int iY = i3 + YY;
-                        int iZ = i3 + ZZ;
-                        in[0] = reducedXYZ[iX];
-                        in[1] = reducedXYZ[iY];
-                        in[2] = reducedXYZ[iZ];
-                        crystal.applySymOp(in, out, symOp);
-                        xyz[iX] = out[0];
-                        xyz[iY] = out[1];
-                        xyz[iZ] = out[2];
+                long since = symmetryMateCount;
+                for (int i = lb; i <= ub; i++) {
+                    int redIndex = reductionIndex[i];
+                    if (!symmetryMateCache.moved(i, since)
+                            && (redIndex < 0 || !symmetryMateCache.moved(redIndex, since))) {
+                        continue;
+                    }
+                    int i3 = i * 3;
+                    int iX = i3 + XX;
+                    int iY = i3 + YY;
+                    int iZ = i3 + ZZ;
+                    double a = reductionValue[i];
+                    for (int iSymOp = 1; iSymOp < nSymm; iSymOp++) {
+                        double mate[][] = mates[iSymOp];
+                        double x = mate[0][i];
+                        double y = mate[1][i];
+                        double z = mate[2][i];
+                        if (redIndex >= 0) {
+                            double rx = mate[0][redIndex];
+                            double ry = mate[1][redIndex];
+                            double rz = mate[2][redIndex];
+                            x = a * (x - rx) + rx;
+                            y = a * (y - ry) + ry;
+                            z = a * (z - rz) + rz;
+                        }
+                        double xyz[] = reduced[iSymOp];
+                        xyz[iX] = x;
+                        xyz[iY] = y;
+                        xyz[iZ] = z;
 
                         /**
                          * Check if the atom is at a special position.
                          */
-                        double dx = in[0] - out[0];
-                        double dy = in[1] - out[1];
-                        double dz = in[2] - out[2];
+                        double dx = reducedXYZ[iX] - x;
+                        double dy = reducedXYZ[iY] - y;
+                        double dz = reducedXYZ[iZ] - z;
                         double r2 = dx * dx + dy * dy + dz * dz;
                         if (r2 < sp2) {
                             logger.log(Level.WARNING, " Atom may be at a special position: {0}", atoms[i].toString());
@@ -1708,6 +1984,18 @@ public class VanDerWaals implements MaskingInterface,
             private final double dx_local[];
             private final double transOp[][];
             private LambdaFactors lambdaFactorsLocal;
+            /**
+             * The derivative of a tabulated energy with respect to r^2.
+             */
+            private final double dEdr2[] = new double[1];
+            /**
+             * Compact neighbor lists, or null for per-atom lists.
+             */
+            private CompactNeighborList compactList;
+            /**
+             * Reads compact neighbor lists in place.
+             */
+            private final CompactNeighborList.Cursor cursor = new CompactNeighborList.Cursor();
 
             // Extra padding to avert cache interference.
             private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
@@ -1732,6 +2020,7 @@ public class VanDerWaals implements MaskingInterface,
             public void start() {
                 threadID = getThreadIndex();
                 vdwTime[threadID] = -System.nanoTime();
+                compactList = neighborList.getCompactNeighborList();
                 energy = 0.0;
                 count = 0;
                 if (lambdaTerm) {
@@ -1768,7 +2057,9 @@ public class VanDerWaals implements MaskingInterface,
                 double e = 0.0;
                 double xyzS[] = reduced[0];
                 int list[][] = neighborLists[0];        // neighborLists array: [nSymm][nAtoms][nNeighbors]
-                for (int i = lb; i <= ub; i++) {
+                // The asymmetric unit is handled by the cluster pair kernel if it is in use.
+                final int last = clusterKernel ? lb - 1 : ub;
+                for (int i = lb; i <= last; i++) {
                     if (!use[i]) {
                         continue;
                     }
@@ -1784,6 +2075,7 @@ public class VanDerWaals implements MaskingInterface,
                     final double rediv = 1.0 - redv;
                     final int classi = atomClass[i];
                     final double radEpsi[] = vdwForm.radEps[classi];
+                    final double tablei[][] = (vdwTable != null) ? vdwTable.getCoefficients(classi) : null;
                     final int moleculei = molecule[i];
                     double gxi = 0.0;
                     double gyi = 0.0;
@@ -1807,11 +2099,18 @@ public class VanDerWaals implements MaskingInterface,
                     /**
                      * Loop over the neighbor list.
                      */
-                    final int neighbors[] = list[i];
-                    final int npair = neighbors.length;
+                    final int neighbors[];
+                    final int npair;
+                    if (compactList != null) {
+                        npair = cursor.reset(compactList, 0, i);
+                        neighbors = null;
+                    } else {
+                        neighbors = list[i];
+                        npair = neighbors.length;
+                    }
 
                     for (int j = 0; j < npair; j++) {
-                        final int k = neighbors[j];
+                        final int k = (neighbors != null) ? neighbors[j] : cursor.next();
                         Atom atomk = atoms[k];
                         if (!use[k] || !include(atomi, atomk)) {
                             continue;
@@ -1838,6 +2137,36 @@ public class VanDerWaals implements MaskingInterface,
                                     || (intermolecularSoftcore && !sameMolecule)
                                     || (intramolecularSoftcore && sameMolecule)
                                     || esvi || esvk;
+                            if (!soft && tablei != null && r2 >= vdwTable.getMinR2()) {
+                                /**
+                                 * Tabulated hard core interaction.
+                                 */
+                                final double eik = mask[k] * vdwTable.evaluate(tablei[atomClass[k]], r2, dEdr2);
+                                e += eik;
+                                count++;
+                                if (gradient) {
+                                    final double de = 2.0 * mask[k] * dEdr2[0];
+                                    final double dedx = de * dx_local[0];
+                                    final double dedy = de * dx_local[1];
+                                    final double dedz = de * dx_local[2];
+                                    gxi += dedx * redv;
+                                    gyi += dedy * redv;
+                                    gzi += dedz * redv;
+                                    gxredi += dedx * rediv;
+                                    gyredi += dedy * rediv;
+                                    gzredi += dedz * rediv;
+                                    final int redk = reductionIndex[k];
+                                    final double red = reductionValue[k];
+                                    final double redkv = 1.0 - red;
+                                    gradX.sub(threadID, k, red * dedx);
+                                    gradY.sub(threadID, k, red * dedy);
+                                    gradZ.sub(threadID, k, red * dedz);
+                                    gradX.sub(threadID, redk, redkv * dedx);
+                                    gradY.sub(threadID, redk, redkv * dedy);
+                                    gradZ.sub(threadID, redk, redkv * dedz);
+                                }
+                                continue;
+                            }
                             /**
                              * The setFactors(i,k) method is empty unless ESVs
                              * are present. If OSRW lambda present,
@@ -2055,6 +2384,7 @@ public class VanDerWaals implements MaskingInterface,
                         final double rediv = 1.0 - redv;
                         final int classi = atomClass[i];
                         final double radEpsi[] = vdwForm.radEps[classi];
+                        final double tablei[][] = (vdwTable != null) ? vdwTable.getCoefficients(classi) : null;
                         double gxi = 0.0;
                         double gyi = 0.0;
                         double gzi = 0.0;
@@ -2076,10 +2406,17 @@ public class VanDerWaals implements MaskingInterface,
                         /**
                          * Loop over the neighbor list.
                          */
-                        final int neighbors[] = list[i];
-                        final int npair = neighbors.length;
+                        final int neighbors[];
+                        final int npair;
+                        if (compactList != null) {
+                            npair = cursor.reset(compactList, iSymOp, i);
+                            neighbors = null;
+                        } else {
+                            neighbors = list[i];
+                            npair = neighbors.length;
+                        }
                         for (int j = 0; j < npair; j++) {
-                            final int k = neighbors[j];
+                            final int k = (neighbors != null) ? neighbors[j] : cursor.next();
                             Atom atomk = atoms[k];
                             if (!use[k] || !include(atomi, atomk)) {
                                 continue;
@@ -2104,6 +2441,38 @@ public class VanDerWaals implements MaskingInterface,
                                 final double r = sqrt(r2);
                                 boolean soft = isSoft[i] || softCorei[k]
                                         || esvi || esvk;
+                                if (!soft && tablei != null && r2 >= vdwTable.getMinR2()) {
+                                    /**
+                                     * Tabulated hard core interaction.
+                                     */
+                                    e += selfScale * vdwTable.evaluate(tablei[atomClass[k]], r2, dEdr2);
+                                    count++;
+                                    if (gradient) {
+                                        final double de = 2.0 * selfScale * dEdr2[0];
+                                        final double dedx = de * dx_local[0];
+                                        final double dedy = de * dx_local[1];
+                                        final double dedz = de * dx_local[2];
+                                        gxi += dedx * redv;
+                                        gyi += dedy * redv;
+                                        gzi += dedz * redv;
+                                        gxredi += dedx * rediv;
+                                        gyredi += dedy * rediv;
+                                        gzredi += dedz * rediv;
+                                        final double dedxk = dedx * transOp[0][0] + dedy * transOp[1][0] + dedz * transOp[2][0];
+                                        final double dedyk = dedx * transOp[0][1] + dedy * transOp[1][1] + dedz * transOp[2][1];
+                                        final double dedzk = dedx * transOp[0][2] + dedy * transOp[1][2] + dedz * transOp[2][2];
+                                        final int redk = reductionIndex[k];
+                                        final double red = reductionValue[k];
+                                        final double redkv = 1.0 - red;
+                                        gradX.sub(threadID, k, red * dedxk);
+                                        gradY.sub(threadID, k, red * dedyk);
+                                        gradZ.sub(threadID, k, red * dedzk);
+                                        gradX.sub(threadID, redk, redkv * dedxk);
+                                        gradY.sub(threadID, redk, redkv * dedyk);
+                                        gradZ.sub(threadID, redk, redkv * dedzk);
+                                    }
+                                    continue;
+                                }
                                 if (soft) {
                                     lambdaFactorsLocal.setFactors(i, k);
                                     sc1 = lambdaFactorsLocal.sc1;
@@ -2303,6 +2672,275 @@ public class VanDerWaals implements MaskingInterface,
             }
         }
 
+        /**
+         * The ClusterPairLoop evaluates van der Waals interactions within the
+         * asymmetric unit one cluster pair tile at a time. Interaction
+         * bitmasks replace the per-atom masking rules, and a single periodic
+         * shift is applied to each tile, which leaves a short, branch-light
+         * inner loop over the atoms of the second cluster.
+         *
+         * @author Michael J. Schnieders
+         * @since 1.0
+         */
+        private class ClusterPairLoop extends IntegerForLoop {
+
+            private int count;
+            private double energy;
+            private int threadID;
+            private final double dx_local[];
+            /**
+             * Gradient accumulators for the current atom of the first cluster.
+             */
+            private double gxi, gyi, gzi;
+            private double gxredi, gyredi, gzredi;
+            private double redv, rediv;
+            /**
+             * The derivative of a tabulated energy with respect to r^2.
+             */
+            private final double dEdr2[] = new double[1];
+            // Extra padding to avert cache interference.
+            private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
+            private long pad8, pad9, pada, padb, padc, padd, pade, padf;
+
+            public ClusterPairLoop() {
+                super();
+                dx_local = new double[3];
+            }
+
+            public int getCount() {
+                return count;
+            }
+
+            @Override
+            public IntegerSchedule schedule() {
+                return IntegerSchedule.dynamic(10);
+            }
+
+            @Override
+            public void start() {
+                threadID = getThreadIndex();
+                vdwTime[threadID] -= System.nanoTime();
+                energy = 0.0;
+                count = 0;
+            }
+
+            @Override
+            public void finish() {
+                sharedEnergy.addAndGet(energy);
+                sharedInteractions.addAndGet(count);
+                vdwTime[threadID] += System.nanoTime();
+            }
+
+            @Override
+            public void run(int lb, int ub) {
+                final int clusterSize = clusterPairList.getClusterSize();
+                final long rowMask = (clusterSize == 8) ? 0xFFL : 0xFL;
+                final int clusterAtoms[] = clusterPairList.getClusterAtoms();
+                final double x[] = clusterPairList.getX();
+                final double y[] = clusterPairList.getY();
+                final double z[] = clusterPairList.getZ();
+                final int tileStart[] = clusterPairList.getTileStart();
+                final int tileCluster[] = clusterPairList.getTileCluster();
+                final long tileMask[] = clusterPairList.getTileMask();
+                final double tileShift[] = clusterPairList.getTileShift();
+                final boolean tileImage[] = clusterPairList.getTileImage();
+                final int scaledStart[] = clusterPairList.getScaledStart();
+                final int scaledI[] = clusterPairList.getScaledI();
+                final int scaledK[] = clusterPairList.getScaledK();
+                final double scaledScale[] = clusterPairList.getScaledScale();
+                final double off2 = nonbondedCutoff.off2;
+                double e = 0.0;
+                for (int ci = lb; ci <= ub; ci++) {
+                    final int iStart = ci * clusterSize;
+                    for (int t = tileStart[ci]; t < tileStart[ci + 1]; t++) {
+                        final long bits = tileMask[t];
+                        if (bits == 0) {
+                            continue;
+                        }
+                        final int jStart = tileCluster[t] * clusterSize;
+                        final boolean image = tileImage[t];
+                        final double sx = tileShift[t * 3];
+                        final double sy = tileShift[t * 3 + 1];
+                        final double sz = tileShift[t * 3 + 2];
+                        for (int a = 0; a < clusterSize; a++) {
+                            final long row = (bits >>> (a * clusterSize)) & rowMask;
+                            if (row == 0) {
+                                continue;
+                            }
+                            final int i = clusterAtoms[iStart + a];
+                            if (!use[i]) {
+                                continue;
+                            }
+                            final double xi = x[iStart + a] + sx;
+                            final double yi = y[iStart + a] + sy;
+                            final double zi = z[iStart + a] + sz;
+                            final double radEpsi[] = vdwForm.radEps[atomClass[i]];
+                            final double tablei[][] = (vdwTable != null) ? vdwTable.getCoefficients(atomClass[i]) : null;
+                            startAtom(i);
+                            for (int b = 0; b < clusterSize; b++) {
+                                if ((row & (1L << b)) == 0) {
+                                    continue;
+                                }
+                                final int k = clusterAtoms[jStart + b];
+                                if (!use[k]) {
+                                    continue;
+                                }
+                                double dx = xi - x[jStart + b];
+                                double dy = yi - y[jStart + b];
+                                double dz = zi - z[jStart + b];
+                                final double r2;
+                                if (image) {
+                                    dx_local[0] = dx - sx;
+                                    dx_local[1] = dy - sy;
+                                    dx_local[2] = dz - sz;
+                                    r2 = crystal.image(dx_local);
+                                    dx = dx_local[0];
+                                    dy = dx_local[1];
+                                    dz = dx_local[2];
+                                } else {
+                                    r2 = dx * dx + dy * dy + dz * dz;
+                                }
+                                final int a2 = atomClass[k] * 2;
+                                final double irv = radEpsi[a2 + RADMIN];
+                                if (r2 <= off2 && irv > 0) {
+                                    final double c[] = (tablei != null) ? tablei[atomClass[k]] : null;
+                                    e += pair(k, 1.0, radEpsi[a2 + EPS], irv, c, r2, dx, dy, dz);
+                                }
+                            }
+                            finishAtom(i);
+                        }
+                    }
+                    /**
+                     * Scaled (i.e. 1-4) pairs whose first atom belongs to
+                     * this cluster.
+                     */
+                    for (int p = scaledStart[ci]; p < scaledStart[ci + 1]; p++) {
+                        final int i = scaledI[p];
+                        final int k = scaledK[p];
+                        if (!use[i] || !use[k]) {
+                            continue;
+                        }
+                        int i3 = i * 3;
+                        int k3 = k * 3;
+                        dx_local[0] = reducedXYZ[i3] - reducedXYZ[k3];
+                        dx_local[1] = reducedXYZ[i3 + 1] - reducedXYZ[k3 + 1];
+                        dx_local[2] = reducedXYZ[i3 + 2] - reducedXYZ[k3 + 2];
+                        final double r2 = crystal.image(dx_local);
+                        final double radEpsi[] = vdwForm.radEps[atomClass[i]];
+                        final int a2 = atomClass[k] * 2;
+                        final double irv = radEpsi[a2 + RADMIN];
+                        if (r2 <= off2 && irv > 0) {
+                            final double c[] = (vdwTable != null) ? vdwTable.getCoefficients(atomClass[i])[atomClass[k]] : null;
+                            startAtom(i);
+                            e += pair(k, scaledScale[p], radEpsi[a2 + EPS], irv, c, r2,
+                                    dx_local[0], dx_local[1], dx_local[2]);
+                            finishAtom(i);
+                        }
+                    }
+                }
+                energy += e;
+            }
+
+            private void startAtom(int i) {
+                redv = reductionValue[i];
+                rediv = 1.0 - redv;
+                gxi = 0.0;
+                gyi = 0.0;
+                gzi = 0.0;
+                gxredi = 0.0;
+                gyredi = 0.0;
+                gzredi = 0.0;
+            }
+
+            private void finishAtom(int i) {
+                if (gradient) {
+                    final int redi = reductionIndex[i];
+                    gradX.add(threadID, i, gxi);
+                    gradY.add(threadID, i, gyi);
+                    gradZ.add(threadID, i, gzi);
+                    gradX.add(threadID, redi, gxredi);
+                    gradY.add(threadID, redi, gyredi);
+                    gradZ.add(threadID, redi, gzredi);
+                }
+            }
+
+            /**
+             * Evaluate the hard core interaction of the current atom with atom
+             * k, which matches the VanDerWaalsLoop for a lambda of 1. If table
+             * coefficients are given, the spline is used within its range.
+             *
+             * @return The interaction energy.
+             */
+            private double pair(int k, double scale, double eps, double irv, double c[], double r2,
+                                double dx, double dy, double dz) {
+                if (c != null && r2 >= vdwTable.getMinR2()) {
+                    final double eik = scale * vdwTable.evaluate(c, r2, dEdr2);
+                    count++;
+                    if (gradient) {
+                        final double de = 2.0 * scale * dEdr2[0];
+                        accumulate(k, de * dx, de * dy, de * dz);
+                    }
+                    return eik;
+                }
+                final double ev = scale * eps;
+                final double r = sqrt(r2);
+                final double rho = r * irv;
+                final double rhoDisp1 = vdwForm.rhoDisp1(rho);
+                final double rhoDisp = rhoDisp1 * rho;
+                final double rhoDelta1 = vdwForm.rhoDelta1(rho + vdwForm.delta);
+                final double rhoDelta = rhoDelta1 * (rho + vdwForm.delta);
+                final double t1d = 1.0 / rhoDelta;
+                final double t2d = 1.0 / (rhoDisp + vdwForm.gamma);
+                final double t1 = vdwForm.t1n * t1d;
+                final double t2a = vdwForm.gamma1 * t2d;
+                final double t2 = t2a - 2.0;
+                double eik = ev * t1 * t2;
+                double taper = 1.0;
+                double dtaper = 0.0;
+                if (r2 > nonbondedCutoff.cut2) {
+                    final double r3 = r2 * r;
+                    final double r4 = r2 * r2;
+                    final double r5 = r2 * r3;
+                    taper = multiplicativeSwitch.taper(r, r2, r3, r4, r5);
+                    dtaper = multiplicativeSwitch.dtaper(r, r2, r3, r4);
+                }
+                eik *= taper;
+                count++;
+                if (gradient) {
+                    final double dt1d_dr = vdwForm.repDispPower * rhoDelta1 * irv;
+                    final double dt2d_dr = vdwForm.dispersivePower * rhoDisp1 * irv;
+                    final double dt1_dr = t1 * dt1d_dr * t1d;
+                    final double dt2_dr = t2a * dt2d_dr * t2d;
+                    final double dedr = -ev * (dt1_dr * t2 + t1 * dt2_dr);
+                    final double ir = 1.0 / r;
+                    final double dswitch = (eik * dtaper + dedr * taper) * ir;
+                    accumulate(k, dswitch * dx, dswitch * dy, dswitch * dz);
+                }
+                return eik;
+            }
+
+            /**
+             * Accumulate the gradient of a pair with the current atom.
+             */
+            private void accumulate(int k, double dedx, double dedy, double dedz) {
+                gxi += dedx * redv;
+                gyi += dedy * redv;
+                gzi += dedz * redv;
+                gxredi += dedx * rediv;
+                gyredi += dedy * rediv;
+                gzredi += dedz * rediv;
+                final int redk = reductionIndex[k];
+                final double red = reductionValue[k];
+                final double redkv = 1.0 - red;
+                gradX.sub(threadID, k, red * dedx);
+                gradY.sub(threadID, k, red * dedy);
+                gradZ.sub(threadID, k, red * dedz);
+                gradX.sub(threadID, redk, redkv * dedx);
+                gradY.sub(threadID, redk, redkv * dedy);
+                gradZ.sub(threadID, redk, redkv * dedz);
+            }
+        }
+
         /**
          * Reduce Van der Waals gradient.
          */
@@ -2327,9 +2965,8 @@ public class VanDerWaals implements MaskingInterface,
                     gradX.reduce(lb, ub);
                     gradY.reduce(lb, ub);
                     gradZ.reduce(lb, ub);
-                    for (int i = lb; i <= ub; i++) {
-                        Atom ai = atoms[i];
-                        ai.addToXYZGradient(gradX.get(i), gradY.get(i), gradZ.get(i));
+                    if (!deferGradient) {
+                        addGradient(lb, ub);
                     }
                 }
                 if (lambdaTerm) {
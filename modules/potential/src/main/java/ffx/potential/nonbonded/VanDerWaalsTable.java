@@ -0,0 +1,355 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.nonbonded;
+
+import static java.lang.String.format;
+
+import static org.apache.commons.math3.util.FastMath.abs;
+import static org.apache.commons.math3.util.FastMath.max;
+import static org.apache.commons.math3.util.FastMath.sqrt;
+
+import static ffx.potential.nonbonded.VanDerWaalsForm.EPS;
+import static ffx.potential.nonbonded.VanDerWaalsForm.RADMIN;
+
+/**
+ * The VanDerWaalsTable class tabulates the hard core van der Waals energy,
+ * including the multiplicative switch, as a cubic Hermite spline in r^2 for
+ * each pair of atom classes.
+ *
+ * Each interval [s_j, s_j+1] of the uniform r^2 grid stores four coefficients
+ * of the polynomial p(t) = c0 + c1 t + c2 t^2 + c3 t^3, where t is the
+ * fractional position within the interval. The spline matches the analytic
+ * energy and its derivative at every knot, and the gradient is the exact
+ * derivative of the tabulated energy.
+ *
+ * The table covers r from a lower bound (by default 1.5 Angstroms) to the
+ * cutoff; closer pairs, and all softcore pairs, are evaluated analytically.
+ * The maximum energy and gradient errors with respect to the analytic path
+ * are measured at interior points of every interval when the table is built.
+ *
+ * @author Michael J. Schnieders
+ *
+ * @since 1.0
+ */
+public class VanDerWaalsTable {
+
+    /**
+     * The default number of intervals.
+     */
+    public static final int DEFAULT_POINTS = 2048;
+    /**
+     * The default lower bound of the table (Angstroms).
+     */
+    public static final double DEFAULT_MIN_R = 1.5;
+    /**
+     * The largest acceptable energy error relative to the magnitude of the
+     * energy. A long cutoff spreads the intervals too thinly to resolve the
+     * repulsive wall, which is detected by this bound.
+     */
+    public static final double MAX_RELATIVE_ERROR = 1.0e-4;
+
+    private final VanDerWaalsForm vdwForm;
+    private final MultiplicativeSwitch multiplicativeSwitch;
+    /**
+     * The beginning of the switch.
+     */
+    private final double cut;
+    /**
+     * The number of intervals.
+     */
+    private final int nPoints;
+    /**
+     * Lower and upper bounds of the table in r^2.
+     */
+    private final double minR2, maxR2;
+    /**
+     * Interval width in r^2 and its inverse.
+     */
+    private final double ds, ids;
+    /**
+     * Spline coefficients for each pair of atom classes, which are shared by
+     * the [i][k] and [k][i] entries. [nClasses][nClasses][4 * nPoints]
+     */
+    private final double coefficients[][][];
+    /**
+     * The number of tabulated class pairs.
+     */
+    private int nPairs = 0;
+    /**
+     * Maximum absolute errors with respect to the analytic path.
+     */
+    private double maxEnergyError = 0.0;
+    private double maxGradientError = 0.0;
+    /**
+     * Maximum energy error relative to the magnitude of the energy.
+     */
+    private double maxRelativeEnergyError = 0.0;
+
+    /**
+     * Constructor for a VanDerWaalsTable.
+     *
+     * @param vdwForm The van der Waals functional form.
+     * @param nonbondedCutoff The cutoff and beginning of the switch.
+     * @param multiplicativeSwitch The switch.
+     * @param minR The lower bound of the table.
+     * @param nPoints The number of intervals.
+     */
+    public VanDerWaalsTable(VanDerWaalsForm vdwForm, NonbondedCutoff nonbondedCutoff,
+                            MultiplicativeSwitch multiplicativeSwitch, double minR, int nPoints) {
+        this.vdwForm = vdwForm;
+        this.multiplicativeSwitch = multiplicativeSwitch;
+        this.nPoints = nPoints;
+        cut = nonbondedCutoff.cut;
+        minR2 = minR * minR;
+        maxR2 = nonbondedCutoff.off2;
+        ds = (maxR2 - minR2) / nPoints;
+        ids = 1.0 / ds;
+        int nClasses = vdwForm.radEps.length;
+        coefficients = new double[nClasses][nClasses][];
+    }
+
+    /**
+     * Tabulate every class pair that occurs in the atomClass array and has
+     * not been tabulated yet.
+     *
+     * @param atomClass The atom class of each atom.
+     */
+    public void build(int atomClass[]) {
+        int nClasses = coefficients.length;
+        boolean present[] = new boolean[nClasses];
+        for (int c : atomClass) {
+            if (c >= 0 && c < nClasses) {
+                present[c] = true;
+            }
+        }
+        double out[] = new double[2];
+        for (int i = 0; i < nClasses; i++) {
+            if (!present[i]) {
+                continue;
+            }
+            for (int k = i; k < nClasses; k++) {
+                if (!present[k] || coefficients[i][k] != null) {
+                    continue;
+                }
+                double irv = vdwForm.radEps[i][k * 2 + RADMIN];
+                if (irv <= 0) {
+                    continue;
+                }
+                double eps = vdwForm.radEps[i][k * 2 + EPS];
+                double c[] = tabulate(irv, eps, out);
+                coefficients[i][k] = c;
+                coefficients[k][i] = c;
+                nPairs++;
+                measure(c, irv, eps, out);
+            }
+        }
+    }
+
+    /**
+     * Compute the spline coefficients for one class pair.
+     */
+    private double[] tabulate(double irv, double eps, double out[]) {
+        double c[] = new double[4 * nPoints];
+        analytic(sqrt(minR2), irv, eps, out);
+        double f0 = out[0];
+        double g0 = out[1] / (2.0 * sqrt(minR2));
+        for (int j = 0; j < nPoints; j++) {
+            double s1 = minR2 + (j + 1) * ds;
+            double r1 = sqrt(s1);
+            analytic(r1, irv, eps, out);
+            double f1 = out[0];
+            double g1 = out[1] / (2.0 * r1);
+            int j4 = j * 4;
+            c[j4] = f0;
+            c[j4 + 1] = ds * g0;
+            c[j4 + 2] = 3.0 * (f1 - f0) - ds * (2.0 * g0 + g1);
+            c[j4 + 3] = 2.0 * (f0 - f1) + ds * (g0 + g1);
+            f0 = f1;
+            g0 = g1;
+        }
+        return c;
+    }
+
+    /**
+     * Update the maximum errors using three interior points of each interval.
+     */
+    private void measure(double c[], double irv, double eps, double out[]) {
+        double dEdr2[] = new double[1];
+        for (int j = 0; j < nPoints; j++) {
+            for (int m = 1; m <= 3; m++) {
+                double s = minR2 + (j + 0.25 * m) * ds;
+                double r = sqrt(s);
+                double e = evaluate(c, s, dEdr2);
+                analytic(r, irv, eps, out);
+                double energyError = abs(e - out[0]);
+                maxEnergyError = max(maxEnergyError, energyError);
+                maxGradientError = max(maxGradientError, abs(2.0 * r * dEdr2[0] - out[1]));
+                if (abs(out[0]) > 1.0e-3) {
+                    maxRelativeEnergyError = max(maxRelativeEnergyError, energyError / abs(out[0]));
+                }
+            }
+        }
+    }
+
+    /**
+     * The analytic hard core energy and its derivative with respect to r.
+     *
+     * @param r The separation distance.
+     * @param irv The inverse of the combined radius.
+     * @param eps The combined well depth.
+     * @param out The energy and dE/dr.
+     */
+    private void analytic(double r, double irv, double eps, double out[]) {
+        final double rho = r * irv;
+        final double rhoDisp1 = vdwForm.rhoDisp1(rho);
+        final double rhoDisp = rhoDisp1 * rho;
+        final double rhoDelta1 = vdwForm.rhoDelta1(rho + vdwForm.delta);
+        final double rhoDelta = rhoDelta1 * (rho + vdwForm.delta);
+        final double t1d = 1.0 / rhoDelta;
+        final double t2d = 1.0 / (rhoDisp + vdwForm.gamma);
+        final double t1 = vdwForm.t1n * t1d;
+        final double t2a = vdwForm.gamma1 * t2d;
+        final double t2 = t2a - 2.0;
+        final double e = eps * t1 * t2;
+        final double dt1_dr = t1 * vdwForm.repDispPower * rhoDelta1 * irv * t1d;
+        final double dt2_dr = t2a * vdwForm.dispersivePower * rhoDisp1 * irv * t2d;
+        final double dedr = -eps * (dt1_dr * t2 + t1 * dt2_dr);
+        double taper = 1.0;
+        double dtaper = 0.0;
+        if (r > cut) {
+            final double r2 = r * r;
+            final double r3 = r2 * r;
+            final double r4 = r2 * r2;
+            taper = multiplicativeSwitch.taper(r, r2, r3, r4, r4 * r);
+            dtaper = multiplicativeSwitch.dtaper(r, r2, r3, r4);
+        }
+        out[0] = e * taper;
+        out[1] = e * dtaper + dedr * taper;
+    }
+
+    /**
+     * Evaluate a tabulated class pair.
+     *
+     * @param c The coefficients of the class pair.
+     * @param r2 The squared separation, which must be within the table.
+     * @param dEdr2 Returns the derivative of the energy with respect to r^2.
+     * @return The energy.
+     */
+    public double evaluate(final double c[], final double r2, final double dEdr2[]) {
+        final double x = (r2 - minR2) * ids;
+        int j = (int) x;
+        if (j >= nPoints) {
+            j = nPoints - 1;
+        }
+        final double t = x - j;
+        final int j4 = j * 4;
+        final double c1 = c[j4 + 1];
+        final double c2 = c[j4 + 2];
+        final double c3 = c[j4 + 3];
+        dEdr2[0] = (c1 + t * (2.0 * c2 + 3.0 * t * c3)) * ids;
+        return c[j4] + t * (c1 + t * (c2 + t * c3));
+    }
+
+    /**
+     * The coefficients of every class pair with atom class i, indexed by the
+     * class of the second atom (entries are null for untabulated pairs).
+     *
+     * @param i The atom class of the first atom.
+     * @return The coefficients.
+     */
+    public double[][] getCoefficients(int i) {
+        return coefficients[i];
+    }
+
+    /**
+     * The lower bound of the table in r^2.
+     *
+     * @return The minimum r^2.
+     */
+    public double getMinR2() {
+        return minR2;
+    }
+
+    /**
+     * True if the measured relative energy error is within MAX_RELATIVE_ERROR.
+     *
+     * @return true if the table is accurate enough to use.
+     */
+    public boolean isAccurate() {
+        return maxRelativeEnergyError <= MAX_RELATIVE_ERROR;
+    }
+
+    public double getMaxRelativeEnergyError() {
+        return maxRelativeEnergyError;
+    }
+
+    public double getMaxEnergyError() {
+        return maxEnergyError;
+    }
+
+    public double getMaxGradientError() {
+        return maxGradientError;
+    }
+
+    /**
+     * The memory used by the tables.
+     *
+     * @return The number of bytes.
+     */
+    public long getMemory() {
+        return 32L * nPoints * nPairs;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Report the size and accuracy of the tables.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(format("   Tabulated Class Pairs:                %6d\n", nPairs));
+        sb.append(format("   Table Intervals:                      %6d\n", nPoints));
+        sb.append(format("   Table Range:                 %6.3f to %6.3f (A)\n", sqrt(minR2), sqrt(maxR2)));
+        sb.append(format("   Table Memory:                       %8.3f (MB)\n", getMemory() / (1024.0 * 1024.0)));
+        sb.append(format("   Max Energy Error:                  %10.3e (kcal/mol)\n", maxEnergyError));
+        sb.append(format("   Max Relative Energy Error:         %10.3e\n", maxRelativeEnergyError));
+        sb.append(format("   Max Gradient Error:                %10.3e (kcal/mol/A)", maxGradientError));
+        return sb.toString();
+    }
+}
@@ -1492,6 +1492,8 @@ public class ForceField {
         FORCEFIELD,
         NCSGROUP,
         MODRES,
+        PME_GRID_METHOD,
+        PME_WISDOM_FILE,
         POLARIZATION,
         RADIUSRULE,
         RADIUSSIZE,
@@ -1516,16 +1518,18 @@ public class ForceField {
         /* Unit cell parameters */
         A_AXIS, B_AXIS, C_AXIS, ALPHA, BETA, GAMMA,
         /* Van der Waals' cutoff and softcoring parameters */
-        VDW_CUTOFF, VDW_LAMBDA_EXPONENT, VDW_LAMBDA_ALPHA,
+        VDW_CUTOFF, LIST_BUFFER, VDW_LAMBDA_EXPONENT, VDW_LAMBDA_ALPHA,
         /* Van der Waals masking rules */
         VDW_12_SCALE, VDW_13_SCALE, VDW_14_SCALE, VDW_15_SCALE,
         /* Polarization parameters */
         POLAR_DAMP, POLAR_SOR, POLAR_EPS, POLAR_EPS_PRECISE,
         CG_PRECONDITIONER_CUTOFF, CG_PRECONDITIONER_EWALD, CG_PRECONDITIONER_SOR,
+        SCF_COARSE_MESH_DENSITY, SCF_COARSE_WEIGHT,
+        IEL_KAPPA, IEL_TAU,
         /* Polarization masking rules */
         POLAR_12_SCALE, POLAR_13_SCALE, POLAR_14_SCALE, POLAR_14_INTRA, POLAR_15_SCALE, DIRECT_11_SCALE,
         /* Electrostatics parameters */
-        EWALD_CUTOFF, EWALD_ALPHA, EWALD_PRECISION, PME_MESH_DENSITY,
+        EWALD_CUTOFF, EWALD_ALPHA, EWALD_PRECISION, PME_MESH_DENSITY, TREECODE_THETA,
         /* Electrostatics masking rules */
         MPOLE_11_SCALE, MPOLE_12_SCALE, MPOLE_13_SCALE, MPOLE_14_SCALE, MPOLE_15_SCALE,
         /* Permanent electrostatics softcoring  */
@@ -1561,7 +1565,16 @@ public class ForceField {
         LIGAND_STOP,
         SCF_CYCLES,
         SCF_PREDICTOR_ORDER,
-        CUDA_DEVICE
+        CUDA_DEVICE,
+        VDW_CLUSTER_SIZE,
+        VDW_TABLE_POINTS,
+        SCF_CACHE_MEMORY,
+        SCF_BLOCK_SIZE,
+        IEL_SCF_CYCLES,
+        PME_AUTOTUNE_EVALUATIONS,
+        TREECODE_ORDER,
+        TREECODE_LEAF_SIZE,
+        SASA_POINTS
     }
 
     public enum ForceFieldBoolean {
@@ -1572,11 +1585,12 @@ public class ForceField {
         RESTRAINTERM, RESTRAIN_WITH_LAMBDA, SCFCACHE, RIGID_HYDROGENS,
         USE_CHARGES, USE_DIPOLES, USE_QUADRUPOLES, ROTATE_MULTIPOLES,
         LIGAND_VAPOR_ELEC, LIGAND_GK_ELEC,
-        NO_LIGAND_CONDENSED_SCF, USE_SCF_PRECONDITIONER,
+        NO_LIGAND_CONDENSED_SCF, USE_SCF_PRECONDITIONER, TCG_PEEK,
         INTERMOLECULAR_SOFTCORE, INTRAMOLECULAR_SOFTCORE,
         LAMBDA_VALENCE_RESTRAINTS, LAMBDA_TORSIONS, RECIPTERM, BORN_USE_ALL,
         CHECK_ALL_NODE_CHARGES, GK_USEFITRADII, GK_VERBOSERADII, PRINT_ON_FAILURE,
-        DISABLE_NEIGHBOR_UPDATES, ENFORCE_PBC,
+        DISABLE_NEIGHBOR_UPDATES, INCREMENTAL_NEIGHBOR_LIST, COMPACT_NEIGHBOR_LIST, VDW_TABLE, EWALD_TABLE, ENFORCE_PBC,
+        PME_AUTOTUNE, TREECODE, BORN_INCREMENTAL, SASA_INCREMENTAL, SYMMETRY_MATE_CACHE,
         /* Term-specific flags for softcoring. Any will imply LAMBDATERM is true. */
         PME_LAMBDATERM, GK_LAMBDATERM, VDW_LAMBDATERM,
         /* Flag to set Hydrogen bonds to rigid and flag to signify alchemical behavior*/
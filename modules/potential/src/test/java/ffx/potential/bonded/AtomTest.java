@@ -43,9 +43,12 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import ffx.potential.CoordinateStore;
+import ffx.potential.GradientStore;
 import ffx.potential.parameters.AtomType;
 
 /**
@@ -71,6 +74,54 @@ public class AtomTest {
         assertEquals(3.0, v3d.z, 0.0);
     }
 
+    @Test(timeout = 500)
+    public void Atom_attachStores() {
+        CoordinateStore coordinateStore = new CoordinateStore(2);
+        GradientStore gradientStore = new GradientStore(2);
+        atom.moveTo(1.0, 2.0, 3.0);
+        atom.setXYZGradient(4.0, 5.0, 6.0);
+        atom.attachStores(coordinateStore, gradientStore, 1);
+        assertTrue(atom.isAttached(coordinateStore, gradientStore, 1));
+        assertEquals(2.0, coordinateStore.getY(1), 0.0);
+        double g[] = new double[3];
+        gradientStore.get(1, g);
+        assertEquals(6.0, g[2], 0.0);
+
+        // The atom is a view onto the stores.
+        coordinateStore.set(1, 7.0, 8.0, 9.0);
+        assertEquals(7.0, atom.getX(), 0.0);
+        atom.addToXYZGradient(1.0, 1.0, 1.0);
+        gradientStore.get(1, g);
+        assertEquals(5.0, g[0], 0.0);
+        gradientStore.zero();
+        atom.getXYZGradient(g);
+        assertEquals(0.0, g[1], 0.0);
+
+        // Detaching copies the current values back into the atom.
+        coordinateStore.set(1, 1.5, 2.5, 3.5);
+        atom.detachStores();
+        coordinateStore.set(1, 0.0, 0.0, 0.0);
+        assertEquals(3.5, atom.getZ(), 0.0);
+    }
+
+    @Test
+    public void Atom_releaseStores() {
+        CoordinateStore first = new CoordinateStore(1);
+        CoordinateStore second = new CoordinateStore(1);
+        atom.moveTo(1.0, 2.0, 3.0);
+        atom.attachStores(first, new GradientStore(1), 0);
+        assertFalse(first.isReleased());
+
+        // Attaching to another store releases the first, preserving coordinates.
+        atom.attachStores(second, new GradientStore(1), 0);
+        assertTrue(first.isReleased());
+        assertFalse(second.isReleased());
+        assertEquals(2.0, second.getY(0), 0.0);
+        first.claim();
+        assertFalse(first.isReleased());
+        atom.detachStores();
+    }
+
     @Test(timeout = 500)
     public void Atom_constructor() {
         String s = "Carbon";
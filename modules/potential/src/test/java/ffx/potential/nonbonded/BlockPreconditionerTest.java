@@ -0,0 +1,377 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2016.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.nonbonded;
+
+import java.util.Random;
+
+import static java.lang.String.format;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import edu.rit.pj.ParallelTeam;
+
+import ffx.crystal.Crystal;
+import ffx.numerics.Erf;
+import ffx.potential.ForceFieldEnergy;
+import ffx.potential.utils.KeywordComparison;
+
+/**
+ * Unit tests for the BlockPreconditioner class, using two small molecules
+ * with Thole damped dipole interactions and no Ewald screening.
+ */
+public class BlockPreconditionerTest {
+
+    private static final int nAtoms = 7;
+    private static final double tolerance = 1.0e-10;
+
+    private final int molecule[] = {0, 0, 0, 0, 1, 1, 1};
+    private boolean use[];
+    private double polarizability[];
+    private double thole[];
+    private double ipdamp[];
+    private double x[], y[], z[];
+    private Crystal crystal;
+    private ParallelTeam parallelTeam;
+
+    @Before
+    public void setUp() {
+        Random random = new Random(1234567L);
+        use = new boolean[nAtoms];
+        polarizability = new double[nAtoms];
+        thole = new double[nAtoms];
+        ipdamp = new double[nAtoms];
+        x = new double[nAtoms];
+        y = new double[nAtoms];
+        z = new double[nAtoms];
+        for (int i = 0; i < nAtoms; i++) {
+            use[i] = true;
+            polarizability[i] = 0.5 + random.nextDouble();
+            thole[i] = 0.39;
+            ipdamp[i] = Math.pow(polarizability[i], -1.0 / 6.0);
+            // Atoms of a molecule are about 1.5 A apart, and the molecules about 5 A.
+            x[i] = 5.0 * molecule[i] + 1.5 * (i % 4) + 0.2 * random.nextDouble();
+            y[i] = 0.5 * random.nextDouble();
+            z[i] = 0.5 * random.nextDouble();
+        }
+        crystal = new Crystal(100.0, 100.0, 100.0, 90.0, 90.0, 90.0, "P1");
+        crystal.setAperiodic(true);
+        parallelTeam = new ParallelTeam(2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        parallelTeam.shutdown();
+    }
+
+    @Test
+    public void testBlocks() {
+        BlockPreconditioner preconditioner = new BlockPreconditioner(2, 3);
+        preconditioner.setBlocks(nAtoms, molecule, use, polarizability);
+        // The first molecule is split into runs of 2 atoms.
+        assertEquals(" Number of blocks", 3, preconditioner.getNumberOfBlocks());
+        // An atom that is not in use leaves the second molecule as one block.
+        use[6] = false;
+        preconditioner.setBlocks(nAtoms, molecule, use, polarizability);
+        assertEquals(" Number of blocks", 3, preconditioner.getNumberOfBlocks());
+        preconditioner.factor(parallelTeam, x, y, z, crystal, ipdamp, thole, 0.0);
+        double rsd[][] = residual(new Random(1L));
+        double rsdPre[][] = new double[3][nAtoms];
+        preconditioner.solve(parallelTeam, rsd, rsdPre, residual(new Random(2L)), new double[3][nAtoms]);
+        for (int j = 0; j < 3; j++) {
+            assertEquals(" Diagonal atom", polarizability[6] * rsd[j][6], rsdPre[j][6], tolerance);
+        }
+        // The polarizable atoms in use determine the blocks.
+        use[6] = true;
+        polarizability[3] = 0.0;
+        preconditioner.setBlocks(nAtoms, molecule, use, polarizability);
+        assertEquals(" Number of blocks", 2, preconditioner.getNumberOfBlocks());
+        polarizability[3] = 1.0;
+        preconditioner.setBlocks(nAtoms, molecule, use, polarizability);
+        assertEquals(" Number of blocks", 3, preconditioner.getNumberOfBlocks());
+        preconditioner = new BlockPreconditioner(2, 24);
+        preconditioner.setBlocks(nAtoms, molecule, use, polarizability);
+        assertEquals(" Number of blocks", 2, preconditioner.getNumberOfBlocks());
+    }
+
+    /**
+     * Each block of the preconditioned residual solves the block of
+     * (&alpha;<sup>-1</sup> - T) against the residual, and the
+     * factorization follows the coordinates.
+     */
+    @Test
+    public void testSolve() {
+        for (int maxBlockSize : new int[]{1, 2, 4}) {
+            BlockPreconditioner preconditioner = new BlockPreconditioner(2, maxBlockSize);
+            for (int step = 0; step < 2; step++) {
+                preconditioner.setBlocks(nAtoms, molecule, use, polarizability);
+                preconditioner.factor(parallelTeam, x, y, z, crystal, ipdamp, thole, 0.0);
+                assertEquals(" Failed blocks", 0, preconditioner.getNumberOfFailedBlocks());
+                double rsd[][] = residual(new Random(1L));
+                double rsdCR[][] = residual(new Random(2L));
+                double rsdPre[][] = new double[3][nAtoms];
+                double rsdPreCR[][] = new double[3][nAtoms];
+                preconditioner.solve(parallelTeam, rsd, rsdPre, rsdCR, rsdPreCR);
+                String info = String.format(" Block size %d (step %d)", maxBlockSize, step);
+                assertBlockSolve(info, maxBlockSize, rsd, rsdPre);
+                assertBlockSolve(info + " CR", maxBlockSize, rsdCR, rsdPreCR);
+                // Move the atoms; the blocks are kept and refactored.
+                for (int i = 0; i < nAtoms; i++) {
+                    x[i] += 0.1 * i;
+                    z[i] -= 0.05 * i;
+                }
+            }
+        }
+    }
+
+    /**
+     * A block that is not positive definite uses the diagonal preconditioner.
+     */
+    @Test
+    public void testDiagonalFallback() {
+        // Two strongly polarizable atoms on top of each other, with weak damping.
+        polarizability[0] = 1.0e3;
+        polarizability[1] = 1.0e3;
+        thole[0] = 10.0;
+        thole[1] = 10.0;
+        x[1] = x[0] + 0.5;
+        y[1] = y[0];
+        z[1] = z[0];
+        BlockPreconditioner preconditioner = new BlockPreconditioner(2, 2);
+        preconditioner.setBlocks(nAtoms, molecule, use, polarizability);
+        preconditioner.factor(parallelTeam, x, y, z, crystal, ipdamp, thole, 0.0);
+        assertEquals(" Failed blocks", 1, preconditioner.getNumberOfFailedBlocks());
+        double rsd[][] = residual(new Random(1L));
+        double rsdPre[][] = new double[3][nAtoms];
+        preconditioner.solve(parallelTeam, rsd, rsdPre, residual(new Random(2L)), new double[3][nAtoms]);
+        for (int i = 0; i < 2; i++) {
+            for (int j = 0; j < 3; j++) {
+                assertEquals(" Diagonal fallback", polarizability[i] * rsd[j][i], rsdPre[j][i], tolerance);
+            }
+        }
+        // Separating the atoms makes the block positive definite again.
+        x[1] = x[0] + 1.5;
+        thole[0] = 0.39;
+        thole[1] = 0.39;
+        polarizability[0] = 1.0;
+        polarizability[1] = 1.0;
+        preconditioner.setBlocks(nAtoms, molecule, use, polarizability);
+        preconditioner.factor(parallelTeam, x, y, z, crystal, ipdamp, thole, 0.0);
+        assertEquals(" Failed blocks", 0, preconditioner.getNumberOfFailedBlocks());
+    }
+
+    /**
+     * The converged induced dipoles do not depend on the preconditioner.
+     */
+    @Test
+    public void testEnergy() {
+        KeywordComparison comparison = new KeywordComparison(1.0e-5, 1.0e-5);
+        String cases[][] = {
+            {"ffx/potential/structures/ubiquitin.xyz", "CG_BLOCK"},
+            {"ffx/potential/structures/ubiquitin.xyz", "CG_TWO_LEVEL"},
+            {"ffx/potential/structures/acetanilide.xyz", "CG_TWO_LEVEL"}};
+        for (String c[] : cases) {
+            ForceFieldEnergy baseline = KeywordComparison.load(c[0], "scf-algorithm=CG", "polar-eps=1.0e-8");
+            ForceFieldEnergy energy = KeywordComparison.load(c[0], "scf-algorithm=" + c[1], "polar-eps=1.0e-8");
+            double x[] = energy.getCoordinates(null);
+            String info = " " + c[1] + " " + c[0];
+            comparison.compare(info, baseline, energy, x);
+            KeywordComparison.moveAtoms(x, KeywordComparison.spreadAtoms(x.length / 3, 5), 0.1, -0.05, 0.02);
+            comparison.compare(info + " (Moved Atoms)", baseline, energy, x);
+        }
+    }
+
+    /**
+     * The block preconditioners converge in no more SCF iterations than CG
+     * on a protein in water and on a molecular crystal, and the coarse mesh
+     * correction of the two-level scheme removes iterations on the protein.
+     */
+    @Test
+    public void testIterations() {
+        String files[] = {"ffx/potential/structures/ubiquitin.xyz", "ffx/potential/structures/acetanilide.xyz"};
+        for (String file : files) {
+            int cg = iterations(file, "CG");
+            int block = iterations(file, "CG_BLOCK");
+            int twoLevel = iterations(file, "CG_TWO_LEVEL");
+            String info = format(" %s iterations: CG %d, CG_BLOCK %d, CG_TWO_LEVEL %d", file, cg, block, twoLevel);
+            assertTrue(info, block <= cg);
+            assertTrue(info, twoLevel <= block);
+            if (file.equals(files[0])) {
+                assertTrue(info, twoLevel < block);
+            }
+        }
+    }
+
+    /**
+     * The screened field of each block is the difference of the real space
+     * Ewald tensor and the bare tensor of the block matrices.
+     */
+    @Test
+    public void testScreenedField() {
+        double aewald = 0.5;
+        double scale = 0.5;
+        BlockPreconditioner preconditioner = new BlockPreconditioner(2, 4);
+        preconditioner.setBlocks(nAtoms, molecule, use, polarizability);
+        preconditioner.factor(parallelTeam, x, y, z, crystal, ipdamp, thole, 0.0);
+        double in[][] = residual(new Random(1L));
+        double inCR[][] = residual(new Random(2L));
+        double out[][] = new double[3][nAtoms];
+        double outCR[][] = new double[3][nAtoms];
+        preconditioner.screenedField(parallelTeam, 0.0, scale, in, out, inCR, outCR);
+        for (int j = 0; j < 3; j++) {
+            for (int i = 0; i < nAtoms; i++) {
+                assertEquals(" Screened field without screening", 0.0, out[j][i], tolerance);
+            }
+        }
+        preconditioner.screenedField(parallelTeam, aewald, scale, in, out, inCR, outCR);
+        int block[] = preconditioner.getBlockIndex();
+        for (int i = 0; i < nAtoms; i++) {
+            for (int l = 0; l < 3; l++) {
+                double expected = 0.0;
+                double expectedCR = 0.0;
+                for (int k = 0; k < nAtoms; k++) {
+                    if (k == i || block[k] != block[i]) {
+                        continue;
+                    }
+                    for (int m = 0; m < 3; m++) {
+                        double t = scale * screening(i, k, l, m, aewald);
+                        expected += t * in[m][k];
+                        expectedCR += t * inCR[m][k];
+                    }
+                }
+                assertEquals(" Screened field", expected, out[l][i], tolerance);
+                assertEquals(" Screened field CR", expectedCR, outCR[l][i], tolerance);
+            }
+        }
+    }
+
+    private static int iterations(String file, String algorithm) {
+        ForceFieldEnergy energy = KeywordComparison.load(file, "scf-algorithm=" + algorithm, "polar-eps=1.0e-6");
+        energy.energy(energy.getCoordinates(null));
+        return ((ParticleMeshEwaldCart) energy.getPmeNode()).getScfIterations();
+    }
+
+    private double[][] residual(Random random) {
+        double rsd[][] = new double[3][nAtoms];
+        for (int j = 0; j < 3; j++) {
+            for (int i = 0; i < nAtoms; i++) {
+                rsd[j][i] = random.nextDouble() - 0.5;
+            }
+        }
+        return rsd;
+    }
+
+    /**
+     * Multiply the preconditioned residual by the block matrices and compare
+     * with the residual. Blocks are runs of consecutive atoms within each
+     * molecule, split as evenly as possible.
+     */
+    private void assertBlockSolve(String info, int maxBlockSize, double rsd[][], double rsdPre[][]) {
+        int start = 0;
+        while (start < nAtoms) {
+            int end = start;
+            while (end < nAtoms && molecule[end] == molecule[start]) {
+                end++;
+            }
+            int n = end - start;
+            int nBlocks = (n + maxBlockSize - 1) / maxBlockSize;
+            int blockStart = start;
+            for (int b = 0; b < nBlocks; b++) {
+                int blockEnd = start + (int) ((long) n * (b + 1) / nBlocks);
+                for (int i = blockStart; i < blockEnd; i++) {
+                    for (int l = 0; l < 3; l++) {
+                        double field = rsdPre[l][i] / polarizability[i];
+                        for (int k = blockStart; k < blockEnd; k++) {
+                            if (k == i) {
+                                continue;
+                            }
+                            for (int m = 0; m < 3; m++) {
+                                field -= tensor(i, k, l, m) * rsdPre[m][k];
+                            }
+                        }
+                        assertEquals(info + " residual", rsd[l][i], field, tolerance);
+                    }
+                }
+                blockStart = blockEnd;
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * The element T<sub>lm</sub> of the real space Ewald tensor less the bare
+     * tensor between atoms i and k, which does not depend on the damping.
+     */
+    private double screening(int i, int k, int l, int m, double aewald) {
+        double dx[] = {x[k] - x[i], y[k] - y[i], z[k] - z[i]};
+        double r2 = dx[0] * dx[0] + dx[1] * dx[1] + dx[2] * dx[2];
+        double r = Math.sqrt(r2);
+        double exp2a = Math.exp(-aewald * aewald * r2);
+        double an0 = 2.0 * aewald / Math.sqrt(Math.PI);
+        double an1 = 2.0 * aewald * aewald * an0;
+        double bn1 = (Erf.erfc(aewald * r) / r + an0 * exp2a) / r2;
+        double bn2 = (3.0 * bn1 + an1 * exp2a) / r2;
+        double t = (bn2 - 3.0 / (r2 * r2 * r)) * dx[l] * dx[m];
+        if (l == m) {
+            t += 1.0 / (r2 * r) - bn1;
+        }
+        return t;
+    }
+
+    /**
+     * The Thole damped dipole field tensor element T<sub>lm</sub> between
+     * atoms i and k.
+     */
+    private double tensor(int i, int k, int l, int m) {
+        double dx[] = {x[k] - x[i], y[k] - y[i], z[k] - z[i]};
+        double r2 = dx[0] * dx[0] + dx[1] * dx[1] + dx[2] * dx[2];
+        double r = Math.sqrt(r2);
+        double u = r * ipdamp[i] * ipdamp[k];
+        double a = Math.min(thole[i], thole[k]) * u * u * u;
+        double scale3 = 1.0 - Math.exp(-a);
+        double scale5 = 1.0 - (1.0 + a) * Math.exp(-a);
+        double t = 3.0 * scale5 * dx[l] * dx[m] / (r2 * r2 * r);
+        if (l == m) {
+            t -= scale3 / (r2 * r);
+        }
+        return t;
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2016.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.nonbonded;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+import ffx.potential.ForceFieldEnergy;
+import ffx.potential.utils.KeywordComparison;
+
+/**
+ * Test the CompactNeighborList layout and its in place Cursor against plain
+ * per-atom lists.
+ */
+public class CompactNeighborListTest {
+
+    private static final int nSymm = 2;
+    private static final int nAtoms = 200;
+    private static final int nThreads = 3;
+
+    @Test
+    public void testCursor() {
+        Random random = new Random(1234567L);
+        int lists[][][] = new int[nSymm][nAtoms][];
+        CompactNeighborList compact = new CompactNeighborList(nThreads);
+        // Encode twice so that the second pass reuses the packed arrays.
+        for (int pass = 0; pass < 2; pass++) {
+            compact.allocate(nSymm, nAtoms);
+            long pairCount = 0;
+            for (int iSymm = 0; iSymm < nSymm; iSymm++) {
+                for (int i = 0; i < nAtoms; i++) {
+                    int list[] = randomList(random, i);
+                    lists[iSymm][i] = list;
+                    pairCount += list.length;
+                    // The list is sorted in place, so a copy is encoded.
+                    compact.put(i % nThreads, iSymm, i, Arrays.copyOf(list, list.length), list.length);
+                    Arrays.sort(list);
+                }
+            }
+            compact.pack();
+            assertEquals(" Pair count", pairCount, compact.getPairCount());
+
+            CompactNeighborList.Cursor cursor = new CompactNeighborList.Cursor();
+            int buffer[] = null;
+            for (int iSymm = 0; iSymm < nSymm; iSymm++) {
+                for (int i = 0; i < nAtoms; i++) {
+                    int list[] = lists[iSymm][i];
+                    int n = cursor.reset(compact, iSymm, i);
+                    assertEquals(" Count", list.length, n);
+                    assertEquals(" Count", list.length, compact.getCount(iSymm, i));
+                    buffer = compact.getList(iSymm, i, buffer);
+                    for (int j = 0; j < n; j++) {
+                        assertEquals(" Cursor neighbor", list[j], cursor.next());
+                        assertEquals(" Decoded neighbor", list[j], buffer[j]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Neighbors of atom i, which include indices far enough apart to need
+     * multiple bytes per delta and may be empty.
+     */
+    private static int[] randomList(Random random, int i) {
+        int n = random.nextInt(40);
+        int list[] = new int[n];
+        for (int j = 0; j < n; j++) {
+            if (random.nextInt(8) == 0) {
+                list[j] = i + random.nextInt(1 << 24);
+            } else {
+                list[j] = i + 1 + random.nextInt(nAtoms);
+            }
+        }
+        return list;
+    }
+
+    @Test
+    public void testEnergy() {
+        KeywordComparison comparison = new KeywordComparison(1.0e-6, 1.0e-6);
+        String filenames[] = {"ffx/potential/structures/ubiquitin.xyz",
+            "ffx/potential/structures/acetanilide.xyz",
+            "ffx/potential/structures/dmhd-amoebapro13.xyz"};
+        for (String filename : filenames) {
+            ForceFieldEnergy baseline = KeywordComparison.load(filename, "compact-neighbor-list=false");
+            ForceFieldEnergy energy = KeywordComparison.load(filename, "compact-neighbor-list=true");
+            double x[] = energy.getCoordinates(null);
+            String info = " Compact Neighbor List " + filename;
+            comparison.compare(info, baseline, energy, x);
+            // Move by more than half the neighbor list buffer, so that the lists are rebuilt.
+            KeywordComparison.moveAtoms(x, KeywordComparison.spreadAtoms(x.length / 3, 5), 1.2, -0.3, 0.2);
+            comparison.compareEnergy(info + " (Moved Atoms)", baseline, energy, x);
+            comparison.compare(info + " (Moved Atoms)", baseline, energy, x);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2016.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.nonbonded;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import ffx.potential.ForceFieldEnergy;
+import ffx.potential.utils.KeywordComparison;
+
+/**
+ * Compare concurrent Van der Waals and particle mesh Ewald evaluation against
+ * the serial path. With a single thread, every term runs on one thread in both
+ * paths, so the energy and gradient must agree bitwise across repeated
+ * evaluations. With more threads, the reductions depend on thread timing even
+ * in the serial path, so the comparison is to a tolerance.
+ */
+@RunWith(Parameterized.class)
+public class ConcurrentNonBondedTest {
+
+    @Parameters
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][]{
+            {"Acetanilide", "ffx/potential/structures/acetanilide.xyz", 1},
+            {"Acetanilide", "ffx/potential/structures/acetanilide.xyz", 4},
+            {"Ethylparaben", "ffx/potential/structures/ethylparaben.xyz", 1},
+            {"Ubiquitin", "ffx/potential/structures/ubiquitin.xyz", 4}
+        });
+    }
+
+    private static final int RUNS = 4;
+    private final String info;
+    private final String filename;
+    private final int threads;
+    private final double tolerance;
+
+    public ConcurrentNonBondedTest(String info, String filename, int threads) {
+        this.info = info + " Concurrent Non-Bonded (" + threads + " Threads)";
+        this.filename = filename;
+        this.threads = threads;
+        tolerance = (threads == 1) ? 0.0 : 1.0e-8;
+    }
+
+    @Test
+    public void testConcurrentNonBonded() {
+        ForceFieldEnergy serial = KeywordComparison.load(filename,
+                "pj.nt=" + threads, "ffe.concurrentNonBonded=false");
+        ForceFieldEnergy concurrent = KeywordComparison.load(filename,
+                "pj.nt=" + threads, "ffe.concurrentNonBonded=true");
+        double x[] = serial.getCoordinates(null);
+        int n = x.length;
+        double serialG[] = new double[n];
+        double firstG[] = new double[n];
+        double g[] = new double[n];
+        for (int move = 0; move < 2; move++) {
+            if (move > 0) {
+                KeywordComparison.moveAtoms(x, KeywordComparison.spreadAtoms(n / 3, 5), 0.05, -0.02, 0.03);
+            }
+            double serialE = serial.energyAndGradient(x, serialG);
+            double firstE = concurrent.energyAndGradient(x, firstG);
+            for (int run = 0; run < RUNS; run++) {
+                String label = info + " (Move " + move + ", Run " + run + ")";
+                double e = concurrent.energyAndGradient(x, g);
+                assertEquals(label + " Repeated Energy", firstE, e, tolerance);
+                assertEquals(label + " Energy", serialE, e, tolerance);
+                for (int i = 0; i < n; i++) {
+                    assertEquals(label + " Repeated Gradient " + i, firstG[i], g[i], tolerance);
+                    assertEquals(label + " Gradient " + i, serialG[i], g[i], tolerance);
+                }
+                assertEquals(label + " Energy Only", serial.energy(x), concurrent.energy(x), tolerance);
+
+                String report = concurrent.toString();
+                double overlap = reportedTime(report, "Non-Bonded Overlap");
+                double vdwIdle = reportedTime(report, "Van der Waals Idle");
+                double pmeIdle = reportedTime(report, "Electrostatic Idle");
+                assertTrue(label + " Non-Bonded Overlap " + overlap, overlap > 0.0);
+                assertTrue(label + " Van der Waals Idle " + vdwIdle, vdwIdle >= 0.0 && vdwIdle <= overlap);
+                assertTrue(label + " Electrostatic Idle " + pmeIdle, pmeIdle >= 0.0 && pmeIdle <= overlap);
+                assertFalse(label + " Serial Report", serial.toString().contains("Non-Bonded Overlap"));
+            }
+        }
+    }
+
+    /**
+     * Parse the time in seconds of a line of the energy report.
+     */
+    private static double reportedTime(String report, String name) {
+        Matcher matcher = Pattern.compile(name + "\\s+(\\S+)").matcher(report);
+        assertTrue(" Missing " + name, matcher.find());
+        return Double.parseDouble(matcher.group(1));
+    }
+}
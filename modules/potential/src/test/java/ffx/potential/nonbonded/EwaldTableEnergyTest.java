@@ -0,0 +1,102 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2016.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.nonbonded;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import ffx.potential.ForceFieldEnergy;
+import ffx.potential.utils.KeywordComparison;
+
+/**
+ * Compare the energy and gradient of crystals with tabulated Ewald real
+ * space coefficients against the analytic coefficients.
+ */
+@RunWith(Parameterized.class)
+public class EwaldTableEnergyTest {
+
+    /**
+     * Turn the cubic water box into a triclinic cell.
+     */
+    private static final String TRICLINIC[] = {"alpha=80.0", "beta=95.0", "gamma=100.0"};
+
+    @Parameters
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][]{
+            {"Acetanilide (Orthorhombic)", "ffx/potential/structures/acetanilide.xyz", null},
+            {"Paracetamol (Monoclinic)", "ffx/potential/structures/paracetamol.xyz", null},
+            {"Water (Triclinic)", "ffx/potential/structures/watertiny.xyz", TRICLINIC}
+        });
+    }
+
+    private final String info;
+    private final String filename;
+    private final String cell[];
+    private final KeywordComparison comparison = new KeywordComparison(1.0e-6, 1.0e-6);
+
+    public EwaldTableEnergyTest(String info, String filename, String cell[]) {
+        this.info = info + " Ewald Table";
+        this.filename = filename;
+        this.cell = cell;
+    }
+
+    @Test
+    public void testEwaldTable() {
+        ForceFieldEnergy baseline = KeywordComparison.load(filename, keywords(false));
+        ForceFieldEnergy energy = KeywordComparison.load(filename, keywords(true));
+        double x[] = energy.getCoordinates(null);
+        comparison.compare(info, baseline, energy, x);
+        KeywordComparison.moveAtoms(x, KeywordComparison.spreadAtoms(x.length / 3, 5), 0.1, -0.05, 0.02);
+        comparison.compare(info + " (Moved Atoms)", baseline, energy, x);
+    }
+
+    private String[] keywords(boolean table) {
+        int n = (cell == null) ? 0 : cell.length;
+        String keywords[] = new String[n + 1];
+        for (int i = 0; i < n; i++) {
+            keywords[i] = cell[i];
+        }
+        keywords[n] = "ewald-table=" + table;
+        return keywords;
+    }
+}
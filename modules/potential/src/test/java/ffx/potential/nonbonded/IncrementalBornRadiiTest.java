@@ -0,0 +1,97 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2016.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.nonbonded;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import ffx.potential.ForceFieldEnergy;
+import ffx.potential.utils.KeywordComparison;
+
+/**
+ * Compare the energy, gradient and Born radii with incremental Born radii
+ * updates against a full recompute, as atoms move.
+ */
+@RunWith(Parameterized.class)
+public class IncrementalBornRadiiTest {
+
+    @Parameters
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][]{
+            {"DMHD (AMOEBA)", "ffx/potential/structures/dmhd-amoebapro13.xyz", new String[]{}},
+            {"DMHD (GB)", "ffx/potential/structures/dmhd-amber99sb.xyz", new String[]{}},
+            {"Peptide", "ffx/potential/structures/peptide.pdb",
+                new String[]{"forcefield=AMOEBA_PROTEIN_2013", "gkterm=true"}}
+        });
+    }
+
+    private final String info;
+    private final String filename;
+    private final String keywords[];
+    private final KeywordComparison comparison = new KeywordComparison(1.0e-8, 1.0e-8);
+
+    public IncrementalBornRadiiTest(String info, String filename, String keywords[]) {
+        this.info = info + " Incremental Born Radii";
+        this.filename = filename;
+        this.keywords = keywords;
+    }
+
+    @Test
+    public void testIncrementalBornRadii() {
+        ForceFieldEnergy baseline = KeywordComparison.load(filename, keywords(false));
+        ForceFieldEnergy energy = KeywordComparison.load(filename, keywords(true));
+        double x[] = energy.getCoordinates(null);
+        comparison.compare(info, baseline, energy, x);
+        // Each move updates the descreening integrals of the moved atoms only.
+        for (int move = 1; move <= 3; move++) {
+            KeywordComparison.moveAtoms(x, KeywordComparison.spreadAtoms(x.length / 3, 5), 0.1, -0.05, 0.02);
+            comparison.compare(info + " (Move " + move + ")", baseline, energy, x);
+        }
+    }
+
+    private String[] keywords(boolean incremental) {
+        String all[] = Arrays.copyOf(keywords, keywords.length + 1);
+        all[keywords.length] = "born-incremental=" + incremental;
+        return all;
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2016.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.nonbonded;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import ffx.crystal.Crystal;
+import ffx.potential.ForceFieldEnergy;
+import ffx.potential.bonded.Atom;
+import ffx.potential.bonded.Bond;
+import ffx.potential.utils.KeywordComparison;
+
+/**
+ * Compare the neighbor lists, energy and gradient with incremental neighbor
+ * list updates against full rebuilds, as a few atoms move more than half the
+ * buffer.
+ */
+public class IncrementalNeighborListTest {
+
+    private static final String filename = "ffx/potential/structures/ubiquitin.xyz";
+    /**
+     * A 1 A buffer (rebuilds after 0.5 A of motion) plus the 9 A cutoff.
+     */
+    private static final String buffer = "list-buffer=1.0";
+    private static final double cutoffPlusBuffer = 10.0;
+    private final KeywordComparison comparison = new KeywordComparison(1.0e-6, 1.0e-6);
+
+    @Test
+    public void testIncrementalNeighborList() {
+        String info = "Ubiquitin Incremental Neighbor List";
+        ForceFieldEnergy baseline = KeywordComparison.load(filename, buffer, "incremental-neighbor-list=false");
+        ForceFieldEnergy energy = KeywordComparison.load(filename, buffer, "incremental-neighbor-list=true");
+        NeighborList baselineList = baseline.getVdwNode().getNeighborList();
+        NeighborList neighborList = energy.getVdwNode().getNeighborList();
+        double x[] = energy.getCoordinates(null);
+        int nAtoms = x.length / 3;
+        comparison.compare(info, baseline, energy, x);
+        comparePairs(info, baselineList, neighborList);
+
+        // Move heavy atoms with their hydrogens by 1.5 A, then move them back.
+        int spread[] = groups(energy, KeywordComparison.spreadAtoms(nAtoms, 6));
+        int moves[][] = {spread, spread, groups(energy, new int[]{17, 1000, 4321, 9000})};
+        double dx[] = {1.5, -1.5, 1.5};
+        for (int move = 0; move < moves.length; move++) {
+            String label = info + " (Move " + (move + 1) + ")";
+            int bound = affectedLists(energy.getCrystal(), x, moves[move]);
+            KeywordComparison.moveAtoms(x, moves[move], dx[move], 0.0, 0.0);
+            comparison.compare(label, baseline, energy, x);
+            comparison.compareEnergy(label, baseline, energy, x);
+            assertEquals(label + " Incremental Updates", move + 1, neighborList.getIncrementalUpdateCount());
+            int changed = neighborList.getIncrementalListCount();
+            assertTrue(label + " Lists Changed " + changed + " > " + bound, changed <= bound);
+            assertTrue(label + " Lists Changed " + changed, changed < nAtoms / 4);
+            comparePairs(label, baselineList, neighborList);
+        }
+    }
+
+    /**
+     * Collect the first heavy atom at or after each index together with its
+     * hydrogens. The reduced van der Waals coordinates of the hydrogens follow
+     * their heavy atom, so moving a group as a whole leaves every other atom
+     * at its reference position.
+     */
+    private static int[] groups(ForceFieldEnergy energy, int indices[]) {
+        int nAtoms = energy.getNumberOfVariables() / 3;
+        boolean hydrogen[] = new boolean[nAtoms];
+        List<List<Integer>> attached = new ArrayList<>();
+        for (int i = 0; i < nAtoms; i++) {
+            attached.add(new ArrayList<>());
+        }
+        for (Bond bond : energy.getBonds()) {
+            Atom a0 = bond.getAtom(0);
+            Atom a1 = bond.getAtom(1);
+            if (a0.isHydrogen()) {
+                hydrogen[a0.getXyzIndex() - 1] = true;
+                attached.get(a1.getXyzIndex() - 1).add(a0.getXyzIndex() - 1);
+            } else if (a1.isHydrogen()) {
+                hydrogen[a1.getXyzIndex() - 1] = true;
+                attached.get(a0.getXyzIndex() - 1).add(a1.getXyzIndex() - 1);
+            }
+        }
+        List<Integer> group = new ArrayList<>();
+        for (int index : indices) {
+            int i = index;
+            while (hydrogen[i]) {
+                i++;
+            }
+            group.add(i);
+            group.addAll(attached.get(i));
+        }
+        return group.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * The lists that an incremental update may change: those of the moved
+     * atoms and of the atoms within the cutoff plus buffer of their previous
+     * positions.
+     */
+    private static int affectedLists(Crystal crystal, double x[], int moved[]) {
+        int nAtoms = x.length / 3;
+        Set<Integer> affected = new HashSet<>();
+        for (int m : moved) {
+            affected.add(m);
+            for (int j = 0; j < nAtoms; j++) {
+                double r2 = crystal.image(x[3 * j] - x[3 * m], x[3 * j + 1] - x[3 * m + 1],
+                        x[3 * j + 2] - x[3 * m + 2]);
+                if (r2 <= cutoffPlusBuffer * cutoffPlusBuffer) {
+                    affected.add(j);
+                }
+            }
+        }
+        return affected.size();
+    }
+
+    /**
+     * Compare the pairs of two neighbor lists, reporting the number of pairs
+     * missing from either.
+     */
+    private static void comparePairs(String info, NeighborList expected, NeighborList actual) {
+        Set<Long> expectedPairs = pairs(expected);
+        Set<Long> actualPairs = pairs(actual);
+        Set<Long> missing = new HashSet<>(expectedPairs);
+        missing.removeAll(actualPairs);
+        Set<Long> extra = new HashSet<>(actualPairs);
+        extra.removeAll(expectedPairs);
+        assertEquals(info + " Missing Pairs", 0, missing.size());
+        assertEquals(info + " Extra Pairs", 0, extra.size());
+    }
+
+    /**
+     * The unordered pairs of the asymmetric unit lists.
+     */
+    private static Set<Long> pairs(NeighborList neighborList) {
+        int lists[][] = neighborList.getNeighborList()[0];
+        Set<Long> pairs = new HashSet<>();
+        for (int i = 0; i < lists.length; i++) {
+            for (int j : lists[i]) {
+                long lo = Math.min(i, j);
+                long hi = Math.max(i, j);
+                assertTrue(" Duplicate pair " + i + " " + j, pairs.add(lo * lists.length + hi));
+            }
+        }
+        return pairs;
+    }
+}
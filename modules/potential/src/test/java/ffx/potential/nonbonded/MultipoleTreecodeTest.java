@@ -0,0 +1,95 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2016.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.nonbonded;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import ffx.potential.ForceFieldEnergy;
+import ffx.potential.utils.KeywordComparison;
+
+/**
+ * Compare the energy and gradient of the multipole treecode beyond the Ewald
+ * cutoff against the all pairs sum.
+ */
+@RunWith(Parameterized.class)
+public class MultipoleTreecodeTest {
+
+    private static final String filename = "ffx/potential/structures/peptide.pdb";
+
+    @Parameters
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][]{
+            {"Mutual Polarization", "MUTUAL", 0.05, 8, 1.0e-5},
+            {"Direct Polarization", "DIRECT", 0.05, 8, 1.0e-5},
+            {"Sixth Order", "MUTUAL", 0.3, 6, 1.0e-2}
+        });
+    }
+
+    private final String info;
+    private final String polarization;
+    private final double theta;
+    private final int order;
+    private final KeywordComparison comparison;
+
+    public MultipoleTreecodeTest(String info, String polarization, double theta, int order, double tolerance) {
+        this.info = "Peptide Multipole Treecode " + info;
+        this.polarization = polarization;
+        this.theta = theta;
+        this.order = order;
+        comparison = new KeywordComparison(tolerance, tolerance);
+    }
+
+    @Test
+    public void testTreecode() {
+        ForceFieldEnergy baseline = KeywordComparison.load(filename,
+                "forcefield=AMOEBA_PROTEIN_2013", "polarization=" + polarization);
+        ForceFieldEnergy energy = KeywordComparison.load(filename,
+                "forcefield=AMOEBA_PROTEIN_2013", "polarization=" + polarization,
+                "ewald-cutoff=6.0", "treecode=true", "treecode-theta=" + theta, "treecode-order=" + order);
+        double x[] = energy.getCoordinates(null);
+        comparison.compare(info, baseline, energy, x);
+        KeywordComparison.moveAtoms(x, KeywordComparison.spreadAtoms(x.length / 3, 5), 0.1, -0.05, 0.02);
+        comparison.compare(info + " (Moved Atoms)", baseline, energy, x);
+    }
+}
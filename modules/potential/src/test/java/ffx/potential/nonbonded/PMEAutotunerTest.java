@@ -0,0 +1,108 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2016.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.nonbonded;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import static java.lang.String.format;
+
+import ffx.potential.ForceFieldEnergy;
+import ffx.potential.utils.KeywordComparison;
+
+/**
+ * Compare the energy and gradient of each PME grid method, real space thread
+ * split and autotuned plan against the default SPATIAL plan.
+ */
+public class PMEAutotunerTest {
+
+    private static final String ubiquitin = "ffx/potential/structures/ubiquitin.xyz";
+    private static final String acetanilide = "ffx/potential/structures/acetanilide.xyz";
+    /**
+     * Tuning times 3 grid methods and 4 real space thread splits.
+     */
+    private static final int CANDIDATE_PLANS = 14;
+
+    private final KeywordComparison comparison = new KeywordComparison(1.0e-8, 1.0e-8);
+
+    @Test
+    public void testGridMethod() {
+        ForceFieldEnergy baseline = KeywordComparison.load(ubiquitin, "pj.nt=4", "pme-grid-method=SPATIAL");
+        for (String method : new String[]{"SLICE", "ROW"}) {
+            ForceFieldEnergy energy = KeywordComparison.load(ubiquitin, "pj.nt=4", "pme-grid-method=" + method);
+            compare("Ubiquitin PME " + method + " Grid Method", baseline, energy);
+        }
+    }
+
+    @Test
+    public void testRealThreads() {
+        ForceFieldEnergy baseline = KeywordComparison.load(acetanilide, "pj.nt=4");
+        ForceFieldEnergy energy = KeywordComparison.load(acetanilide,
+                "pj.nt=4", "pme-grid-method=ROW", "pme-real-threads=1");
+        compare("Acetanilide PME Real Space Threads (ROW)", baseline, energy);
+        energy = KeywordComparison.load(acetanilide,
+                "pj.nt=4", "pme-grid-method=SLICE", "pme-real-threads=3");
+        compare("Acetanilide PME Real Space Threads (SLICE)", baseline, energy);
+    }
+
+    @Test
+    public void testAutotune() {
+        // A wisdom file that does not exist yet, so that every candidate plan is timed.
+        File wisdom = new File(System.getProperty("java.io.tmpdir"),
+                format("ffx-pme-wisdom-%d.properties", System.nanoTime()));
+        wisdom.deleteOnExit();
+        ForceFieldEnergy baseline = KeywordComparison.load(acetanilide, "pj.nt=4");
+        ForceFieldEnergy energy = KeywordComparison.load(acetanilide, "pj.nt=4", "pme-autotune=true",
+                "pme-autotune-evaluations=1", "pme-wisdom-file=" + wisdom.getPath());
+        String info = "Acetanilide PME Autotuning";
+        double x[] = energy.getCoordinates(null);
+        for (int eval = 0; eval <= CANDIDATE_PLANS; eval++) {
+            comparison.compare(info + " (Evaluation " + eval + ")", baseline, energy, x);
+        }
+        KeywordComparison.moveAtoms(x, KeywordComparison.spreadAtoms(x.length / 3, 5), 0.1, -0.05, 0.02);
+        comparison.compare(info + " (Moved Atoms)", baseline, energy, x);
+    }
+
+    private void compare(String info, ForceFieldEnergy baseline, ForceFieldEnergy energy) {
+        double x[] = energy.getCoordinates(null);
+        comparison.compare(info, baseline, energy, x);
+        KeywordComparison.moveAtoms(x, KeywordComparison.spreadAtoms(x.length / 3, 5), 0.1, -0.05, 0.02);
+        comparison.compare(info + " (Moved Atoms)", baseline, energy, x);
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2016.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.nonbonded;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import edu.rit.pj.Comm;
+
+import ffx.potential.ForceFieldEnergy;
+import ffx.potential.utils.KeywordComparison;
+
+/**
+ * Compare the energy and gradient of crystals for each reciprocal space FFT
+ * method against the default PJ method.
+ */
+@RunWith(Parameterized.class)
+public class ReciprocalSpaceTest {
+
+    /**
+     * Turn the cubic water box into a triclinic cell.
+     */
+    private static final String TRICLINIC[] = {"alpha=80.0", "beta=95.0", "gamma=100.0"};
+
+    @Parameters
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][]{
+            {"Paracetamol (Monoclinic)", "ffx/potential/structures/paracetamol.xyz", null, "PJ_BLOCKED"},
+            {"Water (Triclinic)", "ffx/potential/structures/watertiny.xyz", TRICLINIC, "PJ_BLOCKED"},
+            {"Paracetamol (Monoclinic)", "ffx/potential/structures/paracetamol.xyz", null, "PJ_REAL"},
+            {"Water (Triclinic)", "ffx/potential/structures/watertiny.xyz", TRICLINIC, "PJ_REAL"},
+            {"Paracetamol (Monoclinic)", "ffx/potential/structures/paracetamol.xyz", null, "PJ_DISTRIBUTED"},
+            {"Water (Triclinic)", "ffx/potential/structures/watertiny.xyz", TRICLINIC, "PJ_DISTRIBUTED"}
+        });
+    }
+
+    /**
+     * The PJ_DISTRIBUTED method decomposes the grid over the processes of the
+     * world communicator, which is a single process here.
+     */
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        try {
+            Comm.world();
+        } catch (IllegalStateException e) {
+            Comm.init(new String[0]);
+        }
+    }
+
+    private final String info;
+    private final String filename;
+    private final String cell[];
+    private final String fftMethod;
+    private final KeywordComparison comparison = new KeywordComparison(1.0e-6, 1.0e-6);
+
+    public ReciprocalSpaceTest(String info, String filename, String cell[], String fftMethod) {
+        this.info = info + " " + fftMethod;
+        this.filename = filename;
+        this.cell = cell;
+        this.fftMethod = fftMethod;
+    }
+
+    @Test
+    public void testFFTMethod() {
+        ForceFieldEnergy baseline = KeywordComparison.load(filename, keywords("PJ"));
+        ForceFieldEnergy energy = KeywordComparison.load(filename, keywords(fftMethod));
+        double x[] = energy.getCoordinates(null);
+        comparison.compare(info, baseline, energy, x);
+        KeywordComparison.moveAtoms(x, KeywordComparison.spreadAtoms(x.length / 3, 5), 0.1, -0.05, 0.02);
+        comparison.compare(info + " (Moved Atoms)", baseline, energy, x);
+    }
+
+    private String[] keywords(String method) {
+        int n = (cell == null) ? 0 : cell.length;
+        String keywords[] = new String[n + 1];
+        for (int i = 0; i < n; i++) {
+            keywords[i] = cell[i];
+        }
+        keywords[n] = "fft-method=" + method;
+        return keywords;
+    }
+}
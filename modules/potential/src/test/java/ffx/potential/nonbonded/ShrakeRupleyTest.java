@@ -0,0 +1,96 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2016.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.nonbonded;
+
+import org.junit.Test;
+
+import ffx.potential.ForceFieldEnergy;
+import ffx.potential.utils.KeywordComparison;
+
+/**
+ * Test the Shrake-Rupley cavitation models against the analytic surface area
+ * models, and incremental energy-only surface area updates against full
+ * updates.
+ */
+public class ShrakeRupleyTest {
+
+    private static final String dmhd = "ffx/potential/structures/dmhd-amoebapro13.xyz";
+    private static final String peptide = "ffx/potential/structures/peptide.pdb";
+
+    /**
+     * The sampled surface area approximates the analytic surface area.
+     */
+    private final KeywordComparison analytic = new KeywordComparison(1.0e-1, 5.0e-2);
+    private final KeywordComparison incremental = new KeywordComparison(1.0e-8, 1.0e-8);
+
+    @Test
+    public void testCavitation() {
+        ForceFieldEnergy baseline = KeywordComparison.load(dmhd, "cavmodel=CAV");
+        ForceFieldEnergy energy = KeywordComparison.load(dmhd, "cavmodel=CAV_SR");
+        analytic.compare("DMHD Shrake-Rupley Cavitation", baseline, energy, energy.getCoordinates(null));
+    }
+
+    @Test
+    public void testCavitationDispersion() {
+        ForceFieldEnergy baseline = KeywordComparison.load(dmhd, "cavmodel=CAV_DISP", "surface-tension=0.0049");
+        ForceFieldEnergy energy = KeywordComparison.load(dmhd, "cavmodel=CAV_DISP_SR", "surface-tension=0.0049");
+        analytic.compare("DMHD Shrake-Rupley Cavitation and Dispersion", baseline, energy,
+                energy.getCoordinates(null));
+    }
+
+    @Test
+    public void testIncrementalArea() {
+        for (String model : new String[]{"CAV_SR", "CAV_DISP_SR"}) {
+            String info = "Peptide " + model + " Incremental Area";
+            ForceFieldEnergy baseline = KeywordComparison.load(peptide, keywords(model, false));
+            ForceFieldEnergy energy = KeywordComparison.load(peptide, keywords(model, true));
+            double x[] = energy.getCoordinates(null);
+            incremental.compare(info, baseline, energy, x);
+            // Energy only evaluations recompute the areas of moved and overlapping atoms.
+            for (int move = 1; move <= 3; move++) {
+                KeywordComparison.moveAtoms(x, KeywordComparison.spreadAtoms(x.length / 3, 5), 0.1, -0.05, 0.02);
+                incremental.compareEnergy(info + " (Move " + move + ")", baseline, energy, x);
+            }
+        }
+    }
+
+    private static String[] keywords(String model, boolean incremental) {
+        return new String[]{"forcefield=AMOEBA_PROTEIN_2013", "gkterm=true", "cavmodel=" + model,
+            "sasa-incremental=" + incremental};
+    }
+}
@@ -0,0 +1,334 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2016.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.nonbonded;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+import ffx.potential.ForceFieldEnergy;
+import ffx.potential.nonbonded.TruncatedConjugateGradient.DipoleField;
+import ffx.potential.utils.KeywordComparison;
+
+/**
+ * Unit tests for the TruncatedConjugateGradient class, using a small dense
+ * (&alpha;<sup>-1</sup> - T) system.
+ */
+public class TruncatedConjugateGradientTest {
+
+    private static final int nAtoms = 4;
+    private static final int n = 3 * nAtoms;
+    private static final double tolerance = 1.0e-10;
+    private static final double fdTolerance = 1.0e-6;
+    private static final double step = 1.0e-5;
+    private static final double ffTolerance = 1.0e-4;
+    private static final double ffStep = 1.0e-5;
+
+    private double polarizability[];
+    private double directField[][];
+    private double directFieldCR[][];
+    private double tensor[][];
+    private double perturbation[][];
+
+    @Before
+    public void setUp() {
+        Random random = new Random(1234567L);
+        polarizability = new double[nAtoms];
+        directField = new double[3][nAtoms];
+        directFieldCR = new double[3][nAtoms];
+        for (int i = 0; i < nAtoms; i++) {
+            polarizability[i] = 0.5 + random.nextDouble();
+            for (int j = 0; j < 3; j++) {
+                directField[j][i] = random.nextDouble() - 0.5;
+                directFieldCR[j][i] = random.nextDouble() - 0.5;
+            }
+        }
+        tensor = new double[n][n];
+        perturbation = new double[n][n];
+        for (int a = 0; a < n; a++) {
+            for (int b = a + 1; b < n; b++) {
+                // No self interaction within an atom.
+                if (a / 3 == b / 3) {
+                    continue;
+                }
+                tensor[a][b] = 0.2 * (random.nextDouble() - 0.5);
+                tensor[b][a] = tensor[a][b];
+                perturbation[a][b] = random.nextDouble() - 0.5;
+                perturbation[b][a] = perturbation[a][b];
+            }
+        }
+    }
+
+    @Test(timeout = 1000)
+    public void TruncatedConjugateGradient_dipoles() {
+        for (int order = 1; order <= 2; order++) {
+            for (boolean peek : new boolean[]{false, true}) {
+                TruncatedConjugateGradient tcg = new TruncatedConjugateGradient(order, peek);
+                tcg.solve(nAtoms, polarizability, directField, directFieldCR, new DenseField(tensor));
+                String info = String.format(" TCG%d (peek %b)", order, peek);
+                assertVector(info + " dipoles", conjugateGradient(directField, order, peek), tcg.getDipoles(), tolerance);
+                assertVector(info + " chain rule dipoles", conjugateGradient(directFieldCR, order, peek), tcg.getDipolesCR(), tolerance);
+                assertEquals(info + " pair count", order + 1, tcg.getPairCount());
+            }
+        }
+    }
+
+    @Test(timeout = 1000)
+    public void TruncatedConjugateGradient_adjoint() {
+        for (int order = 1; order <= 2; order++) {
+            for (boolean peek : new boolean[]{false, true}) {
+                String info = String.format(" TCG%d (peek %b)", order, peek);
+                TruncatedConjugateGradient tcg = new TruncatedConjugateGradient(order, peek);
+                DenseField field = new DenseField(tensor);
+                tcg.solve(nAtoms, polarizability, directField, directFieldCR, field);
+                tcg.adjoint(directFieldCR, field);
+
+                // The adjoint dipoles are the derivative of seed . mu with respect to the direct field.
+                double adjoint[][] = tcg.getAdjointDipoles();
+                for (int i = 0; i < nAtoms; i++) {
+                    for (int j = 0; j < 3; j++) {
+                        double orig = directField[j][i];
+                        directField[j][i] = orig + step;
+                        double plus = seedEnergy(order, peek, tensor);
+                        directField[j][i] = orig - step;
+                        double minus = seedEnergy(order, peek, tensor);
+                        directField[j][i] = orig;
+                        double fd = (plus - minus) / (2.0 * step);
+                        assertEquals(info + " adjoint dipole", fd, adjoint[j][i], fdTolerance);
+                    }
+                }
+
+                // The pair terms are the derivative of seed . mu with respect to the field tensor.
+                double analytic = 0.0;
+                for (int k = 0; k < tcg.getPairCount(); k++) {
+                    double v[] = flatten(tcg.getPairVector(k));
+                    double y[] = flatten(tcg.getPairAdjoint(k));
+                    for (int a = 0; a < n; a++) {
+                        for (int b = 0; b < n; b++) {
+                            analytic += y[a] * perturbation[a][b] * v[b];
+                        }
+                    }
+                }
+                double plus = seedEnergy(order, peek, perturb(step));
+                double minus = seedEnergy(order, peek, perturb(-step));
+                double fd = (plus - minus) / (2.0 * step);
+                assertEquals(info + " field tensor gradient", fd, analytic, fdTolerance);
+            }
+        }
+    }
+
+    /**
+     * The analytic gradient of a crystal with the TCG polarization energy
+     * must match finite differences.
+     */
+    @Test
+    public void TruncatedConjugateGradient_forceFieldGradient() {
+        String filename = "ffx/potential/structures/acetanilide.xyz";
+        for (int order = 1; order <= 2; order++) {
+            for (boolean peek : new boolean[]{false, true}) {
+                String info = String.format(" TCG%d (peek %b)", order, peek);
+                ForceFieldEnergy forceFieldEnergy = KeywordComparison.load(filename,
+                        "scf-algorithm=TCG" + order, "tcg-peek=" + peek);
+                double x[] = forceFieldEnergy.getCoordinates(null);
+                int nVariables = x.length;
+                double g[] = new double[nVariables];
+                forceFieldEnergy.energyAndGradient(x, g);
+                int nAtoms = nVariables / 3;
+                for (int i : new int[]{0, nAtoms / 2, nAtoms - 1}) {
+                    for (int j = 0; j < 3; j++) {
+                        int index = 3 * i + j;
+                        double orig = x[index];
+                        x[index] = orig + ffStep;
+                        double plus = forceFieldEnergy.energy(x);
+                        x[index] = orig - ffStep;
+                        double minus = forceFieldEnergy.energy(x);
+                        x[index] = orig;
+                        double fd = (plus - minus) / (2.0 * ffStep);
+                        assertEquals(info + " gradient " + index, fd, g[index], ffTolerance);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The seed (chain rule field) dotted into the TCG dipoles of the direct
+     * field, which is -2 times the polarization energy.
+     */
+    private double seedEnergy(int order, boolean peek, double t[][]) {
+        TruncatedConjugateGradient tcg = new TruncatedConjugateGradient(order, peek);
+        tcg.solve(nAtoms, polarizability, directField, directFieldCR, new DenseField(t));
+        return dot(flatten(directFieldCR), flatten(tcg.getDipoles()));
+    }
+
+    private double[][] perturb(double h) {
+        double t[][] = new double[n][n];
+        for (int a = 0; a < n; a++) {
+            for (int b = 0; b < n; b++) {
+                t[a][b] = tensor[a][b] + h * perturbation[a][b];
+            }
+        }
+        return t;
+    }
+
+    /**
+     * Explicit Jacobi preconditioned conjugate gradient steps from the direct
+     * dipoles &alpha;E.
+     */
+    private double[] conjugateGradient(double field[][], int steps, boolean peek) {
+        double e[] = flatten(field);
+        double alpha[] = new double[n];
+        for (int a = 0; a < n; a++) {
+            alpha[a] = polarizability[a / 3];
+        }
+        double x[] = new double[n];
+        for (int a = 0; a < n; a++) {
+            x[a] = alpha[a] * e[a];
+        }
+        // r = E - (alpha^-1 - T) x
+        double ax[] = multiply(x, alpha);
+        double r[] = new double[n];
+        for (int a = 0; a < n; a++) {
+            r[a] = e[a] - ax[a];
+        }
+        double z[] = new double[n];
+        double p[] = new double[n];
+        for (int a = 0; a < n; a++) {
+            z[a] = alpha[a] * r[a];
+            p[a] = z[a];
+        }
+        double rz = dot(r, z);
+        for (int s = 0; s < steps; s++) {
+            double ap[] = multiply(p, alpha);
+            double gamma = rz / dot(p, ap);
+            for (int a = 0; a < n; a++) {
+                x[a] += gamma * p[a];
+                r[a] -= gamma * ap[a];
+                z[a] = alpha[a] * r[a];
+            }
+            double rzNext = dot(r, z);
+            double beta = rzNext / rz;
+            for (int a = 0; a < n; a++) {
+                p[a] = z[a] + beta * p[a];
+            }
+            rz = rzNext;
+        }
+        if (peek) {
+            for (int a = 0; a < n; a++) {
+                x[a] += alpha[a] * r[a];
+            }
+        }
+        return x;
+    }
+
+    /**
+     * Apply (&alpha;<sup>-1</sup> - T) to a vector.
+     */
+    private double[] multiply(double v[], double alpha[]) {
+        double result[] = new double[n];
+        for (int a = 0; a < n; a++) {
+            double sum = v[a] / alpha[a];
+            for (int b = 0; b < n; b++) {
+                sum -= tensor[a][b] * v[b];
+            }
+            result[a] = sum;
+        }
+        return result;
+    }
+
+    private static void assertVector(String info, double expected[], double actual[][], double tol) {
+        for (int i = 0; i < nAtoms; i++) {
+            for (int j = 0; j < 3; j++) {
+                assertEquals(info, expected[3 * i + j], actual[j][i], tol);
+            }
+        }
+    }
+
+    private static double[] flatten(double v[][]) {
+        double result[] = new double[n];
+        for (int i = 0; i < nAtoms; i++) {
+            for (int j = 0; j < 3; j++) {
+                result[3 * i + j] = v[j][i];
+            }
+        }
+        return result;
+    }
+
+    private static double dot(double a[], double b[]) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * The field of a set of dipoles due to a dense tensor.
+     */
+    private static class DenseField implements DipoleField {
+
+        private final double t[][];
+
+        DenseField(double t[][]) {
+            this.t = t;
+        }
+
+        @Override
+        public void field(double dipole[][], double dipoleCR[][], double field[][], double fieldCR[][],
+                int pair, boolean adjoint) {
+            apply(dipole, field);
+            apply(dipoleCR, fieldCR);
+        }
+
+        private void apply(double dipole[][], double field[][]) {
+            for (int i = 0; i < nAtoms; i++) {
+                for (int j = 0; j < 3; j++) {
+                    double sum = 0.0;
+                    for (int k = 0; k < nAtoms; k++) {
+                        for (int l = 0; l < 3; l++) {
+                            sum += t[3 * i + j][3 * k + l] * dipole[l][k];
+                        }
+                    }
+                    field[j][i] = sum;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2016.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.nonbonded;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.apache.commons.math3.util.FastMath.abs;
+import static org.apache.commons.math3.util.FastMath.max;
+import static org.apache.commons.math3.util.FastMath.pow;
+import static org.apache.commons.math3.util.FastMath.sqrt;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import ffx.potential.ForceFieldEnergy;
+import ffx.potential.utils.KeywordComparison;
+
+import static ffx.potential.nonbonded.VanDerWaalsForm.EPS;
+import static ffx.potential.nonbonded.VanDerWaalsForm.RADMIN;
+
+/**
+ * Compare the energy and gradient of tabulated van der Waals interactions
+ * against the analytic functional form.
+ */
+@RunWith(Parameterized.class)
+public class VanDerWaalsTableTest {
+
+    @Parameters
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][]{
+            // The table shifts the ubiquitin energy by 1.4e-4 kcal/mol, which is the sum of pair errors.
+            {"Ubiquitin", "ffx/potential/structures/ubiquitin.xyz", true, 2.5e-4, 1.0e-2},
+            // Amber99sb falls back to the analytic path.
+            {"Peptide (Amber99sb)", "ffx/potential/structures/peptide-amber99sb.xyz", false, 1.0e-4, 1.0e-4}
+        });
+    }
+
+    /**
+     * Samples per table interval for the per-pair comparison.
+     */
+    private static final int SAMPLES = 8;
+    /**
+     * Bounds on the error of each class pair. The measured maxima for
+     * ubiquitin are 7.4e-5 kcal/mol in the energy, 1.8e-6 in the relative
+     * energy, and 5.1e-6 in dE/dr relative to max(1, |dE/dr|); within the
+     * switch they are 1.0e-11 kcal/mol and 5.8e-7 kcal/mol/A.
+     */
+    private static final double ENERGY_BOUND = 1.0e-4;
+    private static final double RELATIVE_ENERGY_BOUND = 1.0e-5;
+    private static final double DERIVATIVE_BOUND = 1.0e-5;
+    private static final double SWITCH_ENERGY_BOUND = 1.0e-9;
+    private static final double SWITCH_DERIVATIVE_BOUND = 1.0e-6;
+    private final String info;
+    private final String filename;
+    private final boolean tabulated;
+    private final KeywordComparison comparison;
+
+    public VanDerWaalsTableTest(String info, String filename, boolean tabulated,
+                                double tolerance, double gradientTolerance) {
+        this.info = info + " van der Waals Table";
+        this.filename = filename;
+        this.tabulated = tabulated;
+        comparison = new KeywordComparison(tolerance, gradientTolerance);
+    }
+
+    @Test
+    public void testVanDerWaalsTable() {
+        ForceFieldEnergy baseline = KeywordComparison.load(filename, "vdw-table=false");
+        ForceFieldEnergy energy = KeywordComparison.load(filename, "vdw-table=true");
+        double x[] = energy.getCoordinates(null);
+        comparison.compare(info, baseline, energy, x);
+        KeywordComparison.moveAtoms(x, KeywordComparison.spreadAtoms(x.length / 3, 5), 0.1, -0.05, 0.02);
+        comparison.compare(info + " (Moved Atoms)", baseline, energy, x);
+    }
+
+    /**
+     * Compare every tabulated class pair against the analytic buffered 14-7
+     * energy, and its derivative, from the lower bound of the table through
+     * the switch to the cutoff.
+     */
+    @Test
+    public void testPairErrors() {
+        ForceFieldEnergy energy = KeywordComparison.load(filename, "vdw-table=true");
+        VanDerWaals vanDerWaals = energy.getVdwNode();
+        VanDerWaalsTable table = vanDerWaals.getVanDerWaalsTable();
+        if (!tabulated) {
+            assertNull(info + " Analytic Path", table);
+            return;
+        }
+        assertNotNull(info, table);
+        assertTrue(info + " Accurate", table.isAccurate());
+
+        VanDerWaalsForm form = vanDerWaals.getVDWForm();
+        NonbondedCutoff cutoff = vanDerWaals.getNonbondedCutoff();
+        MultiplicativeSwitch multiplicativeSwitch = new MultiplicativeSwitch(cutoff.off, cutoff.cut);
+        double cut = cutoff.cut;
+        double minR2 = table.getMinR2();
+        int n = SAMPLES * VanDerWaalsTable.DEFAULT_POINTS;
+        double ds = (cutoff.off2 - minR2) / n;
+        double dEdr2[] = new double[1];
+        double maxEnergyError = 0.0;
+        double maxRelativeEnergyError = 0.0;
+        double maxGradientError = 0.0;
+        double maxDerivativeError = 0.0;
+        double maxSwitchEnergyError = 0.0;
+        double maxSwitchDerivativeError = 0.0;
+        int nClasses = form.radEps.length;
+        for (int i = 0; i < nClasses; i++) {
+            double coefficients[][] = table.getCoefficients(i);
+            for (int k = i; k < nClasses; k++) {
+                if (coefficients[k] == null) {
+                    continue;
+                }
+                double irv = form.radEps[i][k * 2 + RADMIN];
+                double eps = form.radEps[i][k * 2 + EPS];
+                // Offset the samples from the knots, where the spline is exact.
+                for (int j = 0; j < n; j++) {
+                    double r2 = minR2 + (j + 0.5) * ds;
+                    double r = sqrt(r2);
+                    double e = table.evaluate(coefficients[k], r2, dEdr2);
+                    double reference = pairEnergy(form, multiplicativeSwitch, cut, irv, eps, r);
+                    double dReference = pairDerivative(form, multiplicativeSwitch, cut, irv, eps, r);
+                    double energyError = abs(e - reference);
+                    double gradientError = abs(2.0 * r * dEdr2[0] - dReference);
+                    maxEnergyError = max(maxEnergyError, energyError);
+                    maxGradientError = max(maxGradientError, gradientError);
+                    maxDerivativeError = max(maxDerivativeError, gradientError / max(1.0, abs(dReference)));
+                    if (abs(reference) > 1.0e-3) {
+                        maxRelativeEnergyError = max(maxRelativeEnergyError, energyError / abs(reference));
+                    }
+                    if (r > cut) {
+                        maxSwitchEnergyError = max(maxSwitchEnergyError, energyError);
+                        maxSwitchDerivativeError = max(maxSwitchDerivativeError, gradientError);
+                    }
+                }
+            }
+        }
+        assertEquals(info + " Energy", 0.0, maxEnergyError, ENERGY_BOUND);
+        assertEquals(info + " Relative Energy", 0.0, maxRelativeEnergyError, RELATIVE_ENERGY_BOUND);
+        assertEquals(info + " Derivative", 0.0, maxDerivativeError, DERIVATIVE_BOUND);
+        assertEquals(info + " Switch Energy", 0.0, maxSwitchEnergyError, SWITCH_ENERGY_BOUND);
+        assertEquals(info + " Switch Derivative", 0.0, maxSwitchDerivativeError, SWITCH_DERIVATIVE_BOUND);
+
+        // The accuracy report samples fewer points, so it may be somewhat lower.
+        assertEquals(info + " Reported Energy", maxEnergyError, table.getMaxEnergyError(), 0.5 * maxEnergyError);
+        assertEquals(info + " Reported Relative Energy", maxRelativeEnergyError,
+                table.getMaxRelativeEnergyError(), 0.5 * maxRelativeEnergyError);
+        assertEquals(info + " Reported Gradient", maxGradientError, table.getMaxGradientError(), 0.5 * maxGradientError);
+    }
+
+    /**
+     * The analytic buffered 14-7 energy of a class pair, times the switch.
+     */
+    private static double pairEnergy(VanDerWaalsForm form, MultiplicativeSwitch multiplicativeSwitch, double cut,
+                                     double irv, double eps, double r) {
+        double rho = r * irv;
+        double t1 = form.t1n / pow(rho + form.delta, form.repDispPower);
+        double t2 = form.gamma1 / (pow(rho, form.dispersivePower) + form.gamma) - 2.0;
+        double taper = (r > cut) ? multiplicativeSwitch.taper(r) : 1.0;
+        return eps * t1 * t2 * taper;
+    }
+
+    /**
+     * Central difference derivative of the pair energy with respect to r.
+     */
+    private static double pairDerivative(VanDerWaalsForm form, MultiplicativeSwitch multiplicativeSwitch, double cut,
+                                         double irv, double eps, double r) {
+        double h = 1.0e-5;
+        return (pairEnergy(form, multiplicativeSwitch, cut, irv, eps, r + h)
+                - pairEnergy(form, multiplicativeSwitch, cut, irv, eps, r - h)) / (2.0 * h);
+    }
+}
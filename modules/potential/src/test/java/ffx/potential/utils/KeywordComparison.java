@@ -0,0 +1,233 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2016.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.potential.utils;
+
+import java.io.File;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+
+import ffx.potential.ForceFieldEnergy;
+import ffx.potential.MolecularAssembly;
+import ffx.potential.nonbonded.GeneralizedKirkwood;
+
+/**
+ * Compares the energy, each energy term and the gradient of a structure
+ * loaded with a set of keywords against the same structure loaded with
+ * baseline keywords. Keywords are name=value pairs that are set as system
+ * properties while the structure is opened; prior values are then restored.
+ */
+public class KeywordComparison {
+
+    private static final Logger logger = Logger.getLogger(KeywordComparison.class.getName());
+
+    private final double tolerance;
+    private final double gradientTolerance;
+
+    /**
+     * @param tolerance Energy tolerance (kcal/mol).
+     * @param gradientTolerance Gradient component tolerance (kcal/mol/A).
+     */
+    public KeywordComparison(double tolerance, double gradientTolerance) {
+        this.tolerance = tolerance;
+        this.gradientTolerance = gradientTolerance;
+    }
+
+    /**
+     * Open a structure from the class path with the given keywords.
+     *
+     * @param filename The structure.
+     * @param keywords Keywords as name=value pairs (may be null).
+     * @return The ForceFieldEnergy of the structure.
+     */
+    public static ForceFieldEnergy load(String filename, String... keywords) {
+        ClassLoader cl = KeywordComparison.class.getClassLoader();
+        File structure = new File(cl.getResource(filename).getPath());
+        String previous[] = setProperties(keywords);
+        try {
+            PotentialsUtils potentialUtils = new PotentialsUtils();
+            MolecularAssembly molecularAssembly = potentialUtils.openQuietly(structure.getAbsolutePath());
+            return molecularAssembly.getPotentialEnergy();
+        } finally {
+            restoreProperties(keywords, previous);
+        }
+    }
+
+    /**
+     * Compare the energy and gradient of two structures at the same
+     * coordinates.
+     *
+     * @param label A description of the comparison.
+     * @param baseline The baseline energy.
+     * @param energy The energy under test.
+     * @param x The coordinates.
+     */
+    public void compare(String label, ForceFieldEnergy baseline, ForceFieldEnergy energy, double x[]) {
+        logger.info(String.format(" Comparing %s", label));
+        int n = x.length;
+        double baselineG[] = new double[n];
+        double g[] = new double[n];
+        double baselineE = baseline.energyAndGradient(x, baselineG);
+        double e = energy.energyAndGradient(x, g);
+        compareTerms(label, baseline, baselineE, energy, e);
+        for (int i = 0; i < n; i++) {
+            assertEquals(label + " Gradient " + i, baselineG[i], g[i], gradientTolerance);
+        }
+    }
+
+    /**
+     * Compare an energy only evaluation against a baseline energy and
+     * gradient evaluation at the same coordinates.
+     *
+     * @param label A description of the comparison.
+     * @param baseline The baseline energy.
+     * @param energy The energy under test.
+     * @param x The coordinates.
+     */
+    public void compareEnergy(String label, ForceFieldEnergy baseline, ForceFieldEnergy energy, double x[]) {
+        double baselineE = baseline.energyAndGradient(x, new double[x.length]);
+        double e = energy.energy(x);
+        compareTerms(label + " (Energy Only)", baseline, baselineE, energy, e);
+    }
+
+    /**
+     * Compare the total energy and each energy term.
+     */
+    private void compareTerms(String label, ForceFieldEnergy baseline, double baselineE,
+            ForceFieldEnergy energy, double e) {
+        assertEquals(label + " Energy", baselineE, e, tolerance);
+        assertEquals(label + " Bond Energy", baseline.getBondEnergy(), energy.getBondEnergy(), tolerance);
+        assertEquals(label + " Angle Energy", baseline.getAngleEnergy(), energy.getAngleEnergy(), tolerance);
+        assertEquals(label + " Stretch-Bend Energy", baseline.getStrenchBendEnergy(),
+                energy.getStrenchBendEnergy(), tolerance);
+        assertEquals(label + " Urey-Bradley Energy", baseline.getUreyBradleyEnergy(),
+                energy.getUreyBradleyEnergy(), tolerance);
+        assertEquals(label + " Out-of-Plane Bend Energy", baseline.getOutOfPlaneBendEnergy(),
+                energy.getOutOfPlaneBendEnergy(), tolerance);
+        assertEquals(label + " Torsion Energy", baseline.getTorsionEnergy(), energy.getTorsionEnergy(), tolerance);
+        assertEquals(label + " Improper Torsion Energy", baseline.getImproperTorsionEnergy(),
+                energy.getImproperTorsionEnergy(), tolerance);
+        assertEquals(label + " Pi-Orbital Torsion Energy", baseline.getPiOrbitalTorsionEnergy(),
+                energy.getPiOrbitalTorsionEnergy(), tolerance);
+        assertEquals(label + " Torsion-Torsion Energy", baseline.getTorsionTorsionEnergy(),
+                energy.getTorsionTorsionEnergy(), tolerance);
+        assertEquals(label + " van Der Waals Energy", baseline.getVanDerWaalsEnergy(),
+                energy.getVanDerWaalsEnergy(), tolerance);
+        assertEquals(label + " Permanent Multipole Energy", baseline.getPermanentMultipoleEnergy(),
+                energy.getPermanentMultipoleEnergy(), tolerance);
+        assertEquals(label + " Polarization Energy", baseline.getPolarizationEnergy(),
+                energy.getPolarizationEnergy(), tolerance);
+        GeneralizedKirkwood baselineGK = baseline.getGK();
+        GeneralizedKirkwood gk = energy.getGK();
+        if (baselineGK != null && gk != null) {
+            assertEquals(label + " Solvation", baseline.getSolvationEnergy(), energy.getSolvationEnergy(), tolerance);
+            double baselineBorn[] = baselineGK.getBornRadii();
+            double born[] = gk.getBornRadii();
+            for (int i = 0; i < born.length; i++) {
+                assertEquals(label + " Born Radius " + i, baselineBorn[i], born[i], tolerance);
+            }
+        }
+    }
+
+    /**
+     * Choose atoms spread evenly through the structure.
+     *
+     * @param nAtoms The number of atoms in the structure.
+     * @param count The number of atoms to choose.
+     * @return The indices of the chosen atoms.
+     */
+    public static int[] spreadAtoms(int nAtoms, int count) {
+        count = Math.min(count, nAtoms);
+        int atoms[] = new int[count];
+        for (int i = 0; i < count; i++) {
+            atoms[i] = (int) ((long) i * nAtoms / count);
+        }
+        return atoms;
+    }
+
+    /**
+     * Displace a set of atoms.
+     *
+     * @param x The coordinates to move.
+     * @param atoms The indices of the atoms to move.
+     * @param dx Displacement along x (A).
+     * @param dy Displacement along y (A).
+     * @param dz Displacement along z (A).
+     */
+    public static void moveAtoms(double x[], int atoms[], double dx, double dy, double dz) {
+        for (int i : atoms) {
+            x[3 * i] += dx;
+            x[3 * i + 1] += dy;
+            x[3 * i + 2] += dz;
+        }
+    }
+
+    /**
+     * Set system properties given as name=value pairs.
+     *
+     * @return The prior value of each property (null if it was not set).
+     */
+    private static String[] setProperties(String properties[]) {
+        if (properties == null) {
+            return null;
+        }
+        String previous[] = new String[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            String pair[] = properties[i].split("=", 2);
+            previous[i] = System.setProperty(pair[0], pair[1]);
+        }
+        return previous;
+    }
+
+    /**
+     * Restore the values that system properties had before setProperties.
+     */
+    private static void restoreProperties(String properties[], String previous[]) {
+        if (properties == null) {
+            return;
+        }
+        for (int i = properties.length - 1; i >= 0; i--) {
+            String key = properties[i].split("=", 2)[0];
+            if (previous[i] == null) {
+                System.clearProperty(key);
+            } else {
+                System.setProperty(key, previous[i]);
+            }
+        }
+    }
+}
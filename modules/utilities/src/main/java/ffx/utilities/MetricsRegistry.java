@@ -0,0 +1,338 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.utilities;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import static java.lang.String.format;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The MetricsRegistry collects named RollingHistogram metrics (per-term energy
+ * times, interaction counts, neighbor list rebuilds, SCF iterations, FFT times,
+ * etc.) so that slowdowns during long simulations can be monitored without
+ * parsing log output.
+ * <p>
+ * Metrics are only collected if the "metrics.enabled" system property is true.
+ * Each metric is published as a JMX MBean named "ffx:type=Metrics,name=...".
+ * If the "metrics.file" property is set, a snapshot of all metrics is appended
+ * to the file every "metrics.interval" seconds (default 60) and at shutdown;
+ * files ending in ".json" receive one JSON object per line, otherwise CSV rows
+ * are written. The "metrics.window" property sets the number of recent values
+ * retained by each histogram (default 1000).
+ *
+ * @author Michael J. Schnieders
+ *
+ * @since 1.0
+ */
+public class MetricsRegistry {
+
+    private static final Logger logger = Logger.getLogger(MetricsRegistry.class.getName());
+
+    /**
+     * Conversion from nanoseconds to seconds.
+     */
+    private static final double toSeconds = 1.0e-9;
+
+    /**
+     * True if metrics are being collected.
+     */
+    private static final boolean enabled = Boolean.parseBoolean(System.getProperty("metrics.enabled", "false"));
+
+    private static MetricsRegistry registry = null;
+
+    private final Map<String, RollingHistogram> metrics = new ConcurrentSkipListMap<>();
+    private final int windowSize;
+    private final MBeanServer mBeanServer;
+    private ScheduledExecutorService dumpService = null;
+    /**
+     * Writes a final snapshot at shutdown; replaced when dumps are restarted.
+     */
+    private Thread shutdownHook = null;
+
+    /**
+     * Private constructor; use getInstance.
+     */
+    private MetricsRegistry(int windowSize, boolean jmx) {
+        this.windowSize = windowSize;
+        MBeanServer server = null;
+        if (jmx) {
+            try {
+                server = ManagementFactory.getPlatformMBeanServer();
+            } catch (Exception e) {
+                logger.log(Level.WARNING, " JMX is not available for metrics.", e);
+            }
+        }
+        mBeanServer = server;
+    }
+
+    /**
+     * Create a registry that is not published via JMX or dumped to a file,
+     * which is useful for testing.
+     *
+     * @param windowSize The number of recent values retained by each metric.
+     * @return a new MetricsRegistry.
+     */
+    public static MetricsRegistry createLocal(int windowSize) {
+        return new MetricsRegistry(windowSize, false);
+    }
+
+    /**
+     * Return the shared registry, creating it (and starting periodic dumps if
+     * requested) on first use.
+     *
+     * @return the shared MetricsRegistry.
+     */
+    public static synchronized MetricsRegistry getInstance() {
+        if (registry == null) {
+            int window = Integer.getInteger("metrics.window", 1000);
+            registry = new MetricsRegistry(window, true);
+            String file = System.getProperty("metrics.file");
+            if (file != null) {
+                long interval = Long.getLong("metrics.interval", 60);
+                registry.startDumps(new File(file), interval);
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * @return true if metrics are being collected.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Record a value in the shared registry if metrics are enabled.
+     *
+     * @param name The name of the metric.
+     * @param value The value.
+     */
+    public static void record(String name, double value) {
+        if (enabled) {
+            getInstance().getHistogram(name).record(value);
+        }
+    }
+
+    /**
+     * Record a time in nanoseconds, converted to seconds, in the shared
+     * registry if metrics are enabled.
+     *
+     * @param name The name of the metric.
+     * @param nanoseconds The elapsed time.
+     */
+    public static void recordTime(String name, long nanoseconds) {
+        if (enabled) {
+            getInstance().getHistogram(name).record(nanoseconds * toSeconds);
+        }
+    }
+
+    /**
+     * Return the named histogram, creating and publishing it if necessary.
+     *
+     * @param name The name of the metric.
+     * @return the RollingHistogram.
+     */
+    public RollingHistogram getHistogram(String name) {
+        RollingHistogram histogram = metrics.get(name);
+        if (histogram == null) {
+            synchronized (metrics) {
+                histogram = metrics.get(name);
+                if (histogram == null) {
+                    histogram = new RollingHistogram(name, windowSize);
+                    metrics.put(name, histogram);
+                    register(histogram);
+                }
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Publish a histogram as an MBean.
+     */
+    private void register(RollingHistogram histogram) {
+        if (mBeanServer == null) {
+            return;
+        }
+        try {
+            ObjectName objectName = new ObjectName("ffx:type=Metrics,name="
+                    + ObjectName.quote(histogram.getName()));
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(histogram, objectName);
+            }
+        } catch (Exception e) {
+            logger.log(Level.WARNING, format(" Metric %s could not be registered.", histogram.getName()), e);
+        }
+    }
+
+    /**
+     * Append a snapshot of all metrics to a file every interval seconds, and
+     * once more at shutdown.
+     *
+     * @param file The file to append to.
+     * @param interval The interval in seconds.
+     */
+    public synchronized void startDumps(final File file, long interval) {
+        stopDumps();
+        dumpService = Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+            Thread thread = new Thread(r, "MetricsDump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        interval = Math.max(1, interval);
+        dumpService.scheduleAtFixedRate(() -> dump(file), interval, interval, TimeUnit.SECONDS);
+        shutdownHook = new Thread(() -> dump(file));
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+        logger.info(format(" Writing metrics to %s every %d seconds.", file.getPath(), interval));
+    }
+
+    /**
+     * Stop periodic dumps and remove the shutdown hook registered by
+     * startDumps.
+     */
+    public synchronized void stopDumps() {
+        if (dumpService != null) {
+            dumpService.shutdown();
+            dumpService = null;
+        }
+        if (shutdownHook != null) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // The JVM is already shutting down.
+            }
+            shutdownHook = null;
+        }
+    }
+
+    /**
+     * The shutdown hook registered by the most recent call to startDumps.
+     *
+     * @return the hook, or null if dumps are not running.
+     */
+    synchronized Thread getShutdownHook() {
+        return shutdownHook;
+    }
+
+    /**
+     * Append a snapshot of all metrics to a file. Files ending in ".json"
+     * receive a JSON object per line; otherwise CSV rows are written.
+     *
+     * @param file The file to append to.
+     */
+    public synchronized void dump(File file) {
+        boolean json = file.getName().toLowerCase().endsWith(".json");
+        boolean header = !file.exists() || file.length() == 0;
+        long time = System.currentTimeMillis();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file, true))) {
+            if (json) {
+                writer.write(toJSON(time));
+                writer.newLine();
+            } else {
+                writer.write(toCSV(time, header));
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, format(" Metrics could not be written to %s.", file.getPath()), e);
+        }
+    }
+
+    /**
+     * Format a snapshot of all metrics as CSV rows.
+     *
+     * @param time The time stamp in milliseconds.
+     * @param header If true, a header row is included.
+     * @return the CSV rows.
+     */
+    public String toCSV(long time, boolean header) {
+        StringBuilder sb = new StringBuilder();
+        if (header) {
+            sb.append("time,name,count,total,last,mean,min,max,median,p95\n");
+        }
+        for (RollingHistogram h : metrics.values()) {
+            synchronized (h) {
+                sb.append(format(Locale.US, "%d,%s,%d,%.6g,%.6g,%.6g,%.6g,%.6g,%.6g,%.6g\n", time, h.getName(),
+                        h.getCount(), h.getTotal(), h.getLast(), h.getMean(), h.getMin(),
+                        h.getMax(), h.getMedian(), h.getPercentile95()));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Format a snapshot of all metrics as a single line JSON object.
+     *
+     * @param time The time stamp in milliseconds.
+     * @return the JSON object.
+     */
+    public String toJSON(long time) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(format("{\"time\":%d,\"metrics\":{", time));
+        boolean first = true;
+        for (RollingHistogram h : metrics.values()) {
+            if (!first) {
+                sb.append(",");
+            }
+            first = false;
+            synchronized (h) {
+                sb.append(format(Locale.US, "\"%s\":{\"count\":%d,\"total\":%.6g,\"last\":%.6g,\"mean\":%.6g,"
+                        + "\"min\":%.6g,\"max\":%.6g,\"median\":%.6g,\"p95\":%.6g}",
+                        h.getName().replace("\\", "\\\\").replace("\"", "\\\""), h.getCount(),
+                        h.getTotal(), h.getLast(), h.getMean(), h.getMin(), h.getMax(),
+                        h.getMedian(), h.getPercentile95()));
+            }
+        }
+        sb.append("}}");
+        return sb.toString();
+    }
+
+}
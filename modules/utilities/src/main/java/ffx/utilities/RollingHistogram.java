@@ -0,0 +1,177 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.utilities;
+
+import java.util.Arrays;
+
+/**
+ * The RollingHistogram keeps a fixed size window of the most recently recorded
+ * values (e.g. the wall clock time of an energy term), from which the mean,
+ * extrema and percentiles are computed, together with a running count and
+ * total over all values.
+ *
+ * @author Michael J. Schnieders
+ *
+ * @since 1.0
+ */
+public class RollingHistogram implements RollingHistogramMBean {
+
+    private final String name;
+    private final double window[];
+    private int next = 0;
+    private int size = 0;
+    private long count = 0;
+    private double total = 0.0;
+    private double last = 0.0;
+
+    /**
+     * Constructor.
+     *
+     * @param name The name of the metric.
+     * @param windowSize The number of recent values retained.
+     */
+    public RollingHistogram(String name, int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException(" The rolling window size must be positive.");
+        }
+        this.name = name;
+        window = new double[windowSize];
+    }
+
+    /**
+     * Record a value.
+     *
+     * @param value the value to record.
+     */
+    public synchronized void record(double value) {
+        window[next] = value;
+        next = (next + 1) % window.length;
+        if (size < window.length) {
+            size++;
+        }
+        count++;
+        total += value;
+        last = value;
+    }
+
+    /**
+     * @return the name of the metric.
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public synchronized long getCount() {
+        return count;
+    }
+
+    @Override
+    public synchronized double getTotal() {
+        return total;
+    }
+
+    @Override
+    public synchronized double getLast() {
+        return last;
+    }
+
+    @Override
+    public synchronized double getMean() {
+        if (size == 0) {
+            return 0.0;
+        }
+        double sum = 0.0;
+        for (int i = 0; i < size; i++) {
+            sum += window[i];
+        }
+        return sum / size;
+    }
+
+    @Override
+    public synchronized double getMin() {
+        if (size == 0) {
+            return 0.0;
+        }
+        double min = window[0];
+        for (int i = 1; i < size; i++) {
+            min = Math.min(min, window[i]);
+        }
+        return min;
+    }
+
+    @Override
+    public synchronized double getMax() {
+        if (size == 0) {
+            return 0.0;
+        }
+        double max = window[0];
+        for (int i = 1; i < size; i++) {
+            max = Math.max(max, window[i]);
+        }
+        return max;
+    }
+
+    @Override
+    public double getMedian() {
+        return getPercentile(0.5);
+    }
+
+    @Override
+    public double getPercentile95() {
+        return getPercentile(0.95);
+    }
+
+    /**
+     * Compute a percentile of the rolling window using the nearest rank.
+     *
+     * @param fraction The percentile as a fraction in [0, 1].
+     * @return the percentile.
+     */
+    public synchronized double getPercentile(double fraction) {
+        if (size == 0) {
+            return 0.0;
+        }
+        double sorted[] = Arrays.copyOf(window, size);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(fraction * size) - 1;
+        rank = Math.max(0, Math.min(size - 1, rank));
+        return sorted[rank];
+    }
+
+}
@@ -0,0 +1,119 @@
+/**
+ * Title: Force Field X.
+ *
+ * Description: Force Field X - Software for Molecular Biophysics.
+ *
+ * Copyright: Copyright (c) Michael J. Schnieders 2001-2018.
+ *
+ * This file is part of Force Field X.
+ *
+ * Force Field X is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * Force Field X is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Force Field X; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Linking this library statically or dynamically with other modules is making a
+ * combined work based on this library. Thus, the terms and conditions of the
+ * GNU General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent modules, and
+ * to copy and distribute the resulting executable under terms of your choice,
+ * provided that you also meet, for each linked independent module, the terms
+ * and conditions of the license of that module. An independent module is a
+ * module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but
+ * you are not obligated to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package ffx.utilities;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the RollingHistogram and MetricsRegistry.
+ *
+ * @author Michael J. Schnieders
+ */
+public class MetricsRegistryTest {
+
+    private static final double tolerance = 1.0e-12;
+
+    /**
+     * Window statistics only include the most recent values, while the count
+     * and total include every value.
+     */
+    @Test
+    public void testRollingHistogram() {
+        RollingHistogram histogram = new RollingHistogram("test", 4);
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+        assertEquals(10, histogram.getCount());
+        assertEquals(55.0, histogram.getTotal(), tolerance);
+        assertEquals(10.0, histogram.getLast(), tolerance);
+        assertEquals(8.5, histogram.getMean(), tolerance);
+        assertEquals(7.0, histogram.getMin(), tolerance);
+        assertEquals(10.0, histogram.getMax(), tolerance);
+        assertEquals(8.0, histogram.getMedian(), tolerance);
+        assertEquals(10.0, histogram.getPercentile95(), tolerance);
+    }
+
+    /**
+     * Snapshots include each registered metric.
+     */
+    @Test
+    public void testSnapshots() {
+        MetricsRegistry registry = MetricsRegistry.createLocal(10);
+        registry.getHistogram("energy.total.time").record(0.5);
+        registry.getHistogram("pme.scf.iterations").record(7);
+        String csv = registry.toCSV(0, true);
+        String lines[] = csv.split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[1].startsWith("0,energy.total.time,1,"));
+        assertTrue(lines[2].startsWith("0,pme.scf.iterations,1,"));
+        String json = registry.toJSON(0);
+        assertTrue(json.startsWith("{\"time\":0,\"metrics\":{\"energy.total.time\":{\"count\":1,"));
+        assertTrue(json.contains("\"pme.scf.iterations\":{\"count\":1,"));
+    }
+
+    /**
+     * Restarting dumps replaces the shutdown hook rather than adding another.
+     */
+    @Test
+    public void testRestartDumps() throws IOException {
+        MetricsRegistry registry = MetricsRegistry.createLocal(10);
+        File file = File.createTempFile("metrics", ".csv");
+        file.deleteOnExit();
+        registry.startDumps(file, 3600);
+        Thread first = registry.getShutdownHook();
+        assertNotNull(first);
+        registry.startDumps(file, 3600);
+        Thread second = registry.getShutdownHook();
+        assertNotNull(second);
+        assertTrue(first != second);
+        // The first hook was removed when dumps were restarted.
+        assertFalse(Runtime.getRuntime().removeShutdownHook(first));
+        registry.stopDumps();
+        assertNull(registry.getShutdownHook());
+        assertFalse(Runtime.getRuntime().removeShutdownHook(second));
+    }
+
+}
@@ -57,6 +57,8 @@ import edu.rit.pj.ParallelRegion;
 import edu.rit.pj.ParallelTeam;
 import edu.rit.pj.reduction.SharedIntegerArray;
 
+import org.apache.commons.configuration.CompositeConfiguration;
+
 import ffx.crystal.Crystal;
 import ffx.crystal.HKL;
 import ffx.crystal.ReflectionList;
@@ -64,6 +66,7 @@ import ffx.crystal.Resolution;
 import ffx.crystal.SymOp;
 import ffx.numerics.ComplexNumber;
 import ffx.numerics.fft.Complex;
+import ffx.numerics.fft.Complex3DBlocked;
 import ffx.numerics.fft.Complex3DParallel;
 import ffx.potential.bonded.Atom;
 import ffx.potential.nonbonded.RowLoop;
@@ -326,6 +329,31 @@ public class CrystalReciprocalSpace {
             Atom atoms[],
             ParallelTeam fftTeam, ParallelTeam parallelTeam,
             boolean solventMask, boolean neutron, SolventModel solventModel) {
+        this(reflectionlist, atoms, fftTeam, parallelTeam, solventMask, neutron,
+                solventModel, null);
+    }
+
+    /**
+     * Crystal Reciprocal Space constructor, all parameters provided
+     *
+     * @param reflectionlist the {@link ReflectionList} to fill with structure
+     * factors
+     * @param atoms array of {@link ffx.potential.bonded.Atom atoms} for
+     * structure factor computation
+     * @param fftTeam {@link edu.rit.pj.ParallelTeam} for parallelization
+     * @param parallelTeam {@link edu.rit.pj.ParallelTeam} for parallelization
+     * @param solventMask true if this is a bulk solvent mask
+     * @param neutron true if this is a neutron structure
+     * @param solventModel bulk solvent model type
+     * @param properties the properties that select the fft-method (PJ or
+     * PJ_BLOCKED); may be null
+     * @see CrystalReciprocalSpace.SolventModel
+     */
+    public CrystalReciprocalSpace(ReflectionList reflectionlist,
+            Atom atoms[],
+            ParallelTeam fftTeam, ParallelTeam parallelTeam,
+            boolean solventMask, boolean neutron, SolventModel solventModel,
+            CompositeConfiguration properties) {
         this.reflectionList = reflectionlist;
         this.crystal = reflectionlist.crystal;
         this.resolution = reflectionlist.resolution;
@@ -745,7 +773,15 @@ public class CrystalReciprocalSpace {
         initRegion = new InitRegion(threadCount);
         solventScaleRegion = new SolventScaleRegion(threadCount);
         atomicScaleRegion = new AtomicScaleRegion(threadCount);
-        complexFFT3D = new Complex3DParallel(fftX, fftY, fftZ, fftTeam);
+        String fftMethod = "PJ";
+        if (properties != null) {
+            fftMethod = properties.getString("fft-method", "PJ");
+        }
+        if (fftMethod.toUpperCase().trim().replace('-', '_').equals("PJ_BLOCKED")) {
+            complexFFT3D = new Complex3DBlocked(fftX, fftY, fftZ, fftTeam);
+        } else {
+            complexFFT3D = new Complex3DParallel(fftX, fftY, fftZ, fftTeam);
+        }
     }
 
     /**
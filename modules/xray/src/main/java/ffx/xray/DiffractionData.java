@@ -115,6 +115,7 @@ public class DiffractionData implements DataContainer {
     private final boolean addAnisou;
     private final boolean refineMolOcc;
     private final double occMass;
+    private final CompositeConfiguration properties;
     // public boolean lambdaTerm;
 
     /**
@@ -239,6 +240,7 @@ public class DiffractionData implements DataContainer {
             DiffractionFile... datafile) {
 
         this.assembly = assembly;
+        this.properties = properties;
         this.solventModel = solventmodel;
         this.modelName = assembly[0].getFile().getName();
         this.dataFiles = datafile;
@@ -383,13 +385,13 @@ public class DiffractionData implements DataContainer {
         parallelTeam = new ParallelTeam();
         for (int i = 0; i < n; i++) {
             crs_fc[i] = new CrystalReciprocalSpace(reflectionList[i], refinementModel.getTotalAtomArray(), parallelTeam, parallelTeam,
-                    false, dataFiles[i].isNeutron());
+                    false, dataFiles[i].isNeutron(), POLYNOMIAL, properties);
             refinementData[i].setCrystalReciprocalSpace_fc(crs_fc[i]);
             crs_fc[i].setUse3G(use_3g);
             crs_fc[i].setWeight(dataFiles[i].getWeight());
             crs_fc[i].lambdaTerm = false;
             crs_fs[i] = new CrystalReciprocalSpace(reflectionList[i], refinementModel.getTotalAtomArray(), parallelTeam, parallelTeam,
-                    true, dataFiles[i].isNeutron(), solventmodel);
+                    true, dataFiles[i].isNeutron(), solventmodel, properties);
             refinementData[i].setCrystalReciprocalSpace_fs(crs_fs[i]);
             crs_fs[i].setUse3G(use_3g);
             crs_fs[i].setWeight(dataFiles[i].getWeight());
@@ -445,10 +447,10 @@ public class DiffractionData implements DataContainer {
         // set up FFT and run it
         for (int i = 0; i < n; i++) {
             crs_fc[i] = new CrystalReciprocalSpace(reflectionList[i], tmprefinementmodel.getTotalAtomArray(), parallelTeam, parallelTeam,
-                    false, dataFiles[i].isNeutron());
+                    false, dataFiles[i].isNeutron(), POLYNOMIAL, properties);
             refinementData[i].setCrystalReciprocalSpace_fc(crs_fc[i]);
             crs_fs[i] = new CrystalReciprocalSpace(reflectionList[i], tmprefinementmodel.getTotalAtomArray(), parallelTeam, parallelTeam,
-                    true, dataFiles[i].isNeutron(), solventModel);
+                    true, dataFiles[i].isNeutron(), solventModel, properties);
             refinementData[i].setCrystalReciprocalSpace_fs(crs_fs[i]);
         }
 